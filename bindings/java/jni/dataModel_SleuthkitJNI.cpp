@@ -2044,20 +2044,21 @@ Java_org_sleuthkit_datamodel_SleuthkitJNI_startVerboseLoggingNat
  * @param env Pointer to Java environment from which this method was called.
  * @param obj The Java object from which this method was called.
  * @param dbHandle A handle for the hash database.
+ * @return True if the index was created, false if its creation was canceled.
  */
-JNIEXPORT void JNICALL
+JNIEXPORT jboolean JNICALL
 Java_org_sleuthkit_datamodel_SleuthkitJNI_hashDbCreateIndexNat (JNIEnv * env,
     jclass obj, jint dbHandle)
 {
     if((size_t)dbHandle > hashDbs.size()) {
         setThrowTskCoreError(env, "Invalid database handle");
-        return;
+        return JNI_FALSE;
     }
 
     TSK_HDB_INFO *db = hashDbs.at(dbHandle-1);
     if (db == NULL) {
         setThrowTskCoreError(env, "Invalid database handle");
-        return;
+        return JNI_FALSE;
     }
 
     TSK_TCHAR idx_type[1024];
@@ -2077,8 +2078,62 @@ Java_org_sleuthkit_datamodel_SleuthkitJNI_hashDbCreateIndexNat (JNIEnv * env,
     }
   
     if (tsk_hdb_make_index(db, idx_type) != 0) {
+        if (tsk_hdb_is_idx_canceled(db)) {
+            return JNI_FALSE;
+        }
         setThrowTskCoreError(env, tsk_error_get_errstr());
+        return JNI_FALSE;
+    }
+    return JNI_TRUE;
+}
+
+/*
+ * Gets the progress of the index currently being created for a hash database.
+ * @param env Pointer to Java environment from which this method was called.
+ * @param obj The Java object from which this method was called.
+ * @param dbHandle A handle for the hash database.
+ * @return The percent complete, from 0 to 100.
+ */
+JNIEXPORT jint JNICALL Java_org_sleuthkit_datamodel_SleuthkitJNI_hashDbGetIndexProgressNat
+  (JNIEnv * env, jclass obj, jint dbHandle) {
+    if((size_t)dbHandle > hashDbs.size()) {
+        setThrowTskCoreError(env, "Invalid database handle");
+        return 0;
+    }
+
+    TSK_HDB_INFO *db = hashDbs.at(dbHandle-1);
+    if (db == NULL) {
+        setThrowTskCoreError(env, "Invalid database handle");
+        return 0;
     }
+
+    return (jint)tsk_hdb_get_idx_progress(db);
+}
+
+/*
+ * Sets or clears the request that the index being created for a hash
+ * database stop. The request is not cleared when index creation starts, so
+ * it is cleared when an index creation is set up, before it starts.
+ * @param env Pointer to Java environment from which this method was called.
+ * @param obj The Java object from which this method was called.
+ * @param dbHandle A handle for the hash database.
+ * @param cancel True to request that index creation stop, false to clear
+ * the request.
+ */
+JNIEXPORT void JNICALL Java_org_sleuthkit_datamodel_SleuthkitJNI_hashDbSetIndexCancelNat
+  (JNIEnv * env, jclass obj, jint dbHandle, jboolean cancel) {
+    if((size_t)dbHandle > hashDbs.size()) {
+        setThrowTskCoreError(env, "Invalid database handle");
+        return;
+    }
+
+    TSK_HDB_INFO *db = hashDbs.at(dbHandle-1);
+    if (db == NULL) {
+        setThrowTskCoreError(env, "Invalid database handle");
+        return;
+    }
+
+    tsk_hdb_set_idx_cancel(db, cancel ? 1 : 0);
 }
 
 /*
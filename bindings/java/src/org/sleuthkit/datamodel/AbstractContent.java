@@ -40,7 +40,7 @@ public abstract class AbstractContent implements Content {
 	private final long objId;
 	private final String name;
 	private Content parent;
-	private String uniquePath;
+	private volatile String uniquePath;
 	protected long parentId;
 	private volatile boolean hasChildren;
 	private volatile boolean checkedHasChildren;
@@ -84,6 +84,27 @@ public synchronized String getUniquePath() throws TskCoreException {
 		return uniquePath;
 	}
 
+	/**
+	 * Sets the unique path of this object, such as a path stored in the case
+	 * database, so that getUniquePath() does not have to build it from the
+	 * ancestors of this object.
+	 *
+	 * @param uniquePath The unique path.
+	 */
+	void setUniquePath(String uniquePath) {
+		this.uniquePath = uniquePath;
+	}
+
+	/**
+	 * Gets the unique path of this object if it has already been built or
+	 * set.
+	 *
+	 * @return The unique path, or null if it is not known yet.
+	 */
+	String getCachedUniquePath() {
+		return uniquePath;
+	}
+
 	@Override
 	public boolean hasChildren() throws TskCoreException {
 		if (checkedHasChildren == true) {
@@ -142,6 +163,18 @@ void setParentId(long parentId) {
 		this.parentId = parentId;
 	}
 
+	/**
+	 * Sets the number of children of this AbstractContent, when it is already
+	 * known, so that it need not be counted in the case database.
+	 *
+	 * @param childrenCount The number of children.
+	 */
+	void setChildrenCount(int childrenCount) {
+		this.childrenCount = childrenCount;
+		hasChildren = childrenCount > 0;
+		checkedHasChildren = true;
+	}
+
 	@Override
 	public long getId() {
 		return this.objId;
@@ -166,6 +199,31 @@ public List<Content> getChildren() throws TskCoreException {
 
 	}
 
+	/**
+	 * Gets all children of this content, optionally with their own numbers of
+	 * children already set, so that calling hasChildren() or
+	 * getChildrenCount() on them does not query the case database. This is
+	 * meant for tree views that show which children can be expanded; the
+	 * counts cost one grouped query per batch of children rather than one
+	 * query per child.
+	 *
+	 * @param prefetchChildrenCounts True to set the counts of the children
+	 *                               as they are loaded, false to count them
+	 *                               when asked, as getChildren() does.
+	 *
+	 * @return A list of the children.
+	 *
+	 * @throws TskCoreException if there was an error querying the case
+	 *                          database.
+	 */
+	public List<Content> getChildren(boolean prefetchChildrenCounts) throws TskCoreException {
+		List<Content> children = getChildren();
+		if (prefetchChildrenCounts && !children.isEmpty()) {
+			getSleuthkitCase().setChildrenCounts(children);
+		}
+		return children;
+	}
+
 	/**
 	 * Gets the object ids of objects, if any, that are children of this
 	 * abstract content.
@@ -25,11 +25,14 @@
 import java.sql.Statement;
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.ResourceBundle;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import static org.sleuthkit.datamodel.SleuthkitCase.closeStatement;
@@ -49,6 +52,10 @@ public abstract class AbstractFile extends AbstractContent {
 	protected final TSK_FS_NAME_TYPE_ENUM dirType;
 	protected final TSK_FS_META_TYPE_ENUM metaType;
 	protected final TSK_FS_NAME_FLAG_ENUM dirFlag;
+	/**
+	 * The meta flags of the file. The set is unmodifiable and is shared by
+	 * all of the files with the same flags, so it must not be changed.
+	 */
 	protected final Set<TSK_FS_META_FLAG_ENUM> metaFlags;
 	protected long size;
 	protected final long metaAddr, ctime, crtime, atime, mtime;
@@ -56,7 +63,15 @@ public abstract class AbstractFile extends AbstractContent {
 	protected final int uid, gid;
 	protected final int attrId;
 	protected final TskData.TSK_FS_ATTR_TYPE_ENUM attrType;
+	/**
+	 * The modes of the file. The set is unmodifiable and is shared by all of
+	 * the files with the same modes, so it must not be changed.
+	 */
 	protected final Set<TskData.TSK_FS_META_MODE_ENUM> modes;
+	// The flags and modes as stored in the database, for quick checks. The
+	// sets above are shared by all of the files with the same values.
+	private final short metaFlagsValue;
+	private final short modesValue;
 	//local file support
 	private boolean localPathSet = false; ///< if set by setLocalPath(), reads are done on local file 
 	private String localPath; ///< local path as stored in db tsk_files_path, is relative to the db, 
@@ -74,14 +89,21 @@ public abstract class AbstractFile extends AbstractContent {
 	 * knownState status in database
 	 */
 	protected TskData.FileKnown knownState;
-	private boolean knownStateDirty = false;
 	/*
 	 * md5 hash
 	 */
 	protected String md5Hash;
-	private boolean md5HashDirty = false;
 	private String mimeType;
-	private boolean mimeTypeDirty = false;
+	/*
+	 * which editable properties have been set since the file was loaded or
+	 * saved, as a combination of the *_DIRTY bits
+	 */
+	private byte dirtyFlags = 0;
+	private static final byte MD5_HASH_DIRTY = 1;
+	private static final byte MIME_TYPE_DIRTY = 2;
+	private static final byte KNOWN_STATE_DIRTY = 4;
+	private static final Map<Short, Set<TSK_FS_META_FLAG_ENUM>> SHARED_META_FLAGS = new ConcurrentHashMap<Short, Set<TSK_FS_META_FLAG_ENUM>>();
+	private static final Map<Short, Set<TskData.TSK_FS_META_MODE_ENUM>> SHARED_MODES = new ConcurrentHashMap<Short, Set<TskData.TSK_FS_META_MODE_ENUM>>();
 	private static final Logger LOGGER = Logger.getLogger(AbstractFile.class.getName());
 	private static final ResourceBundle BUNDLE = ResourceBundle.getBundle("org.sleuthkit.datamodel.Bundle");
 	private long dataSourceObjectId;
@@ -149,7 +171,8 @@ public abstract class AbstractFile extends AbstractContent {
 		this.dirType = dirType;
 		this.metaType = metaType;
 		this.dirFlag = dirFlag;
-		this.metaFlags = TSK_FS_META_FLAG_ENUM.valuesOf(metaFlags);
+		this.metaFlagsValue = metaFlags;
+		this.metaFlags = getSharedMetaFlags(metaFlags);
 		this.size = size;
 		this.ctime = ctime;
 		this.crtime = crtime;
@@ -157,7 +180,8 @@ public abstract class AbstractFile extends AbstractContent {
 		this.mtime = mtime;
 		this.uid = uid;
 		this.gid = gid;
-		this.modes = TskData.TSK_FS_META_MODE_ENUM.valuesOf(modes);
+		this.modesValue = modes;
+		this.modes = getSharedModes(modes);
 
 		this.md5Hash = md5Hash;
 		if (knownState == null) {
@@ -165,12 +189,52 @@ public abstract class AbstractFile extends AbstractContent {
 		} else {
 			this.knownState = knownState;
 		}
-		this.parentPath = parentPath;
-		this.mimeType = mimeType;
-		this.extension = extension == null ? "" : extension;
+		if (null != db) {
+			this.parentPath = db.internFileString(parentPath);
+			this.mimeType = db.internFileString(mimeType);
+			this.extension = extension == null ? "" : db.internFileString(extension);
+		} else {
+			this.parentPath = parentPath;
+			this.mimeType = mimeType;
+			this.extension = extension == null ? "" : extension;
+		}
 		this.encodingType = TskData.EncodingType.NONE;
 	}
 
+	/**
+	 * Gets the unmodifiable set of meta flags that is shared by all of the
+	 * files with the given flags.
+	 *
+	 * @param metaFlags The flags, as stored in the database.
+	 *
+	 * @return The set of flags.
+	 */
+	private static Set<TSK_FS_META_FLAG_ENUM> getSharedMetaFlags(short metaFlags) {
+		Set<TSK_FS_META_FLAG_ENUM> flags = SHARED_META_FLAGS.get(metaFlags);
+		if (null == flags) {
+			flags = Collections.unmodifiableSet(TSK_FS_META_FLAG_ENUM.valuesOf(metaFlags));
+			SHARED_META_FLAGS.put(metaFlags, flags);
+		}
+		return flags;
+	}
+
+	/**
+	 * Gets the unmodifiable set of modes that is shared by all of the files
+	 * with the given modes.
+	 *
+	 * @param modes The modes, as stored in the database.
+	 *
+	 * @return The set of modes.
+	 */
+	private static Set<TskData.TSK_FS_META_MODE_ENUM> getSharedModes(short modes) {
+		Set<TskData.TSK_FS_META_MODE_ENUM> modeSet = SHARED_MODES.get(modes);
+		if (null == modeSet) {
+			modeSet = Collections.unmodifiableSet(TskData.TSK_FS_META_MODE_ENUM.valuesOf(modes));
+			SHARED_MODES.put(modes, modeSet);
+		}
+		return modeSet;
+	}
+
 	/**
 	 * Gets type of the abstract file as defined in TSK_DB_FILES_TYPE_ENUM
 	 *
@@ -313,7 +377,7 @@ public long getMetaSeq() {
 	 * @return formatted user-displayable string for mode
 	 */
 	public String getModesAsString() {
-		int mode = TskData.TSK_FS_META_MODE_ENUM.toInt(modes);
+		int mode = modesValue;
 		String result = "";
 
 		short isuid = TskData.TSK_FS_META_MODE_ENUM.TSK_FS_META_MODE_ISUID.getMode();
@@ -442,12 +506,12 @@ public String getMIMEType() {
 	 * @param mimeType The MIME type of this file.
 	 */
 	public void setMIMEType(String mimeType) {
-		this.mimeType = mimeType;
-		this.mimeTypeDirty = true;
+		this.mimeType = getSleuthkitCase() == null ? mimeType : getSleuthkitCase().internFileString(mimeType);
+		this.dirtyFlags |= MIME_TYPE_DIRTY;
 	}
 
 	public boolean isModeSet(TskData.TSK_FS_META_MODE_ENUM mode) {
-		return modes.contains(mode);
+		return (modesValue & mode.getMode()) == mode.getMode();
 	}
 
 	/**
@@ -460,7 +524,7 @@ public boolean isModeSet(TskData.TSK_FS_META_MODE_ENUM mode) {
 	 */
 	public void setMd5Hash(String md5Hash) {
 		this.md5Hash = md5Hash;
-		this.md5HashDirty = true;
+		this.dirtyFlags |= MD5_HASH_DIRTY;
 	}
 
 	/**
@@ -482,7 +546,7 @@ public String getMd5Hash() {
 	 */
 	public void setKnown(TskData.FileKnown knownState) {
 		this.knownState = knownState;
-		this.knownStateDirty = true;
+		this.dirtyFlags |= KNOWN_STATE_DIRTY;
 	}
 
 	/**
@@ -743,9 +807,9 @@ public String getDirFlagAsString() {
 	 */
 	public String getMetaFlagsAsString() {
 		String str = "";
-		if (metaFlags.contains(TSK_FS_META_FLAG_ENUM.ALLOC)) {
+		if (isMetaFlagSet(TSK_FS_META_FLAG_ENUM.ALLOC)) {
 			str = TSK_FS_META_FLAG_ENUM.ALLOC.toString();
-		} else if (metaFlags.contains(TSK_FS_META_FLAG_ENUM.UNALLOC)) {
+		} else if (isMetaFlagSet(TSK_FS_META_FLAG_ENUM.UNALLOC)) {
 			str = TSK_FS_META_FLAG_ENUM.UNALLOC.toString();
 		}
 		return str;
@@ -757,7 +821,7 @@ public String getMetaFlagsAsString() {
 	 * @return true if the given meta flag is set in this FsContent object.
 	 */
 	public boolean isMetaFlagSet(TSK_FS_META_FLAG_ENUM metaFlag) {
-		return metaFlags.contains(metaFlag);
+		return (metaFlagsValue & metaFlag.getValue()) == metaFlag.getValue();
 	}
 
 	@Override
@@ -1075,21 +1139,21 @@ public MimeMatchEnum isMimeType(SortedSet<String> mimeTypes) {
 	public void save() throws TskCoreException {
 
 		// No fields have been updated
-		if (!(md5HashDirty || mimeTypeDirty || knownStateDirty)) {
+		if (dirtyFlags == 0) {
 			return;
 		}
 
 		String queryStr = "";
-		if (mimeTypeDirty) {
+		if ((dirtyFlags & MIME_TYPE_DIRTY) != 0) {
 			queryStr = "mime_type = '" + this.getMIMEType() + "'";
 		}
-		if (md5HashDirty) {
+		if ((dirtyFlags & MD5_HASH_DIRTY) != 0) {
 			if (!queryStr.isEmpty()) {
 				queryStr += ", ";
 			}
 			queryStr += "md5 = '" + this.getMd5Hash() + "'";
 		}
-		if (knownStateDirty) {
+		if ((dirtyFlags & KNOWN_STATE_DIRTY) != 0) {
 			if (!queryStr.isEmpty()) {
 				queryStr += ", ";
 			}
@@ -1106,9 +1170,7 @@ public void save() throws TskCoreException {
 			statement = connection.createStatement();
 			connection.executeUpdate(statement, queryStr);
 
-			md5HashDirty = false;
-			mimeTypeDirty = false;
-			knownStateDirty = false;
+			dirtyFlags = 0;
 		} catch (SQLException ex) {
 			throw new TskCoreException(String.format("Error saving properties for file (obj_id = %s)", this.getId()), ex);
 		} finally {
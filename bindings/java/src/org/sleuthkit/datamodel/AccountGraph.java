@@ -0,0 +1,849 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2018 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.sleuthkit.datamodel.SleuthkitCase.CaseDbConnection;
+import static org.sleuthkit.datamodel.SleuthkitCase.closeResultSet;
+import static org.sleuthkit.datamodel.SleuthkitCase.closeStatement;
+
+/**
+ * An in-memory copy of the account_relationships table, used by the
+ * CommunicationsManager to answer account graph queries without going to the
+ * case database.
+ *
+ * Accounts are numbered densely as nodes. The relationships (edges) are kept
+ * in parallel primitive arrays sorted by account1, account2 and source object,
+ * so the edges of a node in the account1 role form a contiguous range given by
+ * an offsets array. A compressed sparse row index lists the edges of each node
+ * in the account2 role. Edges added after the graph was loaded are kept in an
+ * unsorted pending list, which is merged into the sorted arrays once it grows
+ * large.
+ */
+final class AccountGraph {
+
+	private static final Logger LOGGER = Logger.getLogger(AccountGraph.class.getName());
+	// Stands in for a NULL date_time.
+	private static final long NULL_DATE_TIME = Long.MIN_VALUE;
+	// The pending edges are merged once there are more of them than both this
+	// and an eighth of the sorted edges.
+	private static final int MIN_EDGES_TO_MERGE = 65536;
+	private static final int MERGE_RATIO = 8;
+
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	private final Map<Integer, Account.Type> accountTypes;
+
+	// Nodes
+	private final Map<Long, Integer> accountIdToNode = new HashMap<Long, Integer>();
+	private Account[] nodeAccounts = new Account[16];
+	private int[] nodeAccountTypeIds = new int[16];
+	private int nodeCount;
+
+	// Data sources and devices, referred to by index
+	private final Map<Long, Integer> dataSourceObjIdToIndex = new HashMap<Long, Integer>();
+	private long[] dataSourceObjIds = new long[4];
+	private int[] dataSourceDevices = new int[4];
+	private int dataSourceCount;
+	private final Map<String, Integer> deviceIdToIndex = new HashMap<String, Integer>();
+	private final List<String> deviceIds = new ArrayList<String>();
+
+	// Edges
+	private EdgeList edges = new EdgeList(16);
+	private int[] outOffsets = new int[1];
+	private int[] inOffsets = new int[1];
+	private int[] inEdges = new int[0];
+	private EdgeList pendingEdges = new EdgeList(16);
+	private final Set<EdgeKey> pendingEdgeKeys = new HashSet<EdgeKey>();
+
+	private AccountGraph(Map<Integer, Account.Type> accountTypes) {
+		this.accountTypes = new HashMap<Integer, Account.Type>(accountTypes);
+	}
+
+	/**
+	 * Loads the account graph from the case database. The caller must hold
+	 * the case read lock so that no relationships are added during the load.
+	 *
+	 * @param connection   The case database connection.
+	 * @param accountTypes The account types, keyed by account type id.
+	 *
+	 * @return The account graph.
+	 *
+	 * @throws SQLException     if there is an error reading the tables.
+	 * @throws TskCoreException if there is an error creating an account.
+	 */
+	static AccountGraph load(CaseDbConnection connection, Map<Integer, Account.Type> accountTypes) throws SQLException, TskCoreException {
+		AccountGraph graph = new AccountGraph(accountTypes);
+		Statement statement = null;
+		ResultSet resultSet = null;
+		try {
+			statement = connection.createStatement();
+			resultSet = connection.executeQuery(statement, "SELECT obj_id, device_id FROM data_source_info"); //NON-NLS
+			while (resultSet.next()) {
+				graph.addDataSource(resultSet.getLong("obj_id"), resultSet.getString("device_id"));
+			}
+			resultSet.close();
+
+			// Loading the accounts in ID order, and the relationships in
+			// account ID order, leaves the edges sorted by node.
+			resultSet = connection.executeQuery(statement, "SELECT account_id, account_type_id, account_unique_identifier FROM accounts ORDER BY account_id"); //NON-NLS
+			while (resultSet.next()) {
+				int accountTypeId = resultSet.getInt("account_type_id");
+				Account account = new Account(resultSet.getLong("account_id"), graph.accountTypes.get(accountTypeId), resultSet.getString("account_unique_identifier"));
+				graph.addNode(account, accountTypeId);
+			}
+			resultSet.close();
+
+			int skipped = 0;
+			resultSet = connection.executeQuery(statement, "SELECT account1_id, account2_id, relationship_source_obj_id, date_time, relationship_type, data_source_obj_id " //NON-NLS
+					+ "FROM account_relationships ORDER BY account1_id, account2_id, relationship_source_obj_id"); //NON-NLS
+			while (resultSet.next()) {
+				Integer node1 = graph.accountIdToNode.get(resultSet.getLong("account1_id"));
+				Integer node2 = graph.accountIdToNode.get(resultSet.getLong("account2_id"));
+				if (node1 == null || node2 == null) {
+					skipped++;
+					continue;
+				}
+				long dateTime = resultSet.getLong("date_time");
+				if (resultSet.wasNull()) {
+					dateTime = NULL_DATE_TIME;
+				}
+				int dataSource = graph.getDataSourceIndex(resultSet.getLong("data_source_obj_id"));
+				graph.edges.add(node1, node2, resultSet.getLong("relationship_source_obj_id"), dateTime, resultSet.getInt("relationship_type"), dataSource);
+			}
+			if (skipped > 0) {
+				LOGGER.log(Level.WARNING, "Skipped {0} relationships with unknown accounts", skipped); //NON-NLS
+			}
+		} finally {
+			closeResultSet(resultSet);
+			closeStatement(statement);
+		}
+		graph.buildIndexes();
+		return graph;
+	}
+
+	/**
+	 * Adds the relationships described by records that have just been written
+	 * to the case database, pairing the accounts of each record the same way
+	 * CommunicationsManager.addRelationships(Collection) does. Relationships
+	 * that are already in the graph are skipped.
+	 *
+	 * @param records      The relationship records.
+	 * @param commsManager The communications manager, used to look up
+	 *                     account type ids.
+	 * @param connection   The case database connection, used to look up new
+	 *                     data sources.
+	 *
+	 * @throws TskCoreException if there is an error getting an account or
+	 *                          data source.
+	 */
+	void addRelationships(Collection<CommunicationsManager.RelationshipRecord> records, CommunicationsManager commsManager, CaseDbConnection connection) throws TskCoreException {
+		lock.writeLock().lock();
+		try {
+			for (CommunicationsManager.RelationshipRecord record : records) {
+				List<Account> accounts = new ArrayList<Account>();
+				if (null != record.getSender()) {
+					accounts.add(record.getSender().getAccount());
+				}
+				for (AccountFileInstance recipient : record.getRecipients()) {
+					accounts.add(recipient.getAccount());
+				}
+				long sourceObjId = record.getSourceArtifact().getId();
+				long dateTime = record.getDateTime() > 0 ? record.getDateTime() : NULL_DATE_TIME;
+				int relationshipType = record.getRelationshipType().getTypeID();
+				int dataSource = resolveDataSource(record.getSourceArtifact().getDataSourceObjectID(), connection);
+				for (int i = 0; i < accounts.size(); i++) {
+					for (int j = i + 1; j < accounts.size(); j++) {
+						int node1 = getOrAddNode(accounts.get(i), commsManager);
+						int node2 = getOrAddNode(accounts.get(j), commsManager);
+						if (!containsEdge(node1, node2, sourceObjId)) {
+							pendingEdges.add(node1, node2, sourceObjId, dateTime, relationshipType, dataSource);
+							pendingEdgeKeys.add(new EdgeKey(node1, node2, sourceObjId));
+						}
+					}
+				}
+			}
+			if (pendingEdges.size > Math.max(MIN_EDGES_TO_MERGE, edges.size / MERGE_RATIO)) {
+				mergePendingEdges();
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Gets the account device instances that have at least one relationship
+	 * accepted by a filter, as by
+	 * CommunicationsManager.getAccountDeviceInstancesWithRelationships.
+	 *
+	 * @param filter The filter.
+	 *
+	 * @return The account device instances.
+	 */
+	List<AccountDeviceInstance> getAccountDeviceInstancesWithRelationships(EdgeFilter filter) {
+		lock.readLock().lock();
+		try {
+			boolean[] dataSources = getAcceptedDataSources(filter, null);
+			BitSet[] deviceNodes = new BitSet[deviceIds.size()];
+			for (int edge = 0; edge < edges.size; edge++) {
+				if (filter.accepts(edges, edge, dataSources)) {
+					int device = dataSourceDevices[edges.dataSources[edge]];
+					markNode(deviceNodes, device, edges.account1[edge], filter);
+					markNode(deviceNodes, device, edges.account2[edge], filter);
+				}
+			}
+			for (int edge = 0; edge < pendingEdges.size; edge++) {
+				if (filter.accepts(pendingEdges, edge, dataSources)) {
+					int device = dataSourceDevices[pendingEdges.dataSources[edge]];
+					markNode(deviceNodes, device, pendingEdges.account1[edge], filter);
+					markNode(deviceNodes, device, pendingEdges.account2[edge], filter);
+				}
+			}
+			return toAccountDeviceInstances(deviceNodes);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Gets the account device instances related to an account on one device,
+	 * as by CommunicationsManager.getRelatedAccountDeviceInstances.
+	 *
+	 * @param accountId        The id of the account.
+	 * @param dataSourceObjIds The object ids of the data sources of the
+	 *                         device.
+	 * @param filter           The filter.
+	 *
+	 * @return The related account device instances.
+	 */
+	List<AccountDeviceInstance> getRelatedAccountDeviceInstances(long accountId, Collection<Long> dataSourceObjIds, EdgeFilter filter) {
+		lock.readLock().lock();
+		try {
+			Integer node = accountIdToNode.get(accountId);
+			if (node == null) {
+				return new ArrayList<AccountDeviceInstance>();
+			}
+			boolean[] dataSources = getAcceptedDataSources(filter, new HashSet<Long>(dataSourceObjIds));
+			BitSet[] deviceNodes = new BitSet[deviceIds.size()];
+			if (node < outOffsets.length - 1) {
+				for (int edge = outOffsets[node]; edge < outOffsets[node + 1]; edge++) {
+					if (filter.accepts(edges, edge, dataSources)) {
+						markNode(deviceNodes, dataSourceDevices[edges.dataSources[edge]], edges.account2[edge], filter);
+					}
+				}
+				for (int i = inOffsets[node]; i < inOffsets[node + 1]; i++) {
+					int edge = inEdges[i];
+					if (filter.accepts(edges, edge, dataSources)) {
+						markNode(deviceNodes, dataSourceDevices[edges.dataSources[edge]], edges.account1[edge], filter);
+					}
+				}
+			}
+			for (int edge = 0; edge < pendingEdges.size; edge++) {
+				if ((pendingEdges.account1[edge] == node || pendingEdges.account2[edge] == node)
+						&& filter.accepts(pendingEdges, edge, dataSources)) {
+					int device = dataSourceDevices[pendingEdges.dataSources[edge]];
+					if (pendingEdges.account1[edge] == node) {
+						markNode(deviceNodes, device, pendingEdges.account2[edge], filter);
+					}
+					if (pendingEdges.account2[edge] == node) {
+						markNode(deviceNodes, device, pendingEdges.account1[edge], filter);
+					}
+				}
+			}
+			return toAccountDeviceInstances(deviceNodes);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Counts the relationships between each pair of a set of accounts, as by
+	 * CommunicationsManager.getRelationshipCountsPairwise. The account type
+	 * subfilters of the filter are not applied.
+	 *
+	 * @param accountIds The ids of the accounts.
+	 * @param devicesIds The ids of the devices to count relationships from.
+	 * @param filter     The filter.
+	 *
+	 * @return The relationship counts, keyed by account pair.
+	 */
+	Map<AccountPair, Long> getRelationshipCountsPairwise(Set<Long> accountIds, Set<String> devicesIds, EdgeFilter filter) {
+		lock.readLock().lock();
+		try {
+			BitSet nodes = new BitSet(nodeCount);
+			for (Long accountId : accountIds) {
+				Integer node = accountIdToNode.get(accountId);
+				if (node != null) {
+					nodes.set(node);
+				}
+			}
+			boolean[] devices = new boolean[deviceIds.size()];
+			for (String deviceId : devicesIds) {
+				Integer device = deviceIdToIndex.get(deviceId);
+				if (device != null) {
+					devices[device] = true;
+				}
+			}
+			boolean[] dataSources = getAcceptedDataSources(filter, null);
+			for (int dataSource = 0; dataSource < dataSourceCount; dataSource++) {
+				int device = dataSourceDevices[dataSource];
+				dataSources[dataSource] &= device >= 0 && devices[device];
+			}
+
+			Map<AccountPair, Long> results = new HashMap<AccountPair, Long>();
+			int indexedNodeCount = outOffsets.length - 1;
+			for (int node = nodes.nextSetBit(0); node >= 0 && node < indexedNodeCount; node = nodes.nextSetBit(node + 1)) {
+				for (int edge = outOffsets[node]; edge < outOffsets[node + 1]; edge++) {
+					if (nodes.get(edges.account2[edge]) && filter.accepts(edges, edge, dataSources)) {
+						countEdge(results, edges, edge);
+					}
+				}
+			}
+			for (int edge = 0; edge < pendingEdges.size; edge++) {
+				if (nodes.get(pendingEdges.account1[edge]) && nodes.get(pendingEdges.account2[edge])
+						&& filter.accepts(pendingEdges, edge, dataSources)) {
+					countEdge(results, pendingEdges, edge);
+				}
+			}
+			return results;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Takes an undirected snapshot of the relationships accepted by a filter,
+	 * for the graph algorithms. Its nodes are account device instances, and
+	 * both ends of a relationship must be of an accepted account type.
+	 *
+	 * @param filter The filter.
+	 *
+	 * @return The snapshot.
+	 */
+	AccountGraphSnapshot getSnapshot(EdgeFilter filter) {
+		lock.readLock().lock();
+		try {
+			boolean[] dataSources = getAcceptedDataSources(filter, null);
+			int[][] snapshotNodes = new int[deviceIds.size()][];
+			List<AccountDeviceInstance> accountDeviceInstances = new ArrayList<AccountDeviceInstance>();
+			int[] ends1 = new int[16];
+			int[] ends2 = new int[16];
+			int edgeCount = 0;
+			EdgeList[] edgeLists = new EdgeList[]{edges, pendingEdges};
+			for (EdgeList edgeList : edgeLists) {
+				for (int edge = 0; edge < edgeList.size; edge++) {
+					int node1 = edgeList.account1[edge];
+					int node2 = edgeList.account2[edge];
+					if (!filter.accepts(edgeList, edge, dataSources)
+							|| !filter.acceptsAccountType(nodeAccountTypeIds[node1])
+							|| !filter.acceptsAccountType(nodeAccountTypeIds[node2])) {
+						continue;
+					}
+					int device = dataSourceDevices[edgeList.dataSources[edge]];
+					if (edgeCount == ends1.length) {
+						ends1 = Arrays.copyOf(ends1, edgeCount * 2);
+						ends2 = Arrays.copyOf(ends2, edgeCount * 2);
+					}
+					ends1[edgeCount] = getSnapshotNode(snapshotNodes, accountDeviceInstances, node1, device);
+					ends2[edgeCount] = getSnapshotNode(snapshotNodes, accountDeviceInstances, node2, device);
+					edgeCount++;
+				}
+			}
+			return new AccountGraphSnapshot(accountDeviceInstances.toArray(new AccountDeviceInstance[accountDeviceInstances.size()]), edgeCount, ends1, ends2);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Gets the snapshot node of a node on a device, adding it if needed.
+	 */
+	private int getSnapshotNode(int[][] snapshotNodes, List<AccountDeviceInstance> accountDeviceInstances, int node, int device) {
+		if (snapshotNodes[device] == null) {
+			snapshotNodes[device] = new int[nodeCount];
+			Arrays.fill(snapshotNodes[device], -1);
+		}
+		if (snapshotNodes[device][node] < 0) {
+			snapshotNodes[device][node] = accountDeviceInstances.size();
+			accountDeviceInstances.add(new AccountDeviceInstance(nodeAccounts[node], deviceIds.get(device)));
+		}
+		return snapshotNodes[device][node];
+	}
+
+	/**
+	 * Adds one to the count of the account pair of an edge. The unique
+	 * constraint on the relationships table means each edge of a pair has a
+	 * distinct source object.
+	 */
+	private void countEdge(Map<AccountPair, Long> results, EdgeList edgeList, int edge) {
+		String deviceId = deviceIds.get(dataSourceDevices[edgeList.dataSources[edge]]);
+		AccountPair pair = new AccountPair(
+				new AccountDeviceInstance(nodeAccounts[edgeList.account1[edge]], deviceId),
+				new AccountDeviceInstance(nodeAccounts[edgeList.account2[edge]], deviceId));
+		Long count = results.get(pair);
+		results.put(pair, count == null ? 1L : count + 1);
+	}
+
+	/**
+	 * Records that a node has an accepted relationship on a device, if its
+	 * account type is accepted by the filter.
+	 */
+	private void markNode(BitSet[] deviceNodes, int device, int node, EdgeFilter filter) {
+		if (device < 0 || !filter.acceptsAccountType(nodeAccountTypeIds[node])) {
+			return;
+		}
+		if (deviceNodes[device] == null) {
+			deviceNodes[device] = new BitSet(nodeCount);
+		}
+		deviceNodes[device].set(node);
+	}
+
+	private List<AccountDeviceInstance> toAccountDeviceInstances(BitSet[] deviceNodes) {
+		List<AccountDeviceInstance> accountDeviceInstances = new ArrayList<AccountDeviceInstance>();
+		for (int device = 0; device < deviceNodes.length; device++) {
+			if (deviceNodes[device] == null) {
+				continue;
+			}
+			for (int node = deviceNodes[device].nextSetBit(0); node >= 0; node = deviceNodes[device].nextSetBit(node + 1)) {
+				accountDeviceInstances.add(new AccountDeviceInstance(nodeAccounts[node], deviceIds.get(device)));
+			}
+		}
+		return accountDeviceInstances;
+	}
+
+	/**
+	 * Determines which data sources are accepted by the device subfilters of
+	 * a filter, and optionally also by a set of data source object ids. Data
+	 * sources without a device are never accepted, since the queries join
+	 * with the data_source_info table.
+	 *
+	 * @param filter     The filter.
+	 * @param restrictTo The data source object ids to restrict to, or null.
+	 *
+	 * @return The accepted flag of each data source, indexed by data source.
+	 */
+	private boolean[] getAcceptedDataSources(EdgeFilter filter, Set<Long> restrictTo) {
+		boolean[] accepted = new boolean[dataSourceCount];
+		for (int dataSource = 0; dataSource < dataSourceCount; dataSource++) {
+			long objId = dataSourceObjIds[dataSource];
+			accepted[dataSource] = dataSourceDevices[dataSource] >= 0
+					&& filter.acceptsDataSource(objId)
+					&& (restrictTo == null || restrictTo.contains(objId));
+		}
+		return accepted;
+	}
+
+	/**
+	 * Checks whether an edge is in the graph.
+	 */
+	private boolean containsEdge(int node1, int node2, long sourceObjId) {
+		if (pendingEdgeKeys.contains(new EdgeKey(node1, node2, sourceObjId))) {
+			return true;
+		}
+		if (node1 >= outOffsets.length - 1) {
+			return false;
+		}
+		int low = outOffsets[node1];
+		int high = outOffsets[node1 + 1] - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int result = edges.compare(mid, node1, node2, sourceObjId);
+			if (result < 0) {
+				low = mid + 1;
+			} else if (result > 0) {
+				high = mid - 1;
+			} else {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Merges the pending edges into the sorted edges and rebuilds the
+	 * indexes.
+	 */
+	private void mergePendingEdges() {
+		final EdgeList pending = pendingEdges;
+		Integer[] order = new Integer[pending.size];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer edge1, Integer edge2) {
+				return pending.compare(edge1, pending.account1[edge2], pending.account2[edge2], pending.sourceObjIds[edge2]);
+			}
+		});
+
+		EdgeList merged = new EdgeList(edges.size + pending.size);
+		int edge = 0;
+		int pendingEdge = 0;
+		while (edge < edges.size || pendingEdge < order.length) {
+			if (pendingEdge == order.length
+					|| (edge < edges.size && edges.compare(edge, pending.account1[order[pendingEdge]], pending.account2[order[pendingEdge]], pending.sourceObjIds[order[pendingEdge]]) < 0)) {
+				merged.add(edges, edge++);
+			} else {
+				merged.add(pending, order[pendingEdge++]);
+			}
+		}
+		edges = merged;
+		pendingEdges = new EdgeList(16);
+		pendingEdgeKeys.clear();
+		buildIndexes();
+	}
+
+	/**
+	 * Builds the offsets of the account1 ranges and the account2 index from
+	 * the sorted edges.
+	 */
+	private void buildIndexes() {
+		outOffsets = new int[nodeCount + 1];
+		inOffsets = new int[nodeCount + 1];
+		for (int edge = 0; edge < edges.size; edge++) {
+			outOffsets[edges.account1[edge] + 1]++;
+			inOffsets[edges.account2[edge] + 1]++;
+		}
+		for (int node = 0; node < nodeCount; node++) {
+			outOffsets[node + 1] += outOffsets[node];
+			inOffsets[node + 1] += inOffsets[node];
+		}
+		inEdges = new int[edges.size];
+		int[] next = Arrays.copyOf(inOffsets, nodeCount);
+		for (int edge = 0; edge < edges.size; edge++) {
+			inEdges[next[edges.account2[edge]]++] = edge;
+		}
+	}
+
+	private int addNode(Account account, int accountTypeId) {
+		if (nodeCount == nodeAccounts.length) {
+			nodeAccounts = Arrays.copyOf(nodeAccounts, nodeCount * 2);
+			nodeAccountTypeIds = Arrays.copyOf(nodeAccountTypeIds, nodeCount * 2);
+		}
+		nodeAccounts[nodeCount] = account;
+		nodeAccountTypeIds[nodeCount] = accountTypeId;
+		accountIdToNode.put(account.getAccountID(), nodeCount);
+		return nodeCount++;
+	}
+
+	private int getOrAddNode(Account account, CommunicationsManager commsManager) {
+		Integer node = accountIdToNode.get(account.getAccountID());
+		if (node != null) {
+			return node;
+		}
+		int accountTypeId = commsManager.getAccountTypeId(account.getAccountType());
+		if (!accountTypes.containsKey(accountTypeId)) {
+			accountTypes.put(accountTypeId, account.getAccountType());
+		}
+		return addNode(account, accountTypeId);
+	}
+
+	private int addDataSource(long objId, String deviceId) {
+		if (dataSourceCount == dataSourceObjIds.length) {
+			dataSourceObjIds = Arrays.copyOf(dataSourceObjIds, dataSourceCount * 2);
+			dataSourceDevices = Arrays.copyOf(dataSourceDevices, dataSourceCount * 2);
+		}
+		int device = -1;
+		if (deviceId != null) {
+			Integer index = deviceIdToIndex.get(deviceId);
+			if (index == null) {
+				index = deviceIds.size();
+				deviceIds.add(deviceId);
+				deviceIdToIndex.put(deviceId, index);
+			}
+			device = index;
+		}
+		dataSourceObjIds[dataSourceCount] = objId;
+		dataSourceDevices[dataSourceCount] = device;
+		dataSourceObjIdToIndex.put(objId, dataSourceCount);
+		return dataSourceCount++;
+	}
+
+	/**
+	 * Gets the index of a data source, adding it without a device if it is
+	 * not known.
+	 */
+	private int getDataSourceIndex(long objId) {
+		Integer index = dataSourceObjIdToIndex.get(objId);
+		if (index != null) {
+			return index;
+		}
+		return addDataSource(objId, null);
+	}
+
+	/**
+	 * Gets the index of a data source, looking up the device of a data source
+	 * added since the graph was loaded.
+	 */
+	private int resolveDataSource(long objId, CaseDbConnection connection) throws TskCoreException {
+		Integer index = dataSourceObjIdToIndex.get(objId);
+		if (index != null) {
+			return index;
+		}
+		Statement statement = null;
+		ResultSet resultSet = null;
+		try {
+			statement = connection.createStatement();
+			resultSet = connection.executeQuery(statement, "SELECT device_id FROM data_source_info WHERE obj_id = " + objId); //NON-NLS
+			return addDataSource(objId, resultSet.next() ? resultSet.getString("device_id") : null);
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error getting device id of data source " + objId, ex);
+		} finally {
+			closeResultSet(resultSet);
+			closeStatement(statement);
+		}
+	}
+
+	/**
+	 * A CommunicationsFilter translated for evaluation against the graph.
+	 */
+	static final class EdgeFilter {
+
+		private final List<boolean[]> relationshipTypeMasks = new ArrayList<boolean[]>();
+		private final List<boolean[]> accountTypeMasks = new ArrayList<boolean[]>();
+		private final List<Set<Long>> dataSourceObjIdSets = new ArrayList<Set<Long>>();
+		private long startDate = 0;
+		private long endDate = 0;
+
+		/**
+		 * Translates a filter. Subfilters that would produce no SQL
+		 * condition are ignored, as they are when the filter is run against
+		 * the case database.
+		 *
+		 * @param filter       The filter, may be null.
+		 * @param commsManager The communications manager, used to look up
+		 *                     account type ids and data sources.
+		 */
+		EdgeFilter(CommunicationsFilter filter, CommunicationsManager commsManager) {
+			if (null == filter) {
+				return;
+			}
+			for (CommunicationsFilter.SubFilter subFilter : filter.getAndFilters()) {
+				if (subFilter instanceof CommunicationsFilter.RelationshipTypeFilter) {
+					Set<Relationship.Type> types = ((CommunicationsFilter.RelationshipTypeFilter) subFilter).getRelationshipTypes();
+					if (!types.isEmpty()) {
+						List<Integer> typeIds = new ArrayList<Integer>();
+						for (Relationship.Type type : types) {
+							typeIds.add(type.getTypeID());
+						}
+						relationshipTypeMasks.add(toMask(typeIds));
+					}
+				} else if (subFilter instanceof CommunicationsFilter.AccountTypeFilter) {
+					Set<Account.Type> types = ((CommunicationsFilter.AccountTypeFilter) subFilter).getAccountTypes();
+					if (!types.isEmpty()) {
+						List<Integer> typeIds = new ArrayList<Integer>();
+						for (Account.Type type : types) {
+							typeIds.add(commsManager.getAccountTypeId(type));
+						}
+						accountTypeMasks.add(toMask(typeIds));
+					}
+				} else if (subFilter instanceof CommunicationsFilter.DateRangeFilter) {
+					CommunicationsFilter.DateRangeFilter dateRangeFilter = (CommunicationsFilter.DateRangeFilter) subFilter;
+					if (dateRangeFilter.getStartDate() > 0) {
+						startDate = Math.max(startDate, dateRangeFilter.getStartDate());
+					}
+					if (dateRangeFilter.getEndDate() > 0) {
+						endDate = endDate > 0 ? Math.min(endDate, dateRangeFilter.getEndDate()) : dateRangeFilter.getEndDate();
+					}
+				} else if (subFilter instanceof CommunicationsFilter.DeviceFilter) {
+					Set<Long> objIds = new HashSet<Long>();
+					for (String deviceId : ((CommunicationsFilter.DeviceFilter) subFilter).getDeviceIds()) {
+						try {
+							objIds.addAll(commsManager.getSleuthkitCase().getDataSourceObjIds(deviceId));
+						} catch (TskCoreException ex) {
+							LOGGER.log(Level.WARNING, "failed to get datasource object ids for deviceId", ex); //NON-NLS
+						}
+					}
+					if (!objIds.isEmpty()) {
+						dataSourceObjIdSets.add(objIds);
+					}
+				}
+			}
+		}
+
+		private static boolean[] toMask(List<Integer> ids) {
+			int max = 0;
+			for (int id : ids) {
+				max = Math.max(max, id);
+			}
+			boolean[] mask = new boolean[max + 1];
+			for (int id : ids) {
+				if (id >= 0) {
+					mask[id] = true;
+				}
+			}
+			return mask;
+		}
+
+		private static boolean inMask(boolean[] mask, int id) {
+			return id >= 0 && id < mask.length && mask[id];
+		}
+
+		boolean acceptsAccountType(int accountTypeId) {
+			for (boolean[] mask : accountTypeMasks) {
+				if (!inMask(mask, accountTypeId)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		boolean acceptsDataSource(long objId) {
+			for (Set<Long> objIds : dataSourceObjIdSets) {
+				if (!objIds.contains(objId)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Checks an edge against the relationship type, date range and
+		 * device subfilters. The device subfilters have been evaluated ahead
+		 * of time for each data source.
+		 */
+		boolean accepts(EdgeList edgeList, int edge, boolean[] acceptedDataSources) {
+			if (!acceptedDataSources[edgeList.dataSources[edge]]) {
+				return false;
+			}
+			long dateTime = edgeList.dateTimes[edge];
+			if (dateTime != NULL_DATE_TIME
+					&& ((startDate > 0 && dateTime < startDate) || (endDate > 0 && dateTime >= endDate))) {
+				return false;
+			}
+			for (boolean[] mask : relationshipTypeMasks) {
+				if (!inMask(mask, edgeList.types[edge])) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Growable parallel arrays of edges.
+	 */
+	private static final class EdgeList {
+
+		private int size;
+		private int[] account1;
+		private int[] account2;
+		private long[] sourceObjIds;
+		private long[] dateTimes;
+		private int[] types;
+		private int[] dataSources;
+
+		EdgeList(int capacity) {
+			capacity = Math.max(capacity, 1);
+			account1 = new int[capacity];
+			account2 = new int[capacity];
+			sourceObjIds = new long[capacity];
+			dateTimes = new long[capacity];
+			types = new int[capacity];
+			dataSources = new int[capacity];
+		}
+
+		void add(int node1, int node2, long sourceObjId, long dateTime, int type, int dataSource) {
+			if (size == account1.length) {
+				int capacity = size * 2;
+				account1 = Arrays.copyOf(account1, capacity);
+				account2 = Arrays.copyOf(account2, capacity);
+				sourceObjIds = Arrays.copyOf(sourceObjIds, capacity);
+				dateTimes = Arrays.copyOf(dateTimes, capacity);
+				types = Arrays.copyOf(types, capacity);
+				dataSources = Arrays.copyOf(dataSources, capacity);
+			}
+			account1[size] = node1;
+			account2[size] = node2;
+			sourceObjIds[size] = sourceObjId;
+			dateTimes[size] = dateTime;
+			types[size] = type;
+			dataSources[size] = dataSource;
+			size++;
+		}
+
+		void add(EdgeList other, int edge) {
+			add(other.account1[edge], other.account2[edge], other.sourceObjIds[edge], other.dateTimes[edge], other.types[edge], other.dataSources[edge]);
+		}
+
+		/**
+		 * Compares an edge with a sort key.
+		 */
+		int compare(int edge, int node1, int node2, long sourceObjId) {
+			if (account1[edge] != node1) {
+				return account1[edge] < node1 ? -1 : 1;
+			}
+			if (account2[edge] != node2) {
+				return account2[edge] < node2 ? -1 : 1;
+			}
+			if (sourceObjIds[edge] != sourceObjId) {
+				return sourceObjIds[edge] < sourceObjId ? -1 : 1;
+			}
+			return 0;
+		}
+	}
+
+	/**
+	 * Identifies an edge by its nodes and source object.
+	 */
+	private static final class EdgeKey {
+
+		private final int node1;
+		private final int node2;
+		private final long sourceObjId;
+
+		EdgeKey(int node1, int node2, long sourceObjId) {
+			this.node1 = node1;
+			this.node2 = node2;
+			this.sourceObjId = sourceObjId;
+		}
+
+		@Override
+		public int hashCode() {
+			int hash = 31 * node1 + node2;
+			return 31 * hash + Long.valueOf(sourceObjId).hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof EdgeKey)) {
+				return false;
+			}
+			EdgeKey other = (EdgeKey) obj;
+			return node1 == other.node1 && node2 == other.node2 && sourceObjId == other.sourceObjId;
+		}
+	}
+}
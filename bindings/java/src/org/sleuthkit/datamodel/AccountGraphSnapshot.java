@@ -0,0 +1,414 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2018 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * An immutable, undirected graph of account device instances taken from an
+ * AccountGraph with a CommunicationsFilter applied, with parallel graph
+ * algorithms over it. The adjacency is held in compressed sparse row form:
+ * the neighbors of node n are neighbors[offsets[n]] to
+ * neighbors[offsets[n + 1] - 1]. The algorithms split their work into ranges
+ * of nodes or edges that run as tasks on a ForkJoinPool.
+ */
+final class AccountGraphSnapshot {
+
+	// Nodes or edges handled by one task before it splits.
+	private static final int TASK_SIZE = 4096;
+
+	private final AccountDeviceInstance[] nodes;
+	// The nodes of each account, by device id.
+	private final Map<Long, Map<String, Integer>> accountIdToNodes = new HashMap<Long, Map<String, Integer>>();
+	private final int[] offsets;
+	private final int[] neighbors;
+	private final int maxDegree;
+
+	/**
+	 * Constructs a snapshot from a list of undirected edges. Each edge is
+	 * stored once for each end; edges from a node to itself are dropped.
+	 *
+	 * @param nodes     The account device instances, indexed by node.
+	 * @param edgeCount The number of edges.
+	 * @param ends1     The first end of each edge.
+	 * @param ends2     The second end of each edge.
+	 */
+	AccountGraphSnapshot(AccountDeviceInstance[] nodes, int edgeCount, int[] ends1, int[] ends2) {
+		this.nodes = nodes;
+		for (int node = 0; node < nodes.length; node++) {
+			long accountId = nodes[node].getAccount().getAccountID();
+			Map<String, Integer> deviceNodes = accountIdToNodes.get(accountId);
+			if (deviceNodes == null) {
+				deviceNodes = new HashMap<String, Integer>(2);
+				accountIdToNodes.put(accountId, deviceNodes);
+			}
+			deviceNodes.put(nodes[node].getDeviceId(), node);
+		}
+		offsets = new int[nodes.length + 1];
+		for (int edge = 0; edge < edgeCount; edge++) {
+			if (ends1[edge] != ends2[edge]) {
+				offsets[ends1[edge] + 1]++;
+				offsets[ends2[edge] + 1]++;
+			}
+		}
+		int max = 0;
+		for (int node = 0; node < nodes.length; node++) {
+			max = Math.max(max, offsets[node + 1]);
+			offsets[node + 1] += offsets[node];
+		}
+		maxDegree = max;
+		neighbors = new int[offsets[nodes.length]];
+		int[] next = Arrays.copyOf(offsets, nodes.length);
+		for (int edge = 0; edge < edgeCount; edge++) {
+			if (ends1[edge] != ends2[edge]) {
+				neighbors[next[ends1[edge]]++] = ends2[edge];
+				neighbors[next[ends2[edge]]++] = ends1[edge];
+			}
+		}
+	}
+
+	/**
+	 * Gets the node of an account device instance.
+	 *
+	 * @param accountDeviceInstance The account device instance.
+	 *
+	 * @return The node, or -1 if the account device instance has no
+	 *         relationships in the snapshot.
+	 */
+	int getNode(AccountDeviceInstance accountDeviceInstance) {
+		Map<String, Integer> deviceNodes = accountIdToNodes.get(accountDeviceInstance.getAccount().getAccountID());
+		if (deviceNodes == null) {
+			return -1;
+		}
+		Integer node = deviceNodes.get(accountDeviceInstance.getDeviceId());
+		return node == null ? -1 : node;
+	}
+
+	/**
+	 * Gets the number of relationships of a node with other nodes.
+	 *
+	 * @param node The node.
+	 *
+	 * @return The degree of the node.
+	 */
+	int getDegree(int node) {
+		return offsets[node + 1] - offsets[node];
+	}
+
+	/**
+	 * Finds a shortest path between two nodes with a bidirectional breadth
+	 * first search. Each step expands the smaller of the two frontiers, with
+	 * the frontier split across the pool.
+	 *
+	 * @param source The start node.
+	 * @param target The end node.
+	 * @param pool   The pool to run on.
+	 *
+	 * @return The account device instances along the path, from source to
+	 *         target, or an empty list if they are not connected.
+	 */
+	List<AccountDeviceInstance> getShortestPath(int source, int target, ForkJoinPool pool) {
+		List<AccountDeviceInstance> path = new ArrayList<AccountDeviceInstance>();
+		if (source == target) {
+			path.add(nodes[source]);
+			return path;
+		}
+		AtomicIntegerArray sourceParents = newParents();
+		AtomicIntegerArray targetParents = newParents();
+		sourceParents.set(source, source);
+		targetParents.set(target, target);
+		int[] sourceFrontier = new int[]{source};
+		int[] targetFrontier = new int[]{target};
+		AtomicInteger meeting = new AtomicInteger(-1);
+		while (sourceFrontier.length > 0 && targetFrontier.length > 0) {
+			if (sourceFrontier.length <= targetFrontier.length) {
+				sourceFrontier = expandFrontier(sourceFrontier, sourceParents, targetParents, meeting, pool);
+			} else {
+				targetFrontier = expandFrontier(targetFrontier, targetParents, sourceParents, meeting, pool);
+			}
+			if (meeting.get() >= 0) {
+				// Every meeting found in a step gives a path of the same,
+				// shortest length.
+				for (int node = meeting.get(); node != source; node = sourceParents.get(node)) {
+					path.add(nodes[node]);
+				}
+				path.add(nodes[source]);
+				Collections.reverse(path);
+				for (int node = meeting.get(); node != target;) {
+					node = targetParents.get(node);
+					path.add(nodes[node]);
+				}
+				return path;
+			}
+		}
+		return path;
+	}
+
+	private AtomicIntegerArray newParents() {
+		AtomicIntegerArray parents = new AtomicIntegerArray(nodes.length);
+		for (int node = 0; node < nodes.length; node++) {
+			parents.set(node, -1);
+		}
+		return parents;
+	}
+
+	/**
+	 * Visits the unvisited neighbors of a frontier, recording the first node
+	 * that the other search has already visited.
+	 *
+	 * @return The next frontier.
+	 */
+	private int[] expandFrontier(final int[] frontier, final AtomicIntegerArray parents, final AtomicIntegerArray otherParents,
+			final AtomicInteger meeting, ForkJoinPool pool) {
+		final int[] next = new int[nodes.length];
+		final AtomicInteger nextSize = new AtomicInteger();
+		pool.invoke(new RangeTask(0, frontier.length) {
+			@Override
+			void compute(int start, int end) {
+				for (int i = start; i < end; i++) {
+					int node = frontier[i];
+					for (int j = offsets[node]; j < offsets[node + 1]; j++) {
+						int neighbor = neighbors[j];
+						if (parents.compareAndSet(neighbor, -1, node)) {
+							if (otherParents.get(neighbor) >= 0) {
+								meeting.compareAndSet(-1, neighbor);
+							} else {
+								next[nextSize.getAndIncrement()] = neighbor;
+							}
+						}
+					}
+				}
+			}
+		});
+		return Arrays.copyOf(next, nextSize.get());
+	}
+
+	/**
+	 * Finds the connected components with a concurrent union-find over the
+	 * edges. Roots are always linked to smaller roots, so the links can be
+	 * made with compare-and-set without forming cycles.
+	 *
+	 * @param pool The pool to run on.
+	 *
+	 * @return The components, largest first.
+	 */
+	List<Set<AccountDeviceInstance>> getConnectedComponents(ForkJoinPool pool) {
+		final AtomicIntegerArray parents = new AtomicIntegerArray(nodes.length);
+		for (int node = 0; node < nodes.length; node++) {
+			parents.set(node, node);
+		}
+		pool.invoke(new RangeTask(0, nodes.length) {
+			@Override
+			void compute(int start, int end) {
+				for (int node = start; node < end; node++) {
+					for (int j = offsets[node]; j < offsets[node + 1]; j++) {
+						if (neighbors[j] < node) {
+							union(parents, node, neighbors[j]);
+						}
+					}
+				}
+			}
+		});
+		int[] labels = new int[nodes.length];
+		for (int node = 0; node < nodes.length; node++) {
+			labels[node] = find(parents, node);
+		}
+		return groupByLabel(labels);
+	}
+
+	private static int find(AtomicIntegerArray parents, int node) {
+		int parent = parents.get(node);
+		while (parent != node) {
+			// Path halving
+			int grandparent = parents.get(parent);
+			parents.compareAndSet(node, parent, grandparent);
+			node = grandparent;
+			parent = parents.get(node);
+		}
+		return node;
+	}
+
+	private static void union(AtomicIntegerArray parents, int node1, int node2) {
+		while (true) {
+			int root1 = find(parents, node1);
+			int root2 = find(parents, node2);
+			if (root1 == root2) {
+				return;
+			}
+			int larger = Math.max(root1, root2);
+			int smaller = Math.min(root1, root2);
+			if (parents.compareAndSet(larger, larger, smaller)) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Finds communities by synchronous label propagation. Every node starts
+	 * with its own label, and in each round takes the label most common
+	 * among its neighbors, keeping its own label on a tie if it is one of the
+	 * most common and otherwise taking the smallest. Rounds run until no
+	 * label changes or the round limit is reached.
+	 *
+	 * @param maxRounds The maximum number of rounds.
+	 * @param pool      The pool to run on.
+	 *
+	 * @return The communities, largest first.
+	 */
+	List<Set<AccountDeviceInstance>> getCommunities(int maxRounds, ForkJoinPool pool) {
+		int[] labels = new int[nodes.length];
+		for (int node = 0; node < nodes.length; node++) {
+			labels[node] = node;
+		}
+		for (int round = 0; round < maxRounds; round++) {
+			final int[] oldLabels = labels;
+			final int[] newLabels = new int[nodes.length];
+			final AtomicBoolean changed = new AtomicBoolean(false);
+			pool.invoke(new RangeTask(0, nodes.length) {
+				@Override
+				void compute(int start, int end) {
+					int[] neighborLabels = new int[maxDegree];
+					for (int node = start; node < end; node++) {
+						newLabels[node] = getMostCommonLabel(node, oldLabels, neighborLabels);
+						if (newLabels[node] != oldLabels[node]) {
+							changed.set(true);
+						}
+					}
+				}
+			});
+			labels = newLabels;
+			if (!changed.get()) {
+				break;
+			}
+		}
+		return groupByLabel(labels);
+	}
+
+	private int getMostCommonLabel(int node, int[] labels, int[] neighborLabels) {
+		int degree = offsets[node + 1] - offsets[node];
+		if (degree == 0) {
+			return labels[node];
+		}
+		for (int i = 0; i < degree; i++) {
+			neighborLabels[i] = labels[neighbors[offsets[node] + i]];
+		}
+		Arrays.sort(neighborLabels, 0, degree);
+		int bestLabel = neighborLabels[0];
+		int bestCount = 0;
+		int ownLabelCount = 0;
+		for (int i = 0; i < degree;) {
+			int j = i;
+			while (j < degree && neighborLabels[j] == neighborLabels[i]) {
+				j++;
+			}
+			if (j - i > bestCount) {
+				bestLabel = neighborLabels[i];
+				bestCount = j - i;
+			}
+			if (neighborLabels[i] == labels[node]) {
+				ownLabelCount = j - i;
+			}
+			i = j;
+		}
+		return ownLabelCount == bestCount ? labels[node] : bestLabel;
+	}
+
+	private List<Set<AccountDeviceInstance>> groupByLabel(int[] labels) {
+		Map<Integer, Set<AccountDeviceInstance>> groups = new HashMap<Integer, Set<AccountDeviceInstance>>();
+		for (int node = 0; node < nodes.length; node++) {
+			Set<AccountDeviceInstance> group = groups.get(labels[node]);
+			if (group == null) {
+				group = new HashSet<AccountDeviceInstance>();
+				groups.put(labels[node], group);
+			}
+			group.add(nodes[node]);
+		}
+		List<Set<AccountDeviceInstance>> result = new ArrayList<Set<AccountDeviceInstance>>(groups.values());
+		Collections.sort(result, new Comparator<Set<AccountDeviceInstance>>() {
+			@Override
+			public int compare(Set<AccountDeviceInstance> group1, Set<AccountDeviceInstance> group2) {
+				return Integer.compare(group2.size(), group1.size());
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * A task over a range of indexes that splits itself in half until the
+	 * range is small enough to process directly.
+	 */
+	private static abstract class RangeTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+		private final int start;
+		private final int end;
+
+		RangeTask(int start, int end) {
+			this.start = start;
+			this.end = end;
+		}
+
+		/**
+		 * Processes part of the range. Called concurrently for disjoint
+		 * parts.
+		 */
+		abstract void compute(int start, int end);
+
+		@Override
+		protected void compute() {
+			split(this, start, end);
+		}
+
+		private static void split(final RangeTask task, final int start, final int end) {
+			if (end - start <= TASK_SIZE) {
+				task.compute(start, end);
+				return;
+			}
+			final int middle = (start + end) >>> 1;
+			invokeAll(new RecursiveAction() {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected void compute() {
+					split(task, start, middle);
+				}
+			}, new RecursiveAction() {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected void compute() {
+					split(task, middle, end);
+				}
+			});
+		}
+	}
+}
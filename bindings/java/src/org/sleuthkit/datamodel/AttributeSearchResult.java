@@ -0,0 +1,132 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2018 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The result of a search for the blackboard artifacts that have an attribute
+ * with a given value, as returned by SleuthkitCase.searchBlackboardArtifacts():
+ * the artifacts found, and the index of the case database that the search
+ * was built to use.
+ */
+public final class AttributeSearchResult {
+
+	/**
+	 * How a string attribute value is matched.
+	 */
+	public enum TextMatch {
+
+		/**
+		 * The value is equal to the search string, including case.
+		 */
+		EXACT,
+		/**
+		 * The value starts with the search string, ignoring case.
+		 */
+		STARTS_WITH,
+		/**
+		 * The value contains the search string, ignoring case.
+		 */
+		CONTAINS
+	}
+
+	/**
+	 * The indexes of the case database that attribute searches use.
+	 */
+	public enum Index {
+
+		/**
+		 * The index of string values by attribute type, which serves exact
+		 * and starts with searches.
+		 */
+		VALUE_TEXT("attrsTypeValueText"), //NON-NLS
+		/**
+		 * The index of integer values by attribute type.
+		 */
+		VALUE_INT32("attrsTypeValueInt32"), //NON-NLS
+		/**
+		 * The index of long and date time values by attribute type.
+		 */
+		VALUE_INT64("attrsTypeValueInt64"), //NON-NLS
+		/**
+		 * The index of double values by attribute type.
+		 */
+		VALUE_DOUBLE("attrsTypeValueDouble"), //NON-NLS
+		/**
+		 * The index of byte values by attribute type.
+		 */
+		VALUE_BYTE("attrsTypeValueByte"), //NON-NLS
+		/**
+		 * The trigrams of the string values of an attribute type, which serve
+		 * contains searches for three or more characters.
+		 */
+		TRIGRAM("blackboard_attribute_trigrams"), //NON-NLS
+		/**
+		 * No index narrows the search by value, so every string value of the
+		 * attribute type is checked. Contains searches for fewer than three
+		 * characters are done this way.
+		 */
+		NONE("");
+
+		private final String name;
+
+		private Index(String name) {
+			this.name = name;
+		}
+
+		/**
+		 * Gets the name of the index or table in the case database.
+		 *
+		 * @return The name, or an empty string for NONE.
+		 */
+		public String getName() {
+			return name;
+		}
+	}
+
+	private final List<BlackboardArtifact> artifacts;
+	private final Index index;
+
+	AttributeSearchResult(List<BlackboardArtifact> artifacts, Index index) {
+		this.artifacts = Collections.unmodifiableList(new ArrayList<BlackboardArtifact>(artifacts));
+		this.index = index;
+	}
+
+	/**
+	 * Gets the artifacts found. Rejected artifacts are not included.
+	 *
+	 * @return An unmodifiable list of the artifacts, in the order of their
+	 *         artifact ids.
+	 */
+	public List<BlackboardArtifact> getArtifacts() {
+		return artifacts;
+	}
+
+	/**
+	 * Gets the index that served the search.
+	 *
+	 * @return The index.
+	 */
+	public Index getIndex() {
+		return index;
+	}
+}
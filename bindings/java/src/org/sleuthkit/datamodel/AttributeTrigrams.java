@@ -0,0 +1,120 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2018 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Computes the trigrams of the blackboard_attribute_trigrams table, which
+ * holds, for each artifact, the three character substrings of the lower case
+ * string values of its attributes. An artifact whose attribute contains a
+ * search string has every trigram of the search string, so the artifacts that
+ * have all of them are the candidates for a contains search.
+ */
+final class AttributeTrigrams {
+
+	/**
+	 * The trigram stored for values too long to index, which makes their
+	 * artifacts candidates for every search.
+	 */
+	static final String ANY = "";
+
+	/**
+	 * Values longer than this are not split into trigrams.
+	 */
+	private static final int MAX_INDEXED_LENGTH = 1024;
+
+	/**
+	 * The largest number of trigrams of a search string that are looked up.
+	 * Any subset of the trigrams finds every match, so long search strings
+	 * are not worth more lookups.
+	 */
+	private static final int MAX_SEARCH_TRIGRAMS = 8;
+
+	private AttributeTrigrams() {
+	}
+
+	/**
+	 * Converts a string to lower case one code point at a time, so that a
+	 * substring of a string is always a substring of it in lower case too.
+	 *
+	 * @param value The string.
+	 *
+	 * @return The string in lower case.
+	 */
+	static String toLowerCase(String value) {
+		StringBuilder lower = new StringBuilder(value.length());
+		for (int i = 0; i < value.length();) {
+			int codePoint = value.codePointAt(i);
+			lower.appendCodePoint(Character.toLowerCase(codePoint));
+			i += Character.charCount(codePoint);
+		}
+		return lower.toString();
+	}
+
+	/**
+	 * Gets the trigrams to store for an attribute value.
+	 *
+	 * @param value The value.
+	 *
+	 * @return The distinct trigrams of the value, or just ANY if the value is
+	 *         too long to index.
+	 */
+	static Set<String> getTrigrams(String value) {
+		Set<String> trigrams = new LinkedHashSet<String>();
+		if (value.length() > MAX_INDEXED_LENGTH) {
+			trigrams.add(ANY);
+			return trigrams;
+		}
+		addTrigrams(toLowerCase(value), trigrams);
+		return trigrams;
+	}
+
+	/**
+	 * Gets the trigrams to look up for a contains search.
+	 *
+	 * @param searchString The search string.
+	 *
+	 * @return Up to MAX_SEARCH_TRIGRAMS distinct trigrams of the search
+	 *         string, spread over it, or an empty list if the search string is
+	 *         shorter than three characters.
+	 */
+	static List<String> getSearchTrigrams(String searchString) {
+		Set<String> distinct = new LinkedHashSet<String>();
+		addTrigrams(toLowerCase(searchString), distinct);
+		List<String> all = new ArrayList<String>(distinct);
+		if (all.size() <= MAX_SEARCH_TRIGRAMS) {
+			return all;
+		}
+		List<String> trigrams = new ArrayList<String>(MAX_SEARCH_TRIGRAMS);
+		for (int i = 0; i < MAX_SEARCH_TRIGRAMS; i++) {
+			trigrams.add(all.get(i * (all.size() - 1) / (MAX_SEARCH_TRIGRAMS - 1)));
+		}
+		return trigrams;
+	}
+
+	private static void addTrigrams(String lower, Set<String> trigrams) {
+		for (int i = 0; i + 3 <= lower.length(); i++) {
+			trigrams.add(lower.substring(i, i + 3));
+		}
+	}
+}
@@ -312,7 +312,7 @@ public void setReviewStatus(ReviewStatus newStatus) throws TskCoreException {
 	public void addAttribute(BlackboardAttribute attribute) throws TskCoreException {
 		attribute.setArtifactId(artifactId);
 		attribute.setCaseDatabase(getSleuthkitCase());
-		getSleuthkitCase().addBlackboardAttribute(attribute, this.artifactTypeId);
+		getSleuthkitCase().addBlackboardAttribute(attribute, this);
 		attrsCache.add(attribute);
 	}
 
@@ -378,7 +378,7 @@ public void addAttributes(Collection<BlackboardAttribute> attributes) throws Tsk
 			attribute.setArtifactId(artifactId);
 			attribute.setCaseDatabase(getSleuthkitCase());
 		}
-		getSleuthkitCase().addBlackboardAttributes(attributes, artifactTypeId);
+		getSleuthkitCase().addBlackboardAttributes(attributes, this);
 		attrsCache.addAll(attributes);
 	}
 
@@ -84,13 +84,28 @@ static abstract class SubFilter {
 		public abstract String getDescription();
 
 		/**
-		 * Get the SQL string for the filter.
+		 * Get the SQL string for the filter, with its values written into the
+		 * text. The queries of the CommunicationsManager use appendSQL instead.
 		 *
 		 * @param commsManager Communications manager.
 		 *
-		 * @return SQL String for the filter.
+		 * @return SQL String for the filter, empty if the filter does not
+		 *         restrict the query.
 		 */
-		abstract String getSQL(CommunicationsManager commsManager);
+		public String getSQL(CommunicationsManager commsManager) {
+			ParameterizedSQL query = new ParameterizedSQL(commsManager.getSleuthkitCase().getDatabaseType());
+			appendSQL(query, commsManager);
+			return query.getLiteralSQL();
+		}
+
+		/**
+		 * Appends the SQL for the filter, with its values as parameters.
+		 * Appends nothing if the filter does not restrict the query.
+		 *
+		 * @param query        The statement to append to.
+		 * @param commsManager Communications manager.
+		 */
+		abstract void appendSQL(ParameterizedSQL query, CommunicationsManager commsManager);
 	}
 
 	/**
@@ -110,30 +125,31 @@ public RelationshipTypeFilter(Collection<Relationship.Type> relationshipTypes) {
 			this.relationshipTypes = new HashSet<Relationship.Type>(relationshipTypes);
 		}
 
+		/**
+		 * Gets the relationship types to include.
+		 *
+		 * @return The relationship types, empty to include all types.
+		 */
+		Set<Relationship.Type> getRelationshipTypes() {
+			return Collections.unmodifiableSet(relationshipTypes);
+		}
+
 		@Override
 		public String getDescription() {
 			return "Filters relationships by relationship type.";
 		}
 
-		/**
-		 * Get the SQL string for the filter.
-		 *
-		 * @param commsManager Communications manager.
-		 *
-		 * @return SQL String for the filter.
-		 */
 		@Override
-		public String getSQL(CommunicationsManager commsManager) {
+		void appendSQL(ParameterizedSQL query, CommunicationsManager commsManager) {
 			if (relationshipTypes.isEmpty()) {
-				return "";
+				return;
 			}
 
 			List<Integer> relationShipTypeIds = new ArrayList<Integer>();
 			for (Relationship.Type relType : relationshipTypes) {
 				relationShipTypeIds.add(relType.getTypeID());
 			}
-			return " relationships.relationship_type IN ( "
-					+ StringUtils.buildCSVString(relationShipTypeIds) + " )";
+			query.appendIn(" relationships.relationship_type", relationShipTypeIds);
 		}
 	}
 
@@ -162,34 +178,40 @@ public DateRangeFilter(long startDate, long endDate) {
 			}
 		}
 
-		@Override
-		public String getDescription() {
-			return "Filters communications by date range.";
+		/**
+		 * Gets the start of the date range.
+		 *
+		 * @return The start date, as epoch seconds, or 0 for no start date.
+		 */
+		long getStartDate() {
+			return startDate;
 		}
 
 		/**
-		 * Get the SQL string for the filter.
-		 *
-		 * @param commsManager Communications manager.
+		 * Gets the exclusive end of the date range.
 		 *
-		 * @return SQL String for the filter.
+		 * @return The end date, as epoch seconds, or 0 for no end date.
 		 */
+		long getEndDate() {
+			return endDate;
+		}
+
 		@Override
-		public String getSQL(CommunicationsManager commsManager) {
-			if ((0 == startDate) && (0 == endDate)) {
-				return "";
-			}
-			String sql = "";
+		public String getDescription() {
+			return "Filters communications by date range.";
+		}
+
+		@Override
+		void appendSQL(ParameterizedSQL query, CommunicationsManager commsManager) {
 			if (startDate > 0) {
-				sql = "(" + " relationships.date_time IS NULL OR relationships.date_time >= " + startDate + ")";
+				query.append("( relationships.date_time IS NULL OR relationships.date_time >= ").appendValue(startDate).append(")");
 			}
 			if (endDate > 0) {
-				if (!sql.isEmpty()) {
-					sql += " AND ";
+				if (startDate > 0) {
+					query.append(" AND ");
 				}
-				sql += "(" + " relationships.date_time IS NULL OR relationships.date_time < " + endDate + ")";
+				query.append("( relationships.date_time IS NULL OR relationships.date_time < ").appendValue(endDate).append(")");
 			}
-			return sql;
 		}
 	}
 
@@ -211,30 +233,31 @@ public AccountTypeFilter(Collection<Account.Type> accountTypes) {
 			this.accountTypes = new HashSet<Account.Type>(accountTypes);
 		}
 
+		/**
+		 * Gets the account types to include.
+		 *
+		 * @return The account types, empty to include all types.
+		 */
+		Set<Account.Type> getAccountTypes() {
+			return Collections.unmodifiableSet(accountTypes);
+		}
+
 		@Override
 		public String getDescription() {
 			return "Filters accounts and relationships by account type.";
 		}
 
-		/**
-		 * Get the SQL string for the filter.
-		 *
-		 * @param commsManager Communications manager.
-		 *
-		 * @return SQL String for the filter.
-		 */
 		@Override
-		public String getSQL(CommunicationsManager commsManager) {
+		void appendSQL(ParameterizedSQL query, CommunicationsManager commsManager) {
 			if (accountTypes.isEmpty()) {
-				return "";
+				return;
 			}
 
 			List<Integer> type_ids = new ArrayList<Integer>();
 			for (Account.Type accountType : accountTypes) {
 				type_ids.add(commsManager.getAccountTypeId(accountType));
 			}
-			String account_type_ids_list = StringUtils.buildCSVString(type_ids);
-			return " account_types.account_type_id IN ( " + account_type_ids_list + " )";
+			query.appendIn(" account_types.account_type_id", type_ids);
 		}
 	}
 
@@ -256,24 +279,22 @@ public DeviceFilter(Collection<String> deviceIds) {
 			this.deviceIds = new HashSet<String>(deviceIds);
 		}
 
+		/**
+		 * Gets the device ids to include.
+		 *
+		 * @return The device ids, empty to include all devices.
+		 */
+		Set<String> getDeviceIds() {
+			return Collections.unmodifiableSet(deviceIds);
+		}
+
 		@Override
 		public String getDescription() {
 			return "Filters accounts and relationships by device id.";
 		}
 
-		/**
-		 * Get the SQL string for the filter.
-		 *
-		 * @param commsManager Communications manager.
-		 *
-		 * @return SQL String for the filter.
-		 */
 		@Override
-		public String getSQL(CommunicationsManager commsManager) {
-			if (deviceIds.isEmpty()) {
-				return "";
-			}
-			String sql = "";
+		void appendSQL(ParameterizedSQL query, CommunicationsManager commsManager) {
 			List<Long> ds_ids = new ArrayList<Long>();
 			for (String deviceId : deviceIds) {
 				try {
@@ -282,11 +303,9 @@ public String getSQL(CommunicationsManager commsManager) {
 					Logger.getLogger(DeviceFilter.class.getName()).log(Level.WARNING, "failed to get datasource object ids for deviceId", ex);
 				}
 			}
-			String datasource_obj_ids_list = StringUtils.buildCSVString(ds_ids);
-			if (!datasource_obj_ids_list.isEmpty()) {
-				sql = " relationships.data_source_obj_id IN ( " + datasource_obj_ids_list + " )";
+			if (!ds_ids.isEmpty()) {
+				query.appendIn(" relationships.data_source_obj_id", ds_ids);
 			}
-			return sql;
 		}
 	}
 }
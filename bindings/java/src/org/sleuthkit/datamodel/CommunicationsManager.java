@@ -18,19 +18,27 @@
  */
 package org.sleuthkit.datamodel;
 
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Calendar;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.TimeZone;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.sleuthkit.datamodel.SleuthkitCase.CaseDbConnection;
@@ -63,6 +71,39 @@ public final class CommunicationsManager {
 	private static final String RELATIONSHIP_ARTIFACT_TYPE_IDS_CSV_STR
 			= StringUtils.buildCSVString(RELATIONSHIP_ARTIFACT_TYPE_IDS);
 
+	// Accounts are never deleted, so resolved accounts can be cached for the
+	// lifetime of the case. The cache is keyed by type and normalized ID.
+	private static final int MAX_CACHED_ACCOUNTS = 50000;
+	// Rows per multi-row statement, kept under the SQLite limit of 999
+	// parameters.
+	private static final int MAX_ACCOUNTS_PER_STATEMENT = 400;
+	private static final int MAX_RELATIONSHIPS_PER_BATCH = 1000;
+	// Width of the time buckets of the account_relationship_rollups table.
+	// Every time zone offset is a multiple of 15 minutes, so these buckets
+	// can be combined into local hours, days and weeks.
+	static final long ROLLUP_BUCKET_SECONDS = 900;
+	// The bucket of the account_relationship_rollups table that undated
+	// relationships are counted in.
+	static final long UNDATED_BUCKET_START = -1;
+	private final Map<AccountKey, Account> accountCache = Collections.synchronizedMap(new LinkedHashMap<AccountKey, Account>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<AccountKey, Account> eldest) {
+			return size() > MAX_CACHED_ACCOUNTS;
+		}
+	});
+	// Optional in-memory copy of the relationships, null when not enabled.
+	private volatile AccountGraph accountGraph;
+	// Whether the account_relationship_rollups table is kept up to date. It
+	// is emptied when the rollups are turned off, so that the setting is
+	// kept with the case: an empty table with relationships means that the
+	// rollups are off.
+	private volatile boolean rollupsEnabled = true;
+	// Runs the account graph algorithms of all cases. Its threads are daemon
+	// threads, so it is never shut down.
+	private static final ForkJoinPool GRAPH_POOL = new ForkJoinPool();
+
 	/**
 	 * Construct a CommunicationsManager for the given SleuthkitCase.
 	 *
@@ -74,6 +115,35 @@ public final class CommunicationsManager {
 	CommunicationsManager(SleuthkitCase skCase) throws TskCoreException {
 		this.db = skCase;
 		initAccountTypes();
+		initRollupsEnabled();
+	}
+
+	/**
+	 * Finds out whether the relationship rollups of the case are turned on,
+	 * i.e., whether the rollups table has rows unless there are no
+	 * relationships.
+	 *
+	 * @throws TskCoreException if there is an error querying the tables.
+	 */
+	private void initRollupsEnabled() throws TskCoreException {
+		CaseDbConnection connection = db.getConnection();
+		db.acquireSingleUserCaseReadLock();
+		Statement statement = null;
+		ResultSet resultSet = null;
+		try {
+			statement = connection.createStatement();
+			resultSet = connection.executeQuery(statement, "SELECT EXISTS (SELECT 1 FROM account_relationships) AS has_relationships," //NON-NLS
+					+ " EXISTS (SELECT 1 FROM account_relationship_rollups) AS has_rollups"); //NON-NLS
+			resultSet.next();
+			rollupsEnabled = resultSet.getBoolean("has_rollups") || !resultSet.getBoolean("has_relationships"); //NON-NLS
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error checking the relationship rollups", ex);
+		} finally {
+			closeResultSet(resultSet);
+			closeStatement(statement);
+			connection.close();
+			db.releaseSingleUserCaseReadLock();
+		}
 	}
 
 	/**
@@ -180,6 +250,329 @@ SleuthkitCase getSleuthkitCase() {
 		return this.db;
 	}
 
+	/**
+	 * Builds an in-memory index of the account relationships and uses it to
+	 * answer getAccountDeviceInstancesWithRelationships,
+	 * getRelationshipCountsPairwise and getRelatedAccountDeviceInstances
+	 * without querying the case database. The index takes roughly 40 bytes
+	 * per relationship. It is kept up to date with the relationships added
+	 * through this communications manager; call this method again to pick up
+	 * relationships added by other processes sharing a multi-user case.
+	 *
+	 * @throws TskCoreException if there is an error reading the relationships.
+	 */
+	public void enableGraphIndex() throws TskCoreException {
+		accountGraph = loadAccountGraph();
+	}
+
+	/**
+	 * Loads all of the account relationships into a new in-memory graph.
+	 *
+	 * @return The account graph.
+	 *
+	 * @throws TskCoreException if there is an error reading the relationships.
+	 */
+	private AccountGraph loadAccountGraph() throws TskCoreException {
+		Map<Integer, Account.Type> accountTypes = new HashMap<Integer, Account.Type>();
+		for (Map.Entry<Account.Type, Integer> entry : accountTypeToTypeIdMap.entrySet()) {
+			accountTypes.put(entry.getValue(), entry.getKey());
+		}
+		CaseDbConnection connection = db.getConnection();
+		db.acquireSingleUserCaseReadLock();
+		try {
+			return AccountGraph.load(connection, accountTypes);
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error building account graph index", ex);
+		} finally {
+			connection.close();
+			db.releaseSingleUserCaseReadLock();
+		}
+	}
+
+	/**
+	 * Takes a snapshot of the relationships accepted by a filter for the graph
+	 * algorithms, from the graph index if it is enabled and otherwise from the
+	 * case database.
+	 *
+	 * @param filter The filter, may be null.
+	 *
+	 * @return The snapshot.
+	 *
+	 * @throws TskCoreException if there is an error reading the relationships.
+	 */
+	private AccountGraphSnapshot getAccountGraphSnapshot(CommunicationsFilter filter) throws TskCoreException {
+		AccountGraph.EdgeFilter edgeFilter = new AccountGraph.EdgeFilter(filter, this);
+		AccountGraph graph = accountGraph;
+		if (graph != null) {
+			return graph.getSnapshot(edgeFilter);
+		}
+
+		// Read only the relationships accepted by the filter, one row per
+		// pair of accounts on a device with the number of relationships
+		// between them, so the snapshot has an edge per relationship as it
+		// does when it is taken from the graph index.
+		Set<String> applicableFilters = new HashSet<String>(Arrays.asList(
+				CommunicationsFilter.DateRangeFilter.class.getName(),
+				CommunicationsFilter.DeviceFilter.class.getName(),
+				CommunicationsFilter.RelationshipTypeFilter.class.getName()
+		));
+		ParameterizedSQL filterSQL = getCommunicationsFilterSQL(filter, applicableFilters);
+		ParameterizedSQL query = new ParameterizedSQL(db.getDatabaseType());
+		query.append("SELECT COUNT(*) AS count, data_source_info.device_id AS device_id, " //NON-NLS
+				+ "accounts1.account_id AS account1_id, accounts1.account_type_id AS account_type1_id, accounts1.account_unique_identifier AS account1_unique_identifier, " //NON-NLS
+				+ "accounts2.account_id AS account2_id, accounts2.account_type_id AS account_type2_id, accounts2.account_unique_identifier AS account2_unique_identifier " //NON-NLS
+				+ "FROM account_relationships AS relationships " //NON-NLS
+				+ "JOIN data_source_info AS data_source_info ON relationships.data_source_obj_id = data_source_info.obj_id " //NON-NLS
+				+ "JOIN accounts AS accounts1 ON accounts1.account_id = relationships.account1_id " //NON-NLS
+				+ "JOIN accounts AS accounts2 ON accounts2.account_id = relationships.account2_id"); //NON-NLS
+		if (!filterSQL.isEmpty()) {
+			query.append(" WHERE ").append(filterSQL); //NON-NLS
+		}
+		query.append(" GROUP BY data_source_info.device_id, accounts1.account_id, accounts1.account_type_id, accounts1.account_unique_identifier, " //NON-NLS
+				+ "accounts2.account_id, accounts2.account_type_id, accounts2.account_unique_identifier"); //NON-NLS
+
+		Map<Integer, Account.Type> accountTypes = new HashMap<Integer, Account.Type>();
+		for (Map.Entry<Account.Type, Integer> entry : accountTypeToTypeIdMap.entrySet()) {
+			accountTypes.put(entry.getValue(), entry.getKey());
+		}
+		Map<AccountDeviceInstance, Integer> nodes = new LinkedHashMap<AccountDeviceInstance, Integer>();
+		int[] ends1 = new int[16];
+		int[] ends2 = new int[16];
+		int edgeCount = 0;
+		CaseDbConnection connection = db.getConnection();
+		db.acquireSingleUserCaseReadLock();
+		PreparedStatement statement = null;
+		ResultSet rs = null;
+		try {
+			statement = query.prepareCached(connection);
+			rs = connection.executeQuery(statement);
+			while (rs.next()) {
+				int accountType1Id = rs.getInt("account_type1_id"); //NON-NLS
+				int accountType2Id = rs.getInt("account_type2_id"); //NON-NLS
+				if (!edgeFilter.acceptsAccountType(accountType1Id) || !edgeFilter.acceptsAccountType(accountType2Id)) {
+					continue;
+				}
+				String deviceId = rs.getString("device_id"); //NON-NLS
+				int node1 = getSnapshotNode(nodes, new AccountDeviceInstance(new Account(rs.getLong("account1_id"), //NON-NLS
+						accountTypes.get(accountType1Id), rs.getString("account1_unique_identifier")), deviceId)); //NON-NLS
+				int node2 = getSnapshotNode(nodes, new AccountDeviceInstance(new Account(rs.getLong("account2_id"), //NON-NLS
+						accountTypes.get(accountType2Id), rs.getString("account2_unique_identifier")), deviceId)); //NON-NLS
+				long count = rs.getLong("count"); //NON-NLS
+				for (long i = 0; i < count; i++) {
+					if (edgeCount == ends1.length) {
+						ends1 = Arrays.copyOf(ends1, edgeCount * 2);
+						ends2 = Arrays.copyOf(ends2, edgeCount * 2);
+					}
+					ends1[edgeCount] = node1;
+					ends2[edgeCount] = node2;
+					edgeCount++;
+				}
+			}
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error reading account relationships", ex);
+		} finally {
+			closeResultSet(rs);
+			connection.close();
+			db.releaseSingleUserCaseReadLock();
+		}
+		return new AccountGraphSnapshot(nodes.keySet().toArray(new AccountDeviceInstance[nodes.size()]), edgeCount, ends1, ends2);
+	}
+
+	/**
+	 * Gets the snapshot node of an account device instance, adding it if
+	 * needed. Nodes are numbered in the order they are added.
+	 */
+	private static int getSnapshotNode(Map<AccountDeviceInstance, Integer> nodes, AccountDeviceInstance accountDeviceInstance) {
+		Integer node = nodes.get(accountDeviceInstance);
+		if (node == null) {
+			node = nodes.size();
+			nodes.put(accountDeviceInstance, node);
+		}
+		return node;
+	}
+
+	/**
+	 * Finds a shortest chain of communications connecting two account device
+	 * instances, treating relationships as undirected. The search runs in
+	 * parallel, meeting in the middle from both ends.
+	 *
+	 * Applicable filters: DeviceFilter, DateRangeFilter,
+	 * RelationshipTypeFilter, AccountTypeFilter
+	 *
+	 * @param source The account device instance to start from.
+	 * @param target The account device instance to reach.
+	 * @param filter Filters to apply.
+	 *
+	 * @return The account device instances along the path, starting with
+	 *         source and ending with target, or an empty list if they are not
+	 *         connected.
+	 *
+	 * @throws org.sleuthkit.datamodel.TskCoreException
+	 */
+	public List<AccountDeviceInstance> getShortestPath(AccountDeviceInstance source, AccountDeviceInstance target, CommunicationsFilter filter) throws TskCoreException {
+		AccountGraphSnapshot snapshot = getAccountGraphSnapshot(filter);
+		int sourceNode = snapshot.getNode(source);
+		int targetNode = snapshot.getNode(target);
+		if (sourceNode < 0 || targetNode < 0) {
+			return new ArrayList<AccountDeviceInstance>();
+		}
+		return snapshot.getShortestPath(sourceNode, targetNode, GRAPH_POOL);
+	}
+
+	/**
+	 * Gets the connected components of the graph of account device instances
+	 * and the relationships between them. Account device instances without
+	 * relationships are not included.
+	 *
+	 * Applicable filters: DeviceFilter, DateRangeFilter,
+	 * RelationshipTypeFilter, AccountTypeFilter
+	 *
+	 * @param filter Filters to apply.
+	 *
+	 * @return The components, largest first.
+	 *
+	 * @throws org.sleuthkit.datamodel.TskCoreException
+	 */
+	public List<Set<AccountDeviceInstance>> getConnectedComponents(CommunicationsFilter filter) throws TskCoreException {
+		AccountGraphSnapshot snapshot = getAccountGraphSnapshot(filter);
+		return snapshot.getConnectedComponents(GRAPH_POOL);
+	}
+
+	/**
+	 * Partitions the graph of account device instances into communities of
+	 * accounts that communicate mostly with each other, using label
+	 * propagation. The communities are subsets of the connected components.
+	 *
+	 * Applicable filters: DeviceFilter, DateRangeFilter,
+	 * RelationshipTypeFilter, AccountTypeFilter
+	 *
+	 * @param filter    Filters to apply.
+	 * @param maxRounds The maximum number of propagation rounds. Propagation
+	 *                  usually settles within a few tens of rounds.
+	 *
+	 * @return The communities, largest first.
+	 *
+	 * @throws org.sleuthkit.datamodel.TskCoreException
+	 */
+	public List<Set<AccountDeviceInstance>> getCommunities(CommunicationsFilter filter, int maxRounds) throws TskCoreException {
+		AccountGraphSnapshot snapshot = getAccountGraphSnapshot(filter);
+		return snapshot.getCommunities(maxRounds, GRAPH_POOL);
+	}
+
+	/**
+	 * Discards the in-memory index of the account relationships, if any. The
+	 * account graph queries go to the case database again.
+	 */
+	public void disableGraphIndex() {
+		accountGraph = null;
+	}
+
+	/**
+	 * Indicates whether the account graph queries are answered from an
+	 * in-memory index.
+	 *
+	 * @return True if enableGraphIndex has been called and the index has not
+	 *         been discarded since.
+	 */
+	public boolean isGraphIndexEnabled() {
+		return accountGraph != null;
+	}
+
+	/**
+	 * Turns on the account_relationship_rollups table, which holds per
+	 * account relationship counts in 15 minute buckets, so that relationship
+	 * counts and histograms can be read from it instead of from the
+	 * relationships. The table is rebuilt from the relationships, since the
+	 * relationships added while the rollups were off are not in it. The
+	 * rollups are on for new cases.
+	 *
+	 * The setting is kept with the case, as an empty table, once the case has
+	 * relationships: a case without relationships always opens with the
+	 * rollups on. In a multi-user case, the other processes that have the
+	 * case open do not see the change until they open the case again, so the
+	 * rollups should only be turned on or off while no other process is
+	 * adding relationships.
+	 *
+	 * @throws TskCoreException if there is an error rebuilding the table.
+	 */
+	public void enableRelationshipRollups() throws TskCoreException {
+		CaseDbConnection connection = db.getConnection();
+		db.acquireSingleUserCaseWriteLock();
+		Statement statement = null;
+		try {
+			connection.beginTransaction();
+			statement = connection.createStatement();
+			connection.executeUpdate(statement, "DELETE FROM account_relationship_rollups"); //NON-NLS
+			connection.executeUpdate(statement, getFillRollupsSQL());
+			connection.commitTransaction();
+			rollupsEnabled = true;
+		} catch (SQLException ex) {
+			connection.rollbackTransaction();
+			throw new TskCoreException("Error rebuilding the relationship rollups", ex);
+		} finally {
+			closeStatement(statement);
+			connection.close();
+			db.releaseSingleUserCaseWriteLock();
+		}
+	}
+
+	/**
+	 * Turns off the account_relationship_rollups table, which makes adding
+	 * relationships cheaper on cases whose relationship counts are not
+	 * needed often. The table is emptied, and the relationship counts and
+	 * histograms are read from the relationships until the rollups are turned
+	 * on again. The setting is kept with the case, see
+	 * enableRelationshipRollups().
+	 *
+	 * @throws TskCoreException if there is an error emptying the table.
+	 */
+	public void disableRelationshipRollups() throws TskCoreException {
+		CaseDbConnection connection = db.getConnection();
+		db.acquireSingleUserCaseWriteLock();
+		Statement statement = null;
+		try {
+			statement = connection.createStatement();
+			connection.executeUpdate(statement, "DELETE FROM account_relationship_rollups"); //NON-NLS
+			rollupsEnabled = false;
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error emptying the relationship rollups", ex);
+		} finally {
+			closeStatement(statement);
+			connection.close();
+			db.releaseSingleUserCaseWriteLock();
+		}
+	}
+
+	/**
+	 * Indicates whether the account_relationship_rollups table is kept up to
+	 * date and used for relationship counts.
+	 *
+	 * @return True if the rollups are on.
+	 */
+	public boolean isRelationshipRollupsEnabled() {
+		return rollupsEnabled;
+	}
+
+	/**
+	 * Gets the SQL that fills in the account_relationship_rollups table from
+	 * the relationships. Undated relationships are counted in a bucket of
+	 * their own.
+	 *
+	 * @return The SQL.
+	 */
+	static String getFillRollupsSQL() {
+		String bucketStart = "CASE WHEN date_time > 0 THEN (date_time / " + ROLLUP_BUCKET_SECONDS + ") * " + ROLLUP_BUCKET_SECONDS
+				+ " ELSE " + UNDATED_BUCKET_START + " END";
+		return "INSERT INTO account_relationship_rollups (account_id, data_source_obj_id, relationship_type, bucket_start, source_count)"
+				+ " SELECT account_id, data_source_obj_id, relationship_type, bucket_start, COUNT(DISTINCT relationship_source_obj_id)"
+				+ " FROM ( SELECT account1_id AS account_id, data_source_obj_id, relationship_type, " + bucketStart + " AS bucket_start, relationship_source_obj_id"
+				+ "		FROM account_relationships"
+				+ "		UNION ALL"
+				+ "		SELECT account2_id AS account_id, data_source_obj_id, relationship_type, " + bucketStart + " AS bucket_start, relationship_source_obj_id"
+				+ "		FROM account_relationships ) AS rollup_sources"
+				+ " GROUP BY account_id, data_source_obj_id, relationship_type, bucket_start"; //NON-NLS
+	}
+
 	/**
 	 * Add a custom account type that is not already defined in Account.Type.
 	 * Will not allow duplicates and will return existing type if the name is
@@ -300,163 +693,480 @@ public AccountFileInstance createAccountFileInstance(org.sleuthkit.datamodel.Acc
 	 */
 	// NOTE: Full name given for Type for doxygen linking
 	public Account getAccount(org.sleuthkit.datamodel.Account.Type accountType, String accountUniqueID) throws TskCoreException {
-		Account account = null;
+		String normalizedAccountID = normalizeAccountID(accountType, accountUniqueID);
+		AccountKey key = new AccountKey(getAccountTypeId(accountType), normalizedAccountID);
+		Account account = accountCache.get(key);
+		if (null != account) {
+			return account;
+		}
+
 		CaseDbConnection connection = db.getConnection();
 		db.acquireSingleUserCaseReadLock();
-		Statement s = null;
-		ResultSet rs = null;
 		try {
-			s = connection.createStatement();
-			rs = connection.executeQuery(s, "SELECT * FROM accounts WHERE account_type_id = " + getAccountTypeId(accountType)
-					+ " AND account_unique_identifier = '" + normalizeAccountID(accountType, accountUniqueID) + "'"); //NON-NLS
-
-			if (rs.next()) {
-				account = new Account(rs.getInt("account_id"), accountType,
-						rs.getString("account_unique_identifier"));
-			}
+			Map<String, Account> accounts = readAccounts(accountType, Collections.singletonList(normalizedAccountID), connection);
+			return accounts.get(normalizedAccountID);
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error getting account type id", ex);
 		} finally {
-			closeResultSet(rs);
-			closeStatement(s);
 			connection.close();
 			db.releaseSingleUserCaseReadLock();
 		}
-
-		return account;
 	}
 
 	/**
-	 * Add a relationship between the sender and each of the recipient account
-	 * instances. All account instances must be from the same data source.
+	 * Gets the Accounts of the given type with the given account IDs, and
+	 * creates those that do not exist yet. Accounts are looked up in a cache
+	 * first, and the remaining ones are created with multi-row inserts that
+	 * ignore existing rows and then read back together, so resolving many IDs
+	 * takes a few statements rather than several per ID.
 	 *
-	 * @param sender           sender account
-	 * @param recipients       list of recipients
-	 * @param sourceArtifact   Artifact that relationships were derived from
-	 * @param relationshipType The type of relationships to be created
-	 * @param dateTime         Date of communications/relationship, as epoch
-	 *                         seconds
+	 * @param accountType      account type
+	 * @param accountUniqueIDs unique account identifiers (such as email
+	 *                         addresses)
 	 *
+	 * @return The account for each of the given IDs, keyed by the ID as
+	 *         given, i.e., before normalization.
 	 *
-	 * @throws org.sleuthkit.datamodel.TskCoreException
-	 * @throws org.sleuthkit.datamodel.TskDataException If the all the accounts
-	 *                                                  and the relationship are
-	 *                                                  not from the same data
-	 *                                                  source, or if the
-	 *                                                  sourceArtifact and
-	 *                                                  relationshipType are not
-	 *                                                  compatible.
+	 * @throws TskCoreException exception thrown if a critical error occurs
+	 *                          within TSK core
 	 */
 	// NOTE: Full name given for Type for doxygen linking
-	public void addRelationships(AccountFileInstance sender, List<AccountFileInstance> recipients,
-			BlackboardArtifact sourceArtifact, org.sleuthkit.datamodel.Relationship.Type relationshipType, long dateTime) throws TskCoreException, TskDataException {
-
-		if (relationshipType.isCreatableFrom(sourceArtifact) == false) {
-			throw new TskDataException("Can not make a " + relationshipType.getDisplayName()
-					+ " relationship from a" + sourceArtifact.getDisplayName());
+	public Map<String, Account> getOrCreateAccounts(org.sleuthkit.datamodel.Account.Type accountType, Collection<String> accountUniqueIDs) throws TskCoreException {
+		int accountTypeId = getAccountTypeId(accountType);
+		Map<String, Account> accounts = new HashMap<String, Account>();
+		Map<String, List<String>> uncachedIDs = new LinkedHashMap<String, List<String>>();
+		for (String accountUniqueID : accountUniqueIDs) {
+			String normalizedAccountID = normalizeAccountID(accountType, accountUniqueID);
+			Account account = accountCache.get(new AccountKey(accountTypeId, normalizedAccountID));
+			if (null != account) {
+				accounts.put(accountUniqueID, account);
+			} else {
+				if (!uncachedIDs.containsKey(normalizedAccountID)) {
+					uncachedIDs.put(normalizedAccountID, new ArrayList<String>());
+				}
+				uncachedIDs.get(normalizedAccountID).add(accountUniqueID);
+			}
+		}
+		if (uncachedIDs.isEmpty()) {
+			return accounts;
 		}
 
-		/*
-		 * Enforce that all accounts and the relationship between them are from
-		 * the same 'source'. This is required for the queries to work
-		 * correctly.
-		 */
-		// Currently we do not save the direction of communication
-		List<Long> accountIDs = new ArrayList<Long>();
-
-		if (null != sender) {
-			accountIDs.add(sender.getAccount().getAccountID());
-			if (sender.getDataSourceObjectID() != sourceArtifact.getDataSourceObjectID()) {
-				throw new TskDataException("Sender and relationship are from different data sources :"
-						+ "Sender source ID" + sender.getDataSourceObjectID() + " != relationship source ID" + sourceArtifact.getDataSourceObjectID());
-			}
+		String insertPrefix;
+		String insertSuffix;
+		switch (db.getDatabaseType()) {
+			case POSTGRESQL:
+				insertPrefix = "INSERT INTO accounts (account_type_id, account_unique_identifier) VALUES "; //NON-NLS
+				insertSuffix = " ON CONFLICT DO NOTHING"; //NON-NLS
+				break;
+			case SQLITE:
+				insertPrefix = "INSERT OR IGNORE INTO accounts (account_type_id, account_unique_identifier) VALUES "; //NON-NLS
+				insertSuffix = "";
+				break;
+			default:
+				throw new TskCoreException("Unknown DB Type: " + db.getDatabaseType().name());
 		}
 
-		for (AccountFileInstance recipient : recipients) {
-			accountIDs.add(recipient.getAccount().getAccountID());
-			if (recipient.getDataSourceObjectID() != sourceArtifact.getDataSourceObjectID()) {
-				throw new TskDataException("Recipient and relationship are from different data sources :"
-						+ "Recipient source ID" + recipient.getDataSourceObjectID() + " != relationship source ID" + sourceArtifact.getDataSourceObjectID());
+		List<String> normalizedAccountIDs = new ArrayList<String>(uncachedIDs.keySet());
+		Map<String, Account> resolvedAccounts = new HashMap<String, Account>();
+		CaseDbConnection connection = db.getConnection();
+		db.acquireSingleUserCaseWriteLock();
+		PreparedStatement insertStatement = null;
+		try {
+			connection.beginTransaction();
+			for (int start = 0; start < normalizedAccountIDs.size(); start += MAX_ACCOUNTS_PER_STATEMENT) {
+				List<String> chunk = normalizedAccountIDs.subList(start, Math.min(start + MAX_ACCOUNTS_PER_STATEMENT, normalizedAccountIDs.size()));
+				StringBuilder insert = new StringBuilder(insertPrefix);
+				for (int i = 0; i < chunk.size(); i++) {
+					insert.append(i == 0 ? "(?, ?)" : ", (?, ?)"); //NON-NLS
+				}
+				insert.append(insertSuffix);
+				insertStatement = connection.prepareStatement(insert.toString(), Statement.NO_GENERATED_KEYS);
+				int parameter = 1;
+				for (String normalizedAccountID : chunk) {
+					insertStatement.setInt(parameter++, accountTypeId);
+					insertStatement.setString(parameter++, normalizedAccountID);
+				}
+				connection.executeUpdate(insertStatement);
+				insertStatement.close();
+				insertStatement = null;
 			}
+			resolvedAccounts.putAll(readAccounts(accountType, normalizedAccountIDs, connection));
+			connection.commitTransaction();
+		} catch (SQLException ex) {
+			connection.rollbackTransaction();
+			throw new TskCoreException("Error adding accounts", ex);
+		} finally {
+			closeStatement(insertStatement);
+			connection.close();
+			db.releaseSingleUserCaseWriteLock();
 		}
 
-		for (int i = 0; i < accountIDs.size(); i++) {
-			for (int j = i + 1; j < accountIDs.size(); j++) {
-				try {
-					addAccountsRelationship(accountIDs.get(i), accountIDs.get(j),
-							sourceArtifact, relationshipType, dateTime);
-				} catch (TskCoreException ex) {
-					// @@@ This should probably not be caught and instead we stop adding
-					LOGGER.log(Level.WARNING, "Error adding relationship", ex); //NON-NLS
-				}
+		for (Map.Entry<String, List<String>> entry : uncachedIDs.entrySet()) {
+			Account account = resolvedAccounts.get(entry.getKey());
+			if (null == account) {
+				throw new TskCoreException("Failed to create account " + entry.getKey()); //NON-NLS
+			}
+			for (String accountUniqueID : entry.getValue()) {
+				accounts.put(accountUniqueID, account);
 			}
 		}
+		return accounts;
 	}
 
 	/**
-	 * Get the Account for the given account type and account ID. Create an a
-	 * new account if one doesn't exist
+	 * Reads the accounts of the given type with the given normalized IDs and
+	 * adds them to the account cache.
 	 *
-	 * @param accountType     account type
-	 * @param accountUniqueID unique account identifier
+	 * @param accountType          account type
+	 * @param normalizedAccountIDs normalized account IDs
+	 * @param connection           the connection to read with
 	 *
-	 * @return A matching account, either existing or newly created.
+	 * @return The accounts that exist, keyed by normalized ID.
 	 *
+	 * @throws SQLException     if the query fails
 	 * @throws TskCoreException exception thrown if a critical error occurs
 	 *                          within TSK core
 	 */
-	private Account getOrCreateAccount(Account.Type accountType, String accountUniqueID) throws TskCoreException {
-		Account account = getAccount(accountType, accountUniqueID);
-		if (null == account) {
-			String query = " INTO accounts (account_type_id, account_unique_identifier) "
-					+ "VALUES ( " + getAccountTypeId(accountType) + ", '"
-					+ normalizeAccountID(accountType, accountUniqueID) + "'" + ")";
-			switch (db.getDatabaseType()) {
-				case POSTGRESQL:
-					query = "INSERT " + query + " ON CONFLICT DO NOTHING"; //NON-NLS
-					break;
-				case SQLITE:
-					query = "INSERT OR IGNORE " + query;
-					break;
-				default:
-					throw new TskCoreException("Unknown DB Type: " + db.getDatabaseType().name());
-			}
-
-			CaseDbConnection connection = db.getConnection();
-			db.acquireSingleUserCaseWriteLock();
-			Statement s = null;
-			ResultSet rs = null;
-			try {
-				connection.beginTransaction();
-				s = connection.createStatement();
-
-				s.execute(query);
-
-				connection.commitTransaction();
-				account = getAccount(accountType, accountUniqueID);
-			} catch (SQLException ex) {
-				connection.rollbackTransaction();
-				throw new TskCoreException("Error adding an account", ex);
-			} finally {
-				closeResultSet(rs);
-				closeStatement(s);
-				connection.close();
-				db.releaseSingleUserCaseWriteLock();
+	private Map<String, Account> readAccounts(Account.Type accountType, List<String> normalizedAccountIDs, CaseDbConnection connection) throws SQLException, TskCoreException {
+		int accountTypeId = getAccountTypeId(accountType);
+		Map<String, Account> accounts = new HashMap<String, Account>();
+		PreparedStatement statement = null;
+		ResultSet rs = null;
+		try {
+			for (int start = 0; start < normalizedAccountIDs.size(); start += MAX_ACCOUNTS_PER_STATEMENT) {
+				List<String> chunk = normalizedAccountIDs.subList(start, Math.min(start + MAX_ACCOUNTS_PER_STATEMENT, normalizedAccountIDs.size()));
+				StringBuilder query = new StringBuilder("SELECT account_id, account_unique_identifier FROM accounts WHERE account_type_id = ? AND account_unique_identifier IN ("); //NON-NLS
+				for (int i = 0; i < chunk.size(); i++) {
+					query.append(i == 0 ? "?" : ", ?"); //NON-NLS
+				}
+				query.append(")");
+				statement = connection.prepareStatement(query.toString(), Statement.NO_GENERATED_KEYS);
+				int parameter = 1;
+				statement.setInt(parameter++, accountTypeId);
+				for (String normalizedAccountID : chunk) {
+					statement.setString(parameter++, normalizedAccountID);
+				}
+				rs = connection.executeQuery(statement);
+				while (rs.next()) {
+					Account account = new Account(rs.getLong("account_id"), accountType, rs.getString("account_unique_identifier"));
+					accounts.put(account.getTypeSpecificID(), account);
+					accountCache.put(new AccountKey(accountTypeId, account.getTypeSpecificID()), account);
+				}
+				rs.close();
+				rs = null;
+				statement.close();
+				statement = null;
 			}
+		} finally {
+			closeResultSet(rs);
+			closeStatement(statement);
 		}
-
-		return account;
+		return accounts;
 	}
 
 	/**
-	 * Get the blackboard artifact for the given account type, account ID, and
-	 * source file. Create an artifact if it doesn't already exist.
-	 *
-	 * @param accountType     account type
-	 * @param accountUniqueID Unique account ID (such as email address)
-	 * @param moduleName      module name that found this instance (for the
-	 *                        artifact)
-	 * @param sourceFile		    Source file (for the artifact)
+	 * Add a relationship between the sender and each of the recipient account
+	 * instances. All account instances must be from the same data source.
+	 *
+	 * @param sender           sender account
+	 * @param recipients       list of recipients
+	 * @param sourceArtifact   Artifact that relationships were derived from
+	 * @param relationshipType The type of relationships to be created
+	 * @param dateTime         Date of communications/relationship, as epoch
+	 *                         seconds
+	 *
+	 *
+	 * @throws org.sleuthkit.datamodel.TskCoreException
+	 * @throws org.sleuthkit.datamodel.TskDataException If the all the accounts
+	 *                                                  and the relationship are
+	 *                                                  not from the same data
+	 *                                                  source, or if the
+	 *                                                  sourceArtifact and
+	 *                                                  relationshipType are not
+	 *                                                  compatible.
+	 */
+	// NOTE: Full name given for Type for doxygen linking
+	public void addRelationships(AccountFileInstance sender, List<AccountFileInstance> recipients,
+			BlackboardArtifact sourceArtifact, org.sleuthkit.datamodel.Relationship.Type relationshipType, long dateTime) throws TskCoreException, TskDataException {
+		addRelationships(Collections.singletonList(new RelationshipRecord(sender, recipients, sourceArtifact, relationshipType, dateTime)));
+	}
+
+	/**
+	 * Adds the relationships described by many records at once. For each
+	 * record, a relationship is added between every pair of accounts among
+	 * the sender and the recipients, as by addRelationships(AccountFileInstance,
+	 * List, BlackboardArtifact, Relationship.Type, long). All of the records
+	 * are validated before anything is written. The pairs are then written as
+	 * JDBC batches in a single transaction. A pair that already exists for the
+	 * same source artifact is skipped.
+	 *
+	 * @param records The relationships to add.
+	 *
+	 * @throws org.sleuthkit.datamodel.TskCoreException
+	 * @throws org.sleuthkit.datamodel.TskDataException If, for any record,
+	 *                                                  the accounts and the
+	 *                                                  relationship are not
+	 *                                                  from the same data
+	 *                                                  source, or the source
+	 *                                                  artifact and
+	 *                                                  relationship type are
+	 *                                                  not compatible.
+	 */
+	public void addRelationships(Collection<RelationshipRecord> records) throws TskCoreException, TskDataException {
+		for (RelationshipRecord record : records) {
+			validateRelationshipRecord(record);
+		}
+
+		String insert = "INTO account_relationships (account1_id, account2_id, relationship_source_obj_id, date_time, relationship_type, data_source_obj_id) " //NON-NLS
+				+ "VALUES (?, ?, ?, ?, ?, ?)"; //NON-NLS
+		switch (db.getDatabaseType()) {
+			case POSTGRESQL:
+				insert = "INSERT " + insert + " ON CONFLICT DO NOTHING"; //NON-NLS
+				break;
+			case SQLITE:
+				insert = "INSERT OR IGNORE " + insert; //NON-NLS
+				break;
+			default:
+				throw new TskCoreException("Unknown DB Type: " + db.getDatabaseType().name());
+		}
+
+		CaseDbConnection connection = db.getConnection();
+		db.acquireSingleUserCaseWriteLock();
+		PreparedStatement statement = null;
+		try {
+			connection.beginTransaction();
+			Map<RollupKey, Long> rollupIncrements = rollupsEnabled ? getRollupIncrements(records, connection) : Collections.<RollupKey, Long>emptyMap();
+			statement = connection.prepareStatement(insert, Statement.NO_GENERATED_KEYS);
+			int batchCount = 0;
+			for (RelationshipRecord record : records) {
+				// Currently we do not save the direction of communication
+				List<Long> accountIDs = new ArrayList<Long>();
+				if (null != record.getSender()) {
+					accountIDs.add(record.getSender().getAccount().getAccountID());
+				}
+				for (AccountFileInstance recipient : record.getRecipients()) {
+					accountIDs.add(recipient.getAccount().getAccountID());
+				}
+
+				// Skip the pairs the unique constraint would reject anyway.
+				Set<AccountPairKey> pairs = new HashSet<AccountPairKey>();
+				for (int i = 0; i < accountIDs.size(); i++) {
+					for (int j = i + 1; j < accountIDs.size(); j++) {
+						if (!pairs.add(new AccountPairKey(accountIDs.get(i), accountIDs.get(j)))) {
+							continue;
+						}
+						statement.setLong(1, accountIDs.get(i));
+						statement.setLong(2, accountIDs.get(j));
+						statement.setLong(3, record.getSourceArtifact().getId());
+						if (record.getDateTime() > 0) {
+							statement.setLong(4, record.getDateTime());
+						} else {
+							statement.setNull(4, java.sql.Types.BIGINT);
+						}
+						statement.setInt(5, record.getRelationshipType().getTypeID());
+						statement.setLong(6, record.getSourceArtifact().getDataSourceObjectID());
+						statement.addBatch();
+						if (++batchCount % MAX_RELATIONSHIPS_PER_BATCH == 0) {
+							connection.executeBatch(statement);
+						}
+					}
+				}
+			}
+			connection.executeBatch(statement);
+			updateRollups(rollupIncrements, connection);
+			connection.commitTransaction();
+
+			// Update the graph index while still holding the write lock, so it
+			// stays in step with the table.
+			AccountGraph graph = accountGraph;
+			if (graph != null) {
+				try {
+					graph.addRelationships(records, this, connection);
+				} catch (TskCoreException ex) {
+					LOGGER.log(Level.WARNING, "Error adding relationships to the account graph index, discarding the index", ex); //NON-NLS
+					accountGraph = null;
+				}
+			}
+		} catch (SQLException ex) {
+			connection.rollbackTransaction();
+			throw new TskCoreException("Error adding accounts relationships", ex);
+		} finally {
+			closeStatement(statement);
+			connection.close();
+			db.releaseSingleUserCaseWriteLock();
+		}
+	}
+
+	/**
+	 * Works out how much the relationships described by some records will add
+	 * to the account_relationship_rollups table. Each account of a record is
+	 * counted once for the source artifact of the record, unless the account
+	 * already has a relationship from that artifact. Records without a date
+	 * are counted in the undated bucket.
+	 *
+	 * @param records    The records about to be added.
+	 * @param connection The case database connection.
+	 *
+	 * @return The source counts to add to the rollups, keyed by row.
+	 *
+	 * @throws SQLException     if there is an error querying the existing
+	 *                          relationships.
+	 * @throws TskCoreException if there is an error getting an account.
+	 */
+	private Map<RollupKey, Long> getRollupIncrements(Collection<RelationshipRecord> records, CaseDbConnection connection) throws SQLException, TskCoreException {
+		Map<RollupKey, Long> rollupIncrements = new HashMap<RollupKey, Long>();
+		Map<Long, Set<Long>> accountsBySource = new HashMap<Long, Set<Long>>();
+		for (RelationshipRecord record : records) {
+			accountsBySource.put(record.getSourceArtifact().getId(), new HashSet<Long>());
+		}
+		if (accountsBySource.isEmpty()) {
+			return rollupIncrements;
+		}
+
+		// Find the accounts already counted for each source.
+		List<Long> sourceObjIds = new ArrayList<Long>(accountsBySource.keySet());
+		Statement statement = null;
+		ResultSet resultSet = null;
+		try {
+			statement = connection.createStatement();
+			for (int start = 0; start < sourceObjIds.size(); start += MAX_ACCOUNTS_PER_STATEMENT) {
+				List<Long> chunk = sourceObjIds.subList(start, Math.min(start + MAX_ACCOUNTS_PER_STATEMENT, sourceObjIds.size()));
+				resultSet = connection.executeQuery(statement, "SELECT account1_id, account2_id, relationship_source_obj_id FROM account_relationships " //NON-NLS
+						+ "WHERE relationship_source_obj_id IN (" + StringUtils.buildCSVString(chunk) + ")"); //NON-NLS
+				while (resultSet.next()) {
+					Set<Long> accounts = accountsBySource.get(resultSet.getLong("relationship_source_obj_id"));
+					accounts.add(resultSet.getLong("account1_id"));
+					accounts.add(resultSet.getLong("account2_id"));
+				}
+				resultSet.close();
+				resultSet = null;
+			}
+		} finally {
+			closeResultSet(resultSet);
+			closeStatement(statement);
+		}
+
+		for (RelationshipRecord record : records) {
+			List<Long> accountIDs = new ArrayList<Long>();
+			if (null != record.getSender()) {
+				accountIDs.add(record.getSender().getAccount().getAccountID());
+			}
+			for (AccountFileInstance recipient : record.getRecipients()) {
+				accountIDs.add(recipient.getAccount().getAccountID());
+			}
+			if (accountIDs.size() < 2) {
+				// No relationships will be added.
+				continue;
+			}
+			Set<Long> countedAccounts = accountsBySource.get(record.getSourceArtifact().getId());
+			long bucketStart = record.getDateTime() > 0
+					? record.getDateTime() / ROLLUP_BUCKET_SECONDS * ROLLUP_BUCKET_SECONDS : UNDATED_BUCKET_START;
+			for (Long accountID : accountIDs) {
+				if (countedAccounts.add(accountID)) {
+					CounterRows.addCount(rollupIncrements, new RollupKey(accountID, record.getSourceArtifact().getDataSourceObjectID(),
+							record.getRelationshipType().getTypeID(), bucketStart), 1);
+				}
+			}
+		}
+		return rollupIncrements;
+	}
+
+	/**
+	 * Adds source counts to the account_relationship_rollups table, creating
+	 * rows as needed.
+	 *
+	 * @param increments The source counts to add, keyed by row.
+	 * @param connection The case database connection.
+	 *
+	 * @throws SQLException     if there is an error updating the table.
+	 * @throws TskCoreException if the database type is not known.
+	 */
+	private void updateRollups(Map<RollupKey, Long> increments, CaseDbConnection connection) throws SQLException, TskCoreException {
+		if (increments.isEmpty()) {
+			return;
+		}
+		String insert = "INTO account_relationship_rollups (account_id, data_source_obj_id, relationship_type, bucket_start, source_count) " //NON-NLS
+				+ "VALUES (?, ?, ?, ?, 0)"; //NON-NLS
+		switch (db.getDatabaseType()) {
+			case POSTGRESQL:
+				insert = "INSERT " + insert + " ON CONFLICT DO NOTHING"; //NON-NLS
+				break;
+			case SQLITE:
+				insert = "INSERT OR IGNORE " + insert; //NON-NLS
+				break;
+			default:
+				throw new TskCoreException("Unknown DB Type: " + db.getDatabaseType().name());
+		}
+		PreparedStatement insertStatement = null;
+		PreparedStatement updateStatement = null;
+		try {
+			insertStatement = connection.prepareStatement(insert, Statement.NO_GENERATED_KEYS);
+			updateStatement = connection.prepareStatement("UPDATE account_relationship_rollups SET source_count = source_count + ? " //NON-NLS
+					+ "WHERE account_id = ? AND data_source_obj_id = ? AND relationship_type = ? AND bucket_start = ?", Statement.NO_GENERATED_KEYS); //NON-NLS
+			CounterRows.update(increments, insertStatement, updateStatement, MAX_RELATIONSHIPS_PER_BATCH, connection);
+		} finally {
+			closeStatement(insertStatement);
+			closeStatement(updateStatement);
+		}
+	}
+
+	/**
+	 * Checks that a relationship record can be added: the relationship type
+	 * must be creatable from the source artifact, and all of the accounts must
+	 * be from the data source of the artifact. This is required for the
+	 * queries to work correctly.
+	 *
+	 * @param record The record to check.
+	 *
+	 * @throws TskDataException If the record is not valid.
+	 */
+	private void validateRelationshipRecord(RelationshipRecord record) throws TskDataException {
+		BlackboardArtifact sourceArtifact = record.getSourceArtifact();
+		Relationship.Type relationshipType = record.getRelationshipType();
+		if (relationshipType.isCreatableFrom(sourceArtifact) == false) {
+			throw new TskDataException("Can not make a " + relationshipType.getDisplayName()
+					+ " relationship from a" + sourceArtifact.getDisplayName());
+		}
+
+		AccountFileInstance sender = record.getSender();
+		if (null != sender && sender.getDataSourceObjectID() != sourceArtifact.getDataSourceObjectID()) {
+			throw new TskDataException("Sender and relationship are from different data sources :"
+					+ "Sender source ID" + sender.getDataSourceObjectID() + " != relationship source ID" + sourceArtifact.getDataSourceObjectID());
+		}
+
+		for (AccountFileInstance recipient : record.getRecipients()) {
+			if (recipient.getDataSourceObjectID() != sourceArtifact.getDataSourceObjectID()) {
+				throw new TskDataException("Recipient and relationship are from different data sources :"
+						+ "Recipient source ID" + recipient.getDataSourceObjectID() + " != relationship source ID" + sourceArtifact.getDataSourceObjectID());
+			}
+		}
+	}
+
+	/**
+	 * Get the Account for the given account type and account ID. Create an a
+	 * new account if one doesn't exist
+	 *
+	 * @param accountType     account type
+	 * @param accountUniqueID unique account identifier
+	 *
+	 * @return A matching account, either existing or newly created.
+	 *
+	 * @throws TskCoreException exception thrown if a critical error occurs
+	 *                          within TSK core
+	 */
+	private Account getOrCreateAccount(Account.Type accountType, String accountUniqueID) throws TskCoreException {
+		return getOrCreateAccounts(accountType, Collections.singletonList(accountUniqueID)).get(accountUniqueID);
+	}
+
+	/**
+	 * Get the blackboard artifact for the given account type, account ID, and
+	 * source file. Create an artifact if it doesn't already exist.
+	 *
+	 * @param accountType     account type
+	 * @param accountUniqueID Unique account ID (such as email address)
+	 * @param moduleName      module name that found this instance (for the
+	 *                        artifact)
+	 * @param sourceFile		    Source file (for the artifact)
 	 *
 	 * @return blackboard artifact for the account file instance
 	 *
@@ -582,55 +1292,6 @@ public org.sleuthkit.datamodel.Account.Type getAccountType(String accountTypeNam
 		}
 	}
 
-	/**
-	 * Add a row in account relationships table.
-	 *
-	 * @param account1_id           account_id for account1
-	 * @param account2_id           account_id for account2
-	 * @param relationshipaArtifact relationship artifact
-	 * @param relationshipType      The type of relationship to be created
-	 * @param dateTime              datetime of communication/relationship as
-	 *                              epoch seconds
-	 *
-	 * @throws TskCoreException exception thrown if a critical error occurs
-	 *                          within TSK core
-	 */
-	private void addAccountsRelationship(long account1_id, long account2_id, BlackboardArtifact relationshipaArtifact, Relationship.Type relationshipType, long dateTime) throws TskCoreException {
-		CaseDbConnection connection = db.getConnection();
-		db.acquireSingleUserCaseWriteLock();
-		Statement s = null;
-		ResultSet rs = null;
-
-		try {
-			String dateTimeValStr = (dateTime > 0) ? Long.toString(dateTime) : "NULL";
-
-			connection.beginTransaction();
-			s = connection.createStatement();
-			String query = "INTO account_relationships (account1_id, account2_id, relationship_source_obj_id, date_time, relationship_type, data_source_obj_id  ) "
-					+ "VALUES ( " + account1_id + ", " + account2_id + ", " + relationshipaArtifact.getId() + ", " + dateTimeValStr + ", " + relationshipType.getTypeID() + ", " + relationshipaArtifact.getDataSourceObjectID() + ")";
-			switch (db.getDatabaseType()) {
-				case POSTGRESQL:
-					query = "INSERT " + query + " ON CONFLICT DO NOTHING";
-					break;
-				case SQLITE:
-					query = "INSERT OR IGNORE " + query;
-					break;
-				default:
-					throw new TskCoreException("Unknown DB Type: " + db.getDatabaseType().name());
-			}
-			s.execute(query); //NON-NLS
-			connection.commitTransaction();
-		} catch (SQLException ex) {
-			connection.rollbackTransaction();
-			throw new TskCoreException("Error adding accounts relationship", ex);
-		} finally {
-			closeResultSet(rs);
-			closeStatement(s);
-			connection.close();
-			db.releaseSingleUserCaseWriteLock();
-		}
-	}
-
 	/**
 	 * Returns a list of AccountDeviceInstances that have at least one
 	 * relationship that meets the criteria listed in the filters.
@@ -646,74 +1307,89 @@ private void addAccountsRelationship(long account1_id, long account2_id, Blackbo
 	 *                          within TSK core
 	 */
 	public List<AccountDeviceInstance> getAccountDeviceInstancesWithRelationships(CommunicationsFilter filter) throws TskCoreException {
-		CaseDbConnection connection = db.getConnection();
-		db.acquireSingleUserCaseReadLock();
-		Statement s = null;
-		ResultSet rs = null;
-
-		try {
-			s = connection.createStatement();
-
-			//set up applicable filters 
-			Set<String> applicableInnerQueryFilters = new HashSet<String>(Arrays.asList(
-					CommunicationsFilter.DateRangeFilter.class.getName(),
-					CommunicationsFilter.DeviceFilter.class.getName(),
-					CommunicationsFilter.RelationshipTypeFilter.class.getName()
-			));
-			String innerQueryfilterSQL = getCommunicationsFilterSQL(filter, applicableInnerQueryFilters);
-
-			String innerQueryTemplate
-					= " SELECT %1$1s as account_id,"
-					+ "		  data_source_obj_id"
-					+ " FROM account_relationships as relationships"
-					+ (innerQueryfilterSQL.isEmpty() ? "" : " WHERE " + innerQueryfilterSQL);
-
-			String innerQuery1 = String.format(innerQueryTemplate, "account1_id");
-			String innerQuery2 = String.format(innerQueryTemplate, "account2_id");
+		AccountGraph graph = accountGraph;
+		if (graph != null) {
+			return graph.getAccountDeviceInstancesWithRelationships(new AccountGraph.EdgeFilter(filter, this));
+		}
 
-			//this query groups by account_id and data_source_obj_id across both innerQueries
-			String combinedInnerQuery
-					= "SELECT count(*) as relationship_count, account_id, data_source_obj_id "
-					+ " FROM ( " + innerQuery1 + " UNION " + innerQuery2 + " ) AS  inner_union"
-					+ " GROUP BY account_id, data_source_obj_id";
+		//set up applicable filters 
+		Set<String> applicableInnerQueryFilters = new HashSet<String>(Arrays.asList(
+				CommunicationsFilter.DateRangeFilter.class.getName(),
+				CommunicationsFilter.DeviceFilter.class.getName(),
+				CommunicationsFilter.RelationshipTypeFilter.class.getName()
+		));
+		ParameterizedSQL innerQueryfilterSQL = getCommunicationsFilterSQL(filter, applicableInnerQueryFilters);
 
-			// set up applicable filters
-			Set<String> applicableFilters = new HashSet<String>(Arrays.asList(
-					CommunicationsFilter.AccountTypeFilter.class.getName()
-			));
+		// set up applicable filters
+		Set<String> applicableFilters = new HashSet<String>(Arrays.asList(
+				CommunicationsFilter.AccountTypeFilter.class.getName()
+		));
+		ParameterizedSQL filterSQL = getCommunicationsFilterSQL(filter, applicableFilters);
 
-			String filterSQL = getCommunicationsFilterSQL(filter, applicableFilters);
-
-			String queryStr
-					= //account info
-					" accounts.account_id AS account_id,"
-					+ " accounts.account_unique_identifier AS account_unique_identifier,"
-					//account type info
-					+ " account_types.type_name AS type_name,"
-					//Account device instance info
-					+ " relationship_count,"
-					+ " data_source_info.device_id AS device_id"
-					+ " FROM ( " + combinedInnerQuery + " ) AS account_device_instances"
-					+ " JOIN accounts AS accounts"
-					+ "		ON accounts.account_id = account_device_instances.account_id"
-					+ " JOIN account_types AS account_types"
-					+ "		ON accounts.account_type_id = account_types.account_type_id"
-					+ " JOIN data_source_info AS data_source_info"
-					+ "		ON account_device_instances.data_source_obj_id = data_source_info.obj_id"
-					+ (filterSQL.isEmpty() ? "" : " WHERE " + filterSQL);
-
-			switch (db.getDatabaseType()) {
-				case POSTGRESQL:
-					queryStr = "SELECT DISTINCT ON ( accounts.account_id, data_source_info.device_id) " + queryStr;
-					break;
-				case SQLITE:
-					queryStr = "SELECT " + queryStr + " GROUP BY accounts.account_id, data_source_info.device_id";
-					break;
-				default:
-					throw new TskCoreException("Unknown DB Type: " + db.getDatabaseType().name());
+		ParameterizedSQL query = new ParameterizedSQL(db.getDatabaseType());
+		switch (db.getDatabaseType()) {
+			case POSTGRESQL:
+				query.append("SELECT DISTINCT ON ( accounts.account_id, data_source_info.device_id) ");
+				break;
+			case SQLITE:
+				query.append("SELECT ");
+				break;
+			default:
+				throw new TskCoreException("Unknown DB Type: " + db.getDatabaseType().name());
+		}
+		query.append(//account info
+				" accounts.account_id AS account_id,"
+				+ " accounts.account_unique_identifier AS account_unique_identifier,"
+				//account type info
+				+ " account_types.type_name AS type_name,"
+				//Account device instance info
+				+ " relationship_count,"
+				+ " data_source_info.device_id AS device_id");
+		String relationshipCountsSQL = getRelationshipCountsSQL(filter);
+		if (null != relationshipCountsSQL) {
+			// the counts are already kept per account_id and data_source_obj_id
+			query.append(" FROM ( SELECT SUM(relationships.source_count) as relationship_count, account_id, data_source_obj_id "
+					+ " FROM " + relationshipCountsSQL);
+			if (!innerQueryfilterSQL.isEmpty()) {
+				query.append(" WHERE ").append(innerQueryfilterSQL);
+			}
+		} else {
+			//this query groups by account_id and data_source_obj_id across both inner queries
+			query.append(" FROM ( SELECT count(*) as relationship_count, account_id, data_source_obj_id "
+					+ " FROM ( SELECT account1_id as account_id, data_source_obj_id"
+					+ " FROM account_relationships as relationships");
+			if (!innerQueryfilterSQL.isEmpty()) {
+				query.append(" WHERE ").append(innerQueryfilterSQL);
 			}
+			query.append(" UNION SELECT account2_id as account_id, data_source_obj_id"
+					+ " FROM account_relationships as relationships");
+			if (!innerQueryfilterSQL.isEmpty()) {
+				query.append(" WHERE ").append(innerQueryfilterSQL);
+			}
+			query.append(" ) AS  inner_union");
+		}
+		query.append(" GROUP BY account_id, data_source_obj_id ) AS account_device_instances"
+				+ " JOIN accounts AS accounts"
+				+ "		ON accounts.account_id = account_device_instances.account_id"
+				+ " JOIN account_types AS account_types"
+				+ "		ON accounts.account_type_id = account_types.account_type_id"
+				+ " JOIN data_source_info AS data_source_info"
+				+ "		ON account_device_instances.data_source_obj_id = data_source_info.obj_id");
+		if (!filterSQL.isEmpty()) {
+			query.append(" WHERE ").append(filterSQL);
+		}
+		if (db.getDatabaseType() == TskData.DbType.SQLITE) {
+			query.append(" GROUP BY accounts.account_id, data_source_info.device_id");
+		}
 
-			rs = connection.executeQuery(s, queryStr); //NON-NLS
+		CaseDbConnection connection = db.getConnection();
+		db.acquireSingleUserCaseReadLock();
+		PreparedStatement s = null;
+		ResultSet rs = null;
+
+		try {
+			s = query.prepareCached(connection);
+			rs = connection.executeQuery(s); //NON-NLS
 			ArrayList<AccountDeviceInstance> accountDeviceInstances = new ArrayList<AccountDeviceInstance>();
 			while (rs.next()) {
 				long account_id = rs.getLong("account_id");
@@ -731,7 +1407,6 @@ public List<AccountDeviceInstance> getAccountDeviceInstancesWithRelationships(Co
 			throw new TskCoreException("Error getting account device instances. " + ex.getMessage(), ex);
 		} finally {
 			closeResultSet(rs);
-			closeStatement(s);
 			connection.close();
 			db.releaseSingleUserCaseReadLock();
 		}
@@ -762,7 +1437,12 @@ public Map<AccountPair, Long> getRelationshipCountsPairwise(Set<AccountDeviceIns
 		Set<String> accountDeviceIDs = new HashSet<String>();
 		for (AccountDeviceInstance adi : accounts) {
 			accountIDs.add(adi.getAccount().getAccountID());
-			accountDeviceIDs.add("'" + adi.getDeviceId() + "'");
+			accountDeviceIDs.add(adi.getDeviceId());
+		}
+
+		AccountGraph graph = accountGraph;
+		if (graph != null) {
+			return graph.getRelationshipCountsPairwise(accountIDs, accountDeviceIDs, new AccountGraph.EdgeFilter(filter, this));
 		}
 		//set up applicable filters 
 		Set<String> applicableFilters = new HashSet<String>(Arrays.asList(
@@ -771,12 +1451,10 @@ public Map<AccountPair, Long> getRelationshipCountsPairwise(Set<AccountDeviceIns
 				CommunicationsFilter.RelationshipTypeFilter.class.getName()
 		));
 
-		String accountIDsCSL = StringUtils.buildCSVString(accountIDs);
-		String accountDeviceIDsCSL = StringUtils.buildCSVString(accountDeviceIDs);
-		String filterSQL = getCommunicationsFilterSQL(filter, applicableFilters);
+		ParameterizedSQL filterSQL = getCommunicationsFilterSQL(filter, applicableFilters);
 
-		final String queryString
-				= " SELECT  count(DISTINCT relationships.relationship_source_obj_id) AS count," //realtionship count
+		ParameterizedSQL query = new ParameterizedSQL(db.getDatabaseType());
+		query.append(" SELECT  count(DISTINCT relationships.relationship_source_obj_id) AS count," //realtionship count
 				+ "		data_source_info.device_id AS device_id,"
 				//account 1 info
 				+ "		accounts1.account_id AS account1_id,"
@@ -801,27 +1479,33 @@ public Map<AccountPair, Long> getRelationshipCountsPairwise(Set<AccountDeviceIns
 				+ "		ON accounts2.account_id = relationships.account2_id"
 				+ "	JOIN account_types AS account_types2"
 				+ "		ON accounts2.account_type_id = account_types2.account_type_id"
-				+ " WHERE (( relationships.account1_id IN (" + accountIDsCSL + ")) "
-				+ "		AND ( relationships.account2_id IN ( " + accountIDsCSL + " ))"
-				+ "		AND ( data_source_info.device_id IN (" + accountDeviceIDsCSL + "))) "
-				+ (filterSQL.isEmpty() ? "" : " AND " + filterSQL)
-				+ "  GROUP BY data_source_info.device_id, "
+				+ " WHERE (( ");
+		query.appendIn("relationships.account1_id", accountIDs);
+		query.append(" ) AND ( ");
+		query.appendIn("relationships.account2_id", accountIDs);
+		query.append(" ) AND ( ");
+		query.appendStringIn("data_source_info.device_id", accountDeviceIDs);
+		query.append(" )) ");
+		if (!filterSQL.isEmpty()) {
+			query.append(" AND ").append(filterSQL);
+		}
+		query.append("  GROUP BY data_source_info.device_id, "
 				+ "		accounts1.account_id, "
 				+ "		account_types1.type_name, "
 				+ "		account_types1.display_name, "
 				+ "		accounts2.account_id, "
 				+ "		account_types2.type_name, "
-				+ "		account_types2.display_name";
+				+ "		account_types2.display_name");
 		CaseDbConnection connection = db.getConnection();
 		db.acquireSingleUserCaseReadLock();
-		Statement s = null;
+		PreparedStatement s = null;
 		ResultSet rs = null;
 
 		Map<AccountPair, Long> results = new HashMap<AccountPair, Long>();
 
 		try {
-			s = connection.createStatement();
-			rs = connection.executeQuery(s, queryString); //NON-NLS
+			s = query.prepareCached(connection);
+			rs = connection.executeQuery(s); //NON-NLS
 
 			while (rs.next()) {
 				//make account 1
@@ -851,7 +1535,6 @@ public Map<AccountPair, Long> getRelationshipCountsPairwise(Set<AccountDeviceIns
 			throw new TskCoreException("Error getting relationships between accounts. " + ex.getMessage(), ex);
 		} finally {
 			closeResultSet(rs);
-			closeStatement(s);
 			connection.close();
 			db.releaseSingleUserCaseReadLock();
 		}
@@ -860,7 +1543,13 @@ public Map<AccountPair, Long> getRelationshipCountsPairwise(Set<AccountDeviceIns
 	/**
 	 * Get the number of unique relationship sources (such as EMAIL artifacts)
 	 * associated with an account on a given device (AccountDeviceInstance) that
-	 * meet the filter criteria.
+	 * meet the filter criteria. Unless the date range of the filter is finer
+	 * than 15 minutes, the count is read from the maintained per account
+	 * relationship counts rather than from the relationships. Those count a
+	 * source once for each account, at the date of the first relationships
+	 * added for the account, so a source given relationships with different
+	 * dates by more than one call to addRelationships() is only counted in
+	 * date ranges that include that first date.
 	 *
 	 * Applicable filters: RelationshipTypeFilter, DateRangeFilter
 	 *
@@ -877,40 +1566,49 @@ public long getRelationshipSourcesCount(AccountDeviceInstance accountDeviceInsta
 		long account_id = accountDeviceInstance.getAccount().getAccountID();
 
 		// Get the list of Data source objects IDs correpsonding to this DeviceID.
-		String datasourceObjIdsCSV = StringUtils.buildCSVString(
-				db.getDataSourceObjIds(accountDeviceInstance.getDeviceId()));
+		List<Long> datasourceObjIds = db.getDataSourceObjIds(accountDeviceInstance.getDeviceId());
 
 		// set up applicable filters
 		Set<String> applicableFilters = new HashSet<String>(Arrays.asList(
 				CommunicationsFilter.RelationshipTypeFilter.class.getName(),
 				CommunicationsFilter.DateRangeFilter.class.getName()
 		));
-		String filterSQL = getCommunicationsFilterSQL(filter, applicableFilters);
+		ParameterizedSQL filterSQL = getCommunicationsFilterSQL(filter, applicableFilters);
+
+		ParameterizedSQL query = new ParameterizedSQL(db.getDatabaseType());
+		String relationshipCountsSQL = getRelationshipCountsSQL(filter);
+		if (null != relationshipCountsSQL) {
+			query.append("SELECT SUM(relationships.source_count) as count "
+					+ "	FROM " + relationshipCountsSQL
+					+ " WHERE ");
+			query.appendIn("relationships.data_source_obj_id", datasourceObjIds);
+			query.append(" AND relationships.account_id = ").appendValue(account_id);
+		} else {
+			query.append("SELECT count(DISTINCT relationships.relationship_source_obj_id) as count "
+					+ "	FROM account_relationships AS relationships"
+					+ " WHERE ");
+			query.appendIn("relationships.data_source_obj_id", datasourceObjIds);
+			query.append(" AND ( relationships.account1_id = ").appendValue(account_id);
+			query.append("      OR  relationships.account2_id = ").appendValue(account_id).append(" )");
+		}
+		if (!filterSQL.isEmpty()) {
+			query.append(" AND ").append(filterSQL);
+		}
 
 		CaseDbConnection connection = db.getConnection();
 		db.acquireSingleUserCaseReadLock();
-		Statement s = null;
+		PreparedStatement s = null;
 		ResultSet rs = null;
 
 		try {
-			s = connection.createStatement();
-
-			String queryStr
-					= "SELECT count(DISTINCT relationships.relationship_source_obj_id) as count "
-					+ "	FROM account_relationships AS relationships"
-					+ " WHERE relationships.data_source_obj_id IN ( " + datasourceObjIdsCSV + " )"
-					+ " AND ( relationships.account1_id = " + account_id
-					+ "      OR  relationships.account2_id = " + account_id + " )"
-					+ (filterSQL.isEmpty() ? "" : " AND " + filterSQL);
-
-			rs = connection.executeQuery(s, queryStr); //NON-NLS
+			s = query.prepareCached(connection);
+			rs = connection.executeQuery(s); //NON-NLS
 			rs.next();
 			return (rs.getLong("count"));
 		} catch (SQLException ex) {
 			throw new TskCoreException("Error getting relationships count for account device instance. " + ex.getMessage(), ex);
 		} finally {
 			closeResultSet(rs);
-			closeStatement(s);
 			connection.close();
 			db.releaseSingleUserCaseReadLock();
 		}
@@ -938,31 +1636,6 @@ public Set<Content> getRelationshipSources(Set<AccountDeviceInstance> accountDev
 			return Collections.emptySet();
 		}
 
-		Map<Long, Set<Long>> accountIdToDatasourceObjIdMap = new HashMap<Long, Set<Long>>();
-		for (AccountDeviceInstance accountDeviceInstance : accountDeviceInstanceList) {
-			long accountID = accountDeviceInstance.getAccount().getAccountID();
-			List<Long> dataSourceObjIds = db.getDataSourceObjIds(accountDeviceInstance.getDeviceId());
-
-			if (accountIdToDatasourceObjIdMap.containsKey(accountID)) {
-				accountIdToDatasourceObjIdMap.get(accountID).addAll(dataSourceObjIds);
-			} else {
-				accountIdToDatasourceObjIdMap.put(accountID, new HashSet<Long>(dataSourceObjIds));
-			}
-		}
-
-		List<String> adiSQLClauses = new ArrayList<String>();
-		for (Map.Entry<Long, Set<Long>> entry : accountIdToDatasourceObjIdMap.entrySet()) {
-			final Long accountID = entry.getKey();
-			String datasourceObjIdsCSV = StringUtils.buildCSVString(entry.getValue());
-
-			adiSQLClauses.add(
-					"( ( relationships.data_source_obj_id IN ( " + datasourceObjIdsCSV + " ) )"
-					+ " AND ( relationships.account1_id = " + accountID
-					+ " OR relationships.account2_id = " + accountID + " ) )"
-			);
-		}
-		String adiSQLClause = StringUtils.joinAsStrings(adiSQLClauses, " OR ");
-
 		// set up applicable filters
 		Set<String> applicableFilters = new HashSet<String>(Arrays.asList(
 				CommunicationsFilter.RelationshipTypeFilter.class
@@ -970,31 +1643,35 @@ public Set<Content> getRelationshipSources(Set<AccountDeviceInstance> accountDev
 				CommunicationsFilter.DateRangeFilter.class
 						.getName()
 		));
-		String filterSQL = getCommunicationsFilterSQL(filter, applicableFilters);
+		ParameterizedSQL filterSQL = getCommunicationsFilterSQL(filter, applicableFilters);
+
+		ParameterizedSQL query = new ParameterizedSQL(db.getDatabaseType());
+		query.append("SELECT DISTINCT artifacts.artifact_id AS artifact_id,"
+				+ " artifacts.obj_id AS obj_id,"
+				+ " artifacts.artifact_obj_id AS artifact_obj_id,"
+				+ " artifacts.data_source_obj_id AS data_source_obj_id, "
+				+ " artifacts.artifact_type_id AS artifact_type_id, "
+				+ " artifacts.review_status_id AS review_status_id  "
+				+ " FROM blackboard_artifacts as artifacts"
+				+ " JOIN account_relationships AS relationships"
+				+ "	ON artifacts.artifact_obj_id = relationships.relationship_source_obj_id"
+				// append sql to restrict search to specified account device instances 
+				+ " WHERE (");
+		appendAccountDeviceInstancesSQL(query, accountDeviceInstanceList, false);
+		query.append(" )");
+		// plus other filters
+		if (!filterSQL.isEmpty()) {
+			query.append(" AND (").append(filterSQL).append(" )");
+		}
 
 		CaseDbConnection connection = db.getConnection();
 		db.acquireSingleUserCaseReadLock();
-		Statement s = null;
+		PreparedStatement s = null;
 		ResultSet rs = null;
 
 		try {
-			s = connection.createStatement();
-			String queryStr
-					= "SELECT DISTINCT artifacts.artifact_id AS artifact_id,"
-					+ " artifacts.obj_id AS obj_id,"
-					+ " artifacts.artifact_obj_id AS artifact_obj_id,"
-					+ " artifacts.data_source_obj_id AS data_source_obj_id, "
-					+ " artifacts.artifact_type_id AS artifact_type_id, "
-					+ " artifacts.review_status_id AS review_status_id  "
-					+ " FROM blackboard_artifacts as artifacts"
-					+ " JOIN account_relationships AS relationships"
-					+ "	ON artifacts.artifact_obj_id = relationships.relationship_source_obj_id"
-					// append sql to restrict search to specified account device instances 
-					+ " WHERE (" + adiSQLClause + " )"
-					// plus other filters
-					+ (filterSQL.isEmpty() ? "" : " AND (" + filterSQL + " )");
-
-			rs = connection.executeQuery(s, queryStr); //NON-NLS
+			s = query.prepareCached(connection);
+			rs = connection.executeQuery(s); //NON-NLS
 			Set<Content> relationshipSources = new HashSet<Content>();
 			while (rs.next()) {
 				BlackboardArtifact.Type bbartType = db.getArtifactType(rs.getInt("artifact_type_id"));
@@ -1010,7 +1687,6 @@ public Set<Content> getRelationshipSources(Set<AccountDeviceInstance> accountDev
 			throw new TskCoreException("Error getting relationships for account. " + ex.getMessage(), ex);
 		} finally {
 			closeResultSet(rs);
-			closeStatement(s);
 			connection.close();
 			db.releaseSingleUserCaseReadLock();
 		}
@@ -1035,6 +1711,11 @@ public List<AccountDeviceInstance> getRelatedAccountDeviceInstances(AccountDevic
 		final List<Long> dataSourceObjIds
 				= getSleuthkitCase().getDataSourceObjIds(accountDeviceInstance.getDeviceId());
 
+		AccountGraph graph = accountGraph;
+		if (graph != null) {
+			return graph.getRelatedAccountDeviceInstances(accountDeviceInstance.getAccount().getAccountID(), dataSourceObjIds, new AccountGraph.EdgeFilter(filter, this));
+		}
+
 		//set up applicable filters 
 		Set<String> applicableInnerQueryFilters = new HashSet<String>(Arrays.asList(
 				CommunicationsFilter.DateRangeFilter.class.getName(),
@@ -1042,69 +1723,75 @@ public List<AccountDeviceInstance> getRelatedAccountDeviceInstances(AccountDevic
 				CommunicationsFilter.RelationshipTypeFilter.class.getName()
 		));
 
-		String innerQueryfilterSQL = getCommunicationsFilterSQL(filter, applicableInnerQueryFilters);
-
-		String innerQueryTemplate
-				= " SELECT %1$1s as account_id,"
-				+ "		  data_source_obj_id"
-				+ " FROM account_relationships as relationships"
-				+ " WHERE %2$1s = " + accountDeviceInstance.getAccount().getAccountID() + ""
-				+ " AND data_source_obj_id IN (" + StringUtils.buildCSVString(dataSourceObjIds) + ")"
-				+ (innerQueryfilterSQL.isEmpty() ? "" : " AND " + innerQueryfilterSQL);
-
-		String innerQuery1 = String.format(innerQueryTemplate, "account1_id", "account2_id");
-		String innerQuery2 = String.format(innerQueryTemplate, "account2_id", "account1_id");
-
-		//this query groups by account_id and data_source_obj_id across both innerQueries
-		String combinedInnerQuery
-				= "SELECT account_id, data_source_obj_id "
-				+ " FROM ( " + innerQuery1 + " UNION " + innerQuery2 + " ) AS  inner_union"
-				+ " GROUP BY account_id, data_source_obj_id";
+		ParameterizedSQL innerQueryfilterSQL = getCommunicationsFilterSQL(filter, applicableInnerQueryFilters);
 
 		// set up applicable filters
 		Set<String> applicableFilters = new HashSet<String>(Arrays.asList(
 				CommunicationsFilter.AccountTypeFilter.class.getName()
 		));
 
-		String filterSQL = getCommunicationsFilterSQL(filter, applicableFilters);
+		ParameterizedSQL filterSQL = getCommunicationsFilterSQL(filter, applicableFilters);
 
-		String queryStr
-				= //account info
+		ParameterizedSQL query = new ParameterizedSQL(db.getDatabaseType());
+		switch (db.getDatabaseType()) {
+			case POSTGRESQL:
+				query.append("SELECT DISTINCT ON ( accounts.account_id, data_source_info.device_id) ");
+				break;
+			case SQLITE:
+				query.append("SELECT ");
+				break;
+			default:
+				throw new TskCoreException("Unknown DB Type: " + db.getDatabaseType().name());
+		}
+		query.append(//account info
 				" accounts.account_id AS account_id,"
 				+ " accounts.account_unique_identifier AS account_unique_identifier,"
 				//account type info
 				+ " account_types.type_name AS type_name,"
 				//Account device instance info
 				+ " data_source_info.device_id AS device_id"
-				+ " FROM ( " + combinedInnerQuery + " ) AS account_device_instances"
+				//this query groups by account_id and data_source_obj_id across both inner queries
+				+ " FROM ( SELECT account_id, data_source_obj_id "
+				+ " FROM ( ");
+		String[][] innerQueryColumns = {{"account1_id", "account2_id"}, {"account2_id", "account1_id"}}; //NON-NLS
+		for (int i = 0; i < innerQueryColumns.length; i++) {
+			if (i > 0) {
+				query.append(" UNION ");
+			}
+			query.append(" SELECT " + innerQueryColumns[i][0] + " as account_id,"
+					+ "		  data_source_obj_id"
+					+ " FROM account_relationships as relationships"
+					+ " WHERE " + innerQueryColumns[i][1] + " = ");
+			query.appendValue(accountDeviceInstance.getAccount().getAccountID());
+			query.append(" AND ");
+			query.appendIn("data_source_obj_id", dataSourceObjIds);
+			if (!innerQueryfilterSQL.isEmpty()) {
+				query.append(" AND ").append(innerQueryfilterSQL);
+			}
+		}
+		query.append(" ) AS  inner_union"
+				+ " GROUP BY account_id, data_source_obj_id ) AS account_device_instances"
 				+ " JOIN accounts AS accounts"
 				+ "		ON accounts.account_id = account_device_instances.account_id"
 				+ " JOIN account_types AS account_types"
 				+ "		ON accounts.account_type_id = account_types.account_type_id"
 				+ " JOIN data_source_info AS data_source_info"
-				+ "		ON account_device_instances.data_source_obj_id = data_source_info.obj_id"
-				+ (filterSQL.isEmpty() ? "" : " WHERE " + filterSQL);
-
-		switch (db.getDatabaseType()) {
-			case POSTGRESQL:
-				queryStr = "SELECT DISTINCT ON ( accounts.account_id, data_source_info.device_id) " + queryStr;
-				break;
-			case SQLITE:
-				queryStr = "SELECT " + queryStr + " GROUP BY accounts.account_id, data_source_info.device_id";
-				break;
-			default:
-				throw new TskCoreException("Unknown DB Type: " + db.getDatabaseType().name());
+				+ "		ON account_device_instances.data_source_obj_id = data_source_info.obj_id");
+		if (!filterSQL.isEmpty()) {
+			query.append(" WHERE ").append(filterSQL);
+		}
+		if (db.getDatabaseType() == TskData.DbType.SQLITE) {
+			query.append(" GROUP BY accounts.account_id, data_source_info.device_id");
 		}
 
 		CaseDbConnection connection = db.getConnection();
 		db.acquireSingleUserCaseReadLock();
-		Statement s = null;
+		PreparedStatement s = null;
 		ResultSet rs = null;
 
 		try {
-			s = connection.createStatement();
-
-			rs = connection.executeQuery(s, queryStr); //NON-NLS
+			s = query.prepareCached(connection);
+			rs = connection.executeQuery(s); //NON-NLS
 			ArrayList<AccountDeviceInstance> accountDeviceInstances = new ArrayList<AccountDeviceInstance>();
 			while (rs.next()) {
 				long account_id = rs.getLong("account_id");
@@ -1122,12 +1809,257 @@ public List<AccountDeviceInstance> getRelatedAccountDeviceInstances(AccountDevic
 			throw new TskCoreException("Error getting account device instances. " + ex.getMessage(), ex);
 		} finally {
 			closeResultSet(rs);
-			closeStatement(s);
 			connection.close();
 			db.releaseSingleUserCaseReadLock();
 		}
 	}
 
+	/**
+	 * Gets one page of the sources of the relationships of a set of account
+	 * device instances, as lightweight handles that load the source content
+	 * only when asked. The sources are ordered by the earliest date of their
+	 * matching relationships and then by object id, with undated sources
+	 * first. Pass the last handle of a page to get the next page. The pages
+	 * are read from the relationships with a keyset condition on their dates
+	 * and source object ids, which the date_time index can answer, so later
+	 * pages cost no more than the first. A source is only kept at the
+	 * earliest date of its matching relationships; its relationships with
+	 * later dates, if any, are skipped.
+	 *
+	 * Applicable filters: RelationshipTypeFilter, DateRangeFilter
+	 *
+	 * @param accountDeviceInstances The account device instances.
+	 * @param filter                 Filters to apply.
+	 * @param after                  The last source of the previous page, or
+	 *                               null for the first page.
+	 * @param pageSize               The maximum number of sources to return.
+	 *
+	 * @return The sources, an empty list after the last page.
+	 *
+	 * @throws org.sleuthkit.datamodel.TskCoreException
+	 */
+	public List<RelationshipSourceHandle> getRelationshipSources(Set<AccountDeviceInstance> accountDeviceInstances, CommunicationsFilter filter,
+			RelationshipSourceHandle after, int pageSize) throws TskCoreException {
+		if (pageSize <= 0) {
+			throw new IllegalArgumentException("Page size must be positive"); //NON-NLS
+		}
+		List<RelationshipSourceHandle> sources = new ArrayList<RelationshipSourceHandle>();
+		if (accountDeviceInstances.isEmpty()) {
+			return sources;
+		}
+
+		Set<String> applicableFilters = new HashSet<String>(Arrays.asList(
+				CommunicationsFilter.RelationshipTypeFilter.class.getName(),
+				CommunicationsFilter.DateRangeFilter.class.getName()
+		));
+		ParameterizedSQL filterSQL = getCommunicationsFilterSQL(filter, applicableFilters);
+
+		// The undated relationships are read first, ordered by source, and
+		// then the dated ones, ordered by date and source.
+		boolean undated = (null == after || after.getDateTime() <= 0);
+		long afterTime = (null == after) ? 0 : after.getDateTime();
+		long afterSourceObjID = (null == after) ? 0 : after.getSourceObjectID();
+
+		CaseDbConnection connection = db.getConnection();
+		db.acquireSingleUserCaseReadLock();
+		try {
+			while (sources.size() < pageSize) {
+				int limit = pageSize - sources.size();
+				List<RelationshipSourceHandle> rows = readRelationshipSources(accountDeviceInstances, filterSQL,
+						undated, afterTime, afterSourceObjID, limit, connection);
+				if (undated) {
+					sources.addAll(rows);
+				} else {
+					// The relationships of one source can have different
+					// dates, e.g. if they were added by more than one call to
+					// addRelationships(), so keep a source only at the
+					// earliest of them.
+					Map<Long, Long> earliestTimes = getEarliestRelationshipTimes(accountDeviceInstances, filterSQL, rows, connection);
+					for (RelationshipSourceHandle row : rows) {
+						if (row.getDateTime() == earliestTimes.get(row.getSourceObjectID())) {
+							sources.add(row);
+						}
+					}
+				}
+				if (rows.size() < limit) {
+					if (!undated) {
+						break;
+					}
+					undated = false;
+					afterTime = 0;
+					afterSourceObjID = 0;
+				} else {
+					RelationshipSourceHandle last = rows.get(rows.size() - 1);
+					afterTime = last.getDateTime();
+					afterSourceObjID = last.getSourceObjectID();
+				}
+			}
+			return sources;
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error getting relationship sources for accounts. " + ex.getMessage(), ex);
+		} finally {
+			connection.close();
+			db.releaseSingleUserCaseReadLock();
+		}
+	}
+
+	/**
+	 * Reads the distinct sources and dates of the relationships of a set of
+	 * account device instances that follow a keyset position, either among
+	 * the undated relationships, ordered by source, or among the dated ones,
+	 * ordered by date and source.
+	 *
+	 * @param accountDeviceInstances The account device instances.
+	 * @param filterSQL              The filter condition, may be empty.
+	 * @param undated                True to read the undated relationships,
+	 *                               false to read the dated ones.
+	 * @param afterTime              The date of the keyset position, 0 for
+	 *                               the start of the undated or dated
+	 *                               relationships.
+	 * @param afterSourceObjID       The source of the keyset position, 0 for
+	 *                               the start.
+	 * @param limit                  The maximum number of rows to read.
+	 * @param connection             The case database connection.
+	 *
+	 * @return The sources, with their dates.
+	 *
+	 * @throws SQLException     if there is an error querying the
+	 *                          relationships.
+	 * @throws TskCoreException if there is an error getting the data sources.
+	 */
+	private List<RelationshipSourceHandle> readRelationshipSources(Set<AccountDeviceInstance> accountDeviceInstances, ParameterizedSQL filterSQL,
+			boolean undated, long afterTime, long afterSourceObjID, int limit, CaseDbConnection connection) throws SQLException, TskCoreException {
+		ParameterizedSQL query = new ParameterizedSQL(db.getDatabaseType());
+		query.append("SELECT DISTINCT relationships.relationship_source_obj_id AS source_obj_id,"
+				+ (undated ? " 0" : " relationships.date_time") + " AS sort_time,"
+				+ " relationships.data_source_obj_id AS data_source_obj_id"
+				+ " FROM account_relationships AS relationships"
+				+ " WHERE (");
+		appendAccountDeviceInstancesSQL(query, accountDeviceInstances, false);
+		query.append(" )");
+		if (!filterSQL.isEmpty()) {
+			query.append(" AND (").append(filterSQL).append(" )");
+		}
+		if (undated) {
+			query.append(" AND ( relationships.date_time IS NULL OR relationships.date_time <= 0 )");
+			query.append(" AND relationships.relationship_source_obj_id > ").appendValue(afterSourceObjID);
+			query.append(" ORDER BY source_obj_id");
+		} else {
+			if (afterTime <= 0) {
+				query.append(" AND relationships.date_time > 0");
+			} else {
+				query.append(" AND ( relationships.date_time > ").appendValue(afterTime);
+				query.append(" OR ( relationships.date_time = ").appendValue(afterTime);
+				query.append(" AND relationships.relationship_source_obj_id > ").appendValue(afterSourceObjID).append(" ) )");
+			}
+			query.append(" ORDER BY sort_time, source_obj_id");
+		}
+		query.append(" LIMIT ").appendValue(limit);
+
+		List<RelationshipSourceHandle> rows = new ArrayList<RelationshipSourceHandle>();
+		PreparedStatement s = null;
+		ResultSet rs = null;
+		try {
+			s = query.prepareCached(connection);
+			rs = connection.executeQuery(s); //NON-NLS
+			while (rs.next()) {
+				rows.add(new RelationshipSourceHandle(db, rs.getLong("source_obj_id"),
+						rs.getLong("sort_time"), rs.getLong("data_source_obj_id")));
+			}
+			return rows;
+		} finally {
+			closeResultSet(rs);
+		}
+	}
+
+	/**
+	 * Gets the earliest date of the relationships of a set of account device
+	 * instances that pass a filter, for some of their sources. Undated
+	 * relationships count as 0.
+	 *
+	 * @param accountDeviceInstances The account device instances.
+	 * @param filterSQL              The filter condition, may be empty.
+	 * @param sources                The sources.
+	 * @param connection             The case database connection.
+	 *
+	 * @return The earliest dates, keyed by source object id.
+	 *
+	 * @throws SQLException     if there is an error querying the
+	 *                          relationships.
+	 * @throws TskCoreException if there is an error getting the data sources.
+	 */
+	private Map<Long, Long> getEarliestRelationshipTimes(Set<AccountDeviceInstance> accountDeviceInstances, ParameterizedSQL filterSQL,
+			List<RelationshipSourceHandle> sources, CaseDbConnection connection) throws SQLException, TskCoreException {
+		Map<Long, Long> earliestTimes = new HashMap<Long, Long>();
+		if (sources.isEmpty()) {
+			return earliestTimes;
+		}
+		Set<Long> sourceObjIDs = new HashSet<Long>();
+		for (RelationshipSourceHandle source : sources) {
+			sourceObjIDs.add(source.getSourceObjectID());
+		}
+		ParameterizedSQL query = new ParameterizedSQL(db.getDatabaseType());
+		query.append("SELECT relationships.relationship_source_obj_id AS source_obj_id,"
+				+ " MIN(CASE WHEN relationships.date_time > 0 THEN relationships.date_time ELSE 0 END) AS sort_time"
+				+ " FROM account_relationships AS relationships"
+				+ " WHERE ");
+		query.appendIn("relationships.relationship_source_obj_id", sourceObjIDs);
+		query.append(" AND (");
+		appendAccountDeviceInstancesSQL(query, accountDeviceInstances, false);
+		query.append(" )");
+		if (!filterSQL.isEmpty()) {
+			query.append(" AND (").append(filterSQL).append(" )");
+		}
+		query.append(" GROUP BY relationships.relationship_source_obj_id");
+
+		PreparedStatement s = null;
+		ResultSet rs = null;
+		try {
+			s = query.prepareCached(connection);
+			rs = connection.executeQuery(s); //NON-NLS
+			while (rs.next()) {
+				earliestTimes.put(rs.getLong("source_obj_id"), rs.getLong("sort_time"));
+			}
+			return earliestTimes;
+		} finally {
+			closeResultSet(rs);
+		}
+	}
+
+	/**
+	 * Passes the sources of the relationships of a set of account device
+	 * instances to a visitor, a page at a time, in the order of
+	 * getRelationshipSources(Set, CommunicationsFilter,
+	 * RelationshipSourceHandle, int). Only one page is held in memory, and no
+	 * database lock is held while the visitor runs.
+	 *
+	 * Applicable filters: RelationshipTypeFilter, DateRangeFilter
+	 *
+	 * @param accountDeviceInstances The account device instances.
+	 * @param filter                 Filters to apply.
+	 * @param pageSize               The number of sources to read at a time.
+	 * @param visitor                The visitor, which can stop the
+	 *                               traversal by returning false.
+	 *
+	 * @throws org.sleuthkit.datamodel.TskCoreException
+	 */
+	public void visitRelationshipSources(Set<AccountDeviceInstance> accountDeviceInstances, CommunicationsFilter filter,
+			int pageSize, RelationshipSourceVisitor visitor) throws TskCoreException {
+		RelationshipSourceHandle last = null;
+		while (true) {
+			List<RelationshipSourceHandle> page = getRelationshipSources(accountDeviceInstances, filter, last, pageSize);
+			for (RelationshipSourceHandle source : page) {
+				if (!visitor.visit(source)) {
+					return;
+				}
+			}
+			if (page.size() < pageSize) {
+				return;
+			}
+			last = page.get(page.size() - 1);
+		}
+	}
+
 	/**
 	 * Get the sources (artifacts, content) of relationships between the given
 	 * account device instances.
@@ -1151,8 +2083,9 @@ public List<Content> getRelationshipSources(AccountDeviceInstance account1, Acco
 				CommunicationsFilter.DeviceFilter.class.getName(),
 				CommunicationsFilter.RelationshipTypeFilter.class.getName()
 		));
-		String filterSQL = getCommunicationsFilterSQL(filter, applicableFilters);
-		final String queryString = "SELECT artifacts.artifact_id AS artifact_id,"
+		ParameterizedSQL filterSQL = getCommunicationsFilterSQL(filter, applicableFilters);
+		ParameterizedSQL query = new ParameterizedSQL(db.getDatabaseType());
+		query.append("SELECT artifacts.artifact_id AS artifact_id,"
 				+ "		artifacts.obj_id AS obj_id,"
 				+ "		artifacts.artifact_obj_id AS artifact_obj_id,"
 				+ "		artifacts.data_source_obj_id AS data_source_obj_id,"
@@ -1161,18 +2094,21 @@ public List<Content> getRelationshipSources(AccountDeviceInstance account1, Acco
 				+ " FROM blackboard_artifacts AS artifacts"
 				+ "	JOIN account_relationships AS relationships"
 				+ "		ON artifacts.artifact_obj_id = relationships.relationship_source_obj_id"
-				+ " WHERE (( relationships.account1_id = " + account1.getAccount().getAccountID()
-				+ " AND relationships.account2_id  = " + account2.getAccount().getAccountID()
-				+ " ) OR (	  relationships.account2_id = " + account1.getAccount().getAccountID()
-				+ " AND relationships.account1_id =" + account2.getAccount().getAccountID() + " ))"
-				+ (filterSQL.isEmpty() ? "" : " AND " + filterSQL);
+				+ " WHERE (( relationships.account1_id = ");
+		query.appendValue(account1.getAccount().getAccountID());
+		query.append(" AND relationships.account2_id  = ").appendValue(account2.getAccount().getAccountID());
+		query.append(" ) OR (	  relationships.account2_id = ").appendValue(account1.getAccount().getAccountID());
+		query.append(" AND relationships.account1_id =").appendValue(account2.getAccount().getAccountID()).append(" ))");
+		if (!filterSQL.isEmpty()) {
+			query.append(" AND ").append(filterSQL);
+		}
 		CaseDbConnection connection = db.getConnection();
 		db.acquireSingleUserCaseReadLock();
-		Statement s = null;
+		PreparedStatement s = null;
 		ResultSet rs = null;
 		try {
-			s = connection.createStatement();
-			rs = connection.executeQuery(s, queryString); //NON-NLS
+			s = query.prepareCached(connection);
+			rs = connection.executeQuery(s); //NON-NLS
 
 			ArrayList<Content> artifacts = new ArrayList<Content>();
 			while (rs.next()) {
@@ -1187,12 +2123,216 @@ public List<Content> getRelationshipSources(AccountDeviceInstance account1, Acco
 			throw new TskCoreException("Error getting relationships between accounts. " + ex.getMessage(), ex);
 		} finally {
 			closeResultSet(rs);
-			closeStatement(s);
 			connection.close();
 			db.releaseSingleUserCaseReadLock();
 		}
 	}
 
+	/**
+	 * Counts the communications of a set of account device instances in time
+	 * buckets, such as the hours or days of a timeline. A communication is
+	 * counted once, however many of the accounts it involves, and
+	 * communications without a date are not counted. The counts are computed
+	 * from the account_relationships table in one query.
+	 *
+	 * Applicable filters: RelationshipTypeFilter, DateRangeFilter
+	 *
+	 * @param accountDeviceInstances The account device instances.
+	 * @param filter                 Filters to apply.
+	 * @param bucketSize             The size of the time buckets.
+	 * @param timeZone               The time zone that the bucket boundaries
+	 *                               are in.
+	 *
+	 * @return The number of communications in each non-empty bucket, keyed by
+	 *         the start of the bucket as epoch seconds.
+	 *
+	 * @throws org.sleuthkit.datamodel.TskCoreException
+	 */
+	public SortedMap<Long, Long> getRelationshipHistogram(Set<AccountDeviceInstance> accountDeviceInstances, CommunicationsFilter filter,
+			HistogramBucketSize bucketSize, TimeZone timeZone) throws TskCoreException {
+		return getRelationshipHistogram(accountDeviceInstances, filter, bucketSize, timeZone, false);
+	}
+
+	/**
+	 * Counts the communications of a set of account device instances in time
+	 * buckets, optionally from the pre-aggregated account_relationship_rollups
+	 * table. The rollups are cheaper to query on very large cases, but they
+	 * count a communication once for each of the given accounts it involves,
+	 * and apply the DateRangeFilter to 15 minute buckets rather than to the
+	 * exact times.
+	 *
+	 * Applicable filters: RelationshipTypeFilter, DateRangeFilter
+	 *
+	 * @param accountDeviceInstances The account device instances.
+	 * @param filter                 Filters to apply.
+	 * @param bucketSize             The size of the time buckets.
+	 * @param timeZone               The time zone that the bucket boundaries
+	 *                               are in.
+	 * @param useRollups             True to count from the rollups table,
+	 *                               false to count from the relationships.
+	 *                               The relationships are counted if the
+	 *                               rollups are off, see
+	 *                               enableRelationshipRollups().
+	 *
+	 * @return The number of communications in each non-empty bucket, keyed by
+	 *         the start of the bucket as epoch seconds.
+	 *
+	 * @throws org.sleuthkit.datamodel.TskCoreException
+	 */
+	public SortedMap<Long, Long> getRelationshipHistogram(Set<AccountDeviceInstance> accountDeviceInstances, CommunicationsFilter filter,
+			HistogramBucketSize bucketSize, TimeZone timeZone, boolean useRollups) throws TskCoreException {
+		SortedMap<Long, Long> histogram = new TreeMap<Long, Long>();
+		if (accountDeviceInstances.isEmpty()) {
+			return histogram;
+		}
+
+		Set<String> applicableFilters = new HashSet<String>(Arrays.asList(
+				CommunicationsFilter.RelationshipTypeFilter.class.getName(),
+				CommunicationsFilter.DateRangeFilter.class.getName()
+		));
+		ParameterizedSQL filterSQL = getCommunicationsFilterSQL(filter, applicableFilters);
+
+		// Count in UTC buckets that each fall within a single local bucket,
+		// then add them up into the local buckets. Whole hours are fine
+		// unless the time zone has a fractional hour offset.
+		long granularity = (timeZone.getRawOffset() % 3600000 == 0 && timeZone.getDSTSavings() % 3600000 == 0)
+				? 3600 : ROLLUP_BUCKET_SECONDS;
+		boolean fromRollups = useRollups && rollupsEnabled;
+		ParameterizedSQL query = new ParameterizedSQL(db.getDatabaseType());
+		if (fromRollups) {
+			// The rollup buckets stand in for date_time, so that the
+			// DateRangeFilter SQL applies to them.
+			query.append("SELECT relationships.date_time / " + granularity + " AS bucket, SUM(relationships.source_count) AS count"
+					+ " FROM ( SELECT account_id, data_source_obj_id, relationship_type, bucket_start AS date_time, source_count"
+					+ "		FROM account_relationship_rollups WHERE bucket_start <> " + UNDATED_BUCKET_START + " ) AS relationships"
+					+ " WHERE (");
+		} else {
+			query.append("SELECT relationships.date_time / " + granularity + " AS bucket,"
+					+ " count(DISTINCT relationships.relationship_source_obj_id) AS count"
+					+ " FROM account_relationships AS relationships"
+					+ " WHERE relationships.date_time > 0"
+					+ " AND (");
+		}
+		appendAccountDeviceInstancesSQL(query, accountDeviceInstances, fromRollups);
+		query.append(" )");
+		if (!filterSQL.isEmpty()) {
+			query.append(" AND (").append(filterSQL).append(" )");
+		}
+		query.append(" GROUP BY relationships.date_time / " + granularity);
+
+		CaseDbConnection connection = db.getConnection();
+		db.acquireSingleUserCaseReadLock();
+		PreparedStatement s = null;
+		ResultSet rs = null;
+
+		try {
+			s = query.prepareCached(connection);
+			rs = connection.executeQuery(s); //NON-NLS
+			Calendar calendar = Calendar.getInstance(timeZone);
+			while (rs.next()) {
+				calendar.setTimeInMillis(rs.getLong("bucket") * granularity * 1000);
+				long bucketStart = bucketSize.truncate(calendar);
+				Long count = histogram.get(bucketStart);
+				histogram.put(bucketStart, (count == null ? 0 : count) + rs.getLong("count"));
+			}
+			return histogram;
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error getting relationship histogram. " + ex.getMessage(), ex);
+		} finally {
+			closeResultSet(rs);
+			connection.close();
+			db.releaseSingleUserCaseReadLock();
+		}
+	}
+
+	/**
+	 * Gets the data sources of the devices of a set of account device
+	 * instances, grouped by account.
+	 *
+	 * @param accountDeviceInstances The account device instances.
+	 *
+	 * @return The data source object ids, keyed by account id.
+	 *
+	 * @throws TskCoreException if there is an error getting the data sources.
+	 */
+	private Map<Long, Set<Long>> getAccountIdToDataSourceObjIds(Set<AccountDeviceInstance> accountDeviceInstances) throws TskCoreException {
+		Map<Long, Set<Long>> accountIdToDatasourceObjIdMap = new HashMap<Long, Set<Long>>();
+		for (AccountDeviceInstance accountDeviceInstance : accountDeviceInstances) {
+			long accountID = accountDeviceInstance.getAccount().getAccountID();
+			List<Long> dataSourceObjIds = db.getDataSourceObjIds(accountDeviceInstance.getDeviceId());
+
+			if (accountIdToDatasourceObjIdMap.containsKey(accountID)) {
+				accountIdToDatasourceObjIdMap.get(accountID).addAll(dataSourceObjIds);
+			} else {
+				accountIdToDatasourceObjIdMap.put(accountID, new HashSet<Long>(dataSourceObjIds));
+			}
+		}
+		return accountIdToDatasourceObjIdMap;
+	}
+
+	/**
+	 * Gets the source of the per account relationship counts that can stand
+	 * in for the account_relationships table when applying a filter: the
+	 * account_relationship_rollups table, if the filter has no date range or
+	 * one on the boundaries of its 15 minute buckets, such as UTC days. The
+	 * bucket starts stand in for date_time, so that the DateRangeFilter SQL
+	 * applies to them and the buckets of a date range are summed, and the
+	 * undated bucket has a null date_time, as undated relationships do.
+	 *
+	 * @param filter The filter, may be null.
+	 *
+	 * @return The SQL for the counts, aliased as relationships, or null if the
+	 *         rollups are off or the date range of the filter does not fall on
+	 *         bucket boundaries.
+	 */
+	private String getRelationshipCountsSQL(CommunicationsFilter filter) {
+		if (!rollupsEnabled) {
+			return null;
+		}
+		if (null != filter) {
+			for (CommunicationsFilter.SubFilter subFilter : filter.getAndFilters()) {
+				if (subFilter instanceof CommunicationsFilter.DateRangeFilter) {
+					CommunicationsFilter.DateRangeFilter dateRangeFilter = (CommunicationsFilter.DateRangeFilter) subFilter;
+					if (dateRangeFilter.getStartDate() % ROLLUP_BUCKET_SECONDS != 0 || dateRangeFilter.getEndDate() % ROLLUP_BUCKET_SECONDS != 0) {
+						return null;
+					}
+				}
+			}
+		}
+		return "( SELECT account_id, data_source_obj_id, relationship_type,"
+				+ "		CASE WHEN bucket_start = " + UNDATED_BUCKET_START + " THEN NULL ELSE bucket_start END AS date_time, source_count"
+				+ "		FROM account_relationship_rollups ) AS relationships";
+	}
+
+	/**
+	 * Appends the condition that a relationship belongs to one of a set of
+	 * account device instances.
+	 *
+	 * @param query                  The statement to append to.
+	 * @param accountDeviceInstances The account device instances.
+	 * @param rollups                True if the condition is on the
+	 *                               account_relationship_rollups table, false
+	 *                               if it is on the account_relationships
+	 *                               table.
+	 *
+	 * @throws TskCoreException if there is an error getting the data sources.
+	 */
+	private void appendAccountDeviceInstancesSQL(ParameterizedSQL query, Set<AccountDeviceInstance> accountDeviceInstances, boolean rollups) throws TskCoreException {
+		boolean first = true;
+		for (Map.Entry<Long, Set<Long>> entry : getAccountIdToDataSourceObjIds(accountDeviceInstances).entrySet()) {
+			query.append(first ? "( ( " : " OR ( ( ");
+			first = false;
+			query.appendIn("relationships.data_source_obj_id", entry.getValue());
+			if (rollups) {
+				query.append(" ) AND ( relationships.account_id = ").appendValue(entry.getKey());
+			} else {
+				query.append(" ) AND ( relationships.account1_id = ").appendValue(entry.getKey());
+				query.append(" OR relationships.account2_id = ").appendValue(entry.getKey());
+			}
+			query.append(" ) )");
+		}
+	}
+
 	/**
 	 * Get account_type_id for the given account type.
 	 *
@@ -1263,44 +2403,341 @@ private String normalizeEmailAddress(String emailAddress) {
 	/**
 	 * Builds the SQL for the given CommunicationsFilter.
 	 *
-	 * Gets the SQL for each subfilter and combines using AND.
+	 * Gets the SQL for each subfilter and combines using AND. The values of
+	 * the subfilters are bound as parameters, so that the SQL text depends
+	 * only on which subfilters apply and on the sizes of their sets.
 	 *
 	 * @param commFilter        The CommunicationsFilter to get the SQL for.
 	 * @param applicableFilters A Set of names of classes of subfilters that are
 	 *                          applicable. SubFilters not in this list will be
 	 *                          ignored.
 	 *
-	 * @return return SQL suitible for use IN a where clause.
+	 * @return return SQL suitible for use IN a where clause, empty if no
+	 *         subfilter applies.
 	 */
-	private String getCommunicationsFilterSQL(CommunicationsFilter commFilter, Set<String> applicableFilters) {
+	private ParameterizedSQL getCommunicationsFilterSQL(CommunicationsFilter commFilter, Set<String> applicableFilters) {
+		ParameterizedSQL sql = new ParameterizedSQL(db.getDatabaseType());
 		if (null == commFilter || commFilter.getAndFilters().isEmpty()) {
-			return "";
+			return sql;
 		}
 
-		String sqlStr = "";
-		StringBuilder sqlSB = new StringBuilder();
-		boolean first = true;
 		for (CommunicationsFilter.SubFilter subFilter : commFilter.getAndFilters()) {
 
 			// If the filter is applicable
 			if (applicableFilters.contains(subFilter.getClass().getName())) {
-				String subfilterSQL = subFilter.getSQL(this);
+				ParameterizedSQL subfilterSQL = new ParameterizedSQL(db.getDatabaseType());
+				subFilter.appendSQL(subfilterSQL, this);
 				if (!subfilterSQL.isEmpty()) {
-					if (first) {
-						first = false;
-					} else {
-						sqlSB.append(" AND ");
-					}
-					sqlSB.append("( ");
-					sqlSB.append(subfilterSQL);
-					sqlSB.append(" )");
+					sql.append(sql.isEmpty() ? "( ( " : " AND ( ");
+					sql.append(subfilterSQL);
+					sql.append(" )");
 				}
 			}
 		}
 
-		if (!sqlSB.toString().isEmpty()) {
-			sqlStr = "( " + sqlSB.toString() + " )";
+		if (!sql.isEmpty()) {
+			sql.append(" )");
+		}
+		return sql;
+	}
+
+	/**
+	 * The sizes of the time buckets of a relationship histogram.
+	 */
+	public enum HistogramBucketSize {
+
+		HOUR,
+		DAY,
+		WEEK;
+
+		/**
+		 * Moves a calendar back to the start of the bucket containing it.
+		 *
+		 * @param calendar The calendar, in the time zone of the buckets.
+		 *
+		 * @return The start of the bucket, as epoch seconds.
+		 */
+		long truncate(Calendar calendar) {
+			calendar.set(Calendar.MINUTE, 0);
+			calendar.set(Calendar.SECOND, 0);
+			calendar.set(Calendar.MILLISECOND, 0);
+			if (this != HOUR) {
+				calendar.set(Calendar.HOUR_OF_DAY, 0);
+			}
+			if (this == WEEK) {
+				int daysIntoWeek = (calendar.get(Calendar.DAY_OF_WEEK) - calendar.getFirstDayOfWeek() + 7) % 7;
+				calendar.add(Calendar.DAY_OF_MONTH, -daysIntoWeek);
+			}
+			return calendar.getTimeInMillis() / 1000;
+		}
+	}
+
+	/**
+	 * Identifies a row of the account_relationship_rollups table.
+	 */
+	private static final class RollupKey implements CounterRows.Key {
+
+		private final long accountID;
+		private final long dataSourceObjID;
+		private final int relationshipType;
+		private final long bucketStart;
+
+		RollupKey(long accountID, long dataSourceObjID, int relationshipType, long bucketStart) {
+			this.accountID = accountID;
+			this.dataSourceObjID = dataSourceObjID;
+			this.relationshipType = relationshipType;
+			this.bucketStart = bucketStart;
+		}
+
+		@Override
+		public void setInsertParameters(PreparedStatement statement) throws SQLException {
+			setUpdateParameters(statement, 1);
+		}
+
+		@Override
+		public void setUpdateParameters(PreparedStatement statement, int firstIndex) throws SQLException {
+			statement.setLong(firstIndex, accountID);
+			statement.setLong(firstIndex + 1, dataSourceObjID);
+			statement.setInt(firstIndex + 2, relationshipType);
+			statement.setLong(firstIndex + 3, bucketStart);
+		}
+
+		@Override
+		public int hashCode() {
+			int hash = Long.valueOf(accountID).hashCode();
+			hash = 31 * hash + Long.valueOf(dataSourceObjID).hashCode();
+			hash = 31 * hash + relationshipType;
+			return 31 * hash + Long.valueOf(bucketStart).hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof RollupKey)) {
+				return false;
+			}
+			RollupKey other = (RollupKey) obj;
+			return accountID == other.accountID && dataSourceObjID == other.dataSourceObjID
+					&& relationshipType == other.relationshipType && bucketStart == other.bucketStart;
+		}
+	}
+
+	/**
+	 * Identifies an account by account type and normalized account ID.
+	 */
+	private static final class AccountKey {
+
+		private final int accountTypeId;
+		private final String normalizedAccountID;
+
+		AccountKey(int accountTypeId, String normalizedAccountID) {
+			this.accountTypeId = accountTypeId;
+			this.normalizedAccountID = normalizedAccountID;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * accountTypeId + normalizedAccountID.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof AccountKey)) {
+				return false;
+			}
+			AccountKey other = (AccountKey) obj;
+			return accountTypeId == other.accountTypeId && normalizedAccountID.equals(other.normalizedAccountID);
+		}
+	}
+
+	/**
+	 * An ordered pair of account IDs.
+	 */
+	private static final class AccountPairKey {
+
+		private final long account1ID;
+		private final long account2ID;
+
+		AccountPairKey(long account1ID, long account2ID) {
+			this.account1ID = account1ID;
+			this.account2ID = account2ID;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * Long.valueOf(account1ID).hashCode() + Long.valueOf(account2ID).hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof AccountPairKey)) {
+				return false;
+			}
+			AccountPairKey other = (AccountPairKey) obj;
+			return account1ID == other.account1ID && account2ID == other.account2ID;
+		}
+	}
+
+	/**
+	 * Receives relationship sources from visitRelationshipSources.
+	 */
+	public interface RelationshipSourceVisitor {
+
+		/**
+		 * Processes one relationship source.
+		 *
+		 * @param source The relationship source.
+		 *
+		 * @return True to continue with the next source, false to stop.
+		 *
+		 * @throws TskCoreException if there is an error processing the
+		 *                          source; the traversal stops.
+		 */
+		boolean visit(RelationshipSourceHandle source) throws TskCoreException;
+	}
+
+	/**
+	 * A reference to the source of one or more relationships, usually a
+	 * message or call log artifact. The source content is loaded from the case
+	 * database the first time it is asked for.
+	 */
+	public static final class RelationshipSourceHandle {
+
+		private final SleuthkitCase db;
+		private final long sourceObjID;
+		private final long dateTime;
+		private final long dataSourceObjID;
+		private volatile Content content;
+
+		private RelationshipSourceHandle(SleuthkitCase db, long sourceObjID, long dateTime, long dataSourceObjID) {
+			this.db = db;
+			this.sourceObjID = sourceObjID;
+			this.dateTime = dateTime;
+			this.dataSourceObjID = dataSourceObjID;
+		}
+
+		/**
+		 * Gets the object id of the source.
+		 *
+		 * @return The object id.
+		 */
+		public long getSourceObjectID() {
+			return sourceObjID;
+		}
+
+		/**
+		 * Gets the date of the relationships from the source.
+		 *
+		 * @return The date, as epoch seconds, or 0 if there is no date.
+		 */
+		public long getDateTime() {
+			return dateTime;
+		}
+
+		/**
+		 * Gets the object id of the data source of the source.
+		 *
+		 * @return The data source object id.
+		 */
+		public long getDataSourceObjectID() {
+			return dataSourceObjID;
+		}
+
+		/**
+		 * Gets the source, loading it on first use.
+		 *
+		 * @return The source artifact, or other content.
+		 *
+		 * @throws TskCoreException if there is an error loading the source.
+		 */
+		public Content getContent() throws TskCoreException {
+			Content result = content;
+			if (result == null) {
+				result = db.getArtifactById(sourceObjID);
+				if (result == null) {
+					result = db.getContentById(sourceObjID);
+				}
+				content = result;
+			}
+			return result;
+		}
+
+		@Override
+		public int hashCode() {
+			return Long.valueOf(sourceObjID).hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof RelationshipSourceHandle)) {
+				return false;
+			}
+			return sourceObjID == ((RelationshipSourceHandle) obj).sourceObjID;
+		}
+	}
+
+	/**
+	 * The relationships derived from one communication, such as a message or
+	 * a call, for use with addRelationships(Collection).
+	 */
+	public static final class RelationshipRecord {
+
+		private final AccountFileInstance sender;
+		private final List<AccountFileInstance> recipients;
+		private final BlackboardArtifact sourceArtifact;
+		private final Relationship.Type relationshipType;
+		private final long dateTime;
+
+		/**
+		 * Constructs a relationship record.
+		 *
+		 * @param sender           sender account, may be null
+		 * @param recipients       list of recipients
+		 * @param sourceArtifact   Artifact that relationships were derived
+		 *                         from
+		 * @param relationshipType The type of relationships to be created
+		 * @param dateTime         Date of communications/relationship, as
+		 *                         epoch seconds
+		 */
+		// NOTE: Full name given for Type for doxygen linking
+		public RelationshipRecord(AccountFileInstance sender, List<AccountFileInstance> recipients,
+				BlackboardArtifact sourceArtifact, org.sleuthkit.datamodel.Relationship.Type relationshipType, long dateTime) {
+			this.sender = sender;
+			this.recipients = new ArrayList<AccountFileInstance>(recipients);
+			this.sourceArtifact = sourceArtifact;
+			this.relationshipType = relationshipType;
+			this.dateTime = dateTime;
+		}
+
+		AccountFileInstance getSender() {
+			return sender;
+		}
+
+		List<AccountFileInstance> getRecipients() {
+			return recipients;
+		}
+
+		BlackboardArtifact getSourceArtifact() {
+			return sourceArtifact;
+		}
+
+		Relationship.Type getRelationshipType() {
+			return relationshipType;
+		}
+
+		long getDateTime() {
+			return dateTime;
 		}
-		return sqlStr;
 	}
 }
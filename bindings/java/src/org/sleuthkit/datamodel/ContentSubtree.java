@@ -0,0 +1,97 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2018 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The files below a content object, as loaded all at once by
+ * SleuthkitCase.loadSubtree(), with the objects between them and the root,
+ * such as the volumes and file systems of an image. The parent and the
+ * number of children of each file are already set, so walking the subtree
+ * with this object and Content.getParent() does not query the case
+ * database.
+ */
+public final class ContentSubtree {
+
+	private final Content root;
+	private final List<AbstractFile> files = new ArrayList<AbstractFile>();
+	private final Map<Long, List<Content>> childrenByParentId = new HashMap<Long, List<Content>>();
+
+	ContentSubtree(Content root) {
+		this.root = root;
+	}
+
+	/**
+	 * Adds a loaded object. Objects must be added after their parents.
+	 *
+	 * @param content  The object.
+	 * @param parentId The object id of the parent of the object.
+	 */
+	void add(Content content, long parentId) {
+		if (content instanceof AbstractFile) {
+			files.add((AbstractFile) content);
+		}
+		List<Content> children = childrenByParentId.get(parentId);
+		if (null == children) {
+			children = new ArrayList<Content>();
+			childrenByParentId.put(parentId, children);
+		}
+		children.add(content);
+	}
+
+	/**
+	 * Gets the content object the subtree was loaded from.
+	 *
+	 * @return The root of the subtree.
+	 */
+	public Content getRoot() {
+		return root;
+	}
+
+	/**
+	 * Gets all of the loaded files, each after its parent.
+	 *
+	 * @return An unmodifiable list of the files.
+	 */
+	public List<AbstractFile> getFiles() {
+		return Collections.unmodifiableList(files);
+	}
+
+	/**
+	 * Gets the loaded children of the root or of a loaded object. Objects
+	 * that are not files, such as volumes or artifacts, are only loaded if
+	 * there are objects below them.
+	 *
+	 * @param parent The root or a loaded object.
+	 *
+	 * @return An unmodifiable list of the children, empty if none were loaded.
+	 */
+	public List<Content> getChildren(Content parent) {
+		List<Content> children = childrenByParentId.get(parent.getId());
+		if (null == children) {
+			return Collections.<Content>emptyList();
+		}
+		return Collections.unmodifiableList(children);
+	}
+}
@@ -0,0 +1,569 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2018 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Visits every content object of one or more content trees, such as the data
+ * sources of a case, on a pool of threads, and combines the results of the
+ * visits. Each content object with children is a fork/join task that forks a
+ * task for each child, so idle threads steal subtrees from busy ones. The
+ * children of all of the children of a content object are loaded together,
+ * with one query for files and one for artifacts per batch, and the numbers
+ * of their own children with one more, so content objects without children
+ * are visited without any query and the queries for a level of the tree do
+ * not grow with the number of its directories.
+ *
+ * The visitor is called concurrently from several threads and must be thread
+ * safe. A traversal object can be used for one traversal at a time.
+ *
+ * @param <T> The type of the results of the visitor.
+ */
+public final class ContentTraversal<T> {
+
+	/**
+	 * Combines the results of two visits.
+	 *
+	 * @param <T> The type of the results.
+	 */
+	public interface Combiner<T> {
+
+		/**
+		 * Combines two results.
+		 *
+		 * @param first  A result.
+		 * @param second Another result.
+		 *
+		 * @return The combined result.
+		 */
+		T combine(T first, T second);
+	}
+
+	private final SleuthkitCase caseDb;
+	private final ContentVisitor<T> visitor;
+	private final Combiner<T> combiner;
+	private int parallelism = Runtime.getRuntime().availableProcessors();
+	private int maxDepth = -1;
+	private int maxConcurrencyPerDataSource = 0;
+	private boolean ordered = true;
+	private volatile boolean cancelled = false;
+
+	/**
+	 * Constructs a traversal.
+	 *
+	 * @param caseDb   The case database of the content to traverse.
+	 * @param visitor  The visitor to call for each content object.
+	 * @param combiner The combiner of the results of the visitor. Null results
+	 *                 are not passed to the combiner.
+	 */
+	public ContentTraversal(SleuthkitCase caseDb, ContentVisitor<T> visitor, Combiner<T> combiner) {
+		this.caseDb = caseDb;
+		this.visitor = visitor;
+		this.combiner = combiner;
+	}
+
+	/**
+	 * Sets the number of threads to traverse with. The default is the number
+	 * of processors.
+	 *
+	 * @param parallelism The number of threads.
+	 *
+	 * @return This traversal.
+	 */
+	public ContentTraversal<T> setParallelism(int parallelism) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("parallelism must be at least 1"); //NON-NLS
+		}
+		this.parallelism = parallelism;
+		return this;
+	}
+
+	/**
+	 * Sets how far below the roots to traverse. The default is no limit.
+	 *
+	 * @param maxDepth The depth of the deepest content objects to visit, where
+	 *                 the roots are at depth 0 and their children at depth 1,
+	 *                 or -1 for no limit.
+	 *
+	 * @return This traversal.
+	 */
+	public ContentTraversal<T> setMaxDepth(int maxDepth) {
+		this.maxDepth = maxDepth;
+		return this;
+	}
+
+	/**
+	 * Sets the largest number of visits of the content objects of one data
+	 * source that may run at the same time, for example to limit the number of
+	 * concurrent reads of one image. The default is no limit. Threads never
+	 * wait for a turn to visit the content of a data source: when the limit
+	 * is reached, the children of a content object are visited by the thread
+	 * that visited the content object instead of being handed to other
+	 * threads.
+	 *
+	 * @param maxConcurrency The largest number of concurrent visits per data
+	 *                       source, or 0 for no limit.
+	 *
+	 * @return This traversal.
+	 */
+	public ContentTraversal<T> setMaxConcurrencyPerDataSource(int maxConcurrency) {
+		if (maxConcurrency < 0) {
+			throw new IllegalArgumentException("maxConcurrency must not be negative"); //NON-NLS
+		}
+		this.maxConcurrencyPerDataSource = maxConcurrency;
+		return this;
+	}
+
+	/**
+	 * Sets whether the results are combined in a fixed order. When ordered,
+	 * the result of a content object is combined with the results of its
+	 * children in the order of Content.getChildren(), which the combiner needs
+	 * if it is not commutative. When unordered, the results of the children are
+	 * combined in whatever order lets the threads wait least. The default is
+	 * ordered.
+	 *
+	 * @param ordered True to combine the results in order.
+	 *
+	 * @return This traversal.
+	 */
+	public ContentTraversal<T> setOrdered(boolean ordered) {
+		this.ordered = ordered;
+		return this;
+	}
+
+	/**
+	 * Cancels a running traversal. Visits that have started finish, no more
+	 * are started, and traverse() throws a CancellationException.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * Indicates whether the traversal was cancelled.
+	 *
+	 * @return True if cancel() was called.
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * Visits the content objects of a content tree.
+	 *
+	 * @param root The root of the tree.
+	 *
+	 * @return The combined results of the visits, or null if every visit
+	 *         returned null.
+	 *
+	 * @throws TskCoreException      If there is a problem loading the
+	 *                               content objects.
+	 * @throws CancellationException If the traversal was cancelled.
+	 */
+	public T traverse(Content root) throws TskCoreException {
+		return traverse(Collections.singletonList(root));
+	}
+
+	/**
+	 * Visits the content objects of several content trees, such as the data
+	 * sources of a case, in parallel.
+	 *
+	 * @param roots The roots of the trees.
+	 *
+	 * @return The combined results of the visits, or null if every visit
+	 *         returned null.
+	 *
+	 * @throws TskCoreException      If there is a problem loading the
+	 *                               content objects.
+	 * @throws CancellationException If the traversal was cancelled.
+	 */
+	public T traverse(List<? extends Content> roots) throws TskCoreException {
+		cancelled = false;
+		List<VisitTask> tasks = new ArrayList<VisitTask>(roots.size());
+		Map<Long, List<VisitTask>> tasksByDataSource = new LinkedHashMap<Long, List<VisitTask>>();
+		for (Content root : roots) {
+			Content dataSource = root.getDataSource();
+			long dataSourceId = (null == dataSource) ? root.getId() : dataSource.getId();
+			List<VisitTask> dataSourceTasks = tasksByDataSource.get(dataSourceId);
+			Semaphore permits = null;
+			if (null == dataSourceTasks) {
+				dataSourceTasks = new ArrayList<VisitTask>();
+				tasksByDataSource.put(dataSourceId, dataSourceTasks);
+				if (maxConcurrencyPerDataSource > 0) {
+					// One of the permits is held by the task that runs the
+					// roots of the data source.
+					permits = new Semaphore(maxConcurrencyPerDataSource - 1);
+				}
+			} else {
+				permits = dataSourceTasks.get(0).permits;
+			}
+			VisitTask task = new VisitTask(root, -1, 0, permits, null, null);
+			dataSourceTasks.add(task);
+			tasks.add(task);
+		}
+
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			T result = pool.invoke(new RootsTask(tasks, tasksByDataSource.values()));
+			if (cancelled) {
+				throw new CancellationException("Content traversal was cancelled"); //NON-NLS
+			}
+			return result;
+		} catch (TraversalException ex) {
+			throw ex.getCause();
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	private T combine(T first, T second) {
+		if (null == first) {
+			return second;
+		}
+		if (null == second) {
+			return first;
+		}
+		return combiner.combine(first, second);
+	}
+
+	/**
+	 * Runs a list of visit tasks of one data source, forking all but the
+	 * last, which is run by the current thread. When the visits of a data
+	 * source are limited, a task is only forked if one of the permits of the
+	 * data source is free, and is otherwise run by the current thread, which
+	 * holds a permit itself. Threads never wait for permits, so the pool does
+	 * not add threads to make up for waiting ones.
+	 *
+	 * @param tasks   The tasks.
+	 * @param permits The free permits of the data source, or null if its
+	 *                visits are not limited.
+	 */
+	private void run(List<VisitTask> tasks, Semaphore permits) {
+		int last = tasks.size() - 1;
+		for (int i = 0; i < last; i++) {
+			VisitTask task = tasks.get(i);
+			if (null == permits) {
+				task.forkTask(false);
+			} else if (permits.tryAcquire()) {
+				task.forkTask(true);
+			} else {
+				task.runTask();
+			}
+		}
+		if (last >= 0) {
+			tasks.get(last).runTask();
+		}
+	}
+
+	/**
+	 * Combines the results of a list of visit tasks that were run with
+	 * run().
+	 *
+	 * @param tasks The tasks.
+	 * @param first The result to combine the results of the tasks with.
+	 *
+	 * @return The combined result.
+	 */
+	private T combine(List<VisitTask> tasks, T first) {
+		T result = first;
+		if (ordered) {
+			for (VisitTask task : tasks) {
+				result = combine(result, task.getResult());
+			}
+		} else {
+			// Joining in the reverse of the fork order lets the current
+			// thread run the tasks that were not stolen itself.
+			for (int i = tasks.size() - 1; i >= 0; i--) {
+				result = combine(result, tasks.get(i).getResult());
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Counts the children of content objects and sets the counts of the
+	 * objects that cache them.
+	 *
+	 * @param contents The content objects.
+	 *
+	 * @return A map of the object ids of the content objects to their numbers
+	 *         of children.
+	 *
+	 * @throws TskCoreException If there is a problem querying the case
+	 *                          database.
+	 */
+	private Map<Long, Integer> countChildren(List<Content> contents) throws TskCoreException {
+		List<Long> ids = new ArrayList<Long>(contents.size());
+		for (Content content : contents) {
+			ids.add(content.getId());
+		}
+		Map<Long, Integer> counts = caseDb.getChildrenCounts(ids);
+		for (Content content : contents) {
+			if (content instanceof AbstractContent) {
+				((AbstractContent) content).setChildrenCount(counts.get(content.getId()));
+			}
+		}
+		return counts;
+	}
+
+	/**
+	 * Indicates whether the children of a content object are its file and
+	 * artifact children, which SleuthkitCase.getFileAndArtifactChildren()
+	 * loads for many objects at once. The children of images, volume systems
+	 * and volumes come from the physical layout of the case instead.
+	 *
+	 * @param content The content object.
+	 *
+	 * @return True if the children can be loaded with the children of other
+	 *         content objects.
+	 */
+	private static boolean hasFileAndArtifactChildren(Content content) {
+		return content instanceof AbstractFile || content instanceof FileSystem || content instanceof BlackboardArtifact;
+	}
+
+	/**
+	 * Visits the roots of the traversal, with a task per data source.
+	 */
+	private final class RootsTask extends RecursiveTask<T> {
+
+		private static final long serialVersionUID = 1L;
+		private final List<VisitTask> tasks;
+		private final Collection<List<VisitTask>> tasksByDataSource;
+
+		/**
+		 * Constructs a roots task.
+		 *
+		 * @param tasks             The tasks of the roots, in the order of
+		 *                          their results.
+		 * @param tasksByDataSource The same tasks, in a list per data source.
+		 */
+		RootsTask(List<VisitTask> tasks, Collection<List<VisitTask>> tasksByDataSource) {
+			this.tasks = tasks;
+			this.tasksByDataSource = tasksByDataSource;
+		}
+
+		@Override
+		protected T compute() {
+			List<DataSourceTask> dataSourceTasks = new ArrayList<DataSourceTask>(tasksByDataSource.size());
+			for (List<VisitTask> dataSourceRootTasks : tasksByDataSource) {
+				dataSourceTasks.add(new DataSourceTask(dataSourceRootTasks));
+			}
+			invokeAll(dataSourceTasks);
+			return combine(tasks, null);
+		}
+	}
+
+	/**
+	 * Runs the tasks of the roots of one data source, holding one of the
+	 * permits of the data source.
+	 */
+	private final class DataSourceTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+		private final List<VisitTask> tasks;
+
+		DataSourceTask(List<VisitTask> tasks) {
+			this.tasks = tasks;
+		}
+
+		@Override
+		protected void compute() {
+			run(tasks, tasks.get(0).permits);
+		}
+	}
+
+	/**
+	 * Visits a content object and, through subtasks, its descendants. A task
+	 * that has children loads the children of all of its children that have
+	 * children at once, and then the numbers of their own children, so that
+	 * a level of the tree below a content object costs a query for files, a
+	 * query for artifacts and a query for counts rather than several queries
+	 * per child.
+	 */
+	private final class VisitTask extends RecursiveTask<T> {
+
+		private static final long serialVersionUID = 1L;
+		private final Content content;
+		private final int childrenCount;
+		private final int depth;
+		private final Semaphore permits;
+		private final List<Content> children;
+		private final Map<Long, Integer> childrenCounts;
+		private boolean holdsPermit = false;
+		private boolean forked = false;
+		private T result = null;
+
+		/**
+		 * Constructs a visit task.
+		 *
+		 * @param content        The content object to visit.
+		 * @param childrenCount  The number of children of the content object,
+		 *                       or -1 if not known.
+		 * @param depth          The depth of the content object.
+		 * @param permits        The free permits of the data source of the
+		 *                       content object, or null if its visits are
+		 *                       not limited.
+		 * @param children       The children of the content object, if they
+		 *                       were loaded with the children of its
+		 *                       siblings, or null.
+		 * @param childrenCounts The numbers of children of the children, by
+		 *                       object id, if the children were loaded, or
+		 *                       null.
+		 */
+		VisitTask(Content content, int childrenCount, int depth, Semaphore permits, List<Content> children, Map<Long, Integer> childrenCounts) {
+			this.content = content;
+			this.childrenCount = childrenCount;
+			this.depth = depth;
+			this.permits = permits;
+			this.children = children;
+			this.childrenCounts = childrenCounts;
+		}
+
+		/**
+		 * Forks this task.
+		 *
+		 * @param holdsPermit True if a permit was acquired for the task, to be
+		 *                    released when it is done.
+		 */
+		void forkTask(boolean holdsPermit) {
+			this.holdsPermit = holdsPermit;
+			forked = true;
+			fork();
+		}
+
+		/**
+		 * Runs this task in the current thread.
+		 */
+		void runTask() {
+			result = compute();
+		}
+
+		/**
+		 * Gets the result of this task, waiting for it if it was forked.
+		 *
+		 * @return The result.
+		 */
+		T getResult() {
+			return forked ? join() : result;
+		}
+
+		@Override
+		protected T compute() {
+			try {
+				return visitSubtree();
+			} finally {
+				if (holdsPermit) {
+					permits.release();
+				}
+			}
+		}
+
+		private T visitSubtree() {
+			if (cancelled) {
+				return null;
+			}
+			T visitResult = content.accept(visitor);
+			if (cancelled || childrenCount == 0 || (maxDepth >= 0 && depth >= maxDepth)) {
+				return visitResult;
+			}
+			List<VisitTask> childTasks;
+			try {
+				childTasks = getChildTasks();
+			} catch (TskCoreException ex) {
+				throw new TraversalException(ex);
+			}
+			run(childTasks, permits);
+			return combine(childTasks, visitResult);
+		}
+
+		/**
+		 * Makes the tasks of the children of the content object, loading the
+		 * children of the children unless they are deeper than the maximum
+		 * depth.
+		 *
+		 * @return The tasks, in the order of Content.getChildren().
+		 *
+		 * @throws TskCoreException If there is a problem querying the case
+		 *                          database.
+		 */
+		private List<VisitTask> getChildTasks() throws TskCoreException {
+			List<Content> contentChildren = children;
+			Map<Long, Integer> counts = childrenCounts;
+			if (null == contentChildren) {
+				contentChildren = content.getChildren();
+				counts = countChildren(contentChildren);
+			}
+
+			Map<Long, List<Content>> grandchildren = Collections.<Long, List<Content>>emptyMap();
+			Map<Long, Integer> grandchildrenCounts = null;
+			if (maxDepth < 0 || depth + 1 < maxDepth) {
+				List<Long> parentIds = new ArrayList<Long>();
+				for (Content child : contentChildren) {
+					if (counts.get(child.getId()) > 0 && hasFileAndArtifactChildren(child)) {
+						parentIds.add(child.getId());
+					}
+				}
+				if (!parentIds.isEmpty()) {
+					grandchildren = caseDb.getFileAndArtifactChildren(parentIds);
+					List<Content> allGrandchildren = new ArrayList<Content>();
+					for (List<Content> childChildren : grandchildren.values()) {
+						allGrandchildren.addAll(childChildren);
+					}
+					grandchildrenCounts = countChildren(allGrandchildren);
+				}
+			}
+
+			List<VisitTask> childTasks = new ArrayList<VisitTask>(contentChildren.size());
+			for (Content child : contentChildren) {
+				List<Content> childChildren = grandchildren.get(child.getId());
+				childTasks.add(new VisitTask(child, counts.get(child.getId()), depth + 1, permits,
+						childChildren, (null == childChildren) ? null : grandchildrenCounts));
+			}
+			return childTasks;
+		}
+	}
+
+	/**
+	 * Carries a TskCoreException out of a fork/join task.
+	 */
+	private static final class TraversalException extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		TraversalException(TskCoreException cause) {
+			super(cause);
+		}
+
+		@Override
+		public synchronized TskCoreException getCause() {
+			return (TskCoreException) super.getCause();
+		}
+	}
+}
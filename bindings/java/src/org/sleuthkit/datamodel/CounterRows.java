@@ -0,0 +1,109 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2018 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Map;
+import org.sleuthkit.datamodel.SleuthkitCase.CaseDbConnection;
+
+/**
+ * Adds to counts kept in rows of a table, such as the day counts of the
+ * events or the relationship rollups. The row of each key is first inserted
+ * with a count of 0 if it is missing, by a statement that ignores existing
+ * rows, and then incremented, so the same key can be added to by several
+ * transactions.
+ */
+final class CounterRows {
+
+	/**
+	 * The key of a counter row, which binds itself to the statements that
+	 * insert and increment the row.
+	 */
+	interface Key {
+
+		/**
+		 * Sets the parameters of the statement that inserts the row with a
+		 * count of 0.
+		 *
+		 * @param statement The insert statement.
+		 *
+		 * @throws SQLException If a parameter cannot be set.
+		 */
+		void setInsertParameters(PreparedStatement statement) throws SQLException;
+
+		/**
+		 * Sets the parameters that select the row in the statement that
+		 * increments it.
+		 *
+		 * @param statement  The update statement.
+		 * @param firstIndex The index of the first parameter of the key.
+		 *
+		 * @throws SQLException If a parameter cannot be set.
+		 */
+		void setUpdateParameters(PreparedStatement statement, int firstIndex) throws SQLException;
+	}
+
+	private CounterRows() {
+	}
+
+	/**
+	 * Adds an increment to the count of a key in a map of increments.
+	 *
+	 * @param counts    The increments, keyed by row.
+	 * @param key       The key of the row.
+	 * @param increment The amount to add, which may be negative.
+	 */
+	static <K> void addCount(Map<K, Long> counts, K key, long increment) {
+		Long count = counts.get(key);
+		counts.put(key, count == null ? increment : count + increment);
+	}
+
+	/**
+	 * Adds increments to counter rows, creating the rows as needed. The update
+	 * statement takes the increment as its first parameter, followed by the
+	 * parameters of the key.
+	 *
+	 * @param increments      The increments, keyed by row.
+	 * @param insertStatement The statement that inserts a row with a count of
+	 *                        0 unless it exists.
+	 * @param updateStatement The statement that adds to the count of a row.
+	 * @param batchSize       The number of rows to send to the database at a
+	 *                        time, or 0 to send them all at once.
+	 * @param connection      The case database connection.
+	 *
+	 * @throws SQLException If there is an error updating the table.
+	 */
+	static <K extends Key> void update(Map<K, Long> increments, PreparedStatement insertStatement, PreparedStatement updateStatement, int batchSize, CaseDbConnection connection) throws SQLException {
+		int batchCount = 0;
+		for (Map.Entry<K, Long> entry : increments.entrySet()) {
+			entry.getKey().setInsertParameters(insertStatement);
+			insertStatement.addBatch();
+			updateStatement.setLong(1, entry.getValue());
+			entry.getKey().setUpdateParameters(updateStatement, 2);
+			updateStatement.addBatch();
+			if (batchSize > 0 && ++batchCount % batchSize == 0) {
+				connection.executeBatch(insertStatement);
+				connection.executeBatch(updateStatement);
+			}
+		}
+		connection.executeBatch(insertStatement);
+		connection.executeBatch(updateStatement);
+	}
+}
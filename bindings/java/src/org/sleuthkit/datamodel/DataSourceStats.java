@@ -0,0 +1,411 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2018 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import org.sleuthkit.datamodel.TskData.TSK_FS_META_FLAG_ENUM;
+import org.sleuthkit.datamodel.TskData.TSK_FS_NAME_FLAG_ENUM;
+
+/**
+ * Summary statistics of the files and artifacts of a data source, as returned
+ * by SleuthkitCase.getDataSourceStats(). The statistics are kept in the
+ * data_source_stats table of the case database, which is updated as files and
+ * artifacts are added, so getting them does not scan the files or artifacts of
+ * the data source. A statistics object is a snapshot and does not change.
+ */
+public final class DataSourceStats {
+
+	/**
+	 * The kinds of rows of the data_source_stats table.
+	 */
+	enum StatType {
+
+		/**
+		 * Marks a data source whose statistics have been built. The
+		 * statistics of other data sources are not updated as files and
+		 * artifacts are added, and are built when they are first asked for.
+		 */
+		BUILT(0),
+		FILE_COUNT(1),
+		FILE_SIZE(2),
+		ALLOCATED_FILE_COUNT(3),
+		UNALLOCATED_FILE_COUNT(4),
+		DELETED_FILE_COUNT(5),
+		EXTENSION_FILE_COUNT(6),
+		MIME_TYPE_FILE_COUNT(7),
+		ARTIFACT_COUNT(8);
+
+		private final int type;
+
+		private StatType(int type) {
+			this.type = type;
+		}
+
+		int getType() {
+			return type;
+		}
+
+		static StatType fromType(int type) {
+			for (StatType statType : StatType.values()) {
+				if (statType.type == type) {
+					return statType;
+				}
+			}
+			return null;
+		}
+	}
+
+	private final long dataSourceObjId;
+	private long fileCount;
+	private long fileSize;
+	private long allocatedFileCount;
+	private long unallocatedFileCount;
+	private long deletedFileCount;
+	private final Map<String, Long> extensionCounts = new HashMap<String, Long>();
+	private final Map<String, Long> mimeTypeCounts = new HashMap<String, Long>();
+	private final Map<Integer, Long> artifactCounts = new HashMap<Integer, Long>();
+
+	DataSourceStats(long dataSourceObjId) {
+		this.dataSourceObjId = dataSourceObjId;
+	}
+
+	/**
+	 * Adds a row of the data_source_stats table to the statistics.
+	 *
+	 * @param statType The kind of row.
+	 * @param key      The key of the row, such as an extension.
+	 * @param value    The value of the row.
+	 */
+	void add(StatType statType, String key, long value) {
+		switch (statType) {
+			case FILE_COUNT:
+				fileCount = value;
+				break;
+			case FILE_SIZE:
+				fileSize = value;
+				break;
+			case ALLOCATED_FILE_COUNT:
+				allocatedFileCount = value;
+				break;
+			case UNALLOCATED_FILE_COUNT:
+				unallocatedFileCount = value;
+				break;
+			case DELETED_FILE_COUNT:
+				deletedFileCount = value;
+				break;
+			case EXTENSION_FILE_COUNT:
+				if (value > 0) {
+					extensionCounts.put(key, value);
+				}
+				break;
+			case MIME_TYPE_FILE_COUNT:
+				if (value > 0) {
+					mimeTypeCounts.put(key, value);
+				}
+				break;
+			case ARTIFACT_COUNT:
+				if (value > 0) {
+					artifactCounts.put(Integer.valueOf(key), value);
+				}
+				break;
+			default:
+				break;
+		}
+	}
+
+	/**
+	 * Gets the object id of the data source.
+	 *
+	 * @return The object id.
+	 */
+	public long getDataSourceObjId() {
+		return dataSourceObjId;
+	}
+
+	/**
+	 * Gets the number of files of the data source, including directories,
+	 * virtual files such as unallocated space files, and the root directory
+	 * of a local files data source.
+	 *
+	 * @return The number of files.
+	 */
+	public long getFileCount() {
+		return fileCount;
+	}
+
+	/**
+	 * Gets the total size of the files of the data source.
+	 *
+	 * @return The total size in bytes.
+	 */
+	public long getTotalFileSize() {
+		return fileSize;
+	}
+
+	/**
+	 * Gets the number of files whose metadata is allocated.
+	 *
+	 * @return The number of allocated files.
+	 */
+	public long getAllocatedFileCount() {
+		return allocatedFileCount;
+	}
+
+	/**
+	 * Gets the number of files whose metadata is unallocated, including
+	 * unallocated space files and carved files.
+	 *
+	 * @return The number of unallocated files.
+	 */
+	public long getUnallocatedFileCount() {
+		return unallocatedFileCount;
+	}
+
+	/**
+	 * Gets the number of deleted files, that is, files whose name is
+	 * unallocated.
+	 *
+	 * @return The number of deleted files.
+	 */
+	public long getDeletedFileCount() {
+		return deletedFileCount;
+	}
+
+	/**
+	 * Gets the number of files with each extension. Files without an
+	 * extension are not counted.
+	 *
+	 * @return An unmodifiable map of the number of files by extension.
+	 */
+	public Map<String, Long> getExtensionCounts() {
+		return Collections.unmodifiableMap(extensionCounts);
+	}
+
+	/**
+	 * Gets the number of files with each MIME type. Files whose MIME type has
+	 * not been set are not counted.
+	 *
+	 * @return An unmodifiable map of the number of files by MIME type.
+	 */
+	public Map<String, Long> getMimeTypeCounts() {
+		return Collections.unmodifiableMap(mimeTypeCounts);
+	}
+
+	/**
+	 * Gets the number of artifacts of each type, including rejected
+	 * artifacts.
+	 *
+	 * @return An unmodifiable map of the number of artifacts by artifact type
+	 *         id.
+	 */
+	public Map<Integer, Long> getArtifactCounts() {
+		return Collections.unmodifiableMap(artifactCounts);
+	}
+
+	/**
+	 * Gets the number of artifacts of a type, including rejected artifacts.
+	 *
+	 * @param artifactTypeId The artifact type id.
+	 *
+	 * @return The number of artifacts of the type.
+	 */
+	public long getArtifactCount(int artifactTypeId) {
+		Long count = artifactCounts.get(artifactTypeId);
+		return count == null ? 0 : count;
+	}
+
+	@Override
+	public String toString() {
+		return "DataSourceStats{" + "dataSourceObjId=" + dataSourceObjId //NON-NLS
+				+ ", fileCount=" + fileCount + ", fileSize=" + fileSize //NON-NLS
+				+ ", allocatedFileCount=" + allocatedFileCount //NON-NLS
+				+ ", unallocatedFileCount=" + unallocatedFileCount //NON-NLS
+				+ ", deletedFileCount=" + deletedFileCount + '}'; //NON-NLS
+	}
+
+	/**
+	 * The changes to the statistics of data sources made by adding or
+	 * changing some files and artifacts.
+	 */
+	static final class Increments {
+
+		private final Map<Key, Long> increments = new HashMap<Key, Long>();
+
+		/**
+		 * Adds the statistics of a file, or takes them away.
+		 *
+		 * @param dataSourceObjId The object id of the data source of the
+		 *                        file.
+		 * @param size            The size of the file.
+		 * @param dirFlags        The dir_flags of the file.
+		 * @param metaFlags       The meta_flags of the file.
+		 * @param extension       The extension of the file, may be null.
+		 * @param mimeType        The MIME type of the file, may be null.
+		 * @param sign            1 to add the file, -1 to take it away.
+		 */
+		void addFile(long dataSourceObjId, long size, short dirFlags, short metaFlags, String extension, String mimeType, int sign) {
+			add(dataSourceObjId, StatType.FILE_COUNT, "", sign);
+			add(dataSourceObjId, StatType.FILE_SIZE, "", sign * size);
+			if ((metaFlags & TSK_FS_META_FLAG_ENUM.ALLOC.getValue()) != 0) {
+				add(dataSourceObjId, StatType.ALLOCATED_FILE_COUNT, "", sign);
+			}
+			if ((metaFlags & TSK_FS_META_FLAG_ENUM.UNALLOC.getValue()) != 0) {
+				add(dataSourceObjId, StatType.UNALLOCATED_FILE_COUNT, "", sign);
+			}
+			if (dirFlags == TSK_FS_NAME_FLAG_ENUM.UNALLOC.getValue()) {
+				add(dataSourceObjId, StatType.DELETED_FILE_COUNT, "", sign);
+			}
+			if (null != extension && !extension.isEmpty()) {
+				add(dataSourceObjId, StatType.EXTENSION_FILE_COUNT, extension, sign);
+			}
+			if (null != mimeType) {
+				add(dataSourceObjId, StatType.MIME_TYPE_FILE_COUNT, mimeType, sign);
+			}
+		}
+
+		/**
+		 * Adds the changes of another set of increments to these.
+		 *
+		 * @param other The other increments.
+		 */
+		void addAll(Increments other) {
+			for (Map.Entry<Key, Long> entry : other.increments.entrySet()) {
+				Key rowKey = entry.getKey();
+				add(rowKey.dataSourceObjId, rowKey.statType, rowKey.key, entry.getValue());
+			}
+		}
+
+		/**
+		 * Adds an artifact.
+		 *
+		 * @param dataSourceObjId The object id of the data source of the
+		 *                        artifact.
+		 * @param artifactTypeId  The artifact type id.
+		 */
+		void addArtifact(long dataSourceObjId, int artifactTypeId) {
+			add(dataSourceObjId, StatType.ARTIFACT_COUNT, Integer.toString(artifactTypeId), 1);
+		}
+
+		private void add(long dataSourceObjId, StatType statType, String key, long value) {
+			CounterRows.addCount(increments, new Key(dataSourceObjId, statType, key), value);
+		}
+
+		/**
+		 * Gets the changes to the rows of the data_source_stats table, without
+		 * the rows that do not change.
+		 *
+		 * @return The change of each row, in the order of the keys.
+		 */
+		SortedMap<Key, Long> getChanges() {
+			SortedMap<Key, Long> changes = new TreeMap<Key, Long>();
+			for (Map.Entry<Key, Long> entry : increments.entrySet()) {
+				if (entry.getValue() != 0) {
+					changes.put(entry.getKey(), entry.getValue());
+				}
+			}
+			return changes;
+		}
+	}
+
+	/**
+	 * The key of a row of the data_source_stats table.
+	 */
+	static final class Key implements Comparable<Key>, CounterRows.Key {
+
+		private final long dataSourceObjId;
+		private final StatType statType;
+		private final String key;
+
+		Key(long dataSourceObjId, StatType statType, String key) {
+			this.dataSourceObjId = dataSourceObjId;
+			this.statType = statType;
+			this.key = key;
+		}
+
+		long getDataSourceObjId() {
+			return dataSourceObjId;
+		}
+
+		StatType getStatType() {
+			return statType;
+		}
+
+		String getKey() {
+			return key;
+		}
+
+		/**
+		 * Sets the parameters of the statement that inserts the row, which
+		 * only inserts it if the statistics of the data source are built.
+		 */
+		@Override
+		public void setInsertParameters(PreparedStatement statement) throws SQLException {
+			setUpdateParameters(statement, 1);
+			statement.setLong(4, dataSourceObjId);
+			statement.setInt(5, StatType.BUILT.getType());
+		}
+
+		@Override
+		public void setUpdateParameters(PreparedStatement statement, int firstIndex) throws SQLException {
+			statement.setLong(firstIndex, dataSourceObjId);
+			statement.setInt(firstIndex + 1, statType.getType());
+			statement.setString(firstIndex + 2, key);
+		}
+
+		@Override
+		public int compareTo(Key other) {
+			if (dataSourceObjId != other.dataSourceObjId) {
+				return dataSourceObjId < other.dataSourceObjId ? -1 : 1;
+			}
+			if (statType != other.statType) {
+				return statType.getType() < other.statType.getType() ? -1 : 1;
+			}
+			return key.compareTo(other.key);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (obj == null || getClass() != obj.getClass()) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return dataSourceObjId == other.dataSourceObjId
+					&& statType == other.statType
+					&& key.equals(other.key);
+		}
+
+		@Override
+		public int hashCode() {
+			int hash = 5;
+			hash = 83 * hash + (int) (dataSourceObjId ^ (dataSourceObjId >>> 32));
+			hash = 83 * hash + statType.hashCode();
+			hash = 83 * hash + key.hashCode();
+			return hash;
+		}
+	}
+}
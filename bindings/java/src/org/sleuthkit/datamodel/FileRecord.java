@@ -0,0 +1,287 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2018 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * Some of the columns of a row of the tsk_files table, as returned by
+ * SleuthkitCase.queryFileRecords(). A record holds only the columns that were
+ * asked for and does not refer to the case, so it is much cheaper to load and
+ * keep than an AbstractFile. Use SleuthkitCase.getAbstractFileById() with the
+ * object id of a record to get the full file.
+ */
+public final class FileRecord {
+
+	/**
+	 * The columns of the tsk_files table that can be loaded into a record. The
+	 * object id is always loaded.
+	 */
+	public enum Column {
+
+		FS_OBJ_ID("fs_obj_id", false), //NON-NLS
+		DATA_SOURCE_OBJ_ID("data_source_obj_id", false), //NON-NLS
+		ATTR_TYPE("attr_type", false), //NON-NLS
+		ATTR_ID("attr_id", false), //NON-NLS
+		NAME("name", true), //NON-NLS
+		META_ADDR("meta_addr", false), //NON-NLS
+		META_SEQ("meta_seq", false), //NON-NLS
+		TYPE("type", false), //NON-NLS
+		HAS_LAYOUT("has_layout", false), //NON-NLS
+		HAS_PATH("has_path", false), //NON-NLS
+		DIR_TYPE("dir_type", false), //NON-NLS
+		META_TYPE("meta_type", false), //NON-NLS
+		DIR_FLAGS("dir_flags", false), //NON-NLS
+		META_FLAGS("meta_flags", false), //NON-NLS
+		SIZE("size", false), //NON-NLS
+		CTIME("ctime", false), //NON-NLS
+		CRTIME("crtime", false), //NON-NLS
+		ATIME("atime", false), //NON-NLS
+		MTIME("mtime", false), //NON-NLS
+		MODE("mode", false), //NON-NLS
+		UID("uid", false), //NON-NLS
+		GID("gid", false), //NON-NLS
+		MD5("md5", true), //NON-NLS
+		KNOWN("known", false), //NON-NLS
+		PARENT_PATH("parent_path", true), //NON-NLS
+		MIME_TYPE("mime_type", true), //NON-NLS
+		EXTENSION("extension", true); //NON-NLS
+
+		private final String columnName;
+		private final boolean isText;
+
+		private Column(String columnName, boolean isText) {
+			this.columnName = columnName;
+			this.isText = isText;
+		}
+
+		/**
+		 * Gets the name of the column in the tsk_files table.
+		 *
+		 * @return The column name.
+		 */
+		public String getColumnName() {
+			return columnName;
+		}
+	}
+
+	private static final long[] NO_NUMBERS = new long[0];
+	private static final String[] NO_STRINGS = new String[0];
+
+	// The values of the numeric columns are kept unboxed, with a bit of
+	// nullNumbers set for each one that is NULL; there are fewer than 64
+	// numeric columns. The positions of the numeric columns are in numbers
+	// and those of the text columns are in strings.
+	private final long objId;
+	private final int[] positions;
+	private final long[] numbers;
+	private final long nullNumbers;
+	private final String[] strings;
+
+	private FileRecord(long objId, int[] positions, long[] numbers, long nullNumbers, String[] strings) {
+		this.objId = objId;
+		this.positions = positions;
+		this.numbers = numbers;
+		this.nullNumbers = nullNumbers;
+		this.strings = strings;
+	}
+
+	/**
+	 * Gets the positions of a set of columns in the values of the records
+	 * that hold them: the numeric columns are numbered apart from the text
+	 * columns. The positions are shared by all of the records of a query.
+	 *
+	 * @param columns The columns, without repeats.
+	 *
+	 * @return The position of each column by ordinal, or -1 for columns that
+	 *         are not in the set.
+	 */
+	static int[] getPositions(Column[] columns) {
+		int[] positions = new int[Column.values().length];
+		Arrays.fill(positions, -1);
+		int numberCount = 0;
+		int stringCount = 0;
+		for (Column column : columns) {
+			positions[column.ordinal()] = column.isText ? stringCount++ : numberCount++;
+		}
+		return positions;
+	}
+
+	/**
+	 * Reads a record from the current row of a result set.
+	 *
+	 * @param rs        The result set, which must have an obj_id column and
+	 *                  the columns of the record.
+	 * @param columns   The columns of the record, without repeats.
+	 * @param positions The positions of the columns, from getPositions().
+	 *
+	 * @return The record.
+	 *
+	 * @throws SQLException If the row cannot be read.
+	 */
+	static FileRecord fromResultSet(ResultSet rs, Column[] columns, int[] positions) throws SQLException {
+		int stringCount = 0;
+		for (Column column : columns) {
+			if (column.isText) {
+				stringCount++;
+			}
+		}
+		long[] numbers = (stringCount == columns.length) ? NO_NUMBERS : new long[columns.length - stringCount];
+		String[] strings = (stringCount == 0) ? NO_STRINGS : new String[stringCount];
+		long nullNumbers = 0;
+		for (Column column : columns) {
+			int position = positions[column.ordinal()];
+			if (column.isText) {
+				strings[position] = rs.getString(column.columnName);
+			} else {
+				numbers[position] = rs.getLong(column.columnName);
+				if (rs.wasNull()) {
+					nullNumbers |= 1L << position;
+				}
+			}
+		}
+		return new FileRecord(rs.getLong("obj_id"), positions, numbers, nullNumbers, strings); //NON-NLS
+	}
+
+	/**
+	 * Gets the object id of the file.
+	 *
+	 * @return The object id.
+	 */
+	public long getObjId() {
+		return objId;
+	}
+
+	/**
+	 * Indicates whether a column was loaded into this record.
+	 *
+	 * @param column The column.
+	 *
+	 * @return True if the column was loaded.
+	 */
+	public boolean hasColumn(Column column) {
+		return positions[column.ordinal()] >= 0;
+	}
+
+	/**
+	 * Gets the value of a numeric column.
+	 *
+	 * @param column The column.
+	 *
+	 * @return The value, or null if the column is NULL for this file.
+	 *
+	 * @throws IllegalArgumentException If the column is not numeric or was
+	 *                                  not loaded.
+	 */
+	public Long getLong(Column column) {
+		int position = getNumberPosition(column);
+		return isNull(position) ? null : numbers[position];
+	}
+
+	/**
+	 * Gets the value of a numeric column without boxing it.
+	 *
+	 * @param column    The column.
+	 * @param nullValue The value to return if the column is NULL for this
+	 *                  file.
+	 *
+	 * @return The value, or nullValue if the column is NULL for this file.
+	 *
+	 * @throws IllegalArgumentException If the column is not numeric or was
+	 *                                  not loaded.
+	 */
+	public long getLong(Column column, long nullValue) {
+		int position = getNumberPosition(column);
+		return isNull(position) ? nullValue : numbers[position];
+	}
+
+	/**
+	 * Gets the value of a text column.
+	 *
+	 * @param column The column.
+	 *
+	 * @return The value, or null if the column is NULL for this file.
+	 *
+	 * @throws IllegalArgumentException If the column is not a text column or
+	 *                                  was not loaded.
+	 */
+	public String getString(Column column) {
+		if (!column.isText) {
+			throw new IllegalArgumentException(column.columnName + " is not a text column"); //NON-NLS
+		}
+		return strings[getPosition(column)];
+	}
+
+	private int getNumberPosition(Column column) {
+		if (column.isText) {
+			throw new IllegalArgumentException(column.columnName + " is not a numeric column"); //NON-NLS
+		}
+		return getPosition(column);
+	}
+
+	private int getPosition(Column column) {
+		int position = positions[column.ordinal()];
+		if (position < 0) {
+			throw new IllegalArgumentException(column.columnName + " was not loaded into the file record"); //NON-NLS
+		}
+		return position;
+	}
+
+	private boolean isNull(int numberPosition) {
+		return (nullNumbers & (1L << numberPosition)) != 0;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (obj == null || getClass() != obj.getClass()) {
+			return false;
+		}
+		FileRecord other = (FileRecord) obj;
+		return objId == other.objId
+				&& nullNumbers == other.nullNumbers
+				&& Arrays.equals(positions, other.positions)
+				&& Arrays.equals(numbers, other.numbers)
+				&& Arrays.equals(strings, other.strings);
+	}
+
+	@Override
+	public int hashCode() {
+		int hash = 7;
+		hash = 59 * hash + (int) (objId ^ (objId >>> 32));
+		hash = 59 * hash + Arrays.hashCode(numbers);
+		hash = 59 * hash + Arrays.hashCode(strings);
+		return hash;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder("FileRecord{obj_id=").append(objId); //NON-NLS
+		for (Column column : Column.values()) {
+			if (hasColumn(column)) {
+				builder.append(", ").append(column.columnName).append('=').append(column.isText ? getString(column) : getLong(column));
+			}
+		}
+		return builder.append('}').toString();
+	}
+}
@@ -38,7 +38,6 @@
 public abstract class FsContent extends AbstractFile {
 
 	private static final Logger logger = Logger.getLogger(AbstractFile.class.getName());
-	private String uniquePath;
 	private List<String> metaDataText = null;
 	private volatile FileSystem parentFileSystem;
 
@@ -260,12 +259,14 @@ public Content getDataSource() throws TskCoreException {
 	 */
 	@Override
 	public synchronized String getUniquePath() throws TskCoreException {
+		String uniquePath = getCachedUniquePath();
 		if (uniquePath == null) {
 			StringBuilder sb = new StringBuilder();
 			sb.append(getFileSystem().getUniquePath());
 			sb.append(getParentPath());
 			sb.append(getName());
 			uniquePath = sb.toString();
+			setUniquePath(uniquePath);
 		}
 		return uniquePath;
 	}
@@ -338,7 +339,7 @@ public String toString(boolean preserveState) {
 		return super.toString(preserveState)
 				+ "FsContent [\t" //NON-NLS
 				+ "fsObjId " + fsObjId //NON-NLS
-				+ "\t" + "uniquePath " + uniquePath //NON-NLS
+				+ "\t" + "uniquePath " + getCachedUniquePath() //NON-NLS
 				+ "\t" + "fileHandle " + fileHandle //NON-NLS
 				+ "]\t";
 	}
@@ -0,0 +1,456 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2018 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Calculates and compares context triggered piecewise hashes (CTPH) in the
+ * format used by ssdeep, i.e. "blocksize:signature1:signature2". Hashes of
+ * files with similar content share long runs of signature characters, and
+ * compare() turns that into a match score from 0 (no similarity) to 100.
+ *
+ * The hash is calculated in a single pass: the signatures for every candidate
+ * block size are built in parallel and the block size that suits the total
+ * length of the data is chosen when getHash() is called.
+ */
+public final class FuzzyHash {
+
+	private static final int ROLLING_WINDOW = 7;
+	private static final int MIN_BLOCKSIZE = 3;
+	private static final int HASH_PRIME = 0x01000193;
+	private static final int HASH_INIT = 0x28021967;
+	private static final int NUM_BLOCKHASHES = 31;
+	private static final int SPAMSUM_LENGTH = 64;
+	private static final String B64 = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/"; //NON-NLS
+
+	// Rolling hash state.
+	private final int[] window = new int[ROLLING_WINDOW];
+	private int rollH1;
+	private int rollH2;
+	private int rollH3;
+	private int rollN;
+
+	// Piecewise hash state for each block size between bhStart and bhEnd.
+	private final int[] blockHash = new int[NUM_BLOCKHASHES];
+	private final int[] halfBlockHash = new int[NUM_BLOCKHASHES];
+	private final char[][] digest = new char[NUM_BLOCKHASHES][SPAMSUM_LENGTH];
+	private final int[] digestLength = new int[NUM_BLOCKHASHES];
+	// The character for the half hash at the last reset point, kept while
+	// the signature is shorter than SPAMSUM_LENGTH / 2, or 0 if none.
+	private final char[] halfDigest = new char[NUM_BLOCKHASHES];
+	private int bhStart = 0;
+	private int bhEnd = 1;
+	private long totalSize = 0;
+
+	/**
+	 * Constructs a fuzzy hash calculator with no data.
+	 */
+	public FuzzyHash() {
+		blockHash[0] = HASH_INIT;
+		halfBlockHash[0] = HASH_INIT;
+	}
+
+	/**
+	 * Adds data to the hash.
+	 *
+	 * @param buffer The buffer holding the data.
+	 * @param offset The offset of the data in the buffer.
+	 * @param length The number of bytes to add.
+	 */
+	public void update(byte[] buffer, int offset, int length) {
+		totalSize += length;
+		for (int i = offset; i < offset + length; i++) {
+			step(buffer[i] & 0xff);
+		}
+	}
+
+	/**
+	 * Gets the hash of the data added so far.
+	 *
+	 * @return The hash in "blocksize:signature1:signature2" form.
+	 */
+	public String getHash() {
+		int rollSum = rollSum();
+		int bi = bhStart;
+
+		// Start with the block size that suits the length of the data and
+		// reduce it while the signature would be too short.
+		while (blockSize(bi) * SPAMSUM_LENGTH < totalSize && bi < NUM_BLOCKHASHES - 1) {
+			++bi;
+		}
+		while (bi >= bhEnd) {
+			--bi;
+		}
+		while (bi > bhStart && digestLength[bi] < SPAMSUM_LENGTH / 2) {
+			--bi;
+		}
+
+		// If the data ends on a reset point the hash is not appended, but the
+		// character kept at the last reset point is, if there is one. That is
+		// the last character of a full signature, or the half hash character
+		// of the second signature.
+		StringBuilder hash = new StringBuilder();
+		hash.append(blockSize(bi)).append(':');
+		hash.append(digest[bi], 0, digestLength[bi]);
+		if (rollSum != 0) {
+			hash.append(B64.charAt(remainder(blockHash[bi], 64)));
+		} else if (digest[bi][digestLength[bi]] != 0) {
+			hash.append(digest[bi][digestLength[bi]]);
+		}
+		hash.append(':');
+		if (bi < bhEnd - 1) {
+			++bi;
+			hash.append(digest[bi], 0, Math.min(digestLength[bi], SPAMSUM_LENGTH / 2 - 1));
+			if (rollSum != 0) {
+				hash.append(B64.charAt(remainder(halfBlockHash[bi], 64)));
+			} else if (halfDigest[bi] != 0) {
+				hash.append(halfDigest[bi]);
+			}
+		} else if (rollSum != 0) {
+			hash.append(B64.charAt(remainder(blockHash[bi], 64)));
+		}
+		return hash.toString();
+	}
+
+	/**
+	 * Compares two fuzzy hashes.
+	 *
+	 * @param hash1 A hash in "blocksize:signature1:signature2" form.
+	 * @param hash2 A hash in "blocksize:signature1:signature2" form.
+	 *
+	 * @return A match score from 0, for no similarity, to 100.
+	 *
+	 * @throws IllegalArgumentException If either hash is not well formed.
+	 */
+	public static int compare(String hash1, String hash2) {
+		ParsedHash parsed1 = new ParsedHash(hash1);
+		ParsedHash parsed2 = new ParsedHash(hash2);
+		long blockSize1 = parsed1.blockSize;
+		long blockSize2 = parsed2.blockSize;
+		if (blockSize1 == blockSize2) {
+			if (parsed1.signature1.equals(parsed2.signature1) && parsed1.signature2.equals(parsed2.signature2)) {
+				return 100;
+			}
+			return Math.max(scoreSignatures(parsed1.signature1, parsed2.signature1, blockSize1),
+					scoreSignatures(parsed1.signature2, parsed2.signature2, blockSize1 * 2));
+		} else if (blockSize1 * 2 == blockSize2) {
+			return scoreSignatures(parsed2.signature1, parsed1.signature2, blockSize2);
+		} else if (blockSize2 * 2 == blockSize1) {
+			return scoreSignatures(parsed1.signature1, parsed2.signature2, blockSize1);
+		}
+		return 0;
+	}
+
+	/**
+	 * Gets the keys under which a fuzzy hash is stored in the similarity
+	 * index. Two hashes can only have a non-zero match score if their
+	 * signatures for the same block size share a run of ROLLING_WINDOW
+	 * characters, so each such run is a key. The keys are grouped by the
+	 * block size of the signature they were taken from, and a hash that shares
+	 * no key with another one can be skipped without comparing them.
+	 *
+	 * @param hash A hash in "blocksize:signature1:signature2" form.
+	 *
+	 * @return The keys, grouped by block size.
+	 *
+	 * @throws IllegalArgumentException If the hash is not well formed.
+	 */
+	static Map<Long, Set<Integer>> getIndexKeys(String hash) {
+		ParsedHash parsed = new ParsedHash(hash);
+		Map<Long, Set<Integer>> keys = new HashMap<Long, Set<Integer>>();
+		keys.put(parsed.blockSize, getGrams(parsed.signature1));
+		keys.put(parsed.blockSize * 2, getGrams(parsed.signature2));
+		return keys;
+	}
+
+	/**
+	 * Gets the block size of a fuzzy hash.
+	 *
+	 * @param hash A hash in "blocksize:signature1:signature2" form.
+	 *
+	 * @return The block size.
+	 *
+	 * @throws IllegalArgumentException If the hash is not well formed.
+	 */
+	static long getBlockSize(String hash) {
+		return new ParsedHash(hash).blockSize;
+	}
+
+	/**
+	 * Processes one byte of data.
+	 *
+	 * @param c The byte, as an unsigned value.
+	 */
+	private void step(int c) {
+		rollHash(c);
+		int h = rollSum();
+		for (int i = bhStart; i < bhEnd; i++) {
+			blockHash[i] = sumHash(c, blockHash[i]);
+			halfBlockHash[i] = sumHash(c, halfBlockHash[i]);
+		}
+		for (int i = bhStart; i < bhEnd; i++) {
+			// A reset point for a block size is also one for all of the
+			// smaller block sizes, so stop at the first one that misses.
+			if (remainder(h, blockSize(i)) != blockSize(i) - 1) {
+				break;
+			}
+			if (digestLength[i] == 0) {
+				forkBlockHash();
+			}
+			digest[i][digestLength[i]] = B64.charAt(remainder(blockHash[i], 64));
+			halfDigest[i] = B64.charAt(remainder(halfBlockHash[i], 64));
+			if (digestLength[i] < SPAMSUM_LENGTH - 1) {
+				// Only reset the hash if there is room for more characters;
+				// the tail of the data is folded into the last character.
+				++digestLength[i];
+				blockHash[i] = HASH_INIT;
+				if (digestLength[i] < SPAMSUM_LENGTH / 2) {
+					halfBlockHash[i] = HASH_INIT;
+					halfDigest[i] = 0;
+				}
+			} else {
+				reduceBlockHash();
+			}
+		}
+	}
+
+	/**
+	 * Starts building the signature for the next larger block size, seeded
+	 * with the state of the largest one built so far.
+	 */
+	private void forkBlockHash() {
+		if (bhEnd >= NUM_BLOCKHASHES) {
+			return;
+		}
+		blockHash[bhEnd] = blockHash[bhEnd - 1];
+		halfBlockHash[bhEnd] = halfBlockHash[bhEnd - 1];
+		digestLength[bhEnd] = 0;
+		halfDigest[bhEnd] = 0;
+		++bhEnd;
+	}
+
+	/**
+	 * Stops building the signature for the smallest block size once it can no
+	 * longer be chosen by getHash().
+	 */
+	private void reduceBlockHash() {
+		if (bhEnd - bhStart < 2) {
+			return;
+		}
+		if (blockSize(bhStart) * SPAMSUM_LENGTH >= totalSize) {
+			return;
+		}
+		if (digestLength[bhStart + 1] < SPAMSUM_LENGTH / 2) {
+			return;
+		}
+		++bhStart;
+	}
+
+	private void rollHash(int c) {
+		rollH2 -= rollH1;
+		rollH2 += ROLLING_WINDOW * c;
+		rollH1 += c;
+		rollH1 -= window[rollN % ROLLING_WINDOW];
+		window[rollN % ROLLING_WINDOW] = c;
+		rollN = (rollN + 1) % ROLLING_WINDOW;
+		rollH3 <<= 5;
+		rollH3 ^= c;
+	}
+
+	private int rollSum() {
+		return rollH1 + rollH2 + rollH3;
+	}
+
+	private static int sumHash(int c, int h) {
+		return (h * HASH_PRIME) ^ c;
+	}
+
+	private static long blockSize(int index) {
+		return ((long) MIN_BLOCKSIZE) << index;
+	}
+
+	/**
+	 * Gets the remainder of an unsigned 32 bit value.
+	 */
+	private static int remainder(int value, long divisor) {
+		return (int) ((value & 0xffffffffL) % divisor);
+	}
+
+	/**
+	 * Scores the similarity of two signatures for the same block size using a
+	 * weighted edit distance, capped for small block sizes so that matches on
+	 * tiny inputs are not overstated.
+	 */
+	private static int scoreSignatures(String signature1, String signature2, long blockSize) {
+		if (signature1.length() > SPAMSUM_LENGTH || signature2.length() > SPAMSUM_LENGTH) {
+			return 0;
+		}
+		if (!hasCommonSubstring(signature1, signature2)) {
+			return 0;
+		}
+		int totalLength = signature1.length() + signature2.length();
+		long score = editDistance(signature1, signature2);
+		score = (score * SPAMSUM_LENGTH) / totalLength;
+		score = (100 * score) / SPAMSUM_LENGTH;
+		if (score >= 100) {
+			return 0;
+		}
+		score = 100 - score;
+		if (blockSize < (99 + ROLLING_WINDOW) / ROLLING_WINDOW * MIN_BLOCKSIZE) {
+			long cap = blockSize / MIN_BLOCKSIZE * Math.min(signature1.length(), signature2.length());
+			score = Math.min(score, cap);
+		}
+		return (int) score;
+	}
+
+	private static boolean hasCommonSubstring(String signature1, String signature2) {
+		Set<String> grams = new HashSet<String>();
+		for (int i = 0; i + ROLLING_WINDOW <= signature1.length(); i++) {
+			grams.add(signature1.substring(i, i + ROLLING_WINDOW));
+		}
+		for (int i = 0; i + ROLLING_WINDOW <= signature2.length(); i++) {
+			if (grams.contains(signature2.substring(i, i + ROLLING_WINDOW))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Edit distance with a cost of 1 for insertions and deletions and 2 for
+	 * substitutions.
+	 */
+	private static int editDistance(String s1, String s2) {
+		int[] previous = new int[s2.length() + 1];
+		int[] current = new int[s2.length() + 1];
+		for (int j = 0; j <= s2.length(); j++) {
+			previous[j] = j;
+		}
+		for (int i = 1; i <= s1.length(); i++) {
+			current[0] = i;
+			for (int j = 1; j <= s2.length(); j++) {
+				int substitutionCost = s1.charAt(i - 1) == s2.charAt(j - 1) ? 0 : 2;
+				current[j] = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + substitutionCost);
+			}
+			int[] swap = previous;
+			previous = current;
+			current = swap;
+		}
+		return previous[s2.length()];
+	}
+
+	private static Set<Integer> getGrams(String signature) {
+		Set<Integer> grams = new LinkedHashSet<Integer>();
+		for (int i = 0; i + ROLLING_WINDOW <= signature.length(); i++) {
+			grams.add(signature.substring(i, i + ROLLING_WINDOW).hashCode());
+		}
+		return grams;
+	}
+
+	/**
+	 * Removes runs of more than three identical characters from a signature.
+	 * Such runs carry little information and would inflate match scores.
+	 */
+	private static String eliminateSequences(String signature) {
+		StringBuilder result = new StringBuilder(signature.length());
+		for (int i = 0; i < signature.length(); i++) {
+			char c = signature.charAt(i);
+			if (i < 3 || c != signature.charAt(i - 1) || c != signature.charAt(i - 2) || c != signature.charAt(i - 3)) {
+				result.append(c);
+			}
+		}
+		return result.toString();
+	}
+
+	/**
+	 * A file whose fuzzy hash is similar to that of another file.
+	 */
+	public static final class Match {
+
+		private final AbstractFile file;
+		private final String fuzzyHash;
+		private final int score;
+
+		Match(AbstractFile file, String fuzzyHash, int score) {
+			this.file = file;
+			this.fuzzyHash = fuzzyHash;
+			this.score = score;
+		}
+
+		/**
+		 * Gets the similar file.
+		 *
+		 * @return The file.
+		 */
+		public AbstractFile getFile() {
+			return file;
+		}
+
+		/**
+		 * Gets the fuzzy hash of the similar file.
+		 *
+		 * @return The hash in "blocksize:signature1:signature2" form.
+		 */
+		public String getFuzzyHash() {
+			return fuzzyHash;
+		}
+
+		/**
+		 * Gets the match score of the two hashes.
+		 *
+		 * @return The score, from 1 to 100.
+		 */
+		public int getScore() {
+			return score;
+		}
+	}
+
+	/**
+	 * A fuzzy hash split into its parts, with long character runs removed
+	 * from the signatures.
+	 */
+	private static final class ParsedHash {
+
+		private final long blockSize;
+		private final String signature1;
+		private final String signature2;
+
+		ParsedHash(String hash) {
+			String[] parts = hash.split(":", -1);
+			if (parts.length != 3) {
+				throw new IllegalArgumentException("Malformed fuzzy hash: " + hash); //NON-NLS
+			}
+			try {
+				blockSize = Long.parseLong(parts[0]);
+			} catch (NumberFormatException ex) {
+				throw new IllegalArgumentException("Malformed fuzzy hash block size: " + hash, ex); //NON-NLS
+			}
+			if (blockSize < MIN_BLOCKSIZE) {
+				throw new IllegalArgumentException("Malformed fuzzy hash block size: " + hash); //NON-NLS
+			}
+			signature1 = eliminateSequences(parts[1]);
+			signature2 = eliminateSequences(parts[2]);
+		}
+	}
+}
@@ -0,0 +1,328 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2018 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A group of open hash databases that are queried together. Each lookup is
+ * run against all of the databases in the set concurrently and the per
+ * database results are merged into a single LookupResult that records which
+ * databases had a hit. Results for recently seen hashes, including misses,
+ * are kept in a bounded cache shared by all callers of the set.
+ *
+ * The set does not own the database handles; closing the set releases its
+ * lookup threads but leaves the databases open.
+ */
+public final class HashDbSet {
+
+	private static final int DEFAULT_CACHE_SIZE = 10000;
+	private static final AtomicInteger threadCount = new AtomicInteger(0);
+	private final List<Integer> dbHandles;
+	private final Map<Integer, String> dbDisplayNames;
+	private final Map<String, LookupResult> resultCache;
+	private final ExecutorService lookupExecutor;
+
+	/**
+	 * Constructs a set of hash databases with the default result cache size.
+	 *
+	 * @param dbHandles Handles of previously opened hash databases.
+	 *
+	 * @throws TskCoreException if a critical error occurs within TSK core
+	 */
+	public HashDbSet(Collection<Integer> dbHandles) throws TskCoreException {
+		this(dbHandles, DEFAULT_CACHE_SIZE);
+	}
+
+	/**
+	 * Constructs a set of hash databases.
+	 *
+	 * @param dbHandles Handles of previously opened hash databases.
+	 * @param cacheSize The maximum number of hashes to keep lookup results
+	 *                  for, zero to disable caching.
+	 *
+	 * @throws TskCoreException if a critical error occurs within TSK core
+	 */
+	public HashDbSet(Collection<Integer> dbHandles, final int cacheSize) throws TskCoreException {
+		if (dbHandles.isEmpty()) {
+			throw new IllegalArgumentException("A hash database set requires at least one database"); //NON-NLS
+		}
+		if (cacheSize < 0) {
+			throw new IllegalArgumentException("Cache size must be non-negative"); //NON-NLS
+		}
+		this.dbHandles = Collections.unmodifiableList(new ArrayList<Integer>(dbHandles));
+		Map<Integer, String> names = new HashMap<Integer, String>();
+		for (Integer dbHandle : this.dbHandles) {
+			names.put(dbHandle, SleuthkitJNI.getHashDatabaseDisplayName(dbHandle));
+		}
+		this.dbDisplayNames = Collections.unmodifiableMap(names);
+		this.resultCache = Collections.synchronizedMap(new LinkedHashMap<String, LookupResult>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, LookupResult> eldest) {
+				return size() > cacheSize;
+			}
+		});
+		int poolSize = Math.min(this.dbHandles.size(), Runtime.getRuntime().availableProcessors());
+		this.lookupExecutor = Executors.newFixedThreadPool(poolSize, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "HashDbSet-lookup-" + threadCount.incrementAndGet()); //NON-NLS
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Gets the handles of the hash databases in this set.
+	 *
+	 * @return The database handles, in the order they were supplied.
+	 */
+	public List<Integer> getHashDbHandles() {
+		return dbHandles;
+	}
+
+	/**
+	 * Looks up a hash value in every database in the set.
+	 *
+	 * @param hash The hash value to search for.
+	 *
+	 * @return The merged result. Use LookupResult.isHit() to determine whether
+	 *         any database contained the hash.
+	 *
+	 * @throws TskCoreException if a critical error occurs within TSK core
+	 */
+	public LookupResult lookupAll(String hash) throws TskCoreException {
+		return lookupAll(new String[]{hash})[0];
+	}
+
+	/**
+	 * Looks up several hash values in every database in the set. Each database
+	 * is searched for all of the uncached hashes by a single task, so this is
+	 * cheaper than calling lookupAll(String) in a loop.
+	 *
+	 * @param hashes The hash values to search for.
+	 *
+	 * @return The merged results, in the same order as the hashes.
+	 *
+	 * @throws TskCoreException if a critical error occurs within TSK core
+	 */
+	public LookupResult[] lookupAll(String[] hashes) throws TskCoreException {
+		if (lookupExecutor.isShutdown()) {
+			throw new TskCoreException("Hash database set is closed"); //NON-NLS
+		}
+		LookupResult[] results = new LookupResult[hashes.length];
+		Set<String> missedHashes = new LinkedHashSet<String>();
+		for (int i = 0; i < hashes.length; i++) {
+			String key = hashes[i].toLowerCase();
+			results[i] = resultCache.get(key);
+			if (results[i] == null) {
+				missedHashes.add(key);
+			}
+		}
+		if (missedHashes.isEmpty()) {
+			return results;
+		}
+		final List<String> uncachedHashes = new ArrayList<String>(missedHashes);
+
+		// Search each database for all of the uncached hashes in parallel.
+		List<Future<HashHitInfo[]>> futures = new ArrayList<Future<HashHitInfo[]>>();
+		for (final Integer dbHandle : dbHandles) {
+			futures.add(lookupExecutor.submit(new Callable<HashHitInfo[]>() {
+				@Override
+				public HashHitInfo[] call() throws TskCoreException {
+					HashHitInfo[] hits = new HashHitInfo[uncachedHashes.size()];
+					for (int i = 0; i < hits.length; i++) {
+						hits[i] = SleuthkitJNI.lookupInHashDatabaseVerbose(uncachedHashes.get(i), dbHandle);
+					}
+					return hits;
+				}
+			}));
+		}
+
+		// Merge the per database hits for each hash.
+		Map<String, LookupResult> newResults = new HashMap<String, LookupResult>();
+		for (String hash : uncachedHashes) {
+			newResults.put(hash, new LookupResult(hash));
+		}
+		for (int dbIndex = 0; dbIndex < dbHandles.size(); dbIndex++) {
+			HashHitInfo[] hits = getLookupResults(futures.get(dbIndex));
+			Integer dbHandle = dbHandles.get(dbIndex);
+			for (int i = 0; i < hits.length; i++) {
+				if (hits[i] != null) {
+					newResults.get(uncachedHashes.get(i)).addHit(dbHandle, dbDisplayNames.get(dbHandle), hits[i]);
+				}
+			}
+		}
+		resultCache.putAll(newResults);
+		for (int i = 0; i < hashes.length; i++) {
+			if (results[i] == null) {
+				results[i] = newResults.get(hashes[i].toLowerCase());
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Discards all cached lookup results. Call this after adding hashes to
+	 * one of the databases in the set.
+	 */
+	public void clearCache() {
+		resultCache.clear();
+	}
+
+	/**
+	 * Stops the lookup threads of this set. The hash databases themselves are
+	 * not closed.
+	 */
+	public void close() {
+		lookupExecutor.shutdownNow();
+		resultCache.clear();
+	}
+
+	/**
+	 * Waits for a database lookup task and unwraps any exception it threw.
+	 *
+	 * @param future The future of the lookup task.
+	 *
+	 * @return The hits of the task, with null entries for misses.
+	 *
+	 * @throws TskCoreException if the lookup failed or was interrupted.
+	 */
+	private static HashHitInfo[] getLookupResults(Future<HashHitInfo[]> future) throws TskCoreException {
+		try {
+			return future.get();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new TskCoreException("Interrupted while looking up hashes", ex); //NON-NLS
+		} catch (ExecutionException ex) {
+			if (ex.getCause() instanceof TskCoreException) {
+				throw (TskCoreException) ex.getCause();
+			}
+			throw new TskCoreException("Error looking up hashes", ex); //NON-NLS
+		}
+	}
+
+	/**
+	 * The merged result of looking up one hash value in all of the databases
+	 * of a HashDbSet.
+	 */
+	public static final class LookupResult {
+
+		private final String hash;
+		private final List<Integer> hitDbHandles = new ArrayList<Integer>();
+		private final List<String> hitDbNames = new ArrayList<String>();
+		private HashHitInfo hashHitInfo;
+
+		private LookupResult(String hash) {
+			this.hash = hash;
+		}
+
+		private void addHit(int dbHandle, String dbName, HashHitInfo hit) {
+			hitDbHandles.add(dbHandle);
+			hitDbNames.add(dbName);
+			if (hashHitInfo == null) {
+				hashHitInfo = new HashHitInfo(hit.getHashMd5(), hit.getHashSha1(), hit.getHashSha256());
+			}
+			for (String name : hit.getNames()) {
+				hashHitInfo.addName(name);
+			}
+			for (String comment : hit.getComments()) {
+				hashHitInfo.addComment(comment);
+			}
+		}
+
+		/**
+		 * Gets the hash value that was looked up, in lower case.
+		 *
+		 * @return The hash value.
+		 */
+		public String getHash() {
+			return hash;
+		}
+
+		/**
+		 * Indicates whether any database in the set contained the hash.
+		 *
+		 * @return True if there was at least one hit.
+		 */
+		public boolean isHit() {
+			return !hitDbHandles.isEmpty();
+		}
+
+		/**
+		 * Gets the handles of the databases that contained the hash.
+		 *
+		 * @return The database handles, empty if there was no hit.
+		 */
+		public List<Integer> getHitDbHandles() {
+			return Collections.unmodifiableList(hitDbHandles);
+		}
+
+		/**
+		 * Gets the display names of the databases that contained the hash.
+		 *
+		 * @return The database display names, empty if there was no hit.
+		 */
+		public List<String> getHitDbNames() {
+			return Collections.unmodifiableList(hitDbNames);
+		}
+
+		/**
+		 * Gets the hash details merged across all of the databases that
+		 * contained the hash. The names and comments of every hit are
+		 * included; the hash values are those of the first database in the set
+		 * that had a hit. The result is cached and shared by every caller, so
+		 * each call returns a new copy of the details that the caller may
+		 * change.
+		 *
+		 * @return The merged details, or null if there was no hit.
+		 */
+		public HashHitInfo getHashHitInfo() {
+			if (hashHitInfo == null) {
+				return null;
+			}
+			HashHitInfo copy = new HashHitInfo(hashHitInfo.getHashMd5(), hashHitInfo.getHashSha1(), hashHitInfo.getHashSha256());
+			for (String name : hashHitInfo.getNames()) {
+				copy.addName(name);
+			}
+			for (String comment : hashHitInfo.getComments()) {
+				copy.addComment(comment);
+			}
+			return copy;
+		}
+	}
+}
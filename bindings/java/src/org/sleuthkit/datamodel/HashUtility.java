@@ -32,6 +32,43 @@
 public class HashUtility {
 
 	private final static int BUFFER_SIZE = 16 * 1024;
+
+	/**
+	 * The hash algorithms that can be calculated for content and images.
+	 */
+	public enum HashType {
+
+		MD5("MD5"), //NON-NLS
+		SHA1("SHA-1"), //NON-NLS
+		SHA256("SHA-256"); //NON-NLS
+
+		private final String algorithm;
+
+		private HashType(String algorithm) {
+			this.algorithm = algorithm;
+		}
+
+		/**
+		 * Gets the name of the algorithm as used by MessageDigest.
+		 *
+		 * @return The algorithm name.
+		 */
+		public String getAlgorithm() {
+			return algorithm;
+		}
+
+		/**
+		 * Gets a new digest for the algorithm.
+		 *
+		 * @return The digest.
+		 *
+		 * @throws NoSuchAlgorithmException If the platform does not provide the
+		 *                                  algorithm.
+		 */
+		MessageDigest getMessageDigest() throws NoSuchAlgorithmException {
+			return MessageDigest.getInstance(algorithm);
+		}
+	}
 	
 	/**
 	 * Calculate the MD5 hash for the given FsContent
@@ -68,6 +105,49 @@ static public String calculateMd5Hash(Content content) throws IOException {
 		return hashText;
 	}
 
+	/**
+	 * Calculate the fuzzy (ssdeep style) hash for the given content. The
+	 * content is read once.
+	 *
+	 * @param content content object whose fuzzy hash we want to calculate
+	 *
+	 * @return fuzzy hash of the given content, in
+	 *         "blocksize:signature1:signature2" form
+	 *
+	 * @throws java.io.IOException
+	 */
+	static public String calculateFuzzyHash(Content content) throws IOException {
+		InputStream in = new ReadContentInputStream(content);
+		try {
+			byte[] buffer = new byte[BUFFER_SIZE];
+			FuzzyHash fuzzyHash = new FuzzyHash();
+			int len = in.read(buffer);
+			while (len != -1) {
+				fuzzyHash.update(buffer, 0, len);
+				len = in.read(buffer);
+			}
+			return fuzzyHash.getHash();
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Converts a digest to a lower case hex string.
+	 *
+	 * @param digest The digest bytes.
+	 *
+	 * @return The hex string, zero padded to twice the digest length.
+	 */
+	static String toHexString(byte[] digest) {
+		StringBuilder hex = new StringBuilder(digest.length * 2);
+		for (byte b : digest) {
+			hex.append(Character.forDigit((b >> 4) & 0xf, 16));
+			hex.append(Character.forDigit(b & 0xf, 16));
+		}
+		return hex.toString();
+	}
+
 	/**
 	 * Determine if the passed in Hash value is that for no data (i.e. an empty
 	 * file). Looking these values up or correlating on them causes lots of
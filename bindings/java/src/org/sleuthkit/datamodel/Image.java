@@ -22,7 +22,11 @@
 import java.util.ResourceBundle;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.io.File;
@@ -43,7 +47,8 @@ public class Image extends AbstractContent implements DataSource {
 	private long size;
 	private final String[] paths;
 	private volatile long imageHandle = 0;
-	private final String deviceId, timezone, md5;
+	private final String deviceId, timezone;
+	private volatile String md5;
 	private static ResourceBundle bundle = ResourceBundle.getBundle("org.sleuthkit.datamodel.Bundle");
 
 	private static final Logger LOGGER = Logger.getLogger(Image.class.getName());
@@ -356,6 +361,187 @@ public String getMd5() {
 		return md5;
 	}
 
+	/**
+	 * Gets the SHA-1 hash value of the image, as stored by verifyHash().
+	 *
+	 * @return The SHA-1 hash, or null if it has not been calculated.
+	 *
+	 * @throws TskCoreException If there is an error querying the case
+	 *                          database.
+	 */
+	public String getSha1() throws TskCoreException {
+		return getSleuthkitCase().getImageHash(this, HashUtility.HashType.SHA1);
+	}
+
+	/**
+	 * Gets the SHA-256 hash value of the image, as stored by verifyHash().
+	 *
+	 * @return The SHA-256 hash, or null if it has not been calculated.
+	 *
+	 * @throws TskCoreException If there is an error querying the case
+	 *                          database.
+	 */
+	public String getSha256() throws TskCoreException {
+		return getSleuthkitCase().getImageHash(this, HashUtility.HashType.SHA256);
+	}
+
+	/**
+	 * Calculates hashes of the image data and checks the MD5 against the one
+	 * stored for the image, e.g., the acquisition hash of an E01 image.
+	 *
+	 * @param algorithms  The hash algorithms to calculate.
+	 * @param parallelism The number of image chunks to read concurrently.
+	 *
+	 * @return The calculated hashes and the verification outcome.
+	 *
+	 * @throws TskCoreException If the image could not be read or the hashes
+	 *                          could not be stored.
+	 */
+	public HashVerificationResult verifyHash(Collection<HashUtility.HashType> algorithms, int parallelism) throws TskCoreException {
+		return verifyHash(algorithms, parallelism, null);
+	}
+
+	/**
+	 * Calculates hashes of the image data and checks the MD5 against the one
+	 * stored for the image, e.g., the acquisition hash of an E01 image. The
+	 * image is read in chunks by several threads, directly from the segment
+	 * files for raw images and through separate TSK image handles for other
+	 * formats, and each algorithm is calculated on its own thread.
+	 *
+	 * The calculated hashes are stored in tsk_image_info. A stored MD5 is
+	 * never replaced, so that a mismatch does not erase the expected value.
+	 *
+	 * @param algorithms  The hash algorithms to calculate.
+	 * @param parallelism The number of image chunks to read concurrently.
+	 * @param listener    Receives progress and throughput updates about once a
+	 *                    second, may be null.
+	 *
+	 * @return The calculated hashes and the verification outcome.
+	 *
+	 * @throws TskCoreException If the image could not be read or the hashes
+	 *                          could not be stored.
+	 */
+	public HashVerificationResult verifyHash(Collection<HashUtility.HashType> algorithms, int parallelism, HashProgressListener listener) throws TskCoreException {
+		if (algorithms.isEmpty()) {
+			throw new IllegalArgumentException("At least one hash algorithm is required"); //NON-NLS
+		}
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("Parallelism must be at least 1"); //NON-NLS
+		}
+		String storedMd5 = md5;
+		long startTime = System.currentTimeMillis();
+		Map<HashUtility.HashType, String> hashes = new ImageHasher(this, algorithms, parallelism, listener).calculate();
+		long elapsedMillis = System.currentTimeMillis() - startTime;
+
+		Map<HashUtility.HashType, String> hashesToStore = new EnumMap<HashUtility.HashType, String>(hashes);
+		if (storedMd5 != null && !storedMd5.isEmpty()) {
+			hashesToStore.remove(HashUtility.HashType.MD5);
+		}
+		getSleuthkitCase().setImageHashes(this, hashesToStore);
+		if (hashesToStore.containsKey(HashUtility.HashType.MD5)) {
+			md5 = hashesToStore.get(HashUtility.HashType.MD5);
+		}
+		return new HashVerificationResult(hashes, storedMd5, getSize(), elapsedMillis);
+	}
+
+	/**
+	 * Receives progress updates from Image.verifyHash().
+	 */
+	public interface HashProgressListener {
+
+		/**
+		 * Called as image data is hashed.
+		 *
+		 * @param bytesHashed    The number of bytes hashed so far.
+		 * @param totalBytes     The size of the image.
+		 * @param bytesPerSecond The average throughput so far.
+		 */
+		void progress(long bytesHashed, long totalBytes, double bytesPerSecond);
+	}
+
+	/**
+	 * The outcome of Image.verifyHash().
+	 */
+	public static final class HashVerificationResult {
+
+		private final Map<HashUtility.HashType, String> hashes;
+		private final String storedMd5;
+		private final long bytesHashed;
+		private final long elapsedMillis;
+
+		private HashVerificationResult(Map<HashUtility.HashType, String> hashes, String storedMd5, long bytesHashed, long elapsedMillis) {
+			this.hashes = Collections.unmodifiableMap(hashes);
+			this.storedMd5 = storedMd5;
+			this.bytesHashed = bytesHashed;
+			this.elapsedMillis = elapsedMillis;
+		}
+
+		/**
+		 * Gets the calculated hashes.
+		 *
+		 * @return The lower case hex hash for each requested algorithm.
+		 */
+		public Map<HashUtility.HashType, String> getHashes() {
+			return hashes;
+		}
+
+		/**
+		 * Gets the MD5 that was stored for the image before verification.
+		 *
+		 * @return The stored MD5, or null or empty if there was none.
+		 */
+		public String getStoredMd5() {
+			return storedMd5;
+		}
+
+		/**
+		 * Indicates whether the calculated MD5 matches the stored one.
+		 *
+		 * @return True if an MD5 was stored and calculated and they match.
+		 */
+		public boolean isMd5Verified() {
+			String calculatedMd5 = hashes.get(HashUtility.HashType.MD5);
+			return calculatedMd5 != null && storedMd5 != null && calculatedMd5.equalsIgnoreCase(storedMd5);
+		}
+
+		/**
+		 * Indicates whether the calculated MD5 differs from the stored one.
+		 *
+		 * @return True if an MD5 was stored and calculated and they differ.
+		 */
+		public boolean isMd5Mismatch() {
+			String calculatedMd5 = hashes.get(HashUtility.HashType.MD5);
+			return calculatedMd5 != null && storedMd5 != null && !storedMd5.isEmpty() && !calculatedMd5.equalsIgnoreCase(storedMd5);
+		}
+
+		/**
+		 * Gets the number of bytes hashed.
+		 *
+		 * @return The image size.
+		 */
+		public long getBytesHashed() {
+			return bytesHashed;
+		}
+
+		/**
+		 * Gets the time taken to hash the image.
+		 *
+		 * @return The elapsed time in milliseconds.
+		 */
+		public long getElapsedMillis() {
+			return elapsedMillis;
+		}
+
+		/**
+		 * Gets the average hashing throughput.
+		 *
+		 * @return The throughput in bytes per second.
+		 */
+		public double getBytesPerSecond() {
+			return ImageHasher.getBytesPerSecond(bytesHashed, elapsedMillis);
+		}
+	}
+
 	/**
 	 * Gets the ASCII-printable identifier for the device associated with the
 	 * data source. This identifier is intended to be unique across multiple
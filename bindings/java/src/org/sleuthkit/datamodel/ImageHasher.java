@@ -0,0 +1,415 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2018 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.sleuthkit.datamodel.HashUtility.HashType;
+
+/**
+ * Calculates whole image hashes with the reads and the digests spread over
+ * several threads. The image is split into fixed size chunks that are read
+ * concurrently, by positional reads of the segment files for raw images and
+ * through private TSK image handles otherwise, and handed in order to one
+ * digest thread per algorithm. A window of outstanding chunks bounds the
+ * memory used.
+ */
+final class ImageHasher {
+
+	private static final Logger logger = Logger.getLogger(ImageHasher.class.getName());
+	private static final int CHUNK_SIZE = 4 * 1024 * 1024;
+	private static final long PROGRESS_INTERVAL_MILLIS = 1000;
+	private static final AtomicInteger threadCount = new AtomicInteger(0);
+
+	private final Image image;
+	private final List<HashType> hashTypes;
+	private final int parallelism;
+	private final Image.HashProgressListener listener;
+
+	/**
+	 * Constructs an image hasher.
+	 *
+	 * @param image       The image to hash.
+	 * @param hashTypes   The algorithms to calculate.
+	 * @param parallelism The number of concurrent chunk reads.
+	 * @param listener    The progress listener, may be null.
+	 */
+	ImageHasher(Image image, Collection<HashType> hashTypes, int parallelism, Image.HashProgressListener listener) {
+		this.image = image;
+		this.hashTypes = new ArrayList<HashType>(hashTypes);
+		this.parallelism = parallelism;
+		this.listener = listener;
+	}
+
+	/**
+	 * Hashes the image.
+	 *
+	 * @return The hex encoded hash for each algorithm.
+	 *
+	 * @throws TskCoreException If the image could not be read, or the calling
+	 *                          thread was interrupted.
+	 */
+	Map<HashType, String> calculate() throws TskCoreException {
+		final long imageSize = image.getSize();
+		final List<MessageDigest> digests = new ArrayList<MessageDigest>();
+		for (HashType hashType : hashTypes) {
+			try {
+				digests.add(hashType.getMessageDigest());
+			} catch (NoSuchAlgorithmException ex) {
+				throw new TskCoreException("No algorithm known as " + hashType.getAlgorithm(), ex); //NON-NLS
+			}
+		}
+
+		ChunkSource source = openChunkSource();
+		ExecutorService readExecutor = Executors.newFixedThreadPool(parallelism, new HasherThreadFactory("read")); //NON-NLS
+		List<ExecutorService> digestExecutors = new ArrayList<ExecutorService>();
+		for (int i = 0; i < digests.size(); i++) {
+			// A single thread per digest keeps its updates in chunk order.
+			digestExecutors.add(Executors.newSingleThreadExecutor(new HasherThreadFactory("digest"))); //NON-NLS
+		}
+		try {
+			final long chunkCount = (imageSize + CHUNK_SIZE - 1) / CHUNK_SIZE;
+			final int window = 2 * parallelism;
+			Deque<Future<byte[]>> pendingReads = new ArrayDeque<Future<byte[]>>();
+			Deque<List<Future<?>>> pendingDigests = new ArrayDeque<List<Future<?>>>();
+			long nextChunk = 0;
+			long bytesHashed = 0;
+			long startTime = System.currentTimeMillis();
+			long lastProgressTime = startTime;
+			while (nextChunk < chunkCount && pendingReads.size() < window) {
+				pendingReads.add(readExecutor.submit(new ReadTask(source, nextChunk * CHUNK_SIZE, imageSize)));
+				++nextChunk;
+			}
+			while (!pendingReads.isEmpty()) {
+				final byte[] chunk = getResult(pendingReads.poll());
+				List<Future<?>> chunkDigests = new ArrayList<Future<?>>();
+				for (int i = 0; i < digests.size(); i++) {
+					final MessageDigest digest = digests.get(i);
+					chunkDigests.add(digestExecutors.get(i).submit(new Runnable() {
+						@Override
+						public void run() {
+							digest.update(chunk);
+						}
+					}));
+				}
+				pendingDigests.add(chunkDigests);
+				while (pendingDigests.size() > window) {
+					waitForAll(pendingDigests.poll());
+				}
+				if (nextChunk < chunkCount) {
+					pendingReads.add(readExecutor.submit(new ReadTask(source, nextChunk * CHUNK_SIZE, imageSize)));
+					++nextChunk;
+				}
+
+				bytesHashed += chunk.length;
+				long now = System.currentTimeMillis();
+				if (listener != null && (now - lastProgressTime >= PROGRESS_INTERVAL_MILLIS || pendingReads.isEmpty())) {
+					lastProgressTime = now;
+					listener.progress(bytesHashed, imageSize, getBytesPerSecond(bytesHashed, now - startTime));
+				}
+			}
+			while (!pendingDigests.isEmpty()) {
+				waitForAll(pendingDigests.poll());
+			}
+
+			Map<HashType, String> hashes = new EnumMap<HashType, String>(HashType.class);
+			for (int i = 0; i < digests.size(); i++) {
+				hashes.put(hashTypes.get(i), HashUtility.toHexString(digests.get(i).digest()));
+			}
+			return hashes;
+		} finally {
+			readExecutor.shutdownNow();
+			for (ExecutorService digestExecutor : digestExecutors) {
+				digestExecutor.shutdownNow();
+			}
+			source.close();
+		}
+	}
+
+	/**
+	 * Calculates a transfer rate.
+	 *
+	 * @param bytes         The number of bytes transferred.
+	 * @param elapsedMillis The elapsed time in milliseconds.
+	 *
+	 * @return The rate in bytes per second.
+	 */
+	static double getBytesPerSecond(long bytes, long elapsedMillis) {
+		return elapsedMillis > 0 ? bytes * 1000.0 / elapsedMillis : 0;
+	}
+
+	/**
+	 * Opens the cheapest source of image data: the segment files themselves
+	 * for raw images whose segments add up to the image size, otherwise a
+	 * pool of private TSK image handles.
+	 *
+	 * @return The chunk source.
+	 *
+	 * @throws TskCoreException If the image could not be opened.
+	 */
+	private ChunkSource openChunkSource() throws TskCoreException {
+		TskData.TSK_IMG_TYPE_ENUM type = image.getType();
+		if (type == TskData.TSK_IMG_TYPE_ENUM.TSK_IMG_TYPE_RAW_SING || type == TskData.TSK_IMG_TYPE_ENUM.TSK_IMG_TYPE_RAW_SPLIT) {
+			long segmentTotal = 0;
+			boolean allFiles = true;
+			for (String path : image.getPaths()) {
+				File segment = new File(path);
+				allFiles = allFiles && segment.isFile();
+				segmentTotal += segment.length();
+			}
+			if (allFiles && segmentTotal == image.getSize()) {
+				try {
+					return new RawChunkSource(image.getPaths());
+				} catch (IOException ex) {
+					logger.log(Level.WARNING, "Could not open raw image segments of image " + image.getId() + ", reading through TSK instead", ex); //NON-NLS
+				}
+			}
+		}
+		return new TskChunkSource(image.getPaths(), (int) image.getSsize(), parallelism);
+	}
+
+	private static <T> T getResult(Future<T> future) throws TskCoreException {
+		try {
+			return future.get();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new TskCoreException("Interrupted while hashing image", ex); //NON-NLS
+		} catch (ExecutionException ex) {
+			if (ex.getCause() instanceof TskCoreException) {
+				throw (TskCoreException) ex.getCause();
+			}
+			throw new TskCoreException("Error hashing image", ex); //NON-NLS
+		}
+	}
+
+	private static void waitForAll(List<Future<?>> futures) throws TskCoreException {
+		for (Future<?> future : futures) {
+			getResult(future);
+		}
+	}
+
+	/**
+	 * Reads one chunk of the image.
+	 */
+	private static final class ReadTask implements Callable<byte[]> {
+
+		private final ChunkSource source;
+		private final long offset;
+		private final long imageSize;
+
+		ReadTask(ChunkSource source, long offset, long imageSize) {
+			this.source = source;
+			this.offset = offset;
+			this.imageSize = imageSize;
+		}
+
+		@Override
+		public byte[] call() throws TskCoreException {
+			byte[] chunk = new byte[(int) Math.min(CHUNK_SIZE, imageSize - offset)];
+			source.read(chunk, offset);
+			return chunk;
+		}
+	}
+
+	/**
+	 * A source of image data that can be read from several threads.
+	 */
+	private interface ChunkSource {
+
+		/**
+		 * Fills a buffer with image data.
+		 *
+		 * @param buffer The buffer.
+		 * @param offset The image offset of the first byte.
+		 *
+		 * @throws TskCoreException If the data could not be read.
+		 */
+		void read(byte[] buffer, long offset) throws TskCoreException;
+
+		void close();
+	}
+
+	/**
+	 * Reads raw image segments with positional reads, which do not contend
+	 * with each other.
+	 */
+	private static final class RawChunkSource implements ChunkSource {
+
+		private final List<RandomAccessFile> files = new ArrayList<RandomAccessFile>();
+		private final List<FileChannel> channels = new ArrayList<FileChannel>();
+		private final long[] segmentStarts;
+
+		RawChunkSource(String[] paths) throws IOException {
+			segmentStarts = new long[paths.length + 1];
+			try {
+				for (int i = 0; i < paths.length; i++) {
+					RandomAccessFile file = new RandomAccessFile(paths[i], "r"); //NON-NLS
+					files.add(file);
+					channels.add(file.getChannel());
+					segmentStarts[i + 1] = segmentStarts[i] + file.length();
+				}
+			} catch (IOException ex) {
+				close();
+				throw ex;
+			}
+		}
+
+		@Override
+		public void read(byte[] buffer, long offset) throws TskCoreException {
+			ByteBuffer target = ByteBuffer.wrap(buffer);
+			long position = offset;
+			int segment = 0;
+			try {
+				while (target.hasRemaining()) {
+					while (segment < channels.size() && segmentStarts[segment + 1] <= position) {
+						++segment;
+					}
+					if (segment >= channels.size()) {
+						throw new TskCoreException(String.format("Unexpected end of raw image at offset %d", position)); //NON-NLS
+					}
+					// Keep the read within the current segment. The limit is set
+					// through Buffer, since ByteBuffer.limit(int) does not exist
+					// before Java 9 and a newer compiler would link to it.
+					((Buffer) target).limit(target.position() + (int) Math.min(target.remaining(), segmentStarts[segment + 1] - position));
+					int bytesRead = channels.get(segment).read(target, position - segmentStarts[segment]);
+					((Buffer) target).limit(target.capacity());
+					if (bytesRead < 0) {
+						throw new TskCoreException(String.format("Unexpected end of raw image segment at offset %d", position)); //NON-NLS
+					}
+					position += bytesRead;
+				}
+			} catch (IOException ex) {
+				throw new TskCoreException(String.format("Error reading raw image at offset %d", position), ex); //NON-NLS
+			}
+		}
+
+		@Override
+		public void close() {
+			for (RandomAccessFile file : files) {
+				try {
+					file.close();
+				} catch (IOException ex) {
+					logger.log(Level.WARNING, "Error closing raw image segment", ex); //NON-NLS
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads the image through a pool of private TSK image handles, one per
+	 * reader thread, so that formats such as E01 are decoded (and their chunk
+	 * checksums checked) in parallel.
+	 */
+	private static final class TskChunkSource implements ChunkSource {
+
+		private final List<Long> handles = new ArrayList<Long>();
+		private final BlockingQueue<Long> idleHandles;
+
+		TskChunkSource(String[] paths, int sectorSize, int handleCount) throws TskCoreException {
+			idleHandles = new ArrayBlockingQueue<Long>(handleCount);
+			try {
+				for (int i = 0; i < handleCount; i++) {
+					long handle = SleuthkitJNI.openUncachedImage(paths, sectorSize);
+					handles.add(handle);
+					idleHandles.add(handle);
+				}
+			} catch (TskCoreException ex) {
+				close();
+				throw ex;
+			}
+		}
+
+		@Override
+		public void read(byte[] buffer, long offset) throws TskCoreException {
+			Long handle;
+			try {
+				handle = idleHandles.take();
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				throw new TskCoreException("Interrupted while hashing image", ex); //NON-NLS
+			}
+			try {
+				int filled = 0;
+				while (filled < buffer.length) {
+					byte[] readBuffer = filled == 0 ? buffer : new byte[buffer.length - filled];
+					int bytesRead = SleuthkitJNI.readImg(handle, readBuffer, offset + filled, buffer.length - filled);
+					if (bytesRead <= 0) {
+						throw new TskCoreException(String.format("Unexpected end of image at offset %d", offset + filled)); //NON-NLS
+					}
+					if (readBuffer != buffer) {
+						System.arraycopy(readBuffer, 0, buffer, filled, bytesRead);
+					}
+					filled += bytesRead;
+				}
+			} finally {
+				idleHandles.add(handle);
+			}
+		}
+
+		@Override
+		public void close() {
+			for (Long handle : handles) {
+				SleuthkitJNI.closeUncachedImage(handle);
+			}
+		}
+	}
+
+	/**
+	 * Names the hasher threads and makes them daemons.
+	 */
+	private static final class HasherThreadFactory implements ThreadFactory {
+
+		private final String role;
+
+		HasherThreadFactory(String role) {
+			this.role = role;
+		}
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "ImageHasher-" + role + "-" + threadCount.incrementAndGet()); //NON-NLS
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -0,0 +1,379 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2018 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import org.sleuthkit.datamodel.SleuthkitCase.CaseDbConnection;
+import org.sleuthkit.datamodel.TskData.DbType;
+
+/**
+ * Builds an SQL statement whose values are bound as parameters rather than
+ * written into the SQL text. The text then depends only on the shape of a
+ * query, so a query that is run again with different values reuses the
+ * prepared statement, and its plan, that the connection pool cached for that
+ * text.
+ *
+ * Sets of values are bound as a single array on PostgreSQL. SQLite has no
+ * arrays, so its IN lists are padded to the next power of two by repeating
+ * the last value, which keeps the number of distinct statements small.
+ *
+ * A statement never has more than MAX_PARAMETERS parameters, including one
+ * made by appending other statements; the values that do not fit are
+ * written into the SQL text.
+ */
+final class ParameterizedSQL {
+
+	/**
+	 * Lists longer than this are written into the SQL text, since their
+	 * statements are unlikely to be run again.
+	 */
+	private static final int MAX_BOUND_LIST_SIZE = 256;
+
+	/**
+	 * Values beyond this many parameters are written into the SQL text, to
+	 * stay under the SQLite limit of 999 parameters per statement.
+	 */
+	private static final int MAX_PARAMETERS = 900;
+
+	private final DbType dbType;
+	private final StringBuilder sql = new StringBuilder();
+	private final List<Object> parameters = new ArrayList<Object>();
+
+	/**
+	 * The offset in the SQL text of the ? of each parameter.
+	 */
+	private final List<Integer> placeholders = new ArrayList<Integer>();
+
+	/**
+	 * Constructs an empty statement.
+	 *
+	 * @param dbType The type of the database the statement is for.
+	 */
+	ParameterizedSQL(DbType dbType) {
+		this.dbType = dbType;
+	}
+
+	/**
+	 * Appends SQL text.
+	 *
+	 * @param text The text, which must not contain values from the user.
+	 *
+	 * @return This statement.
+	 */
+	ParameterizedSQL append(String text) {
+		sql.append(text);
+		return this;
+	}
+
+	/**
+	 * Appends another statement, with its parameters. The parameters of the
+	 * other statement that would take this one over MAX_PARAMETERS are
+	 * written into the SQL text instead.
+	 *
+	 * @param other The other statement.
+	 *
+	 * @return This statement.
+	 */
+	ParameterizedSQL append(ParameterizedSQL other) {
+		int start = 0;
+		for (int i = 0; i < other.parameters.size(); i++) {
+			Object value = other.parameters.get(i);
+			int placeholder = other.placeholders.get(i);
+			sql.append(other.sql, start, placeholder);
+			if (parameters.size() < MAX_PARAMETERS || !canBeLiteral(value)) {
+				bind(value);
+			} else {
+				appendLiteral(sql, value);
+			}
+			start = placeholder + 1;
+		}
+		sql.append(other.sql, start, other.sql.length());
+		return this;
+	}
+
+	/**
+	 * Appends a parameter for a number.
+	 *
+	 * @param value The number.
+	 *
+	 * @return This statement.
+	 */
+	ParameterizedSQL appendValue(long value) {
+		if (parameters.size() >= MAX_PARAMETERS) {
+			sql.append(value);
+		} else {
+			bind(value);
+		}
+		return this;
+	}
+
+	/**
+	 * Appends a parameter for a string.
+	 *
+	 * @param value The string.
+	 *
+	 * @return This statement.
+	 */
+	ParameterizedSQL appendValue(String value) {
+		if (parameters.size() >= MAX_PARAMETERS) {
+			appendLiteral(sql, value);
+		} else {
+			bind(value);
+		}
+		return this;
+	}
+
+	/**
+	 * Appends a parameter for a floating point number. The number is always
+	 * bound, since not every double has an SQL literal.
+	 *
+	 * @param value The number.
+	 *
+	 * @return This statement.
+	 */
+	ParameterizedSQL appendValue(double value) {
+		bind(value);
+		return this;
+	}
+
+	/**
+	 * Appends a parameter for a byte array. The array is always bound.
+	 *
+	 * @param value The bytes.
+	 *
+	 * @return This statement.
+	 */
+	ParameterizedSQL appendValue(byte[] value) {
+		bind(value);
+		return this;
+	}
+
+	/**
+	 * Appends a condition that a column is one of a set of numbers.
+	 *
+	 * @param column The column.
+	 * @param values The numbers.
+	 *
+	 * @return This statement.
+	 */
+	ParameterizedSQL appendIn(String column, Collection<? extends Number> values) {
+		List<Object> longValues = new ArrayList<Object>(values.size());
+		for (Number value : values) {
+			longValues.add(value.longValue());
+		}
+		return appendIn(column, longValues, "bigint"); //NON-NLS
+	}
+
+	/**
+	 * Appends a condition that a column is one of a set of strings.
+	 *
+	 * @param column The column.
+	 * @param values The strings.
+	 *
+	 * @return This statement.
+	 */
+	ParameterizedSQL appendStringIn(String column, Collection<String> values) {
+		return appendIn(column, new ArrayList<Object>(values), "text"); //NON-NLS
+	}
+
+	private ParameterizedSQL appendIn(String column, List<Object> values, String arrayType) {
+		if (values.isEmpty()) {
+			sql.append(" 1 = 0 ");
+			return this;
+		}
+		if (dbType == DbType.POSTGRESQL && parameters.size() < MAX_PARAMETERS) {
+			sql.append(column).append(" = ANY ( ");
+			bind(new SqlArray(arrayType, values.toArray()));
+			sql.append(" )");
+			return this;
+		}
+
+		sql.append(column).append(" IN ( ");
+		int paddedSize = Integer.highestOneBit(values.size());
+		if (paddedSize < values.size()) {
+			paddedSize <<= 1;
+		}
+		if (values.size() > MAX_BOUND_LIST_SIZE || parameters.size() + paddedSize > MAX_PARAMETERS) {
+			for (int i = 0; i < values.size(); i++) {
+				if (i > 0) {
+					sql.append(", ");
+				}
+				appendLiteral(sql, values.get(i));
+			}
+		} else {
+			for (int i = 0; i < paddedSize; i++) {
+				if (i > 0) {
+					sql.append(", ");
+				}
+				bind(values.get(Math.min(i, values.size() - 1)));
+			}
+		}
+		sql.append(" )");
+		return this;
+	}
+
+	private void bind(Object value) {
+		placeholders.add(sql.length());
+		sql.append("?");
+		parameters.add(value);
+	}
+
+	/**
+	 * Indicates whether a parameter value can be written into the SQL text.
+	 * Floating point numbers and byte arrays are always bound.
+	 */
+	private static boolean canBeLiteral(Object value) {
+		return !(value instanceof Double || value instanceof byte[]);
+	}
+
+	private static void appendLiteral(StringBuilder text, Object value) {
+		if (value instanceof String) {
+			text.append("'").append(((String) value).replace("'", "''")).append("'");
+		} else if (value instanceof SqlArray) {
+			SqlArray array = (SqlArray) value;
+			text.append("ARRAY[");
+			for (int i = 0; i < array.elements.length; i++) {
+				if (i > 0) {
+					text.append(", ");
+				}
+				appendLiteral(text, array.elements[i]);
+			}
+			text.append("]::").append(array.typeName).append("[]");
+		} else {
+			text.append(value);
+		}
+	}
+
+	/**
+	 * Indicates whether any SQL has been appended.
+	 *
+	 * @return True if the statement is empty.
+	 */
+	boolean isEmpty() {
+		return sql.length() == 0;
+	}
+
+	/**
+	 * Gets the SQL text, with a ? for each parameter.
+	 *
+	 * @return The SQL text.
+	 */
+	String getSQL() {
+		return sql.toString();
+	}
+
+	/**
+	 * Gets the SQL text with the values of the parameters written into it,
+	 * for callers that cannot bind parameters. The statement must not have
+	 * byte array parameters.
+	 *
+	 * @return The SQL text.
+	 */
+	String getLiteralSQL() {
+		StringBuilder text = new StringBuilder();
+		int start = 0;
+		for (int i = 0; i < parameters.size(); i++) {
+			int placeholder = placeholders.get(i);
+			text.append(sql, start, placeholder);
+			appendLiteral(text, parameters.get(i));
+			start = placeholder + 1;
+		}
+		text.append(sql, start, sql.length());
+		return text.toString();
+	}
+
+	/**
+	 * Prepares the statement and binds its parameters. The caller must close
+	 * the statement, which returns it to the statement cache of the pool.
+	 *
+	 * @param connection The connection to prepare the statement on.
+	 *
+	 * @return The prepared statement.
+	 *
+	 * @throws SQLException If the statement cannot be prepared.
+	 */
+	PreparedStatement prepare(CaseDbConnection connection) throws SQLException {
+		PreparedStatement statement = connection.prepareStatement(sql.toString(), Statement.NO_GENERATED_KEYS);
+		try {
+			bindParameters(statement, connection);
+		} catch (SQLException ex) {
+			statement.close();
+			throw ex;
+		}
+		return statement;
+	}
+
+	/**
+	 * Gets the statement for the SQL text from the statement cache of the
+	 * connection, preparing it if it is not there, and binds the parameters.
+	 * Queries built from the same filters have the same text, so running such
+	 * a query again on a connection reuses its statement. The caller must not
+	 * close the statement, and must be done with its results before the same
+	 * text is prepared again on the connection.
+	 *
+	 * @param connection The connection to prepare the statement on.
+	 *
+	 * @return The prepared statement.
+	 *
+	 * @throws SQLException If the statement cannot be prepared.
+	 */
+	PreparedStatement prepareCached(CaseDbConnection connection) throws SQLException {
+		PreparedStatement statement = connection.getPreparedStatement(sql.toString());
+		statement.clearParameters();
+		bindParameters(statement, connection);
+		return statement;
+	}
+
+	private void bindParameters(PreparedStatement statement, CaseDbConnection connection) throws SQLException {
+		for (int i = 0; i < parameters.size(); i++) {
+			Object parameter = parameters.get(i);
+			if (parameter instanceof SqlArray) {
+				SqlArray array = (SqlArray) parameter;
+				statement.setArray(i + 1, connection.getConnection().createArrayOf(array.typeName, array.elements));
+			} else if (parameter instanceof String) {
+				statement.setString(i + 1, (String) parameter);
+			} else if (parameter instanceof Double) {
+				statement.setDouble(i + 1, (Double) parameter);
+			} else if (parameter instanceof byte[]) {
+				statement.setBytes(i + 1, (byte[]) parameter);
+			} else {
+				statement.setLong(i + 1, (Long) parameter);
+			}
+		}
+	}
+
+	/**
+	 * An array parameter.
+	 */
+	private static final class SqlArray {
+
+		private final String typeName;
+		private final Object[] elements;
+
+		SqlArray(String typeName, Object[] elements) {
+			this.typeName = typeName;
+			this.elements = elements;
+		}
+	}
+}
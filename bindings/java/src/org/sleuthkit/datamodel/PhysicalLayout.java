@@ -0,0 +1,290 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2018 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.sleuthkit.datamodel.TskData.ObjectType;
+
+/**
+ * The physical layout of the images of a case: the images, their volume
+ * systems, volumes and file systems, and how they contain each other, as
+ * returned by SleuthkitCase.getPhysicalLayout(). The layout is loaded with one
+ * query per table and does not change once loaded, so it can be shared by
+ * many threads without locking. Images added after the layout was loaded are
+ * not in it; SleuthkitCase loads a new layout when they are added, or when
+ * they are looked up and the layout is old enough to be loaded again.
+ */
+public final class PhysicalLayout {
+
+	/**
+	 * A row of the tsk_vs_info table.
+	 */
+	static final class VolumeSystemRow {
+
+		final long objId;
+		final long parentId;
+		final long type;
+		final long imgOffset;
+		final long blockSize;
+
+		VolumeSystemRow(long objId, long parentId, long type, long imgOffset, long blockSize) {
+			this.objId = objId;
+			this.parentId = parentId;
+			this.type = type;
+			this.imgOffset = imgOffset;
+			this.blockSize = blockSize;
+		}
+	}
+
+	/**
+	 * A row of the tsk_vs_parts table.
+	 */
+	static final class VolumeRow {
+
+		final long objId;
+		final long parentId;
+		final long addr;
+		final long start;
+		final long length;
+		final long flags;
+		final String description;
+
+		VolumeRow(long objId, long parentId, long addr, long start, long length, long flags, String description) {
+			this.objId = objId;
+			this.parentId = parentId;
+			this.addr = addr;
+			this.start = start;
+			this.length = length;
+			this.flags = flags;
+			this.description = description;
+		}
+	}
+
+	/**
+	 * A row of the tsk_fs_info table.
+	 */
+	static final class FileSystemRow {
+
+		final long objId;
+		final long parentId;
+		final long imgOffset;
+		final TskData.TSK_FS_TYPE_ENUM fsType;
+		final long blockSize;
+		final long blockCount;
+		final long rootInum;
+		final long firstInum;
+		final long lastInum;
+
+		FileSystemRow(long objId, long parentId, long imgOffset, TskData.TSK_FS_TYPE_ENUM fsType,
+				long blockSize, long blockCount, long rootInum, long firstInum, long lastInum) {
+			this.objId = objId;
+			this.parentId = parentId;
+			this.imgOffset = imgOffset;
+			this.fsType = fsType;
+			this.blockSize = blockSize;
+			this.blockCount = blockCount;
+			this.rootInum = rootInum;
+			this.firstInum = firstInum;
+			this.lastInum = lastInum;
+		}
+	}
+
+	private final List<Long> imageIds;
+	private final Map<Long, VolumeSystemRow> volumeSystems = new HashMap<Long, VolumeSystemRow>();
+	private final Map<Long, VolumeRow> volumes = new HashMap<Long, VolumeRow>();
+	private final Map<Long, FileSystemRow> fileSystems = new HashMap<Long, FileSystemRow>();
+	private final Map<Long, List<Long>> childIds = new HashMap<Long, List<Long>>();
+
+	/**
+	 * Constructs a layout from the rows of the layout tables, each list
+	 * ordered by object id.
+	 *
+	 * @param imageIds      The object ids of the images.
+	 * @param volumeSystems The volume systems.
+	 * @param volumes       The volumes.
+	 * @param fileSystems   The file systems.
+	 */
+	PhysicalLayout(List<Long> imageIds, List<VolumeSystemRow> volumeSystems, List<VolumeRow> volumes, List<FileSystemRow> fileSystems) {
+		this.imageIds = Collections.unmodifiableList(new ArrayList<Long>(imageIds));
+		for (VolumeSystemRow row : volumeSystems) {
+			this.volumeSystems.put(row.objId, row);
+			addChild(row.parentId, row.objId);
+		}
+		for (VolumeRow row : volumes) {
+			this.volumes.put(row.objId, row);
+			addChild(row.parentId, row.objId);
+		}
+		for (FileSystemRow row : fileSystems) {
+			this.fileSystems.put(row.objId, row);
+			addChild(row.parentId, row.objId);
+		}
+		for (Map.Entry<Long, List<Long>> entry : childIds.entrySet()) {
+			Collections.sort(entry.getValue());
+			entry.setValue(Collections.unmodifiableList(entry.getValue()));
+		}
+	}
+
+	private void addChild(long parentId, long childId) {
+		List<Long> children = childIds.get(parentId);
+		if (null == children) {
+			children = new ArrayList<Long>();
+			childIds.put(parentId, children);
+		}
+		children.add(childId);
+	}
+
+	VolumeSystemRow getVolumeSystemRow(long objId) {
+		return volumeSystems.get(objId);
+	}
+
+	VolumeRow getVolumeRow(long objId) {
+		return volumes.get(objId);
+	}
+
+	FileSystemRow getFileSystemRow(long objId) {
+		return fileSystems.get(objId);
+	}
+
+	Collection<FileSystemRow> getFileSystemRows() {
+		return Collections.unmodifiableCollection(fileSystems.values());
+	}
+
+	/**
+	 * Gets the object ids of the images.
+	 *
+	 * @return An unmodifiable list of the image object ids, in ascending
+	 *         order.
+	 */
+	public List<Long> getImageIds() {
+		return imageIds;
+	}
+
+	/**
+	 * Indicates whether an object is in the layout.
+	 *
+	 * @param objId The object id.
+	 *
+	 * @return True if the object is an image, volume system, volume or file
+	 *         system in the layout.
+	 */
+	public boolean contains(long objId) {
+		return null != getObjectType(objId);
+	}
+
+	/**
+	 * Gets the type of an object of the layout.
+	 *
+	 * @param objId The object id.
+	 *
+	 * @return ObjectType.IMG, VS, VOL or FS, or null if the object is not in
+	 *         the layout.
+	 */
+	public ObjectType getObjectType(long objId) {
+		if (volumeSystems.containsKey(objId)) {
+			return ObjectType.VS;
+		} else if (volumes.containsKey(objId)) {
+			return ObjectType.VOL;
+		} else if (fileSystems.containsKey(objId)) {
+			return ObjectType.FS;
+		} else if (Collections.binarySearch(imageIds, objId) >= 0) {
+			return ObjectType.IMG;
+		}
+		return null;
+	}
+
+	/**
+	 * Gets the parent of an object of the layout.
+	 *
+	 * @param objId The object id.
+	 *
+	 * @return The object id of the parent, or AbstractContent.UNKNOWN_ID if
+	 *         the object is an image or is not in the layout.
+	 */
+	public long getParentId(long objId) {
+		if (volumeSystems.containsKey(objId)) {
+			return volumeSystems.get(objId).parentId;
+		} else if (volumes.containsKey(objId)) {
+			return volumes.get(objId).parentId;
+		} else if (fileSystems.containsKey(objId)) {
+			return fileSystems.get(objId).parentId;
+		}
+		return AbstractContent.UNKNOWN_ID;
+	}
+
+	/**
+	 * Gets the volume systems, volumes and file systems directly below an
+	 * object. Other children of the object, such as files, are not part of
+	 * the layout.
+	 *
+	 * @param objId The object id.
+	 *
+	 * @return An unmodifiable list of the object ids of the children, in
+	 *         ascending order.
+	 */
+	public List<Long> getChildIds(long objId) {
+		List<Long> children = childIds.get(objId);
+		if (null == children) {
+			return Collections.<Long>emptyList();
+		}
+		return children;
+	}
+
+	/**
+	 * Gets the image that contains an object of the layout.
+	 *
+	 * @param objId The object id.
+	 *
+	 * @return The object id of the image, or AbstractContent.UNKNOWN_ID if the
+	 *         object is not in the layout.
+	 */
+	public long getImageId(long objId) {
+		long id = objId;
+		while (ObjectType.IMG != getObjectType(id)) {
+			id = getParentId(id);
+			if (AbstractContent.UNKNOWN_ID == id) {
+				return AbstractContent.UNKNOWN_ID;
+			}
+		}
+		return id;
+	}
+
+	/**
+	 * Gets the file systems of an image, whether they are directly in the
+	 * image or in its volumes.
+	 *
+	 * @param imageId The object id of the image.
+	 *
+	 * @return The object ids of the file systems, in ascending order.
+	 */
+	public List<Long> getFileSystemIds(long imageId) {
+		List<Long> ids = new ArrayList<Long>();
+		for (FileSystemRow row : fileSystems.values()) {
+			if (getImageId(row.objId) == imageId) {
+				ids.add(row.objId);
+			}
+		}
+		Collections.sort(ids);
+		return ids;
+	}
+}
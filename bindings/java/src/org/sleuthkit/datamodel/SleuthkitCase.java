@@ -39,6 +39,7 @@
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.text.SimpleDateFormat;
@@ -46,10 +47,13 @@
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -58,6 +62,8 @@
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -88,18 +94,22 @@
 public class SleuthkitCase {
 
 	private static final int MAX_DB_NAME_LEN_BEFORE_TIMESTAMP = 47;
+	private static final int MAX_BATCH_SIZE = 1000; // Rows per JDBC batch in bulk updates.
+	private static final int TEXT_VALUE_KEY_LENGTH = 256; // Characters of string attribute values in the PostgreSQL value index.
 
 	/**
 	 * This must be the same as TSK_SCHEMA_VER and TSK_SCHEMA_MINOR_VER in
 	 * tsk/auto/tsk_db.h.
 	 */
 	private static final CaseDbSchemaVersionNumber CURRENT_DB_SCHEMA_VERSION
-			= new CaseDbSchemaVersionNumber(8, 0);
+			= new CaseDbSchemaVersionNumber(8, 8);
 
 	private static final long BASE_ARTIFACT_ID = Long.MIN_VALUE; // Artifact ids will start at the lowest negative value
 	private static final Logger logger = Logger.getLogger(SleuthkitCase.class.getName());
 	private static final ResourceBundle bundle = ResourceBundle.getBundle("org.sleuthkit.datamodel.Bundle");
 	private static final int IS_REACHABLE_TIMEOUT_MS = 1000;
+	private static final long PHYSICAL_LAYOUT_RELOAD_INTERVAL_MS = 10000; // Minimum age of the physical layout before a lookup miss reloads it.
+	private static final long ATTRIBUTE_TRIGRAM_TYPE_CACHE_MS = 10000; // How long an attribute type is known not to be trigram indexed, see isTrigramIndexed().
 	private static final String SQL_ERROR_CONNECTION_GROUP = "08";
 	private static final String SQL_ERROR_AUTHENTICATION_GROUP = "28";
 	private static final String SQL_ERROR_PRIVILEGE_GROUP = "42";
@@ -109,7 +119,24 @@ public class SleuthkitCase {
 	private static final int MIN_USER_DEFINED_TYPE_ID = 10000;
 	private final ConnectionPool connections;
 	private final Map<Long, VirtualDirectory> rootIdsToCarvedFileDirs = new HashMap<Long, VirtualDirectory>();
-	private final Map<Long, FileSystem> fileSystemIdMap = new HashMap<Long, FileSystem>(); // Cache for file system files.
+	private final ConcurrentHashMap<Long, FileSystem> fileSystemIdMap = new ConcurrentHashMap<Long, FileSystem>(); // Cache for file system files.
+	private volatile PhysicalLayout physicalLayout; // Cache of the layout of the images, see getPhysicalLayout().
+	private final Object physicalLayoutLock = new Object();
+	private long physicalLayoutLoadTime; // Guarded by physicalLayoutLock.
+	// The data sources whose objects are in the tsk_object_ancestors table,
+	// see buildObjectAncestors().
+	private final Set<Long> objectAncestorsDataSources = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+	// The number of add image processes whose objects are not committed yet,
+	// see buildObjectAncestors().
+	private final AtomicInteger openAddImageProcesses = new AtomicInteger();
+	// The attribute types whose string values are, and are not, in the
+	// trigram index, and when the latter were checked, see isTrigramIndexed().
+	private final Set<Integer> trigramIndexedAttributeTypes = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+	private final ConcurrentHashMap<Integer, Long> trigramUnindexedAttributeTypes = new ConcurrentHashMap<Integer, Long>();
+	// The attribute types whose trigram index was built by this client, and
+	// when, that are to be filled in again, see buildAttributeTrigrams().
+	private final ConcurrentHashMap<Integer, Long> trigramRecheckAttributeTypes = new ConcurrentHashMap<Integer, Long>();
+	private final Object trigramBuildLock = new Object();
 	private final ArrayList<ErrorObserver> sleuthkitCaseErrorObservers = new ArrayList<ErrorObserver>();
 	private final String databaseName;
 	private final String dbPath;
@@ -131,8 +158,48 @@ public class SleuthkitCase {
 
 	private CommunicationsManager communicationsMgrInstance = null;
 
+	private final TimelineManager timelineManager;
+
 	private final Map<String, Set<Long>> deviceIdToDatasourceObjIdMap = new HashMap<String, Set<Long>>();
 
+	// Shares the parent paths, MIME types and extensions of the files of the
+	// case, which repeat across many files.
+	private final StringInterner fileStrings = new StringInterner();
+
+	// The number of parent ids counted by each query of getChildrenCounts().
+	private static final int CHILDREN_COUNTS_BATCH_SIZE = 256;
+
+	// The number of files read by each query of addFileStatsFromCaseDb().
+	private static final int FILE_STATS_BATCH_SIZE = 256;
+
+	// The local paths of derived and local files, and the stored unique paths
+	// of files, selected with the rows of tsk_files so that the files can be
+	// created without a query each.
+	private static final String JOINED_FILE_COLUMNS = "tsk_files_path.path AS local_path, tsk_files_path.encoding_type AS local_path_encoding_type, " //NON-NLS
+			+ "tsk_unique_paths.unique_path AS stored_unique_path"; //NON-NLS
+	private static final String JOINED_FILE_TABLES = " LEFT JOIN tsk_files_path ON tsk_files_path.obj_id = tsk_files.obj_id " //NON-NLS
+			+ "LEFT JOIN tsk_unique_paths ON tsk_unique_paths.obj_id = tsk_files.obj_id "; //NON-NLS
+
+	// The tsk_files table with the joined columns, for queries with a
+	// caller's where clause. It keeps the name tsk_files so that the where
+	// clause can still use unqualified or tsk_files. column names.
+	private static final String FILES_WITH_JOINED_COLUMNS = "(SELECT tsk_files.*, " + JOINED_FILE_COLUMNS + " FROM tsk_files" + JOINED_FILE_TABLES + ") AS tsk_files"; //NON-NLS
+
+	// The ancestors of the objects of a data source, for the statements that
+	// fill in the tsk_object_ancestors table for one data source: the objects
+	// below the data source, then their ancestors up to the data source.
+	private static final String DATA_SOURCE_OBJECT_ANCESTORS_SQL = "subtree (obj_id) AS (" //NON-NLS
+			+ "SELECT obj_id FROM tsk_objects WHERE par_obj_id = ? " //NON-NLS
+			+ "UNION ALL SELECT tsk_objects.obj_id FROM subtree JOIN tsk_objects ON tsk_objects.par_obj_id = subtree.obj_id), " //NON-NLS
+			+ "object_ancestors (descendant_id, ancestor_id, depth) AS (" //NON-NLS
+			+ "SELECT tsk_objects.obj_id, tsk_objects.par_obj_id, 1 FROM subtree JOIN tsk_objects ON tsk_objects.obj_id = subtree.obj_id " //NON-NLS
+			+ "UNION ALL SELECT object_ancestors.descendant_id, tsk_objects.par_obj_id, object_ancestors.depth + 1 " //NON-NLS
+			+ "FROM object_ancestors JOIN tsk_objects ON tsk_objects.obj_id = object_ancestors.ancestor_id " //NON-NLS
+			+ "WHERE tsk_objects.par_obj_id IS NOT NULL)"; //NON-NLS
+
+	// The number of queries run on the case database, see getQueryCount().
+	private final AtomicLong queryCount = new AtomicLong();
+
 	/**
 	 * Attempts to connect to the database with the passed in settings, throws
 	 * if the settings are not sufficient to connect to the database type
@@ -222,6 +289,7 @@ private SleuthkitCase(String dbPath, SleuthkitJNI.CaseDbHandle caseHandle, DbTyp
 		this.databaseName = dbFile.getName();
 		this.connections = new SQLiteConnections(dbPath);
 		this.caseHandle = caseHandle;
+		this.timelineManager = new TimelineManager(this);
 		init();
 		logSQLiteJDBCDriverInfo();
 	}
@@ -250,6 +318,7 @@ private SleuthkitCase(String host, int port, String dbName, String userName, Str
 		this.caseDirPath = caseDirPath;
 		this.connections = new PostgreSQLConnections(host, port, dbName, userName, password);
 		this.caseHandle = caseHandle;
+		this.timelineManager = new TimelineManager(this);
 		init();
 	}
 
@@ -289,6 +358,15 @@ public synchronized CommunicationsManager getCommunicationsManager() throws TskC
 		return communicationsMgrInstance;
 	}
 
+	/**
+	 * Returns the TimelineManager of the case.
+	 *
+	 * @return TimelineManager
+	 */
+	public TimelineManager getTimelineManager() {
+		return timelineManager;
+	}
+
 	/**
 	 * Make sure the predefined artifact types are in the artifact types table.
 	 *
@@ -609,6 +687,14 @@ private void updateDatabaseSchema(String dbPath) throws Exception {
 				dbSchemaVersion = updateFromSchema7toSchema7dot1(dbSchemaVersion, connection);
 				dbSchemaVersion = updateFromSchema7dot1toSchema7dot2(dbSchemaVersion, connection);
 				dbSchemaVersion = updateFromSchema7dot2toSchema8dot0(dbSchemaVersion, connection);
+				dbSchemaVersion = updateFromSchema8dot0toSchema8dot1(dbSchemaVersion, connection);
+				dbSchemaVersion = updateFromSchema8dot1toSchema8dot2(dbSchemaVersion, connection);
+				dbSchemaVersion = updateFromSchema8dot2toSchema8dot3(dbSchemaVersion, connection);
+				dbSchemaVersion = updateFromSchema8dot3toSchema8dot4(dbSchemaVersion, connection);
+				dbSchemaVersion = updateFromSchema8dot4toSchema8dot5(dbSchemaVersion, connection);
+				dbSchemaVersion = updateFromSchema8dot5toSchema8dot6(dbSchemaVersion, connection);
+				dbSchemaVersion = updateFromSchema8dot6toSchema8dot7(dbSchemaVersion, connection);
+				dbSchemaVersion = updateFromSchema8dot7toSchema8dot8(dbSchemaVersion, connection);
 				statement = connection.createStatement();
 				connection.executeUpdate(statement, "UPDATE tsk_db_info SET schema_ver = " + dbSchemaVersion.getMajor() + ", schema_minor_ver = " + dbSchemaVersion.getMinor()); //NON-NLS
 				statement.close();
@@ -1319,404 +1405,1924 @@ private CaseDbSchemaVersionNumber updateFromSchema7dot2toSchema8dot0(CaseDbSchem
 	}
 
 	/**
-	 * Extract the extension from a file name.
+	 * Updates a schema version 8.0 database to a schema version 8.1 database.
 	 *
-	 * @param fileName the file name to extract the extension from.
+	 * @param schemaVersion The current schema version of the database.
+	 * @param connection    A connection to the case database.
 	 *
-	 * @return The extension extracted from fileName. Will not be null.
+	 * @return The new database schema version.
+	 *
+	 * @throws SQLException     If there is an error completing a database
+	 *                          operation.
+	 * @throws TskCoreException If there is an error completing a database
+	 *                          operation via another SleuthkitCase method.
 	 */
-	static String extractExtension(final String fileName) {
-		String ext;
-		int i = fileName.lastIndexOf(".");
-		// > 0 because we assume it's not an extension if period is the first character
-		if ((i > 0) && ((i + 1) < fileName.length())) {
-			ext = fileName.substring(i + 1);
-		} else {
-			return "";
+	private CaseDbSchemaVersionNumber updateFromSchema8dot0toSchema8dot1(CaseDbSchemaVersionNumber schemaVersion, CaseDbConnection connection) throws SQLException, TskCoreException {
+		if (schemaVersion.getMajor() != 8) {
+			return schemaVersion;
+		}
+
+		if (schemaVersion.getMinor() != 0) {
+			return schemaVersion;
+		}
+
+		Statement statement = null;
+		acquireSingleUserCaseWriteLock();
+		try {
+			// Add the fuzzy hash table and the similarity index over it.
+			statement = connection.createStatement();
+			if (this.dbType.equals(DbType.SQLITE)) {
+				statement.execute("CREATE TABLE tsk_files_fuzzy_hash (obj_id INTEGER PRIMARY KEY, block_size INTEGER NOT NULL, fuzzy_hash TEXT NOT NULL, FOREIGN KEY(obj_id) REFERENCES tsk_objects(obj_id))");
+				statement.execute("CREATE TABLE tsk_files_fuzzy_hash_grams (obj_id INTEGER NOT NULL, block_size INTEGER NOT NULL, gram INTEGER NOT NULL, FOREIGN KEY(obj_id) REFERENCES tsk_objects(obj_id))");
+			} else {
+				statement.execute("CREATE TABLE tsk_files_fuzzy_hash (obj_id BIGINT PRIMARY KEY, block_size BIGINT NOT NULL, fuzzy_hash TEXT NOT NULL, FOREIGN KEY(obj_id) REFERENCES tsk_objects(obj_id))");
+				statement.execute("CREATE TABLE tsk_files_fuzzy_hash_grams (obj_id BIGINT NOT NULL, block_size BIGINT NOT NULL, gram INTEGER NOT NULL, FOREIGN KEY(obj_id) REFERENCES tsk_objects(obj_id))");
+			}
+			statement.execute("CREATE INDEX fuzzy_hash_grams ON tsk_files_fuzzy_hash_grams(block_size, gram)");
+			statement.execute("CREATE INDEX fuzzy_hash_grams_objID ON tsk_files_fuzzy_hash_grams(obj_id)");
+
+			return new CaseDbSchemaVersionNumber(8, 1);
+		} finally {
+			closeStatement(statement);
+			releaseSingleUserCaseWriteLock();
 		}
-		// we added this at one point to deal with files that had crazy names based on URLs
-		// it's too hard though to clean those up and not mess up basic extensions though.
-		// We need to add '-' to the below if we use it again
-		//		String[] findNonAlphanumeric = ext.split("[^a-zA-Z0-9_]");
-		//		if (findNonAlphanumeric.length > 1) {
-		//			ext = findNonAlphanumeric[0];
-		//		}
-		return ext.toLowerCase();
 	}
 
 	/**
-	 * Returns case database schema version number. As of TSK 4.5.0 db schema
-	 * versions are two part Major.minor. This method only returns the major
-	 * part. Use getDBSchemaVersion() for the complete version.
+	 * Updates a schema version 8.1 database to a schema version 8.2 database.
 	 *
-	 * @return The schema version number as an integer.
+	 * @param schemaVersion The current schema version of the database.
+	 * @param connection    A connection to the case database.
 	 *
-	 * @deprecated since 4.5.0 Use getDBSchemaVersion() instead for more
-	 * complete version info.
-	 */
-	@Deprecated
-	public int getSchemaVersion() {
-		return getDBSchemaVersion().getMajor();
-	}
-
-	/**
-	 * Gets the database schema version in use.
+	 * @return The new database schema version.
 	 *
-	 * @return the database schema version in use.
+	 * @throws SQLException     If there is an error completing a database
+	 *                          operation.
+	 * @throws TskCoreException If there is an error completing a database
+	 *                          operation via another SleuthkitCase method.
 	 */
-	public VersionNumber getDBSchemaVersion() {
-		return CURRENT_DB_SCHEMA_VERSION;
-	}
+	private CaseDbSchemaVersionNumber updateFromSchema8dot1toSchema8dot2(CaseDbSchemaVersionNumber schemaVersion, CaseDbConnection connection) throws SQLException, TskCoreException {
+		if (schemaVersion.getMajor() != 8) {
+			return schemaVersion;
+		}
 
-	/**
-	 * Returns the type of database in use.
-	 *
-	 * @return database type
-	 */
-	public DbType getDatabaseType() {
-		return this.dbType;
-	}
+		if (schemaVersion.getMinor() != 1) {
+			return schemaVersion;
+		}
 
-	/**
-	 * Returns the path of a backup copy of the database made when a schema
-	 * version upgrade has occurred.
-	 *
-	 * @return The path of the backup file or null if no backup was made.
-	 */
-	public String getBackupDatabasePath() {
-		return dbBackupPath;
+		Statement statement = null;
+		acquireSingleUserCaseWriteLock();
+		try {
+			// Add columns for the image hashes calculated by Image.verifyHash().
+			statement = connection.createStatement();
+			statement.execute("ALTER TABLE tsk_image_info ADD COLUMN sha1 TEXT");
+			statement.execute("ALTER TABLE tsk_image_info ADD COLUMN sha256 TEXT");
+
+			return new CaseDbSchemaVersionNumber(8, 2);
+		} finally {
+			closeStatement(statement);
+			releaseSingleUserCaseWriteLock();
+		}
 	}
 
 	/**
-	 * Create a new transaction on the case database. The transaction object
-	 * that is returned can be passed to methods that take a CaseDbTransaction.
-	 * The caller is responsible for calling either commit() or rollback() on
-	 * the transaction object.
+	 * Updates a schema version 8.2 database to a schema version 8.3 database.
 	 *
-	 * @return A CaseDbTransaction object.
+	 * @param schemaVersion The current schema version of the database.
+	 * @param connection    A connection to the case database.
 	 *
-	 * @throws TskCoreException
-	 */
-	public CaseDbTransaction beginTransaction() throws TskCoreException {
-		return new CaseDbTransaction(connections.getConnection());
-	}
-
-	/**
-	 * Gets the case database name.
+	 * @return The new database schema version.
 	 *
-	 * @return The case database name.
+	 * @throws SQLException     If there is an error completing a database
+	 *                          operation.
+	 * @throws TskCoreException If there is an error completing a database
+	 *                          operation via another SleuthkitCase method.
 	 */
-	public String getDatabaseName() {
-		return databaseName;
-	}
+	private CaseDbSchemaVersionNumber updateFromSchema8dot2toSchema8dot3(CaseDbSchemaVersionNumber schemaVersion, CaseDbConnection connection) throws SQLException, TskCoreException {
+		if (schemaVersion.getMajor() != 8) {
+			return schemaVersion;
+		}
 
-	/**
-	 * Get the full path to the case directory. For a SQLite case database, this
-	 * is the same as the database directory path.
-	 *
-	 * @return Case directory path.
-	 */
-	public String getDbDirPath() {
-		return caseDirPath;
-	}
+		if (schemaVersion.getMinor() != 2) {
+			return schemaVersion;
+		}
 
-	/**
-	 * Acquires a write lock, but only if this is a single-user case. Always
-	 * call this method in a try block with a call to the lock release method in
-	 * an associated finally block.
-	 */
-	public void acquireSingleUserCaseWriteLock() {
-		if (dbType == DbType.SQLITE) {
-			rwLock.writeLock().lock();
+		Statement statement = null;
+		acquireSingleUserCaseWriteLock();
+		try {
+			// Add the relationship rollups used by relationship histograms and
+			// relationship counts, and fill them in from the existing
+			// relationships. Undated relationships are counted in one bucket
+			// of their own.
+			statement = connection.createStatement();
+			if (this.dbType.equals(DbType.SQLITE)) {
+				statement.execute("CREATE TABLE account_relationship_rollups (account_id INTEGER NOT NULL, data_source_obj_id INTEGER NOT NULL, relationship_type INTEGER NOT NULL, bucket_start INTEGER NOT NULL, source_count INTEGER NOT NULL, UNIQUE(account_id, data_source_obj_id, relationship_type, bucket_start), FOREIGN KEY(account_id) REFERENCES accounts(account_id), FOREIGN KEY(data_source_obj_id) REFERENCES tsk_objects(obj_id))");
+			} else {
+				statement.execute("CREATE TABLE account_relationship_rollups (account_id BIGINT NOT NULL, data_source_obj_id BIGINT NOT NULL, relationship_type INTEGER NOT NULL, bucket_start BIGINT NOT NULL, source_count BIGINT NOT NULL, UNIQUE(account_id, data_source_obj_id, relationship_type, bucket_start), FOREIGN KEY(account_id) REFERENCES accounts(account_id), FOREIGN KEY(data_source_obj_id) REFERENCES tsk_objects(obj_id))");
+			}
+			statement.execute(CommunicationsManager.getFillRollupsSQL());
+
+			return new CaseDbSchemaVersionNumber(8, 3);
+		} finally {
+			closeStatement(statement);
+			releaseSingleUserCaseWriteLock();
 		}
 	}
 
 	/**
-	 * Releases a write lock, but only if this is a single-user case. This
-	 * method should always be called in the finally block of a try block in
-	 * which the lock was acquired.
+	 * Updates a schema version 8.3 database to a schema version 8.4 database.
+	 *
+	 * @param schemaVersion The current schema version of the database.
+	 * @param connection    A connection to the case database.
+	 *
+	 * @return The new database schema version.
+	 *
+	 * @throws SQLException     If there is an error completing a database
+	 *                          operation.
+	 * @throws TskCoreException If there is an error completing a database
+	 *                          operation via another SleuthkitCase method.
 	 */
-	public void releaseSingleUserCaseWriteLock() {
-		if (dbType == DbType.SQLITE) {
-			rwLock.writeLock().unlock();
+	private CaseDbSchemaVersionNumber updateFromSchema8dot3toSchema8dot4(CaseDbSchemaVersionNumber schemaVersion, CaseDbConnection connection) throws SQLException, TskCoreException {
+		if (schemaVersion.getMajor() != 8) {
+			return schemaVersion;
 		}
-	}
 
-	/**
-	 * Acquires a read lock, but only if this is a single-user case. Call this
-	 * method in a try block with a call to the lock release method in an
-	 * associated finally block.
-	 */
-	public void acquireSingleUserCaseReadLock() {
-		if (dbType == DbType.SQLITE) {
-			rwLock.readLock().lock();
+		if (schemaVersion.getMinor() != 3) {
+			return schemaVersion;
 		}
-	}
 
-	/**
-	 * Releases a read lock, but only if this is a single-user case. This method
-	 * should always be called in the finally block of a try block in which the
-	 * lock was acquired.
-	 */
-	public void releaseSingleUserCaseReadLock() {
-		if (dbType == DbType.SQLITE) {
-			rwLock.readLock().unlock();
+		Statement statement = null;
+		acquireSingleUserCaseWriteLock();
+		try {
+			// Add the table of the ancestors of each object, used to find the
+			// descendants and ancestors of an object with one indexed query.
+			// It is filled in for an image when it is added, and for other
+			// data sources when they are first used, see
+			// buildObjectAncestors().
+			statement = connection.createStatement();
+			if (this.dbType.equals(DbType.SQLITE)) {
+				statement.execute("CREATE TABLE tsk_object_ancestors (descendant_id INTEGER NOT NULL, ancestor_id INTEGER NOT NULL, depth INTEGER NOT NULL, PRIMARY KEY(descendant_id, ancestor_id), FOREIGN KEY(descendant_id) REFERENCES tsk_objects(obj_id), FOREIGN KEY(ancestor_id) REFERENCES tsk_objects(obj_id))");
+			} else {
+				statement.execute("CREATE TABLE tsk_object_ancestors (descendant_id BIGINT NOT NULL, ancestor_id BIGINT NOT NULL, depth INTEGER NOT NULL, PRIMARY KEY(descendant_id, ancestor_id), FOREIGN KEY(descendant_id) REFERENCES tsk_objects(obj_id), FOREIGN KEY(ancestor_id) REFERENCES tsk_objects(obj_id))");
+			}
+			statement.execute("CREATE INDEX objectAncestorsAncestorId ON tsk_object_ancestors(ancestor_id, depth)");
+
+			return new CaseDbSchemaVersionNumber(8, 4);
+		} finally {
+			closeStatement(statement);
+			releaseSingleUserCaseWriteLock();
 		}
 	}
 
 	/**
-	 * Open an existing case database.
+	 * Updates a schema version 8.4 database to a schema version 8.5 database.
 	 *
-	 * @param dbPath Path to SQLite case database.
+	 * @param schemaVersion The current schema version of the database.
+	 * @param connection    A connection to the case database.
 	 *
-	 * @return Case database object.
+	 * @return The new database schema version.
 	 *
-	 * @throws org.sleuthkit.datamodel.TskCoreException
+	 * @throws SQLException     If there is an error completing a database
+	 *                          operation.
+	 * @throws TskCoreException If there is an error completing a database
+	 *                          operation via another SleuthkitCase method.
 	 */
-	public static SleuthkitCase openCase(String dbPath) throws TskCoreException {
+	private CaseDbSchemaVersionNumber updateFromSchema8dot4toSchema8dot5(CaseDbSchemaVersionNumber schemaVersion, CaseDbConnection connection) throws SQLException, TskCoreException {
+		if (schemaVersion.getMajor() != 8) {
+			return schemaVersion;
+		}
+
+		if (schemaVersion.getMinor() != 4) {
+			return schemaVersion;
+		}
+
+		Statement statement = null;
+		acquireSingleUserCaseWriteLock();
 		try {
-			final SleuthkitJNI.CaseDbHandle caseHandle = SleuthkitJNI.openCaseDb(dbPath);
-			return new SleuthkitCase(dbPath, caseHandle, DbType.SQLITE);
-		} catch (TskUnsupportedSchemaVersionException ex) {
-			//don't wrap in new TskCoreException
-			throw ex;
-		} catch (Exception ex) {
-			throw new TskCoreException("Failed to open case database at " + dbPath, ex);
+			// Add the table of stored unique paths. It is filled in on request
+			// by storeUniquePaths().
+			statement = connection.createStatement();
+			if (this.dbType.equals(DbType.SQLITE)) {
+				statement.execute("CREATE TABLE tsk_unique_paths (obj_id INTEGER PRIMARY KEY, unique_path TEXT NOT NULL, FOREIGN KEY(obj_id) REFERENCES tsk_objects(obj_id))");
+				statement.execute("CREATE INDEX uniquePath ON tsk_unique_paths(unique_path)");
+			} else {
+				statement.execute("CREATE TABLE tsk_unique_paths (obj_id BIGINT PRIMARY KEY, unique_path TEXT NOT NULL, FOREIGN KEY(obj_id) REFERENCES tsk_objects(obj_id))");
+				statement.execute("CREATE INDEX uniquePath ON tsk_unique_paths(md5(unique_path))");
+			}
+
+			return new CaseDbSchemaVersionNumber(8, 5);
+		} finally {
+			closeStatement(statement);
+			releaseSingleUserCaseWriteLock();
 		}
 	}
 
 	/**
-	 * Open an existing multi-user case database.
+	 * Updates a schema version 8.5 database to a schema version 8.6 database.
 	 *
-	 * @param databaseName The name of the database.
-	 * @param info         Connection information for the the database.
-	 * @param caseDir      The folder where the case metadata fils is stored.
+	 * @param schemaVersion The current schema version of the database.
+	 * @param connection    A connection to the case database.
 	 *
-	 * @return A case database object.
+	 * @return The new database schema version.
 	 *
-	 * @throws TskCoreException If there is a problem opening the database.
-	 */
-	public static SleuthkitCase openCase(String databaseName, CaseDbConnectionInfo info, String caseDir) throws TskCoreException {
+	 * @throws SQLException     If there is an error completing a database
+	 *                          operation.
+	 * @throws TskCoreException If there is an error completing a database
+	 *                          operation via another SleuthkitCase method.
+	 */
+	private CaseDbSchemaVersionNumber updateFromSchema8dot5toSchema8dot6(CaseDbSchemaVersionNumber schemaVersion, CaseDbConnection connection) throws SQLException, TskCoreException {
+		if (schemaVersion.getMajor() != 8) {
+			return schemaVersion;
+		}
+
+		if (schemaVersion.getMinor() != 5) {
+			return schemaVersion;
+		}
+
+		Statement statement = null;
+		acquireSingleUserCaseWriteLock();
 		try {
-			/*
-			 * The flow of this method involves trying to open case and if
-			 * successful, return that case. If unsuccessful, an exception is
-			 * thrown. We catch any exceptions, and use tryConnect() to attempt
-			 * to obtain further information about the error. If tryConnect() is
-			 * unable to successfully connect, tryConnect() will throw a
-			 * TskCoreException with a message containing user-level error
-			 * reporting. If tryConnect() is able to connect, flow continues and
-			 * we rethrow the original exception obtained from trying to create
-			 * the case. In this way, we obtain more detailed information if we
-			 * are able, but do not lose any information if unable.
-			 */
-			final SleuthkitJNI.CaseDbHandle caseHandle = SleuthkitJNI.openCaseDb(databaseName, info);
-			return new SleuthkitCase(info.getHost(), Integer.parseInt(info.getPort()), databaseName, info.getUserName(), info.getPassword(), caseHandle, caseDir, info.getDbType());
-		} catch (PropertyVetoException exp) {
-			// In this case, the JDBC driver doesn't support PostgreSQL. Use the generic message here.
-			throw new TskCoreException(exp.getMessage(), exp);
-		} catch (TskUnsupportedSchemaVersionException ex) {
-			//don't wrap in new TskCoreException
-			throw ex;
-		} catch (Exception exp) {
-			tryConnect(info); // attempt to connect, throw with user-friendly message if unable
-			throw new TskCoreException(exp.getMessage(), exp); // throw with generic message if tryConnect() was successful
+			// Add the table of data source statistics. The statistics of each
+			// existing data source are built when they are first asked for.
+			statement = connection.createStatement();
+			if (this.dbType.equals(DbType.SQLITE)) {
+				statement.execute("CREATE TABLE data_source_stats (data_source_obj_id INTEGER NOT NULL, stat_type INTEGER NOT NULL, stat_key TEXT NOT NULL, stat_value INTEGER NOT NULL, PRIMARY KEY(data_source_obj_id, stat_type, stat_key), FOREIGN KEY(data_source_obj_id) REFERENCES tsk_objects(obj_id))");
+			} else {
+				statement.execute("CREATE TABLE data_source_stats (data_source_obj_id BIGINT NOT NULL, stat_type INTEGER NOT NULL, stat_key TEXT NOT NULL, stat_value BIGINT NOT NULL, PRIMARY KEY(data_source_obj_id, stat_type, stat_key), FOREIGN KEY(data_source_obj_id) REFERENCES tsk_objects(obj_id))");
+			}
+
+			return new CaseDbSchemaVersionNumber(8, 6);
+		} finally {
+			closeStatement(statement);
+			releaseSingleUserCaseWriteLock();
 		}
 	}
 
 	/**
-	 * Creates a new SQLite case database.
+	 * Updates a schema version 8.6 database to a schema version 8.7 database.
 	 *
-	 * @param dbPath Path to where SQlite case database should be created.
+	 * @param schemaVersion The current schema version of the database.
+	 * @param connection    A connection to the case database.
 	 *
-	 * @return A case database object.
+	 * @return The new database schema version.
 	 *
-	 * @throws org.sleuthkit.datamodel.TskCoreException
+	 * @throws SQLException     If there is an error completing a database
+	 *                          operation.
+	 * @throws TskCoreException If there is an error completing a database
+	 *                          operation via another SleuthkitCase method.
 	 */
-	public static SleuthkitCase newCase(String dbPath) throws TskCoreException {
+	private CaseDbSchemaVersionNumber updateFromSchema8dot6toSchema8dot7(CaseDbSchemaVersionNumber schemaVersion, CaseDbConnection connection) throws SQLException, TskCoreException {
+		if (schemaVersion.getMajor() != 8) {
+			return schemaVersion;
+		}
+
+		if (schemaVersion.getMinor() != 6) {
+			return schemaVersion;
+		}
+
+		Statement statement = null;
+		acquireSingleUserCaseWriteLock();
 		try {
-			SleuthkitJNI.CaseDbHandle caseHandle = SleuthkitJNI.newCaseDb(dbPath);
-			return new SleuthkitCase(dbPath, caseHandle, DbType.SQLITE);
-		} catch (Exception ex) {
-			throw new TskCoreException("Failed to create case database at " + dbPath, ex);
+			// Index the attribute values by attribute type. Each attribute
+			// has a value in only one value column, so the indexes are
+			// partial. Add the tables of attribute trigrams; the trigrams of
+			// an attribute type are built when it is first searched by
+			// substring.
+			statement = connection.createStatement();
+			if (this.dbType.equals(DbType.SQLITE)) {
+				statement.execute("CREATE INDEX attrsTypeValueText ON blackboard_attributes(attribute_type_id, value_text COLLATE NOCASE) WHERE value_text IS NOT NULL");
+				statement.execute("CREATE INDEX attrsTypeValueByte ON blackboard_attributes(attribute_type_id, value_byte) WHERE value_byte IS NOT NULL");
+			} else {
+				// Values can be longer than a btree entry, so index the start
+				// of the text values and the hashes of the byte values
+				statement.execute("CREATE INDEX attrsTypeValueText ON blackboard_attributes(attribute_type_id, (LEFT(LOWER(value_text), " + TEXT_VALUE_KEY_LENGTH + ")) COLLATE \"C\") WHERE value_text IS NOT NULL");
+				statement.execute("CREATE INDEX attrsTypeValueByte ON blackboard_attributes(attribute_type_id, md5(value_byte)) WHERE value_byte IS NOT NULL");
+			}
+			statement.execute("CREATE INDEX attrsTypeValueInt32 ON blackboard_attributes(attribute_type_id, value_int32) WHERE value_int32 IS NOT NULL");
+			statement.execute("CREATE INDEX attrsTypeValueInt64 ON blackboard_attributes(attribute_type_id, value_int64) WHERE value_int64 IS NOT NULL");
+			statement.execute("CREATE INDEX attrsTypeValueDouble ON blackboard_attributes(attribute_type_id, value_double) WHERE value_double IS NOT NULL");
+			statement.execute("CREATE TABLE blackboard_attribute_trigram_types (attribute_type_id INTEGER PRIMARY KEY, FOREIGN KEY(attribute_type_id) REFERENCES blackboard_attribute_types(attribute_type_id))");
+			if (this.dbType.equals(DbType.SQLITE)) {
+				statement.execute("CREATE TABLE blackboard_attribute_trigrams (attribute_type_id INTEGER NOT NULL, trigram TEXT NOT NULL, artifact_id INTEGER NOT NULL, PRIMARY KEY(attribute_type_id, trigram, artifact_id), FOREIGN KEY(attribute_type_id) REFERENCES blackboard_attribute_types(attribute_type_id), FOREIGN KEY(artifact_id) REFERENCES blackboard_artifacts(artifact_id))");
+			} else {
+				statement.execute("CREATE TABLE blackboard_attribute_trigrams (attribute_type_id INTEGER NOT NULL, trigram TEXT NOT NULL, artifact_id BIGINT NOT NULL, PRIMARY KEY(attribute_type_id, trigram, artifact_id), FOREIGN KEY(attribute_type_id) REFERENCES blackboard_attribute_types(attribute_type_id), FOREIGN KEY(artifact_id) REFERENCES blackboard_artifacts(artifact_id))");
+			}
+
+			return new CaseDbSchemaVersionNumber(8, 7);
+		} finally {
+			closeStatement(statement);
+			releaseSingleUserCaseWriteLock();
 		}
 	}
 
 	/**
-	 * Creates a new PostgreSQL case database.
+	 * Updates a schema version 8.7 database to a schema version 8.8 database.
 	 *
-	 * @param caseName    The name of the case. It will be used to create a case
-	 *                    database name that can be safely used in SQL commands
-	 *                    and will not be subject to name collisions on the case
-	 *                    database server. Use getDatabaseName to get the
-	 *                    created name.
-	 * @param info        The information to connect to the database.
-	 * @param caseDirPath The case directory path.
+	 * @param schemaVersion The current schema version of the database.
+	 * @param connection    A connection to the case database.
 	 *
-	 * @return A case database object.
+	 * @return The new database schema version.
 	 *
-	 * @throws org.sleuthkit.datamodel.TskCoreException
+	 * @throws SQLException     If there is an error completing a database
+	 *                          operation.
+	 * @throws TskCoreException If there is an error completing a database
+	 *                          operation via another SleuthkitCase method.
 	 */
-	public static SleuthkitCase newCase(String caseName, CaseDbConnectionInfo info, String caseDirPath) throws TskCoreException {
-		String databaseName = createCaseDataBaseName(caseName);
+	private CaseDbSchemaVersionNumber updateFromSchema8dot7toSchema8dot8(CaseDbSchemaVersionNumber schemaVersion, CaseDbConnection connection) throws SQLException, TskCoreException {
+		if (schemaVersion.getMajor() != 8) {
+			return schemaVersion;
+		}
+
+		if (schemaVersion.getMinor() != 7) {
+			return schemaVersion;
+		}
+
+		Statement statement = null;
+		acquireSingleUserCaseWriteLock();
 		try {
-			/**
-			 * The flow of this method involves trying to create a new case and
-			 * if successful, return that case. If unsuccessful, an exception is
-			 * thrown. We catch any exceptions, and use tryConnect() to attempt
-			 * to obtain further information about the error. If tryConnect() is
-			 * unable to successfully connect, tryConnect() will throw a
-			 * TskCoreException with a message containing user-level error
-			 * reporting. If tryConnect() is able to connect, flow continues and
-			 * we rethrow the original exception obtained from trying to create
-			 * the case. In this way, we obtain more detailed information if we
-			 * are able, but do not lose any information if unable.
-			 */
-			SleuthkitJNI.CaseDbHandle caseHandle = SleuthkitJNI.newCaseDb(databaseName, info);
-			return new SleuthkitCase(info.getHost(), Integer.parseInt(info.getPort()),
-					databaseName, info.getUserName(), info.getPassword(), caseHandle, caseDirPath, info.getDbType());
-		} catch (PropertyVetoException exp) {
-			// In this case, the JDBC driver doesn't support PostgreSQL. Use the generic message here.
-			throw new TskCoreException(exp.getMessage(), exp);
-		} catch (Exception exp) {
-			tryConnect(info); // attempt to connect, throw with user-friendly message if unable
-			throw new TskCoreException(exp.getMessage(), exp); // throw with generic message if tryConnect() was successful
+			// Add the timeline event tables and fill them from the times of
+			// the files and the date time attributes of the artifacts.
+			statement = connection.createStatement();
+			if (this.dbType.equals(DbType.SQLITE)) {
+				statement.execute("CREATE TABLE tsk_events (event_id INTEGER PRIMARY KEY, time INTEGER NOT NULL, event_type INTEGER NOT NULL, data_source_obj_id INTEGER NOT NULL, obj_id INTEGER NOT NULL, artifact_id INTEGER, FOREIGN KEY(data_source_obj_id) REFERENCES tsk_objects(obj_id), FOREIGN KEY(obj_id) REFERENCES tsk_objects(obj_id), FOREIGN KEY(artifact_id) REFERENCES blackboard_artifacts(artifact_id))");
+				statement.execute("CREATE TABLE tsk_event_day_counts (bucket_start INTEGER NOT NULL, event_type INTEGER NOT NULL, data_source_obj_id INTEGER NOT NULL, event_count INTEGER NOT NULL, PRIMARY KEY(bucket_start, event_type, data_source_obj_id), FOREIGN KEY(data_source_obj_id) REFERENCES tsk_objects(obj_id))");
+				statement.execute("CREATE INDEX events_time_type_data_source ON tsk_events(time, event_type, data_source_obj_id)");
+			} else {
+				statement.execute("CREATE TABLE tsk_events (event_id BIGSERIAL PRIMARY KEY, time BIGINT NOT NULL, event_type INTEGER NOT NULL, data_source_obj_id BIGINT NOT NULL, obj_id BIGINT NOT NULL, artifact_id BIGINT, FOREIGN KEY(data_source_obj_id) REFERENCES tsk_objects(obj_id), FOREIGN KEY(obj_id) REFERENCES tsk_objects(obj_id), FOREIGN KEY(artifact_id) REFERENCES blackboard_artifacts(artifact_id))");
+				statement.execute("CREATE TABLE tsk_event_day_counts (bucket_start BIGINT NOT NULL, event_type INTEGER NOT NULL, data_source_obj_id BIGINT NOT NULL, event_count BIGINT NOT NULL, PRIMARY KEY(bucket_start, event_type, data_source_obj_id), FOREIGN KEY(data_source_obj_id) REFERENCES tsk_objects(obj_id))");
+				// The event id is part of the order events are paged in, and
+				// is not implicitly in the index as the SQLite row id is
+				statement.execute("CREATE INDEX events_time_type_data_source ON tsk_events(time, event_type, data_source_obj_id, event_id)");
+			}
+			statement.execute("CREATE INDEX events_obj_id ON tsk_events(obj_id)");
+			TimelineManager.insertEvents(connection, statement, -1);
+
+			return new CaseDbSchemaVersionNumber(8, 8);
+		} finally {
+			closeStatement(statement);
+			releaseSingleUserCaseWriteLock();
 		}
 	}
 
 	/**
-	 * Transforms a candidate PostgreSQL case database name into one that can be
-	 * safely used in SQL commands and will not be subject to name collisions on
-	 * the case database server.
+	 * Extract the extension from a file name.
 	 *
-	 * @param candidateDbName A candidate case database name.
+	 * @param fileName the file name to extract the extension from.
 	 *
-	 * @return A case database name.
+	 * @return The extension extracted from fileName. Will not be null.
 	 */
-	private static String createCaseDataBaseName(String candidateDbName) {
-		String dbName;
-		if (!candidateDbName.isEmpty()) {
-			/*
-			 * Replace all non-ASCII characters.
-			 */
-			dbName = candidateDbName.replaceAll("[^\\p{ASCII}]", "_"); //NON-NLS
-
-			/*
-			 * Replace all control characters.
-			 */
-			dbName = dbName.replaceAll("[\\p{Cntrl}]", "_"); //NON-NLS
-
-			/*
-			 * Replace /, \, :, ?, space, ' ".
-			 */
-			dbName = dbName.replaceAll("[ /?:'\"\\\\]", "_"); //NON-NLS
-
-			/*
-			 * Make it all lowercase.
-			 */
-			dbName = dbName.toLowerCase();
-
-			/*
-			 * Must start with letter or underscore. If not, prepend an
-			 * underscore.
-			 */
-			if ((dbName.length() > 0 && !(Character.isLetter(dbName.codePointAt(0))) && !(dbName.codePointAt(0) == '_'))) {
-				dbName = "_" + dbName;
-			}
-
-			/*
-			 * Truncate to 63 - 16 = 47 chars to accomodate a timestamp for
-			 * uniqueness.
-			 */
-			if (dbName.length() > MAX_DB_NAME_LEN_BEFORE_TIMESTAMP) {
-				dbName = dbName.substring(0, MAX_DB_NAME_LEN_BEFORE_TIMESTAMP);
-			}
-
+	static String extractExtension(final String fileName) {
+		String ext;
+		int i = fileName.lastIndexOf(".");
+		// > 0 because we assume it's not an extension if period is the first character
+		if ((i > 0) && ((i + 1) < fileName.length())) {
+			ext = fileName.substring(i + 1);
 		} else {
-			/*
-			 * Must start with letter or underscore.
-			 */
-			dbName = "_";
+			return "";
 		}
-		/*
-		 * Add the time stmap.
-		 */
-		SimpleDateFormat dateFormat = new SimpleDateFormat("yyyyMMdd_HHmmss");
-		Date date = new Date();
-		dbName = dbName + "_" + dateFormat.format(date);
+		// we added this at one point to deal with files that had crazy names based on URLs
+		// it's too hard though to clean those up and not mess up basic extensions though.
+		// We need to add '-' to the below if we use it again
+		//		String[] findNonAlphanumeric = ext.split("[^a-zA-Z0-9_]");
+		//		if (findNonAlphanumeric.length > 1) {
+		//			ext = findNonAlphanumeric[0];
+		//		}
+		return ext.toLowerCase();
+	}
 
-		return dbName;
+	/**
+	 * Returns case database schema version number. As of TSK 4.5.0 db schema
+	 * versions are two part Major.minor. This method only returns the major
+	 * part. Use getDBSchemaVersion() for the complete version.
+	 *
+	 * @return The schema version number as an integer.
+	 *
+	 * @deprecated since 4.5.0 Use getDBSchemaVersion() instead for more
+	 * complete version info.
+	 */
+	@Deprecated
+	public int getSchemaVersion() {
+		return getDBSchemaVersion().getMajor();
 	}
 
 	/**
-	 * Starts the multi-step process of adding an image data source to the case
-	 * by creating an object that can be used to control the process and get
-	 * progress messages from it.
+	 * Gets the database schema version in use.
 	 *
-	 * @param timeZone        The time zone of the image.
-	 * @param addUnallocSpace Set to true to create virtual files for
-	 *                        unallocated space in the image.
-	 * @param noFatFsOrphans  Set to true to skip processing orphan files of FAT
-	 *                        file systems.
-	 * @param imageCopyPath   Path to which a copy of the image should be
-	 *                        written. Use the empty string to disable image
-	 *                        writing.
+	 * @return the database schema version in use.
+	 */
+	public VersionNumber getDBSchemaVersion() {
+		return CURRENT_DB_SCHEMA_VERSION;
+	}
+
+	/**
+	 * Returns the type of database in use.
 	 *
-	 * @return An object that encapsulates control of adding an image via the
-	 *         SleuthKit native code layer.
+	 * @return database type
 	 */
-	public AddImageProcess makeAddImageProcess(String timeZone, boolean addUnallocSpace, boolean noFatFsOrphans, String imageCopyPath) {
-		return this.caseHandle.initAddImageProcess(timeZone, addUnallocSpace, noFatFsOrphans, imageCopyPath);
+	public DbType getDatabaseType() {
+		return this.dbType;
 	}
 
 	/**
-	 * Get the list of root objects (data sources) from the case database, e.g.,
-	 * image files, logical (local) files, virtual directories.
+	 * Gets the copy of a file property string, such as a parent path, MIME
+	 * type or extension, that is shared by the files of the case.
 	 *
-	 * @return List of content objects representing root objects.
+	 * @param string The string, may be null.
 	 *
-	 * @throws TskCoreException
+	 * @return The shared copy, or null if the string is null.
 	 */
-	public List<Content> getRootObjects() throws TskCoreException {
-		CaseDbConnection connection = connections.getConnection();
-		acquireSingleUserCaseReadLock();
-		Statement s = null;
+	String internFileString(String string) {
+		return fileStrings.intern(string);
+	}
+
+	/**
+	 * Returns the path of a backup copy of the database made when a schema
+	 * version upgrade has occurred.
+	 *
+	 * @return The path of the backup file or null if no backup was made.
+	 */
+	public String getBackupDatabasePath() {
+		return dbBackupPath;
+	}
+
+	/**
+	 * Create a new transaction on the case database. The transaction object
+	 * that is returned can be passed to methods that take a CaseDbTransaction.
+	 * The caller is responsible for calling either commit() or rollback() on
+	 * the transaction object.
+	 *
+	 * @return A CaseDbTransaction object.
+	 *
+	 * @throws TskCoreException
+	 */
+	public CaseDbTransaction beginTransaction() throws TskCoreException {
+		return new CaseDbTransaction(connections.getConnection());
+	}
+
+	/**
+	 * Gets the case database name.
+	 *
+	 * @return The case database name.
+	 */
+	public String getDatabaseName() {
+		return databaseName;
+	}
+
+	/**
+	 * Get the full path to the case directory. For a SQLite case database, this
+	 * is the same as the database directory path.
+	 *
+	 * @return Case directory path.
+	 */
+	public String getDbDirPath() {
+		return caseDirPath;
+	}
+
+	/**
+	 * Acquires a write lock, but only if this is a single-user case. Always
+	 * call this method in a try block with a call to the lock release method in
+	 * an associated finally block.
+	 */
+	public void acquireSingleUserCaseWriteLock() {
+		if (dbType == DbType.SQLITE) {
+			rwLock.writeLock().lock();
+		}
+	}
+
+	/**
+	 * Releases a write lock, but only if this is a single-user case. This
+	 * method should always be called in the finally block of a try block in
+	 * which the lock was acquired.
+	 */
+	public void releaseSingleUserCaseWriteLock() {
+		if (dbType == DbType.SQLITE) {
+			rwLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Acquires a read lock, but only if this is a single-user case. Call this
+	 * method in a try block with a call to the lock release method in an
+	 * associated finally block.
+	 */
+	public void acquireSingleUserCaseReadLock() {
+		if (dbType == DbType.SQLITE) {
+			rwLock.readLock().lock();
+		}
+	}
+
+	/**
+	 * Releases a read lock, but only if this is a single-user case. This method
+	 * should always be called in the finally block of a try block in which the
+	 * lock was acquired.
+	 */
+	public void releaseSingleUserCaseReadLock() {
+		if (dbType == DbType.SQLITE) {
+			rwLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Open an existing case database.
+	 *
+	 * @param dbPath Path to SQLite case database.
+	 *
+	 * @return Case database object.
+	 *
+	 * @throws org.sleuthkit.datamodel.TskCoreException
+	 */
+	public static SleuthkitCase openCase(String dbPath) throws TskCoreException {
+		try {
+			final SleuthkitJNI.CaseDbHandle caseHandle = SleuthkitJNI.openCaseDb(dbPath);
+			return new SleuthkitCase(dbPath, caseHandle, DbType.SQLITE);
+		} catch (TskUnsupportedSchemaVersionException ex) {
+			//don't wrap in new TskCoreException
+			throw ex;
+		} catch (Exception ex) {
+			throw new TskCoreException("Failed to open case database at " + dbPath, ex);
+		}
+	}
+
+	/**
+	 * Open an existing multi-user case database.
+	 *
+	 * @param databaseName The name of the database.
+	 * @param info         Connection information for the the database.
+	 * @param caseDir      The folder where the case metadata fils is stored.
+	 *
+	 * @return A case database object.
+	 *
+	 * @throws TskCoreException If there is a problem opening the database.
+	 */
+	public static SleuthkitCase openCase(String databaseName, CaseDbConnectionInfo info, String caseDir) throws TskCoreException {
+		try {
+			/*
+			 * The flow of this method involves trying to open case and if
+			 * successful, return that case. If unsuccessful, an exception is
+			 * thrown. We catch any exceptions, and use tryConnect() to attempt
+			 * to obtain further information about the error. If tryConnect() is
+			 * unable to successfully connect, tryConnect() will throw a
+			 * TskCoreException with a message containing user-level error
+			 * reporting. If tryConnect() is able to connect, flow continues and
+			 * we rethrow the original exception obtained from trying to create
+			 * the case. In this way, we obtain more detailed information if we
+			 * are able, but do not lose any information if unable.
+			 */
+			final SleuthkitJNI.CaseDbHandle caseHandle = SleuthkitJNI.openCaseDb(databaseName, info);
+			return new SleuthkitCase(info.getHost(), Integer.parseInt(info.getPort()), databaseName, info.getUserName(), info.getPassword(), caseHandle, caseDir, info.getDbType());
+		} catch (PropertyVetoException exp) {
+			// In this case, the JDBC driver doesn't support PostgreSQL. Use the generic message here.
+			throw new TskCoreException(exp.getMessage(), exp);
+		} catch (TskUnsupportedSchemaVersionException ex) {
+			//don't wrap in new TskCoreException
+			throw ex;
+		} catch (Exception exp) {
+			tryConnect(info); // attempt to connect, throw with user-friendly message if unable
+			throw new TskCoreException(exp.getMessage(), exp); // throw with generic message if tryConnect() was successful
+		}
+	}
+
+	/**
+	 * Creates a new SQLite case database.
+	 *
+	 * @param dbPath Path to where SQlite case database should be created.
+	 *
+	 * @return A case database object.
+	 *
+	 * @throws org.sleuthkit.datamodel.TskCoreException
+	 */
+	public static SleuthkitCase newCase(String dbPath) throws TskCoreException {
+		try {
+			SleuthkitJNI.CaseDbHandle caseHandle = SleuthkitJNI.newCaseDb(dbPath);
+			return new SleuthkitCase(dbPath, caseHandle, DbType.SQLITE);
+		} catch (Exception ex) {
+			throw new TskCoreException("Failed to create case database at " + dbPath, ex);
+		}
+	}
+
+	/**
+	 * Creates a new PostgreSQL case database.
+	 *
+	 * @param caseName    The name of the case. It will be used to create a case
+	 *                    database name that can be safely used in SQL commands
+	 *                    and will not be subject to name collisions on the case
+	 *                    database server. Use getDatabaseName to get the
+	 *                    created name.
+	 * @param info        The information to connect to the database.
+	 * @param caseDirPath The case directory path.
+	 *
+	 * @return A case database object.
+	 *
+	 * @throws org.sleuthkit.datamodel.TskCoreException
+	 */
+	public static SleuthkitCase newCase(String caseName, CaseDbConnectionInfo info, String caseDirPath) throws TskCoreException {
+		String databaseName = createCaseDataBaseName(caseName);
+		try {
+			/**
+			 * The flow of this method involves trying to create a new case and
+			 * if successful, return that case. If unsuccessful, an exception is
+			 * thrown. We catch any exceptions, and use tryConnect() to attempt
+			 * to obtain further information about the error. If tryConnect() is
+			 * unable to successfully connect, tryConnect() will throw a
+			 * TskCoreException with a message containing user-level error
+			 * reporting. If tryConnect() is able to connect, flow continues and
+			 * we rethrow the original exception obtained from trying to create
+			 * the case. In this way, we obtain more detailed information if we
+			 * are able, but do not lose any information if unable.
+			 */
+			SleuthkitJNI.CaseDbHandle caseHandle = SleuthkitJNI.newCaseDb(databaseName, info);
+			return new SleuthkitCase(info.getHost(), Integer.parseInt(info.getPort()),
+					databaseName, info.getUserName(), info.getPassword(), caseHandle, caseDirPath, info.getDbType());
+		} catch (PropertyVetoException exp) {
+			// In this case, the JDBC driver doesn't support PostgreSQL. Use the generic message here.
+			throw new TskCoreException(exp.getMessage(), exp);
+		} catch (Exception exp) {
+			tryConnect(info); // attempt to connect, throw with user-friendly message if unable
+			throw new TskCoreException(exp.getMessage(), exp); // throw with generic message if tryConnect() was successful
+		}
+	}
+
+	/**
+	 * Transforms a candidate PostgreSQL case database name into one that can be
+	 * safely used in SQL commands and will not be subject to name collisions on
+	 * the case database server.
+	 *
+	 * @param candidateDbName A candidate case database name.
+	 *
+	 * @return A case database name.
+	 */
+	private static String createCaseDataBaseName(String candidateDbName) {
+		String dbName;
+		if (!candidateDbName.isEmpty()) {
+			/*
+			 * Replace all non-ASCII characters.
+			 */
+			dbName = candidateDbName.replaceAll("[^\\p{ASCII}]", "_"); //NON-NLS
+
+			/*
+			 * Replace all control characters.
+			 */
+			dbName = dbName.replaceAll("[\\p{Cntrl}]", "_"); //NON-NLS
+
+			/*
+			 * Replace /, \, :, ?, space, ' ".
+			 */
+			dbName = dbName.replaceAll("[ /?:'\"\\\\]", "_"); //NON-NLS
+
+			/*
+			 * Make it all lowercase.
+			 */
+			dbName = dbName.toLowerCase();
+
+			/*
+			 * Must start with letter or underscore. If not, prepend an
+			 * underscore.
+			 */
+			if ((dbName.length() > 0 && !(Character.isLetter(dbName.codePointAt(0))) && !(dbName.codePointAt(0) == '_'))) {
+				dbName = "_" + dbName;
+			}
+
+			/*
+			 * Truncate to 63 - 16 = 47 chars to accomodate a timestamp for
+			 * uniqueness.
+			 */
+			if (dbName.length() > MAX_DB_NAME_LEN_BEFORE_TIMESTAMP) {
+				dbName = dbName.substring(0, MAX_DB_NAME_LEN_BEFORE_TIMESTAMP);
+			}
+
+		} else {
+			/*
+			 * Must start with letter or underscore.
+			 */
+			dbName = "_";
+		}
+		/*
+		 * Add the time stmap.
+		 */
+		SimpleDateFormat dateFormat = new SimpleDateFormat("yyyyMMdd_HHmmss");
+		Date date = new Date();
+		dbName = dbName + "_" + dateFormat.format(date);
+
+		return dbName;
+	}
+
+	/**
+	 * Starts the multi-step process of adding an image data source to the case
+	 * by creating an object that can be used to control the process and get
+	 * progress messages from it.
+	 *
+	 * @param timeZone        The time zone of the image.
+	 * @param addUnallocSpace Set to true to create virtual files for
+	 *                        unallocated space in the image.
+	 * @param noFatFsOrphans  Set to true to skip processing orphan files of FAT
+	 *                        file systems.
+	 * @param imageCopyPath   Path to which a copy of the image should be
+	 *                        written. Use the empty string to disable image
+	 *                        writing.
+	 *
+	 * @return An object that encapsulates control of adding an image via the
+	 *         SleuthKit native code layer.
+	 */
+	public AddImageProcess makeAddImageProcess(String timeZone, boolean addUnallocSpace, boolean noFatFsOrphans, String imageCopyPath) {
+		return this.caseHandle.initAddImageProcess(this, timeZone, addUnallocSpace, noFatFsOrphans, imageCopyPath);
+	}
+
+	/**
+	 * Get the list of root objects (data sources) from the case database, e.g.,
+	 * image files, logical (local) files, virtual directories.
+	 *
+	 * @return List of content objects representing root objects.
+	 *
+	 * @throws TskCoreException
+	 */
+	public List<Content> getRootObjects() throws TskCoreException {
+		CaseDbConnection connection = connections.getConnection();
+		acquireSingleUserCaseReadLock();
+		Statement s = null;
+		ResultSet rs = null;
+		try {
+			s = connection.createStatement();
+			rs = connection.executeQuery(s, "SELECT obj_id, type FROM tsk_objects " //NON-NLS
+					+ "WHERE par_obj_id IS NULL"); //NON-NLS
+			Collection<ObjectInfo> infos = new ArrayList<ObjectInfo>();
+			while (rs.next()) {
+				infos.add(new ObjectInfo(rs.getLong("obj_id"), ObjectType.valueOf(rs.getShort("type")))); //NON-NLS
+			}
+
+			List<Content> rootObjs = new ArrayList<Content>();
+			for (ObjectInfo i : infos) {
+				if (null != i.type) {
+					switch (i.type) {
+						case IMG:
+							rootObjs.add(getImageById(i.id));
+							break;
+						case ABSTRACTFILE:
+							// Check if virtual dir for local files.
+							AbstractFile af = getAbstractFileById(i.id);
+							if (af instanceof VirtualDirectory) {
+								rootObjs.add(af);
+							} else {
+								throw new TskCoreException("Parentless object has wrong type to be a root (ABSTRACTFILE, but not VIRTUAL_DIRECTORY: " + i.type);
+							}
+							break;
+						case REPORT:
+							break;
+						default:
+							throw new TskCoreException("Parentless object has wrong type to be a root: " + i.type);
+					}
+				}
+			}
+			return rootObjs;
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error getting root objects", ex);
+		} finally {
+			closeResultSet(rs);
+			closeStatement(s);
+			connection.close();
+			releaseSingleUserCaseReadLock();
+		}
+	}
+
+	/**
+	 * Gets the the datasource obj ids for the given device_id
+	 *
+	 * @param deviceId device_id
+	 *
+	 * @return A list of the data source object_id for the given device_id for
+	 *         the case.
+	 *
+	 * @throws TskCoreException if there is a problem getting the data source
+	 *                          obj ids.
+	 */
+	List<Long> getDataSourceObjIds(String deviceId) throws TskCoreException {
+
+		// check cached map first
+		synchronized (deviceIdToDatasourceObjIdMap) {
+			if (deviceIdToDatasourceObjIdMap.containsKey(deviceId)) {
+				return new ArrayList<Long>(deviceIdToDatasourceObjIdMap.get(deviceId));
+			}
+
+			CaseDbConnection connection = connections.getConnection();
+			acquireSingleUserCaseReadLock();
+			Statement s = null;
+			ResultSet rs = null;
+			try {
+				s = connection.createStatement();
+				rs = connection.executeQuery(s, "SELECT obj_id FROM data_source_info WHERE device_id = '" + deviceId + "'"); //NON-NLS
+				List<Long> dataSourceObjIds = new ArrayList<Long>();
+				while (rs.next()) {
+					dataSourceObjIds.add(rs.getLong("obj_id"));
+
+					// Add to map of deviceID to data_source_obj_id.
+					long ds_obj_id = rs.getLong("obj_id");
+					if (deviceIdToDatasourceObjIdMap.containsKey(deviceId)) {
+						deviceIdToDatasourceObjIdMap.get(deviceId).add(ds_obj_id);
+					} else {
+						deviceIdToDatasourceObjIdMap.put(deviceId, new HashSet<Long>(Arrays.asList(ds_obj_id)));
+					}
+				}
+				return dataSourceObjIds;
+			} catch (SQLException ex) {
+				throw new TskCoreException("Error getting data sources", ex);
+			} finally {
+				closeResultSet(rs);
+				closeStatement(s);
+				connection.close();
+				releaseSingleUserCaseReadLock();
+			}
+		}
+	}
+
+	/**
+	 * Gets the data sources for the case. For each data source, if it is an
+	 * image, an Image will be instantiated. Otherwise, a LocalFilesDataSource
+	 * will be instantiated.
+	 *
+	 * NOTE: The DataSource interface is an emerging feature and at present is
+	 * only useful for obtaining the object id and the device id, an
+	 * ASCII-printable identifier for the device associated with the data source
+	 * that is intended to be unique across multiple cases (e.g., a UUID). In
+	 * the future, this method will be a replacement for the getRootObjects
+	 * method.
+	 *
+	 * @return A list of the data sources for the case.
+	 *
+	 * @throws TskCoreException if there is a problem getting the data sources.
+	 */
+	public List<DataSource> getDataSources() throws TskCoreException {
+		CaseDbConnection connection = connections.getConnection();
+		acquireSingleUserCaseReadLock();
+		Statement statement = null;
+		ResultSet resultSet = null;
+		Statement statement2 = null;
+		ResultSet resultSet2 = null;
+		try {
+			statement = connection.createStatement();
+			statement2 = connection.createStatement();
+			resultSet = connection.executeQuery(statement,
+					"SELECT ds.obj_id, ds.device_id, ds.time_zone, img.type, img.ssize, img.size, img.md5, img.display_name "
+					+ "FROM data_source_info AS ds "
+					+ "LEFT JOIN tsk_image_info AS img "
+					+ "ON ds.obj_id = img.obj_id"); //NON-NLS
+			
+			List<DataSource> dataSourceList = new ArrayList<DataSource>();
+			Map<Long, List<String>> imagePathsMap = getImagePaths();
+
+			while (resultSet.next()) {
+				DataSource dataSource;
+				Long objectId = resultSet.getLong("obj_id");
+				String deviceId = resultSet.getString("device_id");
+				String timezone = resultSet.getString("time_zone");
+				String type = resultSet.getString("type");
+
+				if (type == null) {
+					/*
+					 * No data found in 'tsk_image_info', so we build a
+					 * LocalFilesDataSource.
+					 */
+					
+					resultSet2 = connection.executeQuery(statement2, "SELECT name FROM tsk_files WHERE tsk_files.obj_id = " + objectId); //NON-NLS
+					String dsName = (resultSet2.next()) ? resultSet2.getString("name") : "";
+					resultSet2.close();
+					
+					TSK_FS_NAME_TYPE_ENUM dirType = TSK_FS_NAME_TYPE_ENUM.DIR;
+					TSK_FS_META_TYPE_ENUM metaType = TSK_FS_META_TYPE_ENUM.TSK_FS_META_TYPE_DIR;
+					TSK_FS_NAME_FLAG_ENUM dirFlag = TSK_FS_NAME_FLAG_ENUM.ALLOC;
+					final short metaFlags = (short) (TSK_FS_META_FLAG_ENUM.ALLOC.getValue()
+							| TSK_FS_META_FLAG_ENUM.USED.getValue());
+					String parentPath = "/"; //NON-NLS
+					dataSource = new LocalFilesDataSource(this, objectId, objectId, deviceId, dsName, dirType, metaType, dirFlag, metaFlags, timezone, null, FileKnown.UNKNOWN, parentPath);
+				} else {
+					/*
+					 * Data found in 'tsk_image_info', so we build an Image.
+					 */
+					Long ssize = resultSet.getLong("ssize");
+					Long size = resultSet.getLong("size");
+					String md5 = resultSet.getString("md5");
+					String name = resultSet.getString("display_name");
+
+					List<String> imagePaths = imagePathsMap.get(objectId);
+					if (name == null) {
+						if (imagePaths.size() > 0) {
+							String path = imagePaths.get(0);
+							name = (new java.io.File(path)).getName();
+						} else {
+							name = "";
+						}
+					}
+
+					dataSource = new Image(this, objectId, Long.valueOf(type), deviceId, ssize, name, imagePaths.toArray(new String[imagePaths.size()]), timezone, md5, size);
+				}
+
+				dataSourceList.add(dataSource);
+			}
+
+			return dataSourceList;
+
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error getting data sources", ex);
+		} finally {
+			closeResultSet(resultSet);
+			closeStatement(statement);
+			closeResultSet(resultSet2);
+			closeStatement(statement2);
+			connection.close();
+			releaseSingleUserCaseReadLock();
+		}
+	}
+
+	/**
+	 * Gets a specific data source for the case. If it is an image, an Image
+	 * will be instantiated. Otherwise, a LocalFilesDataSource will be
+	 * instantiated.
+	 *
+	 * NOTE: The DataSource class is an emerging feature and at present is only
+	 * useful for obtaining the object id and the data source identifier, an
+	 * ASCII-printable identifier for the data source that is intended to be
+	 * unique across multiple cases (e.g., a UUID). In the future, this method
+	 * will be a replacement for the getRootObjects method.
+	 *
+	 * @param objectId The object id of the data source.
+	 *
+	 * @return The data source.
+	 *
+	 * @throws TskDataException If there is no data source for the given object
+	 *                          id.
+	 * @throws TskCoreException If there is a problem getting the data source.
+	 */
+	public DataSource getDataSource(long objectId) throws TskDataException, TskCoreException {
+		DataSource dataSource = null;
+		CaseDbConnection connection = connections.getConnection();
+		acquireSingleUserCaseReadLock();
+		Statement statement = null;
+		ResultSet resultSet = null;
+		try {
+			statement = connection.createStatement();
+			resultSet = connection.executeQuery(statement,
+					"SELECT ds.device_id, ds.time_zone, img.type, img.ssize, img.size, img.md5, img.display_name "
+					+ "FROM data_source_info AS ds "
+					+ "LEFT JOIN tsk_image_info AS img "
+					+ "ON ds.obj_id = img.obj_id "
+					+ "WHERE ds.obj_id = " + objectId); //NON-NLS
+			if (resultSet.next()) {
+				String deviceId = resultSet.getString("device_id");
+				String timezone = resultSet.getString("time_zone");
+				String type = resultSet.getString("type");
+
+				if (type == null) {
+					/*
+					 * No data found in 'tsk_image_info', so we build an
+					 * LocalFilesDataSource.
+					 */
+					TSK_FS_NAME_TYPE_ENUM dirType = TSK_FS_NAME_TYPE_ENUM.DIR;
+					TSK_FS_META_TYPE_ENUM metaType = TSK_FS_META_TYPE_ENUM.TSK_FS_META_TYPE_DIR;
+					TSK_FS_NAME_FLAG_ENUM dirFlag = TSK_FS_NAME_FLAG_ENUM.ALLOC;
+					final short metaFlags = (short) (TSK_FS_META_FLAG_ENUM.ALLOC.getValue()
+							| TSK_FS_META_FLAG_ENUM.USED.getValue());
+					String parentPath = "/"; //NON-NLS
+					dataSource = new LocalFilesDataSource(this, objectId, objectId, deviceId, deviceId, dirType, metaType, dirFlag, metaFlags, timezone, null, FileKnown.UNKNOWN, parentPath);
+				} else {
+					/*
+					 * Data found in 'tsk_image_info', so we build an Image.
+					 */
+					Long ssize = resultSet.getLong("ssize");
+					Long size = resultSet.getLong("size");
+					String md5 = resultSet.getString("md5");
+					String name = resultSet.getString("display_name");
+
+					List<String> imagePaths = getImagePathsById(objectId);
+					if (name == null) {
+						if (imagePaths.size() > 0) {
+							String path = imagePaths.get(0);
+							name = (new java.io.File(path)).getName();
+						} else {
+							name = "";
+						}
+					}
+
+					dataSource = new Image(this, objectId, Long.valueOf(type), deviceId, ssize, name, imagePaths.toArray(new String[imagePaths.size()]), timezone, md5, size);
+				}
+			} else {
+				throw new TskDataException(String.format("There is no data source with obj_id = %d", objectId));
+			}
+		} catch (SQLException ex) {
+			throw new TskCoreException(String.format("Error getting data source with obj_id = %d", objectId), ex);
+		} finally {
+			closeResultSet(resultSet);
+			closeStatement(statement);
+			connection.close();
+			releaseSingleUserCaseReadLock();
+		}
+
+		return dataSource;
+	}
+
+	/**
+	 * Get all blackboard artifacts of a given type. Does not included rejected
+	 * artifacts.
+	 *
+	 * @param artifactTypeID artifact type id (must exist in database)
+	 *
+	 * @return list of blackboard artifacts.
+	 *
+	 * @throws TskCoreException
+	 */
+	public ArrayList<BlackboardArtifact> getBlackboardArtifacts(int artifactTypeID) throws TskCoreException {
+		return getArtifactsHelper("blackboard_artifacts.artifact_type_id = " + artifactTypeID);
+	}
+
+	/**
+	 * Get a count of blackboard artifacts for a given content. Does not include
+	 * rejected artifacts.
+	 *
+	 * @param objId Id of the content.
+	 *
+	 * @return The artifacts count for the content.
+	 *
+	 * @throws TskCoreException
+	 */
+	public long getBlackboardArtifactsCount(long objId) throws TskCoreException {
+		CaseDbConnection connection = connections.getConnection();
+		acquireSingleUserCaseReadLock();
+		ResultSet rs = null;
+		try {
+			// SELECT COUNT(*) AS count FROM blackboard_artifacts WHERE obj_id = ?
+			PreparedStatement statement = connection.getPreparedStatement(PREPARED_STATEMENT.COUNT_ARTIFACTS_FROM_SOURCE);
+			statement.clearParameters();
+			statement.setLong(1, objId);
+			rs = connection.executeQuery(statement);
+			long count = 0;
+			if (rs.next()) {
+				count = rs.getLong("count");
+			}
+			return count;
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error getting number of blackboard artifacts by content", ex);
+		} finally {
+			closeResultSet(rs);
+			connection.close();
+			releaseSingleUserCaseReadLock();
+		}
+	}
+
+	/**
+	 * Get a count of artifacts of a given type. Does not include rejected
+	 * artifacts.
+	 *
+	 * @param artifactTypeID Id of the artifact type.
+	 *
+	 * @return The artifacts count for the type.
+	 *
+	 * @throws TskCoreException
+	 */
+	public long getBlackboardArtifactsTypeCount(int artifactTypeID) throws TskCoreException {
+		CaseDbConnection connection = connections.getConnection();
+		acquireSingleUserCaseReadLock();
+		ResultSet rs = null;
+		try {
+			// SELECT COUNT(*) AS count FROM blackboard_artifacts WHERE artifact_type_id = ?
+			PreparedStatement statement = connection.getPreparedStatement(PREPARED_STATEMENT.COUNT_ARTIFACTS_OF_TYPE);
+			statement.clearParameters();
+			statement.setInt(1, artifactTypeID);
+			rs = connection.executeQuery(statement);
+			long count = 0;
+			if (rs.next()) {
+				count = rs.getLong("count");
+			}
+			return count;
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error getting number of blackboard artifacts by type", ex);
+		} finally {
+			closeResultSet(rs);
+			connection.close();
+			releaseSingleUserCaseReadLock();
+		}
+	}
+
+	/**
+	 * Gets the summary statistics of the files and artifacts of a data
+	 * source. The statistics are read from the data_source_stats table with
+	 * one indexed query. If they have not been built for the data source yet,
+	 * such as for a data source of a case created with an older schema, they
+	 * are built first, see rebuildDataSourceStats().
+	 *
+	 * @param dataSourceObjId The object id of the data source.
+	 *
+	 * @return The statistics.
+	 *
+	 * @throws TskCoreException If there is a problem querying the case
+	 *                          database.
+	 */
+	public DataSourceStats getDataSourceStats(long dataSourceObjId) throws TskCoreException {
+		CaseDbConnection connection = connections.getConnection();
+		acquireSingleUserCaseReadLock();
+		ResultSet rs = null;
+		boolean built = false;
+		DataSourceStats stats = new DataSourceStats(dataSourceObjId);
+		try {
+			// SELECT stat_type, stat_key, stat_value FROM data_source_stats WHERE data_source_obj_id = ?
+			PreparedStatement statement = connection.getPreparedStatement(PREPARED_STATEMENT.SELECT_DATA_SOURCE_STATS);
+			statement.clearParameters();
+			statement.setLong(1, dataSourceObjId);
+			rs = connection.executeQuery(statement);
+			while (rs.next()) {
+				DataSourceStats.StatType statType = DataSourceStats.StatType.fromType(rs.getInt("stat_type"));
+				if (DataSourceStats.StatType.BUILT == statType) {
+					built = true;
+				} else if (null != statType) {
+					stats.add(statType, rs.getString("stat_key"), rs.getLong("stat_value"));
+				}
+			}
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error getting statistics of data source with obj_id = " + dataSourceObjId, ex);
+		} finally {
+			closeResultSet(rs);
+			connection.close();
+			releaseSingleUserCaseReadLock();
+		}
+		return built ? stats : rebuildDataSourceStats(dataSourceObjId);
+	}
+
+	/**
+	 * Builds the summary statistics of the files and artifacts of a data
+	 * source from scratch, replacing any statistics kept for it, and keeps
+	 * them up to date from then on. This scans the files and artifacts of the
+	 * data source. It is done when an image is added and when the statistics
+	 * are first asked for, so it is only needed if the statistics are thought
+	 * to be wrong, e.g., after the case database has been changed by other
+	 * means.
+	 *
+	 * @param dataSourceObjId The object id of the data source.
+	 *
+	 * @return The statistics.
+	 *
+	 * @throws TskCoreException If there is a problem querying or updating the
+	 *                          case database.
+	 */
+	public DataSourceStats rebuildDataSourceStats(long dataSourceObjId) throws TskCoreException {
+		String insert = "INSERT INTO data_source_stats (data_source_obj_id, stat_type, stat_key, stat_value) SELECT " + dataSourceObjId + ", "; //NON-NLS
+		String files = " FROM tsk_files WHERE data_source_obj_id = " + dataSourceObjId; //NON-NLS
+		CaseDbConnection connection = connections.getConnection();
+		acquireSingleUserCaseWriteLock();
+		Statement statement = null;
+		try {
+			connection.beginTransaction();
+			// DELETE FROM data_source_stats WHERE data_source_obj_id = ?
+			PreparedStatement deleteStatement = connection.getPreparedStatement(PREPARED_STATEMENT.DELETE_DATA_SOURCE_STATS);
+			deleteStatement.clearParameters();
+			deleteStatement.setLong(1, dataSourceObjId);
+			connection.executeUpdate(deleteStatement);
+
+			statement = connection.createStatement();
+			connection.executeUpdate(statement, insert + DataSourceStats.StatType.BUILT.getType() + ", '', 1"); //NON-NLS
+			connection.executeUpdate(statement, insert + DataSourceStats.StatType.FILE_COUNT.getType() + ", '', COUNT(*)" + files); //NON-NLS
+			connection.executeUpdate(statement, insert + DataSourceStats.StatType.FILE_SIZE.getType() + ", '', COALESCE(SUM(size), 0)" + files); //NON-NLS
+			connection.executeUpdate(statement, insert + DataSourceStats.StatType.ALLOCATED_FILE_COUNT.getType() + ", '', COUNT(*)" + files //NON-NLS
+					+ " AND (meta_flags & " + TSK_FS_META_FLAG_ENUM.ALLOC.getValue() + ") <> 0"); //NON-NLS
+			connection.executeUpdate(statement, insert + DataSourceStats.StatType.UNALLOCATED_FILE_COUNT.getType() + ", '', COUNT(*)" + files //NON-NLS
+					+ " AND (meta_flags & " + TSK_FS_META_FLAG_ENUM.UNALLOC.getValue() + ") <> 0"); //NON-NLS
+			connection.executeUpdate(statement, insert + DataSourceStats.StatType.DELETED_FILE_COUNT.getType() + ", '', COUNT(*)" + files //NON-NLS
+					+ " AND dir_flags = " + TSK_FS_NAME_FLAG_ENUM.UNALLOC.getValue()); //NON-NLS
+			connection.executeUpdate(statement, insert + DataSourceStats.StatType.EXTENSION_FILE_COUNT.getType() + ", extension, COUNT(*)" + files //NON-NLS
+					+ " AND extension IS NOT NULL AND extension <> '' GROUP BY extension"); //NON-NLS
+			connection.executeUpdate(statement, insert + DataSourceStats.StatType.MIME_TYPE_FILE_COUNT.getType() + ", mime_type, COUNT(*)" + files //NON-NLS
+					+ " AND mime_type IS NOT NULL GROUP BY mime_type"); //NON-NLS
+			connection.executeUpdate(statement, insert + DataSourceStats.StatType.ARTIFACT_COUNT.getType() + ", CAST(artifact_type_id AS TEXT), COUNT(*)" //NON-NLS
+					+ " FROM blackboard_artifacts WHERE data_source_obj_id = " + dataSourceObjId + " GROUP BY artifact_type_id"); //NON-NLS
+			connection.commitTransaction();
+		} catch (SQLException ex) {
+			connection.rollbackTransaction();
+			throw new TskCoreException("Error building statistics of data source with obj_id = " + dataSourceObjId, ex);
+		} finally {
+			closeStatement(statement);
+			connection.close();
+			releaseSingleUserCaseWriteLock();
+		}
+		return getDataSourceStats(dataSourceObjId);
+	}
+
+	/**
+	 * Drops the summary statistics kept for a data source, so that they are
+	 * built from scratch when they are next asked for, see
+	 * getDataSourceStats().
+	 *
+	 * @param dataSourceObjId The object id of the data source.
+	 *
+	 * @throws TskCoreException If there is a problem updating the case
+	 *                          database.
+	 */
+	void invalidateDataSourceStats(long dataSourceObjId) throws TskCoreException {
+		CaseDbConnection connection = connections.getConnection();
+		acquireSingleUserCaseWriteLock();
+		try {
+			// DELETE FROM data_source_stats WHERE data_source_obj_id = ?
+			PreparedStatement statement = connection.getPreparedStatement(PREPARED_STATEMENT.DELETE_DATA_SOURCE_STATS);
+			statement.clearParameters();
+			statement.setLong(1, dataSourceObjId);
+			connection.executeUpdate(statement);
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error dropping statistics of data source with obj_id = " + dataSourceObjId, ex);
+		} finally {
+			connection.close();
+			releaseSingleUserCaseWriteLock();
+		}
+	}
+
+	/**
+	 * Adds a new file to the statistics of its data source.
+	 *
+	 * @param connection      The connection the file was added with.
+	 * @param dataSourceObjId The object id of the data source of the file.
+	 * @param size            The size of the file.
+	 * @param dirFlags        The dir_flags of the file.
+	 * @param metaFlags       The meta_flags of the file.
+	 * @param extension       The extension of the file, may be null.
+	 *
+	 * @throws SQLException If there is a problem updating the case database.
+	 */
+	private void addFileStats(CaseDbConnection connection, long dataSourceObjId, long size, short dirFlags, short metaFlags, String extension) throws SQLException {
+		DataSourceStats.Increments increments = new DataSourceStats.Increments();
+		increments.addFile(dataSourceObjId, size, dirFlags, metaFlags, extension, null, 1);
+		updateDataSourceStats(increments, connection);
+	}
+
+	/**
+	 * Adds the statistics of some files, as they are in the case database, to
+	 * a set of increments, or takes them away. Files that are about to change
+	 * are taken away before the change and added back after it.
+	 *
+	 * @param objIds     The object ids of the files.
+	 * @param sign       1 to add the files, -1 to take them away.
+	 * @param connection The connection to query with.
+	 * @param increments The increments to add to.
+	 *
+	 * @throws SQLException If there is a problem querying the case database.
+	 */
+	private void addFileStatsFromCaseDb(Collection<Long> objIds, int sign, CaseDbConnection connection, DataSourceStats.Increments increments) throws SQLException {
+		List<Long> ids = new ArrayList<Long>(objIds);
+		for (int start = 0; start < ids.size(); start += FILE_STATS_BATCH_SIZE) {
+			ParameterizedSQL query = new ParameterizedSQL(dbType);
+			query.append("SELECT data_source_obj_id, size, dir_flags, meta_flags, extension, mime_type FROM tsk_files WHERE "); //NON-NLS
+			query.appendIn("obj_id", ids.subList(start, Math.min(start + FILE_STATS_BATCH_SIZE, ids.size()))); //NON-NLS
+			PreparedStatement statement = null;
+			ResultSet rs = null;
+			try {
+				statement = query.prepare(connection);
+				rs = connection.executeQuery(statement);
+				while (rs.next()) {
+					increments.addFile(rs.getLong("data_source_obj_id"), rs.getLong("size"), rs.getShort("dir_flags"), rs.getShort("meta_flags"),
+							rs.getString("extension"), rs.getString("mime_type"), sign);
+				}
+			} finally {
+				closeResultSet(rs);
+				closeStatement(statement);
+			}
+		}
+	}
+
+	/**
+	 * Makes changes to the data_source_stats table. If the connection is in a
+	 * transaction, the changes are added to the changes of the transaction,
+	 * which are applied when it is committed, otherwise they are applied at
+	 * once.
+	 *
+	 * Every file added to a data source changes the same few rows, such as
+	 * the file count of the data source. Under PostgreSQL, a transaction that
+	 * changes a row holds a lock on it until it ends, so transactions that add
+	 * files to the same data source wait for each other once they have
+	 * changed the statistics. Applying the changes of a transaction just
+	 * before it is committed keeps those locks for as short a time as
+	 * possible, and updates each row once per transaction instead of once
+	 * per file.
+	 *
+	 * @param increments The changes.
+	 * @param connection The connection the changes were made with.
+	 *
+	 * @throws SQLException If there is a problem updating the case database.
+	 */
+	private void updateDataSourceStats(DataSourceStats.Increments increments, CaseDbConnection connection) throws SQLException {
+		DataSourceStats.Increments transactionIncrements = connection.getTransactionStatsIncrements();
+		if (null != transactionIncrements) {
+			transactionIncrements.addAll(increments);
+		} else {
+			applyDataSourceStats(increments, connection);
+		}
+	}
+
+	/**
+	 * Applies changes to the data_source_stats table, creating rows as
+	 * needed. Only the statistics of data sources whose statistics have been
+	 * built are changed; the others are built when they are first asked for.
+	 * The rows are changed in the order of their keys, so that transactions
+	 * that change the same rows cannot deadlock.
+	 *
+	 * @param increments The changes.
+	 * @param connection The connection to update with.
+	 *
+	 * @throws SQLException If there is a problem updating the case database.
+	 */
+	private void applyDataSourceStats(DataSourceStats.Increments increments, CaseDbConnection connection) throws SQLException {
+		Map<DataSourceStats.Key, Long> changes = increments.getChanges();
+		if (changes.isEmpty()) {
+			return;
+		}
+		PreparedStatement insertStatement;
+		if (dbType == DbType.POSTGRESQL) {
+			// INSERT INTO data_source_stats (data_source_obj_id, stat_type, stat_key, stat_value) SELECT ?, ?, ?, 0
+			// WHERE EXISTS (SELECT 1 FROM data_source_stats WHERE data_source_obj_id = ? AND stat_type = ?) ON CONFLICT DO NOTHING
+			insertStatement = connection.getPreparedStatement(PREPARED_STATEMENT.INSERT_DATA_SOURCE_STAT_POSTGRES);
+		} else {
+			// INSERT OR IGNORE INTO data_source_stats (data_source_obj_id, stat_type, stat_key, stat_value) SELECT ?, ?, ?, 0
+			// WHERE EXISTS (SELECT 1 FROM data_source_stats WHERE data_source_obj_id = ? AND stat_type = ?)
+			insertStatement = connection.getPreparedStatement(PREPARED_STATEMENT.INSERT_DATA_SOURCE_STAT_SQLITE);
+		}
+		insertStatement.clearParameters();
+		// UPDATE data_source_stats SET stat_value = stat_value + ? WHERE data_source_obj_id = ? AND stat_type = ? AND stat_key = ?
+		PreparedStatement updateStatement = connection.getPreparedStatement(PREPARED_STATEMENT.UPDATE_DATA_SOURCE_STAT);
+		updateStatement.clearParameters();
+		CounterRows.update(changes, insertStatement, updateStatement, 0, connection);
+	}
+
+	/**
+	 * Get all blackboard artifacts that have an attribute of the given type and
+	 * String value. Does not included rejected artifacts.
+	 *
+	 * @param attrType attribute of this attribute type to look for in the
+	 *                 artifacts
+	 * @param value    value of the attribute of the attrType type to look for
+	 *
+	 * @return a list of blackboard artifacts with such an attribute
+	 *
+	 * @throws TskCoreException exception thrown if a critical error occurred
+	 *                          within tsk core and artifacts could not be
+	 *                          queried
+	 */
+	public List<BlackboardArtifact> getBlackboardArtifacts(BlackboardAttribute.ATTRIBUTE_TYPE attrType, String value) throws TskCoreException {
+		return new ArrayList<BlackboardArtifact>(searchBlackboardArtifacts(new BlackboardAttribute.Type(attrType), value, AttributeSearchResult.TextMatch.EXACT).getArtifacts());
+	}
+
+	/**
+	 * Get all blackboard artifacts that have an attribute of the given type and
+	 * String value. Does not included rejected artifacts.
+	 *
+	 * @param attrType   attribute of this attribute type to look for in the
+	 *                   artifacts
+	 * @param subString  value substring of the string attribute of the attrType
+	 *                   type to look for
+	 * @param startsWith if true, the artifact attribute string should start
+	 *                   with the substring, if false, it should just contain it
+	 *
+	 * @return a list of blackboard artifacts with such an attribute
+	 *
+	 * @throws TskCoreException exception thrown if a critical error occurred
+	 *                          within tsk core and artifacts could not be
+	 *                          queried
+	 */
+	public List<BlackboardArtifact> getBlackboardArtifacts(BlackboardAttribute.ATTRIBUTE_TYPE attrType, String subString, boolean startsWith) throws TskCoreException {
+		AttributeSearchResult.TextMatch match = startsWith ? AttributeSearchResult.TextMatch.STARTS_WITH : AttributeSearchResult.TextMatch.CONTAINS;
+		return new ArrayList<BlackboardArtifact>(searchBlackboardArtifacts(new BlackboardAttribute.Type(attrType), subString, match).getArtifacts());
+	}
+
+	/**
+	 * Get all blackboard artifacts that have an attribute of the given type and
+	 * integer value. Does not included rejected artifacts.
+	 *
+	 * @param attrType attribute of this attribute type to look for in the
+	 *                 artifacts
+	 * @param value    value of the attribute of the attrType type to look for
+	 *
+	 * @return a list of blackboard artifacts with such an attribute
+	 *
+	 * @throws TskCoreException exception thrown if a critical error occurred
+	 *                          within tsk core and artifacts could not be
+	 *                          queried
+	 */
+	public List<BlackboardArtifact> getBlackboardArtifacts(BlackboardAttribute.ATTRIBUTE_TYPE attrType, int value) throws TskCoreException {
+		return new ArrayList<BlackboardArtifact>(searchBlackboardArtifacts(new BlackboardAttribute.Type(attrType), value).getArtifacts());
+	}
+
+	/**
+	 * Get all blackboard artifacts that have an attribute of the given type and
+	 * long value. Does not included rejected artifacts.
+	 *
+	 * @param attrType attribute of this attribute type to look for in the
+	 *                 artifacts
+	 * @param value    value of the attribute of the attrType type to look for
+	 *
+	 * @return a list of blackboard artifacts with such an attribute
+	 *
+	 * @throws TskCoreException exception thrown if a critical error occurred
+	 *                          within tsk core and artifacts could not be
+	 *                          queried
+	 */
+	public List<BlackboardArtifact> getBlackboardArtifacts(BlackboardAttribute.ATTRIBUTE_TYPE attrType, long value) throws TskCoreException {
+		return new ArrayList<BlackboardArtifact>(searchBlackboardArtifacts(new BlackboardAttribute.Type(attrType), value).getArtifacts());
+	}
+
+	/**
+	 * Get all blackboard artifacts that have an attribute of the given type and
+	 * double value. Does not included rejected artifacts.
+	 *
+	 * @param attrType attribute of this attribute type to look for in the
+	 *                 artifacts
+	 * @param value    value of the attribute of the attrType type to look for
+	 *
+	 * @return a list of blackboard artifacts with such an attribute
+	 *
+	 * @throws TskCoreException exception thrown if a critical error occurred
+	 *                          within tsk core and artifacts could not be
+	 *                          queried
+	 */
+	public List<BlackboardArtifact> getBlackboardArtifacts(BlackboardAttribute.ATTRIBUTE_TYPE attrType, double value) throws TskCoreException {
+		return new ArrayList<BlackboardArtifact>(searchBlackboardArtifacts(new BlackboardAttribute.Type(attrType), value).getArtifacts());
+	}
+
+	/**
+	 * Get all blackboard artifacts that have an attribute of the given type and
+	 * byte value. Does not include rejected artifacts.
+	 *
+	 * @param attrType attribute of this attribute type to look for in the
+	 *                 artifacts
+	 * @param value    value of the attribute of the attrType type to look for
+	 *
+	 * @return a list of blackboard artifacts with such an attribute
+	 *
+	 * @throws TskCoreException exception thrown if a critical error occurred
+	 *                          within tsk core and artifacts could not be
+	 *                          queried
+	 */
+	public List<BlackboardArtifact> getBlackboardArtifacts(BlackboardAttribute.ATTRIBUTE_TYPE attrType, byte value) throws TskCoreException {
+		return new ArrayList<BlackboardArtifact>(searchBlackboardArtifacts(new BlackboardAttribute.Type(attrType), new byte[]{value}).getArtifacts());
+	}
+
+	/**
+	 * Searches for the blackboard artifacts that have a string attribute of a
+	 * given type whose value matches a search string. Exact and starts with
+	 * searches use the index of string values by attribute type. Contains
+	 * searches for three or more characters use the trigram index of the
+	 * attribute type, which is built the first time the attribute type is
+	 * searched this way and is kept up to date as attributes are added from
+	 * then on. Does not include rejected artifacts.
+	 *
+	 * @param attrType     The attribute type.
+	 * @param searchString The value, or part of the value, to look for.
+	 * @param match        How the value is matched.
+	 *
+	 * @return The artifacts found and the index that served the search.
+	 *
+	 * @throws TskCoreException If there is a problem querying the case
+	 *                          database.
+	 */
+	public AttributeSearchResult searchBlackboardArtifacts(BlackboardAttribute.Type attrType, String searchString, AttributeSearchResult.TextMatch match) throws TskCoreException {
+		ParameterizedSQL condition = new ParameterizedSQL(dbType);
+		condition.append("attrs.value_text IS NOT NULL AND "); //NON-NLS
+		AttributeSearchResult.Index index;
+		switch (match) {
+			case EXACT:
+				appendTextValueKey(condition).append(" = "); //NON-NLS
+				appendTextValueKey(condition, searchString).append(" AND attrs.value_text = ").appendValue(searchString); //NON-NLS
+				index = AttributeSearchResult.Index.VALUE_TEXT;
+				break;
+			case STARTS_WITH:
+				// Every value that starts with the search string, ignoring
+				// case, sorts between the search string and the search string
+				// followed by the last code point.
+				appendTextValueKey(condition).append(" >= "); //NON-NLS
+				appendTextValueKey(condition, searchString).append(" AND "); //NON-NLS
+				appendTextValueKey(condition).append(" < "); //NON-NLS
+				appendTextValueKey(condition, searchString).append(dbType == DbType.POSTGRESQL ? " || CHR(1114111)" : " || CHAR(1114111)"); //NON-NLS
+				condition.append(" AND LOWER(attrs.value_text) LIKE LOWER(").appendValue(escapeLikePattern(searchString) + "%").append(") ESCAPE '\\'"); //NON-NLS
+				index = AttributeSearchResult.Index.VALUE_TEXT;
+				break;
+			case CONTAINS:
+			default:
+				List<String> trigrams = AttributeTrigrams.getSearchTrigrams(searchString);
+				if (trigrams.isEmpty()) {
+					index = AttributeSearchResult.Index.NONE;
+				} else {
+					buildAttributeTrigrams(attrType.getTypeID());
+					condition.append("attrs.artifact_id IN (SELECT artifact_id FROM blackboard_attribute_trigrams WHERE attribute_type_id = ").appendValue(attrType.getTypeID()) //NON-NLS
+							.append(" AND ").appendStringIn("trigram", trigrams) //NON-NLS
+							.append(" GROUP BY artifact_id HAVING COUNT(*) = ").appendValue(trigrams.size()) //NON-NLS
+							.append(" UNION SELECT artifact_id FROM blackboard_attribute_trigrams WHERE attribute_type_id = ").appendValue(attrType.getTypeID()) //NON-NLS
+							.append(" AND trigram = ").appendValue(AttributeTrigrams.ANY).append(") AND "); //NON-NLS
+					index = AttributeSearchResult.Index.TRIGRAM;
+				}
+				condition.append("LOWER(attrs.value_text) LIKE LOWER(").appendValue("%" + escapeLikePattern(searchString) + "%").append(") ESCAPE '\\'"); //NON-NLS
+				break;
+		}
+		return searchBlackboardArtifacts(attrType.getTypeID(), condition, index);
+	}
+
+	/**
+	 * Searches for the blackboard artifacts that have an integer attribute of
+	 * a given type with a given value, using the index of integer values by
+	 * attribute type. Does not include rejected artifacts.
+	 *
+	 * @param attrType The attribute type.
+	 * @param value    The value to look for.
+	 *
+	 * @return The artifacts found and the index that served the search.
+	 *
+	 * @throws TskCoreException If there is a problem querying the case
+	 *                          database.
+	 */
+	public AttributeSearchResult searchBlackboardArtifacts(BlackboardAttribute.Type attrType, int value) throws TskCoreException {
+		ParameterizedSQL condition = new ParameterizedSQL(dbType);
+		condition.append("attrs.value_int32 IS NOT NULL AND attrs.value_int32 = ").appendValue(value); //NON-NLS
+		return searchBlackboardArtifacts(attrType.getTypeID(), condition, AttributeSearchResult.Index.VALUE_INT32);
+	}
+
+	/**
+	 * Searches for the blackboard artifacts that have a long or date time
+	 * attribute of a given type with a given value, using the index of long
+	 * values by attribute type. Does not include rejected artifacts.
+	 *
+	 * @param attrType The attribute type.
+	 * @param value    The value to look for.
+	 *
+	 * @return The artifacts found and the index that served the search.
+	 *
+	 * @throws TskCoreException If there is a problem querying the case
+	 *                          database.
+	 */
+	public AttributeSearchResult searchBlackboardArtifacts(BlackboardAttribute.Type attrType, long value) throws TskCoreException {
+		ParameterizedSQL condition = new ParameterizedSQL(dbType);
+		condition.append("attrs.value_int64 IS NOT NULL AND attrs.value_int64 = ").appendValue(value); //NON-NLS
+		return searchBlackboardArtifacts(attrType.getTypeID(), condition, AttributeSearchResult.Index.VALUE_INT64);
+	}
+
+	/**
+	 * Searches for the blackboard artifacts that have a double attribute of a
+	 * given type with a given value, using the index of double values by
+	 * attribute type. Does not include rejected artifacts.
+	 *
+	 * @param attrType The attribute type.
+	 * @param value    The value to look for.
+	 *
+	 * @return The artifacts found and the index that served the search.
+	 *
+	 * @throws TskCoreException If there is a problem querying the case
+	 *                          database.
+	 */
+	public AttributeSearchResult searchBlackboardArtifacts(BlackboardAttribute.Type attrType, double value) throws TskCoreException {
+		ParameterizedSQL condition = new ParameterizedSQL(dbType);
+		condition.append("attrs.value_double IS NOT NULL AND attrs.value_double = "); //NON-NLS
+		if (dbType == DbType.POSTGRESQL) {
+			// Compare with the value as it is stored in the NUMERIC(20, 10)
+			// column, so that the index of the column can be used
+			condition.append("ROUND(CAST(").appendValue(value).append(" AS NUMERIC), 10)"); //NON-NLS
+		} else {
+			condition.appendValue(value);
+		}
+		return searchBlackboardArtifacts(attrType.getTypeID(), condition, AttributeSearchResult.Index.VALUE_DOUBLE);
+	}
+
+	/**
+	 * Searches for the blackboard artifacts that have a byte attribute of a
+	 * given type with a given value, using the index of byte values by
+	 * attribute type. Does not include rejected artifacts.
+	 *
+	 * @param attrType The attribute type.
+	 * @param value    The value to look for.
+	 *
+	 * @return The artifacts found and the index that served the search.
+	 *
+	 * @throws TskCoreException If there is a problem querying the case
+	 *                          database.
+	 */
+	public AttributeSearchResult searchBlackboardArtifacts(BlackboardAttribute.Type attrType, byte[] value) throws TskCoreException {
+		ParameterizedSQL condition = new ParameterizedSQL(dbType);
+		condition.append("attrs.value_byte IS NOT NULL AND "); //NON-NLS
+		if (dbType == DbType.POSTGRESQL) {
+			condition.append("md5(attrs.value_byte) = md5(").appendValue(value).append(") AND "); //NON-NLS
+		}
+		condition.append("attrs.value_byte = ").appendValue(value); //NON-NLS
+		return searchBlackboardArtifacts(attrType.getTypeID(), condition, AttributeSearchResult.Index.VALUE_BYTE);
+	}
+
+	/**
+	 * Gets the artifacts that are not rejected and have an attribute of a
+	 * given type that meets a condition.
+	 *
+	 * @param attributeTypeId The attribute type id.
+	 * @param condition       The condition on the attribute, whose alias is
+	 *                        attrs.
+	 * @param index           The index that the condition was written for.
+	 *
+	 * @return The artifacts and the index.
+	 *
+	 * @throws TskCoreException If there is a problem querying the case
+	 *                          database.
+	 */
+	private AttributeSearchResult searchBlackboardArtifacts(int attributeTypeId, ParameterizedSQL condition, AttributeSearchResult.Index index) throws TskCoreException {
+		ParameterizedSQL query = new ParameterizedSQL(dbType);
+		query.append("SELECT arts.artifact_id AS artifact_id, arts.obj_id AS obj_id, arts.artifact_obj_id AS artifact_obj_id, " //NON-NLS
+				+ "arts.data_source_obj_id AS data_source_obj_id, arts.artifact_type_id AS artifact_type_id, " //NON-NLS
+				+ "types.type_name AS type_name, types.display_name AS display_name, arts.review_status_id AS review_status_id " //NON-NLS
+				+ "FROM blackboard_artifacts AS arts JOIN blackboard_artifact_types AS types ON types.artifact_type_id = arts.artifact_type_id " //NON-NLS
+				+ "WHERE arts.review_status_id <> ").appendValue(BlackboardArtifact.ReviewStatus.REJECTED.getID()) //NON-NLS
+				.append(" AND arts.artifact_id IN (SELECT attrs.artifact_id FROM blackboard_attributes AS attrs WHERE attrs.attribute_type_id = ").appendValue(attributeTypeId) //NON-NLS
+				.append(" AND ").append(condition).append(") ORDER BY arts.artifact_id"); //NON-NLS
+		CaseDbConnection connection = connections.getConnection();
+		acquireSingleUserCaseReadLock();
+		PreparedStatement statement = null;
+		ResultSet rs = null;
+		try {
+			statement = query.prepare(connection);
+			rs = connection.executeQuery(statement);
+			List<BlackboardArtifact> artifacts = new ArrayList<BlackboardArtifact>();
+			while (rs.next()) {
+				artifacts.add(new BlackboardArtifact(this, rs.getLong("artifact_id"), rs.getLong("obj_id"), rs.getLong("artifact_obj_id"), rs.getLong("data_source_obj_id"),
+						rs.getInt("artifact_type_id"), rs.getString("type_name"), rs.getString("display_name"),
+						BlackboardArtifact.ReviewStatus.withID(rs.getInt("review_status_id"))));
+			}
+			return new AttributeSearchResult(artifacts, index);
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error getting blackboard artifacts by attribute", ex);
+		} finally {
+			closeResultSet(rs);
+			closeStatement(statement);
+			connection.close();
+			releaseSingleUserCaseReadLock();
+		}
+	}
+
+	/**
+	 * Appends the key of the index of string values of an attribute, aliased
+	 * attrs, to a query. The key ignores case, so it serves both exact and
+	 * starts with searches. On PostgreSQL it is the start of the value in
+	 * lower case, since values can be longer than a btree entry.
+	 *
+	 * @param query The query.
+	 *
+	 * @return The query.
+	 */
+	private ParameterizedSQL appendTextValueKey(ParameterizedSQL query) {
+		if (dbType == DbType.POSTGRESQL) {
+			return query.append("LEFT(LOWER(attrs.value_text), " + TEXT_VALUE_KEY_LENGTH + ") COLLATE \"C\""); //NON-NLS
+		}
+		return query.append("attrs.value_text COLLATE NOCASE"); //NON-NLS
+	}
+
+	/**
+	 * Appends the key of the index of string values for a search string to a
+	 * query.
+	 *
+	 * @param query The query.
+	 * @param value The search string.
+	 *
+	 * @return The query.
+	 */
+	private ParameterizedSQL appendTextValueKey(ParameterizedSQL query, String value) {
+		if (dbType == DbType.POSTGRESQL) {
+			return query.append("LEFT(LOWER(").appendValue(value).append("), " + TEXT_VALUE_KEY_LENGTH + ")"); //NON-NLS
+		}
+		return query.appendValue(value);
+	}
+
+	/**
+	 * Escapes the wildcards of a LIKE pattern, with backslash as the escape
+	 * character.
+	 *
+	 * @param text The text to match literally.
+	 *
+	 * @return The escaped text.
+	 */
+	private static String escapeLikePattern(String text) {
+		return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+	}
+
+	/**
+	 * Builds the trigram index of the string values of an attribute type, if
+	 * it has not been built yet. Once built, it is kept up to date as
+	 * attributes are added.
+	 *
+	 * The attribute type is recorded as indexed before the index is filled
+	 * in, so that the trigrams of the attributes added from then on are added
+	 * by whoever adds them. Other clients of a multi-user case may not see
+	 * that for up to ATTRIBUTE_TRIGRAM_TYPE_CACHE_MS, see isTrigramIndexed(),
+	 * so on PostgreSQL the index is filled in again the first time it is used
+	 * after that.
+	 *
+	 * @param attributeTypeId The attribute type id.
+	 *
+	 * @throws TskCoreException If there is a problem updating the case
+	 *                          database.
+	 */
+	private void buildAttributeTrigrams(int attributeTypeId) throws TskCoreException {
+		Long buildTime = trigramRecheckAttributeTypes.get(attributeTypeId);
+		if (trigramIndexedAttributeTypes.contains(attributeTypeId)
+				&& (null == buildTime || System.currentTimeMillis() - buildTime < ATTRIBUTE_TRIGRAM_TYPE_CACHE_MS)) {
+			return;
+		}
+		synchronized (trigramBuildLock) {
+			CaseDbConnection connection = connections.getConnection();
+			acquireSingleUserCaseWriteLock();
+			try {
+				buildTime = trigramRecheckAttributeTypes.get(attributeTypeId);
+				if (null != buildTime) {
+					if (System.currentTimeMillis() - buildTime >= ATTRIBUTE_TRIGRAM_TYPE_CACHE_MS) {
+						// Add the attributes added by other clients before
+						// they saw that the attribute type is indexed.
+						fillAttributeTrigrams(attributeTypeId, connection);
+						trigramRecheckAttributeTypes.remove(attributeTypeId);
+					}
+				} else if (!trigramIndexedAttributeTypes.contains(attributeTypeId) && !hasAttributeTrigrams(attributeTypeId, connection)) {
+					PreparedStatement typeStatement;
+					if (dbType == DbType.POSTGRESQL) {
+						// INSERT INTO blackboard_attribute_trigram_types (attribute_type_id) VALUES (?) ON CONFLICT DO NOTHING
+						typeStatement = connection.getPreparedStatement(PREPARED_STATEMENT.INSERT_ATTRIBUTE_TRIGRAM_TYPE_POSTGRES);
+					} else {
+						// INSERT OR IGNORE INTO blackboard_attribute_trigram_types (attribute_type_id) VALUES (?)
+						typeStatement = connection.getPreparedStatement(PREPARED_STATEMENT.INSERT_ATTRIBUTE_TRIGRAM_TYPE_SQLITE);
+					}
+					typeStatement.clearParameters();
+					typeStatement.setInt(1, attributeTypeId);
+					connection.executeUpdate(typeStatement);
+					try {
+						fillAttributeTrigrams(attributeTypeId, connection);
+					} catch (SQLException ex) {
+						// DELETE FROM blackboard_attribute_trigram_types WHERE attribute_type_id = ?
+						PreparedStatement deleteStatement = connection.getPreparedStatement(PREPARED_STATEMENT.DELETE_ATTRIBUTE_TRIGRAM_TYPE);
+						deleteStatement.clearParameters();
+						deleteStatement.setInt(1, attributeTypeId);
+						connection.executeUpdate(deleteStatement);
+						throw ex;
+					}
+					if (dbType == DbType.POSTGRESQL) {
+						trigramRecheckAttributeTypes.put(attributeTypeId, System.currentTimeMillis());
+					}
+				}
+				trigramUnindexedAttributeTypes.remove(attributeTypeId);
+				trigramIndexedAttributeTypes.add(attributeTypeId);
+			} catch (SQLException ex) {
+				throw new TskCoreException("Error building trigram index of attribute type " + attributeTypeId, ex);
+			} finally {
+				connection.close();
+				releaseSingleUserCaseWriteLock();
+			}
+		}
+	}
+
+	/**
+	 * Adds the trigrams of the string values of the existing attributes of an
+	 * attribute type to the trigram index. Trigrams that are already in it
+	 * are ignored.
+	 *
+	 * @param attributeTypeId The attribute type id.
+	 * @param connection      The connection to update with.
+	 *
+	 * @throws SQLException If there is a problem updating the case database.
+	 */
+	private void fillAttributeTrigrams(int attributeTypeId, CaseDbConnection connection) throws SQLException {
+		ResultSet rs = null;
+		try {
+			connection.beginTransaction();
+			// SELECT artifact_id, value_text FROM blackboard_attributes WHERE attribute_type_id = ? AND value_text IS NOT NULL
+			PreparedStatement statement = connection.getPreparedStatement(PREPARED_STATEMENT.SELECT_TEXT_ATTRIBUTES_BY_TYPE);
+			statement.clearParameters();
+			statement.setInt(1, attributeTypeId);
+			rs = connection.executeQuery(statement);
+			PreparedStatement insertStatement = getAttributeTrigramInsertStatement(connection);
+			int batchSize = 0;
+			while (rs.next()) {
+				batchSize += addAttributeTrigramsToBatch(insertStatement, attributeTypeId, rs.getLong("artifact_id"), rs.getString("value_text"));
+				if (batchSize >= MAX_BATCH_SIZE) {
+					connection.executeBatch(insertStatement);
+					batchSize = 0;
+				}
+			}
+			if (batchSize > 0) {
+				connection.executeBatch(insertStatement);
+			}
+			connection.commitTransaction();
+		} catch (SQLException ex) {
+			connection.rollbackTransaction();
+			throw ex;
+		} finally {
+			closeResultSet(rs);
+		}
+	}
+
+	/**
+	 * Indicates whether the string values of an attribute type are in the
+	 * trigram index, so that the trigrams of new attributes of the type are
+	 * to be added. Both answers are cached, so that adding an attribute does
+	 * not query for it. An attribute type that is not indexed is checked again
+	 * after ATTRIBUTE_TRIGRAM_TYPE_CACHE_MS on PostgreSQL, in case another
+	 * client has built its index since. On SQLite the index is only built by
+	 * this client, which updates the cache when it does.
+	 *
+	 * @param attributeTypeId The attribute type id.
+	 * @param connection      The connection to query with.
+	 *
+	 * @return True if the trigrams of the attribute type are indexed.
+	 *
+	 * @throws SQLException If there is a problem querying the case database.
+	 */
+	private boolean isTrigramIndexed(int attributeTypeId, CaseDbConnection connection) throws SQLException {
+		if (trigramIndexedAttributeTypes.contains(attributeTypeId)) {
+			return true;
+		}
+		Long checkTime = trigramUnindexedAttributeTypes.get(attributeTypeId);
+		if (null != checkTime && (dbType != DbType.POSTGRESQL || System.currentTimeMillis() - checkTime < ATTRIBUTE_TRIGRAM_TYPE_CACHE_MS)) {
+			return false;
+		}
+		if (hasAttributeTrigrams(attributeTypeId, connection)) {
+			trigramIndexedAttributeTypes.add(attributeTypeId);
+			trigramUnindexedAttributeTypes.remove(attributeTypeId);
+			return true;
+		}
+		trigramUnindexedAttributeTypes.put(attributeTypeId, System.currentTimeMillis());
+		return false;
+	}
+
+	/**
+	 * Indicates whether the trigram index of the string values of an
+	 * attribute type has been built.
+	 *
+	 * @param attributeTypeId The attribute type id.
+	 * @param connection      The connection to query with.
+	 *
+	 * @return True if the trigrams of the attribute type are indexed.
+	 *
+	 * @throws SQLException If there is a problem querying the case database.
+	 */
+	private boolean hasAttributeTrigrams(int attributeTypeId, CaseDbConnection connection) throws SQLException {
+		ResultSet rs = null;
+		try {
+			// SELECT attribute_type_id FROM blackboard_attribute_trigram_types WHERE attribute_type_id = ?
+			PreparedStatement statement = connection.getPreparedStatement(PREPARED_STATEMENT.SELECT_ATTRIBUTE_TRIGRAM_TYPE);
+			statement.clearParameters();
+			statement.setInt(1, attributeTypeId);
+			rs = connection.executeQuery(statement);
+			return rs.next();
+		} finally {
+			closeResultSet(rs);
+		}
+	}
+
+	private PreparedStatement getAttributeTrigramInsertStatement(CaseDbConnection connection) throws SQLException {
+		PreparedStatement statement;
+		if (dbType == DbType.POSTGRESQL) {
+			// INSERT INTO blackboard_attribute_trigrams (attribute_type_id, trigram, artifact_id) VALUES (?, ?, ?) ON CONFLICT DO NOTHING
+			statement = connection.getPreparedStatement(PREPARED_STATEMENT.INSERT_ATTRIBUTE_TRIGRAM_POSTGRES);
+		} else {
+			// INSERT OR IGNORE INTO blackboard_attribute_trigrams (attribute_type_id, trigram, artifact_id) VALUES (?, ?, ?)
+			statement = connection.getPreparedStatement(PREPARED_STATEMENT.INSERT_ATTRIBUTE_TRIGRAM_SQLITE);
+		}
+		statement.clearParameters();
+		return statement;
+	}
+
+	/**
+	 * Adds the rows of the trigram index for a string attribute value to a
+	 * batch.
+	 *
+	 * @param insertStatement The trigram insert statement.
+	 * @param attributeTypeId The attribute type id.
+	 * @param artifactId      The artifact id of the attribute.
+	 * @param value           The value.
+	 *
+	 * @return The number of rows added to the batch.
+	 *
+	 * @throws SQLException If there is a problem adding to the batch.
+	 */
+	private int addAttributeTrigramsToBatch(PreparedStatement insertStatement, int attributeTypeId, long artifactId, String value) throws SQLException {
+		Set<String> trigrams = AttributeTrigrams.getTrigrams(value);
+		for (String trigram : trigrams) {
+			insertStatement.setInt(1, attributeTypeId);
+			insertStatement.setString(2, trigram);
+			insertStatement.setLong(3, artifactId);
+			insertStatement.addBatch();
+		}
+		return trigrams.size();
+	}
+
+	/**
+	 * Gets a list of all the artifact types for this case
+	 *
+	 * @return a list of artifact types
+	 *
+	 * @throws TskCoreException when there is an error getting the types
+	 */
+	public Iterable<BlackboardArtifact.Type> getArtifactTypes() throws TskCoreException {
+		CaseDbConnection connection = connections.getConnection();
+		acquireSingleUserCaseReadLock();
+		Statement s = null;
 		ResultSet rs = null;
 		try {
 			s = connection.createStatement();
-			rs = connection.executeQuery(s, "SELECT obj_id, type FROM tsk_objects " //NON-NLS
-					+ "WHERE par_obj_id IS NULL"); //NON-NLS
-			Collection<ObjectInfo> infos = new ArrayList<ObjectInfo>();
+			rs = connection.executeQuery(s, "SELECT artifact_type_id, type_name, display_name FROM blackboard_artifact_types"); //NON-NLS
+			ArrayList<BlackboardArtifact.Type> artifactTypes = new ArrayList<BlackboardArtifact.Type>();
 			while (rs.next()) {
-				infos.add(new ObjectInfo(rs.getLong("obj_id"), ObjectType.valueOf(rs.getShort("type")))); //NON-NLS
-			}
-
-			List<Content> rootObjs = new ArrayList<Content>();
-			for (ObjectInfo i : infos) {
-				if (null != i.type) {
-					switch (i.type) {
-						case IMG:
-							rootObjs.add(getImageById(i.id));
-							break;
-						case ABSTRACTFILE:
-							// Check if virtual dir for local files.
-							AbstractFile af = getAbstractFileById(i.id);
-							if (af instanceof VirtualDirectory) {
-								rootObjs.add(af);
-							} else {
-								throw new TskCoreException("Parentless object has wrong type to be a root (ABSTRACTFILE, but not VIRTUAL_DIRECTORY: " + i.type);
-							}
-							break;
-						case REPORT:
-							break;
-						default:
-							throw new TskCoreException("Parentless object has wrong type to be a root: " + i.type);
-					}
-				}
+				artifactTypes.add(new BlackboardArtifact.Type(rs.getInt("artifact_type_id"),
+						rs.getString("type_name"), rs.getString("display_name")));
 			}
-			return rootObjs;
+			return artifactTypes;
 		} catch (SQLException ex) {
-			throw new TskCoreException("Error getting root objects", ex);
+			throw new TskCoreException("Error getting artifact types", ex); //NON-NLS
 		} finally {
 			closeResultSet(rs);
 			closeStatement(s);
@@ -1726,280 +3332,189 @@ public List<Content> getRootObjects() throws TskCoreException {
 	}
 
 	/**
-	 * Gets the the datasource obj ids for the given device_id
-	 *
-	 * @param deviceId device_id
+	 * Get all of the standard blackboard artifact types that are in use in the
+	 * blackboard.
 	 *
-	 * @return A list of the data source object_id for the given device_id for
-	 *         the case.
+	 * @return List of standard blackboard artifact types
 	 *
-	 * @throws TskCoreException if there is a problem getting the data source
-	 *                          obj ids.
+	 * @throws TskCoreException
 	 */
-	List<Long> getDataSourceObjIds(String deviceId) throws TskCoreException {
-
-		// check cached map first
-		synchronized (deviceIdToDatasourceObjIdMap) {
-			if (deviceIdToDatasourceObjIdMap.containsKey(deviceId)) {
-				return new ArrayList<Long>(deviceIdToDatasourceObjIdMap.get(deviceId));
+	public ArrayList<BlackboardArtifact.ARTIFACT_TYPE> getBlackboardArtifactTypesInUse() throws TskCoreException {
+		String typeIdList = "";
+		for (int i = 0; i < BlackboardArtifact.ARTIFACT_TYPE.values().length; ++i) {
+			typeIdList += BlackboardArtifact.ARTIFACT_TYPE.values()[i].getTypeID();
+			if (i < BlackboardArtifact.ARTIFACT_TYPE.values().length - 1) {
+				typeIdList += ", ";
 			}
-
-			CaseDbConnection connection = connections.getConnection();
-			acquireSingleUserCaseReadLock();
-			Statement s = null;
-			ResultSet rs = null;
-			try {
-				s = connection.createStatement();
-				rs = connection.executeQuery(s, "SELECT obj_id FROM data_source_info WHERE device_id = '" + deviceId + "'"); //NON-NLS
-				List<Long> dataSourceObjIds = new ArrayList<Long>();
-				while (rs.next()) {
-					dataSourceObjIds.add(rs.getLong("obj_id"));
-
-					// Add to map of deviceID to data_source_obj_id.
-					long ds_obj_id = rs.getLong("obj_id");
-					if (deviceIdToDatasourceObjIdMap.containsKey(deviceId)) {
-						deviceIdToDatasourceObjIdMap.get(deviceId).add(ds_obj_id);
-					} else {
-						deviceIdToDatasourceObjIdMap.put(deviceId, new HashSet<Long>(Arrays.asList(ds_obj_id)));
-					}
-				}
-				return dataSourceObjIds;
-			} catch (SQLException ex) {
-				throw new TskCoreException("Error getting data sources", ex);
-			} finally {
-				closeResultSet(rs);
-				closeStatement(s);
-				connection.close();
-				releaseSingleUserCaseReadLock();
+		}
+		String query = "SELECT DISTINCT artifact_type_id FROM blackboard_artifacts "
+				+ "WHERE artifact_type_id IN (" + typeIdList + ")";
+		CaseDbConnection connection = connections.getConnection();
+		acquireSingleUserCaseReadLock();
+		Statement s = null;
+		ResultSet rs = null;
+		try {
+			s = connection.createStatement();
+			rs = connection.executeQuery(s, query);
+			ArrayList<BlackboardArtifact.ARTIFACT_TYPE> usedArts = new ArrayList<BlackboardArtifact.ARTIFACT_TYPE>();
+			while (rs.next()) {
+				usedArts.add(ARTIFACT_TYPE.fromID(rs.getInt("artifact_type_id")));
 			}
+			return usedArts;
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error getting artifact types in use", ex);
+		} finally {
+			closeResultSet(rs);
+			closeStatement(s);
+			connection.close();
+			releaseSingleUserCaseReadLock();
 		}
 	}
 
 	/**
-	 * Gets the data sources for the case. For each data source, if it is an
-	 * image, an Image will be instantiated. Otherwise, a LocalFilesDataSource
-	 * will be instantiated.
+	 * Gets the list of all unique artifact IDs in use.
 	 *
-	 * NOTE: The DataSource interface is an emerging feature and at present is
-	 * only useful for obtaining the object id and the device id, an
-	 * ASCII-printable identifier for the device associated with the data source
-	 * that is intended to be unique across multiple cases (e.g., a UUID). In
-	 * the future, this method will be a replacement for the getRootObjects
-	 * method.
+	 * Gets both static and dynamic IDs.
 	 *
-	 * @return A list of the data sources for the case.
+	 * @return The list of unique IDs
 	 *
-	 * @throws TskCoreException if there is a problem getting the data sources.
+	 * @throws TskCoreException exception thrown if a critical error occurred
+	 *                          within tsk core
 	 */
-	public List<DataSource> getDataSources() throws TskCoreException {
+	public List<BlackboardArtifact.Type> getArtifactTypesInUse() throws TskCoreException {
 		CaseDbConnection connection = connections.getConnection();
 		acquireSingleUserCaseReadLock();
-		Statement statement = null;
-		ResultSet resultSet = null;
-		Statement statement2 = null;
-		ResultSet resultSet2 = null;
+		Statement s = null;
+		ResultSet rs = null;
 		try {
-			statement = connection.createStatement();
-			statement2 = connection.createStatement();
-			resultSet = connection.executeQuery(statement,
-					"SELECT ds.obj_id, ds.device_id, ds.time_zone, img.type, img.ssize, img.size, img.md5, img.display_name "
-					+ "FROM data_source_info AS ds "
-					+ "LEFT JOIN tsk_image_info AS img "
-					+ "ON ds.obj_id = img.obj_id"); //NON-NLS
-			
-			List<DataSource> dataSourceList = new ArrayList<DataSource>();
-			Map<Long, List<String>> imagePathsMap = getImagePaths();
-
-			while (resultSet.next()) {
-				DataSource dataSource;
-				Long objectId = resultSet.getLong("obj_id");
-				String deviceId = resultSet.getString("device_id");
-				String timezone = resultSet.getString("time_zone");
-				String type = resultSet.getString("type");
-
-				if (type == null) {
-					/*
-					 * No data found in 'tsk_image_info', so we build a
-					 * LocalFilesDataSource.
-					 */
-					
-					resultSet2 = connection.executeQuery(statement2, "SELECT name FROM tsk_files WHERE tsk_files.obj_id = " + objectId); //NON-NLS
-					String dsName = (resultSet2.next()) ? resultSet2.getString("name") : "";
-					resultSet2.close();
-					
-					TSK_FS_NAME_TYPE_ENUM dirType = TSK_FS_NAME_TYPE_ENUM.DIR;
-					TSK_FS_META_TYPE_ENUM metaType = TSK_FS_META_TYPE_ENUM.TSK_FS_META_TYPE_DIR;
-					TSK_FS_NAME_FLAG_ENUM dirFlag = TSK_FS_NAME_FLAG_ENUM.ALLOC;
-					final short metaFlags = (short) (TSK_FS_META_FLAG_ENUM.ALLOC.getValue()
-							| TSK_FS_META_FLAG_ENUM.USED.getValue());
-					String parentPath = "/"; //NON-NLS
-					dataSource = new LocalFilesDataSource(this, objectId, objectId, deviceId, dsName, dirType, metaType, dirFlag, metaFlags, timezone, null, FileKnown.UNKNOWN, parentPath);
-				} else {
-					/*
-					 * Data found in 'tsk_image_info', so we build an Image.
-					 */
-					Long ssize = resultSet.getLong("ssize");
-					Long size = resultSet.getLong("size");
-					String md5 = resultSet.getString("md5");
-					String name = resultSet.getString("display_name");
-
-					List<String> imagePaths = imagePathsMap.get(objectId);
-					if (name == null) {
-						if (imagePaths.size() > 0) {
-							String path = imagePaths.get(0);
-							name = (new java.io.File(path)).getName();
-						} else {
-							name = "";
-						}
-					}
-
-					dataSource = new Image(this, objectId, Long.valueOf(type), deviceId, ssize, name, imagePaths.toArray(new String[imagePaths.size()]), timezone, md5, size);
-				}
-
-				dataSourceList.add(dataSource);
+			s = connection.createStatement();
+			rs = connection.executeQuery(s,
+					"SELECT DISTINCT arts.artifact_type_id AS artifact_type_id, "
+					+ "types.type_name AS type_name, types.display_name AS display_name "
+					+ "FROM blackboard_artifact_types AS types "
+					+ "INNER JOIN blackboard_artifacts AS arts "
+					+ "ON arts.artifact_type_id = types.artifact_type_id"); //NON-NLS
+			List<BlackboardArtifact.Type> uniqueArtifactTypes = new ArrayList<BlackboardArtifact.Type>();
+			while (rs.next()) {
+				uniqueArtifactTypes.add(new BlackboardArtifact.Type(rs.getInt("artifact_type_id"),
+						rs.getString("type_name"), rs.getString("display_name")));
 			}
-
-			return dataSourceList;
-
+			return uniqueArtifactTypes;
 		} catch (SQLException ex) {
-			throw new TskCoreException("Error getting data sources", ex);
+			throw new TskCoreException("Error getting attribute types", ex);
 		} finally {
-			closeResultSet(resultSet);
-			closeStatement(statement);
-			closeResultSet(resultSet2);
-			closeStatement(statement2);
+			closeResultSet(rs);
+			closeStatement(s);
+			connection.close();
+			releaseSingleUserCaseReadLock();
+		}
+	}
+
+	/**
+	 * Gets a list of all the attribute types for this case
+	 *
+	 * @return a list of attribute types
+	 *
+	 * @throws TskCoreException when there is an error getting the types
+	 */
+	public List<BlackboardAttribute.Type> getAttributeTypes() throws TskCoreException {
+		CaseDbConnection connection = connections.getConnection();
+		acquireSingleUserCaseReadLock();
+		Statement s = null;
+		ResultSet rs = null;
+		try {
+			s = connection.createStatement();
+			rs = connection.executeQuery(s, "SELECT attribute_type_id, type_name, display_name, value_type FROM blackboard_attribute_types"); //NON-NLS
+			ArrayList<BlackboardAttribute.Type> attribute_types = new ArrayList<BlackboardAttribute.Type>();
+			while (rs.next()) {
+				attribute_types.add(new BlackboardAttribute.Type(rs.getInt("attribute_type_id"), rs.getString("type_name"),
+						rs.getString("display_name"), TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE.fromType(rs.getLong("value_type"))));
+			}
+			return attribute_types;
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error getting attribute types", ex);
+		} finally {
+			closeResultSet(rs);
+			closeStatement(s);
 			connection.close();
 			releaseSingleUserCaseReadLock();
 		}
 	}
 
 	/**
-	 * Gets a specific data source for the case. If it is an image, an Image
-	 * will be instantiated. Otherwise, a LocalFilesDataSource will be
-	 * instantiated.
-	 *
-	 * NOTE: The DataSource class is an emerging feature and at present is only
-	 * useful for obtaining the object id and the data source identifier, an
-	 * ASCII-printable identifier for the data source that is intended to be
-	 * unique across multiple cases (e.g., a UUID). In the future, this method
-	 * will be a replacement for the getRootObjects method.
+	 * Get count of blackboard attribute types
 	 *
-	 * @param objectId The object id of the data source.
+	 * Counts both static (in enum) and dynamic attributes types (created by
+	 * modules at runtime)
 	 *
-	 * @return The data source.
+	 * @return count of attribute types
 	 *
-	 * @throws TskDataException If there is no data source for the given object
-	 *                          id.
-	 * @throws TskCoreException If there is a problem getting the data source.
+	 * @throws TskCoreException exception thrown if a critical error occurs
+	 *                          within TSK core
 	 */
-	public DataSource getDataSource(long objectId) throws TskDataException, TskCoreException {
-		DataSource dataSource = null;
+	public int getBlackboardAttributeTypesCount() throws TskCoreException {
 		CaseDbConnection connection = connections.getConnection();
 		acquireSingleUserCaseReadLock();
-		Statement statement = null;
-		ResultSet resultSet = null;
+		Statement s = null;
+		ResultSet rs = null;
 		try {
-			statement = connection.createStatement();
-			resultSet = connection.executeQuery(statement,
-					"SELECT ds.device_id, ds.time_zone, img.type, img.ssize, img.size, img.md5, img.display_name "
-					+ "FROM data_source_info AS ds "
-					+ "LEFT JOIN tsk_image_info AS img "
-					+ "ON ds.obj_id = img.obj_id "
-					+ "WHERE ds.obj_id = " + objectId); //NON-NLS
-			if (resultSet.next()) {
-				String deviceId = resultSet.getString("device_id");
-				String timezone = resultSet.getString("time_zone");
-				String type = resultSet.getString("type");
-
-				if (type == null) {
-					/*
-					 * No data found in 'tsk_image_info', so we build an
-					 * LocalFilesDataSource.
-					 */
-					TSK_FS_NAME_TYPE_ENUM dirType = TSK_FS_NAME_TYPE_ENUM.DIR;
-					TSK_FS_META_TYPE_ENUM metaType = TSK_FS_META_TYPE_ENUM.TSK_FS_META_TYPE_DIR;
-					TSK_FS_NAME_FLAG_ENUM dirFlag = TSK_FS_NAME_FLAG_ENUM.ALLOC;
-					final short metaFlags = (short) (TSK_FS_META_FLAG_ENUM.ALLOC.getValue()
-							| TSK_FS_META_FLAG_ENUM.USED.getValue());
-					String parentPath = "/"; //NON-NLS
-					dataSource = new LocalFilesDataSource(this, objectId, objectId, deviceId, deviceId, dirType, metaType, dirFlag, metaFlags, timezone, null, FileKnown.UNKNOWN, parentPath);
-				} else {
-					/*
-					 * Data found in 'tsk_image_info', so we build an Image.
-					 */
-					Long ssize = resultSet.getLong("ssize");
-					Long size = resultSet.getLong("size");
-					String md5 = resultSet.getString("md5");
-					String name = resultSet.getString("display_name");
-
-					List<String> imagePaths = getImagePathsById(objectId);
-					if (name == null) {
-						if (imagePaths.size() > 0) {
-							String path = imagePaths.get(0);
-							name = (new java.io.File(path)).getName();
-						} else {
-							name = "";
-						}
-					}
-
-					dataSource = new Image(this, objectId, Long.valueOf(type), deviceId, ssize, name, imagePaths.toArray(new String[imagePaths.size()]), timezone, md5, size);
-				}
-			} else {
-				throw new TskDataException(String.format("There is no data source with obj_id = %d", objectId));
+			s = connection.createStatement();
+			rs = connection.executeQuery(s, "SELECT COUNT(*) AS count FROM blackboard_attribute_types"); //NON-NLS
+			int count = 0;
+			if (rs.next()) {
+				count = rs.getInt("count");
 			}
+			return count;
 		} catch (SQLException ex) {
-			throw new TskCoreException(String.format("Error getting data source with obj_id = %d", objectId), ex);
+			throw new TskCoreException("Error getting number of blackboard artifacts by type", ex);
 		} finally {
-			closeResultSet(resultSet);
-			closeStatement(statement);
+			closeResultSet(rs);
+			closeStatement(s);
 			connection.close();
 			releaseSingleUserCaseReadLock();
 		}
-
-		return dataSource;
-	}
-
-	/**
-	 * Get all blackboard artifacts of a given type. Does not included rejected
-	 * artifacts.
-	 *
-	 * @param artifactTypeID artifact type id (must exist in database)
-	 *
-	 * @return list of blackboard artifacts.
-	 *
-	 * @throws TskCoreException
-	 */
-	public ArrayList<BlackboardArtifact> getBlackboardArtifacts(int artifactTypeID) throws TskCoreException {
-		return getArtifactsHelper("blackboard_artifacts.artifact_type_id = " + artifactTypeID);
 	}
 
 	/**
-	 * Get a count of blackboard artifacts for a given content. Does not include
-	 * rejected artifacts.
+	 * Gets unrejected blackboard artifacts that match a given WHERE clause.
+	 * Uses a SELECT	* statement that does a join of the blackboard_artifacts
+	 * and blackboard_artifact_types tables to get all of the required data.
 	 *
-	 * @param objId Id of the content.
+	 * @param whereClause The WHERE clause to append to the SELECT statement.
 	 *
-	 * @return The artifacts count for the content.
+	 * @return A list of BlackboardArtifact objects.
 	 *
-	 * @throws TskCoreException
+	 * @throws TskCoreException If there is a problem querying the case
+	 *                          database.
 	 */
-	public long getBlackboardArtifactsCount(long objId) throws TskCoreException {
+	private ArrayList<BlackboardArtifact> getArtifactsHelper(String whereClause) throws TskCoreException {
 		CaseDbConnection connection = connections.getConnection();
 		acquireSingleUserCaseReadLock();
 		ResultSet rs = null;
 		try {
-			// SELECT COUNT(*) AS count FROM blackboard_artifacts WHERE obj_id = ?
-			PreparedStatement statement = connection.getPreparedStatement(PREPARED_STATEMENT.COUNT_ARTIFACTS_FROM_SOURCE);
-			statement.clearParameters();
-			statement.setLong(1, objId);
-			rs = connection.executeQuery(statement);
-			long count = 0;
-			if (rs.next()) {
-				count = rs.getLong("count");
+			Statement statement = connection.createStatement();
+			String query = "SELECT blackboard_artifacts.artifact_id AS artifact_id, "
+					+ "blackboard_artifacts.obj_id AS obj_id, "
+					+ "blackboard_artifacts.artifact_obj_id AS artifact_obj_id, "
+					+ "blackboard_artifacts.data_source_obj_id AS data_source_obj_id, "
+					+ "blackboard_artifact_types.artifact_type_id AS artifact_type_id, "
+					+ "blackboard_artifact_types.type_name AS type_name, "
+					+ "blackboard_artifact_types.display_name AS display_name, "
+					+ "blackboard_artifacts.review_status_id AS review_status_id "
+					+ "FROM blackboard_artifacts, blackboard_artifact_types "
+					+ "WHERE blackboard_artifacts.artifact_type_id = blackboard_artifact_types.artifact_type_id "
+					+ " AND blackboard_artifacts.review_status_id !=" + BlackboardArtifact.ReviewStatus.REJECTED.getID()
+					+ " AND " + whereClause;
+			rs = connection.executeQuery(statement, query);
+			ArrayList<BlackboardArtifact> artifacts = new ArrayList<BlackboardArtifact>();
+			while (rs.next()) {
+				artifacts.add(new BlackboardArtifact(this, rs.getLong("artifact_id"), rs.getLong("obj_id"), rs.getLong("artifact_obj_id"), rs.getLong("data_source_obj_id"),
+						rs.getInt("artifact_type_id"), rs.getString("type_name"), rs.getString("display_name"),
+						BlackboardArtifact.ReviewStatus.withID(rs.getInt("review_status_id"))));
 			}
-			return count;
+			return artifacts;
 		} catch (SQLException ex) {
-			throw new TskCoreException("Error getting number of blackboard artifacts by content", ex);
+			throw new TskCoreException("Error getting or creating a blackboard artifact", ex);
 		} finally {
 			closeResultSet(rs);
 			connection.close();
@@ -2008,24 +3523,27 @@ public long getBlackboardArtifactsCount(long objId) throws TskCoreException {
 	}
 
 	/**
-	 * Get a count of artifacts of a given type. Does not include rejected
-	 * artifacts.
+	 * Helper method to get count of all artifacts matching the type id and
+	 * object id. Does not included rejected artifacts.
 	 *
-	 * @param artifactTypeID Id of the artifact type.
+	 * @param artifactTypeID artifact type id
+	 * @param obj_id         associated object id
 	 *
-	 * @return The artifacts count for the type.
+	 * @return count of matching blackboard artifacts
 	 *
-	 * @throws TskCoreException
+	 * @throws TskCoreException exception thrown if a critical error occurs
+	 *                          within TSK core
 	 */
-	public long getBlackboardArtifactsTypeCount(int artifactTypeID) throws TskCoreException {
+	private long getArtifactsCountHelper(int artifactTypeID, long obj_id) throws TskCoreException {
 		CaseDbConnection connection = connections.getConnection();
 		acquireSingleUserCaseReadLock();
 		ResultSet rs = null;
 		try {
-			// SELECT COUNT(*) AS count FROM blackboard_artifacts WHERE artifact_type_id = ?
-			PreparedStatement statement = connection.getPreparedStatement(PREPARED_STATEMENT.COUNT_ARTIFACTS_OF_TYPE);
+			// SELECT COUNT(*) AS count FROM blackboard_artifacts WHERE obj_id = ? AND artifact_type_id = ?
+			PreparedStatement statement = connection.getPreparedStatement(PREPARED_STATEMENT.COUNT_ARTIFACTS_BY_SOURCE_AND_TYPE);
 			statement.clearParameters();
-			statement.setInt(1, artifactTypeID);
+			statement.setLong(1, obj_id);
+			statement.setInt(2, artifactTypeID);
 			rs = connection.executeQuery(statement);
 			long count = 0;
 			if (rs.next()) {
@@ -2033,7 +3551,7 @@ public long getBlackboardArtifactsTypeCount(int artifactTypeID) throws TskCoreEx
 			}
 			return count;
 		} catch (SQLException ex) {
-			throw new TskCoreException("Error getting number of blackboard artifacts by type", ex);
+			throw new TskCoreException("Error getting blackboard artifact count", ex);
 		} finally {
 			closeResultSet(rs);
 			connection.close();
@@ -2042,171 +3560,149 @@ public long getBlackboardArtifactsTypeCount(int artifactTypeID) throws TskCoreEx
 	}
 
 	/**
-	 * Get all blackboard artifacts that have an attribute of the given type and
-	 * String value. Does not included rejected artifacts.
+	 * Get all blackboard artifacts of a given type for the given object id.
+	 * Does	not included rejected artifacts.
+	 *
+	 * @param artifactTypeName artifact type name
+	 * @param obj_id           object id
+	 *
+	 * @return list of blackboard artifacts
+	 *
+	 * @throws TskCoreException exception thrown if a critical error occurs
+	 *                          within TSK core
+	 */
+	public ArrayList<BlackboardArtifact> getBlackboardArtifacts(String artifactTypeName, long obj_id) throws TskCoreException {
+		return getArtifactsHelper("blackboard_artifacts.obj_id = " + obj_id + " AND blackboard_artifact_types.type_name = '" + artifactTypeName + "';");
+	}
+
+	/**
+	 * Get all blackboard artifacts of a given type for the given object id.
+	 * Does not included rejected artifacts.
+	 *
+	 * @param artifactTypeID artifact type id (must exist in database)
+	 * @param obj_id         object id
+	 *
+	 * @return list of blackboard artifacts
+	 *
+	 * @throws TskCoreException exception thrown if a critical error occurs
+	 *                          within TSK core
+	 */
+	public ArrayList<BlackboardArtifact> getBlackboardArtifacts(int artifactTypeID, long obj_id) throws TskCoreException {
+		return getArtifactsHelper("blackboard_artifacts.obj_id = " + obj_id + " AND blackboard_artifact_types.artifact_type_id = " + artifactTypeID + ";");
+	}
+
+	/**
+	 * Get all blackboard artifacts of a given type for the given object id.
+	 * Does not included rejected artifacts.
+	 *
+	 * @param artifactType artifact type enum
+	 * @param obj_id       object id
+	 *
+	 * @return list of blackboard artifacts
+	 *
+	 * @throws TskCoreException exception thrown if a critical error occurs
+	 *                          within TSK core
+	 */
+	public ArrayList<BlackboardArtifact> getBlackboardArtifacts(ARTIFACT_TYPE artifactType, long obj_id) throws TskCoreException {
+		return getBlackboardArtifacts(artifactType.getTypeID(), obj_id);
+	}
+
+	/**
+	 * Get count of all blackboard artifacts of a given type for the given
+	 * object id. Does not include rejected artifacts.
+	 *
+	 * @param artifactTypeName artifact type name
+	 * @param obj_id           object id
+	 *
+	 * @return count of blackboard artifacts
+	 *
+	 * @throws TskCoreException exception thrown if a critical error occurs
+	 *                          within TSK core
+	 */
+	public long getBlackboardArtifactsCount(String artifactTypeName, long obj_id) throws TskCoreException {
+		int artifactTypeID = this.getArtifactType(artifactTypeName).getTypeID();
+		if (artifactTypeID == -1) {
+			return 0;
+		}
+		return getArtifactsCountHelper(artifactTypeID, obj_id);
+	}
+
+	/**
+	 * Get count of all blackboard artifacts of a given type for the given
+	 * object id. Does not include rejected artifacts.
+	 *
+	 * @param artifactTypeID artifact type id (must exist in database)
+	 * @param obj_id         object id
+	 *
+	 * @return count of blackboard artifacts
+	 *
+	 * @throws TskCoreException exception thrown if a critical error occurs
+	 *                          within TSK core
+	 */
+	public long getBlackboardArtifactsCount(int artifactTypeID, long obj_id) throws TskCoreException {
+		return getArtifactsCountHelper(artifactTypeID, obj_id);
+	}
+
+	/**
+	 * Get count of all blackboard artifacts of a given type for the given
+	 * object id. Does not include rejected artifacts.
 	 *
-	 * @param attrType attribute of this attribute type to look for in the
-	 *                 artifacts
-	 * @param value    value of the attribute of the attrType type to look for
+	 * @param artifactType artifact type enum
+	 * @param obj_id       object id
 	 *
-	 * @return a list of blackboard artifacts with such an attribute
+	 * @return count of blackboard artifacts
 	 *
-	 * @throws TskCoreException exception thrown if a critical error occurred
-	 *                          within tsk core and artifacts could not be
-	 *                          queried
+	 * @throws TskCoreException exception thrown if a critical error occurs
+	 *                          within TSK core
 	 */
-	public List<BlackboardArtifact> getBlackboardArtifacts(BlackboardAttribute.ATTRIBUTE_TYPE attrType, String value) throws TskCoreException {
-		CaseDbConnection connection = connections.getConnection();
-		acquireSingleUserCaseReadLock();
-		Statement s = null;
-		ResultSet rs = null;
-		try {
-			s = connection.createStatement();
-			rs = connection.executeQuery(s, "SELECT DISTINCT arts.artifact_id AS artifact_id, " //NON-NLS
-					+ "arts.obj_id AS obj_id, arts.artifact_obj_id AS artifact_obj_id, arts.data_source_obj_id AS data_source_obj_id, arts.artifact_type_id AS artifact_type_id, "
-					+ "types.type_name AS type_name, types.display_name AS display_name, "//NON-NLS
-					+ " arts.review_status_id AS review_status_id " //NON-NLS
-					+ "FROM blackboard_artifacts AS arts, blackboard_attributes AS attrs, blackboard_artifact_types AS types " //NON-NLS
-					+ "WHERE arts.artifact_id = attrs.artifact_id " //NON-NLS
-					+ " AND attrs.attribute_type_id = " + attrType.getTypeID() //NON-NLS
-					+ " AND attrs.value_text = '" + value + "'"
-					+ " AND types.artifact_type_id=arts.artifact_type_id"
-					+ " AND arts.review_status_id !=" + BlackboardArtifact.ReviewStatus.REJECTED.getID());	 //NON-NLS
-			ArrayList<BlackboardArtifact> artifacts = new ArrayList<BlackboardArtifact>();
-			while (rs.next()) {
-				artifacts.add(new BlackboardArtifact(this, rs.getLong("artifact_id"), rs.getLong("obj_id"), rs.getLong("artifact_obj_id"), rs.getLong("data_source_obj_id"),
-						rs.getInt("artifact_type_id"), rs.getString("type_name"), rs.getString("display_name"),
-						BlackboardArtifact.ReviewStatus.withID(rs.getInt("review_status_id"))));
-			}
-			return artifacts;
-		} catch (SQLException ex) {
-			throw new TskCoreException("Error getting blackboard artifacts by attribute", ex);
-		} finally {
-			closeResultSet(rs);
-			closeStatement(s);
-			connection.close();
-			releaseSingleUserCaseReadLock();
-		}
+	public long getBlackboardArtifactsCount(ARTIFACT_TYPE artifactType, long obj_id) throws TskCoreException {
+		return getArtifactsCountHelper(artifactType.getTypeID(), obj_id);
 	}
 
 	/**
-	 * Get all blackboard artifacts that have an attribute of the given type and
-	 * String value. Does not included rejected artifacts.
+	 * Get all blackboard artifacts of a given type. Does not included rejected
+	 * artifacts.
 	 *
-	 * @param attrType   attribute of this attribute type to look for in the
-	 *                   artifacts
-	 * @param subString  value substring of the string attribute of the attrType
-	 *                   type to look for
-	 * @param startsWith if true, the artifact attribute string should start
-	 *                   with the substring, if false, it should just contain it
+	 * @param artifactTypeName artifact type name
 	 *
-	 * @return a list of blackboard artifacts with such an attribute
+	 * @return list of blackboard artifacts
 	 *
-	 * @throws TskCoreException exception thrown if a critical error occurred
-	 *                          within tsk core and artifacts could not be
-	 *                          queried
+	 * @throws TskCoreException exception thrown if a critical error occurs
+	 *                          within TSK core
 	 */
-	public List<BlackboardArtifact> getBlackboardArtifacts(BlackboardAttribute.ATTRIBUTE_TYPE attrType, String subString, boolean startsWith) throws TskCoreException {
-		String valSubStr = "%" + subString; //NON-NLS
-		if (startsWith == false) {
-			valSubStr += "%"; //NON-NLS
-		}
-		CaseDbConnection connection = connections.getConnection();
-		acquireSingleUserCaseReadLock();
-		Statement s = null;
-		ResultSet rs = null;
-		try {
-			s = connection.createStatement();
-			rs = connection.executeQuery(s, "SELECT DISTINCT arts.artifact_id AS artifact_id, " //NON-NLS
-					+ " arts.obj_id AS obj_id, arts.artifact_obj_id AS artifact_obj_id, arts.data_source_obj_id AS data_source_obj_id, arts.artifact_type_id AS artifact_type_id, " //NON-NLS
-					+ " types.type_name AS type_name, types.display_name AS display_name, " //NON-NLS
-					+ " arts.review_status_id AS review_status_id " //NON-NLS
-					+ " FROM blackboard_artifacts AS arts, blackboard_attributes AS attrs, blackboard_artifact_types AS types " //NON-NLS
-					+ " WHERE arts.artifact_id = attrs.artifact_id " //NON-NLS
-					+ " AND attrs.attribute_type_id = " + attrType.getTypeID() //NON-NLS
-					+ " AND LOWER(attrs.value_text) LIKE LOWER('" + valSubStr + "')"
-					+ " AND types.artifact_type_id=arts.artifact_type_id "
-					+ " AND arts.review_status_id !=" + BlackboardArtifact.ReviewStatus.REJECTED.getID());
-			ArrayList<BlackboardArtifact> artifacts = new ArrayList<BlackboardArtifact>();
-			while (rs.next()) {
-				artifacts.add(new BlackboardArtifact(this, rs.getLong("artifact_id"), rs.getLong("obj_id"), rs.getLong("artifact_obj_id"), rs.getLong("data_source_obj_id"),
-						rs.getInt("artifact_type_id"), rs.getString("type_name"), rs.getString("display_name"),
-						BlackboardArtifact.ReviewStatus.withID(rs.getInt("review_status_id"))));
-			}
-			return artifacts;
-		} catch (SQLException ex) {
-			throw new TskCoreException("Error getting blackboard artifacts by attribute. " + ex.getMessage(), ex);
-		} finally {
-			closeResultSet(rs);
-			closeStatement(s);
-			connection.close();
-			releaseSingleUserCaseReadLock();
-		}
+	public ArrayList<BlackboardArtifact> getBlackboardArtifacts(String artifactTypeName) throws TskCoreException {
+		return getArtifactsHelper("blackboard_artifact_types.type_name = '" + artifactTypeName + "';");
 	}
 
 	/**
-	 * Get all blackboard artifacts that have an attribute of the given type and
-	 * integer value. Does not included rejected artifacts.
+	 * Get all blackboard artifacts of a given type. Does not included rejected
+	 * artifacts.
 	 *
-	 * @param attrType attribute of this attribute type to look for in the
-	 *                 artifacts
-	 * @param value    value of the attribute of the attrType type to look for
+	 * @param artifactType artifact type enum
 	 *
-	 * @return a list of blackboard artifacts with such an attribute
+	 * @return list of blackboard artifacts
 	 *
-	 * @throws TskCoreException exception thrown if a critical error occurred
-	 *                          within tsk core and artifacts could not be
-	 *                          queried
+	 * @throws TskCoreException exception thrown if a critical error occurs
+	 *                          within TSK core
 	 */
-	public List<BlackboardArtifact> getBlackboardArtifacts(BlackboardAttribute.ATTRIBUTE_TYPE attrType, int value) throws TskCoreException {
-		CaseDbConnection connection = connections.getConnection();
-		acquireSingleUserCaseReadLock();
-		Statement s = null;
-		ResultSet rs = null;
-		try {
-			s = connection.createStatement();
-			rs = connection.executeQuery(s, "SELECT DISTINCT arts.artifact_id AS artifact_id, " //NON-NLS
-					+ " arts.obj_id AS obj_id, arts.artifact_obj_id AS artifact_obj_id, arts.data_source_obj_id AS data_source_obj_id, arts.artifact_type_id AS artifact_type_id, "
-					+ " types.type_name AS type_name, types.display_name AS display_name, "
-					+ " arts.review_status_id AS review_status_id  "//NON-NLS
-					+ " FROM blackboard_artifacts AS arts, blackboard_attributes AS attrs, blackboard_artifact_types AS types " //NON-NLS
-					+ "WHERE arts.artifact_id = attrs.artifact_id " //NON-NLS
-					+ " AND attrs.attribute_type_id = " + attrType.getTypeID() //NON-NLS
-					+ " AND attrs.value_int32 = " + value //NON-NLS
-					+ " AND types.artifact_type_id=arts.artifact_type_id "
-					+ " AND arts.review_status_id !=" + BlackboardArtifact.ReviewStatus.REJECTED.getID());
-			ArrayList<BlackboardArtifact> artifacts = new ArrayList<BlackboardArtifact>();
-			while (rs.next()) {
-				artifacts.add(new BlackboardArtifact(this, rs.getLong("artifact_id"), rs.getLong("obj_id"), rs.getLong("artifact_obj_id"), rs.getLong("data_source_obj_id"),
-						rs.getInt("artifact_type_id"), rs.getString("type_name"), rs.getString("display_name"),
-						BlackboardArtifact.ReviewStatus.withID(rs.getInt("review_status_id"))));
-			}
-			return artifacts;
-		} catch (SQLException ex) {
-			throw new TskCoreException("Error getting blackboard artifacts by attribute", ex);
-		} finally {
-			closeResultSet(rs);
-			closeStatement(s);
-			connection.close();
-			releaseSingleUserCaseReadLock();
-		}
+	public ArrayList<BlackboardArtifact> getBlackboardArtifacts(ARTIFACT_TYPE artifactType) throws TskCoreException {
+		return getArtifactsHelper("blackboard_artifact_types.artifact_type_id = " + artifactType.getTypeID() + ";");
 	}
 
 	/**
-	 * Get all blackboard artifacts that have an attribute of the given type and
-	 * long value. Does not included rejected artifacts.
+	 * Get all blackboard artifacts of a given type with an attribute of a given
+	 * type and String value. Does not included rejected artifacts.
 	 *
-	 * @param attrType attribute of this attribute type to look for in the
-	 *                 artifacts
-	 * @param value    value of the attribute of the attrType type to look for
+	 * @param artifactType artifact type enum
+	 * @param attrType     attribute type enum
+	 * @param value        String value of attribute
 	 *
-	 * @return a list of blackboard artifacts with such an attribute
+	 * @return list of blackboard artifacts
 	 *
-	 * @throws TskCoreException exception thrown if a critical error occurred
-	 *                          within tsk core and artifacts could not be
-	 *                          queried
+	 * @throws TskCoreException exception thrown if a critical error occurs
+	 *                          within TSK core
 	 */
-	public List<BlackboardArtifact> getBlackboardArtifacts(BlackboardAttribute.ATTRIBUTE_TYPE attrType, long value) throws TskCoreException {
+	public List<BlackboardArtifact> getBlackboardArtifacts(ARTIFACT_TYPE artifactType, BlackboardAttribute.ATTRIBUTE_TYPE attrType, String value) throws TskCoreException {
 		CaseDbConnection connection = connections.getConnection();
 		acquireSingleUserCaseReadLock();
 		Statement s = null;
@@ -2214,14 +3710,15 @@ public List<BlackboardArtifact> getBlackboardArtifacts(BlackboardAttribute.ATTRI
 		try {
 			s = connection.createStatement();
 			rs = connection.executeQuery(s, "SELECT DISTINCT arts.artifact_id AS artifact_id, " //NON-NLS
-					+ " arts.obj_id AS obj_id, arts.artifact_obj_id AS artifact_obj_id, arts.data_source_obj_id AS data_source_obj_id, arts.artifact_type_id AS artifact_type_id, "
-					+ " types.type_name AS type_name, types.display_name AS display_name, "
-					+ " arts.review_status_id AS review_status_id "//NON-NLS
-					+ " FROM blackboard_artifacts AS arts, blackboard_attributes AS attrs, blackboard_artifact_types AS types " //NON-NLS
-					+ " WHERE arts.artifact_id = attrs.artifact_id " //NON-NLS
-					+ " AND attrs.attribute_type_id = " + attrType.getTypeID() //NON-NLS
-					+ " AND attrs.value_int64 = " + value //NON-NLS
-					+ " AND types.artifact_type_id=arts.artifact_type_id "
+					+ "arts.obj_id AS obj_id, arts.artifact_obj_id as artifact_obj_id, arts.data_source_obj_id AS data_source_obj_id, arts.artifact_type_id AS artifact_type_id, "
+					+ "types.type_name AS type_name, types.display_name AS display_name,"
+					+ "arts.review_status_id AS review_status_id "//NON-NLS
+					+ "FROM blackboard_artifacts AS arts, blackboard_attributes AS attrs, blackboard_artifact_types AS types " //NON-NLS
+					+ "WHERE arts.artifact_id = attrs.artifact_id " //NON-NLS
+					+ "AND attrs.attribute_type_id = " + attrType.getTypeID() //NON-NLS
+					+ " AND arts.artifact_type_id = " + artifactType.getTypeID() //NON-NLS
+					+ " AND attrs.value_text = '" + value + "'" //NON-NLS
+					+ " AND types.artifact_type_id=arts.artifact_type_id"
 					+ " AND arts.review_status_id !=" + BlackboardArtifact.ReviewStatus.REJECTED.getID());
 			ArrayList<BlackboardArtifact> artifacts = new ArrayList<BlackboardArtifact>();
 			while (rs.next()) {
@@ -2231,7 +3728,7 @@ public List<BlackboardArtifact> getBlackboardArtifacts(BlackboardAttribute.ATTRI
 			}
 			return artifacts;
 		} catch (SQLException ex) {
-			throw new TskCoreException("Error getting blackboard artifacts by attribute. " + ex.getMessage(), ex);
+			throw new TskCoreException("Error getting blackboard artifacts by artifact type and attribute. " + ex.getMessage(), ex);
 		} finally {
 			closeResultSet(rs);
 			closeStatement(s);
@@ -2241,1104 +3738,1180 @@ public List<BlackboardArtifact> getBlackboardArtifacts(BlackboardAttribute.ATTRI
 	}
 
 	/**
-	 * Get all blackboard artifacts that have an attribute of the given type and
-	 * double value. Does not included rejected artifacts.
+	 * Get the blackboard artifact with the given artifact id
 	 *
-	 * @param attrType attribute of this attribute type to look for in the
-	 *                 artifacts
-	 * @param value    value of the attribute of the attrType type to look for
+	 * @param artifactID artifact ID
 	 *
-	 * @return a list of blackboard artifacts with such an attribute
+	 * @return blackboard artifact
 	 *
-	 * @throws TskCoreException exception thrown if a critical error occurred
-	 *                          within tsk core and artifacts could not be
-	 *                          queried
+	 * @throws TskCoreException exception thrown if a critical error occurs
+	 *                          within TSK core
 	 */
-	public List<BlackboardArtifact> getBlackboardArtifacts(BlackboardAttribute.ATTRIBUTE_TYPE attrType, double value) throws TskCoreException {
+	public BlackboardArtifact getBlackboardArtifact(long artifactID) throws TskCoreException {
 		CaseDbConnection connection = connections.getConnection();
 		acquireSingleUserCaseReadLock();
-		Statement s = null;
 		ResultSet rs = null;
+		Statement s;
 		try {
 			s = connection.createStatement();
-			rs = connection.executeQuery(s, "SELECT DISTINCT arts.artifact_id AS artifact_id, " //NON-NLS
-					+ " arts.obj_id AS obj_id, arts.artifact_obj_id AS artifact_obj_id, arts.data_source_obj_id AS data_source_obj_id, arts.artifact_type_id AS artifact_type_id, "
-					+ " types.type_name AS type_name, types.display_name AS display_name, "
-					+ " arts.review_status_id AS review_status_id "//NON-NLS
-					+ " FROM blackboard_artifacts AS arts, blackboard_attributes AS attrs, blackboard_artifact_types AS types " //NON-NLS
-					+ " WHERE arts.artifact_id = attrs.artifact_id " //NON-NLS
-					+ " AND attrs.attribute_type_id = " + attrType.getTypeID() //NON-NLS
-					+ " AND attrs.value_double = " + value //NON-NLS
-					+ " AND types.artifact_type_id=arts.artifact_type_id "
-					+ " AND arts.review_status_id !=" + BlackboardArtifact.ReviewStatus.REJECTED.getID());
-			ArrayList<BlackboardArtifact> artifacts = new ArrayList<BlackboardArtifact>();
-			while (rs.next()) {
-				artifacts.add(new BlackboardArtifact(this, rs.getLong("artifact_id"), rs.getLong("obj_id"), rs.getLong("artifact_obj_id"), rs.getLong("data_source_obj_id"),
+			rs = connection.executeQuery(s, "SELECT arts.artifact_id AS artifact_id, "
+					+ "arts.obj_id AS obj_id, arts.artifact_obj_id as artifact_obj_id, arts.data_source_obj_id AS data_source_obj_id, arts.artifact_type_id AS artifact_type_id, "
+					+ "types.type_name AS type_name, types.display_name AS display_name,"
+					+ "arts.review_status_id AS review_status_id "//NON-NLS
+					+ "FROM blackboard_artifacts AS arts, blackboard_artifact_types AS types "
+					+ "WHERE arts.artifact_id = " + artifactID
+					+ " AND arts.artifact_type_id = types.artifact_type_id");
+			if (rs.next()) {
+				return new BlackboardArtifact(this, rs.getLong("artifact_id"), rs.getLong("obj_id"), rs.getLong("artifact_obj_id"), rs.getLong("data_source_obj_id"),
 						rs.getInt("artifact_type_id"), rs.getString("type_name"), rs.getString("display_name"),
-						BlackboardArtifact.ReviewStatus.withID(rs.getInt("review_status_id"))));
+						BlackboardArtifact.ReviewStatus.withID(rs.getInt("review_status_id")));
+			} else {
+				/*
+				 * I think this should actually return null (or Optional) when
+				 * there is no artifact with the given id, but it looks like
+				 * existing code is not expecting that. -jm
+				 */
+				throw new TskCoreException("No blackboard artifact with id " + artifactID);
 			}
-			return artifacts;
 		} catch (SQLException ex) {
-			throw new TskCoreException("Error getting blackboard artifacts by attribute", ex);
+			throw new TskCoreException("Error getting a blackboard artifact. " + ex.getMessage(), ex);
 		} finally {
 			closeResultSet(rs);
-			closeStatement(s);
 			connection.close();
 			releaseSingleUserCaseReadLock();
 		}
 	}
 
 	/**
-	 * Get all blackboard artifacts that have an attribute of the given type and
-	 * byte value. Does not include rejected artifacts.
+	 * Add a blackboard attribute.
 	 *
-	 * @param attrType attribute of this attribute type to look for in the
-	 *                 artifacts
-	 * @param value    value of the attribute of the attrType type to look for
+	 * @param attr           A blackboard attribute.
+	 * @param artifactTypeId The type of artifact associated with the attribute.
 	 *
-	 * @return a list of blackboard artifacts with such an attribute
+	 * @throws TskCoreException thrown if a critical error occurs.
+	 */
+	public void addBlackboardAttribute(BlackboardAttribute attr, int artifactTypeId) throws TskCoreException {
+		addBlackboardAttribute(attr, artifactTypeId, getDateTimeAttributeArtifacts(Collections.singletonList(attr)));
+	}
+
+	/**
+	 * Adds a blackboard attribute to an artifact.
 	 *
-	 * @throws TskCoreException exception thrown if a critical error occurred
-	 *                          within tsk core and artifacts could not be
-	 *                          queried
+	 * @param attr     A blackboard attribute.
+	 * @param artifact The artifact of the attribute.
+	 *
+	 * @throws TskCoreException thrown if a critical error occurs.
 	 */
-	public List<BlackboardArtifact> getBlackboardArtifacts(BlackboardAttribute.ATTRIBUTE_TYPE attrType, byte value) throws TskCoreException {
+	void addBlackboardAttribute(BlackboardAttribute attr, BlackboardArtifact artifact) throws TskCoreException {
+		addBlackboardAttribute(attr, artifact.getArtifactTypeID(), Collections.singletonMap(artifact.getArtifactID(), artifact));
+	}
+
+	private void addBlackboardAttribute(BlackboardAttribute attr, int artifactTypeId, Map<Long, BlackboardArtifact> artifacts) throws TskCoreException {
 		CaseDbConnection connection = connections.getConnection();
-		acquireSingleUserCaseReadLock();
-		Statement s = null;
-		ResultSet rs = null;
+		acquireSingleUserCaseWriteLock();
 		try {
-			s = connection.createStatement();
-			rs = connection.executeQuery(s, "SELECT DISTINCT arts.artifact_id AS artifact_id, " //NON-NLS
-					+ " arts.obj_id AS obj_id, arts.artifact_obj_id AS artifact_obj_id, arts.data_source_obj_id AS data_source_obj_id, arts.artifact_type_id AS artifact_type_id, "
-					+ " types.type_name AS type_name, types.display_name AS display_name, "
-					+ " arts.review_status_id AS review_status_id "//NON-NLS
-					+ " FROM blackboard_artifacts AS arts, blackboard_attributes AS attrs, blackboard_artifact_types AS types " //NON-NLS
-					+ " WHERE arts.artifact_id = attrs.artifact_id " //NON-NLS
-					+ " AND attrs.attribute_type_id = " + attrType.getTypeID() //NON-NLS
-					+ " AND attrs.value_byte = " + value //NON-NLS
-					+ " AND types.artifact_type_id=arts.artifact_type_id "
-					+ " AND arts.review_status_id !=" + BlackboardArtifact.ReviewStatus.REJECTED.getID());
-			ArrayList<BlackboardArtifact> artifacts = new ArrayList<BlackboardArtifact>();
-			while (rs.next()) {
-				artifacts.add(new BlackboardArtifact(this, rs.getLong("artifact_id"), rs.getLong("obj_id"), rs.getLong("artifact_obj_id"), rs.getLong("data_source_obj_id"),
-						rs.getInt("artifact_type_id"), rs.getString("type_name"), rs.getString("display_name"),
-						BlackboardArtifact.ReviewStatus.withID(rs.getInt("review_status_id"))));
-			}
-			return artifacts;
+			connection.beginTransaction();
+			addBlackBoardAttribute(attr, artifactTypeId, artifacts, connection);
+			connection.commitTransaction();
 		} catch (SQLException ex) {
-			throw new TskCoreException("Error getting blackboard artifacts by attribute", ex);
+			connection.rollbackTransaction();
+			throw new TskCoreException("Error adding blackboard attribute " + attr.toString(), ex);
 		} finally {
-			closeResultSet(rs);
-			closeStatement(s);
 			connection.close();
-			releaseSingleUserCaseReadLock();
+			releaseSingleUserCaseWriteLock();
 		}
 	}
 
 	/**
-	 * Gets a list of all the artifact types for this case
+	 * Add a set blackboard attributes.
+	 *
+	 * @param attributes     A set of blackboard attribute.
+	 * @param artifactTypeId The type of artifact associated with the
+	 *                       attributes.
+	 *
+	 * @throws TskCoreException thrown if a critical error occurs.
+	 */
+	public void addBlackboardAttributes(Collection<BlackboardAttribute> attributes, int artifactTypeId) throws TskCoreException {
+		addBlackboardAttributes(attributes, artifactTypeId, getDateTimeAttributeArtifacts(attributes));
+	}
+
+	/**
+	 * Adds a set of blackboard attributes to an artifact.
 	 *
-	 * @return a list of artifact types
+	 * @param attributes A set of blackboard attributes.
+	 * @param artifact   The artifact of the attributes.
 	 *
-	 * @throws TskCoreException when there is an error getting the types
+	 * @throws TskCoreException thrown if a critical error occurs.
 	 */
-	public Iterable<BlackboardArtifact.Type> getArtifactTypes() throws TskCoreException {
+	void addBlackboardAttributes(Collection<BlackboardAttribute> attributes, BlackboardArtifact artifact) throws TskCoreException {
+		addBlackboardAttributes(attributes, artifact.getArtifactTypeID(), Collections.singletonMap(artifact.getArtifactID(), artifact));
+	}
+
+	private void addBlackboardAttributes(Collection<BlackboardAttribute> attributes, int artifactTypeId, Map<Long, BlackboardArtifact> artifacts) throws TskCoreException {
 		CaseDbConnection connection = connections.getConnection();
-		acquireSingleUserCaseReadLock();
-		Statement s = null;
-		ResultSet rs = null;
+		acquireSingleUserCaseWriteLock();
 		try {
-			s = connection.createStatement();
-			rs = connection.executeQuery(s, "SELECT artifact_type_id, type_name, display_name FROM blackboard_artifact_types"); //NON-NLS
-			ArrayList<BlackboardArtifact.Type> artifactTypes = new ArrayList<BlackboardArtifact.Type>();
-			while (rs.next()) {
-				artifactTypes.add(new BlackboardArtifact.Type(rs.getInt("artifact_type_id"),
-						rs.getString("type_name"), rs.getString("display_name")));
+			connection.beginTransaction();
+			for (final BlackboardAttribute attr : attributes) {
+				addBlackBoardAttribute(attr, artifactTypeId, artifacts, connection);
 			}
-			return artifactTypes;
+			connection.commitTransaction();
 		} catch (SQLException ex) {
-			throw new TskCoreException("Error getting artifact types", ex); //NON-NLS
+			connection.rollbackTransaction();
+			throw new TskCoreException("Error adding blackboard attributes", ex);
 		} finally {
-			closeResultSet(rs);
-			closeStatement(s);
 			connection.close();
-			releaseSingleUserCaseReadLock();
+			releaseSingleUserCaseWriteLock();
 		}
 	}
 
 	/**
-	 * Get all of the standard blackboard artifact types that are in use in the
-	 * blackboard.
+	 * Gets the artifacts of the date time attributes of a set of attributes
+	 * that are added without their artifacts, since their timeline events
+	 * are about the content of their artifacts.
 	 *
-	 * @return List of standard blackboard artifact types
+	 * @param attributes The attributes.
 	 *
-	 * @throws TskCoreException
+	 * @return The artifacts, by artifact id.
+	 *
+	 * @throws TskCoreException If there is a problem querying the case
+	 *                          database.
 	 */
-	public ArrayList<BlackboardArtifact.ARTIFACT_TYPE> getBlackboardArtifactTypesInUse() throws TskCoreException {
-		String typeIdList = "";
-		for (int i = 0; i < BlackboardArtifact.ARTIFACT_TYPE.values().length; ++i) {
-			typeIdList += BlackboardArtifact.ARTIFACT_TYPE.values()[i].getTypeID();
-			if (i < BlackboardArtifact.ARTIFACT_TYPE.values().length - 1) {
-				typeIdList += ", ";
+	private Map<Long, BlackboardArtifact> getDateTimeAttributeArtifacts(Collection<BlackboardAttribute> attributes) throws TskCoreException {
+		Map<Long, BlackboardArtifact> artifacts = new HashMap<Long, BlackboardArtifact>();
+		for (BlackboardAttribute attr : attributes) {
+			if (attr.getAttributeType().getValueType() == TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE.DATETIME
+					&& !artifacts.containsKey(attr.getArtifactID())) {
+				artifacts.put(attr.getArtifactID(), getBlackboardArtifact(attr.getArtifactID()));
 			}
 		}
-		String query = "SELECT DISTINCT artifact_type_id FROM blackboard_artifacts "
-				+ "WHERE artifact_type_id IN (" + typeIdList + ")";
-		CaseDbConnection connection = connections.getConnection();
-		acquireSingleUserCaseReadLock();
-		Statement s = null;
-		ResultSet rs = null;
-		try {
-			s = connection.createStatement();
-			rs = connection.executeQuery(s, query);
-			ArrayList<BlackboardArtifact.ARTIFACT_TYPE> usedArts = new ArrayList<BlackboardArtifact.ARTIFACT_TYPE>();
-			while (rs.next()) {
-				usedArts.add(ARTIFACT_TYPE.fromID(rs.getInt("artifact_type_id")));
-			}
-			return usedArts;
-		} catch (SQLException ex) {
-			throw new TskCoreException("Error getting artifact types in use", ex);
-		} finally {
-			closeResultSet(rs);
-			closeStatement(s);
-			connection.close();
-			releaseSingleUserCaseReadLock();
+		return artifacts;
+	}
+
+	private void addBlackBoardAttribute(BlackboardAttribute attr, int artifactTypeId, Map<Long, BlackboardArtifact> artifacts, CaseDbConnection connection) throws SQLException, TskCoreException {
+		PreparedStatement statement;
+		switch (attr.getAttributeType().getValueType()) {
+			case STRING:
+				statement = connection.getPreparedStatement(PREPARED_STATEMENT.INSERT_STRING_ATTRIBUTE);
+				statement.clearParameters();
+				statement.setString(7, attr.getValueString());
+				break;
+			case BYTE:
+				statement = connection.getPreparedStatement(PREPARED_STATEMENT.INSERT_BYTE_ATTRIBUTE);
+				statement.clearParameters();
+				statement.setBytes(7, attr.getValueBytes());
+				break;
+			case INTEGER:
+				statement = connection.getPreparedStatement(PREPARED_STATEMENT.INSERT_INT_ATTRIBUTE);
+				statement.clearParameters();
+				statement.setInt(7, attr.getValueInt());
+				break;
+			case LONG:
+				statement = connection.getPreparedStatement(PREPARED_STATEMENT.INSERT_LONG_ATTRIBUTE);
+				statement.clearParameters();
+				statement.setLong(7, attr.getValueLong());
+				break;
+			case DOUBLE:
+				statement = connection.getPreparedStatement(PREPARED_STATEMENT.INSERT_DOUBLE_ATTRIBUTE);
+				statement.clearParameters();
+				statement.setDouble(7, attr.getValueDouble());
+				break;
+			case DATETIME:
+				statement = connection.getPreparedStatement(PREPARED_STATEMENT.INSERT_LONG_ATTRIBUTE);
+				statement.clearParameters();
+				statement.setLong(7, attr.getValueLong());
+				break;
+			default:
+				throw new TskCoreException("Unrecognized artifact attribute value type");
+		}
+		statement.setLong(1, attr.getArtifactID());
+		statement.setInt(2, artifactTypeId);
+		statement.setString(3, attr.getSourcesCSV());
+		statement.setString(4, "");
+		statement.setInt(5, attr.getAttributeType().getTypeID());
+		statement.setLong(6, attr.getAttributeType().getValueType().getType());
+		connection.executeUpdate(statement);
+		if (attr.getAttributeType().getValueType() == TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE.STRING) {
+			addAttributeTrigrams(attr, connection);
+		} else if (attr.getAttributeType().getValueType() == TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE.DATETIME) {
+			timelineManager.addArtifactEvent(connection, attr, artifacts.get(attr.getArtifactID()));
 		}
 	}
 
 	/**
-	 * Gets the list of all unique artifact IDs in use.
-	 *
-	 * Gets both static and dynamic IDs.
+	 * Adds the trigrams of a new string attribute to the trigram index, if
+	 * the trigrams of its attribute type are indexed.
 	 *
-	 * @return The list of unique IDs
+	 * @param attr       The attribute.
+	 * @param connection The connection the attribute was added with.
 	 *
-	 * @throws TskCoreException exception thrown if a critical error occurred
-	 *                          within tsk core
+	 * @throws SQLException If there is a problem updating the case database.
 	 */
-	public List<BlackboardArtifact.Type> getArtifactTypesInUse() throws TskCoreException {
-		CaseDbConnection connection = connections.getConnection();
-		acquireSingleUserCaseReadLock();
-		Statement s = null;
-		ResultSet rs = null;
-		try {
-			s = connection.createStatement();
-			rs = connection.executeQuery(s,
-					"SELECT DISTINCT arts.artifact_type_id AS artifact_type_id, "
-					+ "types.type_name AS type_name, types.display_name AS display_name "
-					+ "FROM blackboard_artifact_types AS types "
-					+ "INNER JOIN blackboard_artifacts AS arts "
-					+ "ON arts.artifact_type_id = types.artifact_type_id"); //NON-NLS
-			List<BlackboardArtifact.Type> uniqueArtifactTypes = new ArrayList<BlackboardArtifact.Type>();
-			while (rs.next()) {
-				uniqueArtifactTypes.add(new BlackboardArtifact.Type(rs.getInt("artifact_type_id"),
-						rs.getString("type_name"), rs.getString("display_name")));
-			}
-			return uniqueArtifactTypes;
-		} catch (SQLException ex) {
-			throw new TskCoreException("Error getting attribute types", ex);
-		} finally {
-			closeResultSet(rs);
-			closeStatement(s);
-			connection.close();
-			releaseSingleUserCaseReadLock();
+	private void addAttributeTrigrams(BlackboardAttribute attr, CaseDbConnection connection) throws SQLException {
+		int attributeTypeId = attr.getAttributeType().getTypeID();
+		if (!isTrigramIndexed(attributeTypeId, connection)) {
+			return;
+		}
+		PreparedStatement insertStatement = getAttributeTrigramInsertStatement(connection);
+		if (addAttributeTrigramsToBatch(insertStatement, attributeTypeId, attr.getArtifactID(), attr.getValueString()) > 0) {
+			connection.executeBatch(insertStatement);
 		}
 	}
 
 	/**
-	 * Gets a list of all the attribute types for this case
+	 * Adds a source name to the source column of one or more rows in the
+	 * blackboard attributes table. The source name will be added to a CSV list
+	 * in any rows that exactly match the attribute's artifact_id and value.
 	 *
-	 * @return a list of attribute types
+	 * @param attr   The artifact attribute
+	 * @param source The source name.
 	 *
-	 * @throws TskCoreException when there is an error getting the types
+	 * @throws TskCoreException
 	 */
-	public List<BlackboardAttribute.Type> getAttributeTypes() throws TskCoreException {
+	String addSourceToArtifactAttribute(BlackboardAttribute attr, String source) throws TskCoreException {
+		/*
+		 * WARNING: This is a temporary implementation that is not safe and
+		 * denormalizes the case datbase.
+		 *
+		 * TODO (JIRA-2294): Provide a safe and normalized solution to tracking
+		 * the sources of artifact attributes.
+		 */
+		if (null == source || source.isEmpty()) {
+			throw new TskCoreException("Attempt to add null or empty source module name to artifact attribute");
+		}
 		CaseDbConnection connection = connections.getConnection();
-		acquireSingleUserCaseReadLock();
-		Statement s = null;
-		ResultSet rs = null;
+		acquireSingleUserCaseWriteLock();
+		Statement queryStmt = null;
+		Statement updateStmt = null;
+		ResultSet result = null;
+		String newSources = "";
 		try {
-			s = connection.createStatement();
-			rs = connection.executeQuery(s, "SELECT attribute_type_id, type_name, display_name, value_type FROM blackboard_attribute_types"); //NON-NLS
-			ArrayList<BlackboardAttribute.Type> attribute_types = new ArrayList<BlackboardAttribute.Type>();
-			while (rs.next()) {
-				attribute_types.add(new BlackboardAttribute.Type(rs.getInt("attribute_type_id"), rs.getString("type_name"),
-						rs.getString("display_name"), TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE.fromType(rs.getLong("value_type"))));
+			connection.beginTransaction();
+			String valueClause = "";
+			BlackboardAttribute.TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE valueType = attr.getAttributeType().getValueType();
+			if (BlackboardAttribute.TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE.BYTE != valueType) {
+				switch (valueType) {
+					case STRING:
+						valueClause = " value_text = '" + escapeSingleQuotes(attr.getValueString()) + "'";
+						break;
+					case INTEGER:
+						valueClause = " value_int32 = " + attr.getValueInt();
+						break;
+					case LONG:
+					case DATETIME:
+						valueClause = " value_int64 = " + attr.getValueLong();
+						break;
+					case DOUBLE:
+						valueClause = " value_double = " + attr.getValueDouble();
+						break;
+					default:
+						throw new TskCoreException(String.format("Unrecognized value type for attribute %s", attr.getDisplayString()));
+				}
+				String query = "SELECT source FROM blackboard_attributes WHERE"
+						+ " artifact_id = " + attr.getArtifactID()
+						+ " AND attribute_type_id = " + attr.getAttributeType().getTypeID()
+						+ " AND value_type = " + attr.getAttributeType().getValueType().getType()
+						+ " AND " + valueClause + ";";
+				queryStmt = connection.createStatement();
+				updateStmt = connection.createStatement();
+				result = connection.executeQuery(queryStmt, query);
+			} else {
+				/*
+				 * SELECT source FROM blackboard_attributes WHERE artifact_id =
+				 * ? AND attribute_type_id = ? AND value_type = 4 AND value_byte
+				 * = ?
+				 */
+				PreparedStatement statement = connection.getPreparedStatement(PREPARED_STATEMENT.SELECT_ATTR_BY_VALUE_BYTE);
+				statement.clearParameters();
+				statement.setLong(1, attr.getArtifactID());
+				statement.setLong(2, attr.getAttributeType().getTypeID());
+				statement.setBytes(3, attr.getValueBytes());
+				result = connection.executeQuery(statement);
+			}
+			while (result.next()) {
+				String oldSources = result.getString("source");
+				if (null != oldSources && !oldSources.isEmpty()) {
+					Set<String> uniqueSources = new HashSet<String>(Arrays.asList(oldSources.split(",")));
+					if (!uniqueSources.contains(source)) {
+						newSources = oldSources + "," + source;
+					} else {
+						newSources = oldSources;
+					}
+				} else {
+					newSources = source;
+				}
+				if (BlackboardAttribute.TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE.BYTE != valueType) {
+					String update = "UPDATE blackboard_attributes SET source = '" + newSources + "' WHERE"
+							+ " artifact_id = " + attr.getArtifactID()
+							+ " AND attribute_type_id = " + attr.getAttributeType().getTypeID()
+							+ " AND value_type = " + attr.getAttributeType().getValueType().getType()
+							+ " AND " + valueClause + ";";
+					connection.executeUpdate(updateStmt, update);
+				} else {
+					/*
+					 * UPDATE blackboard_attributes SET source = ? WHERE
+					 * artifact_id = ? AND attribute_type_id = ? AND value_type
+					 * = 4 AND value_byte = ?
+					 */
+					PreparedStatement statement = connection.getPreparedStatement(PREPARED_STATEMENT.UPDATE_ATTR_BY_VALUE_BYTE);
+					statement.clearParameters();
+					statement.setString(1, newSources);
+					statement.setLong(2, attr.getArtifactID());
+					statement.setLong(3, attr.getAttributeType().getTypeID());
+					statement.setBytes(4, attr.getValueBytes());
+					connection.executeUpdate(statement);
+				}
 			}
-			return attribute_types;
+			connection.commitTransaction();
+			return newSources;
 		} catch (SQLException ex) {
-			throw new TskCoreException("Error getting attribute types", ex);
+			connection.rollbackTransaction();
+			throw new TskCoreException(String.format("Error adding source module to attribute %s", attr.getDisplayString()), ex);
 		} finally {
-			closeResultSet(rs);
-			closeStatement(s);
+			closeResultSet(result);
+			closeStatement(updateStmt);
+			closeStatement(queryStmt);
 			connection.close();
-			releaseSingleUserCaseReadLock();
+			releaseSingleUserCaseWriteLock();
 		}
 	}
 
 	/**
-	 * Get count of blackboard attribute types
+	 * Add an attribute type with the given name
 	 *
-	 * Counts both static (in enum) and dynamic attributes types (created by
-	 * modules at runtime)
+	 * @param attrTypeString Name of the new attribute
+	 * @param valueType      The value type of this new attribute type
+	 * @param displayName    The (non-unique) display name of the attribute type
 	 *
-	 * @return count of attribute types
+	 * @return the id of the new attribute
 	 *
 	 * @throws TskCoreException exception thrown if a critical error occurs
-	 *                          within TSK core
+	 *                          within tsk core
+	 * @throws TskDataException exception thrown if attribute type was already
+	 *                          in the system
 	 */
-	public int getBlackboardAttributeTypesCount() throws TskCoreException {
+	public BlackboardAttribute.Type addArtifactAttributeType(String attrTypeString, TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE valueType, String displayName) throws TskCoreException, TskDataException {
 		CaseDbConnection connection = connections.getConnection();
-		acquireSingleUserCaseReadLock();
+		acquireSingleUserCaseWriteLock();
 		Statement s = null;
 		ResultSet rs = null;
 		try {
+			connection.beginTransaction();
 			s = connection.createStatement();
-			rs = connection.executeQuery(s, "SELECT COUNT(*) AS count FROM blackboard_attribute_types"); //NON-NLS
-			int count = 0;
-			if (rs.next()) {
-				count = rs.getInt("count");
+			rs = connection.executeQuery(s, "SELECT attribute_type_id FROM blackboard_attribute_types WHERE type_name = '" + attrTypeString + "'"); //NON-NLS
+			if (!rs.next()) {
+				rs.close();
+				rs = connection.executeQuery(s, "SELECT MAX(attribute_type_id) AS highest_id FROM blackboard_attribute_types");
+				int maxID = 0;
+				if (rs.next()) {
+					maxID = rs.getInt("highest_id");
+					if (maxID < MIN_USER_DEFINED_TYPE_ID) {
+						maxID = MIN_USER_DEFINED_TYPE_ID;
+					} else {
+						maxID++;
+					}
+				}
+				connection.executeUpdate(s, "INSERT INTO blackboard_attribute_types (attribute_type_id, type_name, display_name, value_type) VALUES ('" + maxID + "', '" + attrTypeString + "', '" + displayName + "', '" + valueType.getType() + "')"); //NON-NLS
+				BlackboardAttribute.Type type = new BlackboardAttribute.Type(maxID, attrTypeString, displayName, valueType);
+				this.typeIdToAttributeTypeMap.put(type.getTypeID(), type);
+				this.typeNameToAttributeTypeMap.put(type.getTypeName(), type);
+				connection.commitTransaction();
+				return type;
+			} else {
+				throw new TskDataException("The attribute type that was added was already within the system.");
 			}
-			return count;
+
 		} catch (SQLException ex) {
-			throw new TskCoreException("Error getting number of blackboard artifacts by type", ex);
+			connection.rollbackTransaction();
+			throw new TskCoreException("Error adding attribute type", ex);
 		} finally {
 			closeResultSet(rs);
 			closeStatement(s);
 			connection.close();
-			releaseSingleUserCaseReadLock();
+			releaseSingleUserCaseWriteLock();
 		}
 	}
 
 	/**
-	 * Gets unrejected blackboard artifacts that match a given WHERE clause.
-	 * Uses a SELECT	* statement that does a join of the blackboard_artifacts
-	 * and blackboard_artifact_types tables to get all of the required data.
+	 * Get the attribute type associated with an attribute type name.
 	 *
-	 * @param whereClause The WHERE clause to append to the SELECT statement.
+	 * @param attrTypeName An attribute type name.
 	 *
-	 * @return A list of BlackboardArtifact objects.
+	 * @return An attribute type or null if the attribute type does not exist.
+	 *
+	 * @throws TskCoreException If an error occurs accessing the case database.
 	 *
-	 * @throws TskCoreException If there is a problem querying the case
-	 *                          database.
 	 */
-	private ArrayList<BlackboardArtifact> getArtifactsHelper(String whereClause) throws TskCoreException {
+	public BlackboardAttribute.Type getAttributeType(String attrTypeName) throws TskCoreException {
+		if (this.typeNameToAttributeTypeMap.containsKey(attrTypeName)) {
+			return this.typeNameToAttributeTypeMap.get(attrTypeName);
+		}
 		CaseDbConnection connection = connections.getConnection();
 		acquireSingleUserCaseReadLock();
+		Statement s = null;
 		ResultSet rs = null;
 		try {
-			Statement statement = connection.createStatement();
-			String query = "SELECT blackboard_artifacts.artifact_id AS artifact_id, "
-					+ "blackboard_artifacts.obj_id AS obj_id, "
-					+ "blackboard_artifacts.artifact_obj_id AS artifact_obj_id, "
-					+ "blackboard_artifacts.data_source_obj_id AS data_source_obj_id, "
-					+ "blackboard_artifact_types.artifact_type_id AS artifact_type_id, "
-					+ "blackboard_artifact_types.type_name AS type_name, "
-					+ "blackboard_artifact_types.display_name AS display_name, "
-					+ "blackboard_artifacts.review_status_id AS review_status_id "
-					+ "FROM blackboard_artifacts, blackboard_artifact_types "
-					+ "WHERE blackboard_artifacts.artifact_type_id = blackboard_artifact_types.artifact_type_id "
-					+ " AND blackboard_artifacts.review_status_id !=" + BlackboardArtifact.ReviewStatus.REJECTED.getID()
-					+ " AND " + whereClause;
-			rs = connection.executeQuery(statement, query);
-			ArrayList<BlackboardArtifact> artifacts = new ArrayList<BlackboardArtifact>();
-			while (rs.next()) {
-				artifacts.add(new BlackboardArtifact(this, rs.getLong("artifact_id"), rs.getLong("obj_id"), rs.getLong("artifact_obj_id"), rs.getLong("data_source_obj_id"),
-						rs.getInt("artifact_type_id"), rs.getString("type_name"), rs.getString("display_name"),
-						BlackboardArtifact.ReviewStatus.withID(rs.getInt("review_status_id"))));
+			s = connection.createStatement();
+			rs = connection.executeQuery(s, "SELECT attribute_type_id, type_name, display_name, value_type FROM blackboard_attribute_types WHERE type_name = '" + attrTypeName + "'"); //NON-NLS
+			BlackboardAttribute.Type type = null;
+			if (rs.next()) {
+				type = new BlackboardAttribute.Type(rs.getInt("attribute_type_id"), rs.getString("type_name"),
+						rs.getString("display_name"), TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE.fromType(rs.getLong("value_type")));
+				this.typeIdToAttributeTypeMap.put(type.getTypeID(), type);
+				this.typeNameToAttributeTypeMap.put(attrTypeName, type);
 			}
-			return artifacts;
+			return type;
 		} catch (SQLException ex) {
-			throw new TskCoreException("Error getting or creating a blackboard artifact", ex);
+			throw new TskCoreException("Error getting attribute type id", ex);
 		} finally {
 			closeResultSet(rs);
+			closeStatement(s);
 			connection.close();
 			releaseSingleUserCaseReadLock();
 		}
 	}
 
 	/**
-	 * Helper method to get count of all artifacts matching the type id and
-	 * object id. Does not included rejected artifacts.
+	 * Get the attribute type associated with an attribute type ID.
 	 *
-	 * @param artifactTypeID artifact type id
-	 * @param obj_id         associated object id
+	 * @param typeID An attribute type ID.
 	 *
-	 * @return count of matching blackboard artifacts
+	 * @return An attribute type or null if the attribute type does not exist.
+	 *
+	 * @throws TskCoreException If an error occurs accessing the case database.
 	 *
-	 * @throws TskCoreException exception thrown if a critical error occurs
-	 *                          within TSK core
 	 */
-	private long getArtifactsCountHelper(int artifactTypeID, long obj_id) throws TskCoreException {
+	BlackboardAttribute.Type getAttributeType(int typeID) throws TskCoreException {
+		if (this.typeIdToAttributeTypeMap.containsKey(typeID)) {
+			return this.typeIdToAttributeTypeMap.get(typeID);
+		}
 		CaseDbConnection connection = connections.getConnection();
 		acquireSingleUserCaseReadLock();
+		Statement s = null;
 		ResultSet rs = null;
 		try {
-			// SELECT COUNT(*) AS count FROM blackboard_artifacts WHERE obj_id = ? AND artifact_type_id = ?
-			PreparedStatement statement = connection.getPreparedStatement(PREPARED_STATEMENT.COUNT_ARTIFACTS_BY_SOURCE_AND_TYPE);
-			statement.clearParameters();
-			statement.setLong(1, obj_id);
-			statement.setInt(2, artifactTypeID);
-			rs = connection.executeQuery(statement);
-			long count = 0;
+			s = connection.createStatement();
+			rs = connection.executeQuery(s, "SELECT attribute_type_id, type_name, display_name, value_type FROM blackboard_attribute_types WHERE attribute_type_id = " + typeID + ""); //NON-NLS
+			BlackboardAttribute.Type type = null;
 			if (rs.next()) {
-				count = rs.getLong("count");
-			}
-			return count;
-		} catch (SQLException ex) {
-			throw new TskCoreException("Error getting blackboard artifact count", ex);
-		} finally {
-			closeResultSet(rs);
-			connection.close();
-			releaseSingleUserCaseReadLock();
-		}
-	}
-
-	/**
-	 * Get all blackboard artifacts of a given type for the given object id.
-	 * Does	not included rejected artifacts.
-	 *
-	 * @param artifactTypeName artifact type name
-	 * @param obj_id           object id
-	 *
-	 * @return list of blackboard artifacts
-	 *
-	 * @throws TskCoreException exception thrown if a critical error occurs
-	 *                          within TSK core
-	 */
-	public ArrayList<BlackboardArtifact> getBlackboardArtifacts(String artifactTypeName, long obj_id) throws TskCoreException {
-		return getArtifactsHelper("blackboard_artifacts.obj_id = " + obj_id + " AND blackboard_artifact_types.type_name = '" + artifactTypeName + "';");
-	}
-
-	/**
-	 * Get all blackboard artifacts of a given type for the given object id.
-	 * Does not included rejected artifacts.
-	 *
-	 * @param artifactTypeID artifact type id (must exist in database)
-	 * @param obj_id         object id
-	 *
-	 * @return list of blackboard artifacts
-	 *
-	 * @throws TskCoreException exception thrown if a critical error occurs
-	 *                          within TSK core
-	 */
-	public ArrayList<BlackboardArtifact> getBlackboardArtifacts(int artifactTypeID, long obj_id) throws TskCoreException {
-		return getArtifactsHelper("blackboard_artifacts.obj_id = " + obj_id + " AND blackboard_artifact_types.artifact_type_id = " + artifactTypeID + ";");
-	}
-
-	/**
-	 * Get all blackboard artifacts of a given type for the given object id.
-	 * Does not included rejected artifacts.
-	 *
-	 * @param artifactType artifact type enum
-	 * @param obj_id       object id
-	 *
-	 * @return list of blackboard artifacts
-	 *
-	 * @throws TskCoreException exception thrown if a critical error occurs
-	 *                          within TSK core
-	 */
-	public ArrayList<BlackboardArtifact> getBlackboardArtifacts(ARTIFACT_TYPE artifactType, long obj_id) throws TskCoreException {
-		return getBlackboardArtifacts(artifactType.getTypeID(), obj_id);
-	}
-
-	/**
-	 * Get count of all blackboard artifacts of a given type for the given
-	 * object id. Does not include rejected artifacts.
-	 *
-	 * @param artifactTypeName artifact type name
-	 * @param obj_id           object id
-	 *
-	 * @return count of blackboard artifacts
-	 *
-	 * @throws TskCoreException exception thrown if a critical error occurs
-	 *                          within TSK core
-	 */
-	public long getBlackboardArtifactsCount(String artifactTypeName, long obj_id) throws TskCoreException {
-		int artifactTypeID = this.getArtifactType(artifactTypeName).getTypeID();
-		if (artifactTypeID == -1) {
-			return 0;
-		}
-		return getArtifactsCountHelper(artifactTypeID, obj_id);
-	}
-
-	/**
-	 * Get count of all blackboard artifacts of a given type for the given
-	 * object id. Does not include rejected artifacts.
-	 *
-	 * @param artifactTypeID artifact type id (must exist in database)
-	 * @param obj_id         object id
-	 *
-	 * @return count of blackboard artifacts
-	 *
-	 * @throws TskCoreException exception thrown if a critical error occurs
-	 *                          within TSK core
-	 */
-	public long getBlackboardArtifactsCount(int artifactTypeID, long obj_id) throws TskCoreException {
-		return getArtifactsCountHelper(artifactTypeID, obj_id);
-	}
-
-	/**
-	 * Get count of all blackboard artifacts of a given type for the given
-	 * object id. Does not include rejected artifacts.
-	 *
-	 * @param artifactType artifact type enum
-	 * @param obj_id       object id
-	 *
-	 * @return count of blackboard artifacts
-	 *
-	 * @throws TskCoreException exception thrown if a critical error occurs
-	 *                          within TSK core
-	 */
-	public long getBlackboardArtifactsCount(ARTIFACT_TYPE artifactType, long obj_id) throws TskCoreException {
-		return getArtifactsCountHelper(artifactType.getTypeID(), obj_id);
+				type = new BlackboardAttribute.Type(rs.getInt("attribute_type_id"), rs.getString("type_name"),
+						rs.getString("display_name"), TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE.fromType(rs.getLong("value_type")));
+				this.typeIdToAttributeTypeMap.put(typeID, type);
+				this.typeNameToAttributeTypeMap.put(type.getTypeName(), type);
+			}
+			return type;
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error getting attribute type id", ex);
+		} finally {
+			closeResultSet(rs);
+			closeStatement(s);
+			connection.close();
+			releaseSingleUserCaseReadLock();
+		}
 	}
 
 	/**
-	 * Get all blackboard artifacts of a given type. Does not included rejected
-	 * artifacts.
+	 * Get the artifact type associated with an artifact type name.
 	 *
-	 * @param artifactTypeName artifact type name
+	 * @param artTypeName An artifact type name.
 	 *
-	 * @return list of blackboard artifacts
+	 * @return An artifact type or null if the artifact type does not exist.
+	 *
+	 * @throws TskCoreException If an error occurs accessing the case database.
 	 *
-	 * @throws TskCoreException exception thrown if a critical error occurs
-	 *                          within TSK core
 	 */
-	public ArrayList<BlackboardArtifact> getBlackboardArtifacts(String artifactTypeName) throws TskCoreException {
-		return getArtifactsHelper("blackboard_artifact_types.type_name = '" + artifactTypeName + "';");
+	public BlackboardArtifact.Type getArtifactType(String artTypeName) throws TskCoreException {
+		if (this.typeNameToArtifactTypeMap.containsKey(artTypeName)) {
+			return this.typeNameToArtifactTypeMap.get(artTypeName);
+		}
+		CaseDbConnection connection = connections.getConnection();
+		acquireSingleUserCaseReadLock();
+		Statement s = null;
+		ResultSet rs = null;
+		try {
+			s = connection.createStatement();
+			rs = connection.executeQuery(s, "SELECT artifact_type_id, type_name, display_name FROM blackboard_artifact_types WHERE type_name = '" + artTypeName + "'"); //NON-NLS
+			BlackboardArtifact.Type type = null;
+			if (rs.next()) {
+				type = new BlackboardArtifact.Type(rs.getInt("artifact_type_id"),
+						rs.getString("type_name"), rs.getString("display_name"));
+				this.typeIdToArtifactTypeMap.put(type.getTypeID(), type);
+				this.typeNameToArtifactTypeMap.put(artTypeName, type);
+			}
+			return type;
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error getting artifact type from the database", ex);
+		} finally {
+			closeResultSet(rs);
+			closeStatement(s);
+			connection.close();
+			releaseSingleUserCaseReadLock();
+		}
 	}
 
 	/**
-	 * Get all blackboard artifacts of a given type. Does not included rejected
-	 * artifacts.
+	 * Get the artifact type associated with an artifact type id.
 	 *
-	 * @param artifactType artifact type enum
+	 * @param artTypeId An artifact type id.
 	 *
-	 * @return list of blackboard artifacts
+	 * @return An artifact type or null if the artifact type does not exist.
+	 *
+	 * @throws TskCoreException If an error occurs accessing the case database.
 	 *
-	 * @throws TskCoreException exception thrown if a critical error occurs
-	 *                          within TSK core
 	 */
-	public ArrayList<BlackboardArtifact> getBlackboardArtifacts(ARTIFACT_TYPE artifactType) throws TskCoreException {
-		return getArtifactsHelper("blackboard_artifact_types.artifact_type_id = " + artifactType.getTypeID() + ";");
+	BlackboardArtifact.Type getArtifactType(int artTypeId) throws TskCoreException {
+		if (this.typeIdToArtifactTypeMap.containsKey(artTypeId)) {
+			return typeIdToArtifactTypeMap.get(artTypeId);
+		}
+		CaseDbConnection connection = connections.getConnection();
+		acquireSingleUserCaseReadLock();
+		Statement s = null;
+		ResultSet rs = null;
+		try {
+			s = connection.createStatement();
+			rs = connection.executeQuery(s, "SELECT artifact_type_id, type_name, display_name FROM blackboard_artifact_types WHERE artifact_type_id = " + artTypeId + ""); //NON-NLS
+			BlackboardArtifact.Type type = null;
+			if (rs.next()) {
+				type = new BlackboardArtifact.Type(rs.getInt("artifact_type_id"),
+						rs.getString("type_name"), rs.getString("display_name"));
+				this.typeIdToArtifactTypeMap.put(artTypeId, type);
+				this.typeNameToArtifactTypeMap.put(type.getTypeName(), type);
+			}
+			return type;
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error getting artifact type from the database", ex);
+		} finally {
+			closeResultSet(rs);
+			closeStatement(s);
+			connection.close();
+			releaseSingleUserCaseReadLock();
+		}
 	}
 
 	/**
-	 * Get all blackboard artifacts of a given type with an attribute of a given
-	 * type and String value. Does not included rejected artifacts.
+	 * Add an artifact type with the given name. Will return an artifact Type.
 	 *
-	 * @param artifactType artifact type enum
-	 * @param attrType     attribute type enum
-	 * @param value        String value of attribute
+	 * @param artifactTypeName System (unique) name of artifact
+	 * @param displayName      Display (non-unique) name of artifact
 	 *
-	 * @return list of blackboard artifacts
+	 * @return Type of the artifact added
 	 *
 	 * @throws TskCoreException exception thrown if a critical error occurs
-	 *                          within TSK core
+	 * @throws TskDataException exception thrown if given data is already in db
+	 *                          within tsk core
 	 */
-	public List<BlackboardArtifact> getBlackboardArtifacts(ARTIFACT_TYPE artifactType, BlackboardAttribute.ATTRIBUTE_TYPE attrType, String value) throws TskCoreException {
+	public BlackboardArtifact.Type addBlackboardArtifactType(String artifactTypeName, String displayName) throws TskCoreException, TskDataException {
 		CaseDbConnection connection = connections.getConnection();
-		acquireSingleUserCaseReadLock();
+		acquireSingleUserCaseWriteLock();
 		Statement s = null;
 		ResultSet rs = null;
 		try {
+			connection.beginTransaction();
 			s = connection.createStatement();
-			rs = connection.executeQuery(s, "SELECT DISTINCT arts.artifact_id AS artifact_id, " //NON-NLS
-					+ "arts.obj_id AS obj_id, arts.artifact_obj_id as artifact_obj_id, arts.data_source_obj_id AS data_source_obj_id, arts.artifact_type_id AS artifact_type_id, "
-					+ "types.type_name AS type_name, types.display_name AS display_name,"
-					+ "arts.review_status_id AS review_status_id "//NON-NLS
-					+ "FROM blackboard_artifacts AS arts, blackboard_attributes AS attrs, blackboard_artifact_types AS types " //NON-NLS
-					+ "WHERE arts.artifact_id = attrs.artifact_id " //NON-NLS
-					+ "AND attrs.attribute_type_id = " + attrType.getTypeID() //NON-NLS
-					+ " AND arts.artifact_type_id = " + artifactType.getTypeID() //NON-NLS
-					+ " AND attrs.value_text = '" + value + "'" //NON-NLS
-					+ " AND types.artifact_type_id=arts.artifact_type_id"
-					+ " AND arts.review_status_id !=" + BlackboardArtifact.ReviewStatus.REJECTED.getID());
-			ArrayList<BlackboardArtifact> artifacts = new ArrayList<BlackboardArtifact>();
-			while (rs.next()) {
-				artifacts.add(new BlackboardArtifact(this, rs.getLong("artifact_id"), rs.getLong("obj_id"), rs.getLong("artifact_obj_id"), rs.getLong("data_source_obj_id"),
-						rs.getInt("artifact_type_id"), rs.getString("type_name"), rs.getString("display_name"),
-						BlackboardArtifact.ReviewStatus.withID(rs.getInt("review_status_id"))));
+			rs = connection.executeQuery(s, "SELECT artifact_type_id FROM blackboard_artifact_types WHERE type_name = '" + artifactTypeName + "'"); //NON-NLS
+			if (!rs.next()) {
+				rs.close();
+				rs = connection.executeQuery(s, "SELECT MAX(artifact_type_id) AS highest_id FROM blackboard_artifact_types");
+				int maxID = 0;
+				if (rs.next()) {
+					maxID = rs.getInt("highest_id");
+					if (maxID < MIN_USER_DEFINED_TYPE_ID) {
+						maxID = MIN_USER_DEFINED_TYPE_ID;
+					} else {
+						maxID++;
+					}
+				}
+				connection.executeUpdate(s, "INSERT INTO blackboard_artifact_types (artifact_type_id, type_name, display_name) VALUES ('" + maxID + "', '" + artifactTypeName + "', '" + displayName + "')"); //NON-NLS
+				BlackboardArtifact.Type type = new BlackboardArtifact.Type(maxID, artifactTypeName, displayName);
+				this.typeIdToArtifactTypeMap.put(type.getTypeID(), type);
+				this.typeNameToArtifactTypeMap.put(type.getTypeName(), type);
+				connection.commitTransaction();
+				return type;
+			} else {
+				throw new TskDataException("The attribute type that was added was already within the system.");
 			}
-			return artifacts;
 		} catch (SQLException ex) {
-			throw new TskCoreException("Error getting blackboard artifacts by artifact type and attribute. " + ex.getMessage(), ex);
+			connection.rollbackTransaction();
+			throw new TskCoreException("Error adding artifact type", ex);
 		} finally {
 			closeResultSet(rs);
 			closeStatement(s);
 			connection.close();
+			releaseSingleUserCaseWriteLock();
+		}
+	}
+
+	public ArrayList<BlackboardAttribute> getBlackboardAttributes(final BlackboardArtifact artifact) throws TskCoreException {
+		CaseDbConnection connection = connections.getConnection();
+		acquireSingleUserCaseReadLock();
+		ResultSet rs = null;
+		try {
+			Statement statement = connection.createStatement();
+			rs = connection.executeQuery(statement, "SELECT attrs.artifact_id AS artifact_id, "
+					+ "attrs.source AS source, attrs.context AS context, attrs.attribute_type_id AS attribute_type_id, "
+					+ "attrs.value_type AS value_type, attrs.value_byte AS value_byte, "
+					+ "attrs.value_text AS value_text, attrs.value_int32 AS value_int32, "
+					+ "attrs.value_int64 AS value_int64, attrs.value_double AS value_double, "
+					+ "types.type_name AS type_name, types.display_name AS display_name "
+					+ "FROM blackboard_attributes AS attrs, blackboard_attribute_types AS types WHERE attrs.artifact_id = " + artifact.getArtifactID()
+					+ " AND attrs.attribute_type_id = types.attribute_type_id");
+			ArrayList<BlackboardAttribute> attributes = new ArrayList<BlackboardAttribute>();
+			while (rs.next()) {
+				int attributeTypeId = rs.getInt("attribute_type_id");
+				String attributeTypeName = rs.getString("type_name");
+				BlackboardAttribute.Type attributeType;
+				if (this.typeIdToAttributeTypeMap.containsKey(attributeTypeId)) {
+					attributeType = this.typeIdToAttributeTypeMap.get(attributeTypeId);
+				} else {
+					attributeType = new BlackboardAttribute.Type(attributeTypeId, attributeTypeName,
+							rs.getString("display_name"),
+							BlackboardAttribute.TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE.fromType(rs.getInt("value_type")));
+					this.typeIdToAttributeTypeMap.put(attributeTypeId, attributeType);
+					this.typeNameToAttributeTypeMap.put(attributeTypeName, attributeType);
+				}
+
+				final BlackboardAttribute attr = new BlackboardAttribute(
+						rs.getLong("artifact_id"),
+						attributeType,
+						rs.getString("source"),
+						rs.getString("context"),
+						rs.getInt("value_int32"),
+						rs.getLong("value_int64"),
+						rs.getDouble("value_double"),
+						rs.getString("value_text"),
+						rs.getBytes("value_byte"), this
+				);
+				attributes.add(attr);
+			}
+			return attributes;
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error getting attributes for artifact, artifact id = " + artifact.getArtifactID(), ex);
+		} finally {
+			closeResultSet(rs);
+			connection.close();
 			releaseSingleUserCaseReadLock();
 		}
 	}
 
 	/**
-	 * Get the blackboard artifact with the given artifact id
+	 * Get all attributes that match a where clause. The clause should begin
+	 * with "WHERE" or "JOIN". To use this method you must know the database
+	 * tables
 	 *
-	 * @param artifactID artifact ID
+	 * @param whereClause a sqlite where clause
 	 *
-	 * @return blackboard artifact
+	 * @return a list of matching attributes
 	 *
 	 * @throws TskCoreException exception thrown if a critical error occurs
-	 *                          within TSK core
+	 *                          within tsk core \ref query_database_page
 	 */
-	public BlackboardArtifact getBlackboardArtifact(long artifactID) throws TskCoreException {
+	public ArrayList<BlackboardAttribute> getMatchingAttributes(String whereClause) throws TskCoreException {
 		CaseDbConnection connection = connections.getConnection();
 		acquireSingleUserCaseReadLock();
+		Statement s = null;
 		ResultSet rs = null;
-		Statement s;
 		try {
 			s = connection.createStatement();
-			rs = connection.executeQuery(s, "SELECT arts.artifact_id AS artifact_id, "
-					+ "arts.obj_id AS obj_id, arts.artifact_obj_id as artifact_obj_id, arts.data_source_obj_id AS data_source_obj_id, arts.artifact_type_id AS artifact_type_id, "
-					+ "types.type_name AS type_name, types.display_name AS display_name,"
-					+ "arts.review_status_id AS review_status_id "//NON-NLS
-					+ "FROM blackboard_artifacts AS arts, blackboard_artifact_types AS types "
-					+ "WHERE arts.artifact_id = " + artifactID
-					+ " AND arts.artifact_type_id = types.artifact_type_id");
-			if (rs.next()) {
-				return new BlackboardArtifact(this, rs.getLong("artifact_id"), rs.getLong("obj_id"), rs.getLong("artifact_obj_id"), rs.getLong("data_source_obj_id"),
-						rs.getInt("artifact_type_id"), rs.getString("type_name"), rs.getString("display_name"),
-						BlackboardArtifact.ReviewStatus.withID(rs.getInt("review_status_id")));
-			} else {
-				/*
-				 * I think this should actually return null (or Optional) when
-				 * there is no artifact with the given id, but it looks like
-				 * existing code is not expecting that. -jm
-				 */
-				throw new TskCoreException("No blackboard artifact with id " + artifactID);
+			rs = connection.executeQuery(s, "SELECT blackboard_attributes.artifact_id AS artifact_id, "
+					+ "blackboard_attributes.source AS source, blackboard_attributes.context AS context, "
+					+ "blackboard_attributes.attribute_type_id AS attribute_type_id, "
+					+ "blackboard_attributes.value_type AS value_type, blackboard_attributes.value_byte AS value_byte, "
+					+ "blackboard_attributes.value_text AS value_text, blackboard_attributes.value_int32 AS value_int32, "
+					+ "blackboard_attributes.value_int64 AS value_int64, blackboard_attributes.value_double AS value_double "
+					+ "FROM blackboard_attributes " + whereClause); //NON-NLS
+			ArrayList<BlackboardAttribute> matches = new ArrayList<BlackboardAttribute>();
+			while (rs.next()) {
+				BlackboardAttribute.Type type;
+				// attribute type is cached, so this does not necessarily call to the db
+				type = this.getAttributeType(rs.getInt("attribute_type_id"));
+				BlackboardAttribute attr = new BlackboardAttribute(
+						rs.getLong("artifact_id"),
+						type,
+						rs.getString("source"),
+						rs.getString("context"),
+						rs.getInt("value_int32"),
+						rs.getLong("value_int64"),
+						rs.getDouble("value_double"),
+						rs.getString("value_text"),
+						rs.getBytes("value_byte"), this
+				);
+				matches.add(attr);
 			}
+			return matches;
 		} catch (SQLException ex) {
-			throw new TskCoreException("Error getting a blackboard artifact. " + ex.getMessage(), ex);
+			throw new TskCoreException("Error getting attributes using this where clause: " + whereClause, ex);
 		} finally {
 			closeResultSet(rs);
+			closeStatement(s);
 			connection.close();
 			releaseSingleUserCaseReadLock();
 		}
 	}
 
 	/**
-	 * Add a blackboard attribute.
+	 * Get all artifacts that match a where clause. The clause should begin with
+	 * "WHERE" or "JOIN". To use this method you must know the database tables
 	 *
-	 * @param attr           A blackboard attribute.
-	 * @param artifactTypeId The type of artifact associated with the attribute.
+	 * @param whereClause a sqlite where clause
 	 *
-	 * @throws TskCoreException thrown if a critical error occurs.
+	 * @return a list of matching artifacts
+	 *
+	 * @throws TskCoreException exception thrown if a critical error occurs
+	 *                          within tsk core \ref query_database_page
 	 */
-	public void addBlackboardAttribute(BlackboardAttribute attr, int artifactTypeId) throws TskCoreException {
+	public ArrayList<BlackboardArtifact> getMatchingArtifacts(String whereClause) throws TskCoreException {
 		CaseDbConnection connection = connections.getConnection();
-		acquireSingleUserCaseWriteLock();
+		acquireSingleUserCaseReadLock();
+		ResultSet rs = null;
+		Statement s = null;
 		try {
-			addBlackBoardAttribute(attr, artifactTypeId, connection);
+			s = connection.createStatement();
+			rs = connection.executeQuery(s, "SELECT blackboard_artifacts.artifact_id AS artifact_id, "
+					+ "blackboard_artifacts.obj_id AS obj_id, blackboard_artifacts.artifact_obj_id AS artifact_obj_id, blackboard_artifacts.data_source_obj_id AS data_source_obj_id, blackboard_artifacts.artifact_type_id AS artifact_type_id, "
+					+ "blackboard_artifacts.review_status_id AS review_status_id  "
+					+ "FROM blackboard_artifacts " + whereClause); //NON-NLS
+			ArrayList<BlackboardArtifact> matches = new ArrayList<BlackboardArtifact>();
+			while (rs.next()) {
+				BlackboardArtifact.Type type;
+				// artifact type is cached, so this does not necessarily call to the db
+				type = this.getArtifactType(rs.getInt("artifact_type_id"));
+				BlackboardArtifact artifact = new BlackboardArtifact(this, rs.getLong("artifact_id"), rs.getLong("obj_id"), rs.getLong("artifact_obj_id"), rs.getLong("data_source_obj_id"),
+						type.getTypeID(), type.getTypeName(), type.getDisplayName(),
+						BlackboardArtifact.ReviewStatus.withID(rs.getInt("review_status_id")));
+				matches.add(artifact);
+			}
+			return matches;
 		} catch (SQLException ex) {
-			throw new TskCoreException("Error adding blackboard attribute " + attr.toString(), ex);
+			throw new TskCoreException("Error getting attributes using this where clause: " + whereClause, ex);
 		} finally {
+			closeResultSet(rs);
+			closeStatement(s);
 			connection.close();
-			releaseSingleUserCaseWriteLock();
+			releaseSingleUserCaseReadLock();
 		}
 	}
 
 	/**
-	 * Add a set blackboard attributes.
+	 * Add a new blackboard artifact with the given type. If that artifact type
+	 * does not exist an error will be thrown. The artifact type name can be
+	 * looked up in the returned blackboard artifact.
 	 *
-	 * @param attributes     A set of blackboard attribute.
-	 * @param artifactTypeId The type of artifact associated with the
-	 *                       attributes.
+	 * @param artifactTypeID the type the given artifact should have
+	 * @param obj_id         the content object id associated with this artifact
 	 *
-	 * @throws TskCoreException thrown if a critical error occurs.
+	 * @return a new blackboard artifact
+	 *
+	 * @throws TskCoreException exception thrown if a critical error occurs
+	 *                          within tsk core
 	 */
-	public void addBlackboardAttributes(Collection<BlackboardAttribute> attributes, int artifactTypeId) throws TskCoreException {
-		CaseDbConnection connection = connections.getConnection();
-		acquireSingleUserCaseWriteLock();
-		try {
-			connection.beginTransaction();
-			for (final BlackboardAttribute attr : attributes) {
-				addBlackBoardAttribute(attr, artifactTypeId, connection);
-			}
-			connection.commitTransaction();
-		} catch (SQLException ex) {
-			connection.rollbackTransaction();
-			throw new TskCoreException("Error adding blackboard attributes", ex);
-		} finally {
-			connection.close();
-			releaseSingleUserCaseWriteLock();
-		}
-	}
-
-	private void addBlackBoardAttribute(BlackboardAttribute attr, int artifactTypeId, CaseDbConnection connection) throws SQLException, TskCoreException {
-		PreparedStatement statement;
-		switch (attr.getAttributeType().getValueType()) {
-			case STRING:
-				statement = connection.getPreparedStatement(PREPARED_STATEMENT.INSERT_STRING_ATTRIBUTE);
-				statement.clearParameters();
-				statement.setString(7, attr.getValueString());
-				break;
-			case BYTE:
-				statement = connection.getPreparedStatement(PREPARED_STATEMENT.INSERT_BYTE_ATTRIBUTE);
-				statement.clearParameters();
-				statement.setBytes(7, attr.getValueBytes());
-				break;
-			case INTEGER:
-				statement = connection.getPreparedStatement(PREPARED_STATEMENT.INSERT_INT_ATTRIBUTE);
-				statement.clearParameters();
-				statement.setInt(7, attr.getValueInt());
-				break;
-			case LONG:
-				statement = connection.getPreparedStatement(PREPARED_STATEMENT.INSERT_LONG_ATTRIBUTE);
-				statement.clearParameters();
-				statement.setLong(7, attr.getValueLong());
-				break;
-			case DOUBLE:
-				statement = connection.getPreparedStatement(PREPARED_STATEMENT.INSERT_DOUBLE_ATTRIBUTE);
-				statement.clearParameters();
-				statement.setDouble(7, attr.getValueDouble());
-				break;
-			case DATETIME:
-				statement = connection.getPreparedStatement(PREPARED_STATEMENT.INSERT_LONG_ATTRIBUTE);
-				statement.clearParameters();
-				statement.setLong(7, attr.getValueLong());
-				break;
-			default:
-				throw new TskCoreException("Unrecognized artifact attribute value type");
-		}
-		statement.setLong(1, attr.getArtifactID());
-		statement.setInt(2, artifactTypeId);
-		statement.setString(3, attr.getSourcesCSV());
-		statement.setString(4, "");
-		statement.setInt(5, attr.getAttributeType().getTypeID());
-		statement.setLong(6, attr.getAttributeType().getValueType().getType());
-		connection.executeUpdate(statement);
+	public BlackboardArtifact newBlackboardArtifact(int artifactTypeID, long obj_id) throws TskCoreException {
+		BlackboardArtifact.Type type = getArtifactType(artifactTypeID);
+		return newBlackboardArtifact(artifactTypeID, obj_id, type.getTypeName(), type.getDisplayName());
 	}
 
 	/**
-	 * Adds a source name to the source column of one or more rows in the
-	 * blackboard attributes table. The source name will be added to a CSV list
-	 * in any rows that exactly match the attribute's artifact_id and value.
+	 * Add a new blackboard artifact with the given type.
 	 *
-	 * @param attr   The artifact attribute
-	 * @param source The source name.
+	 * @param artifactType the type the given artifact should have
+	 * @param obj_id       the content object id associated with this artifact
 	 *
-	 * @throws TskCoreException
+	 * @return a new blackboard artifact
+	 *
+	 * @throws TskCoreException exception thrown if a critical error occurs
+	 *                          within tsk core
 	 */
-	String addSourceToArtifactAttribute(BlackboardAttribute attr, String source) throws TskCoreException {
-		/*
-		 * WARNING: This is a temporary implementation that is not safe and
-		 * denormalizes the case datbase.
-		 *
-		 * TODO (JIRA-2294): Provide a safe and normalized solution to tracking
-		 * the sources of artifact attributes.
-		 */
-		if (null == source || source.isEmpty()) {
-			throw new TskCoreException("Attempt to add null or empty source module name to artifact attribute");
-		}
+	public BlackboardArtifact newBlackboardArtifact(ARTIFACT_TYPE artifactType, long obj_id) throws TskCoreException {
+		return newBlackboardArtifact(artifactType.getTypeID(), obj_id, artifactType.getLabel(), artifactType.getDisplayName());
+	}
+
+	private BlackboardArtifact newBlackboardArtifact(int artifact_type_id, long obj_id, String artifactTypeName, String artifactDisplayName) throws TskCoreException {
 		CaseDbConnection connection = connections.getConnection();
 		acquireSingleUserCaseWriteLock();
-		Statement queryStmt = null;
-		Statement updateStmt = null;
-		ResultSet result = null;
-		String newSources = "";
+		ResultSet resultSet = null;
 		try {
-			connection.beginTransaction();
-			String valueClause = "";
-			BlackboardAttribute.TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE valueType = attr.getAttributeType().getValueType();
-			if (BlackboardAttribute.TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE.BYTE != valueType) {
-				switch (valueType) {
-					case STRING:
-						valueClause = " value_text = '" + escapeSingleQuotes(attr.getValueString()) + "'";
-						break;
-					case INTEGER:
-						valueClause = " value_int32 = " + attr.getValueInt();
-						break;
-					case LONG:
-					case DATETIME:
-						valueClause = " value_int64 = " + attr.getValueLong();
-						break;
-					case DOUBLE:
-						valueClause = " value_double = " + attr.getValueDouble();
-						break;
-					default:
-						throw new TskCoreException(String.format("Unrecognized value type for attribute %s", attr.getDisplayString()));
-				}
-				String query = "SELECT source FROM blackboard_attributes WHERE"
-						+ " artifact_id = " + attr.getArtifactID()
-						+ " AND attribute_type_id = " + attr.getAttributeType().getTypeID()
-						+ " AND value_type = " + attr.getAttributeType().getValueType().getType()
-						+ " AND " + valueClause + ";";
-				queryStmt = connection.createStatement();
-				updateStmt = connection.createStatement();
-				result = connection.executeQuery(queryStmt, query);
+
+			PreparedStatement statement = connection.getPreparedStatement(PREPARED_STATEMENT.INSERT_OBJECT, Statement.RETURN_GENERATED_KEYS);
+			statement.clearParameters();
+			statement.setLong(1, obj_id);
+			statement.setInt(2, TskData.ObjectType.ARTIFACT.getObjectType());
+			connection.executeUpdate(statement);
+			resultSet = statement.getGeneratedKeys();
+			resultSet.next();
+			long artifact_obj_id = resultSet.getLong(1); //last_insert_rowid()
+			addObjectAncestors(connection, artifact_obj_id, obj_id);
+			long data_source_obj_id = getDataSourceObjectId(connection, obj_id);
+
+			if (dbType == DbType.POSTGRESQL) {
+				statement = connection.getPreparedStatement(PREPARED_STATEMENT.POSTGRESQL_INSERT_ARTIFACT, Statement.RETURN_GENERATED_KEYS);
+				statement.clearParameters();
+				statement.setLong(1, obj_id);
+				statement.setLong(2, artifact_obj_id);
+				statement.setLong(3, data_source_obj_id);
+				statement.setInt(4, artifact_type_id);
+
 			} else {
-				/*
-				 * SELECT source FROM blackboard_attributes WHERE artifact_id =
-				 * ? AND attribute_type_id = ? AND value_type = 4 AND value_byte
-				 * = ?
-				 */
-				PreparedStatement statement = connection.getPreparedStatement(PREPARED_STATEMENT.SELECT_ATTR_BY_VALUE_BYTE);
+				statement = connection.getPreparedStatement(PREPARED_STATEMENT.INSERT_ARTIFACT, Statement.RETURN_GENERATED_KEYS);
 				statement.clearParameters();
-				statement.setLong(1, attr.getArtifactID());
-				statement.setLong(2, attr.getAttributeType().getTypeID());
-				statement.setBytes(3, attr.getValueBytes());
-				result = connection.executeQuery(statement);
-			}
-			while (result.next()) {
-				String oldSources = result.getString("source");
-				if (null != oldSources && !oldSources.isEmpty()) {
-					Set<String> uniqueSources = new HashSet<String>(Arrays.asList(oldSources.split(",")));
-					if (!uniqueSources.contains(source)) {
-						newSources = oldSources + "," + source;
-					} else {
-						newSources = oldSources;
-					}
-				} else {
-					newSources = source;
-				}
-				if (BlackboardAttribute.TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE.BYTE != valueType) {
-					String update = "UPDATE blackboard_attributes SET source = '" + newSources + "' WHERE"
-							+ " artifact_id = " + attr.getArtifactID()
-							+ " AND attribute_type_id = " + attr.getAttributeType().getTypeID()
-							+ " AND value_type = " + attr.getAttributeType().getValueType().getType()
-							+ " AND " + valueClause + ";";
-					connection.executeUpdate(updateStmt, update);
-				} else {
-					/*
-					 * UPDATE blackboard_attributes SET source = ? WHERE
-					 * artifact_id = ? AND attribute_type_id = ? AND value_type
-					 * = 4 AND value_byte = ?
-					 */
-					PreparedStatement statement = connection.getPreparedStatement(PREPARED_STATEMENT.UPDATE_ATTR_BY_VALUE_BYTE);
-					statement.clearParameters();
-					statement.setString(1, newSources);
-					statement.setLong(2, attr.getArtifactID());
-					statement.setLong(3, attr.getAttributeType().getTypeID());
-					statement.setBytes(4, attr.getValueBytes());
-					connection.executeUpdate(statement);
-				}
+				this.nextArtifactId++;
+				statement.setLong(1, this.nextArtifactId);
+				statement.setLong(2, obj_id);
+				statement.setLong(3, artifact_obj_id);
+				statement.setLong(4, data_source_obj_id);
+				statement.setInt(5, artifact_type_id);
+
 			}
-			connection.commitTransaction();
-			return newSources;
+			connection.executeUpdate(statement);
+			resultSet = statement.getGeneratedKeys();
+			resultSet.next();
+			long artifactId = resultSet.getLong(1); //last_insert_rowid()
+			DataSourceStats.Increments statsIncrements = new DataSourceStats.Increments();
+			statsIncrements.addArtifact(data_source_obj_id, artifact_type_id);
+			updateDataSourceStats(statsIncrements, connection);
+			return new BlackboardArtifact(this, artifactId,
+					obj_id, artifact_obj_id, data_source_obj_id, artifact_type_id, artifactTypeName, artifactDisplayName, BlackboardArtifact.ReviewStatus.UNDECIDED, true);
 		} catch (SQLException ex) {
-			connection.rollbackTransaction();
-			throw new TskCoreException(String.format("Error adding source module to attribute %s", attr.getDisplayString()), ex);
+			throw new TskCoreException("Error creating a blackboard artifact", ex);
 		} finally {
-			closeResultSet(result);
-			closeStatement(updateStmt);
-			closeStatement(queryStmt);
+			closeResultSet(resultSet);
 			connection.close();
 			releaseSingleUserCaseWriteLock();
 		}
 	}
 
 	/**
-	 * Add an attribute type with the given name
+	 * Checks if the content object has children. Note: this is generally more
+	 * efficient then preloading all children and checking if the set is empty,
+	 * and facilities lazy loading.
 	 *
-	 * @param attrTypeString Name of the new attribute
-	 * @param valueType      The value type of this new attribute type
-	 * @param displayName    The (non-unique) display name of the attribute type
+	 * @param content content object to check for children
 	 *
-	 * @return the id of the new attribute
+	 * @return true if has children, false otherwise
 	 *
 	 * @throws TskCoreException exception thrown if a critical error occurs
 	 *                          within tsk core
-	 * @throws TskDataException exception thrown if attribute type was already
-	 *                          in the system
 	 */
-	public BlackboardAttribute.Type addArtifactAttributeType(String attrTypeString, TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE valueType, String displayName) throws TskCoreException, TskDataException {
+	boolean getContentHasChildren(Content content) throws TskCoreException {
 		CaseDbConnection connection = connections.getConnection();
-		acquireSingleUserCaseWriteLock();
-		Statement s = null;
+		acquireSingleUserCaseReadLock();
 		ResultSet rs = null;
 		try {
-			connection.beginTransaction();
-			s = connection.createStatement();
-			rs = connection.executeQuery(s, "SELECT attribute_type_id FROM blackboard_attribute_types WHERE type_name = '" + attrTypeString + "'"); //NON-NLS
-			if (!rs.next()) {
-				rs.close();
-				rs = connection.executeQuery(s, "SELECT MAX(attribute_type_id) AS highest_id FROM blackboard_attribute_types");
-				int maxID = 0;
-				if (rs.next()) {
-					maxID = rs.getInt("highest_id");
-					if (maxID < MIN_USER_DEFINED_TYPE_ID) {
-						maxID = MIN_USER_DEFINED_TYPE_ID;
-					} else {
-						maxID++;
-					}
-				}
-				connection.executeUpdate(s, "INSERT INTO blackboard_attribute_types (attribute_type_id, type_name, display_name, value_type) VALUES ('" + maxID + "', '" + attrTypeString + "', '" + displayName + "', '" + valueType.getType() + "')"); //NON-NLS
-				BlackboardAttribute.Type type = new BlackboardAttribute.Type(maxID, attrTypeString, displayName, valueType);
-				this.typeIdToAttributeTypeMap.put(type.getTypeID(), type);
-				this.typeNameToAttributeTypeMap.put(type.getTypeName(), type);
-				connection.commitTransaction();
-				return type;
-			} else {
-				throw new TskDataException("The attribute type that was added was already within the system.");
+			// SELECT COUNT(obj_id) AS count FROM tsk_objects WHERE par_obj_id = ?
+			PreparedStatement statement = connection.getPreparedStatement(PREPARED_STATEMENT.COUNT_CHILD_OBJECTS_BY_PARENT);
+			statement.clearParameters();
+			statement.setLong(1, content.getId());
+			rs = connection.executeQuery(statement);
+			boolean hasChildren = false;
+			if (rs.next()) {
+				hasChildren = rs.getInt("count") > 0;
 			}
-
-		} catch (SQLException ex) {
-			connection.rollbackTransaction();
-			throw new TskCoreException("Error adding attribute type", ex);
+			return hasChildren;
+		} catch (SQLException e) {
+			throw new TskCoreException("Error checking for children of parent " + content, e);
 		} finally {
 			closeResultSet(rs);
-			closeStatement(s);
 			connection.close();
-			releaseSingleUserCaseWriteLock();
+			releaseSingleUserCaseReadLock();
 		}
 	}
 
 	/**
-	 * Get the attribute type associated with an attribute type name.
-	 *
-	 * @param attrTypeName An attribute type name.
+	 * Counts if the content object children. Note: this is generally more
+	 * efficient then preloading all children and counting, and facilities lazy
+	 * loading.
 	 *
-	 * @return An attribute type or null if the attribute type does not exist.
+	 * @param content content object to check for children count
 	 *
-	 * @throws TskCoreException If an error occurs accessing the case database.
+	 * @return children count
 	 *
+	 * @throws TskCoreException exception thrown if a critical error occurs
+	 *                          within tsk core
 	 */
-	public BlackboardAttribute.Type getAttributeType(String attrTypeName) throws TskCoreException {
-		if (this.typeNameToAttributeTypeMap.containsKey(attrTypeName)) {
-			return this.typeNameToAttributeTypeMap.get(attrTypeName);
-		}
+	int getContentChildrenCount(Content content) throws TskCoreException {
 		CaseDbConnection connection = connections.getConnection();
 		acquireSingleUserCaseReadLock();
-		Statement s = null;
 		ResultSet rs = null;
 		try {
-			s = connection.createStatement();
-			rs = connection.executeQuery(s, "SELECT attribute_type_id, type_name, display_name, value_type FROM blackboard_attribute_types WHERE type_name = '" + attrTypeName + "'"); //NON-NLS
-			BlackboardAttribute.Type type = null;
+			// SELECT COUNT(obj_id) AS count FROM tsk_objects WHERE par_obj_id = ?
+			PreparedStatement statement = connection.getPreparedStatement(PREPARED_STATEMENT.COUNT_CHILD_OBJECTS_BY_PARENT);
+			statement.clearParameters();
+			statement.setLong(1, content.getId());
+			rs = connection.executeQuery(statement);
+			int countChildren = -1;
 			if (rs.next()) {
-				type = new BlackboardAttribute.Type(rs.getInt("attribute_type_id"), rs.getString("type_name"),
-						rs.getString("display_name"), TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE.fromType(rs.getLong("value_type")));
-				this.typeIdToAttributeTypeMap.put(type.getTypeID(), type);
-				this.typeNameToAttributeTypeMap.put(attrTypeName, type);
+				countChildren = rs.getInt("count");
 			}
-			return type;
-		} catch (SQLException ex) {
-			throw new TskCoreException("Error getting attribute type id", ex);
+			return countChildren;
+		} catch (SQLException e) {
+			throw new TskCoreException("Error checking for children of parent " + content, e);
 		} finally {
 			closeResultSet(rs);
-			closeStatement(s);
 			connection.close();
 			releaseSingleUserCaseReadLock();
 		}
 	}
 
 	/**
-	 * Get the attribute type associated with an attribute type ID.
-	 *
-	 * @param typeID An attribute type ID.
+	 * Counts the children of a set of content objects with one grouped query
+	 * per batch of ids, rather than one query per object as
+	 * Content.getChildrenCount() does. This is meant for tree views that need
+	 * to know which of many nodes can be expanded.
 	 *
-	 * @return An attribute type or null if the attribute type does not exist.
+	 * @param parentIds The object ids of the content objects.
 	 *
-	 * @throws TskCoreException If an error occurs accessing the case database.
+	 * @return A map of each of the object ids to its number of children,
+	 *         which is zero for objects with no children.
 	 *
+	 * @throws TskCoreException If there is a problem querying the case
+	 *                          database.
 	 */
-	private BlackboardAttribute.Type getAttributeType(int typeID) throws TskCoreException {
-		if (this.typeIdToAttributeTypeMap.containsKey(typeID)) {
-			return this.typeIdToAttributeTypeMap.get(typeID);
-		}
+	public Map<Long, Integer> getChildrenCounts(Collection<Long> parentIds) throws TskCoreException {
 		CaseDbConnection connection = connections.getConnection();
 		acquireSingleUserCaseReadLock();
-		Statement s = null;
-		ResultSet rs = null;
 		try {
-			s = connection.createStatement();
-			rs = connection.executeQuery(s, "SELECT attribute_type_id, type_name, display_name, value_type FROM blackboard_attribute_types WHERE attribute_type_id = " + typeID + ""); //NON-NLS
-			BlackboardAttribute.Type type = null;
-			if (rs.next()) {
-				type = new BlackboardAttribute.Type(rs.getInt("attribute_type_id"), rs.getString("type_name"),
-						rs.getString("display_name"), TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE.fromType(rs.getLong("value_type")));
-				this.typeIdToAttributeTypeMap.put(typeID, type);
-				this.typeNameToAttributeTypeMap.put(type.getTypeName(), type);
-			}
-			return type;
+			return getChildrenCounts(parentIds, connection);
 		} catch (SQLException ex) {
-			throw new TskCoreException("Error getting attribute type id", ex);
+			throw new TskCoreException("Error counting children of content objects", ex);
 		} finally {
-			closeResultSet(rs);
-			closeStatement(s);
 			connection.close();
 			releaseSingleUserCaseReadLock();
 		}
 	}
 
 	/**
-	 * Get the artifact type associated with an artifact type name.
+	 * Gets the number of queries that have been run on the case database
+	 * through its connections, for tests that check how many queries an
+	 * operation takes.
 	 *
-	 * @param artTypeName An artifact type name.
+	 * @return The number of queries.
+	 */
+	long getQueryCount() {
+		return queryCount.get();
+	}
+
+	/**
+	 * Counts the children of a set of content objects.
 	 *
-	 * @return An artifact type or null if the artifact type does not exist.
+	 * @param parentIds  The object ids of the content objects.
+	 * @param connection The connection to query with.
 	 *
-	 * @throws TskCoreException If an error occurs accessing the case database.
+	 * @return A map of each of the object ids to its number of children.
 	 *
+	 * @throws SQLException If there is a problem querying the case database.
 	 */
-	public BlackboardArtifact.Type getArtifactType(String artTypeName) throws TskCoreException {
-		if (this.typeNameToArtifactTypeMap.containsKey(artTypeName)) {
-			return this.typeNameToArtifactTypeMap.get(artTypeName);
+	private Map<Long, Integer> getChildrenCounts(Collection<Long> parentIds, CaseDbConnection connection) throws SQLException {
+		Map<Long, Integer> counts = new HashMap<Long, Integer>();
+		List<Long> batch = new ArrayList<Long>(CHILDREN_COUNTS_BATCH_SIZE);
+		for (Long parentId : parentIds) {
+			counts.put(parentId, 0);
+			batch.add(parentId);
+			if (batch.size() == CHILDREN_COUNTS_BATCH_SIZE) {
+				addChildrenCounts(batch, connection, counts);
+				batch.clear();
+			}
 		}
-		CaseDbConnection connection = connections.getConnection();
-		acquireSingleUserCaseReadLock();
-		Statement s = null;
+		if (!batch.isEmpty()) {
+			addChildrenCounts(batch, connection, counts);
+		}
+		return counts;
+	}
+
+	private void addChildrenCounts(List<Long> parentIds, CaseDbConnection connection, Map<Long, Integer> counts) throws SQLException {
+		ParameterizedSQL query = new ParameterizedSQL(dbType);
+		query.append("SELECT par_obj_id, COUNT(obj_id) AS count FROM tsk_objects WHERE "); //NON-NLS
+		query.appendIn("par_obj_id", parentIds); //NON-NLS
+		query.append(" GROUP BY par_obj_id"); //NON-NLS
+		PreparedStatement statement = null;
 		ResultSet rs = null;
 		try {
-			s = connection.createStatement();
-			rs = connection.executeQuery(s, "SELECT artifact_type_id, type_name, display_name FROM blackboard_artifact_types WHERE type_name = '" + artTypeName + "'"); //NON-NLS
-			BlackboardArtifact.Type type = null;
-			if (rs.next()) {
-				type = new BlackboardArtifact.Type(rs.getInt("artifact_type_id"),
-						rs.getString("type_name"), rs.getString("display_name"));
-				this.typeIdToArtifactTypeMap.put(type.getTypeID(), type);
-				this.typeNameToArtifactTypeMap.put(artTypeName, type);
+			statement = query.prepare(connection);
+			rs = connection.executeQuery(statement);
+			while (rs.next()) {
+				counts.put(rs.getLong("par_obj_id"), rs.getInt("count"));
 			}
-			return type;
-		} catch (SQLException ex) {
-			throw new TskCoreException("Error getting artifact type from the database", ex);
 		} finally {
 			closeResultSet(rs);
-			closeStatement(s);
-			connection.close();
-			releaseSingleUserCaseReadLock();
+			closeStatement(statement);
 		}
 	}
 
 	/**
-	 * Get the artifact type associated with an artifact type id.
-	 *
-	 * @param artTypeId An artifact type id.
-	 *
-	 * @return An artifact type or null if the artifact type does not exist.
+	 * Sets the numbers of children of a list of content objects, so that
+	 * calling hasChildren() or getChildrenCount() on them does not query the
+	 * case database.
 	 *
-	 * @throws TskCoreException If an error occurs accessing the case database.
+	 * @param contents The content objects.
 	 *
+	 * @throws TskCoreException If there is a problem querying the case
+	 *                          database.
 	 */
-	BlackboardArtifact.Type getArtifactType(int artTypeId) throws TskCoreException {
-		if (this.typeIdToArtifactTypeMap.containsKey(artTypeId)) {
-			return typeIdToArtifactTypeMap.get(artTypeId);
-		}
+	void setChildrenCounts(List<Content> contents) throws TskCoreException {
 		CaseDbConnection connection = connections.getConnection();
 		acquireSingleUserCaseReadLock();
-		Statement s = null;
-		ResultSet rs = null;
 		try {
-			s = connection.createStatement();
-			rs = connection.executeQuery(s, "SELECT artifact_type_id, type_name, display_name FROM blackboard_artifact_types WHERE artifact_type_id = " + artTypeId + ""); //NON-NLS
-			BlackboardArtifact.Type type = null;
-			if (rs.next()) {
-				type = new BlackboardArtifact.Type(rs.getInt("artifact_type_id"),
-						rs.getString("type_name"), rs.getString("display_name"));
-				this.typeIdToArtifactTypeMap.put(artTypeId, type);
-				this.typeNameToArtifactTypeMap.put(type.getTypeName(), type);
-			}
-			return type;
+			setChildrenCounts(contents, connection);
 		} catch (SQLException ex) {
-			throw new TskCoreException("Error getting artifact type from the database", ex);
+			throw new TskCoreException("Error counting children of content objects", ex);
 		} finally {
-			closeResultSet(rs);
-			closeStatement(s);
 			connection.close();
 			releaseSingleUserCaseReadLock();
 		}
 	}
 
 	/**
-	 * Add an artifact type with the given name. Will return an artifact Type.
+	 * Sets the numbers of children of a list of content objects.
 	 *
-	 * @param artifactTypeName System (unique) name of artifact
-	 * @param displayName      Display (non-unique) name of artifact
+	 * @param contents   The content objects.
+	 * @param connection The connection to query with.
 	 *
-	 * @return Type of the artifact added
+	 * @throws SQLException If there is a problem querying the case database.
+	 */
+	private void setChildrenCounts(List<Content> contents, CaseDbConnection connection) throws SQLException {
+		List<Long> ids = new ArrayList<Long>(contents.size());
+		for (Content content : contents) {
+			ids.add(content.getId());
+		}
+		Map<Long, Integer> counts = getChildrenCounts(ids, connection);
+		for (Content content : contents) {
+			if (content instanceof AbstractContent) {
+				((AbstractContent) content).setChildrenCount(counts.get(content.getId()));
+			}
+		}
+	}
+
+	/**
+	 * Gets the children of a set of content objects whose children are files
+	 * and artifacts, such as files, file systems and artifacts, with one query
+	 * for the files and one for the artifacts per batch of ids, rather than
+	 * two queries per object as Content.getChildren() does. The children of
+	 * each object are in the order that getChildren() returns them in. This
+	 * is meant for walks of content trees that load the children of all of
+	 * the objects of a level at once.
 	 *
-	 * @throws TskCoreException exception thrown if a critical error occurs
-	 * @throws TskDataException exception thrown if given data is already in db
-	 *                          within tsk core
+	 * @param parentIds The object ids of the content objects.
+	 *
+	 * @return A map of each of the object ids to the children of the object,
+	 *         which is empty for objects with no children.
+	 *
+	 * @throws TskCoreException If there is a problem querying the case
+	 *                          database.
 	 */
-	public BlackboardArtifact.Type addBlackboardArtifactType(String artifactTypeName, String displayName) throws TskCoreException, TskDataException {
+	Map<Long, List<Content>> getFileAndArtifactChildren(Collection<Long> parentIds) throws TskCoreException {
+		Map<Long, List<Content>> children = new HashMap<Long, List<Content>>();
 		CaseDbConnection connection = connections.getConnection();
-		acquireSingleUserCaseWriteLock();
-		Statement s = null;
-		ResultSet rs = null;
+		acquireSingleUserCaseReadLock();
 		try {
-			connection.beginTransaction();
-			s = connection.createStatement();
-			rs = connection.executeQuery(s, "SELECT artifact_type_id FROM blackboard_artifact_types WHERE type_name = '" + artifactTypeName + "'"); //NON-NLS
-			if (!rs.next()) {
-				rs.close();
-				rs = connection.executeQuery(s, "SELECT MAX(artifact_type_id) AS highest_id FROM blackboard_artifact_types");
-				int maxID = 0;
-				if (rs.next()) {
-					maxID = rs.getInt("highest_id");
-					if (maxID < MIN_USER_DEFINED_TYPE_ID) {
-						maxID = MIN_USER_DEFINED_TYPE_ID;
-					} else {
-						maxID++;
-					}
+			List<Long> batch = new ArrayList<Long>(CHILDREN_COUNTS_BATCH_SIZE);
+			for (Long parentId : parentIds) {
+				children.put(parentId, new ArrayList<Content>());
+				batch.add(parentId);
+				if (batch.size() == CHILDREN_COUNTS_BATCH_SIZE) {
+					addFileAndArtifactChildren(batch, connection, children);
+					batch.clear();
+				}
+			}
+			if (!batch.isEmpty()) {
+				addFileAndArtifactChildren(batch, connection, children);
+			}
+			return children;
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error getting children of content objects", ex);
+		} finally {
+			connection.close();
+			releaseSingleUserCaseReadLock();
+		}
+	}
+
+	private void addFileAndArtifactChildren(List<Long> parentIds, CaseDbConnection connection, Map<Long, List<Content>> children) throws SQLException {
+		// The files come before the artifacts of each parent, and are in
+		// the order of SELECT_FILES_BY_PARENT.
+		ParameterizedSQL filesQuery = new ParameterizedSQL(dbType);
+		filesQuery.append("SELECT tsk_files.*, " + JOINED_FILE_COLUMNS + ", tsk_objects.par_obj_id AS children_par_obj_id " //NON-NLS
+				+ "FROM tsk_objects INNER JOIN tsk_files ON tsk_objects.obj_id = tsk_files.obj_id" //NON-NLS
+				+ JOINED_FILE_TABLES + "WHERE "); //NON-NLS
+		filesQuery.appendIn("tsk_objects.par_obj_id", parentIds); //NON-NLS
+		filesQuery.append(" ORDER BY tsk_objects.par_obj_id, tsk_files.meta_type DESC, LOWER(tsk_files.name)"); //NON-NLS
+		PreparedStatement statement = null;
+		ResultSet rs = null;
+		try {
+			statement = filesQuery.prepare(connection);
+			rs = connection.executeQuery(statement);
+			while (rs.next()) {
+				long parentId = rs.getLong("children_par_obj_id");
+				Content child = fileChild(rs, connection, parentId, true);
+				if (null != child) {
+					children.get(parentId).add(child);
 				}
-				connection.executeUpdate(s, "INSERT INTO blackboard_artifact_types (artifact_type_id, type_name, display_name) VALUES ('" + maxID + "', '" + artifactTypeName + "', '" + displayName + "')"); //NON-NLS
-				BlackboardArtifact.Type type = new BlackboardArtifact.Type(maxID, artifactTypeName, displayName);
-				this.typeIdToArtifactTypeMap.put(type.getTypeID(), type);
-				this.typeNameToArtifactTypeMap.put(type.getTypeName(), type);
-				connection.commitTransaction();
-				return type;
-			} else {
-				throw new TskDataException("The attribute type that was added was already within the system.");
 			}
-		} catch (SQLException ex) {
-			connection.rollbackTransaction();
-			throw new TskCoreException("Error adding artifact type", ex);
 		} finally {
 			closeResultSet(rs);
-			closeStatement(s);
-			connection.close();
-			releaseSingleUserCaseWriteLock();
+			closeStatement(statement);
+		}
+
+		// As in getArtifactsHelper(), which getBlackboardArtifactChildren()
+		// uses.
+		ParameterizedSQL artifactsQuery = new ParameterizedSQL(dbType);
+		artifactsQuery.append("SELECT blackboard_artifacts.artifact_id AS artifact_id, " //NON-NLS
+				+ "blackboard_artifacts.obj_id AS obj_id, " //NON-NLS
+				+ "blackboard_artifacts.artifact_obj_id AS artifact_obj_id, " //NON-NLS
+				+ "blackboard_artifacts.data_source_obj_id AS data_source_obj_id, " //NON-NLS
+				+ "blackboard_artifact_types.artifact_type_id AS artifact_type_id, " //NON-NLS
+				+ "blackboard_artifact_types.type_name AS type_name, " //NON-NLS
+				+ "blackboard_artifact_types.display_name AS display_name, " //NON-NLS
+				+ "blackboard_artifacts.review_status_id AS review_status_id " //NON-NLS
+				+ "FROM blackboard_artifacts, blackboard_artifact_types " //NON-NLS
+				+ "WHERE blackboard_artifacts.artifact_type_id = blackboard_artifact_types.artifact_type_id " //NON-NLS
+				+ "AND blackboard_artifacts.review_status_id != " + BlackboardArtifact.ReviewStatus.REJECTED.getID() + " AND "); //NON-NLS
+		artifactsQuery.appendIn("blackboard_artifacts.obj_id", parentIds); //NON-NLS
+		artifactsQuery.append(" ORDER BY blackboard_artifacts.obj_id, blackboard_artifacts.artifact_id"); //NON-NLS
+		statement = null;
+		rs = null;
+		try {
+			statement = artifactsQuery.prepare(connection);
+			rs = connection.executeQuery(statement);
+			while (rs.next()) {
+				long parentId = rs.getLong("obj_id");
+				children.get(parentId).add(new BlackboardArtifact(this, rs.getLong("artifact_id"), parentId, rs.getLong("artifact_obj_id"), rs.getLong("data_source_obj_id"),
+						rs.getInt("artifact_type_id"), rs.getString("type_name"), rs.getString("display_name"),
+						BlackboardArtifact.ReviewStatus.withID(rs.getInt("review_status_id"))));
+			}
+		} finally {
+			closeResultSet(rs);
+			closeStatement(statement);
 		}
 	}
 
-	public ArrayList<BlackboardAttribute> getBlackboardAttributes(final BlackboardArtifact artifact) throws TskCoreException {
+	/**
+	 * Gets the object ids of all of the descendants of a content object, its
+	 * children, their children and so on, with one indexed query. The ids are
+	 * ordered by their distance from the content object, so that each id
+	 * comes after the id of its parent. The first call for an object of a
+	 * data source records the ancestors of all of its objects.
+	 *
+	 * @param content The content object.
+	 *
+	 * @return The object ids of the descendants, empty if there are none.
+	 *
+	 * @throws TskCoreException If there is a problem querying the case
+	 *                          database.
+	 */
+	public List<Long> getDescendantIds(Content content) throws TskCoreException {
+		buildObjectAncestors(content.getId());
 		CaseDbConnection connection = connections.getConnection();
 		acquireSingleUserCaseReadLock();
 		ResultSet rs = null;
 		try {
-			Statement statement = connection.createStatement();
-			rs = connection.executeQuery(statement, "SELECT attrs.artifact_id AS artifact_id, "
-					+ "attrs.source AS source, attrs.context AS context, attrs.attribute_type_id AS attribute_type_id, "
-					+ "attrs.value_type AS value_type, attrs.value_byte AS value_byte, "
-					+ "attrs.value_text AS value_text, attrs.value_int32 AS value_int32, "
-					+ "attrs.value_int64 AS value_int64, attrs.value_double AS value_double, "
-					+ "types.type_name AS type_name, types.display_name AS display_name "
-					+ "FROM blackboard_attributes AS attrs, blackboard_attribute_types AS types WHERE attrs.artifact_id = " + artifact.getArtifactID()
-					+ " AND attrs.attribute_type_id = types.attribute_type_id");
-			ArrayList<BlackboardAttribute> attributes = new ArrayList<BlackboardAttribute>();
+			// SELECT descendant_id FROM tsk_object_ancestors WHERE ancestor_id = ? AND depth > 0 ORDER BY depth, descendant_id
+			PreparedStatement statement = connection.getPreparedStatement(PREPARED_STATEMENT.SELECT_DESCENDANT_IDS);
+			statement.clearParameters();
+			statement.setLong(1, content.getId());
+			rs = connection.executeQuery(statement);
+			List<Long> descendantIds = new ArrayList<Long>();
 			while (rs.next()) {
-				int attributeTypeId = rs.getInt("attribute_type_id");
-				String attributeTypeName = rs.getString("type_name");
-				BlackboardAttribute.Type attributeType;
-				if (this.typeIdToAttributeTypeMap.containsKey(attributeTypeId)) {
-					attributeType = this.typeIdToAttributeTypeMap.get(attributeTypeId);
-				} else {
-					attributeType = new BlackboardAttribute.Type(attributeTypeId, attributeTypeName,
-							rs.getString("display_name"),
-							BlackboardAttribute.TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE.fromType(rs.getInt("value_type")));
-					this.typeIdToAttributeTypeMap.put(attributeTypeId, attributeType);
-					this.typeNameToAttributeTypeMap.put(attributeTypeName, attributeType);
-				}
-
-				final BlackboardAttribute attr = new BlackboardAttribute(
-						rs.getLong("artifact_id"),
-						attributeType,
-						rs.getString("source"),
-						rs.getString("context"),
-						rs.getInt("value_int32"),
-						rs.getLong("value_int64"),
-						rs.getDouble("value_double"),
-						rs.getString("value_text"),
-						rs.getBytes("value_byte"), this
-				);
-				attributes.add(attr);
+				descendantIds.add(rs.getLong("descendant_id"));
 			}
-			return attributes;
+			return descendantIds;
 		} catch (SQLException ex) {
-			throw new TskCoreException("Error getting attributes for artifact, artifact id = " + artifact.getArtifactID(), ex);
+			throw new TskCoreException("Error getting descendants of " + content, ex);
 		} finally {
 			closeResultSet(rs);
 			connection.close();
@@ -3347,214 +4920,193 @@ public ArrayList<BlackboardAttribute> getBlackboardAttributes(final BlackboardAr
 	}
 
 	/**
-	 * Get all attributes that match a where clause. The clause should begin
-	 * with "WHERE" or "JOIN". To use this method you must know the database
-	 * tables
+	 * Counts all of the descendants of a content object, its children, their
+	 * children and so on, with one indexed query. The first call for an
+	 * object of a data source records the ancestors of all of its objects.
 	 *
-	 * @param whereClause a sqlite where clause
+	 * @param content The content object.
 	 *
-	 * @return a list of matching attributes
+	 * @return The number of descendants.
 	 *
-	 * @throws TskCoreException exception thrown if a critical error occurs
-	 *                          within tsk core \ref query_database_page
+	 * @throws TskCoreException If there is a problem querying the case
+	 *                          database.
 	 */
-	public ArrayList<BlackboardAttribute> getMatchingAttributes(String whereClause) throws TskCoreException {
+	public long countDescendants(Content content) throws TskCoreException {
+		buildObjectAncestors(content.getId());
 		CaseDbConnection connection = connections.getConnection();
 		acquireSingleUserCaseReadLock();
-		Statement s = null;
 		ResultSet rs = null;
 		try {
-			s = connection.createStatement();
-			rs = connection.executeQuery(s, "SELECT blackboard_attributes.artifact_id AS artifact_id, "
-					+ "blackboard_attributes.source AS source, blackboard_attributes.context AS context, "
-					+ "blackboard_attributes.attribute_type_id AS attribute_type_id, "
-					+ "blackboard_attributes.value_type AS value_type, blackboard_attributes.value_byte AS value_byte, "
-					+ "blackboard_attributes.value_text AS value_text, blackboard_attributes.value_int32 AS value_int32, "
-					+ "blackboard_attributes.value_int64 AS value_int64, blackboard_attributes.value_double AS value_double "
-					+ "FROM blackboard_attributes " + whereClause); //NON-NLS
-			ArrayList<BlackboardAttribute> matches = new ArrayList<BlackboardAttribute>();
-			while (rs.next()) {
-				BlackboardAttribute.Type type;
-				// attribute type is cached, so this does not necessarily call to the db
-				type = this.getAttributeType(rs.getInt("attribute_type_id"));
-				BlackboardAttribute attr = new BlackboardAttribute(
-						rs.getLong("artifact_id"),
-						type,
-						rs.getString("source"),
-						rs.getString("context"),
-						rs.getInt("value_int32"),
-						rs.getLong("value_int64"),
-						rs.getDouble("value_double"),
-						rs.getString("value_text"),
-						rs.getBytes("value_byte"), this
-				);
-				matches.add(attr);
+			// SELECT COUNT(descendant_id) AS count FROM tsk_object_ancestors WHERE ancestor_id = ? AND depth > 0
+			PreparedStatement statement = connection.getPreparedStatement(PREPARED_STATEMENT.COUNT_DESCENDANTS);
+			statement.clearParameters();
+			statement.setLong(1, content.getId());
+			rs = connection.executeQuery(statement);
+			long count = 0;
+			if (rs.next()) {
+				count = rs.getLong("count");
 			}
-			return matches;
+			return count;
 		} catch (SQLException ex) {
-			throw new TskCoreException("Error getting attributes using this where clause: " + whereClause, ex);
+			throw new TskCoreException("Error counting descendants of " + content, ex);
 		} finally {
 			closeResultSet(rs);
-			closeStatement(s);
 			connection.close();
 			releaseSingleUserCaseReadLock();
 		}
 	}
 
 	/**
-	 * Get all artifacts that match a where clause. The clause should begin with
-	 * "WHERE" or "JOIN". To use this method you must know the database tables
+	 * Gets all of the ancestors of a content object, from its parent up to
+	 * its data source. The object ids of the ancestors are found with one
+	 * indexed query. The first call for an object of a data source records
+	 * the ancestors of all of its objects.
 	 *
-	 * @param whereClause a sqlite where clause
+	 * @param content The content object.
 	 *
-	 * @return a list of matching artifacts
+	 * @return The ancestors, nearest first, empty if the content object is a
+	 *         data source.
 	 *
-	 * @throws TskCoreException exception thrown if a critical error occurs
-	 *                          within tsk core \ref query_database_page
+	 * @throws TskCoreException If there is a problem querying the case
+	 *                          database.
 	 */
-	public ArrayList<BlackboardArtifact> getMatchingArtifacts(String whereClause) throws TskCoreException {
+	public List<Content> getAncestors(Content content) throws TskCoreException {
+		buildObjectAncestors(content.getId());
+		List<Long> ancestorIds = new ArrayList<Long>();
 		CaseDbConnection connection = connections.getConnection();
 		acquireSingleUserCaseReadLock();
 		ResultSet rs = null;
-		Statement s = null;
 		try {
-			s = connection.createStatement();
-			rs = connection.executeQuery(s, "SELECT blackboard_artifacts.artifact_id AS artifact_id, "
-					+ "blackboard_artifacts.obj_id AS obj_id, blackboard_artifacts.artifact_obj_id AS artifact_obj_id, blackboard_artifacts.data_source_obj_id AS data_source_obj_id, blackboard_artifacts.artifact_type_id AS artifact_type_id, "
-					+ "blackboard_artifacts.review_status_id AS review_status_id  "
-					+ "FROM blackboard_artifacts " + whereClause); //NON-NLS
-			ArrayList<BlackboardArtifact> matches = new ArrayList<BlackboardArtifact>();
+			// SELECT ancestor_id FROM tsk_object_ancestors WHERE descendant_id = ? AND depth > 0 ORDER BY depth
+			PreparedStatement statement = connection.getPreparedStatement(PREPARED_STATEMENT.SELECT_ANCESTOR_IDS);
+			statement.clearParameters();
+			statement.setLong(1, content.getId());
+			rs = connection.executeQuery(statement);
 			while (rs.next()) {
-				BlackboardArtifact.Type type;
-				// artifact type is cached, so this does not necessarily call to the db
-				type = this.getArtifactType(rs.getInt("artifact_type_id"));
-				BlackboardArtifact artifact = new BlackboardArtifact(this, rs.getLong("artifact_id"), rs.getLong("obj_id"), rs.getLong("artifact_obj_id"), rs.getLong("data_source_obj_id"),
-						type.getTypeID(), type.getTypeName(), type.getDisplayName(),
-						BlackboardArtifact.ReviewStatus.withID(rs.getInt("review_status_id")));
-				matches.add(artifact);
+				ancestorIds.add(rs.getLong("ancestor_id"));
 			}
-			return matches;
 		} catch (SQLException ex) {
-			throw new TskCoreException("Error getting attributes using this where clause: " + whereClause, ex);
+			throw new TskCoreException("Error getting ancestors of " + content, ex);
 		} finally {
 			closeResultSet(rs);
-			closeStatement(s);
 			connection.close();
 			releaseSingleUserCaseReadLock();
 		}
+
+		List<Content> ancestors = new ArrayList<Content>(ancestorIds.size());
+		for (Long ancestorId : ancestorIds) {
+			Content ancestor = getContentById(ancestorId);
+			if (null == ancestor) {
+				throw new TskCoreException("No content found for ancestor with obj_id = " + ancestorId + " of " + content);
+			}
+			ancestors.add(ancestor);
+		}
+		return ancestors;
 	}
 
 	/**
-	 * Add a new blackboard artifact with the given type. If that artifact type
-	 * does not exist an error will be thrown. The artifact type name can be
-	 * looked up in the returned blackboard artifact.
-	 *
-	 * @param artifactTypeID the type the given artifact should have
-	 * @param obj_id         the content object id associated with this artifact
+	 * Returns the list of AbstractFile Children of a given type for a given
+	 * AbstractFileParent
 	 *
-	 * @return a new blackboard artifact
+	 * @param parent the content parent to get abstract file children for
+	 * @param type   children type to look for, defined in
+	 *               TSK_DB_FILES_TYPE_ENUM
 	 *
 	 * @throws TskCoreException exception thrown if a critical error occurs
 	 *                          within tsk core
 	 */
-	public BlackboardArtifact newBlackboardArtifact(int artifactTypeID, long obj_id) throws TskCoreException {
-		BlackboardArtifact.Type type = getArtifactType(artifactTypeID);
-		return newBlackboardArtifact(artifactTypeID, obj_id, type.getTypeName(), type.getDisplayName());
+	List<Content> getAbstractFileChildren(Content parent, TSK_DB_FILES_TYPE_ENUM type) throws TskCoreException {
+		return getAbstractFileChildren(parent, type, false);
 	}
 
 	/**
-	 * Add a new blackboard artifact with the given type.
+	 * Gets the file children of a given type of a content object, optionally
+	 * with their own numbers of children already set, so that calling
+	 * hasChildren() or getChildrenCount() on them does not query the case
+	 * database. The counts cost one grouped query per batch of children.
 	 *
-	 * @param artifactType the type the given artifact should have
-	 * @param obj_id       the content object id associated with this artifact
+	 * @param parent                 The content object.
+	 * @param type                   The type of the children to get.
+	 * @param prefetchChildrenCounts True to set the counts of the children
+	 *                               as they are loaded, false to count them
+	 *                               when asked.
 	 *
-	 * @return a new blackboard artifact
+	 * @return The file children.
 	 *
-	 * @throws TskCoreException exception thrown if a critical error occurs
-	 *                          within tsk core
+	 * @throws TskCoreException If there is a problem querying the case
+	 *                          database.
 	 */
-	public BlackboardArtifact newBlackboardArtifact(ARTIFACT_TYPE artifactType, long obj_id) throws TskCoreException {
-		return newBlackboardArtifact(artifactType.getTypeID(), obj_id, artifactType.getLabel(), artifactType.getDisplayName());
-	}
-
-	private BlackboardArtifact newBlackboardArtifact(int artifact_type_id, long obj_id, String artifactTypeName, String artifactDisplayName) throws TskCoreException {
+	public List<Content> getAbstractFileChildren(Content parent, TSK_DB_FILES_TYPE_ENUM type, boolean prefetchChildrenCounts) throws TskCoreException {
 		CaseDbConnection connection = connections.getConnection();
-		acquireSingleUserCaseWriteLock();
-		ResultSet resultSet = null;
+		acquireSingleUserCaseReadLock();
+		ResultSet rs = null;
 		try {
-
-			PreparedStatement statement = connection.getPreparedStatement(PREPARED_STATEMENT.INSERT_OBJECT, Statement.RETURN_GENERATED_KEYS);
+			PreparedStatement statement = connection.getPreparedStatement(PREPARED_STATEMENT.SELECT_FILES_BY_PARENT_AND_TYPE);
 			statement.clearParameters();
-			statement.setLong(1, obj_id);
-			statement.setInt(2, TskData.ObjectType.ARTIFACT.getObjectType());
-			connection.executeUpdate(statement);
-			resultSet = statement.getGeneratedKeys();
-			resultSet.next();
-			long artifact_obj_id = resultSet.getLong(1); //last_insert_rowid()
-			long data_source_obj_id = getDataSourceObjectId(connection, obj_id);
-
-			if (dbType == DbType.POSTGRESQL) {
-				statement = connection.getPreparedStatement(PREPARED_STATEMENT.POSTGRESQL_INSERT_ARTIFACT, Statement.RETURN_GENERATED_KEYS);
-				statement.clearParameters();
-				statement.setLong(1, obj_id);
-				statement.setLong(2, artifact_obj_id);
-				statement.setLong(3, data_source_obj_id);
-				statement.setInt(4, artifact_type_id);
-
-			} else {
-				statement = connection.getPreparedStatement(PREPARED_STATEMENT.INSERT_ARTIFACT, Statement.RETURN_GENERATED_KEYS);
-				statement.clearParameters();
-				this.nextArtifactId++;
-				statement.setLong(1, this.nextArtifactId);
-				statement.setLong(2, obj_id);
-				statement.setLong(3, artifact_obj_id);
-				statement.setLong(4, data_source_obj_id);
-				statement.setInt(5, artifact_type_id);
-
+			long parentId = parent.getId();
+			statement.setLong(1, parentId);
+			statement.setShort(2, type.getFileType());
+			rs = connection.executeQuery(statement);
+			List<Content> children = fileChildren(rs, connection, parentId);
+			if (prefetchChildrenCounts) {
+				setChildrenCounts(children, connection);
 			}
-			connection.executeUpdate(statement);
-			resultSet = statement.getGeneratedKeys();
-			resultSet.next();
-			return new BlackboardArtifact(this, resultSet.getLong(1), //last_insert_rowid()
-					obj_id, artifact_obj_id, data_source_obj_id, artifact_type_id, artifactTypeName, artifactDisplayName, BlackboardArtifact.ReviewStatus.UNDECIDED, true);
+			return children;
 		} catch (SQLException ex) {
-			throw new TskCoreException("Error creating a blackboard artifact", ex);
+			throw new TskCoreException("Error getting AbstractFile children for Content", ex);
 		} finally {
-			closeResultSet(resultSet);
+			closeResultSet(rs);
 			connection.close();
-			releaseSingleUserCaseWriteLock();
+			releaseSingleUserCaseReadLock();
 		}
 	}
 
 	/**
-	 * Checks if the content object has children. Note: this is generally more
-	 * efficient then preloading all children and checking if the set is empty,
-	 * and facilities lazy loading.
-	 *
-	 * @param content content object to check for children
+	 * Returns the list of all AbstractFile Children for a given
+	 * AbstractFileParent
 	 *
-	 * @return true if has children, false otherwise
+	 * @param parent the content parent to get abstract file children for
 	 *
 	 * @throws TskCoreException exception thrown if a critical error occurs
 	 *                          within tsk core
 	 */
-	boolean getContentHasChildren(Content content) throws TskCoreException {
+	List<Content> getAbstractFileChildren(Content parent) throws TskCoreException {
+		return getAbstractFileChildren(parent, false);
+	}
+
+	/**
+	 * Gets the file children of a content object, optionally with their own
+	 * numbers of children already set, so that calling hasChildren() or
+	 * getChildrenCount() on them does not query the case database. The counts
+	 * cost one grouped query per batch of children.
+	 *
+	 * @param parent                 The content object.
+	 * @param prefetchChildrenCounts True to set the counts of the children
+	 *                               as they are loaded, false to count them
+	 *                               when asked.
+	 *
+	 * @return The file children.
+	 *
+	 * @throws TskCoreException If there is a problem querying the case
+	 *                          database.
+	 */
+	public List<Content> getAbstractFileChildren(Content parent, boolean prefetchChildrenCounts) throws TskCoreException {
 		CaseDbConnection connection = connections.getConnection();
 		acquireSingleUserCaseReadLock();
 		ResultSet rs = null;
 		try {
-			// SELECT COUNT(obj_id) AS count FROM tsk_objects WHERE par_obj_id = ?
-			PreparedStatement statement = connection.getPreparedStatement(PREPARED_STATEMENT.COUNT_CHILD_OBJECTS_BY_PARENT);
+			PreparedStatement statement = connection.getPreparedStatement(PREPARED_STATEMENT.SELECT_FILES_BY_PARENT);
 			statement.clearParameters();
-			statement.setLong(1, content.getId());
-			rs = connection.executeQuery(statement);
-			boolean hasChildren = false;
-			if (rs.next()) {
-				hasChildren = rs.getInt("count") > 0;
-			}
-			return hasChildren;
-		} catch (SQLException e) {
-			throw new TskCoreException("Error checking for children of parent " + content, e);
+			long parentId = parent.getId();
+			statement.setLong(1, parentId);
+			rs = connection.executeQuery(statement);
+			List<Content> children = fileChildren(rs, connection, parentId);
+			if (prefetchChildrenCounts) {
+				setChildrenCounts(children, connection);
+			}
+			return children;
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error getting AbstractFile children for Content", ex);
 		} finally {
 			closeResultSet(rs);
 			connection.close();
@@ -3563,100 +5115,300 @@ boolean getContentHasChildren(Content content) throws TskCoreException {
 	}
 
 	/**
-	 * Counts if the content object children. Note: this is generally more
-	 * efficient then preloading all children and counting, and facilities lazy
-	 * loading.
+	 * Loads all of the files below a content object at once, with one
+	 * recursive query, instead of a query per directory. The parent and the
+	 * number of children of each loaded object are set as it is loaded, so
+	 * that walking the subtree, calling Content.getParent() and getting unique
+	 * paths does not query the case database again. The root can be any
+	 * content object, such as an image: the volume systems, volumes and file
+	 * systems below the root are loaded by the same query, as are the other
+	 * objects that are not files, such as artifacts, if there are objects
+	 * below them.
 	 *
-	 * @param content content object to check for children count
+	 * @param root           The content to load the subtree of.
+	 * @param depthLimit     The number of levels of objects below the root to
+	 *                       load, or 0 to load all levels. The levels of
+	 *                       objects that are not files count towards the
+	 *                       limit.
+	 * @param sqlWhereClause A condition on the columns of the tsk_files table,
+	 *                       qualified with "tsk_files.", that each loaded file
+	 *                       must meet, or null to load all files. A file that
+	 *                       does not meet it is not loaded, and neither are
+	 *                       the objects below it. Do not begin the condition
+	 *                       with the word WHERE.
 	 *
-	 * @return children count
+	 * @return The loaded objects.
 	 *
-	 * @throws TskCoreException exception thrown if a critical error occurs
-	 *                          within tsk core
+	 * @throws TskCoreException If there is a problem querying the case
+	 *                          database.
 	 */
-	int getContentChildrenCount(Content content) throws TskCoreException {
+	public ContentSubtree loadSubtree(Content root, int depthLimit, String sqlWhereClause) throws TskCoreException {
+		// Every object below the root is walked, whatever its type; the
+		// condition on files only applies to the objects that are files.
+		String filterSQL = (null == sqlWhereClause || sqlWhereClause.trim().isEmpty()) ? ""
+				: " AND ( tsk_files.obj_id IS NULL OR ( " + sqlWhereClause + " ) )";
+		// The files, the volume systems, volumes and file systems, and the
+		// other objects that are not files but have objects below them, each
+		// after its parent. The columns of the artifacts are renamed, since
+		// some of them have the same names as columns of tsk_files.
+		String subtreeQuery = "WITH RECURSIVE subtree (obj_id, par_obj_id, type, depth) AS ("
+				+ " SELECT tsk_objects.obj_id, tsk_objects.par_obj_id, tsk_objects.type, 1 FROM tsk_objects"
+				+ " LEFT JOIN tsk_files ON tsk_files.obj_id = tsk_objects.obj_id"
+				+ " WHERE tsk_objects.par_obj_id = " + root.getId() + filterSQL
+				+ " UNION ALL"
+				+ " SELECT tsk_objects.obj_id, tsk_objects.par_obj_id, tsk_objects.type, subtree.depth + 1 FROM subtree"
+				+ " JOIN tsk_objects ON tsk_objects.par_obj_id = subtree.obj_id"
+				+ " LEFT JOIN tsk_files ON tsk_files.obj_id = tsk_objects.obj_id"
+				+ " WHERE 1 = 1" + (depthLimit > 0 ? " AND subtree.depth < " + depthLimit : "") + filterSQL
+				+ " )"
+				+ " SELECT tsk_files.*, " + JOINED_FILE_COLUMNS + ", subtree.obj_id AS subtree_obj_id, subtree.par_obj_id AS subtree_par_obj_id,"
+				+ " subtree.type AS subtree_type,"
+				+ " (SELECT COUNT(*) FROM tsk_objects AS children WHERE children.par_obj_id = subtree.obj_id) AS subtree_children_count,"
+				+ " blackboard_artifacts.artifact_id AS subtree_artifact_id, blackboard_artifacts.obj_id AS subtree_artifact_source_obj_id,"
+				+ " blackboard_artifacts.data_source_obj_id AS subtree_artifact_data_source_obj_id,"
+				+ " blackboard_artifacts.artifact_type_id AS subtree_artifact_type_id, blackboard_artifacts.review_status_id AS subtree_review_status_id"
+				+ " FROM subtree LEFT JOIN tsk_files ON tsk_files.obj_id = subtree.obj_id" + JOINED_FILE_TABLES
+				+ " LEFT JOIN blackboard_artifacts ON blackboard_artifacts.artifact_obj_id = subtree.obj_id"
+				+ " WHERE tsk_files.obj_id IS NOT NULL"
+				+ " OR subtree.type IN (" + TskData.ObjectType.VS.getObjectType() + ", " + TskData.ObjectType.VOL.getObjectType() + ", " + TskData.ObjectType.FS.getObjectType() + ")"
+				+ " OR ( subtree.type <> " + TskData.ObjectType.ABSTRACTFILE.getObjectType()
+				+ " AND EXISTS (SELECT 1 FROM subtree AS children WHERE children.par_obj_id = subtree.obj_id) )"
+				+ " ORDER BY subtree.depth"; //NON-NLS
+
+		ContentSubtree subtree = new ContentSubtree(root);
+		Map<Long, Content> loadedContent = new HashMap<Long, Content>();
+		loadedContent.put(root.getId(), root);
 		CaseDbConnection connection = connections.getConnection();
 		acquireSingleUserCaseReadLock();
+		Statement s = null;
 		ResultSet rs = null;
 		try {
-			// SELECT COUNT(obj_id) AS count FROM tsk_objects WHERE par_obj_id = ?
-			PreparedStatement statement = connection.getPreparedStatement(PREPARED_STATEMENT.COUNT_CHILD_OBJECTS_BY_PARENT);
-			statement.clearParameters();
-			statement.setLong(1, content.getId());
-			rs = connection.executeQuery(statement);
-			int countChildren = -1;
-			if (rs.next()) {
-				countChildren = rs.getInt("count");
+			s = connection.createStatement();
+			rs = connection.executeQuery(s, subtreeQuery);
+			while (rs.next()) {
+				long parentId = rs.getLong("subtree_par_obj_id");
+				Content parent = loadedContent.get(parentId);
+				if (null == parent) {
+					// The parent could not be loaded.
+					continue;
+				}
+				Content content;
+				if (null != rs.getObject("obj_id")) { //NON-NLS
+					AbstractFile file = resultSetRowToAbstractFile(rs, connection, true);
+					if (null != file) {
+						setStoredUniquePath(file, rs);
+						file.setParentId(parentId);
+					}
+					content = file;
+				} else {
+					content = subtreeRowToContent(rs);
+				}
+				if (null == content) {
+					continue;
+				}
+				if (content instanceof AbstractContent) {
+					((AbstractContent) content).setParent(parent);
+					((AbstractContent) content).setChildrenCount(rs.getInt("subtree_children_count"));
+				}
+				loadedContent.put(content.getId(), content);
+				subtree.add(content, parentId);
 			}
-			return countChildren;
-		} catch (SQLException e) {
-			throw new TskCoreException("Error checking for children of parent " + content, e);
+			return subtree;
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error loading subtree of content with obj_id = " + root.getId(), ex);
 		} finally {
 			closeResultSet(rs);
+			closeStatement(s);
 			connection.close();
 			releaseSingleUserCaseReadLock();
 		}
 	}
 
 	/**
-	 * Returns the list of AbstractFile Children of a given type for a given
-	 * AbstractFileParent
+	 * Creates an object of a subtree that is not a file from its row of the
+	 * query of loadSubtree(). Volume systems, volumes and file systems are
+	 * looked up in the physical layout and artifacts are made from the
+	 * columns of the row, so only the other objects, which rarely have
+	 * objects below them, are queried on their own.
 	 *
-	 * @param parent the content parent to get abstract file children for
-	 * @param type   children type to look for, defined in
-	 *               TSK_DB_FILES_TYPE_ENUM
+	 * @param rs The result set, positioned at the row of the object.
 	 *
-	 * @throws TskCoreException exception thrown if a critical error occurs
-	 *                          within tsk core
+	 * @return The object, or null if it could not be found.
+	 *
+	 * @throws SQLException     If the row cannot be read.
+	 * @throws TskCoreException If there is a problem querying the case
+	 *                          database.
 	 */
-	List<Content> getAbstractFileChildren(Content parent, TSK_DB_FILES_TYPE_ENUM type) throws TskCoreException {
+	private Content subtreeRowToContent(ResultSet rs) throws SQLException, TskCoreException {
+		long id = rs.getLong("subtree_obj_id");
+		long parentId = rs.getLong("subtree_par_obj_id");
+		Content content;
+		switch (TskData.ObjectType.valueOf(rs.getShort("subtree_type"))) { //NON-NLS
+			case VS:
+				content = getVolumeSystemById(id, parentId);
+				break;
+			case VOL:
+				content = getVolumeById(id, parentId);
+				break;
+			case FS:
+				content = getFileSystemById(id, parentId);
+				break;
+			case ARTIFACT:
+				int artifactTypeId = rs.getInt("subtree_artifact_type_id");
+				BlackboardArtifact.ARTIFACT_TYPE artifactType = BlackboardArtifact.ARTIFACT_TYPE.fromID(artifactTypeId);
+				content = new BlackboardArtifact(this, rs.getLong("subtree_artifact_id"), rs.getLong("subtree_artifact_source_obj_id"), id,
+						rs.getLong("subtree_artifact_data_source_obj_id"), artifactTypeId, artifactType.getLabel(), artifactType.getDisplayName(),
+						BlackboardArtifact.ReviewStatus.withID(rs.getInt("subtree_review_status_id")));
+				break;
+			default:
+				content = getContentById(id);
+				break;
+		}
+		return content;
+	}
+
+	/**
+	 * Stores the unique paths of a content object and of all of the content
+	 * below it in the case database, so that they can be found with
+	 * getContentByUniquePath() and the paths of files are loaded with the
+	 * files instead of being built from their ancestors. The paths are built
+	 * in memory from one load of the subtree, which includes the volume
+	 * systems, volumes and file systems of an image, and any paths stored for
+	 * the subtree before are replaced. Artifacts share the unique paths of
+	 * their sources, so storing the paths of files also covers the artifacts
+	 * of those files.
+	 *
+	 * @param root The content object, such as a data source.
+	 *
+	 * @throws TskCoreException If there is a problem querying or updating the
+	 *                          case database.
+	 */
+	public void storeUniquePaths(Content root) throws TskCoreException {
+		// The stored paths of the subtree are found through the ancestors
+		// table when they are replaced.
+		buildObjectAncestors(root.getId());
+		ContentSubtree subtree = loadSubtree(root, 0, null);
+		Map<Long, String> paths = new LinkedHashMap<Long, String>();
+		Map<Long, String> fileSystemPaths = new HashMap<Long, String>();
+
+		// Parents come before their children, so the path of the parent of
+		// each content object has been built when its own path is built.
+		List<Content> contents = new ArrayList<Content>();
+		contents.add(root);
+		for (int i = 0; i < contents.size(); i++) {
+			Content content = contents.get(i);
+			contents.addAll(subtree.getChildren(content));
+			String path;
+			if (content instanceof FsContent) {
+				// As in FsContent.getUniquePath(), but without loading the
+				// file system of each file.
+				long fsObjId = ((FsContent) content).getFileSystemId();
+				String fileSystemPath = fileSystemPaths.get(fsObjId);
+				if (null == fileSystemPath) {
+					fileSystemPath = getFileSystemById(fsObjId, AbstractContent.UNKNOWN_ID).getUniquePath();
+					fileSystemPaths.put(fsObjId, fileSystemPath);
+				}
+				path = fileSystemPath + ((FsContent) content).getParentPath() + content.getName();
+				((FsContent) content).setUniquePath(path);
+			} else {
+				// The parents of the content below the root are set by
+				// loadSubtree(), and a file caches its path, so this does not
+				// query the case database.
+				path = content.getUniquePath();
+				if (content instanceof FileSystem) {
+					fileSystemPaths.put(content.getId(), path);
+				}
+			}
+			paths.put(content.getId(), path);
+		}
+
 		CaseDbConnection connection = connections.getConnection();
-		acquireSingleUserCaseReadLock();
-		ResultSet rs = null;
+		acquireSingleUserCaseWriteLock();
 		try {
-			PreparedStatement statement = connection.getPreparedStatement(PREPARED_STATEMENT.SELECT_FILES_BY_PARENT_AND_TYPE);
+			connection.beginTransaction();
+			// DELETE FROM tsk_unique_paths WHERE obj_id = ? OR obj_id IN (SELECT descendant_id FROM tsk_object_ancestors WHERE ancestor_id = ?)
+			PreparedStatement statement = connection.getPreparedStatement(PREPARED_STATEMENT.DELETE_SUBTREE_UNIQUE_PATHS);
 			statement.clearParameters();
-			long parentId = parent.getId();
-			statement.setLong(1, parentId);
-			statement.setShort(2, type.getFileType());
-			rs = connection.executeQuery(statement);
-			return fileChildren(rs, connection, parentId);
+			statement.setLong(1, root.getId());
+			statement.setLong(2, root.getId());
+			connection.executeUpdate(statement);
+
+			// INSERT INTO tsk_unique_paths (obj_id, unique_path) VALUES (?, ?)
+			statement = connection.getPreparedStatement(PREPARED_STATEMENT.INSERT_UNIQUE_PATH);
+			statement.clearParameters();
+			int batchCount = 0;
+			for (Map.Entry<Long, String> entry : paths.entrySet()) {
+				statement.setLong(1, entry.getKey());
+				statement.setString(2, entry.getValue());
+				statement.addBatch();
+				if (++batchCount % MAX_BATCH_SIZE == 0) {
+					connection.executeBatch(statement);
+				}
+			}
+			connection.executeBatch(statement);
+			connection.commitTransaction();
 		} catch (SQLException ex) {
-			throw new TskCoreException("Error getting AbstractFile children for Content", ex);
+			connection.rollbackTransaction();
+			throw new TskCoreException("Error storing unique paths of content with obj_id = " + root.getId(), ex);
 		} finally {
-			closeResultSet(rs);
 			connection.close();
-			releaseSingleUserCaseReadLock();
+			releaseSingleUserCaseWriteLock();
 		}
 	}
 
 	/**
-	 * Returns the list of all AbstractFile Children for a given
-	 * AbstractFileParent
+	 * Gets the content objects with a unique path, as stored by
+	 * storeUniquePaths(), with an indexed lookup. Content objects whose paths
+	 * have not been stored are not found.
 	 *
-	 * @param parent the content parent to get abstract file children for
+	 * @param uniquePath The unique path, as returned by
+	 *                   Content.getUniquePath().
 	 *
-	 * @throws TskCoreException exception thrown if a critical error occurs
-	 *                          within tsk core
+	 * @return The content objects with the path, usually one, or an empty
+	 *         list if there are none. Unique paths are not always unique,
+	 *         e.g., for files with the same name in the same directory.
+	 *
+	 * @throws TskCoreException If there is a problem querying the case
+	 *                          database.
 	 */
-	List<Content> getAbstractFileChildren(Content parent) throws TskCoreException {
+	public List<Content> getContentByUniquePath(String uniquePath) throws TskCoreException {
+		List<Long> objIds = new ArrayList<Long>();
 		CaseDbConnection connection = connections.getConnection();
 		acquireSingleUserCaseReadLock();
 		ResultSet rs = null;
 		try {
-			PreparedStatement statement = connection.getPreparedStatement(PREPARED_STATEMENT.SELECT_FILES_BY_PARENT);
-			statement.clearParameters();
-			long parentId = parent.getId();
-			statement.setLong(1, parentId);
+			PreparedStatement statement;
+			if (dbType == DbType.POSTGRESQL) {
+				// SELECT obj_id FROM tsk_unique_paths WHERE md5(unique_path) = md5(?) AND unique_path = ? ORDER BY obj_id
+				statement = connection.getPreparedStatement(PREPARED_STATEMENT.SELECT_OBJ_IDS_BY_UNIQUE_PATH_POSTGRES);
+				statement.clearParameters();
+				statement.setString(2, uniquePath);
+			} else {
+				// SELECT obj_id FROM tsk_unique_paths WHERE unique_path = ? ORDER BY obj_id
+				statement = connection.getPreparedStatement(PREPARED_STATEMENT.SELECT_OBJ_IDS_BY_UNIQUE_PATH_SQLITE);
+				statement.clearParameters();
+			}
+			statement.setString(1, uniquePath);
 			rs = connection.executeQuery(statement);
-			return fileChildren(rs, connection, parentId);
+			while (rs.next()) {
+				objIds.add(rs.getLong("obj_id"));
+			}
 		} catch (SQLException ex) {
-			throw new TskCoreException("Error getting AbstractFile children for Content", ex);
+			throw new TskCoreException("Error getting content with unique path " + uniquePath, ex);
 		} finally {
 			closeResultSet(rs);
 			connection.close();
 			releaseSingleUserCaseReadLock();
 		}
+
+		List<Content> contents = new ArrayList<Content>(objIds.size());
+		for (Long objId : objIds) {
+			Content content = getContentById(objId);
+			if (null != content) {
+				contents.add(content);
+			}
+		}
+		return contents;
 	}
 
 	/**
@@ -4473,6 +6225,9 @@ public VirtualDirectory addVirtualDirectory(long parentId, String directoryName,
 			resultSet = statement.getGeneratedKeys();
 			resultSet.next();
 			long newObjId = resultSet.getLong(1); //last_insert_rowid()
+			if (parentId != 0) {
+				addObjectAncestors(connection, newObjId, parentId);
+			}
 
 			// Insert a row for the virtual directory into the tsk_files table.
 			// INSERT INTO tsk_files (obj_id, fs_obj_id, name, type, has_path, dir_type, meta_type,
@@ -4538,6 +6293,7 @@ public VirtualDirectory addVirtualDirectory(long parentId, String directoryName,
 			//extension, since this is not really file we just set it to null
 			statement.setString(17, null);
 			connection.executeUpdate(statement);
+			addFileStats(connection, dataSourceObjectId, 0, dirFlag.getValue(), metaFlags, null);
 
 			return new VirtualDirectory(this, newObjId, dataSourceObjectId, directoryName, dirType,
 					metaType, dirFlag, metaFlags, null, FileKnown.UNKNOWN,
@@ -4631,6 +6387,9 @@ public LocalDirectory addLocalDirectory(long parentId, String directoryName, Cas
 			resultSet = statement.getGeneratedKeys();
 			resultSet.next();
 			long newObjId = resultSet.getLong(1); //last_insert_rowid()
+			if (parentId != 0) {
+				addObjectAncestors(connection, newObjId, parentId);
+			}
 
 			// Insert a row for the local directory into the tsk_files table.
 			// INSERT INTO tsk_files (obj_id, fs_obj_id, name, type, has_path, dir_type, meta_type,
@@ -4683,6 +6442,7 @@ public LocalDirectory addLocalDirectory(long parentId, String directoryName, Cas
 			statement.setString(17, null);
 
 			connection.executeUpdate(statement);
+			addFileStats(connection, dataSourceObjectId, 0, dirFlag.getValue(), metaFlags, null);
 
 			return new LocalDirectory(this, newObjId, dataSourceObjectId, directoryName, dirType,
 					metaType, dirFlag, metaFlags, null, FileKnown.UNKNOWN,
@@ -4773,6 +6533,7 @@ public LocalFilesDataSource addLocalFilesDataSource(String deviceId, String root
 			preparedStatement.setLong(16, newObjId);
 			preparedStatement.setString(17, null); //extension, just set it to null
 			connection.executeUpdate(preparedStatement);
+			addFileStats(connection, newObjId, 0, dirFlag.getValue(), metaFlags, null);
 
 			return new LocalFilesDataSource(this, newObjId, newObjId, deviceId, rootDirectoryName, dirType, metaType, dirFlag, metaFlags, timeZone, null, FileKnown.UNKNOWN, parentPath);
 
@@ -4852,6 +6613,7 @@ public final List<LayoutFile> addLayoutFiles(Content parent, List<TskFileRange>
 			CaseDbConnection connection = transaction.getConnection();
 
 			List<LayoutFile> fileRangeLayoutFiles = new ArrayList<LayoutFile>();
+			DataSourceStats.Increments statsIncrements = new DataSourceStats.Increments();
 			for (TskFileRange fileRange : fileRanges) {
 				/*
 				 * Insert a row for the Tsk file range into the tsk_objects
@@ -4866,6 +6628,7 @@ public final List<LayoutFile> addLayoutFiles(Content parent, List<TskFileRange>
 				resultSet = prepStmt.getGeneratedKeys();
 				resultSet.next();
 				long fileRangeId = resultSet.getLong(1); //last_insert_rowid()
+				addObjectAncestors(connection, fileRangeId, parent.getId());
 				long end_byte_in_parent = fileRange.getByteStart() + fileRange.getByteLen() - 1;
 				/*
 				 * Insert a row for the Tsk file range into the tsk_files table:
@@ -4897,6 +6660,8 @@ public final List<LayoutFile> addLayoutFiles(Content parent, List<TskFileRange>
 				//extension, since this is not a FS file we just set it to null
 				prepStmt.setString(17, null);
 				connection.executeUpdate(prepStmt);
+				statsIncrements.addFile(parent.getId(), fileRange.getByteLen(), TSK_FS_NAME_FLAG_ENUM.UNALLOC.getValue(),
+						TSK_FS_META_FLAG_ENUM.UNALLOC.getValue(), null, null, 1);
 
 				/*
 				 * Insert a row in the tsk_layout_file table for each chunk of
@@ -4929,6 +6694,7 @@ public final List<LayoutFile> addLayoutFiles(Content parent, List<TskFileRange>
 						parent.getUniquePath(),
 						null));
 			}
+			updateDataSourceStats(statsIncrements, connection);
 
 			transaction.commit();
 			return fileRangeLayoutFiles;
@@ -5047,6 +6813,7 @@ public final List<LayoutFile> addCarvedFiles(CarvingResult carvingResult) throws
 			 */
 			String parentPath = getFileParentPath(carvedFilesDir.getId(), connection) + carvedFilesDir.getName() + "/";
 			List<LayoutFile> carvedFiles = new ArrayList<LayoutFile>();
+			DataSourceStats.Increments statsIncrements = new DataSourceStats.Increments();
 			for (CarvingResult.CarvedFile carvedFile : carvingResult.getCarvedFiles()) {
 				/*
 				 * Insert a row for the carved file into the tsk_objects table:
@@ -5060,6 +6827,7 @@ public final List<LayoutFile> addCarvedFiles(CarvingResult carvingResult) throws
 				resultSet = prepStmt.getGeneratedKeys();
 				resultSet.next();
 				long carvedFileId = resultSet.getLong(1); //last_insert_rowid()
+				addObjectAncestors(connection, carvedFileId, carvedFilesDir.getId());
 
 				/*
 				 * Insert a row for the carved file into the tsk_files table:
@@ -5094,6 +6862,8 @@ public final List<LayoutFile> addCarvedFiles(CarvingResult carvingResult) throws
 
 				prepStmt.setString(17, extractExtension(carvedFile.getName())); 				//extension
 				connection.executeUpdate(prepStmt);
+				statsIncrements.addFile(carvedFilesDir.getDataSourceObjectId(), carvedFile.getSizeInBytes(), TSK_FS_NAME_FLAG_ENUM.UNALLOC.getValue(),
+						TSK_FS_META_FLAG_ENUM.UNALLOC.getValue(), extractExtension(carvedFile.getName()), null, 1);
 
 				/*
 				 * Insert a row in the tsk_layout_file table for each chunk of
@@ -5128,6 +6898,7 @@ public final List<LayoutFile> addCarvedFiles(CarvingResult carvingResult) throws
 						parentPath,
 						null));
 			}
+			updateDataSourceStats(statsIncrements, connection);
 
 			transaction.commit();
 			return carvedFiles;
@@ -5226,6 +6997,7 @@ public DerivedFile addDerivedFile(String fileName, String localPath,
 			long newObjId = rs.getLong(1); //last_insert_rowid()
 			rs.close();
 			rs = null;
+			addObjectAncestors(connection, newObjId, parentId);
 
 			// Insert a row for the virtual directory into the tsk_files table.
 			// INSERT INTO tsk_files (obj_id, fs_obj_id, name, type, has_path, dir_type, meta_type,
@@ -5282,6 +7054,8 @@ public DerivedFile addDerivedFile(String fileName, String localPath,
 			statement.setString(17, extension);
 
 			connection.executeUpdate(statement);
+			addFileStats(connection, dataSourceObjId, size, dirFlag.getValue(), metaFlags, extension);
+			timelineManager.addFileEvents(connection, newObjId, dataSourceObjId, ctime, crtime, atime, mtime);
 
 			//add localPath
 			addFilePath(connection, newObjId, localPath, encodingType);
@@ -5351,6 +7125,9 @@ public DerivedFile updateDerivedFile(DerivedFile derivedFile, String localPath,
 			}
 			// UPDATE tsk_files SET type = ?, dir_type = ?, meta_type = ?, dir_flags = ?,  meta_flags = ?, "
 			// + "size= ?, ctime= ?, crtime= ?, atime= ?, mtime= ?, mime_type = ? WHERE obj_id = ?"), //NON-NLS
+			DataSourceStats.Increments statsIncrements = new DataSourceStats.Increments();
+			addFileStatsFromCaseDb(Collections.singletonList(derivedFile.getId()), -1, connection, statsIncrements);
+			timelineManager.removeFileEvents(connection, derivedFile.getId());
 			PreparedStatement statement = connection.getPreparedStatement(PREPARED_STATEMENT.UPDATE_DERIVED_FILE);
 			statement.clearParameters();
 
@@ -5382,6 +7159,9 @@ public DerivedFile updateDerivedFile(DerivedFile derivedFile, String localPath,
 			statement.setString(11, mimeType);
 			statement.setString(12, String.valueOf(derivedFile.getId()));
 			connection.executeUpdate(statement);
+			addFileStatsFromCaseDb(Collections.singletonList(derivedFile.getId()), 1, connection, statsIncrements);
+			updateDataSourceStats(statsIncrements, connection);
+			timelineManager.addFileEvents(connection, derivedFile.getId(), derivedFile.getDataSourceObjectId(), ctime, crtime, atime, mtime);
 
 			//add localPath
 			updateFilePath(connection, derivedFile.getId(), localPath, encodingType);
@@ -5492,6 +7272,7 @@ public LocalFile addLocalFile(String fileName, String localPath,
 			long objectId = resultSet.getLong(1); //last_insert_rowid()
 			resultSet.close();
 			resultSet = null;
+			addObjectAncestors(connection, objectId, parent.getId());
 
 			// Insert a row for the local/logical file into the tsk_files table.
 			// INSERT INTO tsk_files (obj_id, fs_obj_id, name, type, has_path, dir_type, meta_type,
@@ -5526,6 +7307,8 @@ public LocalFile addLocalFile(String fileName, String localPath,
 
 			connection.executeUpdate(statement);
 			addFilePath(connection, objectId, localPath, encodingType);
+			addFileStats(connection, dataSourceObjId, size, dirFlag.getValue(), metaFlags, extension);
+			timelineManager.addFileEvents(connection, objectId, dataSourceObjId, ctime, crtime, atime, mtime);
 			return new LocalFile(this,
 					objectId,
 					fileName,
@@ -5568,13 +7351,28 @@ private long getDataSourceObjectId(CaseDbConnection connection, long objectId) t
 		Statement statement = null;
 		ResultSet resultSet = null;
 		try {
+			// If the ancestors of the object are in tsk_object_ancestors, the
+			// data source is the most distant one, and a data source whose
+			// objects are in the table is its own ancestor at depth 0.
+			// SELECT ancestor_id FROM tsk_object_ancestors WHERE descendant_id = ? ORDER BY depth DESC LIMIT 1
+			PreparedStatement ancestorStatement = connection.getPreparedStatement(PREPARED_STATEMENT.SELECT_ROOT_ANCESTOR_ID);
+			ancestorStatement.clearParameters();
+			ancestorStatement.setLong(1, objectId);
+			resultSet = connection.executeQuery(ancestorStatement);
+			if (resultSet.next()) {
+				return resultSet.getLong("ancestor_id");
+			}
+			resultSet.close();
+			resultSet = null;
+
+			// Otherwise, work up the tree one parent at a time.
 			statement = connection.createStatement();
 			long dataSourceObjId;
 			long ancestorId = objectId;
 			do {
 				dataSourceObjId = ancestorId;
-				String query = String.format("SELECT par_obj_id FROM tsk_objects WHERE obj_id = %s;", ancestorId);
-				resultSet = statement.executeQuery(query);
+				String query = String.format("SELECT par_obj_id FROM tsk_objects WHERE obj_id = %s;", ancestorId); //NON-NLS
+				resultSet = connection.executeQuery(statement, query);
 				if (resultSet.next()) {
 					ancestorId = resultSet.getLong("par_obj_id");
 				} else {
@@ -5593,6 +7391,211 @@ private long getDataSourceObjectId(CaseDbConnection connection, long objectId) t
 		}
 	}
 
+	/**
+	 * Records the ancestors of a new object in the tsk_object_ancestors table,
+	 * if the table has been filled in for its data source: its parent, and
+	 * the ancestors of its parent. The same statement checks whether the
+	 * parent has rows, so that adding objects to a data source whose table
+	 * has not been filled in costs one index lookup. Must be called with the
+	 * connection used to add the object to tsk_objects.
+	 *
+	 * @param connection A case database connection.
+	 * @param objectId   The object id of the new object.
+	 * @param parentId   The object id of the parent of the new object.
+	 *
+	 * @throws SQLException If there is an error adding the rows.
+	 */
+	private void addObjectAncestors(CaseDbConnection connection, long objectId, long parentId) throws SQLException {
+		// INSERT INTO tsk_object_ancestors (descendant_id, ancestor_id, depth)
+		// SELECT ?, ?, 1 WHERE EXISTS (SELECT descendant_id FROM tsk_object_ancestors WHERE descendant_id = ?)
+		// UNION ALL SELECT ?, ancestor_id, depth + 1 FROM tsk_object_ancestors WHERE descendant_id = ? AND depth > 0
+		PreparedStatement statement = connection.getPreparedStatement(PREPARED_STATEMENT.INSERT_OBJECT_ANCESTORS);
+		statement.clearParameters();
+		statement.setLong(1, objectId);
+		statement.setLong(2, parentId);
+		statement.setLong(3, parentId);
+		statement.setLong(4, objectId);
+		statement.setLong(5, parentId);
+		connection.executeUpdate(statement);
+	}
+
+	/**
+	 * Fills in the tsk_object_ancestors table for the data source of an
+	 * object, if it has not been filled in yet. Images are filled in when the
+	 * add image process commits them, see buildImageObjectAncestors(); other
+	 * data sources, and the images of cases from before the table, are
+	 * filled in when they are first used by the ancestor and descendant
+	 * queries.
+	 *
+	 * While an add image process has objects that are not committed yet, the
+	 * rows are added but the data source is not marked as filled in, since
+	 * the objects added later by the process would be missed. The next call
+	 * fills it in again.
+	 *
+	 * @param objectId The object id of an object of the data source.
+	 *
+	 * @throws TskCoreException If there is a problem updating the case
+	 *                          database.
+	 */
+	private void buildObjectAncestors(long objectId) throws TskCoreException {
+		CaseDbConnection connection = connections.getConnection();
+		long dataSourceId;
+		try {
+			dataSourceId = getDataSourceObjectId(connection, objectId);
+		} finally {
+			connection.close();
+		}
+		if (objectAncestorsDataSources.contains(dataSourceId)) {
+			return;
+		}
+		fillObjectAncestors(dataSourceId, openAddImageProcesses.get() == 0);
+	}
+
+	/**
+	 * Fills in the tsk_object_ancestors table for an image that an add image
+	 * process has just committed, in bulk, since the native code does not
+	 * record the ancestors of the objects it adds.
+	 *
+	 * @param imageId The object id of the image.
+	 *
+	 * @throws TskCoreException If there is a problem updating the case
+	 *                          database.
+	 */
+	void buildImageObjectAncestors(long imageId) throws TskCoreException {
+		if (!objectAncestorsDataSources.contains(imageId)) {
+			fillObjectAncestors(imageId, true);
+		}
+	}
+
+	/**
+	 * Notes that an add image process has started adding objects to the case
+	 * database in a transaction that is not committed yet, see
+	 * buildObjectAncestors().
+	 */
+	void addImageProcessStarted() {
+		openAddImageProcesses.incrementAndGet();
+	}
+
+	/**
+	 * Notes that an add image process has committed or reverted the objects
+	 * it added.
+	 */
+	void addImageProcessFinished() {
+		openAddImageProcesses.decrementAndGet();
+	}
+
+	/**
+	 * Fills in the tsk_object_ancestors table for a data source.
+	 *
+	 * If the data source is to be marked as filled in, it first gets a row
+	 * with itself as its own ancestor at depth 0, after which
+	 * addObjectAncestors() records the ancestors of new objects of the data
+	 * source, and then the ancestors of its existing objects are recorded. On
+	 * PostgreSQL they are recorded a second time, to pick up the objects that
+	 * other clients added before they saw the row of the data source.
+	 *
+	 * @param dataSourceId The object id of the data source.
+	 * @param mark         True to mark the data source as filled in, false
+	 *                     to only add the rows.
+	 *
+	 * @throws TskCoreException If there is a problem updating the case
+	 *                          database.
+	 */
+	private void fillObjectAncestors(long dataSourceId, boolean mark) throws TskCoreException {
+		CaseDbConnection connection = connections.getConnection();
+		ResultSet rs = null;
+		acquireSingleUserCaseWriteLock();
+		try {
+			// SELECT descendant_id FROM tsk_object_ancestors WHERE descendant_id = ? AND ancestor_id = ?
+			PreparedStatement statement = connection.getPreparedStatement(PREPARED_STATEMENT.SELECT_OBJECT_ANCESTORS_MARKER);
+			statement.clearParameters();
+			statement.setLong(1, dataSourceId);
+			statement.setLong(2, dataSourceId);
+			rs = connection.executeQuery(statement);
+			boolean filledIn = rs.next();
+			closeResultSet(rs);
+			rs = null;
+			if (!filledIn && mark) {
+				connection.beginTransaction();
+				try {
+					if (dbType == DbType.POSTGRESQL) {
+						// INSERT INTO tsk_object_ancestors (descendant_id, ancestor_id, depth) VALUES (?, ?, 0) ON CONFLICT DO NOTHING
+						statement = connection.getPreparedStatement(PREPARED_STATEMENT.INSERT_OBJECT_ANCESTORS_MARKER_POSTGRES);
+					} else {
+						// INSERT OR IGNORE INTO tsk_object_ancestors (descendant_id, ancestor_id, depth) VALUES (?, ?, 0)
+						statement = connection.getPreparedStatement(PREPARED_STATEMENT.INSERT_OBJECT_ANCESTORS_MARKER_SQLITE);
+					}
+					statement.clearParameters();
+					statement.setLong(1, dataSourceId);
+					statement.setLong(2, dataSourceId);
+					connection.executeUpdate(statement);
+					connection.commitTransaction();
+				} catch (SQLException ex) {
+					connection.rollbackTransaction();
+					throw ex;
+				}
+			}
+			if (!filledIn) {
+				int passes = (dbType == DbType.POSTGRESQL && mark) ? 2 : 1;
+				for (int pass = 0; pass < passes; pass++) {
+					connection.beginTransaction();
+					try {
+						if (dbType == DbType.POSTGRESQL) {
+							// WITH RECURSIVE subtree (obj_id) AS (...), object_ancestors (descendant_id, ancestor_id, depth) AS (...)
+							// INSERT INTO tsk_object_ancestors (descendant_id, ancestor_id, depth) SELECT ... ON CONFLICT DO NOTHING
+							statement = connection.getPreparedStatement(PREPARED_STATEMENT.INSERT_DATA_SOURCE_OBJECT_ANCESTORS_POSTGRES);
+						} else {
+							// WITH RECURSIVE subtree (obj_id) AS (...), object_ancestors (descendant_id, ancestor_id, depth) AS (...)
+							// INSERT OR IGNORE INTO tsk_object_ancestors (descendant_id, ancestor_id, depth) SELECT ...
+							statement = connection.getPreparedStatement(PREPARED_STATEMENT.INSERT_DATA_SOURCE_OBJECT_ANCESTORS_SQLITE);
+						}
+						statement.clearParameters();
+						statement.setLong(1, dataSourceId);
+						connection.executeUpdate(statement);
+						connection.commitTransaction();
+					} catch (SQLException ex) {
+						connection.rollbackTransaction();
+						if (mark) {
+							// Take the mark off, so that the next use fills in
+							// the data source again.
+							unmarkObjectAncestors(connection, dataSourceId);
+						}
+						throw ex;
+					}
+				}
+			}
+			if (filledIn || mark) {
+				objectAncestorsDataSources.add(dataSourceId);
+			}
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error filling in the ancestors of the objects of the data source with obj_id = " + dataSourceId, ex);
+		} finally {
+			closeResultSet(rs);
+			connection.close();
+			releaseSingleUserCaseWriteLock();
+		}
+	}
+
+	/**
+	 * Removes the row that marks the tsk_object_ancestors table as filled in
+	 * for a data source, after filling it in failed. Errors are logged.
+	 *
+	 * @param connection   A case database connection.
+	 * @param dataSourceId The object id of the data source.
+	 */
+	private void unmarkObjectAncestors(CaseDbConnection connection, long dataSourceId) {
+		Statement statement = null;
+		try {
+			statement = connection.createStatement();
+			connection.executeUpdate(statement, "DELETE FROM tsk_object_ancestors WHERE descendant_id = " + dataSourceId //NON-NLS
+					+ " AND ancestor_id = " + dataSourceId + " AND depth = 0"); //NON-NLS
+		} catch (SQLException ex) {
+			logger.log(Level.SEVERE, "Error removing the object ancestors mark of the data source with obj_id = " + dataSourceId, ex); //NON-NLS
+		} finally {
+			closeStatement(statement);
+		}
+	}
+
 	/**
 	 * Add a path (such as a local path) for a content object to tsk_file_paths
 	 *
@@ -5707,7 +7710,7 @@ public List<AbstractFile> findAllFilesWhere(String sqlWhereClause) throws TskCor
 		ResultSet rs = null;
 		try {
 			s = connection.createStatement();
-			rs = connection.executeQuery(s, "SELECT * FROM tsk_files WHERE " + sqlWhereClause); //NON-NLS
+			rs = connection.executeQuery(s, "SELECT * FROM " + FILES_WITH_JOINED_COLUMNS + " WHERE " + sqlWhereClause); //NON-NLS
 			return resultSetToAbstractFiles(rs, connection);
 		} catch (SQLException e) {
 			throw new TskCoreException("SQLException thrown when calling 'SleuthkitCase.findAllFilesWhere(): " + sqlWhereClause, e);
@@ -5719,6 +7722,53 @@ public List<AbstractFile> findAllFilesWhere(String sqlWhereClause) throws TskCor
 		}
 	}
 
+	/**
+	 * Finds the files matching a where clause and loads only some of their
+	 * columns, plus their object ids, into lightweight records. This is much
+	 * cheaper than findAllFilesWhere() when only a few columns are needed.
+	 *
+	 * @param sqlWhereClause A SQL where clause appropriate for the desired
+	 *                       files (do not begin the WHERE clause with the word
+	 *                       WHERE!)
+	 * @param columns        The columns to load.
+	 *
+	 * @return A list of records, one for each matching file.
+	 *
+	 * @throws TskCoreException \ref query_database_page
+	 */
+	public List<FileRecord> queryFileRecords(String sqlWhereClause, FileRecord.Column... columns) throws TskCoreException {
+		EnumSet<FileRecord.Column> columnSet = EnumSet.noneOf(FileRecord.Column.class);
+		columnSet.addAll(Arrays.asList(columns));
+		FileRecord.Column[] recordColumns = columnSet.toArray(new FileRecord.Column[columnSet.size()]);
+		int[] positions = FileRecord.getPositions(recordColumns);
+		StringBuilder query = new StringBuilder("SELECT obj_id"); //NON-NLS
+		for (FileRecord.Column column : recordColumns) {
+			query.append(", ").append(column.getColumnName());
+		}
+		query.append(" FROM tsk_files WHERE ").append(sqlWhereClause); //NON-NLS
+
+		CaseDbConnection connection = connections.getConnection();
+		acquireSingleUserCaseReadLock();
+		Statement s = null;
+		ResultSet rs = null;
+		try {
+			s = connection.createStatement();
+			rs = connection.executeQuery(s, query.toString());
+			List<FileRecord> records = new ArrayList<FileRecord>();
+			while (rs.next()) {
+				records.add(FileRecord.fromResultSet(rs, recordColumns, positions));
+			}
+			return records;
+		} catch (SQLException e) {
+			throw new TskCoreException("SQLException thrown when calling 'SleuthkitCase.queryFileRecords(): " + sqlWhereClause, e);
+		} finally {
+			closeResultSet(rs);
+			closeStatement(s);
+			connection.close();
+			releaseSingleUserCaseReadLock();
+		}
+	}
+
 	/**
 	 * Find and return list of all (abstract) ids of files matching the specific
 	 * Where clause
@@ -5890,38 +7940,22 @@ public Image getImageById(long id) throws TskCoreException {
 	 * @param id     id of the volume system
 	 * @param parent image containing the volume system
 	 *
-	 * @return populated VolumeSystem object
-	 *
-	 * @throws TskCoreException thrown if a critical error occurred within tsk
-	 *                          core
-	 */
-	VolumeSystem getVolumeSystemById(long id, Image parent) throws TskCoreException {
-		CaseDbConnection connection = connections.getConnection();
-		acquireSingleUserCaseReadLock();
-		Statement s = null;
-		ResultSet rs = null;
-		try {
-			s = connection.createStatement();
-			rs = connection.executeQuery(s, "SELECT * FROM tsk_vs_info " //NON-NLS
-					+ "where obj_id = " + id); //NON-NLS
-			if (rs.next()) {
-				long type = rs.getLong("vs_type"); //NON-NLS
-				long imgOffset = rs.getLong("img_offset"); //NON-NLS
-				long blockSize = rs.getLong("block_size"); //NON-NLS
-				VolumeSystem vs = new VolumeSystem(this, id, "", type, imgOffset, blockSize);
-				vs.setParent(parent);
-				return vs;
-			} else {
-				throw new TskCoreException("No volume system found for id:" + id);
-			}
-		} catch (SQLException ex) {
-			throw new TskCoreException("Error getting Volume System by ID.", ex);
-		} finally {
-			closeResultSet(rs);
-			closeStatement(s);
-			connection.close();
-			releaseSingleUserCaseReadLock();
+	 * @return populated VolumeSystem object
+	 *
+	 * @throws TskCoreException thrown if a critical error occurred within tsk
+	 *                          core
+	 */
+	VolumeSystem getVolumeSystemById(long id, Image parent) throws TskCoreException {
+		PhysicalLayout.VolumeSystemRow row = getPhysicalLayout(id).getVolumeSystemRow(id);
+		if (null == row) {
+			row = loadPhysicalLayout(EnumSet.of(ObjectType.VS), "= " + id).getVolumeSystemRow(id); //NON-NLS
 		}
+		if (null == row) {
+			throw new TskCoreException("No volume system found for id:" + id);
+		}
+		VolumeSystem vs = new VolumeSystem(this, id, "", row.type, row.imgOffset, row.blockSize);
+		vs.setParent(parent);
+		return vs;
 	}
 
 	/**
@@ -5998,41 +8032,23 @@ private FileSystem getFileSystemByIdHelper(long id, Content parent) throws TskCo
 		// see if we already have it
 		// @@@ NOTE: this is currently kind of bad in that we are ignoring the parent value,
 		// but it should be the same...
-		synchronized (fileSystemIdMap) {
-			if (fileSystemIdMap.containsKey(id)) {
-				return fileSystemIdMap.get(id);
-			}
+		FileSystem fs = fileSystemIdMap.get(id);
+		if (null != fs) {
+			return fs;
 		}
-		CaseDbConnection connection = connections.getConnection();
-		acquireSingleUserCaseReadLock();
-		Statement s = null;
-		ResultSet rs = null;
-		try {
-			s = connection.createStatement();
-			rs = connection.executeQuery(s, "SELECT * FROM tsk_fs_info " //NON-NLS
-					+ "where obj_id = " + id); //NON-NLS
-			if (rs.next()) {
-				TskData.TSK_FS_TYPE_ENUM fsType = TskData.TSK_FS_TYPE_ENUM.valueOf(rs.getInt("fs_type")); //NON-NLS
-				FileSystem fs = new FileSystem(this, rs.getLong("obj_id"), "", rs.getLong("img_offset"), //NON-NLS
-						fsType, rs.getLong("block_size"), rs.getLong("block_count"), //NON-NLS
-						rs.getLong("root_inum"), rs.getLong("first_inum"), rs.getLong("last_inum")); //NON-NLS
-				fs.setParent(parent);
-				// save it for the next call
-				synchronized (fileSystemIdMap) {
-					fileSystemIdMap.put(id, fs);
-				}
-				return fs;
-			} else {
-				throw new TskCoreException("No file system found for id:" + id);
-			}
-		} catch (SQLException ex) {
-			throw new TskCoreException("Error getting File System by ID", ex);
-		} finally {
-			closeResultSet(rs);
-			closeStatement(s);
-			connection.close();
-			releaseSingleUserCaseReadLock();
+		PhysicalLayout.FileSystemRow row = getPhysicalLayout(id).getFileSystemRow(id);
+		if (null == row) {
+			row = loadPhysicalLayout(EnumSet.of(ObjectType.FS), "= " + id).getFileSystemRow(id); //NON-NLS
+		}
+		if (null == row) {
+			throw new TskCoreException("No file system found for id:" + id);
 		}
+		fs = new FileSystem(this, id, "", row.imgOffset, row.fsType, row.blockSize, row.blockCount,
+				row.rootInum, row.firstInum, row.lastInum);
+		fs.setParent(parent);
+		// save it for the next call, unless another thread got there first
+		FileSystem existing = fileSystemIdMap.putIfAbsent(id, fs);
+		return (null == existing) ? fs : existing;
 	}
 
 	/**
@@ -6047,44 +8063,16 @@ private FileSystem getFileSystemByIdHelper(long id, Content parent) throws TskCo
 	 *                          core
 	 */
 	Volume getVolumeById(long id, VolumeSystem parent) throws TskCoreException {
-		CaseDbConnection connection = connections.getConnection();
-		acquireSingleUserCaseReadLock();
-		Statement s = null;
-		ResultSet rs = null;
-		try {
-			s = connection.createStatement();
-			rs = connection.executeQuery(s, "SELECT * FROM tsk_vs_parts " //NON-NLS
-					+ "where obj_id = " + id); //NON-NLS
-			if (rs.next()) {
-				/**
-				 * TODO!! LANDMINE!! This allows the two types of databases to
-				 * have slightly different schemas. SQLite uses desc as the
-				 * column name in tsk_vs_parts and Postgres uses descr, as desc
-				 * is a reserved keyword in Postgres. When we have to make a
-				 * schema change, be sure to change this over to just one name.
-				 */
-				String description;
-				try {
-					description = rs.getString("desc");
-				} catch (Exception ex) {
-					description = rs.getString("descr");
-				}
-				Volume vol = new Volume(this, rs.getLong("obj_id"), rs.getLong("addr"), //NON-NLS
-						rs.getLong("start"), rs.getLong("length"), rs.getLong("flags"), //NON-NLS
-						description);
-				vol.setParent(parent);
-				return vol;
-			} else {
-				throw new TskCoreException("No volume found for id:" + id);
-			}
-		} catch (SQLException ex) {
-			throw new TskCoreException("Error getting Volume by ID", ex);
-		} finally {
-			closeResultSet(rs);
-			closeStatement(s);
-			connection.close();
-			releaseSingleUserCaseReadLock();
+		PhysicalLayout.VolumeRow row = getPhysicalLayout(id).getVolumeRow(id);
+		if (null == row) {
+			row = loadPhysicalLayout(EnumSet.of(ObjectType.VOL), "= " + id).getVolumeRow(id); //NON-NLS
+		}
+		if (null == row) {
+			throw new TskCoreException("No volume found for id:" + id);
 		}
+		Volume vol = new Volume(this, id, row.addr, row.start, row.length, row.flags, row.description);
+		vol.setParent(parent);
+		return vol;
 	}
 
 	/**
@@ -6155,74 +8143,206 @@ Directory getDirectoryById(long id, FileSystem parentFs) throws TskCoreException
 	 */
 	public Collection<FileSystem> getFileSystems(Image image) {
 		List<FileSystem> fileSystems = new ArrayList<FileSystem>();
-		CaseDbConnection connection;
+		List<PhysicalLayout.FileSystemRow> rows = new ArrayList<PhysicalLayout.FileSystemRow>();
 		try {
-			connection = connections.getConnection();
+			PhysicalLayout layout = getPhysicalLayout(image.getId());
+			if (layout.contains(image.getId())) {
+				for (Long id : layout.getFileSystemIds(image.getId())) {
+					rows.add(layout.getFileSystemRow(id));
+				}
+			} else {
+				// The image was added too recently to reload the layout for
+				// it, so query its file systems.
+				rows.addAll(loadPhysicalLayout(EnumSet.of(ObjectType.FS),
+						"IN (SELECT fs_obj_id FROM tsk_files WHERE data_source_obj_id = " + image.getId() + ")").getFileSystemRows()); //NON-NLS
+			}
 		} catch (TskCoreException ex) {
 			logger.log(Level.SEVERE, "Error getting file systems for image " + image.getId(), ex); //NON-NLS
 			return fileSystems;
 		}
+		for (PhysicalLayout.FileSystemRow row : rows) {
+			FileSystem fs = new FileSystem(this, row.objId, "", row.imgOffset, row.fsType, row.blockSize, row.blockCount,
+					row.rootInum, row.firstInum, row.lastInum);
+			fs.setParent(null);
+			fileSystems.add(fs);
+		}
+		return fileSystems;
+	}
+
+	/**
+	 * Gets the physical layout of the images of the case: the images, their
+	 * volume systems, volumes and file systems. The layout is loaded with one
+	 * query per table the first time it is asked for, and is then shared, so
+	 * that volume systems, volumes and file systems are looked up without
+	 * querying the case database or locking. It is loaded again after images
+	 * are added, and when an object that is not in it is looked up, e.g.,
+	 * after another client of a multi-user case has added an image, if it was
+	 * loaded more than PHYSICAL_LAYOUT_RELOAD_INTERVAL_MS ago. Otherwise the
+	 * object is queried on its own, so that repeated lookups of objects that
+	 * are not in the layout do not load it again and again.
+	 *
+	 * @return The layout.
+	 *
+	 * @throws TskCoreException If there is a problem querying the case
+	 *                          database.
+	 */
+	public PhysicalLayout getPhysicalLayout() throws TskCoreException {
+		PhysicalLayout layout = physicalLayout;
+		if (null == layout) {
+			synchronized (physicalLayoutLock) {
+				layout = physicalLayout;
+				if (null == layout) {
+					layout = loadPhysicalLayout(EnumSet.allOf(ObjectType.class), null);
+					physicalLayout = layout;
+					physicalLayoutLoadTime = System.currentTimeMillis();
+				}
+			}
+		}
+		return layout;
+	}
+
+	/**
+	 * Gets the physical layout for looking up an object, loading the layout
+	 * again if the object is not in it and it is older than
+	 * PHYSICAL_LAYOUT_RELOAD_INTERVAL_MS. The object may not be in the layout
+	 * that is returned, in which case the caller queries for it.
+	 *
+	 * @param objId The object id of an image, volume system, volume or file
+	 *              system.
+	 *
+	 * @return The layout.
+	 *
+	 * @throws TskCoreException If there is a problem querying the case
+	 *                          database.
+	 */
+	private PhysicalLayout getPhysicalLayout(long objId) throws TskCoreException {
+		PhysicalLayout layout = getPhysicalLayout();
+		if (!layout.contains(objId)) {
+			synchronized (physicalLayoutLock) {
+				if (layout == physicalLayout
+						&& System.currentTimeMillis() - physicalLayoutLoadTime >= PHYSICAL_LAYOUT_RELOAD_INTERVAL_MS) {
+					physicalLayout = null;
+				}
+			}
+			layout = getPhysicalLayout();
+		}
+		return layout;
+	}
+
+	/**
+	 * Discards the cached physical layout, so that it is loaded again when it
+	 * is next needed. Called when images are added.
+	 */
+	void clearPhysicalLayout() {
+		physicalLayout = null;
+	}
+
+	/**
+	 * Loads the physical layout of the images of the case, or a part of it,
+	 * with one query per table.
+	 *
+	 * @param types          The types of the objects to load: IMG, VS, VOL
+	 *                       and/or FS. Other types are ignored.
+	 * @param objIdCondition A SQL condition on the object ids of the rows to
+	 *                       load, e.g., "= 10", or null to load all rows.
+	 *
+	 * @return The layout.
+	 *
+	 * @throws TskCoreException If there is a problem querying the case
+	 *                          database.
+	 */
+	private PhysicalLayout loadPhysicalLayout(Set<ObjectType> types, String objIdCondition) throws TskCoreException {
+		List<Long> imageIds = new ArrayList<Long>();
+		List<PhysicalLayout.VolumeSystemRow> volumeSystems = new ArrayList<PhysicalLayout.VolumeSystemRow>();
+		List<PhysicalLayout.VolumeRow> volumes = new ArrayList<PhysicalLayout.VolumeRow>();
+		List<PhysicalLayout.FileSystemRow> fileSystems = new ArrayList<PhysicalLayout.FileSystemRow>();
+		CaseDbConnection connection = connections.getConnection();
 		acquireSingleUserCaseReadLock();
 		Statement s = null;
 		ResultSet rs = null;
 		try {
 			s = connection.createStatement();
+			if (types.contains(ObjectType.IMG)) {
+				rs = connection.executeQuery(s, "SELECT obj_id FROM tsk_image_info " //NON-NLS
+						+ physicalLayoutWhere("tsk_image_info", objIdCondition) + "ORDER BY obj_id"); //NON-NLS
+				while (rs.next()) {
+					imageIds.add(rs.getLong("obj_id")); //NON-NLS
+				}
+				rs.close();
+			}
 
-			// Get all the file systems.
-			List<FileSystem> allFileSystems = new ArrayList<FileSystem>();
-			try {
-				rs = connection.executeQuery(s, "SELECT * FROM tsk_fs_info"); //NON-NLS
+			if (types.contains(ObjectType.VS)) {
+				rs = connection.executeQuery(s, "SELECT tsk_vs_info.*, tsk_objects.par_obj_id FROM tsk_vs_info " //NON-NLS
+						+ "JOIN tsk_objects ON tsk_objects.obj_id = tsk_vs_info.obj_id " //NON-NLS
+						+ physicalLayoutWhere("tsk_vs_info", objIdCondition) + "ORDER BY tsk_vs_info.obj_id"); //NON-NLS
 				while (rs.next()) {
-					TskData.TSK_FS_TYPE_ENUM fsType = TskData.TSK_FS_TYPE_ENUM.valueOf(rs.getInt("fs_type")); //NON-NLS
-					FileSystem fs = new FileSystem(this, rs.getLong("obj_id"), "", rs.getLong("img_offset"), //NON-NLS
-							fsType, rs.getLong("block_size"), rs.getLong("block_count"), //NON-NLS
-							rs.getLong("root_inum"), rs.getLong("first_inum"), rs.getLong("last_inum")); //NON-NLS
-					fs.setParent(null);
-					allFileSystems.add(fs);
+					volumeSystems.add(new PhysicalLayout.VolumeSystemRow(rs.getLong("obj_id"), rs.getLong("par_obj_id"), //NON-NLS
+							rs.getLong("vs_type"), rs.getLong("img_offset"), rs.getLong("block_size"))); //NON-NLS
 				}
-			} catch (SQLException ex) {
-				logger.log(Level.SEVERE, "There was a problem while trying to obtain all file systems", ex); //NON-NLS
-			} finally {
-				closeResultSet(rs);
-				rs = null;
+				rs.close();
 			}
 
-			// For each file system, find the image to which it belongs by iteratively
-			// climbing the tsk_ojbects hierarchy only taking those file systems
-			// that belong to this image.
-			for (FileSystem fs : allFileSystems) {
-				Long imageID = null;
-				Long currentObjID = fs.getId();
-				while (imageID == null) {
+			if (types.contains(ObjectType.VOL)) {
+				rs = connection.executeQuery(s, "SELECT tsk_vs_parts.*, tsk_objects.par_obj_id FROM tsk_vs_parts " //NON-NLS
+						+ "JOIN tsk_objects ON tsk_objects.obj_id = tsk_vs_parts.obj_id " //NON-NLS
+						+ physicalLayoutWhere("tsk_vs_parts", objIdCondition) + "ORDER BY tsk_vs_parts.obj_id"); //NON-NLS
+				while (rs.next()) {
+					/**
+					 * TODO!! LANDMINE!! This allows the two types of databases
+					 * to have slightly different schemas. SQLite uses desc as
+					 * the column name in tsk_vs_parts and Postgres uses descr,
+					 * as desc is a reserved keyword in Postgres. When we have
+					 * to make a schema change, be sure to change this over to
+					 * just one name.
+					 */
+					String description;
 					try {
-						rs = connection.executeQuery(s, "SELECT * FROM tsk_objects WHERE tsk_objects.obj_id = " + currentObjID); //NON-NLS
-						rs.next();
-						currentObjID = rs.getLong("par_obj_id"); //NON-NLS
-						if (rs.getInt("type") == TskData.ObjectType.IMG.getObjectType()) { //NON-NLS
-							imageID = rs.getLong("obj_id"); //NON-NLS
-						}
-					} catch (SQLException ex) {
-						logger.log(Level.SEVERE, "There was a problem while trying to obtain this image's file systems", ex); //NON-NLS
-					} finally {
-						closeResultSet(rs);
-						rs = null;
+						description = rs.getString("desc");
+					} catch (Exception ex) {
+						description = rs.getString("descr");
 					}
+					volumes.add(new PhysicalLayout.VolumeRow(rs.getLong("obj_id"), rs.getLong("par_obj_id"), rs.getLong("addr"), //NON-NLS
+							rs.getLong("start"), rs.getLong("length"), rs.getLong("flags"), description)); //NON-NLS
 				}
+				rs.close();
+			}
 
-				// see if imageID is this image's ID
-				if (imageID == image.getId()) {
-					fileSystems.add(fs);
+			if (types.contains(ObjectType.FS)) {
+				rs = connection.executeQuery(s, "SELECT tsk_fs_info.*, tsk_objects.par_obj_id FROM tsk_fs_info " //NON-NLS
+						+ "JOIN tsk_objects ON tsk_objects.obj_id = tsk_fs_info.obj_id " //NON-NLS
+						+ physicalLayoutWhere("tsk_fs_info", objIdCondition) + "ORDER BY tsk_fs_info.obj_id"); //NON-NLS
+				while (rs.next()) {
+					fileSystems.add(new PhysicalLayout.FileSystemRow(rs.getLong("obj_id"), rs.getLong("par_obj_id"), //NON-NLS
+							rs.getLong("img_offset"), TskData.TSK_FS_TYPE_ENUM.valueOf(rs.getInt("fs_type")), //NON-NLS
+							rs.getLong("block_size"), rs.getLong("block_count"), //NON-NLS
+							rs.getLong("root_inum"), rs.getLong("first_inum"), rs.getLong("last_inum"))); //NON-NLS
 				}
 			}
+			return new PhysicalLayout(imageIds, volumeSystems, volumes, fileSystems);
 		} catch (SQLException ex) {
-			logger.log(Level.SEVERE, "Error getting case database connection", ex); //NON-NLS
+			throw new TskCoreException("Error loading the physical layout of the images", ex);
 		} finally {
 			closeResultSet(rs);
 			closeStatement(s);
 			connection.close();
 			releaseSingleUserCaseReadLock();
 		}
-		return fileSystems;
+	}
+
+	/**
+	 * Makes the WHERE clause of a query of loadPhysicalLayout().
+	 *
+	 * @param table          The table that is queried.
+	 * @param objIdCondition A SQL condition on the object ids of the rows, or
+	 *                       null for all rows.
+	 *
+	 * @return The WHERE clause followed by a space, or an empty string.
+	 */
+	private static String physicalLayoutWhere(String table, String objIdCondition) {
+		if (null == objIdCondition) {
+			return "";
+		}
+		return "WHERE " + table + ".obj_id " + objIdCondition + " "; //NON-NLS
 	}
 
 	/**
@@ -6437,6 +8557,7 @@ List<Long> getVolumeChildrenIds(Volume vol) throws TskCoreException {
 	 */
 	public Image addImageInfo(long deviceObjId, List<String> imageFilePaths, String timeZone) throws TskCoreException {
 		long imageId = this.caseHandle.addImageInfo(deviceObjId, imageFilePaths, timeZone);
+		clearPhysicalLayout();
 		return getImageById(imageId);
 	}
 
@@ -6612,53 +8733,14 @@ public void setImagePaths(long obj_id, List<String> paths) throws TskCoreExcepti
 	private List<AbstractFile> resultSetToAbstractFiles(ResultSet rs, CaseDbConnection connection) throws SQLException {
 		ArrayList<AbstractFile> results = new ArrayList<AbstractFile>();
 		try {
+			boolean withJoinedColumns = hasJoinedFileColumns(rs);
 			while (rs.next()) {
-				final short type = rs.getShort("type"); //NON-NLS
-				if (type == TSK_DB_FILES_TYPE_ENUM.FS.getFileType()
-						&& (rs.getShort("meta_type") != TSK_FS_META_TYPE_ENUM.TSK_FS_META_TYPE_VIRT_DIR.getValue())) {
-					FsContent result;
-					if (rs.getShort("meta_type") == TSK_FS_META_TYPE_ENUM.TSK_FS_META_TYPE_DIR.getValue()) { //NON-NLS
-						result = directory(rs, null);
-					} else {
-						result = file(rs, null);
+				AbstractFile result = resultSetRowToAbstractFile(rs, connection, withJoinedColumns);
+				if (null != result) {
+					if (withJoinedColumns) {
+						setStoredUniquePath(result, rs);
 					}
 					results.add(result);
-				} else if (type == TSK_DB_FILES_TYPE_ENUM.VIRTUAL_DIR.getFileType()
-						|| (rs.getShort("meta_type") == TSK_FS_META_TYPE_ENUM.TSK_FS_META_TYPE_VIRT_DIR.getValue())) { //NON-NLS
-					final VirtualDirectory virtDir = virtualDirectory(rs);
-					results.add(virtDir);
-				} else if (type == TSK_DB_FILES_TYPE_ENUM.LOCAL_DIR.getFileType()) {
-					final LocalDirectory localDir = localDirectory(rs);
-					results.add(localDir);
-				} else if (type == TSK_DB_FILES_TYPE_ENUM.UNALLOC_BLOCKS.getFileType()
-						|| type == TSK_DB_FILES_TYPE_ENUM.UNUSED_BLOCKS.getFileType()
-						|| type == TSK_DB_FILES_TYPE_ENUM.CARVED.getFileType()) {
-					TSK_DB_FILES_TYPE_ENUM atype = TSK_DB_FILES_TYPE_ENUM.valueOf(type);
-					String parentPath = rs.getString("parent_path"); //NON-NLS
-					if (parentPath == null) {
-						parentPath = "/"; //NON-NLS
-					}
-					LayoutFile lf = new LayoutFile(this,
-							rs.getLong("obj_id"), //NON-NLS
-							rs.getLong("data_source_obj_id"),
-							rs.getString("name"), //NON-NLS
-							atype,
-							TSK_FS_NAME_TYPE_ENUM.valueOf(rs.getShort("dir_type")), TSK_FS_META_TYPE_ENUM.valueOf(rs.getShort("meta_type")), //NON-NLS
-							TSK_FS_NAME_FLAG_ENUM.valueOf(rs.getShort("dir_flags")), rs.getShort("meta_flags"), //NON-NLS
-							rs.getLong("size"), //NON-NLS
-							rs.getString("md5"), FileKnown.valueOf(rs.getByte("known")), parentPath, rs.getString("mime_type")); //NON-NLS
-					results.add(lf);
-				} else if (type == TSK_DB_FILES_TYPE_ENUM.DERIVED.getFileType()) {
-					final DerivedFile df;
-					df = derivedFile(rs, connection, AbstractContent.UNKNOWN_ID);
-					results.add(df);
-				} else if (type == TSK_DB_FILES_TYPE_ENUM.LOCAL.getFileType()) {
-					final LocalFile lf;
-					lf = localFile(rs, connection, AbstractContent.UNKNOWN_ID);
-					results.add(lf);
-				} else if (type == TSK_DB_FILES_TYPE_ENUM.SLACK.getFileType()) {
-					final SlackFile sf = slackFile(rs, null);
-					results.add(sf);
 				}
 			} //end for each resultSet
 		} catch (SQLException e) {
@@ -6668,6 +8750,61 @@ private List<AbstractFile> resultSetToAbstractFiles(ResultSet rs, CaseDbConnecti
 		return results;
 	}
 
+	/**
+	 * Creates an AbstractFile object for the current row of the result set of
+	 * a tsk_files table query of the form "SELECT * FROM tsk_files WHERE XYZ".
+	 *
+	 * @param rs                A result set from a query of the tsk_files table
+	 *                          of the form "SELECT * FROM tsk_files WHERE XYZ".
+	 * @param connection        A case database connection.
+	 * @param withJoinedColumns True if the result set has the columns of
+	 *                          JOINED_FILE_COLUMNS, see hasJoinedFileColumns().
+	 *
+	 * @return An AbstractFile object, or null if the file type is not known.
+	 *
+	 * @throws SQLException Thrown if there is a problem reading the row.
+	 */
+	private AbstractFile resultSetRowToAbstractFile(ResultSet rs, CaseDbConnection connection, boolean withJoinedColumns) throws SQLException {
+		final short type = rs.getShort("type"); //NON-NLS
+		if (type == TSK_DB_FILES_TYPE_ENUM.FS.getFileType()
+				&& (rs.getShort("meta_type") != TSK_FS_META_TYPE_ENUM.TSK_FS_META_TYPE_VIRT_DIR.getValue())) {
+			if (rs.getShort("meta_type") == TSK_FS_META_TYPE_ENUM.TSK_FS_META_TYPE_DIR.getValue()) { //NON-NLS
+				return directory(rs, null);
+			} else {
+				return file(rs, null);
+			}
+		} else if (type == TSK_DB_FILES_TYPE_ENUM.VIRTUAL_DIR.getFileType()
+				|| (rs.getShort("meta_type") == TSK_FS_META_TYPE_ENUM.TSK_FS_META_TYPE_VIRT_DIR.getValue())) { //NON-NLS
+			return virtualDirectory(rs);
+		} else if (type == TSK_DB_FILES_TYPE_ENUM.LOCAL_DIR.getFileType()) {
+			return localDirectory(rs);
+		} else if (type == TSK_DB_FILES_TYPE_ENUM.UNALLOC_BLOCKS.getFileType()
+				|| type == TSK_DB_FILES_TYPE_ENUM.UNUSED_BLOCKS.getFileType()
+				|| type == TSK_DB_FILES_TYPE_ENUM.CARVED.getFileType()) {
+			TSK_DB_FILES_TYPE_ENUM atype = TSK_DB_FILES_TYPE_ENUM.valueOf(type);
+			String parentPath = rs.getString("parent_path"); //NON-NLS
+			if (parentPath == null) {
+				parentPath = "/"; //NON-NLS
+			}
+			return new LayoutFile(this,
+					rs.getLong("obj_id"), //NON-NLS
+					rs.getLong("data_source_obj_id"),
+					rs.getString("name"), //NON-NLS
+					atype,
+					TSK_FS_NAME_TYPE_ENUM.valueOf(rs.getShort("dir_type")), TSK_FS_META_TYPE_ENUM.valueOf(rs.getShort("meta_type")), //NON-NLS
+					TSK_FS_NAME_FLAG_ENUM.valueOf(rs.getShort("dir_flags")), rs.getShort("meta_flags"), //NON-NLS
+					rs.getLong("size"), //NON-NLS
+					rs.getString("md5"), FileKnown.valueOf(rs.getByte("known")), parentPath, rs.getString("mime_type")); //NON-NLS
+		} else if (type == TSK_DB_FILES_TYPE_ENUM.DERIVED.getFileType()) {
+			return derivedFile(rs, connection, AbstractContent.UNKNOWN_ID, withJoinedColumns);
+		} else if (type == TSK_DB_FILES_TYPE_ENUM.LOCAL.getFileType()) {
+			return localFile(rs, connection, AbstractContent.UNKNOWN_ID, withJoinedColumns);
+		} else if (type == TSK_DB_FILES_TYPE_ENUM.SLACK.getFileType()) {
+			return slackFile(rs, null);
+		}
+		return null;
+	}
+
 	// This following methods generate AbstractFile objects from a ResultSet
 	/**
 	 * Create a File object from the result set containing query results on
@@ -6772,25 +8909,70 @@ LocalDirectory localDirectory(ResultSet rs) throws SQLException {
 		return ld;
 	}
 
+	/**
+	 * Sets the unique path of a file to the path stored for it by
+	 * storeUniquePaths(), if any.
+	 *
+	 * @param file The file.
+	 * @param rs   The result set the file was created from, positioned on its
+	 *             row, which must have the columns of JOINED_FILE_COLUMNS.
+	 *
+	 * @throws SQLException if the row cannot be read.
+	 */
+	private static void setStoredUniquePath(AbstractContent file, ResultSet rs) throws SQLException {
+		String uniquePath = rs.getString("stored_unique_path"); //NON-NLS
+		if (null != uniquePath) {
+			file.setUniquePath(uniquePath);
+		}
+	}
+
+	/**
+	 * Indicates whether a result set of a tsk_files query also has the columns
+	 * selected with JOINED_FILE_COLUMNS.
+	 *
+	 * @param rs The result set.
+	 *
+	 * @return True if the joined columns are present.
+	 *
+	 * @throws SQLException if the columns of the result set cannot be read.
+	 */
+	private static boolean hasJoinedFileColumns(ResultSet rs) throws SQLException {
+		ResultSetMetaData metaData = rs.getMetaData();
+		for (int i = 1; i <= metaData.getColumnCount(); i++) {
+			if ("local_path".equalsIgnoreCase(metaData.getColumnLabel(i))) { //NON-NLS
+				return true;
+			}
+		}
+		return false;
+	}
+
 	/**
 	 * Creates a DerivedFile object using the values of a given result set.
 	 *
-	 * @param rs         The result set.
-	 * @param connection The case database connection.
-	 * @param parentId   The parent id for the derived file or
-	 *                   AbstractContent.UNKNOWN_ID.
+	 * @param rs                The result set.
+	 * @param connection        The case database connection.
+	 * @param parentId          The parent id for the derived file or
+	 *                          AbstractContent.UNKNOWN_ID.
+	 * @param withJoinedColumns True if the result set has the columns of
+	 *                          JOINED_FILE_COLUMNS, false to query for the
+	 *                          local path.
 	 *
 	 * @return The DerivedFile object.
 	 *
 	 * @throws SQLException if there is an error reading from the result set or
 	 *                      doing additional queries.
 	 */
-	private DerivedFile derivedFile(ResultSet rs, CaseDbConnection connection, long parentId) throws SQLException {
+	private DerivedFile derivedFile(ResultSet rs, CaseDbConnection connection, long parentId, boolean withJoinedColumns) throws SQLException {
 		boolean hasLocalPath = rs.getBoolean("has_path"); //NON-NLS
 		long objId = rs.getLong("obj_id"); //NON-NLS
 		String localPath = null;
 		TskData.EncodingType encodingType = TskData.EncodingType.NONE;
-		if (hasLocalPath) {
+		if (hasLocalPath && withJoinedColumns) {
+			localPath = rs.getString("local_path"); //NON-NLS
+			if (null != localPath) {
+				encodingType = TskData.EncodingType.valueOf(rs.getInt("local_path_encoding_type")); //NON-NLS
+			}
+		} else if (hasLocalPath) {
 			ResultSet rsFilePath = null;
 			acquireSingleUserCaseReadLock();
 			try {
@@ -6829,21 +9011,30 @@ private DerivedFile derivedFile(ResultSet rs, CaseDbConnection connection, long
 	/**
 	 * Creates a LocalFile object using the data from a given result set.
 	 *
-	 * @param rs         The result set.
-	 * @param connection The case database connection.
-	 * @param parentId   The parent id for the derived file or
-	 *                   AbstractContent.UNKNOWN_ID.
+	 * @param rs                The result set.
+	 * @param connection        The case database connection.
+	 * @param parentId          The parent id for the derived file or
+	 *                          AbstractContent.UNKNOWN_ID.
+	 * @param withJoinedColumns True if the result set has the columns of
+	 *                          JOINED_FILE_COLUMNS, false to query for the
+	 *                          local path.
 	 *
 	 * @return The LocalFile object.
 	 *
 	 * @throws SQLException if there is an error reading from the result set or
 	 *                      doing additional queries.
 	 */
-	private LocalFile localFile(ResultSet rs, CaseDbConnection connection, long parentId) throws SQLException {
+	private LocalFile localFile(ResultSet rs, CaseDbConnection connection, long parentId, boolean withJoinedColumns) throws SQLException {
 		long objId = rs.getLong("obj_id"); //NON-NLS
 		String localPath = null;
 		TskData.EncodingType encodingType = TskData.EncodingType.NONE;
-		if (rs.getBoolean("has_path")) {
+		boolean hasLocalPath = rs.getBoolean("has_path"); //NON-NLS
+		if (hasLocalPath && withJoinedColumns) {
+			localPath = rs.getString("local_path"); //NON-NLS
+			if (null != localPath) {
+				encodingType = TskData.EncodingType.valueOf(rs.getInt("local_path_encoding_type")); //NON-NLS
+			}
+		} else if (hasLocalPath) {
 			ResultSet rsFilePath = null;
 			acquireSingleUserCaseReadLock();
 			try {
@@ -6920,71 +9111,85 @@ org.sleuthkit.datamodel.SlackFile slackFile(ResultSet rs, FileSystem fs) throws
 	 */
 	List<Content> fileChildren(ResultSet rs, CaseDbConnection connection, long parentId) throws SQLException {
 		List<Content> children = new ArrayList<Content>();
-
+		boolean withJoinedColumns = hasJoinedFileColumns(rs);
 		while (rs.next()) {
-			TskData.TSK_DB_FILES_TYPE_ENUM type = TskData.TSK_DB_FILES_TYPE_ENUM.valueOf(rs.getShort("type"));
+			Content child = fileChild(rs, connection, parentId, withJoinedColumns);
+			if (null != child) {
+				children.add(child);
+			}
+		}
+		return children;
+	}
 
-			if (null != type) {
-				switch (type) {
-					case FS:
-						if (rs.getShort("meta_type") != TSK_FS_META_TYPE_ENUM.TSK_FS_META_TYPE_VIRT_DIR.getValue()) {
-							FsContent result;
-							if (rs.getShort("meta_type") == TSK_FS_META_TYPE_ENUM.TSK_FS_META_TYPE_DIR.getValue()) {
-								result = directory(rs, null);
-							} else {
-								result = file(rs, null);
-							}
-							children.add(result);
+	/**
+	 * Creates the file object for the current row of a result set of
+	 * selecting files.
+	 *
+	 * @param rs                The result set.
+	 * @param connection        The connection the result set is from.
+	 * @param parentId          The object id of the parent of the file.
+	 * @param withJoinedColumns True if the result set has the columns of
+	 *                          JOINED_FILE_COLUMNS.
+	 *
+	 * @return The file, or null if the row is not of a known type of file.
+	 *
+	 * @throws SQLException
+	 */
+	private Content fileChild(ResultSet rs, CaseDbConnection connection, long parentId, boolean withJoinedColumns) throws SQLException {
+		Content child = null;
+		TskData.TSK_DB_FILES_TYPE_ENUM type = TskData.TSK_DB_FILES_TYPE_ENUM.valueOf(rs.getShort("type"));
+		if (null != type) {
+			switch (type) {
+				case FS:
+					if (rs.getShort("meta_type") != TSK_FS_META_TYPE_ENUM.TSK_FS_META_TYPE_VIRT_DIR.getValue()) {
+						if (rs.getShort("meta_type") == TSK_FS_META_TYPE_ENUM.TSK_FS_META_TYPE_DIR.getValue()) {
+							child = directory(rs, null);
 						} else {
-							VirtualDirectory virtDir = virtualDirectory(rs);
-							children.add(virtDir);
-						}
-						break;
-					case VIRTUAL_DIR:
-						VirtualDirectory virtDir = virtualDirectory(rs);
-						children.add(virtDir);
-						break;
-					case LOCAL_DIR:
-						LocalDirectory localDir = localDirectory(rs);
-						children.add(localDir);
-						break;
-					case UNALLOC_BLOCKS:
-					case UNUSED_BLOCKS:
-					case CARVED: {
-						String parentPath = rs.getString("parent_path");
-						if (parentPath == null) {
-							parentPath = "";
+							child = file(rs, null);
 						}
-						final LayoutFile lf = new LayoutFile(this, rs.getLong("obj_id"),
-								rs.getLong("data_source_obj_id"), rs.getString("name"), type,
-								TSK_FS_NAME_TYPE_ENUM.valueOf(rs.getShort("dir_type")),
-								TSK_FS_META_TYPE_ENUM.valueOf(rs.getShort("meta_type")),
-								TSK_FS_NAME_FLAG_ENUM.valueOf(rs.getShort("dir_flags")), rs.getShort("meta_flags"),
-								rs.getLong("size"), rs.getString("md5"),
-								FileKnown.valueOf(rs.getByte("known")), parentPath, rs.getString("mime_type"));
-						children.add(lf);
-						break;
-					}
-					case DERIVED:
-						final DerivedFile df = derivedFile(rs, connection, parentId);
-						children.add(df);
-						break;
-					case LOCAL: {
-						final LocalFile lf = localFile(rs, connection, parentId);
-						children.add(lf);
-						break;
+					} else {
+						child = virtualDirectory(rs);
 					}
-					case SLACK: {
-						final SlackFile sf = slackFile(rs, null);
-						children.add(sf);
-						break;
+					break;
+				case VIRTUAL_DIR:
+					child = virtualDirectory(rs);
+					break;
+				case LOCAL_DIR:
+					child = localDirectory(rs);
+					break;
+				case UNALLOC_BLOCKS:
+				case UNUSED_BLOCKS:
+				case CARVED: {
+					String parentPath = rs.getString("parent_path");
+					if (parentPath == null) {
+						parentPath = "";
 					}
-					default:
-						break;
+					child = new LayoutFile(this, rs.getLong("obj_id"),
+							rs.getLong("data_source_obj_id"), rs.getString("name"), type,
+							TSK_FS_NAME_TYPE_ENUM.valueOf(rs.getShort("dir_type")),
+							TSK_FS_META_TYPE_ENUM.valueOf(rs.getShort("meta_type")),
+							TSK_FS_NAME_FLAG_ENUM.valueOf(rs.getShort("dir_flags")), rs.getShort("meta_flags"),
+							rs.getLong("size"), rs.getString("md5"),
+							FileKnown.valueOf(rs.getByte("known")), parentPath, rs.getString("mime_type"));
+					break;
 				}
+				case DERIVED:
+					child = derivedFile(rs, connection, parentId, withJoinedColumns);
+					break;
+				case LOCAL:
+					child = localFile(rs, connection, parentId, withJoinedColumns);
+					break;
+				case SLACK:
+					child = slackFile(rs, null);
+					break;
+				default:
+					break;
 			}
 		}
-		return children;
+		if (withJoinedColumns && null != child) {
+			setStoredUniquePath((AbstractContent) child, rs);
+		}
+		return child;
 	}
 
 	/**
@@ -7098,6 +9303,7 @@ public synchronized void close() {
 		}
 
 		fileSystemIdMap.clear();
+		physicalLayout = null;
 
 		try {
 			if (this.caseHandle != null) {
@@ -7123,57 +9329,191 @@ public synchronized void close() {
 	 * @throws TskCoreException thrown if a critical error occurred within tsk
 	 *                          core
 	 */
-	public boolean setKnown(AbstractFile file, FileKnown fileKnown) throws TskCoreException {
-		long id = file.getId();
-		FileKnown currentKnown = file.getKnown();
-		if (currentKnown.compareTo(fileKnown) > 0) {
-			return false;
+	public boolean setKnown(AbstractFile file, FileKnown fileKnown) throws TskCoreException {
+		long id = file.getId();
+		FileKnown currentKnown = file.getKnown();
+		if (currentKnown.compareTo(fileKnown) > 0) {
+			return false;
+		}
+		CaseDbConnection connection = connections.getConnection();
+		acquireSingleUserCaseWriteLock();
+		Statement statement = null;
+		try {
+			statement = connection.createStatement();
+			connection.executeUpdate(statement, "UPDATE tsk_files " //NON-NLS
+					+ "SET known='" + fileKnown.getFileKnownValue() + "' " //NON-NLS
+					+ "WHERE obj_id=" + id); //NON-NLS
+			file.setKnown(fileKnown);
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error setting Known status.", ex);
+		} finally {
+			closeStatement(statement);
+			connection.close();
+			releaseSingleUserCaseWriteLock();
+		}
+		return true;
+	}
+
+	/**
+	 * Stores the MIME type of a file in the case database and updates the MIME
+	 * type of the given file object.
+	 *
+	 * @param file     A file.
+	 * @param mimeType The MIME type.
+	 *
+	 * @throws TskCoreException If there is an error updating the case database.
+	 */
+	public void setFileMIMEType(AbstractFile file, String mimeType) throws TskCoreException {
+		CaseDbConnection connection = connections.getConnection();
+		Statement statement = null;
+		ResultSet rs = null;
+		acquireSingleUserCaseWriteLock();
+		try {
+			connection.beginTransaction();
+			DataSourceStats.Increments statsIncrements = new DataSourceStats.Increments();
+			addFileStatsFromCaseDb(Collections.singletonList(file.getId()), -1, connection, statsIncrements);
+			statement = connection.createStatement();
+			connection.executeUpdate(statement, String.format("UPDATE tsk_files SET mime_type = '%s' WHERE obj_id = %d", mimeType, file.getId()));
+			addFileStatsFromCaseDb(Collections.singletonList(file.getId()), 1, connection, statsIncrements);
+			updateDataSourceStats(statsIncrements, connection);
+			connection.commitTransaction();
+			file.setMIMEType(mimeType);
+		} catch (SQLException ex) {
+			connection.rollbackTransaction();
+			throw new TskCoreException(String.format("Error setting MIME type for file (obj_id = %s)", file.getId()), ex);
+		} finally {
+			closeResultSet(rs);
+			closeStatement(statement);
+			connection.close();
+			releaseSingleUserCaseWriteLock();
+		}
+	}
+
+	/**
+	 * Stores the known status of many files in the case database as one batch
+	 * in a single transaction. As with setKnown(AbstractFile, FileKnown), a
+	 * status is not lowered, e.g., a file that is already 'Known Bad' keeps
+	 * that status.
+	 *
+	 * @param knownStatuses The known status for each file, by file object ID.
+	 *
+	 * @throws TskCoreException If there is an error updating the case database.
+	 */
+	public void setKnown(Map<Long, FileKnown> knownStatuses) throws TskCoreException {
+		setKnown(knownStatuses, Collections.<AbstractFile>emptyList());
+	}
+
+	/**
+	 * Stores the known status of many files in the case database as one batch
+	 * in a single transaction, and updates the given file objects to match. As
+	 * with setKnown(AbstractFile, FileKnown), a status is not lowered, e.g., a
+	 * file that is already 'Known Bad' keeps that status.
+	 *
+	 * @param knownStatuses The known status for each file, by file object ID.
+	 * @param files         File objects held by the caller whose known status
+	 *                      should be updated along with the database.
+	 *
+	 * @throws TskCoreException If there is an error updating the case database.
+	 */
+	public void setKnown(Map<Long, FileKnown> knownStatuses, Collection<? extends AbstractFile> files) throws TskCoreException {
+		if (knownStatuses.isEmpty()) {
+			return;
 		}
 		CaseDbConnection connection = connections.getConnection();
 		acquireSingleUserCaseWriteLock();
-		Statement statement = null;
 		try {
-			statement = connection.createStatement();
-			connection.executeUpdate(statement, "UPDATE tsk_files " //NON-NLS
-					+ "SET known='" + fileKnown.getFileKnownValue() + "' " //NON-NLS
-					+ "WHERE obj_id=" + id); //NON-NLS
-			file.setKnown(fileKnown);
+			connection.beginTransaction();
+			// UPDATE tsk_files SET known = ? WHERE obj_id = ? AND (known IS NULL OR known <= ?)
+			PreparedStatement statement = connection.getPreparedStatement(PREPARED_STATEMENT.UPDATE_FILE_KNOWN);
+			statement.clearParameters();
+			int batchCount = 0;
+			for (Map.Entry<Long, FileKnown> entry : knownStatuses.entrySet()) {
+				statement.setByte(1, entry.getValue().getFileKnownValue());
+				statement.setLong(2, entry.getKey());
+				statement.setByte(3, entry.getValue().getFileKnownValue());
+				statement.addBatch();
+				if (++batchCount % MAX_BATCH_SIZE == 0) {
+					connection.executeBatch(statement);
+				}
+			}
+			connection.executeBatch(statement);
+			connection.commitTransaction();
 		} catch (SQLException ex) {
-			throw new TskCoreException("Error setting Known status.", ex);
+			connection.rollbackTransaction();
+			throw new TskCoreException("Error setting known status of files", ex);
 		} finally {
-			closeStatement(statement);
 			connection.close();
 			releaseSingleUserCaseWriteLock();
 		}
-		return true;
+		for (AbstractFile file : files) {
+			FileKnown fileKnown = knownStatuses.get(file.getId());
+			if (fileKnown != null && file.getKnown().compareTo(fileKnown) <= 0) {
+				file.setKnown(fileKnown);
+			}
+		}
 	}
 
 	/**
-	 * Stores the MIME type of a file in the case database and updates the MIME
-	 * type of the given file object.
+	 * Stores the MIME types of many files in the case database as one batch
+	 * in a single transaction.
 	 *
-	 * @param file     A file.
-	 * @param mimeType The MIME type.
+	 * @param mimeTypes The MIME type for each file, by file object ID.
 	 *
 	 * @throws TskCoreException If there is an error updating the case database.
 	 */
-	public void setFileMIMEType(AbstractFile file, String mimeType) throws TskCoreException {
+	public void setFileMIMETypes(Map<Long, String> mimeTypes) throws TskCoreException {
+		setFileMIMETypes(mimeTypes, Collections.<AbstractFile>emptyList());
+	}
+
+	/**
+	 * Stores the MIME types of many files in the case database as one batch
+	 * in a single transaction, and updates the given file objects to match.
+	 *
+	 * @param mimeTypes The MIME type for each file, by file object ID.
+	 * @param files     File objects held by the caller whose MIME type should
+	 *                  be updated along with the database.
+	 *
+	 * @throws TskCoreException If there is an error updating the case database.
+	 */
+	public void setFileMIMETypes(Map<Long, String> mimeTypes, Collection<? extends AbstractFile> files) throws TskCoreException {
+		if (mimeTypes.isEmpty()) {
+			return;
+		}
 		CaseDbConnection connection = connections.getConnection();
-		Statement statement = null;
-		ResultSet rs = null;
 		acquireSingleUserCaseWriteLock();
 		try {
-			statement = connection.createStatement();
-			connection.executeUpdate(statement, String.format("UPDATE tsk_files SET mime_type = '%s' WHERE obj_id = %d", mimeType, file.getId()));
-			file.setMIMEType(mimeType);
+			connection.beginTransaction();
+			DataSourceStats.Increments statsIncrements = new DataSourceStats.Increments();
+			addFileStatsFromCaseDb(mimeTypes.keySet(), -1, connection, statsIncrements);
+			// UPDATE tsk_files SET mime_type = ? WHERE obj_id = ?
+			PreparedStatement statement = connection.getPreparedStatement(PREPARED_STATEMENT.UPDATE_FILE_MIME_TYPE);
+			statement.clearParameters();
+			int batchCount = 0;
+			for (Map.Entry<Long, String> entry : mimeTypes.entrySet()) {
+				statement.setString(1, entry.getValue());
+				statement.setLong(2, entry.getKey());
+				statement.addBatch();
+				if (++batchCount % MAX_BATCH_SIZE == 0) {
+					connection.executeBatch(statement);
+				}
+			}
+			connection.executeBatch(statement);
+			addFileStatsFromCaseDb(mimeTypes.keySet(), 1, connection, statsIncrements);
+			updateDataSourceStats(statsIncrements, connection);
+			connection.commitTransaction();
 		} catch (SQLException ex) {
-			throw new TskCoreException(String.format("Error setting MIME type for file (obj_id = %s)", file.getId()), ex);
+			connection.rollbackTransaction();
+			throw new TskCoreException("Error setting MIME types of files", ex);
 		} finally {
-			closeResultSet(rs);
-			closeStatement(statement);
 			connection.close();
 			releaseSingleUserCaseWriteLock();
 		}
+		for (AbstractFile file : files) {
+			String mimeType = mimeTypes.get(file.getId());
+			if (mimeType != null) {
+				file.setMIMEType(mimeType);
+			}
+		}
 	}
 
 	/**
@@ -7207,6 +9547,95 @@ void setMd5Hash(AbstractFile file, String md5Hash) throws TskCoreException {
 		}
 	}
 
+	/**
+	 * Stores calculated hashes of an image in the tsk_image_info table.
+	 *
+	 * @param image  The image.
+	 * @param hashes The lower case hex hashes to store, by algorithm.
+	 *
+	 * @throws TskCoreException thrown if a critical error occurred within tsk
+	 *                          core
+	 */
+	void setImageHashes(Image image, Map<HashUtility.HashType, String> hashes) throws TskCoreException {
+		if (hashes.isEmpty()) {
+			return;
+		}
+		CaseDbConnection connection = connections.getConnection();
+		acquireSingleUserCaseWriteLock();
+		try {
+			connection.beginTransaction();
+			for (Map.Entry<HashUtility.HashType, String> entry : hashes.entrySet()) {
+				PreparedStatement statement = connection.getPreparedStatement(getUpdateImageHashStatement(entry.getKey()));
+				statement.clearParameters();
+				statement.setString(1, entry.getValue().toLowerCase());
+				statement.setLong(2, image.getId());
+				connection.executeUpdate(statement);
+			}
+			connection.commitTransaction();
+		} catch (SQLException ex) {
+			connection.rollbackTransaction();
+			throw new TskCoreException(String.format("Error setting hashes for image (obj_id = %d)", image.getId()), ex);
+		} finally {
+			connection.close();
+			releaseSingleUserCaseWriteLock();
+		}
+	}
+
+	/**
+	 * Gets a hash of an image from the tsk_image_info table.
+	 *
+	 * @param image    The image.
+	 * @param hashType The hash algorithm.
+	 *
+	 * @return The hash, or null if none is stored.
+	 *
+	 * @throws TskCoreException thrown if a critical error occurred within tsk
+	 *                          core
+	 */
+	String getImageHash(Image image, HashUtility.HashType hashType) throws TskCoreException {
+		CaseDbConnection connection = connections.getConnection();
+		acquireSingleUserCaseReadLock();
+		ResultSet rs = null;
+		try {
+			PreparedStatement statement = connection.getPreparedStatement(getSelectImageHashStatement(hashType));
+			statement.clearParameters();
+			statement.setLong(1, image.getId());
+			rs = connection.executeQuery(statement);
+			if (rs.next()) {
+				return rs.getString(1);
+			}
+			return null;
+		} catch (SQLException ex) {
+			throw new TskCoreException(String.format("Error getting %s hash for image (obj_id = %d)", hashType.getAlgorithm(), image.getId()), ex);
+		} finally {
+			closeResultSet(rs);
+			connection.close();
+			releaseSingleUserCaseReadLock();
+		}
+	}
+
+	private static PREPARED_STATEMENT getUpdateImageHashStatement(HashUtility.HashType hashType) {
+		switch (hashType) {
+			case MD5:
+				return PREPARED_STATEMENT.UPDATE_IMAGE_MD5;
+			case SHA1:
+				return PREPARED_STATEMENT.UPDATE_IMAGE_SHA1;
+			default:
+				return PREPARED_STATEMENT.UPDATE_IMAGE_SHA256;
+		}
+	}
+
+	private static PREPARED_STATEMENT getSelectImageHashStatement(HashUtility.HashType hashType) {
+		switch (hashType) {
+			case MD5:
+				return PREPARED_STATEMENT.SELECT_IMAGE_MD5;
+			case SHA1:
+				return PREPARED_STATEMENT.SELECT_IMAGE_SHA1;
+			default:
+				return PREPARED_STATEMENT.SELECT_IMAGE_SHA256;
+		}
+	}
+
 	/**
 	 * Set the review status of the given artifact to newStatus
 	 *
@@ -7311,7 +9740,7 @@ public List<AbstractFile> findFilesByMd5(String md5Hash) {
 		ResultSet rs = null;
 		try {
 			s = connection.createStatement();
-			rs = connection.executeQuery(s, "SELECT * FROM tsk_files WHERE " //NON-NLS
+			rs = connection.executeQuery(s, "SELECT * FROM " + FILES_WITH_JOINED_COLUMNS + " WHERE " //NON-NLS
 					+ " md5 = '" + md5Hash.toLowerCase() + "' " //NON-NLS
 					+ "AND size > 0"); //NON-NLS
 			return resultSetToAbstractFiles(rs, connection);
@@ -7401,6 +9830,226 @@ public int countFilesMd5Hashed() {
 
 	}
 
+	/**
+	 * Stores the fuzzy (ssdeep style) hash of a file in the case database and
+	 * adds it to the similarity index used by findSimilarFiles(). Any fuzzy
+	 * hash previously stored for the file is replaced.
+	 *
+	 * @param file      The file.
+	 * @param fuzzyHash The hash in "blocksize:signature1:signature2" form, as
+	 *                  calculated by HashUtility.calculateFuzzyHash().
+	 *
+	 * @throws TskCoreException If there is an error updating the case database.
+	 */
+	public void setFuzzyHash(AbstractFile file, String fuzzyHash) throws TskCoreException {
+		Map<Long, Set<Integer>> indexKeys;
+		try {
+			indexKeys = FuzzyHash.getIndexKeys(fuzzyHash);
+		} catch (IllegalArgumentException ex) {
+			throw new TskCoreException(String.format("Invalid fuzzy hash for file (obj_id = %d)", file.getId()), ex);
+		}
+		CaseDbConnection connection = connections.getConnection();
+		acquireSingleUserCaseWriteLock();
+		try {
+			connection.beginTransaction();
+			PreparedStatement statement = connection.getPreparedStatement(PREPARED_STATEMENT.DELETE_FUZZY_HASH_GRAMS);
+			statement.clearParameters();
+			statement.setLong(1, file.getId());
+			connection.executeUpdate(statement);
+
+			statement = connection.getPreparedStatement(PREPARED_STATEMENT.DELETE_FUZZY_HASH);
+			statement.clearParameters();
+			statement.setLong(1, file.getId());
+			connection.executeUpdate(statement);
+
+			// INSERT INTO tsk_files_fuzzy_hash (obj_id, block_size, fuzzy_hash) VALUES (?, ?, ?)
+			statement = connection.getPreparedStatement(PREPARED_STATEMENT.INSERT_FUZZY_HASH);
+			statement.clearParameters();
+			statement.setLong(1, file.getId());
+			statement.setLong(2, FuzzyHash.getBlockSize(fuzzyHash));
+			statement.setString(3, fuzzyHash);
+			connection.executeUpdate(statement);
+
+			// INSERT INTO tsk_files_fuzzy_hash_grams (obj_id, block_size, gram) VALUES (?, ?, ?)
+			statement = connection.getPreparedStatement(PREPARED_STATEMENT.INSERT_FUZZY_HASH_GRAM);
+			statement.clearParameters();
+			for (Map.Entry<Long, Set<Integer>> entry : indexKeys.entrySet()) {
+				for (Integer gram : entry.getValue()) {
+					statement.setLong(1, file.getId());
+					statement.setLong(2, entry.getKey());
+					statement.setInt(3, gram);
+					statement.addBatch();
+				}
+			}
+			connection.executeBatch(statement);
+			connection.commitTransaction();
+		} catch (SQLException ex) {
+			connection.rollbackTransaction();
+			throw new TskCoreException(String.format("Error setting fuzzy hash for file (obj_id = %d)", file.getId()), ex);
+		} finally {
+			connection.close();
+			releaseSingleUserCaseWriteLock();
+		}
+	}
+
+	/**
+	 * Gets the fuzzy hash stored for a file.
+	 *
+	 * @param file The file.
+	 *
+	 * @return The hash in "blocksize:signature1:signature2" form, or null if
+	 *         no fuzzy hash has been stored for the file.
+	 *
+	 * @throws TskCoreException If there is an error querying the case
+	 *                          database.
+	 */
+	public String getFuzzyHash(AbstractFile file) throws TskCoreException {
+		CaseDbConnection connection = connections.getConnection();
+		acquireSingleUserCaseReadLock();
+		ResultSet rs = null;
+		try {
+			// SELECT fuzzy_hash FROM tsk_files_fuzzy_hash WHERE obj_id = ?
+			PreparedStatement statement = connection.getPreparedStatement(PREPARED_STATEMENT.SELECT_FUZZY_HASH);
+			statement.clearParameters();
+			statement.setLong(1, file.getId());
+			rs = connection.executeQuery(statement);
+			if (rs.next()) {
+				return rs.getString("fuzzy_hash");
+			}
+			return null;
+		} catch (SQLException ex) {
+			throw new TskCoreException(String.format("Error getting fuzzy hash for file (obj_id = %d)", file.getId()), ex);
+		} finally {
+			closeResultSet(rs);
+			connection.close();
+			releaseSingleUserCaseReadLock();
+		}
+	}
+
+	/**
+	 * Finds the files whose stored fuzzy hash is similar to that of the given
+	 * file. Only the files that share a signature run with the given file in
+	 * the similarity index are compared, so the cost of the search depends on
+	 * the number of candidates rather than on the number of hashed files.
+	 *
+	 * @param file      The file, which must have a stored fuzzy hash.
+	 * @param threshold The minimum match score, from 1 to 100, of the files
+	 *                  to return.
+	 *
+	 * @return The similar files, not including the given file, sorted by
+	 *         decreasing match score. The list is empty if the file has no
+	 *         stored fuzzy hash.
+	 *
+	 * @throws TskCoreException If there is an error querying the case
+	 *                          database.
+	 */
+	public List<FuzzyHash.Match> findSimilarFiles(AbstractFile file, int threshold) throws TskCoreException {
+		String fuzzyHash = getFuzzyHash(file);
+		if (fuzzyHash == null) {
+			return Collections.<FuzzyHash.Match>emptyList();
+		}
+		List<FuzzyHash.Match> matches = findSimilarFiles(fuzzyHash, threshold);
+		Iterator<FuzzyHash.Match> iterator = matches.iterator();
+		while (iterator.hasNext()) {
+			if (iterator.next().getFile().getId() == file.getId()) {
+				iterator.remove();
+			}
+		}
+		return matches;
+	}
+
+	/**
+	 * Finds the files whose stored fuzzy hash is similar to the given hash.
+	 * Only the files that share a signature run with the hash in the
+	 * similarity index are compared.
+	 *
+	 * @param fuzzyHash A hash in "blocksize:signature1:signature2" form.
+	 * @param threshold The minimum match score, from 1 to 100, of the files to
+	 *                  return.
+	 *
+	 * @return The similar files, sorted by decreasing match score.
+	 *
+	 * @throws TskCoreException If there is an error querying the case
+	 *                          database.
+	 */
+	public List<FuzzyHash.Match> findSimilarFiles(String fuzzyHash, int threshold) throws TskCoreException {
+		if (threshold < 1 || threshold > 100) {
+			throw new IllegalArgumentException("Match score threshold must be between 1 and 100"); //NON-NLS
+		}
+		Map<Long, Set<Integer>> indexKeys;
+		try {
+			indexKeys = FuzzyHash.getIndexKeys(fuzzyHash);
+		} catch (IllegalArgumentException ex) {
+			throw new TskCoreException("Invalid fuzzy hash " + fuzzyHash, ex); //NON-NLS
+		}
+
+		// Any file with a non-zero match score shares at least one key.
+		StringBuilder keyClauses = new StringBuilder();
+		for (Map.Entry<Long, Set<Integer>> entry : indexKeys.entrySet()) {
+			if (entry.getValue().isEmpty()) {
+				continue;
+			}
+			if (keyClauses.length() > 0) {
+				keyClauses.append(" OR "); //NON-NLS
+			}
+			keyClauses.append("(grams.block_size = ").append(entry.getKey()).append(" AND grams.gram IN ("); //NON-NLS
+			keyClauses.append(StringUtils.buildCSVString(entry.getValue())).append("))"); //NON-NLS
+		}
+		if (keyClauses.length() == 0) {
+			return new ArrayList<FuzzyHash.Match>();
+		}
+
+		CaseDbConnection connection = connections.getConnection();
+		acquireSingleUserCaseReadLock();
+		Statement statement = null;
+		ResultSet rs = null;
+		try {
+			statement = connection.createStatement();
+			rs = connection.executeQuery(statement, "SELECT DISTINCT hashes.obj_id AS obj_id, hashes.fuzzy_hash AS fuzzy_hash " //NON-NLS
+					+ "FROM tsk_files_fuzzy_hash_grams AS grams " //NON-NLS
+					+ "INNER JOIN tsk_files_fuzzy_hash AS hashes ON grams.obj_id = hashes.obj_id " //NON-NLS
+					+ "WHERE " + keyClauses.toString()); //NON-NLS
+			final Map<Long, Integer> scores = new HashMap<Long, Integer>();
+			Map<Long, String> hashes = new HashMap<Long, String>();
+			while (rs.next()) {
+				String candidateHash = rs.getString("fuzzy_hash");
+				int score = FuzzyHash.compare(fuzzyHash, candidateHash);
+				if (score >= threshold) {
+					scores.put(rs.getLong("obj_id"), score);
+					hashes.put(rs.getLong("obj_id"), candidateHash);
+				}
+			}
+			closeResultSet(rs);
+			closeStatement(statement);
+			rs = null;
+			statement = null;
+
+			List<FuzzyHash.Match> matches = new ArrayList<FuzzyHash.Match>();
+			if (scores.isEmpty()) {
+				return matches;
+			}
+			statement = connection.createStatement();
+			rs = connection.executeQuery(statement, "SELECT * FROM " + FILES_WITH_JOINED_COLUMNS + " WHERE obj_id IN (" + StringUtils.buildCSVString(scores.keySet()) + ")"); //NON-NLS
+			for (AbstractFile similarFile : resultSetToAbstractFiles(rs, connection)) {
+				matches.add(new FuzzyHash.Match(similarFile, hashes.get(similarFile.getId()), scores.get(similarFile.getId())));
+			}
+			Collections.sort(matches, new Comparator<FuzzyHash.Match>() {
+				@Override
+				public int compare(FuzzyHash.Match match1, FuzzyHash.Match match2) {
+					return match2.getScore() - match1.getScore();
+				}
+			});
+			return matches;
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error finding files similar to fuzzy hash " + fuzzyHash, ex); //NON-NLS
+		} finally {
+			closeResultSet(rs);
+			closeStatement(statement);
+			connection.close();
+			releaseSingleUserCaseReadLock();
+		}
+	}
+
 	/**
 	 * Selects all of the rows from the tag_names table in the case database.
 	 *
@@ -8176,6 +10825,9 @@ public Report addReport(String localPath, String sourceModuleName, String report
 				throw new TskCoreException(String.format("Failed to INSERT report %s (%s) in tsk_objects table", reportName, localPath));
 			}
 			long objectId = resultSet.getLong(1); //last_insert_rowid()
+			if (parent != null) {
+				addObjectAncestors(connection, objectId, parent.getId());
+			}
 
 			// INSERT INTO reports (obj_id, path, crtime, src_module_name, display_name) VALUES (?, ?, ?, ?, ?)
 			statement = connection.getPreparedStatement(PREPARED_STATEMENT.INSERT_REPORT);
@@ -8570,21 +11222,23 @@ private interface DbCommand {
 		void execute() throws SQLException;
 	}
 
-	private enum PREPARED_STATEMENT {
+	enum PREPARED_STATEMENT {
 
 		SELECT_ARTIFACTS_BY_TYPE("SELECT artifact_id, obj_id FROM blackboard_artifacts " //NON-NLS
 				+ "WHERE artifact_type_id = ?"), //NON-NLS
 		COUNT_ARTIFACTS_OF_TYPE("SELECT COUNT(*) AS count FROM blackboard_artifacts WHERE artifact_type_id = ? AND review_status_id != " + BlackboardArtifact.ReviewStatus.REJECTED.getID()), //NON-NLS
 		COUNT_ARTIFACTS_FROM_SOURCE("SELECT COUNT(*) AS count FROM blackboard_artifacts WHERE obj_id = ? AND review_status_id != " + BlackboardArtifact.ReviewStatus.REJECTED.getID()), //NON-NLS
 		COUNT_ARTIFACTS_BY_SOURCE_AND_TYPE("SELECT COUNT(*) AS count FROM blackboard_artifacts WHERE obj_id = ? AND artifact_type_id = ? AND review_status_id != " + BlackboardArtifact.ReviewStatus.REJECTED.getID()), //NON-NLS
-		SELECT_FILES_BY_PARENT("SELECT tsk_files.* " //NON-NLS
+		SELECT_FILES_BY_PARENT("SELECT tsk_files.*, " + JOINED_FILE_COLUMNS + " " //NON-NLS
 				+ "FROM tsk_objects INNER JOIN tsk_files " //NON-NLS
 				+ "ON tsk_objects.obj_id=tsk_files.obj_id " //NON-NLS
+				+ JOINED_FILE_TABLES
 				+ "WHERE (tsk_objects.par_obj_id = ? ) " //NON-NLS
 				+ "ORDER BY tsk_files.meta_type DESC, LOWER(tsk_files.name)"), //NON-NLS
-		SELECT_FILES_BY_PARENT_AND_TYPE("SELECT tsk_files.* " //NON-NLS
+		SELECT_FILES_BY_PARENT_AND_TYPE("SELECT tsk_files.*, " + JOINED_FILE_COLUMNS + " " //NON-NLS
 				+ "FROM tsk_objects INNER JOIN tsk_files " //NON-NLS
 				+ "ON tsk_objects.obj_id=tsk_files.obj_id " //NON-NLS
+				+ JOINED_FILE_TABLES
 				+ "WHERE (tsk_objects.par_obj_id = ? AND tsk_files.type = ? ) " //NON-NLS
 				+ "ORDER BY tsk_files.dir_type, LOWER(tsk_files.name)"), //NON-NLS
 		SELECT_FILE_IDS_BY_PARENT("SELECT tsk_files.obj_id AS obj_id " //NON-NLS
@@ -8596,7 +11250,7 @@ private enum PREPARED_STATEMENT {
 				+ "ON tsk_objects.obj_id=tsk_files.obj_id " //NON-NLS
 				+ "WHERE (tsk_objects.par_obj_id = ? " //NON-NLS
 				+ "AND tsk_files.type = ? )"), //NON-NLS
-		SELECT_FILE_BY_ID("SELECT * FROM tsk_files WHERE obj_id = ? LIMIT 1"), //NON-NLS
+		SELECT_FILE_BY_ID("SELECT tsk_files.*, " + JOINED_FILE_COLUMNS + " FROM tsk_files" + JOINED_FILE_TABLES + "WHERE tsk_files.obj_id = ? LIMIT 1"), //NON-NLS
 		SELECT_ARTIFACT_BY_ARTIFACT_OBJ_ID("SELECT * FROM blackboard_artifacts WHERE artifact_obj_id = ? LIMIT 1"),
 		SELECT_ARTIFACT_BY_ARTIFACT_ID("SELECT * FROM blackboard_artifacts WHERE artifact_id = ? LIMIT 1"),
 		INSERT_ARTIFACT("INSERT INTO blackboard_artifacts (artifact_id, obj_id, artifact_obj_id, data_source_obj_id, artifact_type_id, review_status_id) " //NON-NLS
@@ -8613,9 +11267,11 @@ private enum PREPARED_STATEMENT {
 				+ "VALUES (?,?,?,?,?,?,?)"), //NON-NLS
 		INSERT_DOUBLE_ATTRIBUTE("INSERT INTO blackboard_attributes (artifact_id, artifact_type_id, source, context, attribute_type_id, value_type, value_double) " //NON-NLS
 				+ "VALUES (?,?,?,?,?,?,?)"), //NON-NLS
-		SELECT_FILES_BY_DATA_SOURCE_AND_NAME("SELECT * FROM tsk_files WHERE LOWER(name) LIKE LOWER(?) AND LOWER(name) NOT LIKE LOWER('%journal%') AND data_source_obj_id = ?"), //NON-NLS
-		SELECT_FILES_BY_DATA_SOURCE_AND_PARENT_PATH_AND_NAME("SELECT * FROM tsk_files WHERE LOWER(name) LIKE LOWER(?) AND LOWER(name) NOT LIKE LOWER('%journal%') AND LOWER(parent_path) LIKE LOWER(?) AND data_source_obj_id = ?"), //NON-NLS
+		SELECT_FILES_BY_DATA_SOURCE_AND_NAME("SELECT tsk_files.*, " + JOINED_FILE_COLUMNS + " FROM tsk_files" + JOINED_FILE_TABLES + "WHERE LOWER(name) LIKE LOWER(?) AND LOWER(name) NOT LIKE LOWER('%journal%') AND data_source_obj_id = ?"), //NON-NLS
+		SELECT_FILES_BY_DATA_SOURCE_AND_PARENT_PATH_AND_NAME("SELECT tsk_files.*, " + JOINED_FILE_COLUMNS + " FROM tsk_files" + JOINED_FILE_TABLES + "WHERE LOWER(name) LIKE LOWER(?) AND LOWER(name) NOT LIKE LOWER('%journal%') AND LOWER(parent_path) LIKE LOWER(?) AND data_source_obj_id = ?"), //NON-NLS
 		UPDATE_FILE_MD5("UPDATE tsk_files SET md5 = ? WHERE obj_id = ?"), //NON-NLS
+		UPDATE_FILE_KNOWN("UPDATE tsk_files SET known = ? WHERE obj_id = ? AND (known IS NULL OR known <= ?)"), //NON-NLS
+		UPDATE_FILE_MIME_TYPE("UPDATE tsk_files SET mime_type = ? WHERE obj_id = ?"), //NON-NLS
 		SELECT_LOCAL_PATH_FOR_FILE("SELECT path FROM tsk_files_path WHERE obj_id = ?"), //NON-NLS
 		SELECT_ENCODING_FOR_FILE("SELECT encoding_type FROM tsk_files_path WHERE obj_id = ?"), // NON-NLS
 		SELECT_LOCAL_PATH_AND_ENCODING_FOR_FILE("SELECT path, encoding_type FROM tsk_files_path WHERE obj_id = ?"), // NON_NLS
@@ -8625,6 +11281,46 @@ private enum PREPARED_STATEMENT {
 		SELECT_FILE_DERIVATION_METHOD("SELECT tool_name, tool_version, other FROM tsk_files_derived_method WHERE derived_id = ?"), //NON-NLS
 		SELECT_MAX_OBJECT_ID("SELECT MAX(obj_id) AS max_obj_id FROM tsk_objects"), //NON-NLS
 		INSERT_OBJECT("INSERT INTO tsk_objects (par_obj_id, type) VALUES (?, ?)"), //NON-NLS
+		INSERT_OBJECT_ANCESTORS("INSERT INTO tsk_object_ancestors (descendant_id, ancestor_id, depth) " //NON-NLS
+				+ "SELECT ?, ?, 1 WHERE EXISTS (SELECT descendant_id FROM tsk_object_ancestors WHERE descendant_id = ?) " //NON-NLS
+				+ "UNION ALL SELECT ?, ancestor_id, depth + 1 FROM tsk_object_ancestors WHERE descendant_id = ? AND depth > 0"), //NON-NLS
+		SELECT_DESCENDANT_IDS("SELECT descendant_id FROM tsk_object_ancestors WHERE ancestor_id = ? AND depth > 0 ORDER BY depth, descendant_id"), //NON-NLS
+		COUNT_DESCENDANTS("SELECT COUNT(descendant_id) AS count FROM tsk_object_ancestors WHERE ancestor_id = ? AND depth > 0"), //NON-NLS
+		SELECT_ANCESTOR_IDS("SELECT ancestor_id FROM tsk_object_ancestors WHERE descendant_id = ? AND depth > 0 ORDER BY depth"), //NON-NLS
+		SELECT_OBJECT_ANCESTORS_MARKER("SELECT descendant_id FROM tsk_object_ancestors WHERE descendant_id = ? AND ancestor_id = ?"), //NON-NLS
+		INSERT_OBJECT_ANCESTORS_MARKER_SQLITE("INSERT OR IGNORE INTO tsk_object_ancestors (descendant_id, ancestor_id, depth) VALUES (?, ?, 0)"), //NON-NLS
+		INSERT_OBJECT_ANCESTORS_MARKER_POSTGRES("INSERT INTO tsk_object_ancestors (descendant_id, ancestor_id, depth) VALUES (?, ?, 0) ON CONFLICT DO NOTHING"), //NON-NLS
+		INSERT_DATA_SOURCE_OBJECT_ANCESTORS_SQLITE("WITH RECURSIVE " + DATA_SOURCE_OBJECT_ANCESTORS_SQL //NON-NLS
+				+ " INSERT OR IGNORE INTO tsk_object_ancestors (descendant_id, ancestor_id, depth) SELECT descendant_id, ancestor_id, depth FROM object_ancestors"), //NON-NLS
+		INSERT_DATA_SOURCE_OBJECT_ANCESTORS_POSTGRES("WITH RECURSIVE " + DATA_SOURCE_OBJECT_ANCESTORS_SQL //NON-NLS
+				+ " INSERT INTO tsk_object_ancestors (descendant_id, ancestor_id, depth) SELECT descendant_id, ancestor_id, depth FROM object_ancestors ON CONFLICT DO NOTHING"), //NON-NLS
+		SELECT_ROOT_ANCESTOR_ID("SELECT ancestor_id FROM tsk_object_ancestors WHERE descendant_id = ? ORDER BY depth DESC LIMIT 1"), //NON-NLS
+		DELETE_SUBTREE_UNIQUE_PATHS("DELETE FROM tsk_unique_paths WHERE obj_id = ? OR obj_id IN (SELECT descendant_id FROM tsk_object_ancestors WHERE ancestor_id = ?)"), //NON-NLS
+		INSERT_UNIQUE_PATH("INSERT INTO tsk_unique_paths (obj_id, unique_path) VALUES (?, ?)"), //NON-NLS
+		SELECT_OBJ_IDS_BY_UNIQUE_PATH_SQLITE("SELECT obj_id FROM tsk_unique_paths WHERE unique_path = ? ORDER BY obj_id"), //NON-NLS
+		SELECT_DATA_SOURCE_STATS("SELECT stat_type, stat_key, stat_value FROM data_source_stats WHERE data_source_obj_id = ?"), //NON-NLS
+		DELETE_DATA_SOURCE_STATS("DELETE FROM data_source_stats WHERE data_source_obj_id = ?"), //NON-NLS
+		INSERT_DATA_SOURCE_STAT_SQLITE("INSERT OR IGNORE INTO data_source_stats (data_source_obj_id, stat_type, stat_key, stat_value) SELECT ?, ?, ?, 0 " //NON-NLS
+				+ "WHERE EXISTS (SELECT 1 FROM data_source_stats WHERE data_source_obj_id = ? AND stat_type = ?)"), //NON-NLS
+		INSERT_DATA_SOURCE_STAT_POSTGRES("INSERT INTO data_source_stats (data_source_obj_id, stat_type, stat_key, stat_value) SELECT ?, ?, ?, 0 " //NON-NLS
+				+ "WHERE EXISTS (SELECT 1 FROM data_source_stats WHERE data_source_obj_id = ? AND stat_type = ?) ON CONFLICT DO NOTHING"), //NON-NLS
+		UPDATE_DATA_SOURCE_STAT("UPDATE data_source_stats SET stat_value = stat_value + ? WHERE data_source_obj_id = ? AND stat_type = ? AND stat_key = ?"), //NON-NLS
+		SELECT_ATTRIBUTE_TRIGRAM_TYPE("SELECT attribute_type_id FROM blackboard_attribute_trigram_types WHERE attribute_type_id = ?"), //NON-NLS
+		INSERT_ATTRIBUTE_TRIGRAM_TYPE_SQLITE("INSERT OR IGNORE INTO blackboard_attribute_trigram_types (attribute_type_id) VALUES (?)"), //NON-NLS
+		INSERT_ATTRIBUTE_TRIGRAM_TYPE_POSTGRES("INSERT INTO blackboard_attribute_trigram_types (attribute_type_id) VALUES (?) ON CONFLICT DO NOTHING"), //NON-NLS
+		DELETE_ATTRIBUTE_TRIGRAM_TYPE("DELETE FROM blackboard_attribute_trigram_types WHERE attribute_type_id = ?"), //NON-NLS
+		INSERT_FILE_EVENT("INSERT INTO tsk_events (time, event_type, data_source_obj_id, obj_id) VALUES (?, ?, ?, ?)"), //NON-NLS
+		INSERT_ARTIFACT_EVENT("INSERT INTO tsk_events (time, event_type, data_source_obj_id, obj_id, artifact_id) VALUES (?, ?, ?, ?, ?)"), //NON-NLS
+		SELECT_FILE_EVENTS("SELECT time, event_type, data_source_obj_id FROM tsk_events WHERE obj_id = ? AND artifact_id IS NULL"), //NON-NLS
+		DELETE_FILE_EVENTS("DELETE FROM tsk_events WHERE obj_id = ? AND artifact_id IS NULL"), //NON-NLS
+		INSERT_EVENT_DAY_COUNT_SQLITE("INSERT OR IGNORE INTO tsk_event_day_counts (bucket_start, event_type, data_source_obj_id, event_count) VALUES (?, ?, ?, 0)"), //NON-NLS
+		INSERT_EVENT_DAY_COUNT_POSTGRES("INSERT INTO tsk_event_day_counts (bucket_start, event_type, data_source_obj_id, event_count) VALUES (?, ?, ?, 0) ON CONFLICT DO NOTHING"), //NON-NLS
+		UPDATE_EVENT_DAY_COUNT("UPDATE tsk_event_day_counts SET event_count = event_count + ? " //NON-NLS
+				+ "WHERE bucket_start = ? AND event_type = ? AND data_source_obj_id = ?"), //NON-NLS
+		INSERT_ATTRIBUTE_TRIGRAM_SQLITE("INSERT OR IGNORE INTO blackboard_attribute_trigrams (attribute_type_id, trigram, artifact_id) VALUES (?, ?, ?)"), //NON-NLS
+		INSERT_ATTRIBUTE_TRIGRAM_POSTGRES("INSERT INTO blackboard_attribute_trigrams (attribute_type_id, trigram, artifact_id) VALUES (?, ?, ?) ON CONFLICT DO NOTHING"), //NON-NLS
+		SELECT_TEXT_ATTRIBUTES_BY_TYPE("SELECT artifact_id, value_text FROM blackboard_attributes WHERE attribute_type_id = ? AND value_text IS NOT NULL"), //NON-NLS
+		SELECT_OBJ_IDS_BY_UNIQUE_PATH_POSTGRES("SELECT obj_id FROM tsk_unique_paths WHERE md5(unique_path) = md5(?) AND unique_path = ? ORDER BY obj_id"), //NON-NLS
 		INSERT_FILE("INSERT INTO tsk_files (obj_id, fs_obj_id, name, type, has_path, dir_type, meta_type, dir_flags, meta_flags, size, ctime, crtime, atime, mtime, parent_path, data_source_obj_id,extension) " //NON-NLS
 				+ "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?,?)"), //NON-NLS
 		UPDATE_DERIVED_FILE("UPDATE tsk_files SET type = ?, dir_type = ?, meta_type = ?, dir_flags = ?,  meta_flags = ?, size= ?, ctime= ?, crtime= ?, atime= ?, mtime= ?, mime_type = ?  "
@@ -8663,10 +11359,21 @@ private enum PREPARED_STATEMENT {
 		SELECT_ATTR_BY_VALUE_BYTE("SELECT source FROM blackboard_attributes WHERE artifact_id = ? AND attribute_type_id = ? AND value_type = 4 AND value_byte = ?"), //NON-NLS
 		UPDATE_ATTR_BY_VALUE_BYTE("UPDATE blackboard_attributes SET source = ? WHERE artifact_id = ? AND attribute_type_id = ? AND value_type = 4 AND value_byte = ?"), //NON-NLS
 		UPDATE_IMAGE_PATH("UPDATE tsk_image_names SET name = ? WHERE obj_id = ?"), // NON-NLS 
+		UPDATE_IMAGE_MD5("UPDATE tsk_image_info SET md5 = ? WHERE obj_id = ?"), //NON-NLS
+		UPDATE_IMAGE_SHA1("UPDATE tsk_image_info SET sha1 = ? WHERE obj_id = ?"), //NON-NLS
+		UPDATE_IMAGE_SHA256("UPDATE tsk_image_info SET sha256 = ? WHERE obj_id = ?"), //NON-NLS
+		SELECT_IMAGE_MD5("SELECT md5 FROM tsk_image_info WHERE obj_id = ?"), //NON-NLS
+		SELECT_IMAGE_SHA1("SELECT sha1 FROM tsk_image_info WHERE obj_id = ?"), //NON-NLS
+		SELECT_IMAGE_SHA256("SELECT sha256 FROM tsk_image_info WHERE obj_id = ?"), //NON-NLS
 		SELECT_ARTIFACT_OBJECTIDS_BY_PARENT("SELECT blackboard_artifacts.artifact_obj_id AS artifact_obj_id " //NON-NLS
 				+ "FROM tsk_objects INNER JOIN blackboard_artifacts " //NON-NLS
 				+ "ON tsk_objects.obj_id=blackboard_artifacts.obj_id " //NON-NLS
 				+ "WHERE (tsk_objects.par_obj_id = ?)"),
+		SELECT_FUZZY_HASH("SELECT fuzzy_hash FROM tsk_files_fuzzy_hash WHERE obj_id = ?"), //NON-NLS
+		INSERT_FUZZY_HASH("INSERT INTO tsk_files_fuzzy_hash (obj_id, block_size, fuzzy_hash) VALUES (?, ?, ?)"), //NON-NLS
+		INSERT_FUZZY_HASH_GRAM("INSERT INTO tsk_files_fuzzy_hash_grams (obj_id, block_size, gram) VALUES (?, ?, ?)"), //NON-NLS
+		DELETE_FUZZY_HASH("DELETE FROM tsk_files_fuzzy_hash WHERE obj_id = ?"), //NON-NLS
+		DELETE_FUZZY_HASH_GRAMS("DELETE FROM tsk_files_fuzzy_hash_grams WHERE obj_id = ?"), //NON-NLS
 		INSERT_OR_UPDATE_TAG_NAME_POSTGRES("INSERT INTO tag_names (display_name, description, color, knownStatus) VALUES (?, ?, ?, ?) ON CONFLICT (display_name) DO UPDATE SET description = ?, color = ?, knownStatus = ?"),
 		INSERT_OR_UPDATE_TAG_NAME_SQLITE("WITH new (display_name, description, color, knownStatus) "
 				+ "AS ( VALUES(?, ?, ?, ?)) INSERT OR REPLACE INTO tag_names "
@@ -8797,6 +11504,10 @@ abstract class CaseDbConnection {
 
 		static final int SLEEP_LENGTH_IN_MILLISECONDS = 5000;
 
+		// The most statements kept by getPreparedStatement(String), the same
+		// as the number the pool caches for each connection.
+		private static final int MAX_CACHED_STATEMENTS = 20;
+
 		private class CreateStatement implements DbCommand {
 
 			private final Connection connection;
@@ -8900,6 +11611,20 @@ public void execute() throws SQLException {
 			}
 		}
 
+		private class ExecutePreparedStatementBatch implements DbCommand {
+
+			private final PreparedStatement preparedStatement;
+
+			ExecutePreparedStatementBatch(PreparedStatement preparedStatement) {
+				this.preparedStatement = preparedStatement;
+			}
+
+			@Override
+			public void execute() throws SQLException {
+				preparedStatement.executeBatch();
+			}
+		}
+
 		private class ExecuteStatementUpdate implements DbCommand {
 
 			private final Statement statement;
@@ -8982,10 +11707,28 @@ public void execute() throws SQLException {
 
 		private final Connection connection;
 		private final Map<PREPARED_STATEMENT, PreparedStatement> preparedStatements;
+		// Statements built at run time, keyed by their SQL text, least
+		// recently used first.
+		private final Map<String, PreparedStatement> cachedStatements;
+		// The changes to the statistics of data sources made in the current
+		// transaction, if any, see updateDataSourceStats().
+		private DataSourceStats.Increments transactionStatsIncrements = null;
 
 		CaseDbConnection(Connection connection) {
 			this.connection = connection;
 			preparedStatements = new EnumMap<PREPARED_STATEMENT, PreparedStatement>(PREPARED_STATEMENT.class);
+			cachedStatements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+					if (size() <= MAX_CACHED_STATEMENTS) {
+						return false;
+					}
+					closeStatement(eldest.getValue());
+					return true;
+				}
+			};
 		}
 
 		boolean isOpen() {
@@ -9008,6 +11751,26 @@ PreparedStatement getPreparedStatement(PREPARED_STATEMENT statementKey, int gene
 			return statement;
 		}
 
+		/**
+		 * Gets a statement built at run time, such as a query with filters,
+		 * preparing it the first time its SQL text is used on this
+		 * connection. The statement must not be closed by the caller.
+		 *
+		 * @param sqlStatement The SQL text.
+		 *
+		 * @return The prepared statement.
+		 *
+		 * @throws SQLException If the statement cannot be prepared.
+		 */
+		PreparedStatement getPreparedStatement(String sqlStatement) throws SQLException {
+			PreparedStatement statement = cachedStatements.get(sqlStatement);
+			if (null == statement) {
+				statement = prepareStatement(sqlStatement, Statement.NO_GENERATED_KEYS);
+				cachedStatements.put(sqlStatement, statement);
+			}
+			return statement;
+		}
+
 		PreparedStatement prepareStatement(String sqlStatement, int generateKeys) throws SQLException {
 			PrepareStatement prepareStatement = new PrepareStatement(this.getConnection(), sqlStatement);
 			executeCommand(prepareStatement);
@@ -9023,9 +11786,25 @@ Statement createStatement() throws SQLException {
 		void beginTransaction() throws SQLException {
 			SetAutoCommit setAutoCommit = new SetAutoCommit(connection, false);
 			executeCommand(setAutoCommit);
+			transactionStatsIncrements = new DataSourceStats.Increments();
+		}
+
+		/**
+		 * Gets the changes to the statistics of data sources made in the
+		 * current transaction, which are applied when it is committed.
+		 *
+		 * @return The changes, or null if there is no transaction.
+		 */
+		DataSourceStats.Increments getTransactionStatsIncrements() {
+			return transactionStatsIncrements;
 		}
 
 		void commitTransaction() throws SQLException {
+			DataSourceStats.Increments statsIncrements = transactionStatsIncrements;
+			transactionStatsIncrements = null;
+			if (null != statsIncrements) {
+				applyDataSourceStats(statsIncrements, this);
+			}
 			Commit commit = new Commit(connection);
 			executeCommand(commit);
 			// You must turn auto commit back on when done with the transaction.
@@ -9039,6 +11818,7 @@ void commitTransaction() throws SQLException {
 		 * motivated the rollback is the exception to report to the client.
 		 */
 		void rollbackTransaction() {
+			transactionStatsIncrements = null;
 			try {
 				connection.rollback();
 			} catch (SQLException e) {
@@ -9059,6 +11839,7 @@ void rollbackTransaction() {
 		 * @throws SQLException
 		 */
 		void rollbackTransactionWithThrow() throws SQLException {
+			transactionStatsIncrements = null;
 			try {
 				connection.rollback();
 			} finally {
@@ -9067,6 +11848,7 @@ void rollbackTransactionWithThrow() throws SQLException {
 		}
 
 		ResultSet executeQuery(Statement statement, String query) throws SQLException {
+			queryCount.incrementAndGet();
 			ExecuteQuery queryCommand = new ExecuteQuery(statement, query);
 			executeCommand(queryCommand);
 			return queryCommand.getResultSet();
@@ -9082,6 +11864,7 @@ ResultSet executeQuery(Statement statement, String query) throws SQLException {
 		 *                      insert_and_update_database_page
 		 */
 		ResultSet executeQuery(PreparedStatement statement) throws SQLException {
+			queryCount.incrementAndGet();
 			ExecutePreparedStatementQuery executePreparedStatementQuery = new ExecutePreparedStatementQuery(statement);
 			executeCommand(executePreparedStatementQuery);
 			return executePreparedStatementQuery.getResultSet();
@@ -9101,6 +11884,19 @@ void executeUpdate(PreparedStatement statement) throws SQLException {
 			executeCommand(executePreparedStatementUpdate);
 		}
 
+		/**
+		 * Executes the batch of parameter sets that has been added to a
+		 * prepared statement.
+		 *
+		 * @param statement The prepared statement.
+		 *
+		 * @throws SQLException
+		 */
+		void executeBatch(PreparedStatement statement) throws SQLException {
+			ExecutePreparedStatementBatch executePreparedStatementBatch = new ExecutePreparedStatementBatch(statement);
+			executeCommand(executePreparedStatementBatch);
+		}
+
 		/**
 		 * Close the connection to the database.
 		 */
@@ -9511,7 +12307,7 @@ public List<FsContent> findFilesWhere(String sqlWhereClause) throws TskCoreExcep
 		ResultSet rs = null;
 		try {
 			s = connection.createStatement();
-			rs = connection.executeQuery(s, "SELECT * FROM tsk_files WHERE " + sqlWhereClause); //NON-NLS
+			rs = connection.executeQuery(s, "SELECT * FROM " + FILES_WITH_JOINED_COLUMNS + " WHERE " + sqlWhereClause); //NON-NLS
 			List<FsContent> results = new ArrayList<FsContent>();
 			List<AbstractFile> temp = resultSetToAbstractFiles(rs, connection);
 			for (AbstractFile f : temp) {
@@ -9979,7 +12775,7 @@ public LocalFile addLocalFile(String fileName, String localPath,
 	 */
 	@Deprecated
 	public AddImageProcess makeAddImageProcess(String timezone, boolean addUnallocSpace, boolean noFatFsOrphans) {
-		return this.caseHandle.initAddImageProcess(timezone, addUnallocSpace, noFatFsOrphans, "");
+		return this.caseHandle.initAddImageProcess(this, timezone, addUnallocSpace, noFatFsOrphans, "");
 	}
 
 	/**
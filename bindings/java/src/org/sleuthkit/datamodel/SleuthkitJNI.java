@@ -33,6 +33,11 @@
 import java.util.Set;
 import java.util.TimeZone;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import org.sleuthkit.datamodel.TskData.TSK_FS_ATTR_TYPE_ENUM;
 
 /**
@@ -45,6 +50,8 @@
  */
 public class SleuthkitJNI {
 
+	private static final Logger logger = Logger.getLogger(SleuthkitJNI.class.getName());
+
 	/*
 	 * Loads the SleuthKit libraries.
 	 */
@@ -228,6 +235,7 @@ long addImageInfo(long deviceObjId, List<String> imageFilePaths, String timeZone
 		 * Initializes a multi-step process for adding an image to the case
 		 * database.
 		 *
+		 * @param caseDb           The case database the image is added to.
 		 * @param timeZone         The time zone of the image.
 		 * @param addUnallocSpace  Pass true to create virtual files for
 		 *                         unallocated space.
@@ -240,8 +248,8 @@ long addImageInfo(long deviceObjId, List<String> imageFilePaths, String timeZone
 		 * @return An object that can be used to exercise fine-grained control
 		 *         of the process of adding the image to the case database.
 		 */
-		AddImageProcess initAddImageProcess(String timeZone, boolean addUnallocSpace, boolean skipFatFsOrphans, String imageCopyPath) {
-			return new AddImageProcess(timeZone, addUnallocSpace, skipFatFsOrphans, imageCopyPath);
+		AddImageProcess initAddImageProcess(SleuthkitCase caseDb, String timeZone, boolean addUnallocSpace, boolean skipFatFsOrphans, String imageCopyPath) {
+			return new AddImageProcess(caseDb, timeZone, addUnallocSpace, skipFatFsOrphans, imageCopyPath);
 		}
 
 		/**
@@ -250,6 +258,7 @@ AddImageProcess initAddImageProcess(String timeZone, boolean addUnallocSpace, bo
 		 */
 		public class AddImageProcess {
 
+			private final SleuthkitCase caseDb;
 			private final String timeZone;
 			private final boolean addUnallocSpace;
 			private final boolean skipFatFsOrphans;
@@ -261,6 +270,8 @@ public class AddImageProcess {
 			 * Constructs an object that encapsulates a multi-step process to
 			 * add an image to the case database.
 			 *
+			 * @param caseDb           The case database the image is added
+			 *                         to.
 			 * @param timeZone         The time zone of the image.
 			 * @param addUnallocSpace  Pass true to create virtual files for
 			 *                         unallocated space.
@@ -270,7 +281,8 @@ public class AddImageProcess {
 			 *                         written to. Use empty string to disable
 			 *                         image writing
 			 */
-			private AddImageProcess(String timeZone, boolean addUnallocSpace, boolean skipFatFsOrphans, String imageWriterPath) {
+			private AddImageProcess(SleuthkitCase caseDb, String timeZone, boolean addUnallocSpace, boolean skipFatFsOrphans, String imageWriterPath) {
+				this.caseDb = caseDb;
 				this.timeZone = timeZone;
 				this.addUnallocSpace = addUnallocSpace;
 				this.skipFatFsOrphans = skipFatFsOrphans;
@@ -310,6 +322,7 @@ public void run(String deviceId, String[] imageFilePaths, int sectorSize) throws
 					if (0 == tskAutoDbPointer) {
 						throw new TskCoreException("initAddImgNat returned a NULL TskAutoDb pointer");
 					}
+					caseDb.addImageProcessStarted();
 				}
 				if (imageHandle != 0) {
 					runAddImgNat(tskAutoDbPointer, deviceId, imageHandle, timeZone, imageWriterPath);
@@ -347,6 +360,7 @@ public synchronized void revert() throws TskCoreException {
 				revertAddImgNat(tskAutoDbPointer);
 				// the native code deleted the object
 				tskAutoDbPointer = 0;
+				caseDb.addImageProcessFinished();
 			}
 
 			/**
@@ -356,7 +370,11 @@ public synchronized void revert() throws TskCoreException {
 			 * @return The object id of the image that was added.
 			 *
 			 * @throws TskCoreException if a critical error occurs within the
-			 *                          SleuthKit.
+			 *                          SleuthKit, or if the timeline events
+			 *                          of the image cannot be built. The
+			 *                          image is added in either case, and
+			 *                          its events can be built again with
+			 *                          TimelineManager.rebuildEvents.
 			 */
 			public synchronized long commit() throws TskCoreException {
 				if (tskAutoDbPointer == 0) {
@@ -366,6 +384,38 @@ public synchronized long commit() throws TskCoreException {
 				long id = commitAddImgNat(tskAutoDbPointer);
 				// the native code deleted the object
 				tskAutoDbPointer = 0;
+				caseDb.addImageProcessFinished();
+
+				caseDb.clearPhysicalLayout();
+
+				// The native code does not record the ancestors of the objects
+				// it adds, so record them in bulk now.
+				try {
+					caseDb.buildImageObjectAncestors(id);
+				} catch (TskCoreException ex) {
+					logger.log(Level.WARNING, "Error building object ancestors of data source with obj_id = " + id + ", they will be built when first used", ex); //NON-NLS
+				}
+
+				// The native code does not keep the data source statistics,
+				// so build them now that the files are in the case database.
+				// Statistics read while the image was being added do not
+				// count its files, so if they cannot be built, drop them to
+				// have them built when they are next asked for.
+				try {
+					caseDb.rebuildDataSourceStats(id);
+				} catch (TskCoreException ex) {
+					logger.log(Level.WARNING, "Error building statistics of data source with obj_id = " + id + ", they will be built when first asked for", ex); //NON-NLS
+					caseDb.invalidateDataSourceStats(id);
+				}
+				// Likewise for the timeline events of the files. Events are
+				// not built lazily, so the caller has to know that they are
+				// missing.
+				try {
+					caseDb.getTimelineManager().rebuildEvents(id);
+				} catch (TskCoreException ex) {
+					throw new TskCoreException("Error building timeline events of data source with obj_id = " + id
+							+ ", the image was added but its events must be rebuilt with TimelineManager.rebuildEvents", ex); //NON-NLS
+				}
 				return id;
 			}
 
@@ -580,6 +630,33 @@ private static long openImage(String[] imageFiles, int sSize, boolean useCache)
 		return imageHandle;
 	}
 
+	/**
+	 * Opens a private image handle that is not shared through the image handle
+	 * cache, e.g., so that several threads can read an image concurrently
+	 * without contending for one handle. The handle must be released with
+	 * closeUncachedImage().
+	 *
+	 * @param imageFiles the paths to the images
+	 * @param sSize      the sector size (use '0' for autodetect)
+	 *
+	 * @return the image info pointer
+	 *
+	 * @throws TskCoreException exception thrown if critical error occurs within
+	 *                          TSK
+	 */
+	static long openUncachedImage(String[] imageFiles, int sSize) throws TskCoreException {
+		return openImgNat(imageFiles, imageFiles.length, sSize);
+	}
+
+	/**
+	 * Closes an image handle opened with openUncachedImage().
+	 *
+	 * @param imgHandle the image info pointer
+	 */
+	static void closeUncachedImage(long imgHandle) {
+		closeImgNat(imgHandle);
+	}
+
 	/**
 	 * Get volume system Handle
 	 *
@@ -921,9 +998,161 @@ public static void closeFile(long fileHandle) {
 	 * @throws TskCoreException if a critical error occurs within TSK core
 	 */
 	public static void createLookupIndexForHashDatabase(int dbHandle) throws TskCoreException {
+		hashDbSetIndexCancelNat(dbHandle, false);
 		hashDbCreateIndexNat(dbHandle);
 	}
 
+	/**
+	 * Starts creating an index for a hash database on a background thread.
+	 * This also re-indexes databases for which hashDatabaseCanBeReindexed()
+	 * returns true. The returned process can be used to monitor the progress
+	 * of the index creation, to wait for it to finish or to cancel it.
+	 *
+	 * @param dbHandle A hash database handle.
+	 *
+	 * @return The process that is creating the index.
+	 *
+	 * @throws TskCoreException if a critical error occurs within TSK core
+	 */
+	public static HashDbIndexingProcess startLookupIndexCreation(int dbHandle) throws TskCoreException {
+		HashDbIndexingProcess process = new HashDbIndexingProcess(dbHandle);
+		process.start();
+		return process;
+	}
+
+	/**
+	 * A hash database index creation running on a background thread, started
+	 * with startLookupIndexCreation().
+	 */
+	public static final class HashDbIndexingProcess {
+
+		private final int dbHandle;
+		private final FutureTask<Boolean> task;
+		private volatile boolean isCanceled;
+		private long startTime;
+
+		private HashDbIndexingProcess(final int dbHandle) throws TskCoreException {
+			this.dbHandle = dbHandle;
+			// Clear any cancel left over from an earlier index creation now,
+			// rather than when the native code starts, so that a cancel()
+			// that comes before the native code starts is not lost.
+			hashDbSetIndexCancelNat(dbHandle, false);
+			this.task = new FutureTask<Boolean>(new Callable<Boolean>() {
+				@Override
+				public Boolean call() throws TskCoreException {
+					if (isCanceled) {
+						return false;
+					}
+					return hashDbCreateIndexNat(dbHandle);
+				}
+			});
+		}
+
+		private void start() {
+			startTime = System.currentTimeMillis();
+			Thread thread = new Thread(task, "HashDbIndexing-" + dbHandle); //NON-NLS
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		/**
+		 * Gets the handle of the hash database being indexed.
+		 *
+		 * @return The hash database handle.
+		 */
+		public int getHashDbHandle() {
+			return dbHandle;
+		}
+
+		/**
+		 * Gets the progress of the index creation.
+		 *
+		 * @return The percent complete, from 0 to 100.
+		 *
+		 * @throws TskCoreException if a critical error occurs within TSK core
+		 */
+		public int getProgress() throws TskCoreException {
+			return hashDbGetIndexProgressNat(dbHandle);
+		}
+
+		/**
+		 * Estimates the time remaining until the index creation finishes,
+		 * based on the rate of progress so far.
+		 *
+		 * @return The estimated time remaining in milliseconds, or -1 if no
+		 *         progress has been made yet.
+		 *
+		 * @throws TskCoreException if a critical error occurs within TSK core
+		 */
+		public long getEstimatedTimeRemaining() throws TskCoreException {
+			if (task.isDone()) {
+				return 0;
+			}
+			int progress = getProgress();
+			if (progress <= 0) {
+				return -1;
+			}
+			long elapsed = System.currentTimeMillis() - startTime;
+			return (elapsed * (100 - progress)) / progress;
+		}
+
+		/**
+		 * Requests that the index creation stop. The partially written index
+		 * is discarded and waitForCompletion() will throw. Cancellation takes
+		 * effect while the database is being read; once the index is being
+		 * sorted it runs to completion.
+		 *
+		 * @throws TskCoreException if a critical error occurs within TSK core
+		 */
+		public void cancel() throws TskCoreException {
+			isCanceled = true;
+			hashDbSetIndexCancelNat(dbHandle, true);
+		}
+
+		/**
+		 * Indicates whether cancel() has been called.
+		 *
+		 * @return True if the index creation was canceled.
+		 */
+		public boolean isCanceled() {
+			return isCanceled;
+		}
+
+		/**
+		 * Indicates whether the index creation has finished, successfully or
+		 * not.
+		 *
+		 * @return True if the index creation is finished.
+		 */
+		public boolean isDone() {
+			return task.isDone();
+		}
+
+		/**
+		 * Waits for the index creation to finish. An index creation that was
+		 * canceled too late to stop it finishes normally.
+		 *
+		 * @throws TskCoreException if the index could not be created, or the
+		 *                          index creation was canceled.
+		 * @throws InterruptedException if the current thread was interrupted
+		 *                              while waiting.
+		 */
+		public void waitForCompletion() throws TskCoreException, InterruptedException {
+			boolean created;
+			try {
+				created = task.get();
+			} catch (ExecutionException ex) {
+				if (ex.getCause() instanceof TskCoreException) {
+					throw (TskCoreException) ex.getCause();
+				}
+				throw new TskCoreException("Error creating hash database index", ex); //NON-NLS
+			}
+			if (!created) {
+				throw new TskCoreException("Hash database index creation was canceled"); //NON-NLS
+			}
+		}
+	}
+
 	/**
 	 * Check if an index exists for a hash database.
 	 *
@@ -1229,7 +1458,11 @@ public static boolean isImageSupported(String imagePath) {
 
 	private static native void hashDbClose(int dbHandle) throws TskCoreException;
 
-	private static native void hashDbCreateIndexNat(int dbHandle) throws TskCoreException;
+	private static native boolean hashDbCreateIndexNat(int dbHandle) throws TskCoreException;
+
+	private static native int hashDbGetIndexProgressNat(int dbHandle) throws TskCoreException;
+
+	private static native void hashDbSetIndexCancelNat(int dbHandle, boolean cancel) throws TskCoreException;
 
 	private static native boolean hashDbIndexExistsNat(int dbHandle) throws TskCoreException;
 
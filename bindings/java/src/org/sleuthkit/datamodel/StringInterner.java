@@ -0,0 +1,82 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2018 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Shares one copy of each of a set of equal strings, such as the parent paths
+ * of the files of a directory or the MIME types of the files of a case. Unlike
+ * String.intern(), the copies belong to a single case, and are only kept while
+ * something else refers to them.
+ *
+ * The strings are spread over several maps by hash code, each with its own
+ * lock, so that threads loading files at the same time seldom wait for each
+ * other.
+ */
+final class StringInterner {
+
+	private static final int STRIPE_COUNT = 16;
+
+	private final Stripe[] stripes = new Stripe[STRIPE_COUNT];
+
+	StringInterner() {
+		for (int i = 0; i < STRIPE_COUNT; i++) {
+			stripes[i] = new Stripe();
+		}
+	}
+
+	/**
+	 * Gets the shared copy of a string.
+	 *
+	 * @param string The string, may be null.
+	 *
+	 * @return The shared copy, or null if the string is null.
+	 */
+	String intern(String string) {
+		if (null == string) {
+			return null;
+		}
+		int hash = string.hashCode();
+		hash ^= (hash >>> 16);
+		return stripes[hash & (STRIPE_COUNT - 1)].intern(string);
+	}
+
+	/**
+	 * The shared copies of the strings with some of the hash codes.
+	 */
+	private static final class Stripe {
+
+		private final Map<String, WeakReference<String>> strings = new WeakHashMap<String, WeakReference<String>>();
+
+		synchronized String intern(String string) {
+			WeakReference<String> reference = strings.get(string);
+			if (null != reference) {
+				String shared = reference.get();
+				if (null != shared) {
+					return shared;
+				}
+			}
+			strings.put(string, new WeakReference<String>(string));
+			return string;
+		}
+	}
+}
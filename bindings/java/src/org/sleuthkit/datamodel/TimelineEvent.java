@@ -0,0 +1,218 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2018 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.ResourceBundle;
+
+/**
+ * An event of the timeline of a case: a time of a file, or a date time
+ * attribute of an artifact, as kept in the tsk_events table. Events are
+ * returned by the TimelineManager.
+ */
+public final class TimelineEvent {
+
+	private static final ResourceBundle bundle = ResourceBundle.getBundle("org.sleuthkit.datamodel.Bundle");
+
+	/**
+	 * The type of a timeline event: which time of a file it is, or which
+	 * date time attribute type of an artifact.
+	 */
+	public static final class Type {
+
+		/**
+		 * The type ids of artifact events are the attribute type ids plus this
+		 * offset, so they do not collide with the type ids of file events.
+		 */
+		static final int ATTRIBUTE_TYPE_ID_OFFSET = 1000;
+
+		public static final Type FILE_MODIFIED = new Type(1, bundle.getString("TimelineEvent.Type.fileModified.text"), -1);
+		public static final Type FILE_ACCESSED = new Type(2, bundle.getString("TimelineEvent.Type.fileAccessed.text"), -1);
+		public static final Type FILE_CHANGED = new Type(3, bundle.getString("TimelineEvent.Type.fileChanged.text"), -1);
+		public static final Type FILE_CREATED = new Type(4, bundle.getString("TimelineEvent.Type.fileCreated.text"), -1);
+		private static final List<Type> FILE_EVENT_TYPES = Collections.unmodifiableList(Arrays.asList(FILE_MODIFIED, FILE_ACCESSED, FILE_CHANGED, FILE_CREATED));
+
+		private final int typeId;
+		private final String displayName;
+		private final int attributeTypeId;
+
+		private Type(int typeId, String displayName, int attributeTypeId) {
+			this.typeId = typeId;
+			this.displayName = displayName;
+			this.attributeTypeId = attributeTypeId;
+		}
+
+		/**
+		 * Gets the type of the events of a date time attribute type.
+		 *
+		 * @param attributeType The attribute type.
+		 *
+		 * @return The event type.
+		 */
+		public static Type forAttributeType(BlackboardAttribute.Type attributeType) {
+			return new Type(ATTRIBUTE_TYPE_ID_OFFSET + attributeType.getTypeID(), attributeType.getDisplayName(), attributeType.getTypeID());
+		}
+
+		/**
+		 * Gets the types of the events of files.
+		 *
+		 * @return An unmodifiable list of the file event types.
+		 */
+		public static List<Type> getFileEventTypes() {
+			return FILE_EVENT_TYPES;
+		}
+
+		/**
+		 * Gets the id of the type, as stored in the event_type column of the
+		 * tsk_events table.
+		 *
+		 * @return The type id.
+		 */
+		public int getTypeId() {
+			return typeId;
+		}
+
+		/**
+		 * Gets the display name of the type.
+		 *
+		 * @return The display name.
+		 */
+		public String getDisplayName() {
+			return displayName;
+		}
+
+		/**
+		 * Indicates whether the events of this type are times of files.
+		 *
+		 * @return True for file events, false for artifact events.
+		 */
+		public boolean isFileEventType() {
+			return attributeTypeId < 0;
+		}
+
+		/**
+		 * Gets the date time attribute type of the events of this type.
+		 *
+		 * @return The attribute type id, or -1 for file events.
+		 */
+		public int getAttributeTypeId() {
+			return attributeTypeId;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (obj == null || getClass() != obj.getClass()) {
+				return false;
+			}
+			return typeId == ((Type) obj).typeId;
+		}
+
+		@Override
+		public int hashCode() {
+			return 67 * 7 + typeId;
+		}
+
+		@Override
+		public String toString() {
+			return displayName;
+		}
+	}
+
+	private final long eventId;
+	private final long time;
+	private final Type type;
+	private final long dataSourceObjId;
+	private final long objId;
+	private final Long artifactId;
+
+	TimelineEvent(long eventId, long time, Type type, long dataSourceObjId, long objId, Long artifactId) {
+		this.eventId = eventId;
+		this.time = time;
+		this.type = type;
+		this.dataSourceObjId = dataSourceObjId;
+		this.objId = objId;
+		this.artifactId = artifactId;
+	}
+
+	/**
+	 * Gets the id of the event.
+	 *
+	 * @return The event id.
+	 */
+	public long getEventId() {
+		return eventId;
+	}
+
+	/**
+	 * Gets the time of the event.
+	 *
+	 * @return The time, in seconds since January 1, 1970 UTC.
+	 */
+	public long getTime() {
+		return time;
+	}
+
+	/**
+	 * Gets the type of the event.
+	 *
+	 * @return The type.
+	 */
+	public Type getType() {
+		return type;
+	}
+
+	/**
+	 * Gets the data source of the event.
+	 *
+	 * @return The object id of the data source.
+	 */
+	public long getDataSourceObjId() {
+		return dataSourceObjId;
+	}
+
+	/**
+	 * Gets the content of the event: the file of a file event, or the content
+	 * an artifact event's artifact is about.
+	 *
+	 * @return The object id of the content.
+	 */
+	public long getObjId() {
+		return objId;
+	}
+
+	/**
+	 * Gets the artifact of an artifact event.
+	 *
+	 * @return The artifact id, or null for a file event.
+	 */
+	public Long getArtifactId() {
+		return artifactId;
+	}
+
+	@Override
+	public String toString() {
+		return "TimelineEvent{" + "eventId=" + eventId + ", time=" + time + ", type=" + type.getTypeId() //NON-NLS
+				+ ", dataSourceObjId=" + dataSourceObjId + ", objId=" + objId + ", artifactId=" + artifactId + '}'; //NON-NLS
+	}
+}
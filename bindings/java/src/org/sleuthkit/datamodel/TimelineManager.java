@@ -0,0 +1,561 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2018 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.sleuthkit.datamodel.BlackboardAttribute.TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE;
+import org.sleuthkit.datamodel.SleuthkitCase.CaseDbConnection;
+import org.sleuthkit.datamodel.SleuthkitCase.PREPARED_STATEMENT;
+import org.sleuthkit.datamodel.TskData.DbType;
+import static org.sleuthkit.datamodel.SleuthkitCase.closeResultSet;
+import static org.sleuthkit.datamodel.SleuthkitCase.closeStatement;
+
+/**
+ * Provides an API to query the timeline of a case: the times of its files and
+ * the date time attributes of its artifacts, kept as events in the tsk_events
+ * table. The events are indexed by time, type and data source, and counted
+ * per UTC day in the tsk_event_day_counts table, so that ranges of events can
+ * be paged through and counted per bucket without scanning the files and
+ * artifacts of the case.
+ *
+ * Events are added as files and date time attributes are added. Only times
+ * after January 1, 1970 are events.
+ */
+public final class TimelineManager {
+
+	// Width of the time buckets of the tsk_event_day_counts table.
+	static final long DAY_COUNT_BUCKET_SECONDS = 86400;
+
+	// The largest number of buckets that events are counted in at once.
+	static final int MAX_EVENT_COUNT_BUCKETS = 100000;
+
+	private final SleuthkitCase db;
+	private final Map<Integer, TimelineEvent.Type> typeIdToEventTypeMap = new ConcurrentHashMap<Integer, TimelineEvent.Type>();
+
+	/**
+	 * Constructs a TimelineManager for the given SleuthkitCase.
+	 *
+	 * @param skCase The SleuthkitCase
+	 */
+	TimelineManager(SleuthkitCase skCase) {
+		this.db = skCase;
+		for (TimelineEvent.Type type : TimelineEvent.Type.getFileEventTypes()) {
+			typeIdToEventTypeMap.put(type.getTypeId(), type);
+		}
+	}
+
+	/**
+	 * Gets the events in a time range, ordered by time, a page at a time.
+	 * Within a time, events are ordered by type, data source and event id.
+	 *
+	 * @param startTime        The start of the range, inclusive, in seconds
+	 *                         since January 1, 1970 UTC.
+	 * @param endTime          The end of the range, exclusive.
+	 * @param types            The types of the events to get, or null for
+	 *                         all types.
+	 * @param dataSourceObjIds The object ids of the data sources of the events
+	 *                         to get, or null for all data sources.
+	 * @param after            The last event of the previous page, or null
+	 *                         for the first page.
+	 * @param maxEvents        The largest number of events to get.
+	 *
+	 * @return The events, at most maxEvents. A page with fewer than maxEvents
+	 *         events is the last page.
+	 *
+	 * @throws TskCoreException If there is a problem querying the case
+	 *                          database.
+	 */
+	public List<TimelineEvent> getEvents(long startTime, long endTime, Collection<TimelineEvent.Type> types, Collection<Long> dataSourceObjIds,
+			TimelineEvent after, int maxEvents) throws TskCoreException {
+		ParameterizedSQL query = new ParameterizedSQL(db.getDatabaseType());
+		query.append("SELECT event_id, time, event_type, data_source_obj_id, obj_id, artifact_id FROM tsk_events WHERE time >= ") //NON-NLS
+				.appendValue(null == after ? startTime : Math.max(startTime, after.getTime()))
+				.append(" AND time < ").appendValue(endTime); //NON-NLS
+		appendFilters(query, types, dataSourceObjIds);
+		if (null != after) {
+			// Events after the given one in the order of the index. Written
+			// out since SQLite before 3.15 does not compare rows.
+			query.append(" AND (time > ").appendValue(after.getTime()) //NON-NLS
+					.append(" OR (time = ").appendValue(after.getTime()) //NON-NLS
+					.append(" AND (event_type > ").appendValue(after.getType().getTypeId()) //NON-NLS
+					.append(" OR (event_type = ").appendValue(after.getType().getTypeId()) //NON-NLS
+					.append(" AND (data_source_obj_id > ").appendValue(after.getDataSourceObjId()) //NON-NLS
+					.append(" OR (data_source_obj_id = ").appendValue(after.getDataSourceObjId()) //NON-NLS
+					.append(" AND event_id > ").appendValue(after.getEventId()).append("))))))"); //NON-NLS
+		}
+		query.append(" ORDER BY time, event_type, data_source_obj_id, event_id LIMIT ").appendValue(maxEvents); //NON-NLS
+
+		CaseDbConnection connection = db.getConnection();
+		db.acquireSingleUserCaseReadLock();
+		PreparedStatement statement = null;
+		ResultSet rs = null;
+		try {
+			statement = query.prepare(connection);
+			rs = connection.executeQuery(statement);
+			List<TimelineEvent> events = new ArrayList<TimelineEvent>();
+			while (rs.next()) {
+				Long artifactId = rs.getLong("artifact_id"); //NON-NLS
+				if (rs.wasNull()) {
+					artifactId = null;
+				}
+				events.add(new TimelineEvent(rs.getLong("event_id"), rs.getLong("time"), getEventType(rs.getInt("event_type")), //NON-NLS
+						rs.getLong("data_source_obj_id"), rs.getLong("obj_id"), artifactId)); //NON-NLS
+			}
+			return events;
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error getting timeline events", ex);
+		} finally {
+			closeResultSet(rs);
+			closeStatement(statement);
+			connection.close();
+			db.releaseSingleUserCaseReadLock();
+		}
+	}
+
+	/**
+	 * Counts the events in each bucket of a time range. The counts are read
+	 * from the per day counts if the range and the buckets fall on UTC day
+	 * boundaries, and counted from the index of the events otherwise. The last
+	 * bucket is counted in full even if it ends after the end of the range.
+	 *
+	 * @param startTime        The start of the first bucket, in seconds since
+	 *                         January 1, 1970 UTC. Must not be negative.
+	 * @param endTime          The end of the range, exclusive. The last
+	 *                         bucket ends at or after it. Must not be before
+	 *                         startTime.
+	 * @param bucketSeconds    The width of the buckets in seconds. There may
+	 *                         be at most MAX_EVENT_COUNT_BUCKETS buckets.
+	 * @param types            The types of the events to count, or null for
+	 *                         all types.
+	 * @param dataSourceObjIds The object ids of the data sources of the events
+	 *                         to count, or null for all data sources.
+	 *
+	 * @return The number of events in each bucket, in order.
+	 *
+	 * @throws TskCoreException         If there is a problem querying the
+	 *                                  case database.
+	 * @throws IllegalArgumentException If the range or the bucket width is
+	 *                                  not valid, or there are too many
+	 *                                  buckets.
+	 */
+	public List<Long> getEventCounts(long startTime, long endTime, long bucketSeconds, Collection<TimelineEvent.Type> types, Collection<Long> dataSourceObjIds) throws TskCoreException {
+		if (bucketSeconds <= 0) {
+			throw new IllegalArgumentException("bucketSeconds must be positive"); //NON-NLS
+		}
+		if (startTime < 0 || endTime < startTime) {
+			throw new IllegalArgumentException("Invalid time range " + startTime + " to " + endTime); //NON-NLS
+		}
+		// Computed without adding to the range, which may overflow
+		long rangeSeconds = endTime - startTime;
+		long buckets = rangeSeconds / bucketSeconds + (rangeSeconds % bucketSeconds == 0 ? 0 : 1);
+		if (buckets > MAX_EVENT_COUNT_BUCKETS) {
+			throw new IllegalArgumentException("Too many buckets: " + buckets + ", at most " + MAX_EVENT_COUNT_BUCKETS + " are counted at once"); //NON-NLS
+		}
+		int bucketCount = (int) buckets;
+		List<Long> counts = new ArrayList<Long>(bucketCount);
+		for (int i = 0; i < bucketCount; i++) {
+			counts.add(0L);
+		}
+		if (bucketCount == 0) {
+			return counts;
+		}
+
+		boolean dayAligned = startTime % DAY_COUNT_BUCKET_SECONDS == 0 && bucketSeconds % DAY_COUNT_BUCKET_SECONDS == 0;
+		// The start of the last bucket is in the range, but its end may not
+		// be representable.
+		long lastBucketStart = startTime + (bucketCount - 1) * bucketSeconds;
+		long queryEndTime = (lastBucketStart > Long.MAX_VALUE - bucketSeconds) ? Long.MAX_VALUE : lastBucketStart + bucketSeconds;
+		String timeColumn = dayAligned ? "bucket_start" : "time"; //NON-NLS
+		ParameterizedSQL query = new ParameterizedSQL(db.getDatabaseType());
+		query.append("SELECT (" + timeColumn + " - ").appendValue(startTime).append(") / ").appendValue(bucketSeconds) //NON-NLS
+				.append(dayAligned ? " AS bucket, SUM(event_count) AS count FROM tsk_event_day_counts" : " AS bucket, COUNT(*) AS count FROM tsk_events") //NON-NLS
+				.append(" WHERE " + timeColumn + " >= ").appendValue(startTime) //NON-NLS
+				.append(" AND " + timeColumn + " < ").appendValue(queryEndTime); //NON-NLS
+		appendFilters(query, types, dataSourceObjIds);
+		query.append(" GROUP BY 1"); //NON-NLS
+
+		CaseDbConnection connection = db.getConnection();
+		db.acquireSingleUserCaseReadLock();
+		PreparedStatement statement = null;
+		ResultSet rs = null;
+		try {
+			statement = query.prepare(connection);
+			rs = connection.executeQuery(statement);
+			while (rs.next()) {
+				counts.set(rs.getInt("bucket"), rs.getLong("count")); //NON-NLS
+			}
+			return counts;
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error counting timeline events", ex);
+		} finally {
+			closeResultSet(rs);
+			closeStatement(statement);
+			connection.close();
+			db.releaseSingleUserCaseReadLock();
+		}
+	}
+
+	/**
+	 * Gets the time of the earliest event.
+	 *
+	 * @param types            The types of the events, or null for all types.
+	 * @param dataSourceObjIds The object ids of the data sources of the
+	 *                         events, or null for all data sources.
+	 *
+	 * @return The time of the earliest event, in seconds since January 1, 1970
+	 *         UTC, or 0 if there are no events.
+	 *
+	 * @throws TskCoreException If there is a problem querying the case
+	 *                          database.
+	 */
+	public long getMinEventTime(Collection<TimelineEvent.Type> types, Collection<Long> dataSourceObjIds) throws TskCoreException {
+		return getBoundingEventTime(types, dataSourceObjIds, "ASC"); //NON-NLS
+	}
+
+	/**
+	 * Gets the time of the latest event.
+	 *
+	 * @param types            The types of the events, or null for all types.
+	 * @param dataSourceObjIds The object ids of the data sources of the
+	 *                         events, or null for all data sources.
+	 *
+	 * @return The time of the latest event, in seconds since January 1, 1970
+	 *         UTC, or 0 if there are no events.
+	 *
+	 * @throws TskCoreException If there is a problem querying the case
+	 *                          database.
+	 */
+	public long getMaxEventTime(Collection<TimelineEvent.Type> types, Collection<Long> dataSourceObjIds) throws TskCoreException {
+		return getBoundingEventTime(types, dataSourceObjIds, "DESC"); //NON-NLS
+	}
+
+	private long getBoundingEventTime(Collection<TimelineEvent.Type> types, Collection<Long> dataSourceObjIds, String order) throws TskCoreException {
+		// Reading the index in order stops at the first matching event
+		ParameterizedSQL query = new ParameterizedSQL(db.getDatabaseType());
+		query.append("SELECT time FROM tsk_events WHERE time > 0"); //NON-NLS
+		appendFilters(query, types, dataSourceObjIds);
+		query.append(" ORDER BY time " + order + " LIMIT 1"); //NON-NLS
+
+		CaseDbConnection connection = db.getConnection();
+		db.acquireSingleUserCaseReadLock();
+		PreparedStatement statement = null;
+		ResultSet rs = null;
+		try {
+			statement = query.prepare(connection);
+			rs = connection.executeQuery(statement);
+			return rs.next() ? rs.getLong("time") : 0; //NON-NLS
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error getting time range of timeline events", ex);
+		} finally {
+			closeResultSet(rs);
+			closeStatement(statement);
+			connection.close();
+			db.releaseSingleUserCaseReadLock();
+		}
+	}
+
+	/**
+	 * Gets an event type by id.
+	 *
+	 * @param typeId The event type id.
+	 *
+	 * @return The event type.
+	 *
+	 * @throws TskCoreException If there is a problem querying the case
+	 *                          database or the type does not exist.
+	 */
+	public TimelineEvent.Type getEventType(int typeId) throws TskCoreException {
+		TimelineEvent.Type type = typeIdToEventTypeMap.get(typeId);
+		if (null == type) {
+			BlackboardAttribute.Type attributeType = db.getAttributeType(typeId - TimelineEvent.Type.ATTRIBUTE_TYPE_ID_OFFSET);
+			if (null == attributeType) {
+				throw new TskCoreException("No timeline event type with id " + typeId);
+			}
+			type = TimelineEvent.Type.forAttributeType(attributeType);
+			typeIdToEventTypeMap.put(typeId, type);
+		}
+		return type;
+	}
+
+	/**
+	 * Rebuilds the events of a data source from its files and artifacts,
+	 * replacing any events kept for it. This is done when an image is added,
+	 * since the files of an image are added by the native code, so it is only
+	 * needed if the events are thought to be wrong, e.g., after the case
+	 * database has been changed by other means.
+	 *
+	 * @param dataSourceObjId The object id of the data source.
+	 *
+	 * @throws TskCoreException If there is a problem updating the case
+	 *                          database.
+	 */
+	public void rebuildEvents(long dataSourceObjId) throws TskCoreException {
+		CaseDbConnection connection = db.getConnection();
+		db.acquireSingleUserCaseWriteLock();
+		Statement statement = null;
+		try {
+			connection.beginTransaction();
+			statement = connection.createStatement();
+			connection.executeUpdate(statement, "DELETE FROM tsk_event_day_counts WHERE data_source_obj_id = " + dataSourceObjId); //NON-NLS
+			connection.executeUpdate(statement, "DELETE FROM tsk_events WHERE data_source_obj_id = " + dataSourceObjId); //NON-NLS
+			insertEvents(connection, statement, dataSourceObjId);
+			connection.commitTransaction();
+		} catch (SQLException ex) {
+			connection.rollbackTransaction();
+			throw new TskCoreException("Error building timeline events of data source with obj_id = " + dataSourceObjId, ex);
+		} finally {
+			closeStatement(statement);
+			connection.close();
+			db.releaseSingleUserCaseWriteLock();
+		}
+	}
+
+	/**
+	 * Adds the events of the files and artifacts of a data source, or of the
+	 * whole case, and their per day counts, from the tsk_files and
+	 * blackboard_attributes tables.
+	 *
+	 * @param connection      The connection to update with.
+	 * @param statement       A statement of the connection.
+	 * @param dataSourceObjId The object id of the data source, or -1 for all
+	 *                        data sources.
+	 *
+	 * @throws SQLException If there is a problem updating the case database.
+	 */
+	static void insertEvents(CaseDbConnection connection, Statement statement, long dataSourceObjId) throws SQLException {
+		String insert = "INSERT INTO tsk_events (time, event_type, data_source_obj_id, obj_id"; //NON-NLS
+		String files = (dataSourceObjId < 0) ? " FROM tsk_files WHERE " : " FROM tsk_files WHERE data_source_obj_id = " + dataSourceObjId + " AND "; //NON-NLS
+		String[] timeColumns = {"mtime", "atime", "ctime", "crtime"}; //NON-NLS
+		List<TimelineEvent.Type> fileTypes = TimelineEvent.Type.getFileEventTypes();
+		for (int i = 0; i < timeColumns.length; i++) {
+			connection.executeUpdate(statement, insert + ") SELECT " + timeColumns[i] + ", " + fileTypes.get(i).getTypeId() //NON-NLS
+					+ ", data_source_obj_id, obj_id" + files + timeColumns[i] + " > 0"); //NON-NLS
+		}
+		connection.executeUpdate(statement, insert + ", artifact_id) SELECT attrs.value_int64, attrs.attribute_type_id + " + TimelineEvent.Type.ATTRIBUTE_TYPE_ID_OFFSET //NON-NLS
+				+ ", arts.data_source_obj_id, arts.obj_id, arts.artifact_id FROM blackboard_attributes AS attrs " //NON-NLS
+				+ "JOIN blackboard_artifacts AS arts ON arts.artifact_id = attrs.artifact_id " //NON-NLS
+				+ "WHERE attrs.value_type = " + TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE.DATETIME.getType() + " AND attrs.value_int64 > 0" //NON-NLS
+				+ ((dataSourceObjId < 0) ? "" : " AND arts.data_source_obj_id = " + dataSourceObjId)); //NON-NLS
+		connection.executeUpdate(statement, "INSERT INTO tsk_event_day_counts (bucket_start, event_type, data_source_obj_id, event_count) " //NON-NLS
+				+ "SELECT (time / " + DAY_COUNT_BUCKET_SECONDS + ") * " + DAY_COUNT_BUCKET_SECONDS + ", event_type, data_source_obj_id, COUNT(*) FROM tsk_events " //NON-NLS
+				+ ((dataSourceObjId < 0) ? "" : "WHERE data_source_obj_id = " + dataSourceObjId + " ") //NON-NLS
+				+ "GROUP BY 1, 2, 3"); //NON-NLS
+	}
+
+	/**
+	 * Adds the events of a new file.
+	 *
+	 * @param connection      The connection the file was added with.
+	 * @param objId           The object id of the file.
+	 * @param dataSourceObjId The object id of the data source of the file.
+	 * @param ctime           The changed time of the file.
+	 * @param crtime          The created time of the file.
+	 * @param atime           The accessed time of the file.
+	 * @param mtime           The modified time of the file.
+	 *
+	 * @throws SQLException If there is a problem updating the case database.
+	 */
+	void addFileEvents(CaseDbConnection connection, long objId, long dataSourceObjId, long ctime, long crtime, long atime, long mtime) throws SQLException {
+		Map<DayCountKey, Long> dayCounts = new HashMap<DayCountKey, Long>();
+		// INSERT INTO tsk_events (time, event_type, data_source_obj_id, obj_id) VALUES (?, ?, ?, ?)
+		PreparedStatement statement = connection.getPreparedStatement(PREPARED_STATEMENT.INSERT_FILE_EVENT);
+		statement.clearParameters();
+		long[] times = {mtime, atime, ctime, crtime};
+		List<TimelineEvent.Type> fileTypes = TimelineEvent.Type.getFileEventTypes();
+		for (int i = 0; i < times.length; i++) {
+			if (times[i] > 0) {
+				statement.setLong(1, times[i]);
+				statement.setInt(2, fileTypes.get(i).getTypeId());
+				statement.setLong(3, dataSourceObjId);
+				statement.setLong(4, objId);
+				statement.addBatch();
+				addDayCount(dayCounts, times[i], fileTypes.get(i).getTypeId(), dataSourceObjId, 1);
+			}
+		}
+		if (!dayCounts.isEmpty()) {
+			connection.executeBatch(statement);
+			updateDayCounts(dayCounts, connection);
+		}
+	}
+
+	/**
+	 * Removes the events of a file, before its times are changed.
+	 *
+	 * @param connection The connection the file is changed with.
+	 * @param objId      The object id of the file.
+	 *
+	 * @throws SQLException If there is a problem updating the case database.
+	 */
+	void removeFileEvents(CaseDbConnection connection, long objId) throws SQLException {
+		Map<DayCountKey, Long> dayCounts = new HashMap<DayCountKey, Long>();
+		ResultSet rs = null;
+		try {
+			// SELECT time, event_type, data_source_obj_id FROM tsk_events WHERE obj_id = ? AND artifact_id IS NULL
+			PreparedStatement statement = connection.getPreparedStatement(PREPARED_STATEMENT.SELECT_FILE_EVENTS);
+			statement.clearParameters();
+			statement.setLong(1, objId);
+			rs = connection.executeQuery(statement);
+			while (rs.next()) {
+				addDayCount(dayCounts, rs.getLong("time"), rs.getInt("event_type"), rs.getLong("data_source_obj_id"), -1); //NON-NLS
+			}
+		} finally {
+			closeResultSet(rs);
+		}
+		if (dayCounts.isEmpty()) {
+			return;
+		}
+		// DELETE FROM tsk_events WHERE obj_id = ? AND artifact_id IS NULL
+		PreparedStatement statement = connection.getPreparedStatement(PREPARED_STATEMENT.DELETE_FILE_EVENTS);
+		statement.clearParameters();
+		statement.setLong(1, objId);
+		connection.executeUpdate(statement);
+		updateDayCounts(dayCounts, connection);
+	}
+
+	/**
+	 * Adds the event of a new date time attribute.
+	 *
+	 * @param connection The connection the attribute was added with.
+	 * @param attr       The attribute.
+	 * @param artifact   The artifact of the attribute.
+	 *
+	 * @throws SQLException If there is a problem updating the case database.
+	 */
+	void addArtifactEvent(CaseDbConnection connection, BlackboardAttribute attr, BlackboardArtifact artifact) throws SQLException {
+		long time = attr.getValueLong();
+		if (time <= 0) {
+			return;
+		}
+		int eventType = TimelineEvent.Type.ATTRIBUTE_TYPE_ID_OFFSET + attr.getAttributeType().getTypeID();
+		// INSERT INTO tsk_events (time, event_type, data_source_obj_id, obj_id, artifact_id) VALUES (?, ?, ?, ?, ?)
+		PreparedStatement statement = connection.getPreparedStatement(PREPARED_STATEMENT.INSERT_ARTIFACT_EVENT);
+		statement.clearParameters();
+		statement.setLong(1, time);
+		statement.setInt(2, eventType);
+		statement.setLong(3, artifact.getDataSourceObjectID());
+		statement.setLong(4, artifact.getObjectID());
+		statement.setLong(5, artifact.getArtifactID());
+		connection.executeUpdate(statement);
+		Map<DayCountKey, Long> dayCounts = new HashMap<DayCountKey, Long>();
+		addDayCount(dayCounts, time, eventType, artifact.getDataSourceObjectID(), 1);
+		updateDayCounts(dayCounts, connection);
+	}
+
+	private static void appendFilters(ParameterizedSQL query, Collection<TimelineEvent.Type> types, Collection<Long> dataSourceObjIds) {
+		if (null != types) {
+			List<Integer> typeIds = new ArrayList<Integer>(types.size());
+			for (TimelineEvent.Type type : types) {
+				typeIds.add(type.getTypeId());
+			}
+			query.append(" AND ").appendIn("event_type", typeIds); //NON-NLS
+		}
+		if (null != dataSourceObjIds) {
+			query.append(" AND ").appendIn("data_source_obj_id", dataSourceObjIds); //NON-NLS
+		}
+	}
+
+	private static void addDayCount(Map<DayCountKey, Long> dayCounts, long time, int eventType, long dataSourceObjId, long increment) {
+		CounterRows.addCount(dayCounts, new DayCountKey(time / DAY_COUNT_BUCKET_SECONDS * DAY_COUNT_BUCKET_SECONDS, eventType, dataSourceObjId), increment);
+	}
+
+	/**
+	 * Adds event counts to the tsk_event_day_counts table, creating rows as
+	 * needed.
+	 *
+	 * @param increments The counts to add, keyed by row.
+	 * @param connection The case database connection.
+	 *
+	 * @throws SQLException If there is an error updating the table.
+	 */
+	private void updateDayCounts(Map<DayCountKey, Long> increments, CaseDbConnection connection) throws SQLException {
+		PreparedStatement insertStatement;
+		if (db.getDatabaseType() == DbType.POSTGRESQL) {
+			// INSERT INTO tsk_event_day_counts (bucket_start, event_type, data_source_obj_id, event_count) VALUES (?, ?, ?, 0) ON CONFLICT DO NOTHING
+			insertStatement = connection.getPreparedStatement(PREPARED_STATEMENT.INSERT_EVENT_DAY_COUNT_POSTGRES);
+		} else {
+			// INSERT OR IGNORE INTO tsk_event_day_counts (bucket_start, event_type, data_source_obj_id, event_count) VALUES (?, ?, ?, 0)
+			insertStatement = connection.getPreparedStatement(PREPARED_STATEMENT.INSERT_EVENT_DAY_COUNT_SQLITE);
+		}
+		insertStatement.clearParameters();
+		// UPDATE tsk_event_day_counts SET event_count = event_count + ? WHERE bucket_start = ? AND event_type = ? AND data_source_obj_id = ?
+		PreparedStatement updateStatement = connection.getPreparedStatement(PREPARED_STATEMENT.UPDATE_EVENT_DAY_COUNT);
+		updateStatement.clearParameters();
+		CounterRows.update(increments, insertStatement, updateStatement, 0, connection);
+	}
+
+	/**
+	 * The key of a row of the tsk_event_day_counts table.
+	 */
+	private static final class DayCountKey implements CounterRows.Key {
+
+		private final long bucketStart;
+		private final int eventType;
+		private final long dataSourceObjId;
+
+		DayCountKey(long bucketStart, int eventType, long dataSourceObjId) {
+			this.bucketStart = bucketStart;
+			this.eventType = eventType;
+			this.dataSourceObjId = dataSourceObjId;
+		}
+
+		@Override
+		public void setInsertParameters(PreparedStatement statement) throws SQLException {
+			setUpdateParameters(statement, 1);
+		}
+
+		@Override
+		public void setUpdateParameters(PreparedStatement statement, int firstIndex) throws SQLException {
+			statement.setLong(firstIndex, bucketStart);
+			statement.setInt(firstIndex + 1, eventType);
+			statement.setLong(firstIndex + 2, dataSourceObjId);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (obj == null || getClass() != obj.getClass()) {
+				return false;
+			}
+			DayCountKey other = (DayCountKey) obj;
+			return bucketStart == other.bucketStart
+					&& eventType == other.eventType
+					&& dataSourceObjId == other.dataSourceObjId;
+		}
+
+		@Override
+		public int hashCode() {
+			int hash = 7;
+			hash = 29 * hash + (int) (bucketStart ^ (bucketStart >>> 32));
+			hash = 29 * hash + eventType;
+			hash = 29 * hash + (int) (dataSourceObjId ^ (dataSourceObjId >>> 32));
+			return hash;
+		}
+	}
+}
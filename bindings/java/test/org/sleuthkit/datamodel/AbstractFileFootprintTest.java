@@ -0,0 +1,130 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2018 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.sleuthkit.datamodel.TskData.FileKnown;
+import org.sleuthkit.datamodel.TskData.TSK_FS_ATTR_TYPE_ENUM;
+import org.sleuthkit.datamodel.TskData.TSK_FS_META_FLAG_ENUM;
+import org.sleuthkit.datamodel.TskData.TSK_FS_META_MODE_ENUM;
+import org.sleuthkit.datamodel.TskData.TSK_FS_META_TYPE_ENUM;
+import org.sleuthkit.datamodel.TskData.TSK_FS_NAME_FLAG_ENUM;
+import org.sleuthkit.datamodel.TskData.TSK_FS_NAME_TYPE_ENUM;
+
+/**
+ * Tests that the AbstractFile objects of a case share their flag sets and
+ * repeated strings, and measures the heap that each file takes.
+ */
+public class AbstractFileFootprintTest {
+
+	private static final String TEST_DB = "AbstractFileFootprintTest.db";
+	private static final int FILE_COUNT = 200000;
+	private static final int FILES_PER_DIRECTORY = 50;
+
+	// The heap taken by each of the files of this test, with its own name,
+	// was 573 bytes before the flags and strings were shared and is 355
+	// bytes now, on a 64-bit JVM with compressed references. Most of the
+	// rest is the object itself, whose fields are mostly protected fields
+	// of AbstractFile, see API-CHANGES.txt.
+	private static final long MAX_BYTES_PER_FILE = 400;
+
+	private static SleuthkitCase caseDB;
+
+	public AbstractFileFootprintTest() {
+	}
+
+	@BeforeClass
+	public static void setUpClass() throws TskCoreException {
+		String tempDirPath = System.getProperty("java.io.tmpdir");
+		String dbPath = tempDirPath + java.io.File.separator + TEST_DB;
+		new java.io.File(dbPath).delete();
+		caseDB = SleuthkitCase.newCase(dbPath);
+	}
+
+	@AfterClass
+	public static void tearDownClass() {
+		caseDB.close();
+	}
+
+	@Test
+	public void testSharedValues() {
+		File first = newFile(1);
+		File second = newFile(2);
+		assertSame(first.metaFlags, second.metaFlags);
+		assertSame(first.modes, second.modes);
+		assertSame(first.getParentPath(), second.getParentPath());
+		assertSame(first.getMIMEType(), second.getMIMEType());
+		assertSame(first.getNameExtension(), second.getNameExtension());
+		assertTrue(first.isMetaFlagSet(TSK_FS_META_FLAG_ENUM.ALLOC));
+		assertTrue(first.isModeSet(TSK_FS_META_MODE_ENUM.TSK_FS_META_MODE_IRUSR));
+
+		// The shared sets cannot be changed through one of the files
+		try {
+			first.metaFlags.add(TSK_FS_META_FLAG_ENUM.UNALLOC);
+			fail("The meta flags of a file can be changed");
+		} catch (UnsupportedOperationException ex) {
+		}
+		try {
+			first.modes.add(TSK_FS_META_MODE_ENUM.TSK_FS_META_MODE_IWUSR);
+			fail("The modes of a file can be changed");
+		} catch (UnsupportedOperationException ex) {
+		}
+	}
+
+	@Test
+	public void testFootprint() throws InterruptedException {
+		File[] files = new File[FILE_COUNT];
+		long before = usedHeap();
+		for (int i = 0; i < FILE_COUNT; i++) {
+			files[i] = newFile(i);
+		}
+		long bytesPerFile = (usedHeap() - before) / FILE_COUNT;
+		assertTrue("Each file takes " + bytesPerFile + " bytes", bytesPerFile <= MAX_BYTES_PER_FILE);
+		assertSame(files[0].getParentPath(), files[FILES_PER_DIRECTORY - 1].getParentPath());
+	}
+
+	/**
+	 * Makes a file object as it is loaded from the case database, with new
+	 * copies of its strings, as a result set would return them.
+	 */
+	private static File newFile(int index) {
+		String parentPath = new StringBuilder("/Users/user/Documents/folder").append(index / FILES_PER_DIRECTORY).append('/').toString();
+		return new File(caseDB, 1000 + index, 1, 2, TSK_FS_ATTR_TYPE_ENUM.TSK_FS_ATTR_TYPE_DEFAULT, 0,
+				"document" + index + ".txt", index, 0,
+				TSK_FS_NAME_TYPE_ENUM.REG, TSK_FS_META_TYPE_ENUM.TSK_FS_META_TYPE_REG,
+				TSK_FS_NAME_FLAG_ENUM.ALLOC, (short) (TSK_FS_META_FLAG_ENUM.ALLOC.getValue() | TSK_FS_META_FLAG_ENUM.USED.getValue()),
+				1024, 1500000000, 1500000000, 1500000000, 1500000000,
+				(short) (TSK_FS_META_MODE_ENUM.TSK_FS_META_MODE_IRUSR.getMode() | TSK_FS_META_MODE_ENUM.TSK_FS_META_MODE_IWUSR.getMode()), 0, 0,
+				null, FileKnown.UNKNOWN, parentPath, new String("text/plain"), new String("txt"));
+	}
+
+	private static long usedHeap() throws InterruptedException {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 5; i++) {
+			System.gc();
+			Thread.sleep(20);
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
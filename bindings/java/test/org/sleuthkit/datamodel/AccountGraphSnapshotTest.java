@@ -0,0 +1,170 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2018 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.AfterClass;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the graph algorithms of AccountGraphSnapshot on small graphs built
+ * directly from edge lists.
+ */
+public class AccountGraphSnapshotTest {
+
+	private static final String DEVICE1 = "device1";
+	private static final String DEVICE2 = "device2";
+
+	private static ForkJoinPool pool;
+
+	public AccountGraphSnapshotTest() {
+	}
+
+	@BeforeClass
+	public static void setUpClass() {
+		pool = new ForkJoinPool(4);
+	}
+
+	@AfterClass
+	public static void tearDownClass() {
+		pool.shutdown();
+	}
+
+	@Test
+	public void testGetNode() throws TskCoreException {
+		AccountDeviceInstance[] nodes = newNodes(3, DEVICE1);
+		AccountGraphSnapshot snapshot = new AccountGraphSnapshot(nodes, 1, new int[]{0}, new int[]{1});
+		for (int node = 0; node < nodes.length; node++) {
+			assertEquals(node, snapshot.getNode(nodes[node]));
+		}
+		assertEquals(-1, snapshot.getNode(new AccountDeviceInstance(nodes[0].getAccount(), DEVICE2)));
+		assertEquals(-1, snapshot.getNode(newNode(99, DEVICE1)));
+	}
+
+	@Test
+	public void testDegree() throws TskCoreException {
+		// 0-1 twice, 0-2, 0-0 (dropped), 3 alone
+		AccountDeviceInstance[] nodes = newNodes(4, DEVICE1);
+		AccountGraphSnapshot snapshot = new AccountGraphSnapshot(nodes, 4, new int[]{0, 1, 0, 0}, new int[]{1, 0, 2, 0});
+		assertEquals(3, snapshot.getDegree(0));
+		assertEquals(2, snapshot.getDegree(1));
+		assertEquals(1, snapshot.getDegree(2));
+		assertEquals(0, snapshot.getDegree(3));
+	}
+
+	@Test
+	public void testShortestPath() throws TskCoreException {
+		// A cycle 0-1-2-3-4-5-0 with a chord 1-4, and 6-7 apart from it
+		AccountDeviceInstance[] nodes = newNodes(8, DEVICE1);
+		AccountGraphSnapshot snapshot = new AccountGraphSnapshot(nodes, 8,
+				new int[]{0, 1, 2, 3, 4, 5, 1, 6},
+				new int[]{1, 2, 3, 4, 5, 0, 4, 7});
+		assertPath(snapshot, 0, 3, 4);
+		assertPath(snapshot, 2, 5, 4);
+		assertPath(snapshot, 1, 4, 2);
+		assertPath(snapshot, 0, 4, 3);
+		assertEquals(Arrays.asList(nodes[6]), snapshot.getShortestPath(6, 6, pool));
+		assertEquals(Arrays.asList(nodes[6], nodes[7]), snapshot.getShortestPath(6, 7, pool));
+		assertTrue(snapshot.getShortestPath(0, 7, pool).isEmpty());
+	}
+
+	@Test
+	public void testShortestPathLongChain() throws TskCoreException {
+		// A chain long enough that the frontiers are split into tasks
+		int length = 20000;
+		AccountDeviceInstance[] nodes = newNodes(length, DEVICE1);
+		int[] ends1 = new int[length - 1];
+		int[] ends2 = new int[length - 1];
+		for (int i = 0; i < length - 1; i++) {
+			ends1[i] = i;
+			ends2[i] = i + 1;
+		}
+		AccountGraphSnapshot snapshot = new AccountGraphSnapshot(nodes, length - 1, ends1, ends2);
+		List<AccountDeviceInstance> path = snapshot.getShortestPath(0, length - 1, pool);
+		assertEquals(Arrays.asList(nodes), path);
+	}
+
+	@Test
+	public void testConnectedComponents() throws TskCoreException {
+		// {0, 1, 2}, {3, 4} and the same accounts on another device {5, 6}
+		AccountDeviceInstance[] nodes = new AccountDeviceInstance[7];
+		System.arraycopy(newNodes(5, DEVICE1), 0, nodes, 0, 5);
+		nodes[5] = new AccountDeviceInstance(nodes[0].getAccount(), DEVICE2);
+		nodes[6] = new AccountDeviceInstance(nodes[1].getAccount(), DEVICE2);
+		AccountGraphSnapshot snapshot = new AccountGraphSnapshot(nodes, 4,
+				new int[]{0, 2, 3, 6},
+				new int[]{1, 1, 4, 5});
+		List<Set<AccountDeviceInstance>> components = snapshot.getConnectedComponents(pool);
+		assertEquals(3, components.size());
+		assertEquals(new HashSet<AccountDeviceInstance>(Arrays.asList(nodes[0], nodes[1], nodes[2])), components.get(0));
+		assertTrue(components.contains(new HashSet<AccountDeviceInstance>(Arrays.asList(nodes[3], nodes[4]))));
+		assertTrue(components.contains(new HashSet<AccountDeviceInstance>(Arrays.asList(nodes[5], nodes[6]))));
+	}
+
+	@Test
+	public void testCommunities() throws TskCoreException {
+		// Two triangles joined by one edge
+		AccountDeviceInstance[] nodes = newNodes(6, DEVICE1);
+		AccountGraphSnapshot snapshot = new AccountGraphSnapshot(nodes, 7,
+				new int[]{0, 1, 2, 3, 4, 5, 2},
+				new int[]{1, 2, 0, 4, 5, 3, 3});
+		List<Set<AccountDeviceInstance>> communities = snapshot.getCommunities(20, pool);
+		int total = 0;
+		for (Set<AccountDeviceInstance> community : communities) {
+			total += community.size();
+		}
+		assertEquals(nodes.length, total);
+		assertEquals(1, snapshot.getConnectedComponents(pool).size());
+	}
+
+	/**
+	 * Checks that the shortest path between two nodes has the given number
+	 * of nodes, runs from source to target and follows edges.
+	 */
+	private static void assertPath(AccountGraphSnapshot snapshot, int source, int target, int length) {
+		List<AccountDeviceInstance> path = snapshot.getShortestPath(source, target, pool);
+		assertEquals(length, path.size());
+		assertEquals(source, snapshot.getNode(path.get(0)));
+		assertEquals(target, snapshot.getNode(path.get(length - 1)));
+		for (int i = 0; i + 1 < path.size(); i++) {
+			int node1 = snapshot.getNode(path.get(i));
+			int node2 = snapshot.getNode(path.get(i + 1));
+			assertEquals(2, snapshot.getShortestPath(node1, node2, pool).size());
+		}
+	}
+
+	private static AccountDeviceInstance[] newNodes(int count, String deviceId) throws TskCoreException {
+		AccountDeviceInstance[] nodes = new AccountDeviceInstance[count];
+		for (int i = 0; i < count; i++) {
+			nodes[i] = newNode(i + 1, deviceId);
+		}
+		return nodes;
+	}
+
+	private static AccountDeviceInstance newNode(long accountId, String deviceId) throws TskCoreException {
+		return new AccountDeviceInstance(new Account(accountId, Account.Type.PHONE, "555-01" + accountId), deviceId);
+	}
+}
@@ -0,0 +1,242 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2018 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.AfterClass;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the account graph index of CommunicationsManager: the graph queries
+ * answered from the index, after relationships are added to it incrementally
+ * and after its pending edges are merged, give the same results as the
+ * queries of the case database.
+ */
+public class AccountGraphTest {
+
+	private static final String TEST_DB = "AccountGraphTest.db";
+	private static final String DEVICE_ID = "6e5d4c3b-2a19-4087-b6a5-f4e3d2c1b0a9";
+	private static final String NEW_DEVICE_ID = "1a2b3c4d-5e6f-4a7b-8c9d-0e1f2a3b4c5d";
+	private static final String MERGE_DEVICE_ID = "9f8e7d6c-5b4a-4392-8170-6f5e4d3c2b1a";
+	private static final String MODULE_NAME = "AccountGraphTest";
+
+	// 2017-01-01 00:00:00 UTC
+	private static final long DAY_1 = 1483228800L;
+	private static final long SECS_PER_DAY = 86400L;
+
+	/**
+	 * The number of accounts in one record whose pairs are more than
+	 * AccountGraph.MIN_EDGES_TO_MERGE, so that the pending edges are merged.
+	 */
+	private static final int MERGE_ACCOUNTS = 363;
+
+	private static SleuthkitCase caseDB;
+	private static CommunicationsManager commsMgr;
+	private static LocalFilesDataSource dataSource;
+	private static final List<AccountFileInstance> accounts = new ArrayList<AccountFileInstance>();
+
+	public AccountGraphTest() {
+	}
+
+	@BeforeClass
+	public static void setUpClass() throws Exception {
+		String tempDirPath = System.getProperty("java.io.tmpdir");
+		String dbPath = tempDirPath + java.io.File.separator + TEST_DB;
+		new java.io.File(dbPath).delete();
+		caseDB = SleuthkitCase.newCase(dbPath);
+		commsMgr = caseDB.getCommunicationsManager();
+
+		dataSource = addDataSource(DEVICE_ID);
+		for (int i = 0; i < 4; i++) {
+			accounts.add(commsMgr.createAccountFileInstance(Account.Type.PHONE, "555-060" + i, MODULE_NAME, dataSource));
+		}
+		accounts.add(commsMgr.createAccountFileInstance(Account.Type.EMAIL, "user@example.com", MODULE_NAME, dataSource));
+
+		// Relationships loaded with the index
+		commsMgr.addRelationships(Arrays.asList(
+				newMessage(dataSource, accounts.get(0), Arrays.asList(accounts.get(1), accounts.get(2)), DAY_1 + 60),
+				newMessage(dataSource, accounts.get(2), Arrays.asList(accounts.get(3)), DAY_1 + SECS_PER_DAY)));
+	}
+
+	@AfterClass
+	public static void tearDownClass() {
+		caseDB.close();
+	}
+
+	/**
+	 * Relationships added after the index is built, with new accounts, a new
+	 * data source, repeated pairs and repeated records, are in the index.
+	 */
+	@Test
+	public void testIncrementalEdges() throws TskCoreException, TskDataException {
+		commsMgr.enableGraphIndex();
+		assertTrue(commsMgr.isGraphIndexEnabled());
+
+		// A repeated pair, a record repeated in the batch, an undated call and
+		// an email account
+		CommunicationsManager.RelationshipRecord repeated = newMessage(dataSource, accounts.get(1), Arrays.asList(accounts.get(3), accounts.get(0), accounts.get(3)), DAY_1 + 120);
+		BlackboardArtifact call = dataSource.newArtifact(BlackboardArtifact.ARTIFACT_TYPE.TSK_CALLLOG);
+		commsMgr.addRelationships(Arrays.asList(repeated, repeated,
+				new CommunicationsManager.RelationshipRecord(accounts.get(3), Collections.singletonList(accounts.get(0)), call, Relationship.Type.CALL_LOG, 0),
+				newMessage(dataSource, accounts.get(4), Arrays.asList(accounts.get(2)), DAY_1 + 2 * SECS_PER_DAY)));
+
+		// A record added again, and an account and a device the index has not
+		// seen
+		commsMgr.addRelationships(Collections.singletonList(repeated));
+		LocalFilesDataSource newDataSource = addDataSource(NEW_DEVICE_ID);
+		AccountFileInstance onNewDevice = commsMgr.createAccountFileInstance(Account.Type.PHONE, "555-0600", MODULE_NAME, newDataSource);
+		AccountFileInstance newAccount = commsMgr.createAccountFileInstance(Account.Type.PHONE, "555-0609", MODULE_NAME, newDataSource);
+		commsMgr.addRelationships(Collections.singletonList(newMessage(newDataSource, onNewDevice, Arrays.asList(newAccount), DAY_1 + 180)));
+		assertTrue(commsMgr.isGraphIndexEnabled());
+
+		List<AccountDeviceInstance> instances = commsMgr.getAccountDeviceInstancesWithRelationships(new CommunicationsFilter());
+		assertTrue(instances.contains(new AccountDeviceInstance(newAccount.getAccount(), NEW_DEVICE_ID)));
+		assertTrue(instances.contains(new AccountDeviceInstance(accounts.get(0).getAccount(), NEW_DEVICE_ID)));
+		assertFalse(instances.contains(new AccountDeviceInstance(newAccount.getAccount(), DEVICE_ID)));
+		assertGraphMatchesDatabase(instances);
+	}
+
+	/**
+	 * Enough relationships to merge the pending edges into the sorted edges,
+	 * followed by more pending edges.
+	 */
+	@Test
+	public void testMergedEdges() throws TskCoreException, TskDataException {
+		LocalFilesDataSource mergeDataSource = addDataSource(MERGE_DEVICE_ID);
+		List<AccountFileInstance> mergeAccounts = new ArrayList<AccountFileInstance>();
+		for (int i = 0; i < MERGE_ACCOUNTS; i++) {
+			mergeAccounts.add(commsMgr.createAccountFileInstance(Account.Type.PHONE, "555-07" + i, MODULE_NAME, mergeDataSource));
+		}
+		commsMgr.enableGraphIndex();
+
+		// The recipients in reverse, so that the pending edges are not in
+		// the order of the sorted edges
+		List<AccountFileInstance> recipients = new ArrayList<AccountFileInstance>(mergeAccounts.subList(1, MERGE_ACCOUNTS));
+		Collections.reverse(recipients);
+		commsMgr.addRelationships(Collections.singletonList(newMessage(mergeDataSource, mergeAccounts.get(0), recipients, DAY_1 + 240)));
+		commsMgr.addRelationships(Collections.singletonList(newMessage(mergeDataSource, mergeAccounts.get(MERGE_ACCOUNTS - 1), Arrays.asList(mergeAccounts.get(0)), DAY_1 + SECS_PER_DAY + 240)));
+		assertTrue(commsMgr.isGraphIndexEnabled());
+
+		Set<AccountDeviceInstance> pair = new HashSet<AccountDeviceInstance>(Arrays.asList(
+				new AccountDeviceInstance(mergeAccounts.get(0).getAccount(), MERGE_DEVICE_ID),
+				new AccountDeviceInstance(mergeAccounts.get(MERGE_ACCOUNTS - 1).getAccount(), MERGE_DEVICE_ID)));
+		assertEquals(Long.valueOf(2), commsMgr.getRelationshipCountsPairwise(pair, new CommunicationsFilter()).values().iterator().next());
+		assertEquals(MERGE_ACCOUNTS - 1, commsMgr.getRelatedAccountDeviceInstances(pair.iterator().next(), new CommunicationsFilter()).size());
+
+		// Some of the merged accounts and the accounts of the other tests
+		Set<AccountDeviceInstance> instances = new HashSet<AccountDeviceInstance>(pair);
+		instances.add(new AccountDeviceInstance(mergeAccounts.get(1).getAccount(), MERGE_DEVICE_ID));
+		instances.add(new AccountDeviceInstance(mergeAccounts.get(MERGE_ACCOUNTS / 2).getAccount(), MERGE_DEVICE_ID));
+		for (AccountFileInstance account : accounts) {
+			instances.add(new AccountDeviceInstance(account.getAccount(), DEVICE_ID));
+		}
+		assertGraphMatchesDatabase(instances);
+	}
+
+	/**
+	 * Checks that the graph queries give the same results from the index as
+	 * from the case database, for several filters. The index is loaded again
+	 * afterwards.
+	 *
+	 * @param instances The account device instances to count and find the
+	 *                  related account device instances of.
+	 */
+	private static void assertGraphMatchesDatabase(Collection<AccountDeviceInstance> instances) throws TskCoreException {
+		List<CommunicationsFilter> filters = getFilters();
+		List<Object> indexResults = new ArrayList<Object>();
+		for (CommunicationsFilter filter : filters) {
+			indexResults.add(getQueryResults(filter, instances));
+		}
+		commsMgr.disableGraphIndex();
+		try {
+			for (int i = 0; i < filters.size(); i++) {
+				assertEquals(getQueryResults(filters.get(i), instances), indexResults.get(i));
+			}
+		} finally {
+			commsMgr.enableGraphIndex();
+		}
+	}
+
+	private static List<CommunicationsFilter> getFilters() {
+		List<CommunicationsFilter> filters = new ArrayList<CommunicationsFilter>();
+		filters.add(new CommunicationsFilter());
+		CommunicationsFilter dateFilter = new CommunicationsFilter();
+		dateFilter.addAndFilter(new CommunicationsFilter.DateRangeFilter(DAY_1, DAY_1));
+		filters.add(dateFilter);
+		CommunicationsFilter typeFilter = new CommunicationsFilter();
+		typeFilter.addAndFilter(new CommunicationsFilter.RelationshipTypeFilter(Collections.singleton(Relationship.Type.CALL_LOG)));
+		filters.add(typeFilter);
+		CommunicationsFilter deviceFilter = new CommunicationsFilter();
+		deviceFilter.addAndFilter(new CommunicationsFilter.DeviceFilter(Collections.singleton(NEW_DEVICE_ID)));
+		filters.add(deviceFilter);
+		CommunicationsFilter accountTypeFilter = new CommunicationsFilter();
+		accountTypeFilter.addAndFilter(new CommunicationsFilter.AccountTypeFilter(Collections.singleton(Account.Type.EMAIL)));
+		accountTypeFilter.addAndFilter(new CommunicationsFilter.DateRangeFilter(DAY_1, DAY_1 + 3 * SECS_PER_DAY));
+		filters.add(accountTypeFilter);
+		return filters;
+	}
+
+	/**
+	 * Gets the results of the graph queries for a filter: the account device
+	 * instances with relationships, the pairwise counts between the given
+	 * account device instances, and the account device instances related to
+	 * each of them.
+	 */
+	private static List<Object> getQueryResults(CommunicationsFilter filter, Collection<AccountDeviceInstance> instances) throws TskCoreException {
+		List<Object> results = new ArrayList<Object>();
+		List<AccountDeviceInstance> withRelationships = commsMgr.getAccountDeviceInstancesWithRelationships(filter);
+		results.add(withRelationships.size());
+		results.add(new HashSet<AccountDeviceInstance>(withRelationships));
+		results.add(commsMgr.getRelationshipCountsPairwise(new HashSet<AccountDeviceInstance>(instances), filter));
+		Map<AccountDeviceInstance, Set<AccountDeviceInstance>> related = new HashMap<AccountDeviceInstance, Set<AccountDeviceInstance>>();
+		Map<AccountDeviceInstance, Integer> relatedCounts = new HashMap<AccountDeviceInstance, Integer>();
+		for (AccountDeviceInstance instance : instances) {
+			List<AccountDeviceInstance> relatedInstances = commsMgr.getRelatedAccountDeviceInstances(instance, filter);
+			related.put(instance, new HashSet<AccountDeviceInstance>(relatedInstances));
+			relatedCounts.put(instance, relatedInstances.size());
+		}
+		results.add(related);
+		results.add(relatedCounts);
+		return results;
+	}
+
+	private static LocalFilesDataSource addDataSource(String deviceId) throws TskCoreException {
+		SleuthkitCase.CaseDbTransaction trans = caseDB.beginTransaction();
+		LocalFilesDataSource newDataSource = caseDB.addLocalFilesDataSource(deviceId, "root", "", trans);
+		trans.commit();
+		return newDataSource;
+	}
+
+	private static CommunicationsManager.RelationshipRecord newMessage(LocalFilesDataSource source, AccountFileInstance sender, List<AccountFileInstance> recipients, long dateTime) throws TskCoreException {
+		BlackboardArtifact message = source.newArtifact(BlackboardArtifact.ARTIFACT_TYPE.TSK_MESSAGE);
+		return new CommunicationsManager.RelationshipRecord(sender, recipients, message, Relationship.Type.MESSAGE, dateTime);
+	}
+}
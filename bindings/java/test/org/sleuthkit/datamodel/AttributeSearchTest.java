@@ -0,0 +1,204 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2018 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.AfterClass;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.sleuthkit.datamodel.AttributeSearchResult.Index;
+import org.sleuthkit.datamodel.AttributeSearchResult.TextMatch;
+import org.sleuthkit.datamodel.BlackboardArtifact.ARTIFACT_TYPE;
+import org.sleuthkit.datamodel.BlackboardAttribute.ATTRIBUTE_TYPE;
+
+/**
+ * Tests SleuthkitCase.searchBlackboardArtifacts() and the
+ * getBlackboardArtifacts() overloads that use it, including the trigram index
+ * of contains searches.
+ */
+public class AttributeSearchTest {
+
+	private static final String TEST_DB = "AttributeSearchTest.db";
+	private static final String LOCAL_DEVICE_ID = "7b6a5948-3726-4150-8f9e-adbcfe102938";
+	private static final String SOURCE = "AttributeSearchTest";
+	private static final String LONG_PREFIX = repeat("abcdefghij", 110);
+
+	private static SleuthkitCase caseDB;
+	private static LocalFile file;
+	private static BlackboardAttribute.Type urlType;
+	private static BlackboardArtifact exampleCom;
+	private static BlackboardArtifact percentDone;
+	private static BlackboardArtifact xDone;
+	private static BlackboardArtifact longValue;
+	private static BlackboardArtifact suffix;
+
+	public AttributeSearchTest() {
+	}
+
+	@BeforeClass
+	public static void setUpClass() throws Exception {
+		String tempDirPath = System.getProperty("java.io.tmpdir");
+		String dbPath = tempDirPath + java.io.File.separator + TEST_DB;
+		new java.io.File(dbPath).delete();
+		caseDB = SleuthkitCase.newCase(dbPath);
+
+		SleuthkitCase.CaseDbTransaction trans = caseDB.beginTransaction();
+		LocalFilesDataSource localFiles = caseDB.addLocalFilesDataSource(LOCAL_DEVICE_ID, "root", "", trans);
+		file = caseDB.addLocalFile("history.db", "/evidence/history.db", 10, 0, 0, 0, 0, true, TskData.EncodingType.NONE, localFiles, trans);
+		trans.commit();
+
+		urlType = new BlackboardAttribute.Type(ATTRIBUTE_TYPE.TSK_URL);
+		exampleCom = addUrl("http://Example.com/index.html");
+		percentDone = addUrl("http://example.org/100%_done");
+		xDone = addUrl("ftp://files.example.com/100x_done");
+		longValue = addUrl(LONG_PREFIX + "needle");
+		suffix = addUrl("prefix-EXAMPLE");
+	}
+
+	@AfterClass
+	public static void tearDownClass() {
+		caseDB.close();
+	}
+
+	@Test
+	public void testExact() throws TskCoreException {
+		assertFound(caseDB.searchBlackboardArtifacts(urlType, "http://Example.com/index.html", TextMatch.EXACT), Index.VALUE_TEXT, exampleCom);
+		// Exact searches are case sensitive
+		assertFound(caseDB.searchBlackboardArtifacts(urlType, "http://example.com/index.html", TextMatch.EXACT), Index.VALUE_TEXT);
+		// Values longer than the indexed part of the value are compared whole
+		assertFound(caseDB.searchBlackboardArtifacts(urlType, LONG_PREFIX + "needle", TextMatch.EXACT), Index.VALUE_TEXT, longValue);
+		assertFound(caseDB.searchBlackboardArtifacts(urlType, LONG_PREFIX + "needles", TextMatch.EXACT), Index.VALUE_TEXT);
+		assertFound(caseDB.getBlackboardArtifacts(ATTRIBUTE_TYPE.TSK_URL, "http://example.org/100%_done"), percentDone);
+	}
+
+	@Test
+	public void testStartsWith() throws TskCoreException {
+		assertFound(caseDB.searchBlackboardArtifacts(urlType, "HTTP://example", TextMatch.STARTS_WITH), Index.VALUE_TEXT, exampleCom, percentDone);
+		// The search string is a prefix, not a suffix
+		assertFound(caseDB.searchBlackboardArtifacts(urlType, "example", TextMatch.STARTS_WITH), Index.VALUE_TEXT);
+		assertFound(caseDB.getBlackboardArtifacts(ATTRIBUTE_TYPE.TSK_URL, "prefix", true), suffix);
+		// LIKE wildcards in the search string are matched literally
+		assertFound(caseDB.searchBlackboardArtifacts(urlType, "http://example.org/100%_", TextMatch.STARTS_WITH), Index.VALUE_TEXT, percentDone);
+		assertFound(caseDB.searchBlackboardArtifacts(urlType, "ftp://files.example.com/100%", TextMatch.STARTS_WITH), Index.VALUE_TEXT);
+		assertFound(caseDB.searchBlackboardArtifacts(urlType, "_tp://", TextMatch.STARTS_WITH), Index.VALUE_TEXT);
+		assertFound(caseDB.searchBlackboardArtifacts(urlType, LONG_PREFIX + "NEED", TextMatch.STARTS_WITH), Index.VALUE_TEXT, longValue);
+	}
+
+	@Test
+	public void testContains() throws TskCoreException {
+		assertFound(caseDB.searchBlackboardArtifacts(urlType, "EXAMPLE.com", TextMatch.CONTAINS), Index.TRIGRAM, exampleCom, xDone);
+		assertFound(caseDB.getBlackboardArtifacts(ATTRIBUTE_TYPE.TSK_URL, "example", false), exampleCom, percentDone, xDone, suffix);
+		// LIKE wildcards in the search string are matched literally
+		assertFound(caseDB.searchBlackboardArtifacts(urlType, "100%_d", TextMatch.CONTAINS), Index.TRIGRAM, percentDone);
+		assertFound(caseDB.searchBlackboardArtifacts(urlType, "%_", TextMatch.CONTAINS), Index.NONE, percentDone);
+		assertFound(caseDB.searchBlackboardArtifacts(urlType, "0_", TextMatch.CONTAINS), Index.NONE);
+		// Values too long for trigrams are checked by every search
+		assertFound(caseDB.searchBlackboardArtifacts(urlType, "needle", TextMatch.CONTAINS), Index.TRIGRAM, longValue);
+		assertFound(caseDB.searchBlackboardArtifacts(urlType, "hijabc", TextMatch.CONTAINS), Index.TRIGRAM, longValue);
+
+		// Attributes added after the trigram index was built are in it. The
+		// value matches none of the searches of the other tests.
+		BlackboardArtifact added = addUrl("urn:NewPage");
+		assertFound(caseDB.searchBlackboardArtifacts(urlType, "newpage", TextMatch.CONTAINS), Index.TRIGRAM, added);
+	}
+
+	@Test
+	public void testAttributeTypeNotIndexed() throws TskCoreException {
+		BlackboardAttribute.Type nameType = new BlackboardAttribute.Type(ATTRIBUTE_TYPE.TSK_NAME);
+		BlackboardArtifact first = file.newArtifact(ARTIFACT_TYPE.TSK_CONTACT);
+		first.addAttribute(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_NAME, SOURCE, "Alice Example"));
+
+		// Adding a string attribute whose type is not indexed does not query
+		// more than adding one whose type is. The URL matches none of the
+		// searches of the other tests.
+		caseDB.searchBlackboardArtifacts(urlType, "example", TextMatch.CONTAINS);
+		BlackboardArtifact artifact = file.newArtifact(ARTIFACT_TYPE.TSK_CONTACT);
+		long queryCount = caseDB.getQueryCount();
+		artifact.addAttribute(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_URL, SOURCE, "urn:alice"));
+		long indexedQueries = caseDB.getQueryCount() - queryCount;
+		queryCount = caseDB.getQueryCount();
+		artifact.addAttribute(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_NAME, SOURCE, "Bob Example"));
+		assertEquals(indexedQueries, caseDB.getQueryCount() - queryCount);
+
+		// The trigram index of the type is built with the attributes that
+		// were already added, and kept up to date after that
+		assertFound(caseDB.searchBlackboardArtifacts(nameType, "example", TextMatch.CONTAINS), Index.TRIGRAM, first, artifact);
+		BlackboardArtifact third = file.newArtifact(ARTIFACT_TYPE.TSK_CONTACT);
+		third.addAttribute(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_NAME, SOURCE, "Carol Example"));
+		assertFound(caseDB.searchBlackboardArtifacts(nameType, "xampl", TextMatch.CONTAINS), Index.TRIGRAM, first, artifact, third);
+	}
+
+	@Test
+	public void testNumbersAndBytes() throws TskCoreException, TskDataException {
+		BlackboardArtifact artifact = file.newArtifact(ARTIFACT_TYPE.TSK_GEN_INFO);
+		artifact.addAttribute(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_COUNT, SOURCE, 42));
+		artifact.addAttribute(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_DATETIME, SOURCE, 1500000000L));
+		assertFound(caseDB.searchBlackboardArtifacts(new BlackboardAttribute.Type(ATTRIBUTE_TYPE.TSK_COUNT), 42), Index.VALUE_INT32, artifact);
+		assertFound(caseDB.searchBlackboardArtifacts(new BlackboardAttribute.Type(ATTRIBUTE_TYPE.TSK_COUNT), 43), Index.VALUE_INT32);
+		assertFound(caseDB.getBlackboardArtifacts(ATTRIBUTE_TYPE.TSK_DATETIME, 1500000000L), artifact);
+
+		// A byte value matches only a value of that one byte
+		BlackboardAttribute.Type byteType = caseDB.addArtifactAttributeType("TEST_SEARCH_BYTES", BlackboardAttribute.TSK_BLACKBOARD_ATTRIBUTE_VALUE_TYPE.BYTE, "Test bytes");
+		BlackboardArtifact oneByte = file.newArtifact(ARTIFACT_TYPE.TSK_GEN_INFO);
+		oneByte.addAttribute(new BlackboardAttribute(byteType, SOURCE, new byte[]{7}));
+		BlackboardArtifact twoBytes = file.newArtifact(ARTIFACT_TYPE.TSK_GEN_INFO);
+		twoBytes.addAttribute(new BlackboardAttribute(byteType, SOURCE, new byte[]{7, 8}));
+		assertFound(caseDB.searchBlackboardArtifacts(byteType, new byte[]{7}), Index.VALUE_BYTE, oneByte);
+		assertFound(caseDB.searchBlackboardArtifacts(byteType, new byte[]{7, 8}), Index.VALUE_BYTE, twoBytes);
+		assertFound(caseDB.searchBlackboardArtifacts(byteType, new byte[]{8}), Index.VALUE_BYTE);
+	}
+
+	private static BlackboardArtifact addUrl(String url) throws TskCoreException {
+		BlackboardArtifact artifact = file.newArtifact(ARTIFACT_TYPE.TSK_WEB_BOOKMARK);
+		artifact.addAttribute(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_URL, SOURCE, url));
+		return artifact;
+	}
+
+	private static void assertFound(AttributeSearchResult result, Index index, BlackboardArtifact... expected) {
+		assertEquals(index, result.getIndex());
+		assertFound(result.getArtifacts(), expected);
+	}
+
+	private static void assertFound(List<BlackboardArtifact> artifacts, BlackboardArtifact... expected) {
+		Set<Long> expectedIds = new HashSet<Long>();
+		for (BlackboardArtifact artifact : Arrays.asList(expected)) {
+			expectedIds.add(artifact.getArtifactID());
+		}
+		Set<Long> foundIds = new HashSet<Long>();
+		for (BlackboardArtifact artifact : artifacts) {
+			foundIds.add(artifact.getArtifactID());
+		}
+		assertEquals(artifacts.size(), foundIds.size());
+		assertEquals(expectedIds, foundIds);
+		assertTrue(artifacts.size() == expected.length);
+	}
+
+	private static String repeat(String value, int count) {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < count; i++) {
+			builder.append(value);
+		}
+		return builder.toString();
+	}
+}
@@ -0,0 +1,83 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2018 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+/**
+ * Tests the trigrams that AttributeTrigrams computes for attribute values and
+ * search strings.
+ */
+public class AttributeTrigramsTest {
+
+	@Test
+	public void testTrigrams() {
+		assertEquals(Arrays.asList("abc", "bcd"), new ArrayList<String>(AttributeTrigrams.getTrigrams("ABcd")));
+		assertEquals(Arrays.asList("aaa"), new ArrayList<String>(AttributeTrigrams.getTrigrams("aaaaaa")));
+		assertEquals(Arrays.asList("1%_", "%_d"), new ArrayList<String>(AttributeTrigrams.getTrigrams("1%_d")));
+		assertTrue(AttributeTrigrams.getTrigrams("ab").isEmpty());
+		assertTrue(AttributeTrigrams.getTrigrams("").isEmpty());
+	}
+
+	@Test
+	public void testLongValues() {
+		String indexed = repeat('x', 1023) + "y";
+		assertEquals(Arrays.asList("xxx", "xxy"), new ArrayList<String>(AttributeTrigrams.getTrigrams(indexed)));
+		String notIndexed = indexed + "z";
+		assertEquals(Arrays.asList(AttributeTrigrams.ANY), new ArrayList<String>(AttributeTrigrams.getTrigrams(notIndexed)));
+	}
+
+	@Test
+	public void testSearchTrigrams() {
+		assertEquals(Arrays.asList("abc", "bcd"), AttributeTrigrams.getSearchTrigrams("aBCD"));
+		assertTrue(AttributeTrigrams.getSearchTrigrams("ab").isEmpty());
+
+		// Long search strings look up eight trigrams, including the first
+		// and the last
+		String searchString = "abcdefghijklmnopqrstuvwxyz";
+		List<String> trigrams = AttributeTrigrams.getSearchTrigrams(searchString);
+		assertEquals(8, trigrams.size());
+		assertEquals("abc", trigrams.get(0));
+		assertEquals("xyz", trigrams.get(7));
+		for (String trigram : trigrams) {
+			assertTrue(searchString.contains(trigram));
+		}
+	}
+
+	@Test
+	public void testLowerCase() {
+		assertEquals("stra\u00dfe", AttributeTrigrams.toLowerCase("STRA\u00dfE"));
+		// Code points outside the basic multilingual plane are kept whole
+		String deseret = new String(Character.toChars(0x10400));
+		assertEquals(new String(Character.toChars(0x10428)), AttributeTrigrams.toLowerCase(deseret));
+	}
+
+	private static String repeat(char c, int count) {
+		StringBuilder builder = new StringBuilder(count);
+		for (int i = 0; i < count; i++) {
+			builder.append(c);
+		}
+		return builder.toString();
+	}
+}
@@ -0,0 +1,190 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2018 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.AfterClass;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.sleuthkit.datamodel.TskData.FileKnown;
+
+/**
+ * Tests SleuthkitCase.setKnown(Map) and SleuthkitCase.setFileMIMETypes(Map),
+ * which update many files in one batch.
+ */
+public class BatchFileUpdateTest {
+
+	private static final String TEST_DB = "BatchFileUpdateTest.db";
+	private static final String KNOWN_DEVICE_ID = "3e4f5a6b-7c8d-4e9f-a0b1-c2d3e4f5a6b7";
+	private static final String MIME_DEVICE_ID = "7b6a5f4e-3d2c-4b1a-9f0e-d8c7b6a5f4e3";
+	private static final String MANY_DEVICE_ID = "5d4c3b2a-1f0e-4d9c-8b7a-6f5e4d3c2b1a";
+
+	/**
+	 * An object id that no file has.
+	 */
+	private static final long UNKNOWN_OBJ_ID = 987654321L;
+
+	/**
+	 * More files than SleuthkitCase.MAX_BATCH_SIZE, so that a batch is sent
+	 * before the last one.
+	 */
+	private static final int MANY_FILES = 1100;
+
+	private static SleuthkitCase caseDB;
+
+	public BatchFileUpdateTest() {
+	}
+
+	@BeforeClass
+	public static void setUpClass() throws Exception {
+		String tempDirPath = System.getProperty("java.io.tmpdir");
+		String dbPath = tempDirPath + java.io.File.separator + TEST_DB;
+		new java.io.File(dbPath).delete();
+		caseDB = SleuthkitCase.newCase(dbPath);
+	}
+
+	@AfterClass
+	public static void tearDownClass() {
+		caseDB.close();
+	}
+
+	@Test
+	public void testSetKnown() throws TskCoreException {
+		List<AbstractFile> files = addFiles(KNOWN_DEVICE_ID, 4);
+		AbstractFile toKnown = files.get(0);
+		AbstractFile toBad = files.get(1);
+		AbstractFile alreadyBad = files.get(2);
+		AbstractFile notInMap = files.get(3);
+		caseDB.setKnown(alreadyBad, FileKnown.BAD);
+
+		// An empty map changes nothing
+		caseDB.setKnown(new HashMap<Long, FileKnown>());
+		caseDB.setKnown(new HashMap<Long, FileKnown>(), files);
+		assertEquals(FileKnown.UNKNOWN, reload(toKnown).getKnown());
+		assertEquals(FileKnown.BAD, reload(alreadyBad).getKnown());
+
+		// Mixed statuses and an object id that is not a file. A status is not
+		// lowered, in the database or in the file objects.
+		Map<Long, FileKnown> statuses = new HashMap<Long, FileKnown>();
+		statuses.put(toKnown.getId(), FileKnown.KNOWN);
+		statuses.put(toBad.getId(), FileKnown.BAD);
+		statuses.put(alreadyBad.getId(), FileKnown.KNOWN);
+		statuses.put(UNKNOWN_OBJ_ID, FileKnown.BAD);
+		caseDB.setKnown(statuses, files);
+
+		assertEquals(FileKnown.KNOWN, reload(toKnown).getKnown());
+		assertEquals(FileKnown.BAD, reload(toBad).getKnown());
+		assertEquals(FileKnown.BAD, reload(alreadyBad).getKnown());
+		assertEquals(FileKnown.UNKNOWN, reload(notInMap).getKnown());
+		assertNull(caseDB.getAbstractFileById(UNKNOWN_OBJ_ID));
+		for (AbstractFile file : files) {
+			assertEquals(reload(file).getKnown(), file.getKnown());
+		}
+	}
+
+	@Test
+	public void testSetFileMIMETypes() throws TskCoreException {
+		List<AbstractFile> files = addFiles(MIME_DEVICE_ID, 4);
+		AbstractFile text = files.get(0);
+		AbstractFile image = files.get(1);
+		AbstractFile changed = files.get(2);
+		AbstractFile notInMap = files.get(3);
+		caseDB.setFileMIMEType(changed, "application/pdf");
+		long dataSourceObjId = text.getDataSourceObjectId();
+
+		// An empty map changes nothing
+		caseDB.setFileMIMETypes(new HashMap<Long, String>());
+		caseDB.setFileMIMETypes(new HashMap<Long, String>(), files);
+		assertNull(reload(text).getMIMEType());
+		assertEquals("application/pdf", reload(changed).getMIMEType());
+
+		// Mixed types and an object id that is not a file
+		Map<Long, String> mimeTypes = new HashMap<Long, String>();
+		mimeTypes.put(text.getId(), "text/plain");
+		mimeTypes.put(image.getId(), "image/png");
+		mimeTypes.put(changed.getId(), "application/zip");
+		mimeTypes.put(UNKNOWN_OBJ_ID, "text/html");
+		caseDB.setFileMIMETypes(mimeTypes, files);
+
+		assertEquals("text/plain", reload(text).getMIMEType());
+		assertEquals("image/png", reload(image).getMIMEType());
+		assertEquals("application/zip", reload(changed).getMIMEType());
+		assertNull(reload(notInMap).getMIMEType());
+		assertNull(caseDB.getAbstractFileById(UNKNOWN_OBJ_ID));
+		for (AbstractFile file : files) {
+			assertEquals(reload(file).getMIMEType(), file.getMIMEType());
+		}
+
+		// The MIME type counts of the data source follow the changes
+		Map<String, Long> mimeTypeCounts = caseDB.getDataSourceStats(dataSourceObjId).getMimeTypeCounts();
+		assertEquals(Long.valueOf(1), mimeTypeCounts.get("text/plain"));
+		assertEquals(Long.valueOf(1), mimeTypeCounts.get("image/png"));
+		assertEquals(Long.valueOf(1), mimeTypeCounts.get("application/zip"));
+		assertNull(mimeTypeCounts.get("application/pdf"));
+		assertNull(mimeTypeCounts.get("text/html"));
+		assertEquals(caseDB.rebuildDataSourceStats(dataSourceObjId).getMimeTypeCounts(), mimeTypeCounts);
+	}
+
+	/**
+	 * Maps with more entries than one batch are sent in several batches.
+	 */
+	@Test
+	public void testManyFiles() throws TskCoreException {
+		List<AbstractFile> files = addFiles(MANY_DEVICE_ID, MANY_FILES);
+		Map<Long, FileKnown> statuses = new HashMap<Long, FileKnown>();
+		Map<Long, String> mimeTypes = new HashMap<Long, String>();
+		for (int i = 0; i < files.size(); i++) {
+			statuses.put(files.get(i).getId(), i % 2 == 0 ? FileKnown.KNOWN : FileKnown.BAD);
+			mimeTypes.put(files.get(i).getId(), i % 2 == 0 ? "text/plain" : "image/png");
+		}
+		caseDB.setKnown(statuses);
+		caseDB.setFileMIMETypes(mimeTypes);
+
+		for (int i : Arrays.asList(0, 1, 999, 1000, MANY_FILES - 1)) {
+			AbstractFile file = reload(files.get(i));
+			assertEquals(statuses.get(file.getId()), file.getKnown());
+			assertEquals(mimeTypes.get(file.getId()), file.getMIMEType());
+		}
+		Map<String, Long> mimeTypeCounts = caseDB.getDataSourceStats(files.get(0).getDataSourceObjectId()).getMimeTypeCounts();
+		assertEquals(Long.valueOf(MANY_FILES / 2), mimeTypeCounts.get("text/plain"));
+		assertEquals(Long.valueOf(MANY_FILES / 2), mimeTypeCounts.get("image/png"));
+	}
+
+	private static List<AbstractFile> addFiles(String deviceId, int count) throws TskCoreException {
+		SleuthkitCase.CaseDbTransaction trans = caseDB.beginTransaction();
+		LocalFilesDataSource dataSource = caseDB.addLocalFilesDataSource(deviceId, "root", "", trans);
+		List<AbstractFile> files = new ArrayList<AbstractFile>();
+		for (int i = 0; i < count; i++) {
+			files.add(caseDB.addLocalFile("file" + i + ".dat", "/evidence/file" + i + ".dat", 10, 0, 0, 0, 0, true, TskData.EncodingType.NONE, dataSource, trans));
+		}
+		trans.commit();
+		return Collections.unmodifiableList(files);
+	}
+
+	private static AbstractFile reload(AbstractFile file) throws TskCoreException {
+		return caseDB.getAbstractFileById(file.getId());
+	}
+}
@@ -18,6 +18,9 @@
  */
 package org.sleuthkit.datamodel;
 
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -75,6 +78,7 @@
 import static org.sleuthkit.datamodel.Relationship.Type.CALL_LOG;
 import static org.sleuthkit.datamodel.Relationship.Type.CONTACT;
 import static org.sleuthkit.datamodel.Relationship.Type.MESSAGE;
+import org.sleuthkit.datamodel.SleuthkitCase.CaseDbConnection;
 
 /**
  * Tests the CommunicationsManager API along with filters.
@@ -1342,6 +1346,74 @@ public void getRelationshipCountsPairwiseTests() throws TskCoreException {
 		}
 	}
 
+	@Test
+	public void filterGetSQLTests() {
+		System.out.println("CommsMgr API - Filter getSQL test");
+
+		assertEquals("( relationships.date_time IS NULL OR relationships.date_time >= 100)",
+				new DateRangeFilter(100, 0).getSQL(commsMgr));
+		assertEquals("", new DateRangeFilter(0, 0).getSQL(commsMgr));
+		assertEquals(" relationships.relationship_type IN ( " + CALL_LOG.getTypeID() + " )",
+				new RelationshipTypeFilter(singleton(CALL_LOG)).getSQL(commsMgr));
+		assertEquals("", new DeviceFilter(Collections.<String>emptySet()).getSQL(commsMgr));
+	}
+
+	/**
+	 * A filter query that is run again on a connection with other values
+	 * reuses its statement, with the new values bound.
+	 */
+	@Test
+	public void filterStatementCacheTests() throws TskCoreException, SQLException {
+		System.out.println("CommsMgr API - Filter statement cache test");
+
+		DateRangeFilter[] filters = {
+			new DateRangeFilter(0, 0),
+			new DateRangeFilter(JAN_1_2017, 0),
+			new DateRangeFilter(MAR_1_2017, 0),
+			new DateRangeFilter(JUL_1_2017, 0)};
+		CaseDbConnection connection = caseDB.getConnection();
+		try {
+			PreparedStatement datedStatement = null;
+			for (DateRangeFilter filter : filters) {
+				ParameterizedSQL query = new ParameterizedSQL(caseDB.getDatabaseType());
+				query.append("SELECT COUNT(*) AS count FROM account_relationships AS relationships");
+				ParameterizedSQL filterSQL = new ParameterizedSQL(caseDB.getDatabaseType());
+				filter.appendSQL(filterSQL, commsMgr);
+				if (!filterSQL.isEmpty()) {
+					query.append(" WHERE ").append(filterSQL);
+				}
+				PreparedStatement statement = query.prepareCached(connection);
+				if (!filterSQL.isEmpty()) {
+					if (null == datedStatement) {
+						datedStatement = statement;
+					}
+					assertSame(datedStatement, statement);
+				}
+				assertEquals(countRelationships(filter.getSQL(commsMgr)), readCount(connection.executeQuery(statement)));
+			}
+		} finally {
+			connection.close();
+		}
+	}
+
+	private static long countRelationships(String filterSQL) throws TskCoreException, SQLException {
+		SleuthkitCase.CaseDbQuery query = caseDB.executeQuery("SELECT COUNT(*) AS count FROM account_relationships AS relationships"
+				+ (filterSQL.isEmpty() ? "" : " WHERE " + filterSQL));
+		try {
+			return readCount(query.getResultSet());
+		} finally {
+			query.close();
+		}
+	}
+
+	private static long readCount(ResultSet rs) throws SQLException {
+		try {
+			assertTrue(rs.next());
+			return rs.getLong("count");
+		} finally {
+			rs.close();
+		}
+	}
 
 	/*
 	 * Adds an Email msg artifact. Also creates Email AccountInstances, if
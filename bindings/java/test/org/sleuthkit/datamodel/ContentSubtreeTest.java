@@ -0,0 +1,205 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2018 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.AfterClass;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests SleuthkitCase.loadSubtree() on an image, whose files are below a
+ * volume system, a volume and a file system, and on a local files data
+ * source.
+ */
+public class ContentSubtreeTest {
+
+	private static final String TEST_DB = "ContentSubtreeTest.db";
+	private static final String TEST_IMAGE = "ContentSubtreeTest.img";
+	private static final String IMAGE_DEVICE_ID = "2d3c6a0e-5c55-4b8f-9d1a-8c1e0a5b7f10";
+	private static final String LOCAL_DEVICE_ID = "7a1f3b2c-0e4d-4f6a-b8c9-d0e1f2a3b4c5";
+	private static final String ARTIFACT_DEVICE_ID = "5e6f7a8b-9c0d-4e1f-a2b3-c4d5e6f7a8b9";
+
+	private static SleuthkitCase caseDB;
+	private static Image image;
+	private static LocalFilesDataSource localFiles;
+	private static LocalFile localFile;
+	private static DerivedFile derivedFile;
+
+	public ContentSubtreeTest() {
+	}
+
+	@BeforeClass
+	public static void setUpClass() throws Exception {
+		String tempDirPath = System.getProperty("java.io.tmpdir");
+		String dbPath = tempDirPath + java.io.File.separator + TEST_DB;
+		new java.io.File(dbPath).delete();
+		caseDB = SleuthkitCase.newCase(dbPath);
+		image = TestDiskImages.addPartitionedFatImage(caseDB, tempDirPath + java.io.File.separator + TEST_IMAGE, IMAGE_DEVICE_ID);
+
+		SleuthkitCase.CaseDbTransaction trans = caseDB.beginTransaction();
+		localFiles = caseDB.addLocalFilesDataSource(LOCAL_DEVICE_ID, "root", "", trans);
+		LocalDirectory folder = caseDB.addLocalDirectory(localFiles.getId(), "folder", trans);
+		localFile = caseDB.addLocalFile("local.zip", "/evidence/local.zip", 10, 0, 0, 0, 0, true, TskData.EncodingType.NONE, folder, trans);
+		trans.commit();
+		derivedFile = caseDB.addDerivedFile("derived.txt", "ModuleOutput/derived.txt", 10, 0, 0, 0, 0, true, localFile, "", "unzip", "1.0", "", TskData.EncodingType.NONE);
+	}
+
+	@AfterClass
+	public static void tearDownClass() {
+		caseDB.close();
+	}
+
+	@Test
+	public void testImageSubtree() throws TskCoreException {
+		ContentSubtree subtree = caseDB.loadSubtree(image, 0, null);
+		assertSame(image, subtree.getRoot());
+		Map<String, AbstractFile> files = filesByPath(subtree);
+		assertTrue(files.containsKey("/A.TXT"));
+		assertTrue(files.containsKey("/DIR"));
+		assertTrue(files.containsKey("/DIR/B.TXT"));
+
+		// The objects between the image and its files are loaded too
+		List<Content> volumeSystems = subtree.getChildren(image);
+		assertEquals(1, volumeSystems.size());
+		assertTrue(volumeSystems.get(0) instanceof VolumeSystem);
+		FileSystem fileSystem = null;
+		for (Content volume : subtree.getChildren(volumeSystems.get(0))) {
+			assertTrue(volume instanceof Volume);
+			for (Content child : subtree.getChildren(volume)) {
+				assertTrue(child instanceof FileSystem);
+				fileSystem = (FileSystem) child;
+			}
+		}
+		assertNotNull(fileSystem);
+
+		// The parents of the files are set
+		AbstractFile rootDirectory = null;
+		for (Content child : subtree.getChildren(fileSystem)) {
+			if (child.getName().isEmpty()) {
+				rootDirectory = (AbstractFile) child;
+			}
+		}
+		assertNotNull(rootDirectory);
+		assertSame(fileSystem, rootDirectory.getParent());
+		assertSame(rootDirectory, files.get("/A.TXT").getParent());
+		assertSame(files.get("/DIR"), files.get("/DIR/B.TXT").getParent());
+		assertTrue(subtree.getChildren(files.get("/DIR")).contains(files.get("/DIR/B.TXT")));
+		assertEquals(files.get("/A.TXT").getId(), caseDB.getAbstractFileById(files.get("/A.TXT").getId()).getId());
+
+		// Each file comes after its parent
+		for (int i = 0; i < subtree.getFiles().size(); i++) {
+			AbstractFile file = subtree.getFiles().get(i);
+			int parentIndex = subtree.getFiles().indexOf(file.getParent());
+			assertTrue(parentIndex < i);
+		}
+	}
+
+	@Test
+	public void testImageSubtreeWithCondition() throws TskCoreException {
+		ContentSubtree subtree = caseDB.loadSubtree(image, 0, "tsk_files.name <> 'DIR'");
+		Map<String, AbstractFile> files = filesByPath(subtree);
+		assertTrue(files.containsKey("/A.TXT"));
+		assertFalse(files.containsKey("/DIR"));
+		assertFalse(files.containsKey("/DIR/B.TXT"));
+	}
+
+	@Test
+	public void testDepthLimit() throws TskCoreException {
+		// Image, volume system, volume, file system, root directory
+		assertTrue(caseDB.loadSubtree(image, 3, null).getFiles().isEmpty());
+		ContentSubtree subtree = caseDB.loadSubtree(image, 4, null);
+		Map<String, AbstractFile> files = filesByPath(subtree);
+		assertTrue(files.containsKey(""));
+		assertFalse(files.containsKey("/A.TXT"));
+		subtree = caseDB.loadSubtree(image, 5, null);
+		files = filesByPath(subtree);
+		assertTrue(files.containsKey("/A.TXT"));
+		assertFalse(files.containsKey("/DIR/B.TXT"));
+	}
+
+	@Test
+	public void testLocalFilesSubtree() throws TskCoreException {
+		ContentSubtree subtree = caseDB.loadSubtree(localFiles, 0, null);
+		List<AbstractFile> files = subtree.getFiles();
+		assertEquals(3, files.size());
+		assertEquals("folder", files.get(0).getName());
+		assertSame(localFiles, files.get(0).getParent());
+		assertEquals(localFile.getId(), files.get(1).getId());
+		assertSame(files.get(0), files.get(1).getParent());
+		assertEquals(derivedFile.getId(), files.get(2).getId());
+		assertSame(files.get(1), files.get(2).getParent());
+		assertEquals(1, files.get(1).getChildrenCount());
+
+		subtree = caseDB.loadSubtree(localFile, 0, null);
+		assertEquals(1, subtree.getFiles().size());
+		assertTrue(caseDB.loadSubtree(derivedFile, 0, null).getFiles().isEmpty());
+	}
+
+	@Test
+	public void testArtifactSubtree() throws TskCoreException {
+		SleuthkitCase.CaseDbTransaction trans = caseDB.beginTransaction();
+		LocalFilesDataSource dataSource = caseDB.addLocalFilesDataSource(ARTIFACT_DEVICE_ID, "mail", "", trans);
+		LocalFile mailbox = caseDB.addLocalFile("mail.pst", "/evidence/mail.pst", 10, 0, 0, 0, 0, true, TskData.EncodingType.NONE, dataSource, trans);
+		trans.commit();
+		BlackboardArtifact message = mailbox.newArtifact(BlackboardArtifact.ARTIFACT_TYPE.TSK_EMAIL_MSG);
+		DerivedFile attachment = caseDB.addDerivedFile("attachment.txt", "ModuleOutput/attachment.txt", 10, 0, 0, 0, 0, true, message, "", "pst", "1.0", "", TskData.EncodingType.NONE);
+
+		// The subtree, with the artifact between the mailbox and the
+		// attachment, is loaded with one query
+		long before = caseDB.getQueryCount();
+		ContentSubtree subtree = caseDB.loadSubtree(dataSource, 0, null);
+		assertEquals(1, caseDB.getQueryCount() - before);
+
+		List<AbstractFile> files = subtree.getFiles();
+		assertEquals(2, files.size());
+		assertEquals(mailbox.getId(), files.get(0).getId());
+		assertEquals(attachment.getId(), files.get(1).getId());
+		List<Content> artifacts = subtree.getChildren(files.get(0));
+		assertEquals(1, artifacts.size());
+		assertTrue(artifacts.get(0) instanceof BlackboardArtifact);
+		assertEquals(message.getArtifactID(), ((BlackboardArtifact) artifacts.get(0)).getArtifactID());
+		assertEquals(BlackboardArtifact.ARTIFACT_TYPE.TSK_EMAIL_MSG.getTypeID(), ((BlackboardArtifact) artifacts.get(0)).getArtifactTypeID());
+		assertEquals(Arrays.asList(files.get(1)), subtree.getChildren(artifacts.get(0)));
+	}
+
+	/**
+	 * Gets the files of a subtree of the image by their paths in their file
+	 * system, with "" for the root directory.
+	 */
+	private static Map<String, AbstractFile> filesByPath(ContentSubtree subtree) {
+		Map<String, AbstractFile> files = new HashMap<String, AbstractFile>();
+		for (AbstractFile file : subtree.getFiles()) {
+			String parentPath = file.getParentPath();
+			String path = (null == parentPath || parentPath.equals("/")) && file.getName().isEmpty() ? ""
+					: parentPath + file.getName();
+			assertNull(files.put(path.endsWith("/") ? path.substring(0, path.length() - 1) : path, file));
+		}
+		return files;
+	}
+}
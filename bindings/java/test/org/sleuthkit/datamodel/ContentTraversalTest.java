@@ -0,0 +1,284 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2018 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.AfterClass;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests ContentTraversal on an image and a local files data source, comparing
+ * the visited content with a depth-first walk of Content.getChildren().
+ */
+public class ContentTraversalTest {
+
+	private static final String TEST_DB = "ContentTraversalTest.db";
+	private static final String TEST_IMAGE = "ContentTraversalTest.img";
+	private static final String IMAGE_DEVICE_ID = "6b1e4d2a-8c3f-4a95-b7d0-e2f1a3c5d9b8";
+	private static final String LOCAL_DEVICE_ID = "d4c3b2a1-f0e9-4d8c-9b7a-6f5e4d3c2b1a";
+	private static final String WIDE_DEVICE_ID = "0e1f2a3b-4c5d-4e6f-8a9b-0c1d2e3f4a5b";
+
+	private static SleuthkitCase caseDB;
+	private static Image image;
+	private static LocalFilesDataSource localFiles;
+
+	public ContentTraversalTest() {
+	}
+
+	@BeforeClass
+	public static void setUpClass() throws Exception {
+		String tempDirPath = System.getProperty("java.io.tmpdir");
+		String dbPath = tempDirPath + java.io.File.separator + TEST_DB;
+		new java.io.File(dbPath).delete();
+		caseDB = SleuthkitCase.newCase(dbPath);
+		image = TestDiskImages.addPartitionedFatImage(caseDB, tempDirPath + java.io.File.separator + TEST_IMAGE, IMAGE_DEVICE_ID);
+
+		SleuthkitCase.CaseDbTransaction trans = caseDB.beginTransaction();
+		localFiles = caseDB.addLocalFilesDataSource(LOCAL_DEVICE_ID, "root", "", trans);
+		LocalDirectory folder = caseDB.addLocalDirectory(localFiles.getId(), "folder", trans);
+		LocalFile localFile = caseDB.addLocalFile("local.zip", "/evidence/local.zip", 10, 0, 0, 0, 0, true, TskData.EncodingType.NONE, folder, trans);
+		caseDB.addLocalFile("other.txt", "/evidence/other.txt", 10, 0, 0, 0, 0, true, TskData.EncodingType.NONE, folder, trans);
+		trans.commit();
+		caseDB.addDerivedFile("derived.txt", "ModuleOutput/derived.txt", 10, 0, 0, 0, 0, true, localFile, "", "unzip", "1.0", "", TskData.EncodingType.NONE);
+		localFile.newArtifact(BlackboardArtifact.ARTIFACT_TYPE.TSK_INTERESTING_FILE_HIT);
+	}
+
+	@AfterClass
+	public static void tearDownClass() {
+		caseDB.close();
+	}
+
+	@Test
+	public void testOrdered() throws TskCoreException {
+		List<Content> roots = Arrays.<Content>asList(image, localFiles);
+		List<Long> expected = new ArrayList<Long>();
+		for (Content root : roots) {
+			addPreorder(root, -1, expected);
+		}
+		for (int parallelism = 1; parallelism <= 4; parallelism++) {
+			List<Long> visited = new ContentTraversal<List<Long>>(caseDB, new IdVisitor(), new ListCombiner())
+					.setParallelism(parallelism)
+					.traverse(roots);
+			assertEquals(expected, visited);
+		}
+	}
+
+	@Test
+	public void testUnordered() throws TskCoreException {
+		List<Long> expected = new ArrayList<Long>();
+		addPreorder(localFiles, -1, expected);
+		List<Long> visited = new ContentTraversal<List<Long>>(caseDB, new IdVisitor(), new ListCombiner())
+				.setOrdered(false)
+				.setParallelism(4)
+				.traverse(localFiles);
+		assertEquals(expected.size(), visited.size());
+		assertEquals(new HashSet<Long>(expected), new HashSet<Long>(visited));
+	}
+
+	@Test
+	public void testMaxDepth() throws TskCoreException {
+		for (int maxDepth = 0; maxDepth <= 5; maxDepth++) {
+			List<Long> expected = new ArrayList<Long>();
+			addPreorder(image, maxDepth, expected);
+			List<Long> visited = new ContentTraversal<List<Long>>(caseDB, new IdVisitor(), new ListCombiner())
+					.setMaxDepth(maxDepth)
+					.traverse(image);
+			assertEquals(expected, visited);
+		}
+	}
+
+	@Test
+	public void testNullResults() throws TskCoreException {
+		// Only the files named .txt count, and the other visits return null
+		ContentVisitor<Integer> visitor = new ContentVisitor.Default<Integer>() {
+			@Override
+			protected Integer defaultVisit(Content content) {
+				return content.getName().toLowerCase().endsWith(".txt") ? 1 : null;
+			}
+		};
+		ContentTraversal.Combiner<Integer> sum = new ContentTraversal.Combiner<Integer>() {
+			@Override
+			public Integer combine(Integer first, Integer second) {
+				return first + second;
+			}
+		};
+		assertEquals(Integer.valueOf(2), new ContentTraversal<Integer>(caseDB, visitor, sum).traverse(localFiles));
+		assertEquals(Integer.valueOf(2), new ContentTraversal<Integer>(caseDB, visitor, sum).traverse(image));
+		assertEquals(null, new ContentTraversal<Integer>(caseDB, visitor, sum).setMaxDepth(1).traverse(localFiles));
+	}
+
+	@Test
+	public void testMaxConcurrencyPerDataSource() throws TskCoreException {
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger maxRunning = new AtomicInteger();
+		ContentVisitor<List<Long>> visitor = new ContentVisitor.Default<List<Long>>() {
+			@Override
+			protected List<Long> defaultVisit(Content content) {
+				int now = running.incrementAndGet();
+				synchronized (maxRunning) {
+					maxRunning.set(Math.max(maxRunning.get(), now));
+				}
+				try {
+					Thread.sleep(5);
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+				}
+				running.decrementAndGet();
+				return new ArrayList<Long>(Arrays.asList(content.getId()));
+			}
+		};
+		List<Long> expected = new ArrayList<Long>();
+		addPreorder(image, -1, expected);
+		for (int maxConcurrency = 1; maxConcurrency <= 2; maxConcurrency++) {
+			maxRunning.set(0);
+			List<Long> visited = new ContentTraversal<List<Long>>(caseDB, visitor, new ListCombiner())
+					.setParallelism(4)
+					.setMaxConcurrencyPerDataSource(maxConcurrency)
+					.traverse(image);
+			assertTrue(maxRunning.get() <= maxConcurrency);
+			assertEquals(expected, visited);
+		}
+	}
+
+	@Test
+	public void testMaxConcurrencyDoesNotAddThreads() throws TskCoreException {
+		// With one visit at a time, the content of a data source is visited
+		// by one thread, and the pool does not add threads for waiting ones
+		final int parallelism = 8;
+		final Set<Thread> threads = Collections.synchronizedSet(new HashSet<Thread>());
+		final AtomicInteger maxPoolSize = new AtomicInteger();
+		ContentVisitor<List<Long>> visitor = new ContentVisitor.Default<List<Long>>() {
+			@Override
+			protected List<Long> defaultVisit(Content content) {
+				threads.add(Thread.currentThread());
+				synchronized (maxPoolSize) {
+					maxPoolSize.set(Math.max(maxPoolSize.get(), ForkJoinTask.getPool().getPoolSize()));
+				}
+				return new ArrayList<Long>(Arrays.asList(content.getId()));
+			}
+		};
+		List<Long> visited = new ContentTraversal<List<Long>>(caseDB, visitor, new ListCombiner())
+				.setParallelism(parallelism)
+				.setMaxConcurrencyPerDataSource(1)
+				.traverse(image);
+		assertEquals(1, threads.size());
+		assertTrue(maxPoolSize.get() <= parallelism);
+		List<Long> expected = new ArrayList<Long>();
+		addPreorder(image, -1, expected);
+		assertEquals(expected, visited);
+	}
+
+	@Test
+	public void testChildrenLoadedPerLevel() throws TskCoreException {
+		// A data source with ten folders of one file each
+		SleuthkitCase.CaseDbTransaction trans = caseDB.beginTransaction();
+		LocalFilesDataSource wide = caseDB.addLocalFilesDataSource(WIDE_DEVICE_ID, "wide", "", trans);
+		for (int i = 0; i < 10; i++) {
+			LocalDirectory folder = caseDB.addLocalDirectory(wide.getId(), "folder" + i, trans);
+			caseDB.addLocalFile("file" + i + ".txt", "/evidence/file" + i + ".txt", 10, 0, 0, 0, 0, true, TskData.EncodingType.NONE, folder, trans);
+		}
+		trans.commit();
+
+		// Walking the tree with getChildren() takes two queries for each of
+		// the eleven objects with children. The traversal loads the children
+		// of all of the folders together.
+		List<Long> ids = new ArrayList<Long>();
+		addPreorder(wide, -1, ids);
+		assertEquals(21, ids.size());
+		long queryCount = caseDB.getQueryCount();
+		List<Long> visited = new ContentTraversal<List<Long>>(caseDB, new IdVisitor(), new ListCombiner())
+				.setParallelism(1)
+				.traverse(wide);
+		long traversalQueries = caseDB.getQueryCount() - queryCount;
+		assertEquals(ids, visited);
+		assertTrue(traversalQueries <= 8);
+	}
+
+	@Test
+	public void testCancel() throws TskCoreException {
+		final AtomicInteger visits = new AtomicInteger();
+		final List<ContentTraversal<List<Long>>> holder = new ArrayList<ContentTraversal<List<Long>>>();
+		ContentVisitor<List<Long>> visitor = new ContentVisitor.Default<List<Long>>() {
+			@Override
+			protected List<Long> defaultVisit(Content content) {
+				if (visits.incrementAndGet() == 2) {
+					holder.get(0).cancel();
+				}
+				return new ArrayList<Long>(Arrays.asList(content.getId()));
+			}
+		};
+		ContentTraversal<List<Long>> traversal = new ContentTraversal<List<Long>>(caseDB, visitor, new ListCombiner()).setParallelism(1);
+		holder.add(traversal);
+		try {
+			traversal.traverse(image);
+			fail("A cancelled traversal returned a result");
+		} catch (CancellationException ex) {
+			// Expected
+		}
+		assertTrue(traversal.isCancelled());
+		assertEquals(2, visits.get());
+
+		// The traversal can be run again after it was cancelled
+		visits.set(-1000);
+		assertFalse(traversal.traverse(image).isEmpty());
+		assertFalse(traversal.isCancelled());
+	}
+
+	/**
+	 * Adds the object ids of a content tree in depth-first order.
+	 */
+	private static void addPreorder(Content content, int maxDepth, List<Long> ids) throws TskCoreException {
+		ids.add(content.getId());
+		if (maxDepth != 0) {
+			for (Content child : content.getChildren()) {
+				addPreorder(child, maxDepth - 1, ids);
+			}
+		}
+	}
+
+	private static final class IdVisitor extends ContentVisitor.Default<List<Long>> {
+
+		@Override
+		protected List<Long> defaultVisit(Content content) {
+			return new ArrayList<Long>(Arrays.asList(content.getId()));
+		}
+	}
+
+	private static final class ListCombiner implements ContentTraversal.Combiner<List<Long>> {
+
+		@Override
+		public List<Long> combine(List<Long> first, List<Long> second) {
+			first.addAll(second);
+			return first;
+		}
+	}
+}
@@ -41,7 +41,7 @@
  * default ant target sets properties for the various folders.
  */
 @RunWith(Suite.class)
-@Suite.SuiteClasses({CommunicationsManagerTest.class, CaseDbSchemaVersionNumberTest.class,org.sleuthkit.datamodel.TopDownTraversal.class, org.sleuthkit.datamodel.SequentialTraversal.class, org.sleuthkit.datamodel.CrossCompare.class, org.sleuthkit.datamodel.BottomUpTest.class, org.sleuthkit.datamodel.CPPtoJavaCompare.class, org.sleuthkit.datamodel.HashDbTest.class})
+@Suite.SuiteClasses({CommunicationsManagerTest.class, FileQueryCountTest.class, FuzzyHashTest.class, AccountGraphSnapshotTest.class, RelationshipCountsTest.class, RelationshipRollupsTest.class, ContentSubtreeTest.class, PhysicalLayoutTest.class, AttributeTrigramsTest.class, AttributeSearchTest.class, TimelineEventTest.class, ObjectAncestorsTest.class, FileRecordTest.class, ContentTraversalTest.class, UniquePathsTest.class, DataSourceStatsTest.class, ParameterizedSQLTest.class, StringInternerTest.class, AbstractFileFootprintTest.class, ImageHashTest.class, BatchFileUpdateTest.class, RelationshipBatchTest.class, AccountGraphTest.class, CaseDbSchemaVersionNumberTest.class,org.sleuthkit.datamodel.TopDownTraversal.class, org.sleuthkit.datamodel.SequentialTraversal.class, org.sleuthkit.datamodel.CrossCompare.class, org.sleuthkit.datamodel.BottomUpTest.class, org.sleuthkit.datamodel.CPPtoJavaCompare.class, org.sleuthkit.datamodel.HashDbTest.class})
 public class DataModelTestSuite {
 
 	static final String TEST_IMAGE_DIR_NAME = "test" + java.io.File.separator + "Input";
@@ -0,0 +1,233 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2018 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.AfterClass;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.sleuthkit.datamodel.TskData.TSK_FS_META_FLAG_ENUM;
+import org.sleuthkit.datamodel.TskData.TSK_FS_NAME_FLAG_ENUM;
+
+/**
+ * Tests that the statistics of data sources kept up to date as files and
+ * artifacts are added and changed are the same as the statistics rebuilt
+ * from scratch, and tests DataSourceStats.Increments.
+ */
+public class DataSourceStatsTest {
+
+	private static final String TEST_DB = "DataSourceStatsTest.db";
+	private static final String TEST_IMAGE = "DataSourceStatsTest.img";
+	private static final String IMAGE_DEVICE_ID = "8f2d6a1c-4b7e-4c39-a0d5-e6f7a8b9c0d1";
+	private static final String LOCAL_DEVICE_ID = "1c2d3e4f-5a6b-4c7d-8e9f-a0b1c2d3e4f5";
+	private static final String OTHER_DEVICE_ID = "f5e4d3c2-b1a0-4f9e-8d7c-6b5a4c3d2e1f";
+	private static final String STALE_DEVICE_ID = "2b3c4d5e-6f7a-4b8c-9d0e-1f2a3b4c5d6e";
+
+	private static SleuthkitCase caseDB;
+	private static Image image;
+
+	public DataSourceStatsTest() {
+	}
+
+	@BeforeClass
+	public static void setUpClass() throws Exception {
+		String tempDirPath = System.getProperty("java.io.tmpdir");
+		String dbPath = tempDirPath + java.io.File.separator + TEST_DB;
+		new java.io.File(dbPath).delete();
+		caseDB = SleuthkitCase.newCase(dbPath);
+		image = TestDiskImages.addPartitionedFatImage(caseDB, tempDirPath + java.io.File.separator + TEST_IMAGE, IMAGE_DEVICE_ID);
+	}
+
+	@AfterClass
+	public static void tearDownClass() {
+		caseDB.close();
+	}
+
+	@Test
+	public void testIncrements() {
+		DataSourceStats.Increments increments = new DataSourceStats.Increments();
+		short alloc = TSK_FS_META_FLAG_ENUM.ALLOC.getValue();
+		short unalloc = TSK_FS_META_FLAG_ENUM.UNALLOC.getValue();
+		short deleted = TSK_FS_NAME_FLAG_ENUM.UNALLOC.getValue();
+		increments.addFile(2, 100, TSK_FS_NAME_FLAG_ENUM.ALLOC.getValue(), alloc, "txt", "text/plain", 1);
+		increments.addFile(1, 50, deleted, unalloc, "", null, 1);
+		increments.addArtifact(1, 3);
+
+		Map<DataSourceStats.Key, Long> changes = increments.getChanges();
+		assertEquals(Long.valueOf(100), changes.get(new DataSourceStats.Key(2, DataSourceStats.StatType.FILE_SIZE, "")));
+		assertEquals(Long.valueOf(1), changes.get(new DataSourceStats.Key(2, DataSourceStats.StatType.ALLOCATED_FILE_COUNT, "")));
+		assertEquals(Long.valueOf(1), changes.get(new DataSourceStats.Key(2, DataSourceStats.StatType.EXTENSION_FILE_COUNT, "txt")));
+		assertEquals(Long.valueOf(1), changes.get(new DataSourceStats.Key(2, DataSourceStats.StatType.MIME_TYPE_FILE_COUNT, "text/plain")));
+		assertEquals(Long.valueOf(1), changes.get(new DataSourceStats.Key(1, DataSourceStats.StatType.UNALLOCATED_FILE_COUNT, "")));
+		assertEquals(Long.valueOf(1), changes.get(new DataSourceStats.Key(1, DataSourceStats.StatType.DELETED_FILE_COUNT, "")));
+		assertEquals(Long.valueOf(1), changes.get(new DataSourceStats.Key(1, DataSourceStats.StatType.ARTIFACT_COUNT, "3")));
+		assertEquals(null, changes.get(new DataSourceStats.Key(1, DataSourceStats.StatType.EXTENSION_FILE_COUNT, "")));
+		assertEquals(null, changes.get(new DataSourceStats.Key(1, DataSourceStats.StatType.ALLOCATED_FILE_COUNT, "")));
+
+		// The changes are in the order of their keys
+		List<DataSourceStats.Key> keys = new ArrayList<DataSourceStats.Key>(changes.keySet());
+		for (int i = 1; i < keys.size(); i++) {
+			assertTrue(keys.get(i - 1).compareTo(keys.get(i)) < 0);
+		}
+		assertEquals(1, keys.get(0).getDataSourceObjId());
+
+		// Taking a file away cancels adding it, and rows that do not change
+		// are left out
+		DataSourceStats.Increments other = new DataSourceStats.Increments();
+		other.addFile(2, 100, TSK_FS_NAME_FLAG_ENUM.ALLOC.getValue(), alloc, "txt", "text/plain", -1);
+		other.addFile(2, 100, TSK_FS_NAME_FLAG_ENUM.ALLOC.getValue(), alloc, "txt", "text/html", 1);
+		increments.addAll(other);
+		changes = increments.getChanges();
+		assertEquals(null, changes.get(new DataSourceStats.Key(2, DataSourceStats.StatType.MIME_TYPE_FILE_COUNT, "text/plain")));
+		assertEquals(Long.valueOf(1), changes.get(new DataSourceStats.Key(2, DataSourceStats.StatType.MIME_TYPE_FILE_COUNT, "text/html")));
+		assertEquals(Long.valueOf(100), changes.get(new DataSourceStats.Key(2, DataSourceStats.StatType.FILE_SIZE, "")));
+		assertEquals(Long.valueOf(1), changes.get(new DataSourceStats.Key(2, DataSourceStats.StatType.FILE_COUNT, "")));
+	}
+
+	@Test
+	public void testLocalFiles() throws TskCoreException {
+		SleuthkitCase.CaseDbTransaction trans = caseDB.beginTransaction();
+		LocalFilesDataSource localFiles = caseDB.addLocalFilesDataSource(LOCAL_DEVICE_ID, "root", "", trans);
+		trans.commit();
+		DataSourceStats before = caseDB.getDataSourceStats(localFiles.getId());
+		assertEquals(1, before.getFileCount());
+
+		// Files added in a transaction and on their own
+		trans = caseDB.beginTransaction();
+		LocalDirectory folder = caseDB.addLocalDirectory(localFiles.getId(), "folder", trans);
+		LocalFile zip = caseDB.addLocalFile("local.zip", "/evidence/local.zip", 1000, 0, 0, 0, 0, true, TskData.EncodingType.NONE, folder, trans);
+		caseDB.addLocalFile("notes.txt", "/evidence/notes.txt", 20, 0, 0, 0, 0, true, TskData.EncodingType.NONE, folder, trans);
+		trans.commit();
+		LocalFile photo = caseDB.addLocalFile("photo.jpg", "/evidence/photo.jpg", 300, 0, 0, 0, 0, true, TskData.EncodingType.NONE, folder);
+		DerivedFile derived = caseDB.addDerivedFile("derived.txt", "ModuleOutput/derived.txt", 10, 0, 0, 0, 0, true, zip, "", "unzip", "1.0", "", TskData.EncodingType.NONE);
+		assertStatsRebuilt(localFiles);
+		assertEquals(6, caseDB.getDataSourceStats(localFiles.getId()).getFileCount());
+		assertEquals(1330, caseDB.getDataSourceStats(localFiles.getId()).getTotalFileSize());
+
+		// MIME types, changed derived files and artifacts
+		caseDB.setFileMIMEType(photo, "image/jpeg");
+		caseDB.setFileMIMEType(photo, "image/png");
+		Map<Long, String> mimeTypes = new HashMap<Long, String>();
+		mimeTypes.put(zip.getId(), "application/zip");
+		mimeTypes.put(derived.getId(), "text/plain");
+		caseDB.setFileMIMETypes(mimeTypes);
+		caseDB.updateDerivedFile(derived, "ModuleOutput/derived.csv", 25, 0, 0, 0, 0, true, "text/csv", "", "unzip", "1.1", "", TskData.EncodingType.NONE);
+		zip.newArtifact(BlackboardArtifact.ARTIFACT_TYPE.TSK_INTERESTING_FILE_HIT);
+		zip.newArtifact(BlackboardArtifact.ARTIFACT_TYPE.TSK_INTERESTING_FILE_HIT);
+		caseDB.newBlackboardArtifact(BlackboardArtifact.ARTIFACT_TYPE.TSK_METADATA_EXIF, photo.getId());
+		DataSourceStats stats = assertStatsRebuilt(localFiles);
+		assertEquals(Long.valueOf(1), stats.getMimeTypeCounts().get("image/png"));
+		assertEquals(null, stats.getMimeTypeCounts().get("image/jpeg"));
+		assertEquals(Long.valueOf(1), stats.getMimeTypeCounts().get("text/csv"));
+		assertEquals(2, stats.getArtifactCount(BlackboardArtifact.ARTIFACT_TYPE.TSK_INTERESTING_FILE_HIT.getTypeID()));
+		assertEquals(1345, stats.getTotalFileSize());
+	}
+
+	@Test
+	public void testRolledBackTransaction() throws TskCoreException {
+		SleuthkitCase.CaseDbTransaction trans = caseDB.beginTransaction();
+		LocalFilesDataSource localFiles = caseDB.addLocalFilesDataSource(OTHER_DEVICE_ID, "other", "", trans);
+		trans.commit();
+		DataSourceStats before = caseDB.getDataSourceStats(localFiles.getId());
+
+		trans = caseDB.beginTransaction();
+		caseDB.addLocalFile("lost.txt", "/evidence/lost.txt", 20, 0, 0, 0, 0, true, TskData.EncodingType.NONE, localFiles, trans);
+		trans.rollback();
+		assertStatsEqual(before, caseDB.getDataSourceStats(localFiles.getId()));
+		assertStatsRebuilt(localFiles);
+	}
+
+	@Test
+	public void testInvalidated() throws TskCoreException {
+		SleuthkitCase.CaseDbTransaction trans = caseDB.beginTransaction();
+		LocalFilesDataSource localFiles = caseDB.addLocalFilesDataSource(STALE_DEVICE_ID, "stale", "", trans);
+		trans.commit();
+		long rootFileCount = caseDB.getDataSourceStats(localFiles.getId()).getFileCount();
+
+		// Dropped statistics are built again when next asked for, with the
+		// files added while they were not kept.
+		caseDB.invalidateDataSourceStats(localFiles.getId());
+		trans = caseDB.beginTransaction();
+		caseDB.addLocalFile("found.txt", "/evidence/found.txt", 30, 0, 0, 0, 0, true, TskData.EncodingType.NONE, localFiles, trans);
+		trans.commit();
+		DataSourceStats stats = assertStatsRebuilt(localFiles);
+		assertEquals(rootFileCount + 1, stats.getFileCount());
+		assertEquals(30, stats.getTotalFileSize());
+	}
+
+	@Test
+	public void testImage() throws TskCoreException {
+		DataSourceStats before = assertStatsRebuilt(image);
+		assertTrue(before.getFileCount() > 0);
+		assertEquals(Long.valueOf(2), before.getExtensionCounts().get("txt"));
+
+		Volume volume = null;
+		for (Content volumeSystem : image.getChildren()) {
+			for (Content child : volumeSystem.getChildren()) {
+				if (!child.getChildren().isEmpty()) {
+					volume = (Volume) child;
+				}
+			}
+		}
+		List<CarvingResult.CarvedFile> carvedFiles = Arrays.asList(
+				new CarvingResult.CarvedFile("carved1.jpg", 512, Arrays.asList(new TskFileRange(0, 512, 0))),
+				new CarvingResult.CarvedFile("carved2.jpg", 1024, Arrays.asList(new TskFileRange(512, 1024, 0))));
+		caseDB.addCarvedFiles(new CarvingResult(volume, carvedFiles));
+		for (AbstractFile file : caseDB.findFiles(image, "A.TXT")) {
+			caseDB.setFileMIMEType(file, "text/plain");
+			file.newArtifact(BlackboardArtifact.ARTIFACT_TYPE.TSK_INTERESTING_FILE_HIT);
+		}
+		DataSourceStats stats = assertStatsRebuilt(image);
+		assertTrue(stats.getFileCount() >= before.getFileCount() + 2);
+		assertEquals(before.getTotalFileSize() + 1536, stats.getTotalFileSize());
+		assertEquals(Long.valueOf(2), stats.getExtensionCounts().get("jpg"));
+		assertEquals(before.getUnallocatedFileCount() + 2, stats.getUnallocatedFileCount());
+	}
+
+	/**
+	 * Checks that the statistics kept for a data source are the statistics
+	 * rebuilt from scratch.
+	 *
+	 * @return The statistics.
+	 */
+	private static DataSourceStats assertStatsRebuilt(Content dataSource) throws TskCoreException {
+		DataSourceStats kept = caseDB.getDataSourceStats(dataSource.getId());
+		DataSourceStats rebuilt = caseDB.rebuildDataSourceStats(dataSource.getId());
+		assertStatsEqual(rebuilt, kept);
+		return kept;
+	}
+
+	private static void assertStatsEqual(DataSourceStats expected, DataSourceStats actual) {
+		assertEquals(expected.getDataSourceObjId(), actual.getDataSourceObjId());
+		assertEquals(expected.getFileCount(), actual.getFileCount());
+		assertEquals(expected.getTotalFileSize(), actual.getTotalFileSize());
+		assertEquals(expected.getAllocatedFileCount(), actual.getAllocatedFileCount());
+		assertEquals(expected.getUnallocatedFileCount(), actual.getUnallocatedFileCount());
+		assertEquals(expected.getDeletedFileCount(), actual.getDeletedFileCount());
+		assertEquals(expected.getExtensionCounts(), actual.getExtensionCounts());
+		assertEquals(expected.getMimeTypeCounts(), actual.getMimeTypeCounts());
+		assertEquals(expected.getArtifactCounts(), actual.getArtifactCounts());
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2018 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.util.List;
+import org.junit.AfterClass;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Checks that loading many derived and local files takes a fixed number of
+ * queries rather than a query per file for its local path.
+ */
+public class FileQueryCountTest {
+
+	private final static String TEST_DB = "FileQueryCountTest.db";
+	private static final String DEVICE_ID = "0b3c5b0e-8f1e-4a43-a4a1-4c7b8cc0f1d2";
+	private static final int FILE_COUNT = 200;
+	private static final int MAX_QUERIES = 4;
+
+	private static SleuthkitCase caseDB;
+	private static LocalFilesDataSource dataSource;
+
+	public FileQueryCountTest() {
+	}
+
+	@BeforeClass
+	public static void setUpClass() throws TskCoreException {
+		String tempDirPath = System.getProperty("java.io.tmpdir");
+		String dbPath = tempDirPath + java.io.File.separator + TEST_DB;
+		new java.io.File(dbPath).delete();
+		caseDB = SleuthkitCase.newCase(dbPath);
+
+		SleuthkitCase.CaseDbTransaction trans = caseDB.beginTransaction();
+		dataSource = caseDB.addLocalFilesDataSource(DEVICE_ID, "root", "", trans);
+		LocalFile archive = null;
+		for (int i = 0; i < FILE_COUNT; i++) {
+			LocalFile file = caseDB.addLocalFile("local" + i + ".zip", "/evidence/local" + i + ".zip", 10, 0, 0, 0, 0, true, TskData.EncodingType.XOR1, dataSource, trans);
+			if (null == archive) {
+				archive = file;
+			}
+		}
+		trans.commit();
+		for (int i = 0; i < FILE_COUNT; i++) {
+			caseDB.addDerivedFile("derived" + i, "ModuleOutput/derived" + i, 10, 0, 0, 0, 0, true, archive, "", "unzip", "1.0", "", TskData.EncodingType.NONE);
+		}
+	}
+
+	@AfterClass
+	public static void tearDownClass() {
+		caseDB.close();
+	}
+
+	@Test
+	public void testFindAllFilesWhere() throws TskCoreException {
+		long before = caseDB.getQueryCount();
+		List<AbstractFile> files = caseDB.findAllFilesWhere("data_source_obj_id = " + dataSource.getId() + " AND (type = "
+				+ TskData.TSK_DB_FILES_TYPE_ENUM.LOCAL.getFileType() + " OR type = " + TskData.TSK_DB_FILES_TYPE_ENUM.DERIVED.getFileType() + ")");
+		long queries = caseDB.getQueryCount() - before;
+		assertEquals(2 * FILE_COUNT, files.size());
+		assertTrue("findAllFilesWhere() took " + queries + " queries for " + files.size() + " files", queries <= MAX_QUERIES);
+		for (AbstractFile file : files) {
+			assertTrue(file.getLocalPath().endsWith(file.getName()));
+			assertEquals(caseDB.getAbstractFileById(file.getId()).getLocalPath(), file.getLocalPath());
+		}
+	}
+
+	@Test
+	public void testGetChildren() throws TskCoreException {
+		long before = caseDB.getQueryCount();
+		List<Content> children = dataSource.getChildren();
+		long queries = caseDB.getQueryCount() - before;
+		assertEquals(FILE_COUNT, children.size());
+		assertTrue("getChildren() took " + queries + " queries for " + children.size() + " files", queries <= MAX_QUERIES);
+	}
+
+	@Test
+	public void testGetChildrenWithCounts() throws TskCoreException {
+		long before = caseDB.getQueryCount();
+		List<Content> children = dataSource.getChildren(true);
+		long queries = caseDB.getQueryCount() - before;
+		assertEquals(FILE_COUNT, children.size());
+		assertTrue("getChildren(true) took " + queries + " queries for " + children.size() + " files", queries <= MAX_QUERIES);
+		before = caseDB.getQueryCount();
+		int total = 0;
+		for (Content child : children) {
+			total += child.getChildrenCount();
+			assertEquals(child.getChildrenCount() > 0, child.hasChildren());
+		}
+		assertEquals(0, caseDB.getQueryCount() - before);
+		assertEquals(FILE_COUNT, total);
+
+		// Other calls still count the children when asked
+		children = dataSource.getChildren(false);
+		before = caseDB.getQueryCount();
+		children.get(0).getChildrenCount();
+		assertTrue(caseDB.getQueryCount() > before);
+	}
+}
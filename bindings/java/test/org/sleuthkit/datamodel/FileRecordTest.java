@@ -0,0 +1,163 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2018 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.util.List;
+import org.junit.AfterClass;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests SleuthkitCase.queryFileRecords() and FileRecord on the files of an
+ * image.
+ */
+public class FileRecordTest {
+
+	private static final String TEST_DB = "FileRecordTest.db";
+	private static final String TEST_IMAGE = "FileRecordTest.img";
+	private static final String IMAGE_DEVICE_ID = "0c4e2a7b-91d3-4f58-a6e0-3b7d1c9f2e84";
+	private static final String LOCAL_DEVICE_ID = "8e1d4c7a-2b6f-4a93-b5d0-6c2e9f1a7b34";
+
+	private static SleuthkitCase caseDB;
+	private static Image image;
+	private static LocalFilesDataSource localFiles;
+
+	public FileRecordTest() {
+	}
+
+	@BeforeClass
+	public static void setUpClass() throws Exception {
+		String tempDirPath = System.getProperty("java.io.tmpdir");
+		String dbPath = tempDirPath + java.io.File.separator + TEST_DB;
+		new java.io.File(dbPath).delete();
+		caseDB = SleuthkitCase.newCase(dbPath);
+		image = TestDiskImages.addPartitionedFatImage(caseDB, tempDirPath + java.io.File.separator + TEST_IMAGE, IMAGE_DEVICE_ID);
+		SleuthkitCase.CaseDbTransaction trans = caseDB.beginTransaction();
+		localFiles = caseDB.addLocalFilesDataSource(LOCAL_DEVICE_ID, "root", "", trans);
+		trans.commit();
+	}
+
+	@AfterClass
+	public static void tearDownClass() {
+		caseDB.close();
+	}
+
+	@Test
+	public void testRecordsMatchFiles() throws TskCoreException {
+		String where = "data_source_obj_id = " + image.getId() + " AND name NOT LIKE '$%'";
+		List<AbstractFile> files = caseDB.findAllFilesWhere(where + " ORDER BY obj_id");
+		List<FileRecord> records = caseDB.queryFileRecords(where + " ORDER BY obj_id",
+				FileRecord.Column.NAME, FileRecord.Column.SIZE, FileRecord.Column.META_ADDR,
+				FileRecord.Column.PARENT_PATH, FileRecord.Column.DATA_SOURCE_OBJ_ID);
+		assertEquals(files.size(), records.size());
+		assertFalse(records.isEmpty());
+		for (int i = 0; i < files.size(); i++) {
+			AbstractFile file = files.get(i);
+			FileRecord record = records.get(i);
+			assertEquals(file.getId(), record.getObjId());
+			assertEquals(file.getName(), record.getString(FileRecord.Column.NAME));
+			assertEquals(file.getSize(), record.getLong(FileRecord.Column.SIZE).longValue());
+			assertEquals(file.getMetaAddr(), record.getLong(FileRecord.Column.META_ADDR).longValue());
+			assertEquals(file.getParentPath(), record.getString(FileRecord.Column.PARENT_PATH));
+			assertEquals(image.getId(), record.getLong(FileRecord.Column.DATA_SOURCE_OBJ_ID).longValue());
+		}
+	}
+
+	@Test
+	public void testNullsAndFileContent() throws TskCoreException {
+		List<FileRecord> records = caseDB.queryFileRecords("name = 'A.TXT'",
+				FileRecord.Column.MD5, FileRecord.Column.MIME_TYPE, FileRecord.Column.SIZE);
+		assertEquals(1, records.size());
+		FileRecord record = records.get(0);
+		assertNull(record.getString(FileRecord.Column.MD5));
+		assertNull(record.getString(FileRecord.Column.MIME_TYPE));
+		assertEquals(TestDiskImages.FILE_CONTENT.length(), record.getLong(FileRecord.Column.SIZE).longValue());
+		assertEquals("A.TXT", caseDB.getAbstractFileById(record.getObjId()).getName());
+	}
+
+	@Test
+	public void testNullNumbers() throws TskCoreException {
+		// The root of a local files data source is not in a file system
+		List<FileRecord> records = caseDB.queryFileRecords("obj_id = " + localFiles.getId(),
+				FileRecord.Column.FS_OBJ_ID, FileRecord.Column.NAME, FileRecord.Column.SIZE);
+		assertEquals(1, records.size());
+		FileRecord record = records.get(0);
+		assertNull(record.getLong(FileRecord.Column.FS_OBJ_ID));
+		assertEquals(-1, record.getLong(FileRecord.Column.FS_OBJ_ID, -1));
+		assertEquals(0, record.getLong(FileRecord.Column.SIZE).longValue());
+		assertEquals(0, record.getLong(FileRecord.Column.SIZE, -1));
+		assertEquals("root", record.getString(FileRecord.Column.NAME));
+		assertEquals("FileRecord{obj_id=" + localFiles.getId() + ", fs_obj_id=null, name=root, size=0}", record.toString());
+		assertEquals(record, caseDB.queryFileRecords("obj_id = " + localFiles.getId(),
+				FileRecord.Column.FS_OBJ_ID, FileRecord.Column.NAME, FileRecord.Column.SIZE).get(0));
+	}
+
+	@Test
+	public void testColumns() throws TskCoreException {
+		// Repeated columns are loaded once, and the object id is always loaded
+		List<FileRecord> records = caseDB.queryFileRecords("name = 'B.TXT'",
+				FileRecord.Column.SIZE, FileRecord.Column.NAME, FileRecord.Column.SIZE);
+		assertEquals(1, records.size());
+		FileRecord record = records.get(0);
+		assertTrue(record.hasColumn(FileRecord.Column.NAME));
+		assertTrue(record.hasColumn(FileRecord.Column.SIZE));
+		assertFalse(record.hasColumn(FileRecord.Column.MD5));
+		assertEquals("FileRecord{obj_id=" + record.getObjId() + ", name=B.TXT, size=" + TestDiskImages.FILE_CONTENT.length() + "}", record.toString());
+
+		try {
+			record.getString(FileRecord.Column.MD5);
+			fail("A column that was not loaded was read");
+		} catch (IllegalArgumentException ex) {
+			// Expected
+		}
+		try {
+			record.getLong(FileRecord.Column.NAME);
+			fail("A text column was read as a number");
+		} catch (IllegalArgumentException ex) {
+			// Expected
+		}
+		try {
+			record.getString(FileRecord.Column.SIZE);
+			fail("A numeric column was read as text");
+		} catch (IllegalArgumentException ex) {
+			// Expected
+		}
+
+		FileRecord idOnly = caseDB.queryFileRecords("name = 'B.TXT'").get(0);
+		assertEquals(record.getObjId(), idOnly.getObjId());
+		assertFalse(idOnly.hasColumn(FileRecord.Column.NAME));
+	}
+
+	@Test
+	public void testEquals() throws TskCoreException {
+		FileRecord record1 = caseDB.queryFileRecords("name = 'B.TXT'", FileRecord.Column.NAME).get(0);
+		FileRecord record2 = caseDB.queryFileRecords("name = 'B.TXT'", FileRecord.Column.NAME).get(0);
+		FileRecord record3 = caseDB.queryFileRecords("name = 'B.TXT'", FileRecord.Column.PARENT_PATH).get(0);
+		FileRecord record4 = caseDB.queryFileRecords("name = 'A.TXT'", FileRecord.Column.NAME).get(0);
+		assertEquals(record1, record2);
+		assertEquals(record1.hashCode(), record2.hashCode());
+		assertFalse(record1.equals(record3));
+		assertFalse(record1.equals(record4));
+	}
+}
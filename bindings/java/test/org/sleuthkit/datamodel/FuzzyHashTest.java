@@ -0,0 +1,106 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2018 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+/**
+ * Checks FuzzyHash against hashes computed by ssdeep. The test data other
+ * than the strings is generated with a linear congruential generator, so
+ * that large inputs need not be stored.
+ */
+public class FuzzyHashTest {
+
+	private static final String TEXT1 = "Also called fuzzy hashes, Ctph can match inputs that have homologies.";
+	private static final String TEXT2 = "Also called fuzzy hashes, CTPH can match inputs that have homologies.";
+	private static final String TEXT1_HASH = "3:AXGBicFlgVNhBGcL6wCrFQEv:AXGHsNhxLsr2C";
+	private static final String TEXT2_HASH = "3:AXGBicFlIHBGcL6wCrFQEv:AXGH6xLsr2C";
+
+	public FuzzyHashTest() {
+	}
+
+	@Test
+	public void testEmpty() {
+		assertEquals("3::", hash(new byte[0]));
+	}
+
+	@Test
+	public void testShortBuffer() {
+		assertEquals(TEXT1_HASH, hash(TEXT1.getBytes(StandardCharsets.US_ASCII)));
+		assertEquals(TEXT2_HASH, hash(TEXT2.getBytes(StandardCharsets.US_ASCII)));
+		assertEquals("96:mYTEhpuR3mgdXS1TX8dMxqg7EKR60xWFB4LRAexVCa+smjH1Qmf1e8xFyOD8y:jTEHgZraNfRwKZxmTym9e6X8y",
+				hash(generate(5000, 7)));
+	}
+
+	/**
+	 * Data that ends with zeros ends with a rolling sum of zero, so the
+	 * characters kept at the last reset points end the signatures.
+	 */
+	@Test
+	public void testEndOnResetPoint() {
+		assertEquals("96:mYTEhpuR3mgdXS1TX8dMxqg7EKR60xWFB4LRAexVCa+smjH1Qmf1e8xFyOD8:jTEHgZraNfRwKZxmTym9e6X8",
+				hash(endWithZeros(generate(5000, 7), 8)));
+		// Full first signature
+		assertEquals("24:kCTDgM92hxOKObUiWcKT1H7wKu3WLE7l6dBLmZty4Y28oS2kxH+CjgAE+Gs8RhNg:kCP9UnfZc+1JsqHB6Zty41jS/jE+GsiV",
+				hash(endWithZeros(generate(1481, 113), 8)));
+		// Half hash character of a short second signature
+		assertEquals("48:E0/yNKkDDoddMNPzmnP1s5LSoCDc7692XUN8YWmtB3sDHSbsHRZZHALbUyDR:RyNKkDaESNKWzDKQ2XUuYWmtB38HSbCq",
+				hash(endWithZeros(generate(2480, 140), 8)));
+	}
+
+	@Test
+	public void testLargeBuffer() {
+		byte[] data = generate(1 << 20, 1);
+		assertEquals("24576:9az65cUN9WGmG8Uv4vtfUZqILq9KaB8Eh5U7QRVmPjt9S1Hnh+MI:IS7N97LvaUZqILMxXea1JI", hash(data));
+		assertEquals("24576:9az65cUN9WGmG8Uv4vtfUZqILq9KaB8Eh5U7QRVmPjt9S1Hnh+M:IS7N97LvaUZqILMxXea1J", hash(endWithZeros(data, 16)));
+		assertEquals("3::", hash(new byte[1 << 20]));
+	}
+
+	@Test
+	public void testCompare() {
+		assertEquals(100, FuzzyHash.compare(TEXT1_HASH, TEXT1_HASH));
+		assertEquals(22, FuzzyHash.compare(TEXT1_HASH, TEXT2_HASH));
+		assertEquals(0, FuzzyHash.compare(TEXT1_HASH, hash(generate(5000, 7))));
+	}
+
+	private static String hash(byte[] data) {
+		FuzzyHash fuzzyHash = new FuzzyHash();
+		fuzzyHash.update(data, 0, data.length);
+		return fuzzyHash.getHash();
+	}
+
+	private static byte[] generate(int length, int seed) {
+		byte[] data = new byte[length];
+		int x = seed;
+		for (int i = 0; i < length; i++) {
+			x = x * 1103515245 + 12345;
+			data[i] = (byte) (x >>> 16);
+		}
+		return data;
+	}
+
+	private static byte[] endWithZeros(byte[] data, int count) {
+		byte[] copy = Arrays.copyOf(data, data.length);
+		Arrays.fill(copy, copy.length - count, copy.length, (byte) 0);
+		return copy;
+	}
+}
@@ -25,6 +25,7 @@
 import java.io.OutputStreamWriter;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.logging.Level;
@@ -155,6 +156,25 @@ public void testHashDb() {
 			boolean hlio = SleuthkitJNI.hashDatabaseIsIndexOnly(handle);
 			assertFalse(hlio);
 
+			// Look up through a hash db set, including a cached repeat
+			HashDbSet dbSet = new HashDbSet(Arrays.asList(handle));
+			HashDbSet.LookupResult[] setResults = dbSet.lookupAll(new String[]{md5hash2, md5hashBad, md5hash2});
+			assertTrue(setResults[0].isHit());
+			assertEquals(Arrays.asList(handle), setResults[0].getHitDbHandles());
+			assertEquals(name, setResults[0].getHashHitInfo().getNames().get(0));
+			assertFalse(setResults[1].isHit());
+			assertNull(setResults[1].getHashHitInfo());
+			assertTrue(dbSet.lookupAll(md5hash2).isHit());
+
+			// Changing the details of a cached result does not change them for
+			// other callers
+			setResults[0].getHashHitInfo().addName(name2);
+			setResults[0].getHashHitInfo().getComments().add(com2);
+			HashHitInfo cachedInfo = dbSet.lookupAll(md5hash2).getHashHitInfo();
+			assertEquals(Arrays.asList(name), cachedInfo.getNames());
+			assertFalse(cachedInfo.getComments().contains(com2));
+			dbSet.close();
+
 			// Close it out
 			SleuthkitJNI.closeHashDatabase(handle);
 
@@ -0,0 +1,243 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2018 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.security.MessageDigest;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.AfterClass;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.sleuthkit.datamodel.HashUtility.HashType;
+
+/**
+ * Tests Image.verifyHash() and the hash columns of tsk_image_info, with an
+ * image that is hashed in several chunks.
+ */
+public class ImageHashTest {
+
+	private static final String TEST_DB = "ImageHashTest.db";
+	private static final String TEST_IMAGE = "ImageHashTest.img";
+	private static final String MATCH_DEVICE_ID = "6a7b8c9d-0e1f-4a2b-8c3d-4e5f6a7b8c9d";
+	private static final String MISMATCH_DEVICE_ID = "1f2e3d4c-5b6a-4978-8695-a4b3c2d1e0f9";
+	private static final String SPLIT_DEVICE_ID = "9c8b7a6f-5e4d-4c3b-a291-807f6e5d4c3b";
+	private static final String WRONG_MD5 = "0123456789abcdef0123456789abcdef";
+
+	/**
+	 * The number of bytes appended to the disk image, so that it is hashed
+	 * in more than two chunks of ImageHasher.CHUNK_SIZE.
+	 */
+	private static final int PADDING_SIZE = 9 * 1024 * 1024 + 1000;
+
+	private static String tempDirPath;
+	private static SleuthkitCase caseDB;
+	private static String imagePath;
+	private static Map<HashType, String> expectedHashes;
+
+	public ImageHashTest() {
+	}
+
+	@BeforeClass
+	public static void setUpClass() throws Exception {
+		tempDirPath = System.getProperty("java.io.tmpdir");
+		String dbPath = tempDirPath + File.separator + TEST_DB;
+		new File(dbPath).delete();
+		caseDB = SleuthkitCase.newCase(dbPath);
+
+		imagePath = tempDirPath + File.separator + TEST_IMAGE;
+		TestDiskImages.writePartitionedFatImage(imagePath);
+		byte[] padding = new byte[PADDING_SIZE];
+		new Random(17).nextBytes(padding);
+		FileOutputStream out = new FileOutputStream(imagePath, true);
+		try {
+			out.write(padding);
+		} finally {
+			out.close();
+		}
+		expectedHashes = hashFile(imagePath);
+	}
+
+	@AfterClass
+	public static void tearDownClass() {
+		caseDB.close();
+	}
+
+	/**
+	 * An image without a stored MD5 gets the calculated hashes stored, and
+	 * then verifies against them.
+	 */
+	@Test
+	public void testMatch() throws Exception {
+		Image image = addImage(MATCH_DEVICE_ID, imagePath);
+		assertTrue(isEmpty(image.getMd5()));
+		assertNull(image.getSha1());
+		assertNull(image.getSha256());
+
+		final long[] lastProgress = {0, 0};
+		Image.HashVerificationResult result = image.verifyHash(Arrays.asList(HashType.values()), 2, new Image.HashProgressListener() {
+			@Override
+			public void progress(long bytesHashed, long totalBytes, double bytesPerSecond) {
+				assertTrue(bytesHashed >= lastProgress[0]);
+				lastProgress[0] = bytesHashed;
+				lastProgress[1] = totalBytes;
+			}
+		});
+		assertEquals(expectedHashes, result.getHashes());
+		assertTrue(isEmpty(result.getStoredMd5()));
+		assertFalse(result.isMd5Verified());
+		assertFalse(result.isMd5Mismatch());
+		assertEquals(image.getSize(), result.getBytesHashed());
+		assertEquals(image.getSize(), lastProgress[0]);
+		assertEquals(image.getSize(), lastProgress[1]);
+
+		// The hashes are in the columns of tsk_image_info
+		assertEquals(expectedHashes, readHashColumns(image.getId()));
+		Image reloaded = caseDB.getImageById(image.getId());
+		assertEquals(expectedHashes.get(HashType.MD5), reloaded.getMd5());
+		assertEquals(expectedHashes.get(HashType.SHA1), reloaded.getSha1());
+		assertEquals(expectedHashes.get(HashType.SHA256), reloaded.getSha256());
+
+		// Verifying again checks the stored MD5
+		result = reloaded.verifyHash(Collections.singleton(HashType.MD5), 3);
+		assertEquals(expectedHashes.get(HashType.MD5), result.getStoredMd5());
+		assertTrue(result.isMd5Verified());
+		assertFalse(result.isMd5Mismatch());
+	}
+
+	/**
+	 * An image whose stored MD5 is wrong fails verification, and keeps the
+	 * stored MD5.
+	 */
+	@Test
+	public void testMismatch() throws Exception {
+		Image image = addImage(MISMATCH_DEVICE_ID, imagePath);
+		Map<HashType, String> storedHashes = new EnumMap<HashType, String>(HashType.class);
+		storedHashes.put(HashType.MD5, WRONG_MD5);
+		caseDB.setImageHashes(image, storedHashes);
+		image = caseDB.getImageById(image.getId());
+
+		Image.HashVerificationResult result = image.verifyHash(Arrays.asList(HashType.MD5, HashType.SHA1), 1);
+		assertEquals(WRONG_MD5, result.getStoredMd5());
+		assertEquals(expectedHashes.get(HashType.MD5), result.getHashes().get(HashType.MD5));
+		assertTrue(result.isMd5Mismatch());
+		assertFalse(result.isMd5Verified());
+
+		Map<HashType, String> columns = readHashColumns(image.getId());
+		assertEquals(WRONG_MD5, columns.get(HashType.MD5));
+		assertEquals(expectedHashes.get(HashType.SHA1), columns.get(HashType.SHA1));
+		assertNull(columns.get(HashType.SHA256));
+		assertEquals(WRONG_MD5, caseDB.getImageById(image.getId()).getMd5());
+	}
+
+	/**
+	 * A split raw image is hashed across the boundary of its segments.
+	 */
+	@Test
+	public void testSplitImage() throws Exception {
+		byte[] data = new byte[(int) new File(imagePath).length()];
+		RandomAccessFile file = new RandomAccessFile(imagePath, "r");
+		try {
+			file.readFully(data);
+		} finally {
+			file.close();
+		}
+		String firstSegment = tempDirPath + File.separator + "ImageHashTest.001";
+		String secondSegment = tempDirPath + File.separator + "ImageHashTest.002";
+		int splitOffset = 5 * 1024 * 1024 + 123;
+		writeFile(firstSegment, Arrays.copyOfRange(data, 0, splitOffset));
+		writeFile(secondSegment, Arrays.copyOfRange(data, splitOffset, data.length));
+
+		Image image = addImage(SPLIT_DEVICE_ID, firstSegment, secondSegment);
+		assertEquals(2, image.getPaths().length);
+		Image.HashVerificationResult result = image.verifyHash(Arrays.asList(HashType.values()), 4);
+		assertEquals(expectedHashes, result.getHashes());
+	}
+
+	private static boolean isEmpty(String hash) {
+		return hash == null || hash.isEmpty();
+	}
+
+	private static Image addImage(String deviceId, String... paths) throws TskCoreException, TskDataException {
+		SleuthkitJNI.CaseDbHandle.AddImageProcess process = caseDB.makeAddImageProcess("UTC", false, false, "");
+		process.run(deviceId, paths);
+		return caseDB.getImageById(process.commit());
+	}
+
+	private static Map<HashType, String> readHashColumns(long imageId) throws TskCoreException, SQLException {
+		Map<HashType, String> hashes = new EnumMap<HashType, String>(HashType.class);
+		SleuthkitCase.CaseDbQuery query = caseDB.executeQuery("SELECT md5, sha1, sha256 FROM tsk_image_info WHERE obj_id = " + imageId);
+		try {
+			ResultSet rs = query.getResultSet();
+			assertTrue(rs.next());
+			putIfNotNull(hashes, HashType.MD5, rs.getString("md5"));
+			putIfNotNull(hashes, HashType.SHA1, rs.getString("sha1"));
+			putIfNotNull(hashes, HashType.SHA256, rs.getString("sha256"));
+		} finally {
+			query.close();
+		}
+		return hashes;
+	}
+
+	private static void putIfNotNull(Map<HashType, String> hashes, HashType hashType, String hash) {
+		if (hash != null) {
+			hashes.put(hashType, hash);
+		}
+	}
+
+	private static Map<HashType, String> hashFile(String path) throws Exception {
+		byte[] data = new byte[(int) new File(path).length()];
+		RandomAccessFile file = new RandomAccessFile(path, "r");
+		try {
+			file.readFully(data);
+		} finally {
+			file.close();
+		}
+		Map<HashType, String> hashes = new EnumMap<HashType, String>(HashType.class);
+		for (HashType hashType : HashType.values()) {
+			StringBuilder hex = new StringBuilder();
+			for (byte b : MessageDigest.getInstance(hashType.getAlgorithm()).digest(data)) {
+				hex.append(String.format("%02x", b));
+			}
+			hashes.put(hashType, hex.toString());
+		}
+		return hashes;
+	}
+
+	private static void writeFile(String path, byte[] data) throws IOException {
+		FileOutputStream out = new FileOutputStream(path);
+		try {
+			out.write(data);
+		} finally {
+			out.close();
+		}
+	}
+}
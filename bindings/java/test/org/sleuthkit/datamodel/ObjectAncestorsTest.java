@@ -0,0 +1,204 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2018 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.AfterClass;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests SleuthkitCase.getDescendantIds(), countDescendants() and
+ * getAncestors() on an image, whose ancestors table is filled in when it is
+ * added, and on a local files data source, whose table is filled in when it
+ * is first used.
+ */
+public class ObjectAncestorsTest {
+
+	private static final String TEST_DB = "ObjectAncestorsTest.db";
+	private static final String TEST_IMAGE = "ObjectAncestorsTest.img";
+	private static final String IMAGE_DEVICE_ID = "5f0b9c2e-3a41-4e7d-8b6f-1c2d3e4f5a6b";
+	private static final String LOCAL_DEVICE_ID = "9e8d7c6b-5a49-4382-a1b0-c9d8e7f6a5b4";
+
+	private static SleuthkitCase caseDB;
+	private static Image image;
+	private static LocalFilesDataSource localFiles;
+	private static LocalDirectory folder;
+	private static LocalFile localFile;
+	private static long imageAncestorRows;
+	private static long imageMarkerRows;
+
+	public ObjectAncestorsTest() {
+	}
+
+	@BeforeClass
+	public static void setUpClass() throws Exception {
+		String tempDirPath = System.getProperty("java.io.tmpdir");
+		String dbPath = tempDirPath + java.io.File.separator + TEST_DB;
+		new java.io.File(dbPath).delete();
+		caseDB = SleuthkitCase.newCase(dbPath);
+		image = TestDiskImages.addPartitionedFatImage(caseDB, tempDirPath + java.io.File.separator + TEST_IMAGE, IMAGE_DEVICE_ID);
+		imageAncestorRows = countRows("ancestor_id = " + image.getId() + " AND depth > 0");
+		imageMarkerRows = countRows("descendant_id = " + image.getId() + " AND depth = 0");
+
+		SleuthkitCase.CaseDbTransaction trans = caseDB.beginTransaction();
+		localFiles = caseDB.addLocalFilesDataSource(LOCAL_DEVICE_ID, "root", "", trans);
+		folder = caseDB.addLocalDirectory(localFiles.getId(), "folder", trans);
+		localFile = caseDB.addLocalFile("local.zip", "/evidence/local.zip", 10, 0, 0, 0, 0, true, TskData.EncodingType.NONE, folder, trans);
+		trans.commit();
+	}
+
+	@AfterClass
+	public static void tearDownClass() {
+		caseDB.close();
+	}
+
+	@Test
+	public void testImageDescendants() throws TskCoreException {
+		List<Long> descendantIds = caseDB.getDescendantIds(image);
+		assertEquals(allDescendantIds(image), new HashSet<Long>(descendantIds));
+		assertEquals(descendantIds.size(), caseDB.countDescendants(image));
+
+		// Each object comes after its parent
+		for (int i = 0; i < descendantIds.size(); i++) {
+			Content descendant = caseDB.getContentById(descendantIds.get(i));
+			long parentId = descendant.getParent().getId();
+			assertTrue(parentId == image.getId() || descendantIds.indexOf(parentId) < i);
+		}
+
+		Content volumeSystem = image.getChildren().get(0);
+		assertEquals(allDescendantIds(volumeSystem).size(), caseDB.countDescendants(volumeSystem));
+	}
+
+	@Test
+	public void testImageFilledInOnCommit() throws TskCoreException {
+		// Counted before any query used the table
+		assertEquals(1, imageMarkerRows);
+		assertEquals(allDescendantIds(image).size(), imageAncestorRows);
+	}
+
+	@Test
+	public void testImageAncestors() throws TskCoreException {
+		assertTrue(caseDB.getAncestors(image).isEmpty());
+		for (AbstractFile file : caseDB.findFiles(image, "B.TXT")) {
+			List<Content> ancestors = caseDB.getAncestors(file);
+			List<Long> ancestorIds = new ArrayList<Long>();
+			for (Content ancestor : ancestors) {
+				ancestorIds.add(ancestor.getId());
+			}
+			List<Long> expectedIds = new ArrayList<Long>();
+			for (Content parent = file.getParent(); parent != null; parent = parent.getParent()) {
+				expectedIds.add(parent.getId());
+			}
+			assertEquals(expectedIds, ancestorIds);
+			// DIR, root directory, file system, volume, volume system, image
+			assertEquals(6, ancestors.size());
+			assertEquals(image.getId(), ancestorIds.get(ancestorIds.size() - 1).longValue());
+		}
+	}
+
+	@Test
+	public void testLocalFilesAndNewObjects() throws TskCoreException {
+		// The local file was added before the table was filled in, so its
+		// data source was found by walking up its parents.
+		assertEquals(localFiles.getId(), localFile.getDataSource().getId());
+		assertEquals(2, caseDB.countDescendants(localFiles));
+		assertEquals(1, caseDB.countDescendants(folder));
+		assertEquals(0, caseDB.countDescendants(localFile));
+
+		// Objects added after the table was filled in for the data source
+		// are recorded when they are added.
+		DerivedFile derivedFile = caseDB.addDerivedFile("derived.txt", "ModuleOutput/derived.txt", 10, 0, 0, 0, 0, true, localFile, "", "unzip", "1.0", "", TskData.EncodingType.NONE);
+		assertEquals(localFiles.getId(), derivedFile.getDataSource().getId());
+		assertEquals(3, caseDB.countDescendants(localFiles));
+		List<Long> descendantIds = caseDB.getDescendantIds(localFiles);
+		assertEquals(derivedFile.getId(), descendantIds.get(descendantIds.size() - 1).longValue());
+		List<Content> ancestors = caseDB.getAncestors(derivedFile);
+		assertEquals(3, ancestors.size());
+		assertEquals(localFile.getId(), ancestors.get(0).getId());
+		assertEquals(folder.getId(), ancestors.get(1).getId());
+		assertEquals(localFiles.getId(), ancestors.get(2).getId());
+		assertTrue(caseDB.getAncestors(localFiles).isEmpty());
+	}
+
+	@Test
+	public void testNotMarkedWhileAddingImage() throws TskCoreException {
+		SleuthkitCase.CaseDbTransaction trans = caseDB.beginTransaction();
+		LocalFilesDataSource dataSource = caseDB.addLocalFilesDataSource("3c4d5e6f-7a8b-4c9d-8e0f-1a2b3c4d5e6f", "other", "", trans);
+		caseDB.addLocalDirectory(dataSource.getId(), "first", trans);
+		trans.commit();
+
+		// While an add image process is open, the table is filled in for the
+		// data source on each use, but not marked as filled in.
+		caseDB.addImageProcessStarted();
+		try {
+			assertEquals(1, caseDB.countDescendants(dataSource));
+			assertEquals(0, countRows("descendant_id = " + dataSource.getId() + " AND depth = 0"));
+			trans = caseDB.beginTransaction();
+			caseDB.addLocalDirectory(dataSource.getId(), "second", trans);
+			trans.commit();
+			assertEquals(2, caseDB.countDescendants(dataSource));
+		} finally {
+			caseDB.addImageProcessFinished();
+		}
+
+		assertEquals(2, caseDB.countDescendants(dataSource));
+		assertEquals(1, countRows("descendant_id = " + dataSource.getId() + " AND depth = 0"));
+		trans = caseDB.beginTransaction();
+		caseDB.addLocalDirectory(dataSource.getId(), "third", trans);
+		trans.commit();
+		assertEquals(3, caseDB.countDescendants(dataSource));
+	}
+
+	/**
+	 * Counts the rows of the ancestors table that meet a condition.
+	 */
+	private static long countRows(String condition) throws TskCoreException {
+		SleuthkitCase.CaseDbQuery query = caseDB.executeQuery("SELECT COUNT(*) AS count FROM tsk_object_ancestors WHERE " + condition); //NON-NLS
+		try {
+			ResultSet resultSet = query.getResultSet();
+			resultSet.next();
+			return resultSet.getLong("count");
+		} catch (SQLException ex) {
+			throw new TskCoreException("Error counting object ancestors", ex);
+		} finally {
+			query.close();
+		}
+	}
+
+	/**
+	 * Gets the object ids of the descendants of a content object by getting
+	 * the children of each object.
+	 */
+	private static Set<Long> allDescendantIds(Content content) throws TskCoreException {
+		Set<Long> ids = new HashSet<Long>();
+		for (Content child : content.getChildren()) {
+			ids.add(child.getId());
+			ids.addAll(allDescendantIds(child));
+		}
+		return ids;
+	}
+}
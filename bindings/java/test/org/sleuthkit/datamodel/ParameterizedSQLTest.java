@@ -0,0 +1,154 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2018 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import org.sleuthkit.datamodel.TskData.DbType;
+
+/**
+ * Tests the SQL text and parameter counts of ParameterizedSQL.
+ */
+public class ParameterizedSQLTest {
+
+	/**
+	 * The most parameters a statement may have, see
+	 * ParameterizedSQL.MAX_PARAMETERS.
+	 */
+	private static final int MAX_PARAMETERS = 900;
+
+	public ParameterizedSQLTest() {
+	}
+
+	@Test
+	public void testValues() {
+		ParameterizedSQL sql = new ParameterizedSQL(DbType.SQLITE);
+		sql.append("SELECT * FROM t WHERE a = ").appendValue(5).append(" AND b = ").appendValue("it's?");
+		assertEquals("SELECT * FROM t WHERE a = ? AND b = ?", sql.getSQL());
+	}
+
+	@Test
+	public void testLiteralSQL() {
+		ParameterizedSQL sql = new ParameterizedSQL(DbType.SQLITE);
+		sql.append("a = ").appendValue(5).append(" AND b = ").appendValue("it's?").append(" AND ").appendIn("c", Arrays.asList(1, 2, 3));
+		assertEquals("a = 5 AND b = 'it''s?' AND c IN ( 1, 2, 3, 3 )", sql.getLiteralSQL());
+
+		sql = new ParameterizedSQL(DbType.POSTGRESQL);
+		sql.appendIn("c", Arrays.asList(1, 2));
+		assertEquals("c = ANY ( ARRAY[1, 2]::bigint[] )", sql.getLiteralSQL());
+	}
+
+	@Test
+	public void testInPadding() {
+		ParameterizedSQL sql = new ParameterizedSQL(DbType.SQLITE);
+		sql.appendIn("id", Arrays.asList(1, 2, 3));
+		assertEquals("id IN ( ?, ?, ?, ? )", sql.getSQL());
+
+		sql = new ParameterizedSQL(DbType.SQLITE);
+		sql.appendIn("id", new ArrayList<Long>());
+		assertEquals(" 1 = 0 ", sql.getSQL());
+
+		sql = new ParameterizedSQL(DbType.POSTGRESQL);
+		sql.appendIn("id", Arrays.asList(1, 2, 3));
+		assertEquals("id = ANY ( ? )", sql.getSQL());
+	}
+
+	@Test
+	public void testLongListIsLiteral() {
+		ParameterizedSQL sql = new ParameterizedSQL(DbType.SQLITE);
+		sql.appendIn("id", range(1, 300));
+		assertEquals(0, countPlaceholders(sql));
+		assertTrue(sql.getSQL().startsWith("id IN ( 1, 2, 3,"));
+	}
+
+	/**
+	 * Two subfilters that are each under the limit, but over it together,
+	 * are built separately and then appended to one statement.
+	 */
+	@Test
+	public void testAppendOverLimit() {
+		ParameterizedSQL first = new ParameterizedSQL(DbType.SQLITE);
+		ParameterizedSQL second = new ParameterizedSQL(DbType.SQLITE);
+		for (int list = 0; list < 3; list++) {
+			if (list > 0) {
+				first.append(" OR ");
+				second.append(" OR ");
+			}
+			first.appendIn("a", range(list * 200 + 1, 200));
+			second.appendIn("b", range(1000 + list * 200 + 1, 200));
+		}
+		assertEquals(768, countPlaceholders(first));
+		assertEquals(768, countPlaceholders(second));
+
+		ParameterizedSQL sql = new ParameterizedSQL(DbType.SQLITE);
+		sql.append("SELECT * FROM t WHERE ( ").append(first).append(" ) AND ( ").append(second).append(" )");
+		assertEquals(MAX_PARAMETERS, countPlaceholders(sql));
+		// The values of the second subfilter past the limit are literals,
+		// with the padding that repeats the last value of each list
+		assertTrue(sql.getSQL().contains("b IN ( ?, ?,"));
+		assertTrue(sql.getSQL().contains(", 1200, 1200"));
+		assertTrue(sql.getSQL().contains("b IN ( 1401, 1402,"));
+		assertTrue(sql.getSQL().endsWith(", 1600, 1600 ) )"));
+
+		// Appending to a full statement binds nothing more
+		ParameterizedSQL more = new ParameterizedSQL(DbType.SQLITE);
+		more.append(" AND c = ").appendValue("x'y").append(" AND d = ").appendValue(7);
+		sql.append(more);
+		assertEquals(MAX_PARAMETERS, countPlaceholders(sql));
+		assertTrue(sql.getSQL().endsWith(" AND c = 'x''y' AND d = 7"));
+	}
+
+	@Test
+	public void testAppendArrayOverLimit() {
+		ParameterizedSQL first = new ParameterizedSQL(DbType.POSTGRESQL);
+		for (int i = 0; i < MAX_PARAMETERS; i++) {
+			first.append(i == 0 ? "a IN ( " : ", ").appendValue(i);
+		}
+		first.append(" )");
+		ParameterizedSQL second = new ParameterizedSQL(DbType.POSTGRESQL);
+		second.appendIn("b", Arrays.asList(4, 5)).append(" AND c = ").appendValue(2.5);
+
+		first.append(" AND ").append(second);
+		assertEquals(MAX_PARAMETERS + 1, countPlaceholders(first));
+		assertTrue(first.getSQL().endsWith(" AND b = ANY ( ARRAY[4, 5]::bigint[] ) AND c = ?"));
+	}
+
+	private static int countPlaceholders(ParameterizedSQL sql) {
+		int count = 0;
+		String text = sql.getSQL();
+		for (int i = 0; i < text.length(); i++) {
+			if (text.charAt(i) == '?') {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private static List<Long> range(long start, int count) {
+		List<Long> values = new ArrayList<Long>(count);
+		for (int i = 0; i < count; i++) {
+			values.add(start + i);
+		}
+		return values;
+	}
+}
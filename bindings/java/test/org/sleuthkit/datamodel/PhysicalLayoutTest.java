@@ -0,0 +1,192 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2018 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.AfterClass;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.sleuthkit.datamodel.TskData.ObjectType;
+
+/**
+ * Tests SleuthkitCase.getPhysicalLayout() and the lookups of volume systems,
+ * volumes and file systems that use it, including when the layout is loaded
+ * again and when objects that are not in it are looked up.
+ */
+public class PhysicalLayoutTest {
+
+	private static final String TEST_DB = "PhysicalLayoutTest.db";
+	private static final String TEST_IMAGE = "PhysicalLayoutTest.img";
+	private static final String IMAGE_DEVICE_ID = "2c9d4e6f-7a81-4b3c-9d5e-0f1a2b3c4d5e";
+	private static final String SECOND_IMAGE_DEVICE_ID = "8f7e6d5c-4b3a-4291-8e0f-a1b2c3d4e5f6";
+	private static final String OTHER_CLIENT_DEVICE_ID = "4d5e6f70-8192-4a3b-8c4d-5e6f708192a3";
+
+	private static String tempDirPath;
+	private static String dbPath;
+	private static SleuthkitCase caseDB;
+	private static Image image;
+
+	public PhysicalLayoutTest() {
+	}
+
+	@BeforeClass
+	public static void setUpClass() throws Exception {
+		tempDirPath = System.getProperty("java.io.tmpdir");
+		dbPath = tempDirPath + java.io.File.separator + TEST_DB;
+		new java.io.File(dbPath).delete();
+		caseDB = SleuthkitCase.newCase(dbPath);
+		image = TestDiskImages.addPartitionedFatImage(caseDB, tempDirPath + java.io.File.separator + TEST_IMAGE, IMAGE_DEVICE_ID);
+	}
+
+	@AfterClass
+	public static void tearDownClass() {
+		caseDB.close();
+	}
+
+	@Test
+	public void testImageLayout() throws TskCoreException {
+		PhysicalLayout layout = caseDB.getPhysicalLayout();
+		assertTrue(layout.getImageIds().contains(image.getId()));
+		assertEquals(ObjectType.IMG, layout.getObjectType(image.getId()));
+		assertEquals(AbstractContent.UNKNOWN_ID, layout.getParentId(image.getId()));
+
+		// The image has a volume system, with a volume that has a file system
+		List<Long> volumeSystemIds = layout.getChildIds(image.getId());
+		assertEquals(1, volumeSystemIds.size());
+		long volumeSystemId = volumeSystemIds.get(0);
+		assertEquals(ObjectType.VS, layout.getObjectType(volumeSystemId));
+		assertEquals(image.getId(), layout.getParentId(volumeSystemId));
+		List<Long> fileSystemIds = new ArrayList<Long>();
+		for (long volumeId : layout.getChildIds(volumeSystemId)) {
+			assertEquals(ObjectType.VOL, layout.getObjectType(volumeId));
+			assertEquals(volumeSystemId, layout.getParentId(volumeId));
+			for (long fileSystemId : layout.getChildIds(volumeId)) {
+				assertEquals(ObjectType.FS, layout.getObjectType(fileSystemId));
+				assertEquals(image.getId(), layout.getImageId(fileSystemId));
+				assertTrue(layout.getChildIds(fileSystemId).isEmpty());
+				fileSystemIds.add(fileSystemId);
+			}
+		}
+		assertEquals(1, fileSystemIds.size());
+		assertEquals(fileSystemIds, layout.getFileSystemIds(image.getId()));
+
+		// The content objects are made from the layout
+		List<Content> children = image.getChildren();
+		assertEquals(1, children.size());
+		assertEquals(volumeSystemId, children.get(0).getId());
+		assertTrue(children.get(0) instanceof VolumeSystem);
+		assertEquals(fileSystemIds, idsOf(caseDB.getFileSystems(image)));
+
+		// Files are not in the layout
+		long fileId = caseDB.findFiles(image, "A.TXT").get(0).getId();
+		assertFalse(layout.contains(fileId));
+		assertEquals(null, layout.getObjectType(fileId));
+		assertEquals(AbstractContent.UNKNOWN_ID, layout.getImageId(fileId));
+		assertTrue(layout.getChildIds(fileId).isEmpty());
+	}
+
+	@Test
+	public void testMissesDoNotReload() throws TskCoreException {
+		caseDB.clearPhysicalLayout();
+		PhysicalLayout layout = caseDB.getPhysicalLayout();
+		long fileId = caseDB.findFiles(image, "A.TXT").get(0).getId();
+		long queryCount = caseDB.getQueryCount();
+		for (int i = 0; i < 10; i++) {
+			try {
+				caseDB.getVolumeSystemById(fileId, image);
+				fail("A file was found as a volume system");
+			} catch (TskCoreException ex) {
+				// Expected
+			}
+		}
+		// Each miss queries for the one object instead of loading the layout
+		assertEquals(10, caseDB.getQueryCount() - queryCount);
+		assertSame(layout, caseDB.getPhysicalLayout());
+	}
+
+	@Test
+	public void testAddedImagesClearLayout() throws Exception {
+		PhysicalLayout layout = caseDB.getPhysicalLayout();
+
+		// Added through an add image process
+		Image secondImage = TestDiskImages.addPartitionedFatImage(caseDB,
+				tempDirPath + java.io.File.separator + "PhysicalLayoutTest2.img", SECOND_IMAGE_DEVICE_ID);
+		PhysicalLayout secondLayout = caseDB.getPhysicalLayout();
+		assertNotSame(layout, secondLayout);
+		assertTrue(secondLayout.getImageIds().contains(secondImage.getId()));
+		assertEquals(1, caseDB.getFileSystems(secondImage).size());
+
+		// Added with addImageInfo()
+		Image thirdImage = caseDB.addImageInfo(0, Arrays.asList(tempDirPath + java.io.File.separator + "PhysicalLayoutTest2.img"), "UTC");
+		PhysicalLayout thirdLayout = caseDB.getPhysicalLayout();
+		assertNotSame(secondLayout, thirdLayout);
+		assertTrue(thirdLayout.getImageIds().contains(thirdImage.getId()));
+		assertTrue(caseDB.getFileSystems(thirdImage).isEmpty());
+	}
+
+	@Test
+	public void testObjectsAddedByAnotherClient() throws Exception {
+		caseDB.clearPhysicalLayout();
+		PhysicalLayout layout = caseDB.getPhysicalLayout();
+
+		SleuthkitCase otherCaseDB = SleuthkitCase.openCase(dbPath);
+		long otherImageId;
+		try {
+			otherImageId = TestDiskImages.addPartitionedFatImage(otherCaseDB,
+					tempDirPath + java.io.File.separator + "PhysicalLayoutTest3.img", OTHER_CLIENT_DEVICE_ID).getId();
+		} finally {
+			otherCaseDB.close();
+		}
+
+		// The layout was loaded too recently to be loaded again, so the
+		// objects of the new image are queried one by one.
+		Image otherImage = caseDB.getImageById(otherImageId);
+		assertEquals(1, caseDB.getFileSystems(otherImage).size());
+		Content volumeSystem = otherImage.getChildren().get(0);
+		assertTrue(volumeSystem instanceof VolumeSystem);
+		int fileSystemCount = 0;
+		for (Content volume : volumeSystem.getChildren()) {
+			assertTrue(volume instanceof Volume);
+			for (Content child : volume.getChildren()) {
+				if (child instanceof FileSystem) {
+					fileSystemCount++;
+				}
+			}
+		}
+		assertEquals(1, fileSystemCount);
+		assertSame(layout, caseDB.getPhysicalLayout());
+		assertFalse(layout.contains(otherImageId));
+	}
+
+	private static List<Long> idsOf(Iterable<? extends Content> contents) {
+		List<Long> ids = new ArrayList<Long>();
+		for (Content content : contents) {
+			ids.add(content.getId());
+		}
+		return ids;
+	}
+}
@@ -0,0 +1,230 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2018 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.AfterClass;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests CommunicationsManager.addRelationships(Collection), which adds the
+ * relationships of many records in one transaction: repeated pairs are
+ * written once, the rollup counts match the relationships, and a batch with
+ * an invalid record adds nothing.
+ */
+public class RelationshipBatchTest {
+
+	private static final String TEST_DB = "RelationshipBatchTest.db";
+	private static final String REPEATED_DEVICE_ID = "2b3c4d5e-6f70-4819-a2b3-c4d5e6f70819";
+	private static final String MANY_DEVICE_ID = "8e7d6c5b-4a39-4281-b7c6-d5e4f3a2b1c0";
+	private static final String INVALID_DEVICE_ID = "4f5e6d7c-8b9a-4a0b-9c1d-2e3f4a5b6c7d";
+	private static final String OTHER_DEVICE_ID = "0a1b2c3d-4e5f-4061-8293-a4b5c6d7e8f9";
+	private static final String MODULE_NAME = "RelationshipBatchTest";
+
+	// 2017-01-01 00:00:00 UTC
+	private static final long DAY_1 = 1483228800L;
+
+	/**
+	 * The number of accounts in the large record, whose pairs are more than
+	 * CommunicationsManager.MAX_RELATIONSHIPS_PER_BATCH.
+	 */
+	private static final int MANY_ACCOUNTS = 61;
+	private static final int SMALL_RECORDS = 30;
+	private static final int SMALL_RECORD_ACCOUNTS = 10;
+
+	private static SleuthkitCase caseDB;
+	private static CommunicationsManager commsMgr;
+
+	public RelationshipBatchTest() {
+	}
+
+	@BeforeClass
+	public static void setUpClass() throws Exception {
+		String tempDirPath = System.getProperty("java.io.tmpdir");
+		String dbPath = tempDirPath + java.io.File.separator + TEST_DB;
+		new java.io.File(dbPath).delete();
+		caseDB = SleuthkitCase.newCase(dbPath);
+		commsMgr = caseDB.getCommunicationsManager();
+	}
+
+	@AfterClass
+	public static void tearDownClass() {
+		caseDB.close();
+	}
+
+	/**
+	 * A pair repeated within a record, a record repeated within a batch and a
+	 * record added again are each written and counted once.
+	 */
+	@Test
+	public void testRepeatedPairs() throws TskCoreException, TskDataException, SQLException {
+		LocalFilesDataSource dataSource = addDataSource(REPEATED_DEVICE_ID);
+		List<AccountFileInstance> accounts = addAccounts(dataSource, "555-030", 3);
+		CommunicationsManager.RelationshipRecord record = newMessage(dataSource, accounts.get(0), Arrays.asList(accounts.get(1), accounts.get(2), accounts.get(1)), DAY_1);
+
+		// The pairs are (0, 1), (0, 2), (1, 2), (1, 1) and (2, 1)
+		commsMgr.addRelationships(Arrays.asList(record, record));
+		assertEquals(5, countRelationships(record.getSourceArtifact()));
+		assertSourceCounts(accounts, REPEATED_DEVICE_ID, 1, 1, 1);
+
+		commsMgr.addRelationships(Collections.singletonList(record));
+		assertEquals(5, countRelationships(record.getSourceArtifact()));
+		assertSourceCounts(accounts, REPEATED_DEVICE_ID, 1, 1, 1);
+
+		// A second record adds to the counts of its accounts only
+		CommunicationsManager.RelationshipRecord reply = newMessage(dataSource, accounts.get(1), Collections.singletonList(accounts.get(0)), DAY_1 + 60);
+		commsMgr.addRelationships(Arrays.asList(reply, record));
+		assertEquals(1, countRelationships(reply.getSourceArtifact()));
+		assertSourceCounts(accounts, REPEATED_DEVICE_ID, 2, 2, 1);
+		assertCountsMatchRelationships(accounts, REPEATED_DEVICE_ID);
+	}
+
+	/**
+	 * A batch with more pairs than are sent to the database at a time, in
+	 * one large record and in many small ones, writes all of them.
+	 */
+	@Test
+	public void testManyPairs() throws TskCoreException, TskDataException, SQLException {
+		LocalFilesDataSource dataSource = addDataSource(MANY_DEVICE_ID);
+		List<AccountFileInstance> accounts = addAccounts(dataSource, "555-040", MANY_ACCOUNTS);
+		List<CommunicationsManager.RelationshipRecord> records = new ArrayList<CommunicationsManager.RelationshipRecord>();
+		records.add(newMessage(dataSource, accounts.get(0), accounts.subList(1, MANY_ACCOUNTS), DAY_1));
+		Map<AccountFileInstance, Long> expectedCounts = new HashMap<AccountFileInstance, Long>();
+		for (AccountFileInstance account : accounts) {
+			expectedCounts.put(account, 1L);
+		}
+		for (int i = 0; i < SMALL_RECORDS; i++) {
+			List<AccountFileInstance> recipients = new ArrayList<AccountFileInstance>();
+			for (int j = 1; j < SMALL_RECORD_ACCOUNTS; j++) {
+				recipients.add(accounts.get((i + j) % MANY_ACCOUNTS));
+			}
+			records.add(newMessage(dataSource, accounts.get(i), recipients, DAY_1 + i * 60));
+			for (int j = 0; j < SMALL_RECORD_ACCOUNTS; j++) {
+				AccountFileInstance account = accounts.get((i + j) % MANY_ACCOUNTS);
+				expectedCounts.put(account, expectedCounts.get(account) + 1);
+			}
+		}
+		commsMgr.addRelationships(records);
+
+		long pairsPerSmallRecord = SMALL_RECORD_ACCOUNTS * (SMALL_RECORD_ACCOUNTS - 1) / 2;
+		assertEquals(MANY_ACCOUNTS * (MANY_ACCOUNTS - 1) / 2, countRelationships(records.get(0).getSourceArtifact()));
+		assertEquals(MANY_ACCOUNTS * (MANY_ACCOUNTS - 1) / 2 + SMALL_RECORDS * pairsPerSmallRecord,
+				queryLong("SELECT COUNT(*) AS value FROM account_relationships WHERE data_source_obj_id = " + dataSource.getId()));
+		for (AccountFileInstance account : accounts) {
+			AccountDeviceInstance instance = new AccountDeviceInstance(account.getAccount(), MANY_DEVICE_ID);
+			assertEquals(expectedCounts.get(account).longValue(), commsMgr.getRelationshipSourcesCount(instance, new CommunicationsFilter()));
+		}
+		assertCountsMatchRelationships(accounts, MANY_DEVICE_ID);
+	}
+
+	/**
+	 * A batch with a record whose accounts are from another data source is
+	 * rejected as a whole.
+	 */
+	@Test
+	public void testInvalidRecord() throws TskCoreException, TskDataException, SQLException {
+		LocalFilesDataSource dataSource = addDataSource(INVALID_DEVICE_ID);
+		LocalFilesDataSource otherDataSource = addDataSource(OTHER_DEVICE_ID);
+		List<AccountFileInstance> accounts = addAccounts(dataSource, "555-050", 2);
+		AccountFileInstance otherAccount = commsMgr.createAccountFileInstance(Account.Type.PHONE, "555-0509", MODULE_NAME, otherDataSource);
+		CommunicationsManager.RelationshipRecord valid = newMessage(dataSource, accounts.get(0), Collections.singletonList(accounts.get(1)), DAY_1);
+		CommunicationsManager.RelationshipRecord invalid = newMessage(dataSource, accounts.get(0), Collections.singletonList(otherAccount), DAY_1);
+		try {
+			commsMgr.addRelationships(Arrays.asList(valid, invalid));
+			fail("A record with a recipient from another data source was accepted");
+		} catch (TskDataException ex) {
+			// Expected
+		}
+		assertEquals(0, countRelationships(valid.getSourceArtifact()));
+		assertSourceCounts(accounts, INVALID_DEVICE_ID, 0, 0);
+	}
+
+	/**
+	 * Checks the relationship source counts of accounts on a device.
+	 */
+	private static void assertSourceCounts(List<AccountFileInstance> accounts, String deviceId, long... expectedCounts) throws TskCoreException {
+		for (int i = 0; i < expectedCounts.length; i++) {
+			AccountDeviceInstance instance = new AccountDeviceInstance(accounts.get(i).getAccount(), deviceId);
+			assertEquals(expectedCounts[i], commsMgr.getRelationshipSourcesCount(instance, new CommunicationsFilter()));
+		}
+	}
+
+	/**
+	 * Checks that the relationship source counts of accounts on a device,
+	 * which are read from the rollups, are the counts read from the
+	 * relationships while the rollups are off.
+	 */
+	private static void assertCountsMatchRelationships(List<AccountFileInstance> accounts, String deviceId) throws TskCoreException {
+		long[] rollupCounts = new long[accounts.size()];
+		for (int i = 0; i < accounts.size(); i++) {
+			rollupCounts[i] = commsMgr.getRelationshipSourcesCount(new AccountDeviceInstance(accounts.get(i).getAccount(), deviceId), new CommunicationsFilter());
+		}
+		commsMgr.disableRelationshipRollups();
+		try {
+			assertSourceCounts(accounts, deviceId, rollupCounts);
+		} finally {
+			commsMgr.enableRelationshipRollups();
+		}
+	}
+
+	private static LocalFilesDataSource addDataSource(String deviceId) throws TskCoreException {
+		SleuthkitCase.CaseDbTransaction trans = caseDB.beginTransaction();
+		LocalFilesDataSource dataSource = caseDB.addLocalFilesDataSource(deviceId, "root", "", trans);
+		trans.commit();
+		return dataSource;
+	}
+
+	private static List<AccountFileInstance> addAccounts(LocalFilesDataSource dataSource, String prefix, int count) throws TskCoreException {
+		List<AccountFileInstance> accounts = new ArrayList<AccountFileInstance>();
+		for (int i = 0; i < count; i++) {
+			accounts.add(commsMgr.createAccountFileInstance(Account.Type.PHONE, prefix + i, MODULE_NAME, dataSource));
+		}
+		return accounts;
+	}
+
+	private static CommunicationsManager.RelationshipRecord newMessage(LocalFilesDataSource dataSource, AccountFileInstance sender, List<AccountFileInstance> recipients, long dateTime) throws TskCoreException {
+		BlackboardArtifact message = dataSource.newArtifact(BlackboardArtifact.ARTIFACT_TYPE.TSK_MESSAGE);
+		return new CommunicationsManager.RelationshipRecord(sender, recipients, message, Relationship.Type.MESSAGE, dateTime);
+	}
+
+	private static long countRelationships(BlackboardArtifact sourceArtifact) throws TskCoreException, SQLException {
+		return queryLong("SELECT COUNT(*) AS value FROM account_relationships WHERE relationship_source_obj_id = " + sourceArtifact.getId());
+	}
+
+	private static long queryLong(String sql) throws TskCoreException, SQLException {
+		SleuthkitCase.CaseDbQuery query = caseDB.executeQuery(sql);
+		try {
+			ResultSet rs = query.getResultSet();
+			rs.next();
+			return rs.getLong("value");
+		} finally {
+			query.close();
+		}
+	}
+}
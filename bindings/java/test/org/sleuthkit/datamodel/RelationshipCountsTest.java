@@ -0,0 +1,260 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2018 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TimeZone;
+import org.junit.AfterClass;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the relationship counts that CommunicationsManager keeps as
+ * relationships are added, and the paged relationship sources, comparing them
+ * with the results of queries directly on the account_relationships table.
+ */
+public class RelationshipCountsTest {
+
+	private static final String TEST_DB = "RelationshipCountsTest.db";
+	private static final String DEVICE_ID = "5a4b3c2d-1e0f-4a9b-8c7d-6e5f4a3b2c1d";
+	private static final String MODULE_NAME = "RelationshipCountsTest";
+
+	// 2017-01-01 00:00:00 UTC
+	private static final long DAY_1 = 1483228800L;
+	private static final long SECS_PER_DAY = 86400L;
+
+	private static SleuthkitCase caseDB;
+	private static CommunicationsManager commsMgr;
+	private static LocalFilesDataSource dataSource;
+	private static final List<AccountFileInstance> accounts = new ArrayList<AccountFileInstance>();
+	private static final List<AccountDeviceInstance> accountDeviceInstances = new ArrayList<AccountDeviceInstance>();
+
+	public RelationshipCountsTest() {
+	}
+
+	@BeforeClass
+	public static void setUpClass() throws Exception {
+		String tempDirPath = System.getProperty("java.io.tmpdir");
+		String dbPath = tempDirPath + java.io.File.separator + TEST_DB;
+		new java.io.File(dbPath).delete();
+		caseDB = SleuthkitCase.newCase(dbPath);
+		commsMgr = caseDB.getCommunicationsManager();
+
+		SleuthkitCase.CaseDbTransaction trans = caseDB.beginTransaction();
+		dataSource = caseDB.addLocalFilesDataSource(DEVICE_ID, "root", "", trans);
+		trans.commit();
+
+		for (int i = 0; i < 4; i++) {
+			AccountFileInstance account = commsMgr.createAccountFileInstance(Account.Type.PHONE, "555-010" + i, MODULE_NAME, dataSource);
+			accounts.add(account);
+			accountDeviceInstances.add(new AccountDeviceInstance(account.getAccount(), DEVICE_ID));
+		}
+
+		List<CommunicationsManager.RelationshipRecord> records = new ArrayList<CommunicationsManager.RelationshipRecord>();
+		// Two messages in the same 15 minute bucket, one in the next bucket
+		// and one on the next day
+		records.add(newMessage(0, Arrays.asList(1, 2), DAY_1 + 60));
+		records.add(newMessage(1, Arrays.asList(0), DAY_1 + 120));
+		records.add(newMessage(2, Arrays.asList(0, 3), DAY_1 + 1000));
+		records.add(newMessage(3, Arrays.asList(1), DAY_1 + SECS_PER_DAY + 5));
+		// An undated message, and a message with the same account twice
+		records.add(newMessage(0, Arrays.asList(3), 0));
+		records.add(newMessage(1, Arrays.asList(1, 2), DAY_1 + 2 * SECS_PER_DAY));
+		// Messages with the same date, to page through ties
+		for (int i = 0; i < 5; i++) {
+			records.add(newMessage(i % 4, Arrays.asList((i + 1) % 4), DAY_1 + 2000));
+		}
+		commsMgr.addRelationships(records);
+
+		// A call in the first bucket, added on its own
+		BlackboardArtifact call = dataSource.newArtifact(BlackboardArtifact.ARTIFACT_TYPE.TSK_CALLLOG);
+		commsMgr.addRelationships(accounts.get(0), Collections.singletonList(accounts.get(2)), call, Relationship.Type.CALL_LOG, DAY_1 + 300);
+
+		// A second call to add relationships from an artifact that already
+		// has some, on another day, must not count the artifact again for
+		// the accounts it already had. Those accounts stay counted on the
+		// first day, so no date range below starts after it.
+		BlackboardArtifact message = records.get(0).getSourceArtifact();
+		commsMgr.addRelationships(accounts.get(1), Arrays.asList(accounts.get(2), accounts.get(3)), message, Relationship.Type.MESSAGE, DAY_1 + 3 * SECS_PER_DAY);
+	}
+
+	@AfterClass
+	public static void tearDownClass() {
+		caseDB.close();
+	}
+
+	@Test
+	public void testCountsWithoutDateRange() throws TskCoreException, SQLException {
+		assertCounts(new CommunicationsFilter(), null);
+		CommunicationsFilter filter = new CommunicationsFilter();
+		filter.addAndFilter(new CommunicationsFilter.RelationshipTypeFilter(Collections.singleton(Relationship.Type.CALL_LOG)));
+		assertCounts(filter, "relationship_type = " + Relationship.Type.CALL_LOG.getTypeID());
+	}
+
+	@Test
+	public void testCountsForDays() throws TskCoreException, SQLException {
+		// The filter adds a day to the end date, so these are whole UTC days
+		// and are answered from the 15 minute rollups.
+		assertDateRangeCounts(DAY_1, DAY_1);
+		assertDateRangeCounts(DAY_1 + SECS_PER_DAY, DAY_1 + 2 * SECS_PER_DAY);
+		assertDateRangeCounts(DAY_1, 0);
+		assertDateRangeCounts(0, DAY_1);
+	}
+
+	@Test
+	public void testCountsForBuckets() throws TskCoreException, SQLException {
+		// On 15 minute boundaries, the rollups are used
+		assertDateRangeCounts(DAY_1 + 900, DAY_1 + 900);
+		// Off the boundaries, the relationships are counted
+		assertDateRangeCounts(DAY_1 + 100, DAY_1 + 100);
+		assertDateRangeCounts(DAY_1 + 61, 0);
+	}
+
+	@Test
+	public void testUndatedNotInHistogram() throws TskCoreException {
+		SortedMap<Long, Long> histogram = commsMgr.getRelationshipHistogram(new HashSet<AccountDeviceInstance>(accountDeviceInstances),
+				new CommunicationsFilter(), CommunicationsManager.HistogramBucketSize.DAY, TimeZone.getTimeZone("UTC"), true);
+		assertEquals(4, histogram.size());
+		assertEquals(DAY_1, (long) histogram.firstKey());
+		assertFalse(histogram.containsKey(0L));
+	}
+
+	@Test
+	public void testRelationshipSourcePages() throws TskCoreException, SQLException {
+		CommunicationsFilter dateRangeFilter = new CommunicationsFilter();
+		dateRangeFilter.addAndFilter(new CommunicationsFilter.DateRangeFilter(DAY_1 + SECS_PER_DAY, 0));
+		for (CommunicationsFilter filter : Arrays.asList(new CommunicationsFilter(), dateRangeFilter)) {
+			for (int count = 1; count <= accountDeviceInstances.size(); count++) {
+				Set<AccountDeviceInstance> pageAccounts = new HashSet<AccountDeviceInstance>(accountDeviceInstances.subList(0, count));
+				List<Long> expected = getExpectedSources(pageAccounts, filter);
+				for (int pageSize = 1; pageSize <= expected.size() + 1; pageSize++) {
+					assertEquals("Page size " + pageSize, expected, getPagedSources(pageAccounts, filter, pageSize));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads all of the pages of relationship sources of some accounts,
+	 * checking that every page but the last is full.
+	 */
+	private static List<Long> getPagedSources(Set<AccountDeviceInstance> pageAccounts, CommunicationsFilter filter, int pageSize) throws TskCoreException {
+		List<Long> sources = new ArrayList<Long>();
+		CommunicationsManager.RelationshipSourceHandle last = null;
+		while (true) {
+			List<CommunicationsManager.RelationshipSourceHandle> page = commsMgr.getRelationshipSources(pageAccounts, filter, last, pageSize);
+			for (CommunicationsManager.RelationshipSourceHandle source : page) {
+				sources.add(source.getSourceObjectID());
+			}
+			if (page.size() < pageSize) {
+				assertTrue(commsMgr.getRelationshipSources(pageAccounts, filter, page.isEmpty() ? last : page.get(page.size() - 1), pageSize).isEmpty());
+				return sources;
+			}
+			last = page.get(page.size() - 1);
+		}
+	}
+
+	/**
+	 * Gets the sources of the relationships of some accounts that pass a
+	 * filter, ordered by the earliest date of those relationships and then by
+	 * object id.
+	 */
+	private static List<Long> getExpectedSources(Set<AccountDeviceInstance> pageAccounts, CommunicationsFilter filter) throws TskCoreException, SQLException {
+		StringBuilder accountIDs = new StringBuilder();
+		for (AccountDeviceInstance accountDeviceInstance : pageAccounts) {
+			accountIDs.append(accountIDs.length() == 0 ? "" : ", ").append(accountDeviceInstance.getAccount().getAccountID());
+		}
+		String condition = "";
+		for (CommunicationsFilter.SubFilter subFilter : filter.getAndFilters()) {
+			long startDate = ((CommunicationsFilter.DateRangeFilter) subFilter).getStartDate();
+			condition = " AND (date_time IS NULL OR date_time >= " + startDate + ")"; //NON-NLS
+		}
+		String query = "SELECT relationship_source_obj_id FROM account_relationships" //NON-NLS
+				+ " WHERE (account1_id IN (" + accountIDs + ") OR account2_id IN (" + accountIDs + "))" + condition //NON-NLS
+				+ " GROUP BY relationship_source_obj_id" //NON-NLS
+				+ " ORDER BY MIN(COALESCE(date_time, 0)), relationship_source_obj_id"; //NON-NLS
+		List<Long> sources = new ArrayList<Long>();
+		SleuthkitCase.CaseDbQuery dbQuery = caseDB.executeQuery(query);
+		try {
+			ResultSet resultSet = dbQuery.getResultSet();
+			while (resultSet.next()) {
+				sources.add(resultSet.getLong("relationship_source_obj_id"));
+			}
+		} finally {
+			dbQuery.close();
+		}
+		return sources;
+	}
+
+	private static void assertDateRangeCounts(long startDate, long endDate) throws TskCoreException, SQLException {
+		CommunicationsFilter.DateRangeFilter dateRangeFilter = new CommunicationsFilter.DateRangeFilter(startDate, endDate);
+		CommunicationsFilter filter = new CommunicationsFilter();
+		filter.addAndFilter(dateRangeFilter);
+		String condition = "(date_time IS NULL OR (date_time >= " + dateRangeFilter.getStartDate();
+		if (dateRangeFilter.getEndDate() > 0) {
+			condition += " AND date_time < " + dateRangeFilter.getEndDate();
+		}
+		assertCounts(filter, condition + "))");
+	}
+
+	/**
+	 * Checks that, for every account, the number of relationship sources that
+	 * pass a filter is the number of distinct sources of the relationships
+	 * that meet an SQL condition.
+	 */
+	private static void assertCounts(CommunicationsFilter filter, String condition) throws TskCoreException, SQLException {
+		for (AccountDeviceInstance accountDeviceInstance : accountDeviceInstances) {
+			long accountID = accountDeviceInstance.getAccount().getAccountID();
+			String query = "SELECT COUNT(DISTINCT relationship_source_obj_id) AS count FROM account_relationships" //NON-NLS
+					+ " WHERE (account1_id = " + accountID + " OR account2_id = " + accountID + ")" //NON-NLS
+					+ " AND data_source_obj_id = " + dataSource.getId() //NON-NLS
+					+ (condition == null ? "" : " AND " + condition); //NON-NLS
+			long expected;
+			SleuthkitCase.CaseDbQuery dbQuery = caseDB.executeQuery(query);
+			try {
+				ResultSet resultSet = dbQuery.getResultSet();
+				resultSet.next();
+				expected = resultSet.getLong("count");
+			} finally {
+				dbQuery.close();
+			}
+			assertEquals(query, expected, commsMgr.getRelationshipSourcesCount(accountDeviceInstance, filter));
+		}
+	}
+
+	private static CommunicationsManager.RelationshipRecord newMessage(int sender, List<Integer> recipients, long dateTime) throws TskCoreException {
+		List<AccountFileInstance> recipientAccounts = new ArrayList<AccountFileInstance>();
+		for (int recipient : recipients) {
+			recipientAccounts.add(accounts.get(recipient));
+		}
+		BlackboardArtifact message = dataSource.newArtifact(BlackboardArtifact.ARTIFACT_TYPE.TSK_MESSAGE);
+		return new CommunicationsManager.RelationshipRecord(accounts.get(sender), recipientAccounts, message, Relationship.Type.MESSAGE, dateTime);
+	}
+}
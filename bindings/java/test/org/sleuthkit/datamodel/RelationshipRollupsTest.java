@@ -0,0 +1,152 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2018 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TimeZone;
+import org.junit.AfterClass;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests turning the relationship rollups of CommunicationsManager off and on
+ * again: the counts fall back to the relationships while the rollups are off,
+ * the setting is kept when the case is opened again, and the stale rollups
+ * are rebuilt when they are turned on.
+ */
+public class RelationshipRollupsTest {
+
+	private static final String TEST_DB = "RelationshipRollupsTest.db";
+	private static final String DEVICE_ID = "3c9e1a5f-7b2d-4e6a-9f0c-8d1b2a3c4e5f";
+	private static final String MODULE_NAME = "RelationshipRollupsTest";
+
+	// 2017-01-01 00:00:00 UTC
+	private static final long DAY_1 = 1483228800L;
+	private static final long SECS_PER_DAY = 86400L;
+
+	private static String dbPath;
+	private static SleuthkitCase caseDB;
+	private static LocalFilesDataSource dataSource;
+	private static final List<AccountFileInstance> accounts = new ArrayList<AccountFileInstance>();
+
+	public RelationshipRollupsTest() {
+	}
+
+	@BeforeClass
+	public static void setUpClass() throws Exception {
+		String tempDirPath = System.getProperty("java.io.tmpdir");
+		dbPath = tempDirPath + java.io.File.separator + TEST_DB;
+		new java.io.File(dbPath).delete();
+		caseDB = SleuthkitCase.newCase(dbPath);
+
+		SleuthkitCase.CaseDbTransaction trans = caseDB.beginTransaction();
+		dataSource = caseDB.addLocalFilesDataSource(DEVICE_ID, "root", "", trans);
+		trans.commit();
+		for (int i = 0; i < 3; i++) {
+			accounts.add(caseDB.getCommunicationsManager().createAccountFileInstance(Account.Type.PHONE, "555-020" + i, MODULE_NAME, dataSource));
+		}
+		addMessage(0, 1, DAY_1 + 60);
+		addMessage(0, 2, DAY_1 + SECS_PER_DAY + 60);
+	}
+
+	@AfterClass
+	public static void tearDownClass() {
+		caseDB.close();
+	}
+
+	@Test
+	public void testRollupsOffAndOn() throws TskCoreException, TskDataException, SQLException {
+		CommunicationsManager commsMgr = caseDB.getCommunicationsManager();
+		assertTrue(commsMgr.isRelationshipRollupsEnabled());
+		assertTrue(countRollups() > 0);
+
+		// While the rollups are off, they are not kept and the counts come
+		// from the relationships
+		commsMgr.disableRelationshipRollups();
+		assertFalse(commsMgr.isRelationshipRollupsEnabled());
+		assertEquals(0, countRollups());
+		addMessage(0, 1, DAY_1 + 120);
+		assertEquals(0, countRollups());
+		assertCounts(commsMgr, 3);
+		Set<AccountDeviceInstance> instances = Collections.singleton(new AccountDeviceInstance(accounts.get(0).getAccount(), DEVICE_ID));
+		assertEquals(commsMgr.getRelationshipHistogram(instances, new CommunicationsFilter(), CommunicationsManager.HistogramBucketSize.DAY, TimeZone.getTimeZone("UTC"), false),
+				commsMgr.getRelationshipHistogram(instances, new CommunicationsFilter(), CommunicationsManager.HistogramBucketSize.DAY, TimeZone.getTimeZone("UTC"), true));
+
+		// The setting is kept with the case
+		caseDB.close();
+		caseDB = SleuthkitCase.openCase(dbPath);
+		commsMgr = caseDB.getCommunicationsManager();
+		assertFalse(commsMgr.isRelationshipRollupsEnabled());
+
+		// Turning the rollups on again rebuilds them, with the relationships
+		// added while they were off
+		commsMgr.enableRelationshipRollups();
+		assertTrue(commsMgr.isRelationshipRollupsEnabled());
+		assertEquals(3, sumRollups(accounts.get(0).getAccount().getAccountID()));
+		assertCounts(commsMgr, 3);
+		caseDB.close();
+		caseDB = SleuthkitCase.openCase(dbPath);
+		assertTrue(caseDB.getCommunicationsManager().isRelationshipRollupsEnabled());
+	}
+
+	/**
+	 * Checks the relationship counts of the first account, in all and on the
+	 * first day, against the relationships.
+	 */
+	private static void assertCounts(CommunicationsManager commsMgr, long expectedCount) throws TskCoreException {
+		AccountDeviceInstance instance = new AccountDeviceInstance(accounts.get(0).getAccount(), DEVICE_ID);
+		assertEquals(expectedCount, commsMgr.getRelationshipSourcesCount(instance, new CommunicationsFilter()));
+		CommunicationsFilter filter = new CommunicationsFilter();
+		filter.addAndFilter(new CommunicationsFilter.DateRangeFilter(DAY_1, DAY_1));
+		assertEquals(expectedCount - 1, commsMgr.getRelationshipSourcesCount(instance, filter));
+	}
+
+	private static void addMessage(int sender, int recipient, long dateTime) throws TskCoreException, TskDataException {
+		BlackboardArtifact message = dataSource.newArtifact(BlackboardArtifact.ARTIFACT_TYPE.TSK_MESSAGE);
+		caseDB.getCommunicationsManager().addRelationships(accounts.get(sender), Arrays.asList(accounts.get(recipient)), message, Relationship.Type.MESSAGE, dateTime);
+	}
+
+	private static long countRollups() throws TskCoreException, SQLException {
+		return queryLong("SELECT COUNT(*) AS value FROM account_relationship_rollups");
+	}
+
+	private static long sumRollups(long accountId) throws TskCoreException, SQLException {
+		return queryLong("SELECT SUM(source_count) AS value FROM account_relationship_rollups WHERE account_id = " + accountId);
+	}
+
+	private static long queryLong(String sql) throws TskCoreException, SQLException {
+		SleuthkitCase.CaseDbQuery query = caseDB.executeQuery(sql);
+		try {
+			ResultSet rs = query.getResultSet();
+			rs.next();
+			return rs.getLong("value");
+		} finally {
+			query.close();
+		}
+	}
+}
@@ -0,0 +1,110 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2018 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import org.junit.Test;
+
+/**
+ * Tests that StringInterner shares equal strings without keeping them alive.
+ */
+public class StringInternerTest {
+
+	public StringInternerTest() {
+	}
+
+	@Test
+	public void testIntern() {
+		StringInterner interner = new StringInterner();
+		assertNull(interner.intern(null));
+
+		String first = new String("/Users/user/Documents/");
+		String second = new String("/Users/user/Documents/");
+		assertNotSame(first, second);
+		assertSame(first, interner.intern(first));
+		assertSame(first, interner.intern(second));
+		assertSame(first, interner.intern(first));
+
+		String other = new String("/Users/user/Desktop/");
+		assertSame(other, interner.intern(other));
+		assertSame(first, interner.intern(new String(second)));
+
+		// Each case has its own copies
+		assertSame(second, new StringInterner().intern(second));
+	}
+
+	@Test
+	public void testConcurrentIntern() throws Exception {
+		final StringInterner interner = new StringInterner();
+		final int stringCount = 1000;
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<String[]>> results = new ArrayList<Future<String[]>>();
+			for (int task = 0; task < 8; task++) {
+				results.add(executor.submit(new Callable<String[]>() {
+					@Override
+					public String[] call() {
+						String[] shared = new String[stringCount];
+						for (int i = 0; i < stringCount; i++) {
+							shared[i] = interner.intern(new String("/dir" + i + "/"));
+						}
+						return shared;
+					}
+				}));
+			}
+			String[] expected = results.get(0).get();
+			for (Future<String[]> result : results) {
+				String[] shared = result.get();
+				for (int i = 0; i < stringCount; i++) {
+					assertEquals("/dir" + i + "/", shared[i]);
+					assertSame(expected[i], shared[i]);
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testStringsAreNotKept() throws InterruptedException {
+		StringInterner interner = new StringInterner();
+		String string = new String("image.E01");
+		interner.intern(string);
+		WeakReference<String> reference = new WeakReference<String>(string);
+		string = null;
+		for (int i = 0; i < 50 && null != reference.get(); i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		assertNull(reference.get());
+
+		String copy = new String("image.E01");
+		assertSame(copy, interner.intern(copy));
+	}
+}
@@ -0,0 +1,184 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2018 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes small disk images for tests, so that tests of images need no image
+ * files in the source tree.
+ *
+ * The image written by writePartitionedFatImage() has a DOS partition table
+ * with one FAT12 partition, which holds:
+ *
+ * /A.TXT
+ * /DIR/B.TXT
+ */
+final class TestDiskImages {
+
+	static final int SECTOR_SIZE = 512;
+	static final int PARTITION_START = 64;
+	static final int PARTITION_LENGTH = 2048;
+	static final String FILE_CONTENT = "hello";
+
+	private static final int RESERVED_SECTORS = 1;
+	private static final int FAT_COUNT = 2;
+	private static final int FAT_SECTORS = 6;
+	private static final int ROOT_ENTRIES = 224;
+	private static final int ROOT_SECTORS = ROOT_ENTRIES * 32 / SECTOR_SIZE;
+	private static final int DATA_START = RESERVED_SECTORS + FAT_COUNT * FAT_SECTORS + ROOT_SECTORS;
+	private static final int DIR_CLUSTER = 2;
+	private static final int A_CLUSTER = 3;
+	private static final int B_CLUSTER = 4;
+
+	private TestDiskImages() {
+	}
+
+	/**
+	 * Writes a raw image with a DOS partition table and a FAT12 file system.
+	 *
+	 * @param path The path of the image file to write.
+	 *
+	 * @throws IOException If the image cannot be written.
+	 */
+	static void writePartitionedFatImage(String path) throws IOException {
+		byte[] image = new byte[(PARTITION_START + PARTITION_LENGTH) * SECTOR_SIZE];
+
+		// Master boot record with one FAT12 partition
+		int entry = 446;
+		image[entry + 4] = 0x01;
+		putInt(image, entry + 8, PARTITION_START);
+		putInt(image, entry + 12, PARTITION_LENGTH);
+		putShort(image, 510, 0xAA55);
+
+		// FAT12 boot sector
+		int boot = PARTITION_START * SECTOR_SIZE;
+		image[boot] = (byte) 0xEB;
+		image[boot + 1] = 0x3C;
+		image[boot + 2] = (byte) 0x90;
+		putString(image, boot + 3, "MSDOS5.0");
+		putShort(image, boot + 11, SECTOR_SIZE);
+		image[boot + 13] = 1;
+		putShort(image, boot + 14, RESERVED_SECTORS);
+		image[boot + 16] = FAT_COUNT;
+		putShort(image, boot + 17, ROOT_ENTRIES);
+		putShort(image, boot + 19, PARTITION_LENGTH);
+		image[boot + 21] = (byte) 0xF8;
+		putShort(image, boot + 22, FAT_SECTORS);
+		putShort(image, boot + 24, 63);
+		putShort(image, boot + 26, 255);
+		putInt(image, boot + 28, PARTITION_START);
+		image[boot + 38] = 0x29;
+		putInt(image, boot + 39, 0x12345678);
+		putString(image, boot + 43, "TESTVOL    ");
+		putString(image, boot + 54, "FAT12   ");
+		putShort(image, boot + 510, 0xAA55);
+
+		// File allocation tables
+		for (int fat = 0; fat < FAT_COUNT; fat++) {
+			int fatStart = boot + (RESERVED_SECTORS + fat * FAT_SECTORS) * SECTOR_SIZE;
+			putFat12(image, fatStart, 0, 0xFF8);
+			putFat12(image, fatStart, 1, 0xFFF);
+			putFat12(image, fatStart, DIR_CLUSTER, 0xFFF);
+			putFat12(image, fatStart, A_CLUSTER, 0xFFF);
+			putFat12(image, fatStart, B_CLUSTER, 0xFFF);
+		}
+
+		// Root directory
+		int root = boot + (RESERVED_SECTORS + FAT_COUNT * FAT_SECTORS) * SECTOR_SIZE;
+		putDirEntry(image, root, "TESTVOL    ", 0x08, 0, 0);
+		putDirEntry(image, root + 32, "DIR        ", 0x10, DIR_CLUSTER, 0);
+		putDirEntry(image, root + 64, "A       TXT", 0x20, A_CLUSTER, FILE_CONTENT.length());
+
+		// DIR
+		int dir = clusterOffset(DIR_CLUSTER);
+		putDirEntry(image, dir, ".          ", 0x10, DIR_CLUSTER, 0);
+		putDirEntry(image, dir + 32, "..         ", 0x10, 0, 0);
+		putDirEntry(image, dir + 64, "B       TXT", 0x20, B_CLUSTER, FILE_CONTENT.length());
+
+		putString(image, clusterOffset(A_CLUSTER), FILE_CONTENT);
+		putString(image, clusterOffset(B_CLUSTER), FILE_CONTENT);
+
+		FileOutputStream out = new FileOutputStream(path);
+		try {
+			out.write(image);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Writes the image of writePartitionedFatImage() and adds it to a case.
+	 *
+	 * @param caseDb   The case.
+	 * @param path     The path of the image file to write.
+	 * @param deviceId The device id of the image.
+	 *
+	 * @return The added image.
+	 *
+	 * @throws Exception If the image cannot be written or added.
+	 */
+	static Image addPartitionedFatImage(SleuthkitCase caseDb, String path, String deviceId) throws Exception {
+		writePartitionedFatImage(path);
+		SleuthkitJNI.CaseDbHandle.AddImageProcess process = caseDb.makeAddImageProcess("UTC", false, false, "");
+		process.run(deviceId, new String[]{path});
+		return caseDb.getImageById(process.commit());
+	}
+
+	private static int clusterOffset(int cluster) {
+		return (PARTITION_START + DATA_START + cluster - 2) * SECTOR_SIZE;
+	}
+
+	private static void putDirEntry(byte[] image, int offset, String name, int attributes, int cluster, int size) {
+		putString(image, offset, name);
+		image[offset + 11] = (byte) attributes;
+		putShort(image, offset + 22, 0x6000); // 12:00:00
+		putShort(image, offset + 24, 0x4C21); // 2018-01-01
+		putShort(image, offset + 26, cluster);
+		putInt(image, offset + 28, size);
+	}
+
+	private static void putFat12(byte[] image, int fatStart, int cluster, int value) {
+		int offset = fatStart + cluster * 3 / 2;
+		if (cluster % 2 == 0) {
+			image[offset] = (byte) value;
+			image[offset + 1] = (byte) ((image[offset + 1] & 0xF0) | ((value >> 8) & 0x0F));
+		} else {
+			image[offset] = (byte) ((image[offset] & 0x0F) | ((value & 0x0F) << 4));
+			image[offset + 1] = (byte) (value >> 4);
+		}
+	}
+
+	private static void putString(byte[] image, int offset, String value) {
+		byte[] bytes = value.getBytes(StandardCharsets.US_ASCII);
+		System.arraycopy(bytes, 0, image, offset, bytes.length);
+	}
+
+	private static void putShort(byte[] image, int offset, int value) {
+		image[offset] = (byte) value;
+		image[offset + 1] = (byte) (value >> 8);
+	}
+
+	private static void putInt(byte[] image, int offset, int value) {
+		putShort(image, offset, value);
+		putShort(image, offset + 2, value >> 16);
+	}
+}
@@ -0,0 +1,303 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2018 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.AfterClass;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.sleuthkit.datamodel.BlackboardArtifact.ARTIFACT_TYPE;
+import org.sleuthkit.datamodel.BlackboardAttribute.ATTRIBUTE_TYPE;
+
+/**
+ * Tests TimelineEvent and the TimelineManager: paging through events,
+ * counting them per bucket from the per day counts and from the events,
+ * their time range, and rebuilding them.
+ */
+public class TimelineEventTest {
+
+	private static final String TEST_DB = "TimelineEventTest.db";
+	private static final String DEVICE_ID = "1f2e3d4c-5b6a-4798-8a7b-6c5d4e3f2a1b";
+	private static final String OTHER_DEVICE_ID = "0a9b8c7d-6e5f-4a3b-9c2d-1e0f9a8b7c6d";
+	private static final String SOURCE = "TimelineEventTest";
+	private static final long DAY = TimelineManager.DAY_COUNT_BUCKET_SECONDS;
+	private static final long T0 = 1500000000L / DAY * DAY;
+
+	private static SleuthkitCase caseDB;
+	private static TimelineManager timeline;
+	private static LocalFilesDataSource dataSource;
+	private static LocalFilesDataSource otherDataSource;
+	private static LocalFile file1;
+	private static LocalFile file3;
+	private static BlackboardArtifact artifact1;
+	private static BlackboardArtifact artifact2;
+
+	public TimelineEventTest() {
+	}
+
+	@BeforeClass
+	public static void setUpClass() throws Exception {
+		String tempDirPath = System.getProperty("java.io.tmpdir");
+		String dbPath = tempDirPath + java.io.File.separator + TEST_DB;
+		new java.io.File(dbPath).delete();
+		caseDB = SleuthkitCase.newCase(dbPath);
+		timeline = caseDB.getTimelineManager();
+
+		// Events, by day from T0:
+		// 0: file1 modified and accessed, other file modified, all at T0 + 100
+		// 1: file2 modified and artifact1 date time, both at T0 + DAY + 50
+		// 2: file2 changed at T0 + 2 * DAY + 10, file3 created and
+		// artifact2 date created at T0 + 3 * DAY - 1
+		SleuthkitCase.CaseDbTransaction trans = caseDB.beginTransaction();
+		dataSource = caseDB.addLocalFilesDataSource(DEVICE_ID, "root", "", trans);
+		file1 = caseDB.addLocalFile("file1.txt", "/evidence/file1.txt", 10, 0, 0, T0 + 100, T0 + 100, true, TskData.EncodingType.NONE, dataSource, trans);
+		caseDB.addLocalFile("file2.txt", "/evidence/file2.txt", 10, T0 + 2 * DAY + 10, 0, 0, T0 + DAY + 50, true, TskData.EncodingType.NONE, dataSource, trans);
+		file3 = caseDB.addLocalFile("file3.txt", "/evidence/file3.txt", 10, 0, T0 + 3 * DAY - 1, 0, 0, true, TskData.EncodingType.NONE, dataSource, trans);
+		otherDataSource = caseDB.addLocalFilesDataSource(OTHER_DEVICE_ID, "other", "", trans);
+		caseDB.addLocalFile("other.txt", "/evidence/other.txt", 10, 0, 0, 0, T0 + 100, true, TskData.EncodingType.NONE, otherDataSource, trans);
+		trans.commit();
+
+		artifact1 = file1.newArtifact(ARTIFACT_TYPE.TSK_GEN_INFO);
+		artifact1.addAttribute(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_DATETIME, SOURCE, T0 + DAY + 50));
+
+		// Added without the artifact, so that its source is looked up
+		artifact2 = file3.newArtifact(ARTIFACT_TYPE.TSK_GEN_INFO);
+		BlackboardAttribute created = new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_DATETIME_CREATED, SOURCE, T0 + 3 * DAY - 1);
+		created.setArtifactId(artifact2.getArtifactID());
+		caseDB.addBlackboardAttributes(Arrays.asList(created), artifact2.getArtifactTypeID());
+	}
+
+	@AfterClass
+	public static void tearDownClass() {
+		caseDB.close();
+	}
+
+	@Test
+	public void testTypes() throws TskCoreException {
+		assertSame(timeline, caseDB.getTimelineManager());
+		List<TimelineEvent.Type> fileTypes = TimelineEvent.Type.getFileEventTypes();
+		assertEquals(Arrays.asList(TimelineEvent.Type.FILE_MODIFIED, TimelineEvent.Type.FILE_ACCESSED,
+				TimelineEvent.Type.FILE_CHANGED, TimelineEvent.Type.FILE_CREATED), fileTypes);
+		for (int i = 0; i < fileTypes.size(); i++) {
+			assertEquals(i + 1, fileTypes.get(i).getTypeId());
+			assertTrue(fileTypes.get(i).isFileEventType());
+			assertEquals(-1, fileTypes.get(i).getAttributeTypeId());
+			assertSame(fileTypes.get(i), timeline.getEventType(i + 1));
+		}
+
+		BlackboardAttribute.Type dateTime = new BlackboardAttribute.Type(ATTRIBUTE_TYPE.TSK_DATETIME);
+		TimelineEvent.Type artifactType = TimelineEvent.Type.forAttributeType(dateTime);
+		assertEquals(TimelineEvent.Type.ATTRIBUTE_TYPE_ID_OFFSET + dateTime.getTypeID(), artifactType.getTypeId());
+		assertFalse(artifactType.isFileEventType());
+		assertEquals(dateTime.getTypeID(), artifactType.getAttributeTypeId());
+		TimelineEvent.Type loaded = timeline.getEventType(artifactType.getTypeId());
+		assertEquals(artifactType, loaded);
+		assertEquals(artifactType.hashCode(), loaded.hashCode());
+		assertEquals(dateTime.getDisplayName(), loaded.getDisplayName());
+		try {
+			timeline.getEventType(TimelineEvent.Type.ATTRIBUTE_TYPE_ID_OFFSET - 1);
+			fail("An event type that does not exist was found");
+		} catch (TskCoreException ex) {
+			// Expected
+		}
+	}
+
+	@Test
+	public void testEvents() throws TskCoreException {
+		List<TimelineEvent> events = timeline.getEvents(0, Long.MAX_VALUE, null, null, null, 100);
+		assertEquals(8, events.size());
+		for (TimelineEvent event : events) {
+			if (event.getType().isFileEventType()) {
+				assertNull(event.getArtifactId());
+			} else {
+				long artifactId = event.getArtifactId();
+				BlackboardArtifact artifact = caseDB.getBlackboardArtifact(artifactId);
+				assertEquals(artifact.getObjectID(), event.getObjId());
+				assertEquals(dataSource.getId(), event.getDataSourceObjId());
+				assertTrue(artifactId == artifact1.getArtifactID() || artifactId == artifact2.getArtifactID());
+			}
+		}
+		TimelineEvent first = events.get(0);
+		assertEquals(T0 + 100, first.getTime());
+		assertEquals(TimelineEvent.Type.FILE_MODIFIED, first.getType());
+		assertEquals(dataSource.getId(), first.getDataSourceObjId());
+		assertEquals(file1.getId(), first.getObjId());
+		assertEquals("TimelineEvent{eventId=" + first.getEventId() + ", time=" + (T0 + 100) + ", type=1, dataSourceObjId=" + dataSource.getId()
+				+ ", objId=" + file1.getId() + ", artifactId=null}", first.toString());
+	}
+
+	@Test
+	public void testPaging() throws TskCoreException {
+		List<TimelineEvent> all = timeline.getEvents(0, Long.MAX_VALUE, null, null, null, 100);
+		assertOrdered(all);
+		for (int pageSize = 1; pageSize <= 3; pageSize++) {
+			assertEquals(ids(all), ids(getAllPages(0, Long.MAX_VALUE, null, null, pageSize)));
+		}
+
+		// Pages of a range, and of filtered events
+		List<TimelineEvent> day1 = getAllPages(T0 + DAY, T0 + 2 * DAY, null, null, 1);
+		assertEquals(2, day1.size());
+		assertEquals(T0 + DAY + 50, day1.get(0).getTime());
+		assertEquals(T0 + DAY + 50, day1.get(1).getTime());
+		List<TimelineEvent> modified = getAllPages(0, Long.MAX_VALUE, Arrays.asList(TimelineEvent.Type.FILE_MODIFIED), null, 1);
+		assertEquals(3, modified.size());
+		for (TimelineEvent event : modified) {
+			assertEquals(TimelineEvent.Type.FILE_MODIFIED, event.getType());
+		}
+		List<TimelineEvent> other = getAllPages(0, Long.MAX_VALUE, null, Arrays.asList(otherDataSource.getId()), 1);
+		assertEquals(1, other.size());
+		assertEquals(otherDataSource.getId(), other.get(0).getDataSourceObjId());
+		assertTrue(timeline.getEvents(T0 + 101, T0 + DAY, null, null, null, 10).isEmpty());
+	}
+
+	@Test
+	public void testCounts() throws TskCoreException {
+		// Read from the per day counts
+		assertEquals(Arrays.asList(3L, 2L, 3L, 0L), timeline.getEventCounts(T0, T0 + 4 * DAY, DAY, null, null));
+		assertEquals(Arrays.asList(5L, 3L), timeline.getEventCounts(T0, T0 + 3 * DAY, 2 * DAY, null, null));
+		assertEquals(Arrays.asList(2L, 1L, 0L, 0L), timeline.getEventCounts(T0, T0 + 4 * DAY, DAY, Arrays.asList(TimelineEvent.Type.FILE_MODIFIED), null));
+		assertEquals(Arrays.asList(1L, 0L), timeline.getEventCounts(T0, T0 + 2 * DAY, DAY, null, Arrays.asList(otherDataSource.getId())));
+
+		// Counted from the events
+		assertEquals(Arrays.asList(3L, 2L, 3L, 0L), timeline.getEventCounts(T0 + 1, T0 + 4 * DAY, DAY, null, null));
+		assertEquals(Arrays.asList(3L, 0L, 2L, 0L, 1L, 2L, 0L, 0L), timeline.getEventCounts(T0, T0 + 4 * DAY, DAY / 2, null, null));
+		assertEquals(Arrays.asList(0L, 0L), timeline.getEventCounts(T0 + 101, T0 + 103, 1, null, null));
+
+		// Buckets that end after the largest time
+		assertEquals(Arrays.asList(8L, 0L, 0L), timeline.getEventCounts(0, Long.MAX_VALUE, Long.MAX_VALUE / 2, null, null));
+		assertTrue(timeline.getEventCounts(T0, T0, DAY, null, null).isEmpty());
+	}
+
+	@Test
+	public void testInvalidCounts() throws TskCoreException {
+		long[][] invalid = {
+			{T0, T0 + DAY, 0},
+			{T0, T0 + DAY, -DAY},
+			{T0 + DAY, T0, DAY},
+			{-DAY, T0, DAY},
+			{0, Long.MAX_VALUE, 1},
+			{T0, T0 + TimelineManager.MAX_EVENT_COUNT_BUCKETS + 1, 1}};
+		for (long[] args : invalid) {
+			try {
+				timeline.getEventCounts(args[0], args[1], args[2], null, null);
+				fail("Events were counted for " + Arrays.toString(args));
+			} catch (IllegalArgumentException ex) {
+				// Expected
+			}
+		}
+		assertEquals(TimelineManager.MAX_EVENT_COUNT_BUCKETS, timeline.getEventCounts(T0, T0 + TimelineManager.MAX_EVENT_COUNT_BUCKETS, 1, null, null).size());
+	}
+
+	@Test
+	public void testMinAndMaxTimes() throws TskCoreException {
+		assertEquals(T0 + 100, timeline.getMinEventTime(null, null));
+		assertEquals(T0 + 3 * DAY - 1, timeline.getMaxEventTime(null, null));
+		List<Long> other = Arrays.asList(otherDataSource.getId());
+		assertEquals(T0 + 100, timeline.getMinEventTime(null, other));
+		assertEquals(T0 + 100, timeline.getMaxEventTime(null, other));
+		List<TimelineEvent.Type> dateTime = Arrays.asList(TimelineEvent.Type.forAttributeType(new BlackboardAttribute.Type(ATTRIBUTE_TYPE.TSK_DATETIME)));
+		assertEquals(T0 + DAY + 50, timeline.getMinEventTime(dateTime, null));
+		assertEquals(T0 + DAY + 50, timeline.getMaxEventTime(dateTime, null));
+		List<TimelineEvent.Type> created = Arrays.asList(TimelineEvent.Type.FILE_CREATED);
+		assertEquals(0, timeline.getMinEventTime(created, other));
+		assertEquals(0, timeline.getMaxEventTime(created, other));
+	}
+
+	@Test
+	public void testRebuild() throws TskCoreException {
+		List<TimelineEvent> before = timeline.getEvents(0, Long.MAX_VALUE, null, null, null, 100);
+		List<Long> countsBefore = timeline.getEventCounts(T0, T0 + 4 * DAY, DAY, null, null);
+
+		// Rebuilding replaces the events of the data source, so rebuilding
+		// twice does not add them twice
+		timeline.rebuildEvents(dataSource.getId());
+		timeline.rebuildEvents(dataSource.getId());
+		List<TimelineEvent> after = timeline.getEvents(0, Long.MAX_VALUE, null, null, null, 100);
+		assertEquals(withoutIds(before), withoutIds(after));
+		assertEquals(countsBefore, timeline.getEventCounts(T0, T0 + 4 * DAY, DAY, null, null));
+		assertEquals(countsBefore, timeline.getEventCounts(T0 + 1, T0 + 4 * DAY, DAY, null, null));
+	}
+
+	private static List<TimelineEvent> getAllPages(long startTime, long endTime, Collection<TimelineEvent.Type> types, Collection<Long> dataSourceObjIds, int pageSize) throws TskCoreException {
+		List<TimelineEvent> events = new ArrayList<TimelineEvent>();
+		TimelineEvent after = null;
+		while (true) {
+			List<TimelineEvent> page = timeline.getEvents(startTime, endTime, types, dataSourceObjIds, after, pageSize);
+			assertTrue(page.size() <= pageSize);
+			events.addAll(page);
+			if (page.size() < pageSize) {
+				return events;
+			}
+			after = page.get(page.size() - 1);
+		}
+	}
+
+	private static void assertOrdered(List<TimelineEvent> events) {
+		for (int i = 1; i < events.size(); i++) {
+			TimelineEvent previous = events.get(i - 1);
+			TimelineEvent event = events.get(i);
+			int order = compare(previous.getTime(), event.getTime());
+			if (order == 0) {
+				order = compare(previous.getType().getTypeId(), event.getType().getTypeId());
+			}
+			if (order == 0) {
+				order = compare(previous.getDataSourceObjId(), event.getDataSourceObjId());
+			}
+			if (order == 0) {
+				order = compare(previous.getEventId(), event.getEventId());
+			}
+			assertTrue(previous + " is not before " + event, order < 0);
+		}
+	}
+
+	private static int compare(long first, long second) {
+		return first < second ? -1 : (first == second ? 0 : 1);
+	}
+
+	private static List<Long> ids(List<TimelineEvent> events) {
+		List<Long> ids = new ArrayList<Long>();
+		for (TimelineEvent event : events) {
+			ids.add(event.getEventId());
+		}
+		assertEquals(ids.size(), new HashSet<Long>(ids).size());
+		return ids;
+	}
+
+	private static Set<String> withoutIds(List<TimelineEvent> events) {
+		Set<String> values = new HashSet<String>();
+		for (TimelineEvent event : events) {
+			values.add(event.getTime() + "," + event.getType().getTypeId() + "," + event.getDataSourceObjId()
+					+ "," + event.getObjId() + "," + event.getArtifactId());
+		}
+		assertEquals(events.size(), values.size());
+		return values;
+	}
+}
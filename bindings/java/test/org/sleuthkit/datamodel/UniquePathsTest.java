@@ -0,0 +1,146 @@
+/*
+ * Sleuth Kit Data Model
+ *
+ * Copyright 2018 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.datamodel;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import org.junit.AfterClass;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests SleuthkitCase.storeUniquePaths() and getContentByUniquePath() on an
+ * image, whose files are below a volume system, a volume and a file system,
+ * and on a local files data source.
+ */
+public class UniquePathsTest {
+
+	private static final String TEST_DB = "UniquePathsTest.db";
+	private static final String TEST_IMAGE = "UniquePathsTest.img";
+	private static final String IMAGE_DEVICE_ID = "3e7a1c5b-2d94-4f08-8a6c-b1d2e3f4a5c6";
+	private static final String LOCAL_DEVICE_ID = "a1b2c3d4-e5f6-4789-9abc-def012345678";
+
+	private static SleuthkitCase caseDB;
+	private static Image image;
+	private static LocalFilesDataSource localFiles;
+	private static LocalFile localFile;
+
+	public UniquePathsTest() {
+	}
+
+	@BeforeClass
+	public static void setUpClass() throws Exception {
+		String tempDirPath = System.getProperty("java.io.tmpdir");
+		String dbPath = tempDirPath + java.io.File.separator + TEST_DB;
+		new java.io.File(dbPath).delete();
+		caseDB = SleuthkitCase.newCase(dbPath);
+		image = TestDiskImages.addPartitionedFatImage(caseDB, tempDirPath + java.io.File.separator + TEST_IMAGE, IMAGE_DEVICE_ID);
+
+		SleuthkitCase.CaseDbTransaction trans = caseDB.beginTransaction();
+		localFiles = caseDB.addLocalFilesDataSource(LOCAL_DEVICE_ID, "root", "", trans);
+		LocalDirectory folder = caseDB.addLocalDirectory(localFiles.getId(), "folder", trans);
+		localFile = caseDB.addLocalFile("local.zip", "/evidence/local.zip", 10, 0, 0, 0, 0, true, TskData.EncodingType.NONE, folder, trans);
+		trans.commit();
+		caseDB.addDerivedFile("derived.txt", "ModuleOutput/derived.txt", 10, 0, 0, 0, 0, true, localFile, "", "unzip", "1.0", "", TskData.EncodingType.NONE);
+	}
+
+	@AfterClass
+	public static void tearDownClass() {
+		caseDB.close();
+	}
+
+	@Test
+	public void testImage() throws TskCoreException {
+		Map<Long, String> expected = buildPaths(image);
+		caseDB.storeUniquePaths(image);
+		assertStored(expected);
+		assertTrue(findPath(expected, "/DIR/B.TXT").startsWith(image.getUniquePath() + "/vol_"));
+
+		// Storing the paths again replaces them
+		caseDB.storeUniquePaths(image);
+		assertStored(expected);
+	}
+
+	@Test
+	public void testLocalFiles() throws TskCoreException {
+		Map<Long, String> expected = buildPaths(localFiles);
+		assertEquals(4, expected.size());
+		caseDB.storeUniquePaths(localFiles);
+		assertStored(expected);
+		assertEquals("/root/folder/local.zip/derived.txt", findPath(expected, "/derived.txt"));
+	}
+
+	@Test
+	public void testSubtreeOfFile() throws TskCoreException {
+		Map<Long, String> expected = buildPaths(localFile);
+		assertEquals(2, expected.size());
+		caseDB.storeUniquePaths(localFile);
+		assertStored(expected);
+	}
+
+	/**
+	 * Gets the unique paths of a content object and its descendants as built
+	 * by Content.getUniquePath() from freshly loaded content objects.
+	 */
+	private static Map<Long, String> buildPaths(Content root) throws TskCoreException {
+		Map<Long, String> paths = new LinkedHashMap<Long, String>();
+		addPaths(caseDB.getContentById(root.getId()), paths);
+		return paths;
+	}
+
+	private static void addPaths(Content content, Map<Long, String> paths) throws TskCoreException {
+		if (content instanceof BlackboardArtifact) {
+			return;
+		}
+		paths.put(content.getId(), content.getUniquePath());
+		for (Content child : content.getChildren()) {
+			addPaths(child, paths);
+		}
+	}
+
+	/**
+	 * Checks that each content object is found by its path and that its
+	 * stored path is loaded with it. Content objects without names, such as
+	 * volume systems, have the paths of their parents.
+	 */
+	private static void assertStored(Map<Long, String> expected) throws TskCoreException {
+		for (Map.Entry<Long, String> entry : expected.entrySet()) {
+			Set<Long> foundIds = new HashSet<Long>();
+			for (Content content : caseDB.getContentByUniquePath(entry.getValue())) {
+				foundIds.add(content.getId());
+				assertEquals(entry.getValue(), expected.get(content.getId()));
+			}
+			assertTrue(entry.getValue(), foundIds.contains(entry.getKey()));
+			assertEquals(entry.getValue(), caseDB.getContentById(entry.getKey()).getUniquePath());
+		}
+	}
+
+	private static String findPath(Map<Long, String> paths, String suffix) {
+		for (String path : paths.values()) {
+			if (path.endsWith(suffix)) {
+				return path;
+			}
+		}
+		return "";
+	}
+}
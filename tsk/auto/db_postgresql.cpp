@@ -500,7 +500,7 @@ int TskDbPostgreSQL::initialize() {
     if (attempt_exec("CREATE TABLE tsk_objects (obj_id BIGSERIAL PRIMARY KEY, par_obj_id BIGINT, type INTEGER NOT NULL);","Error creating tsk_objects table: %s\n")
         ||
         attempt_exec
-        ("CREATE TABLE tsk_image_info (obj_id BIGSERIAL PRIMARY KEY, type INTEGER, ssize INTEGER, tzone TEXT, size BIGINT, md5 TEXT, display_name TEXT, FOREIGN KEY(obj_id) REFERENCES tsk_objects(obj_id));",
+        ("CREATE TABLE tsk_image_info (obj_id BIGSERIAL PRIMARY KEY, type INTEGER, ssize INTEGER, tzone TEXT, size BIGINT, md5 TEXT, display_name TEXT, sha1 TEXT, sha256 TEXT, FOREIGN KEY(obj_id) REFERENCES tsk_objects(obj_id));",
         "Error creating tsk_image_info table: %s\n")
         ||
         attempt_exec("CREATE TABLE tsk_image_names (obj_id BIGINT NOT NULL, name TEXT NOT NULL, sequence INTEGER NOT NULL, FOREIGN KEY(obj_id) REFERENCES tsk_objects(obj_id));",
@@ -615,7 +615,37 @@ int TskDbPostgreSQL::initialize() {
 		"Error creating accounts table: %s\n") ||
 		attempt_exec
 		("CREATE TABLE account_relationships  (relationship_id BIGSERIAL PRIMARY KEY, account1_id INTEGER NOT NULL, account2_id INTEGER NOT NULL, relationship_source_obj_id INTEGER NOT NULL, date_time BIGINT, relationship_type INTEGER NOT NULL, data_source_obj_id INTEGER NOT NULL, UNIQUE(account1_id, account2_id, relationship_source_obj_id), FOREIGN KEY(account1_id) REFERENCES accounts(account_id), FOREIGN KEY(account2_id) REFERENCES accounts(account_id), FOREIGN KEY(relationship_source_obj_id) REFERENCES tsk_objects(obj_id), FOREIGN KEY(data_source_obj_id) REFERENCES tsk_objects(obj_id))",
-		"Error creating relationships table: %s\n")	 ){
+		"Error creating relationships table: %s\n") ||
+		attempt_exec
+		("CREATE TABLE tsk_files_fuzzy_hash (obj_id BIGINT PRIMARY KEY, block_size BIGINT NOT NULL, fuzzy_hash TEXT NOT NULL, FOREIGN KEY(obj_id) REFERENCES tsk_objects(obj_id))",
+		"Error creating tsk_files_fuzzy_hash table: %s\n") ||
+		attempt_exec
+		("CREATE TABLE tsk_files_fuzzy_hash_grams (obj_id BIGINT NOT NULL, block_size BIGINT NOT NULL, gram INTEGER NOT NULL, FOREIGN KEY(obj_id) REFERENCES tsk_objects(obj_id))",
+		"Error creating tsk_files_fuzzy_hash_grams table: %s\n") ||
+		attempt_exec
+		("CREATE TABLE account_relationship_rollups (account_id BIGINT NOT NULL, data_source_obj_id BIGINT NOT NULL, relationship_type INTEGER NOT NULL, bucket_start BIGINT NOT NULL, source_count BIGINT NOT NULL, UNIQUE(account_id, data_source_obj_id, relationship_type, bucket_start), FOREIGN KEY(account_id) REFERENCES accounts(account_id), FOREIGN KEY(data_source_obj_id) REFERENCES tsk_objects(obj_id))",
+		"Error creating account_relationship_rollups table: %s\n") ||
+		attempt_exec
+		("CREATE TABLE tsk_object_ancestors (descendant_id BIGINT NOT NULL, ancestor_id BIGINT NOT NULL, depth INTEGER NOT NULL, PRIMARY KEY(descendant_id, ancestor_id), FOREIGN KEY(descendant_id) REFERENCES tsk_objects(obj_id), FOREIGN KEY(ancestor_id) REFERENCES tsk_objects(obj_id))",
+		"Error creating tsk_object_ancestors table: %s\n") ||
+		attempt_exec
+		("CREATE TABLE tsk_unique_paths (obj_id BIGINT PRIMARY KEY, unique_path TEXT NOT NULL, FOREIGN KEY(obj_id) REFERENCES tsk_objects(obj_id))",
+		"Error creating tsk_unique_paths table: %s\n") ||
+		attempt_exec
+		("CREATE TABLE data_source_stats (data_source_obj_id BIGINT NOT NULL, stat_type INTEGER NOT NULL, stat_key TEXT NOT NULL, stat_value BIGINT NOT NULL, PRIMARY KEY(data_source_obj_id, stat_type, stat_key), FOREIGN KEY(data_source_obj_id) REFERENCES tsk_objects(obj_id))",
+		"Error creating data_source_stats table: %s\n") ||
+		attempt_exec
+		("CREATE TABLE blackboard_attribute_trigram_types (attribute_type_id INTEGER PRIMARY KEY, FOREIGN KEY(attribute_type_id) REFERENCES blackboard_attribute_types(attribute_type_id))",
+		"Error creating blackboard_attribute_trigram_types table: %s\n") ||
+		attempt_exec
+		("CREATE TABLE blackboard_attribute_trigrams (attribute_type_id INTEGER NOT NULL, trigram TEXT NOT NULL, artifact_id BIGINT NOT NULL, PRIMARY KEY(attribute_type_id, trigram, artifact_id), FOREIGN KEY(attribute_type_id) REFERENCES blackboard_attribute_types(attribute_type_id), FOREIGN KEY(artifact_id) REFERENCES blackboard_artifacts(artifact_id))",
+		"Error creating blackboard_attribute_trigrams table: %s\n") ||
+		attempt_exec
+		("CREATE TABLE tsk_events (event_id BIGSERIAL PRIMARY KEY, time BIGINT NOT NULL, event_type INTEGER NOT NULL, data_source_obj_id BIGINT NOT NULL, obj_id BIGINT NOT NULL, artifact_id BIGINT, FOREIGN KEY(data_source_obj_id) REFERENCES tsk_objects(obj_id), FOREIGN KEY(obj_id) REFERENCES tsk_objects(obj_id), FOREIGN KEY(artifact_id) REFERENCES blackboard_artifacts(artifact_id))",
+		"Error creating tsk_events table: %s\n") ||
+		attempt_exec
+		("CREATE TABLE tsk_event_day_counts (bucket_start BIGINT NOT NULL, event_type INTEGER NOT NULL, data_source_obj_id BIGINT NOT NULL, event_count BIGINT NOT NULL, PRIMARY KEY(bucket_start, event_type, data_source_obj_id), FOREIGN KEY(data_source_obj_id) REFERENCES tsk_objects(obj_id))",
+		"Error creating tsk_event_day_counts table: %s\n")	 ){
 			return 1;
     }
 
@@ -642,6 +672,11 @@ int TskDbPostgreSQL::createIndexes() {
 		// tsk_objects index
 		attempt_exec("CREATE INDEX parObjId ON tsk_objects(par_obj_id);",
 			"Error creating tsk_objects index on par_obj_id: %s\n") ||
+		attempt_exec("CREATE INDEX objectAncestorsAncestorId ON tsk_object_ancestors(ancestor_id, depth);",
+			"Error creating tsk_object_ancestors index on ancestor_id: %s\n") ||
+		// unique paths can be longer than a btree entry, so index their hashes
+		attempt_exec("CREATE INDEX uniquePath ON tsk_unique_paths(md5(unique_path));",
+			"Error creating tsk_unique_paths index on unique_path: %s\n") ||
 		// file layout index
 		attempt_exec("CREATE INDEX layout_objID ON tsk_file_layout(obj_id);",
 			"Error creating layout_objID index on tsk_file_layout: %s\n") ||
@@ -654,6 +689,25 @@ int TskDbPostgreSQL::createIndexes() {
 			"Error creating artifact_objID index on blackboard_artifacts: %s\n") ||
 		attempt_exec("CREATE INDEX attrsArtifactID ON blackboard_attributes(artifact_id);",
 			"Error creating artifact_id index on blackboard_attributes: %s\n") ||
+		// attribute value indexes, partial since each attribute has one value column;
+		// values can be longer than a btree entry, so index the start of the text
+		// values (the length is TEXT_VALUE_KEY_LENGTH in SleuthkitCase.java) and
+		// the hashes of the byte values
+		attempt_exec("CREATE INDEX attrsTypeValueText ON blackboard_attributes(attribute_type_id, (LEFT(LOWER(value_text), 256)) COLLATE \"C\") WHERE value_text IS NOT NULL;",
+			"Error creating attrsTypeValueText index on blackboard_attributes: %s\n") ||
+		attempt_exec("CREATE INDEX attrsTypeValueInt32 ON blackboard_attributes(attribute_type_id, value_int32) WHERE value_int32 IS NOT NULL;",
+			"Error creating attrsTypeValueInt32 index on blackboard_attributes: %s\n") ||
+		attempt_exec("CREATE INDEX attrsTypeValueInt64 ON blackboard_attributes(attribute_type_id, value_int64) WHERE value_int64 IS NOT NULL;",
+			"Error creating attrsTypeValueInt64 index on blackboard_attributes: %s\n") ||
+		attempt_exec("CREATE INDEX attrsTypeValueDouble ON blackboard_attributes(attribute_type_id, value_double) WHERE value_double IS NOT NULL;",
+			"Error creating attrsTypeValueDouble index on blackboard_attributes: %s\n") ||
+		attempt_exec("CREATE INDEX attrsTypeValueByte ON blackboard_attributes(attribute_type_id, md5(value_byte)) WHERE value_byte IS NOT NULL;",
+			"Error creating attrsTypeValueByte index on blackboard_attributes: %s\n") ||
+		//timeline event indexes
+		attempt_exec("CREATE INDEX events_time_type_data_source ON tsk_events(time, event_type, data_source_obj_id, event_id);",
+			"Error creating events_time_type_data_source index on tsk_events: %s\n") ||
+		attempt_exec("CREATE INDEX events_obj_id ON tsk_events(obj_id);",
+			"Error creating events_obj_id index on tsk_events: %s\n") ||
 		//file type indexes
 		attempt_exec("CREATE INDEX mime_type ON tsk_files(dir_type,mime_type,type);", //mime type
 			"Error creating mime_type index on tsk_files: %s\n") ||
@@ -670,7 +724,12 @@ int TskDbPostgreSQL::createIndexes() {
 		attempt_exec("CREATE INDEX relationships_relationship_type ON account_relationships(relationship_type);",
 			"Error creating relationships_relationship_type index on account_relationships: %s\n") ||
 		attempt_exec("CREATE INDEX relationships_data_source_obj_id  ON account_relationships(data_source_obj_id);",
-			"Error creating relationships_data_source_obj_id index on account_relationships: %s\n");
+			"Error creating relationships_data_source_obj_id index on account_relationships: %s\n") ||
+		// fuzzy hash indexes
+		attempt_exec("CREATE INDEX fuzzy_hash_grams ON tsk_files_fuzzy_hash_grams(block_size, gram);",
+			"Error creating fuzzy_hash_grams index on tsk_files_fuzzy_hash_grams: %s\n") ||
+		attempt_exec("CREATE INDEX fuzzy_hash_grams_objID ON tsk_files_fuzzy_hash_grams(obj_id);",
+			"Error creating fuzzy_hash_grams_objID index on tsk_files_fuzzy_hash_grams: %s\n");
 }
 
 
@@ -252,7 +252,7 @@ int
         "Error creating tsk_objects table: %s\n")
         ||
         attempt_exec
-        ("CREATE TABLE tsk_image_info (obj_id INTEGER PRIMARY KEY, type INTEGER, ssize INTEGER, tzone TEXT, size INTEGER, md5 TEXT, display_name TEXT, FOREIGN KEY(obj_id) REFERENCES tsk_objects(obj_id));",
+        ("CREATE TABLE tsk_image_info (obj_id INTEGER PRIMARY KEY, type INTEGER, ssize INTEGER, tzone TEXT, size INTEGER, md5 TEXT, display_name TEXT, sha1 TEXT, sha256 TEXT, FOREIGN KEY(obj_id) REFERENCES tsk_objects(obj_id));",
         "Error creating tsk_image_info table: %s\n")
         ||
         attempt_exec
@@ -375,7 +375,37 @@ int
 			"Error creating accounts table: %s\n") ||
 		attempt_exec
 		("CREATE TABLE account_relationships (relationship_id INTEGER PRIMARY KEY, account1_id INTEGER NOT NULL, account2_id INTEGER NOT NULL, relationship_source_obj_id INTEGER NOT NULL,  date_time INTEGER, relationship_type INTEGER NOT NULL, data_source_obj_id INTEGER NOT NULL, UNIQUE(account1_id, account2_id, relationship_source_obj_id), FOREIGN KEY(account1_id) REFERENCES accounts(account_id), FOREIGN KEY(account2_id) REFERENCES accounts(account_id), FOREIGN KEY(relationship_source_obj_id) REFERENCES tsk_objects(obj_id), FOREIGN KEY(data_source_obj_id) REFERENCES tsk_objects(obj_id))",
-			"Error creating relationships table: %s\n") ) {
+			"Error creating relationships table: %s\n") ||
+		attempt_exec
+		("CREATE TABLE tsk_files_fuzzy_hash (obj_id INTEGER PRIMARY KEY, block_size INTEGER NOT NULL, fuzzy_hash TEXT NOT NULL, FOREIGN KEY(obj_id) REFERENCES tsk_objects(obj_id))",
+			"Error creating tsk_files_fuzzy_hash table: %s\n") ||
+		attempt_exec
+		("CREATE TABLE tsk_files_fuzzy_hash_grams (obj_id INTEGER NOT NULL, block_size INTEGER NOT NULL, gram INTEGER NOT NULL, FOREIGN KEY(obj_id) REFERENCES tsk_objects(obj_id))",
+			"Error creating tsk_files_fuzzy_hash_grams table: %s\n") ||
+		attempt_exec
+		("CREATE TABLE account_relationship_rollups (account_id INTEGER NOT NULL, data_source_obj_id INTEGER NOT NULL, relationship_type INTEGER NOT NULL, bucket_start INTEGER NOT NULL, source_count INTEGER NOT NULL, UNIQUE(account_id, data_source_obj_id, relationship_type, bucket_start), FOREIGN KEY(account_id) REFERENCES accounts(account_id), FOREIGN KEY(data_source_obj_id) REFERENCES tsk_objects(obj_id))",
+			"Error creating account_relationship_rollups table: %s\n") ||
+		attempt_exec
+		("CREATE TABLE tsk_object_ancestors (descendant_id INTEGER NOT NULL, ancestor_id INTEGER NOT NULL, depth INTEGER NOT NULL, PRIMARY KEY(descendant_id, ancestor_id), FOREIGN KEY(descendant_id) REFERENCES tsk_objects(obj_id), FOREIGN KEY(ancestor_id) REFERENCES tsk_objects(obj_id))",
+			"Error creating tsk_object_ancestors table: %s\n") ||
+		attempt_exec
+		("CREATE TABLE tsk_unique_paths (obj_id INTEGER PRIMARY KEY, unique_path TEXT NOT NULL, FOREIGN KEY(obj_id) REFERENCES tsk_objects(obj_id))",
+			"Error creating tsk_unique_paths table: %s\n") ||
+		attempt_exec
+		("CREATE TABLE data_source_stats (data_source_obj_id INTEGER NOT NULL, stat_type INTEGER NOT NULL, stat_key TEXT NOT NULL, stat_value INTEGER NOT NULL, PRIMARY KEY(data_source_obj_id, stat_type, stat_key), FOREIGN KEY(data_source_obj_id) REFERENCES tsk_objects(obj_id))",
+			"Error creating data_source_stats table: %s\n") ||
+		attempt_exec
+		("CREATE TABLE blackboard_attribute_trigram_types (attribute_type_id INTEGER PRIMARY KEY, FOREIGN KEY(attribute_type_id) REFERENCES blackboard_attribute_types(attribute_type_id))",
+			"Error creating blackboard_attribute_trigram_types table: %s\n") ||
+		attempt_exec
+		("CREATE TABLE blackboard_attribute_trigrams (attribute_type_id INTEGER NOT NULL, trigram TEXT NOT NULL, artifact_id INTEGER NOT NULL, PRIMARY KEY(attribute_type_id, trigram, artifact_id), FOREIGN KEY(attribute_type_id) REFERENCES blackboard_attribute_types(attribute_type_id), FOREIGN KEY(artifact_id) REFERENCES blackboard_artifacts(artifact_id))",
+			"Error creating blackboard_attribute_trigrams table: %s\n") ||
+		attempt_exec
+		("CREATE TABLE tsk_events (event_id INTEGER PRIMARY KEY, time INTEGER NOT NULL, event_type INTEGER NOT NULL, data_source_obj_id INTEGER NOT NULL, obj_id INTEGER NOT NULL, artifact_id INTEGER, FOREIGN KEY(data_source_obj_id) REFERENCES tsk_objects(obj_id), FOREIGN KEY(obj_id) REFERENCES tsk_objects(obj_id), FOREIGN KEY(artifact_id) REFERENCES blackboard_artifacts(artifact_id))",
+			"Error creating tsk_events table: %s\n") ||
+		attempt_exec
+		("CREATE TABLE tsk_event_day_counts (bucket_start INTEGER NOT NULL, event_type INTEGER NOT NULL, data_source_obj_id INTEGER NOT NULL, event_count INTEGER NOT NULL, PRIMARY KEY(bucket_start, event_type, data_source_obj_id), FOREIGN KEY(data_source_obj_id) REFERENCES tsk_objects(obj_id))",
+			"Error creating tsk_event_day_counts table: %s\n") ) {
         return 1;
     }
 
@@ -402,6 +432,10 @@ int TskDbSqlite::createIndexes() {
 		// tsk_objects index
 		attempt_exec("CREATE INDEX parObjId ON tsk_objects(par_obj_id);",
 			"Error creating tsk_objects index on par_obj_id: %s\n") ||
+		attempt_exec("CREATE INDEX objectAncestorsAncestorId ON tsk_object_ancestors(ancestor_id, depth);",
+			"Error creating tsk_object_ancestors index on ancestor_id: %s\n") ||
+		attempt_exec("CREATE INDEX uniquePath ON tsk_unique_paths(unique_path);",
+			"Error creating tsk_unique_paths index on unique_path: %s\n") ||
 		// file layout index
 		attempt_exec("CREATE INDEX layout_objID ON tsk_file_layout(obj_id);",
 			"Error creating layout_objID index on tsk_file_layout: %s\n") ||
@@ -414,6 +448,22 @@ int TskDbSqlite::createIndexes() {
 			"Error creating artifact_objID index on blackboard_artifacts: %s\n") ||
 		attempt_exec("CREATE INDEX attrsArtifactID ON blackboard_attributes(artifact_id);",
 			"Error creating artifact_id index on blackboard_attributes: %s\n") ||
+		// attribute value indexes, partial since each attribute has one value column
+		attempt_exec("CREATE INDEX attrsTypeValueText ON blackboard_attributes(attribute_type_id, value_text COLLATE NOCASE) WHERE value_text IS NOT NULL;",
+			"Error creating attrsTypeValueText index on blackboard_attributes: %s\n") ||
+		attempt_exec("CREATE INDEX attrsTypeValueInt32 ON blackboard_attributes(attribute_type_id, value_int32) WHERE value_int32 IS NOT NULL;",
+			"Error creating attrsTypeValueInt32 index on blackboard_attributes: %s\n") ||
+		attempt_exec("CREATE INDEX attrsTypeValueInt64 ON blackboard_attributes(attribute_type_id, value_int64) WHERE value_int64 IS NOT NULL;",
+			"Error creating attrsTypeValueInt64 index on blackboard_attributes: %s\n") ||
+		attempt_exec("CREATE INDEX attrsTypeValueDouble ON blackboard_attributes(attribute_type_id, value_double) WHERE value_double IS NOT NULL;",
+			"Error creating attrsTypeValueDouble index on blackboard_attributes: %s\n") ||
+		attempt_exec("CREATE INDEX attrsTypeValueByte ON blackboard_attributes(attribute_type_id, value_byte) WHERE value_byte IS NOT NULL;",
+			"Error creating attrsTypeValueByte index on blackboard_attributes: %s\n") ||
+		//timeline event indexes
+		attempt_exec("CREATE INDEX events_time_type_data_source ON tsk_events(time, event_type, data_source_obj_id);",
+			"Error creating events_time_type_data_source index on tsk_events: %s\n") ||
+		attempt_exec("CREATE INDEX events_obj_id ON tsk_events(obj_id);",
+			"Error creating events_obj_id index on tsk_events: %s\n") ||
 		//file type indexes
 		attempt_exec("CREATE INDEX mime_type ON tsk_files(dir_type,mime_type,type);", //mime type
 			"Error creating mime_type index on tsk_files: %s\n") ||
@@ -430,7 +480,12 @@ int TskDbSqlite::createIndexes() {
 		attempt_exec("CREATE INDEX relationships_relationship_type  ON account_relationships(relationship_type);",
 			"Error creating relationships_relationship_type index on account_relationships: %s\n") ||
 		attempt_exec("CREATE INDEX relationships_data_source_obj_id  ON account_relationships(data_source_obj_id);",
-			"Error creating relationships_data_source_obj_id index on account_relationships: %s\n");
+			"Error creating relationships_data_source_obj_id index on account_relationships: %s\n") ||
+		// fuzzy hash indexes
+		attempt_exec("CREATE INDEX fuzzy_hash_grams ON tsk_files_fuzzy_hash_grams(block_size, gram);",
+			"Error creating fuzzy_hash_grams index on tsk_files_fuzzy_hash_grams: %s\n") ||
+		attempt_exec("CREATE INDEX fuzzy_hash_grams_objID ON tsk_files_fuzzy_hash_grams(obj_id);",
+			"Error creating fuzzy_hash_grams_objID index on tsk_files_fuzzy_hash_grams: %s\n");
 }
 
 
@@ -29,6 +29,12 @@ static const uint64_t IDX_IDX_ENTRY_NOT_SET = 0xFFFFFFFFFFFFFFFFUL;
 static const uint64_t IDX_IDX_ENTRY_NOT_SET = 0xFFFFFFFFFFFFFFFFULL;
 #endif
 
+// Index creation progress is reported as a percentage. Reading the database
+// and writing the unsorted index accounts for most of it, the sort for most of
+// the rest and building the index of the index for the remainder.
+static const int IDX_PROGRESS_EXTRACTED = 80;
+static const int IDX_PROGRESS_SORTED = 95;
+
 
 /**
  * Called by the various text-based databases to setup the TSK_HDB_BINSRCH_INFO struct.
@@ -710,6 +716,19 @@ uint8_t
     }
 #endif
 
+    /* Get the size of the database so that progress can be reported as 
+    * entries are added */
+    {
+        struct STAT_STR sb;
+        if (TSTAT(hdb_binsrch_info->base.db_fname, &sb) == 0) {
+            hdb_binsrch_info->db_size = sb.st_size;
+        }
+        else {
+            hdb_binsrch_info->db_size = 0;
+        }
+    }
+    tsk_hdb_set_idx_progress(&hdb_binsrch_info->base, 0);
+
     /* Print the header */
     fprintf(hdb_binsrch_info->hIdxTmp, "%s|%s\n", TSK_HDB_IDX_HEAD_NAME_STR,
         hdb_binsrch_info->base.db_name);
@@ -742,6 +761,39 @@ uint8_t
     return 0;
 }
 
+/**
+* Update the progress of index creation based on how far into the database
+* the entries being added are, and check whether creation has been canceled.
+* If it has, the intermediate index file is closed and deleted.
+*
+* @param hdb_binsrch_info Hash database state info
+* @param offset Byte offset of the current hash entry in original database.
+* @return 1 if index creation was canceled and 0 otherwise
+*/
+static uint8_t
+    hdb_binsrch_idx_update_progress(TSK_HDB_BINSRCH_INFO *hdb_binsrch_info, TSK_OFF_T offset)
+{
+    if (tsk_hdb_is_idx_canceled(&hdb_binsrch_info->base)) {
+        fclose(hdb_binsrch_info->hIdxTmp);
+        hdb_binsrch_info->hIdxTmp = NULL;
+#ifdef TSK_WIN32
+        DeleteFile(hdb_binsrch_info->uns_fname);
+#else
+        unlink(hdb_binsrch_info->uns_fname);
+#endif
+        tsk_error_reset();
+        tsk_error_set_errno(TSK_ERR_HDB_PROC);
+        tsk_error_set_errstr("hdb_binsrch_idx_add_entry: index creation canceled");
+        return 1;
+    }
+
+    if (hdb_binsrch_info->db_size > 0) {
+        tsk_hdb_set_idx_progress(&hdb_binsrch_info->base,
+            (int)((offset * IDX_PROGRESS_EXTRACTED) / hdb_binsrch_info->db_size));
+    }
+    return 0;
+}
+
 /**
 * Add a string entry to the intermediate index file.
 *
@@ -755,6 +807,10 @@ uint8_t
 {
     int i;
 
+    if (hdb_binsrch_idx_update_progress(hdb_binsrch_info, offset)) {
+        return 1;
+    }
+
     // make the hashes all upper case
     for (i = 0; hvalue[i] != '\0'; i++) {
         if (islower((int) hvalue[i]))
@@ -783,6 +839,10 @@ uint8_t
 {
     int i;
 
+    if (hdb_binsrch_idx_update_progress(hdb_binsrch_info, offset)) {
+        return 1;
+    }
+
     for (i = 0; i < hlen; i++) {
         fprintf(hdb_binsrch_info->hIdxTmp, "%02X", hvalue[i]);
     }
@@ -980,19 +1040,17 @@ uint8_t
     const char *root = "/bin/sort";
     const char *usr = "/usr/bin/sort";
     const char *local = "/usr/local/bin/sort";
+    const char *sort_path = NULL;
     struct stat stats;
 
     if (0 == stat(local, &stats)) {
-        snprintf(buf, TSK_HDB_MAXLEN, "%s -o %s %s", local,
-            hdb_binsrch_info->idx_fname, hdb_binsrch_info->uns_fname);
+        sort_path = local;
     }
     else if (0 == stat(usr, &stats)) {
-        snprintf(buf, TSK_HDB_MAXLEN, "%s -o \"%s\" \"%s\"",
-            usr, hdb_binsrch_info->idx_fname, hdb_binsrch_info->uns_fname);
+        sort_path = usr;
     }
     else if (0 == stat(root, &stats)) {
-        snprintf(buf, TSK_HDB_MAXLEN, "%s -o \"%s\" \"%s\"",
-            root, hdb_binsrch_info->idx_fname, hdb_binsrch_info->uns_fname);
+        sort_path = root;
     }
     else {
         tsk_error_reset();
@@ -1001,12 +1059,28 @@ uint8_t
         return 1;
     }
 
+    // The index lines are fixed length ASCII, so sort them bytewise in the C
+    // locale, which is both what the binary search expects and much faster
+    // than locale aware collation. Ask for a parallel merge sort with a
+    // bounded buffer first. Not every sort supports those options, so fall
+    // back to a plain sort if that fails.
+    long num_cpus = sysconf(_SC_NPROCESSORS_ONLN);
+    if (num_cpus < 1) {
+        num_cpus = 1;
+    }
+    snprintf(buf, TSK_HDB_MAXLEN,
+        "LC_ALL=C %s --parallel=%ld -S 25%% -o \"%s\" \"%s\" 2>/dev/null",
+        sort_path, num_cpus, hdb_binsrch_info->idx_fname, hdb_binsrch_info->uns_fname);
     if (0 != system(buf)) {
-        tsk_error_reset();
-        tsk_error_set_errno(TSK_ERR_HDB_PROC);
-        tsk_error_set_errstr(
-            "Error sorting index file using %s", buf);
-        return 1;
+        snprintf(buf, TSK_HDB_MAXLEN, "LC_ALL=C %s -o \"%s\" \"%s\"",
+            sort_path, hdb_binsrch_info->idx_fname, hdb_binsrch_info->uns_fname);
+        if (0 != system(buf)) {
+            tsk_error_reset();
+            tsk_error_set_errno(TSK_ERR_HDB_PROC);
+            tsk_error_set_errstr(
+                "Error sorting index file using %s", buf);
+            return 1;
+        }
     }
 
     unlink(hdb_binsrch_info->uns_fname);
@@ -1018,6 +1092,8 @@ uint8_t
     }
 #endif
 
+    tsk_hdb_set_idx_progress(&hdb_binsrch_info->base, IDX_PROGRESS_SORTED);
+
     // To speed up lookups, create a mapping of the first three bytes of a hash 
     // to an offset in the index file.	
     if (hdb_binsrch_make_idx_idx(hdb_binsrch_info)) {
@@ -1026,6 +1102,7 @@ uint8_t
         return 1;
     }
 
+    tsk_hdb_set_idx_progress(&hdb_binsrch_info->base, 100);
     return 0;
 }
 
@@ -95,6 +95,9 @@ uint8_t
     tsk_init_lock(&hdb_info->lock);
 
     hdb_info->transaction_in_progress = 0;
+    tsk_init_lock(&hdb_info->idx_lock);
+    hdb_info->idx_progress = 0;
+    hdb_info->idx_cancel = 0;
 
     hdb_info->get_db_path = hdb_base_get_db_path;
     hdb_info->get_display_name = hdb_base_get_display_name;
@@ -280,4 +283,5 @@ void hdb_info_base_close(TSK_HDB_INFO *hdb_info)
     hdb_info->db_fname = NULL;
 
     tsk_deinit_lock(&hdb_info->lock);
+    tsk_deinit_lock(&hdb_info->idx_lock);
 }
@@ -356,6 +356,9 @@ uint8_t
 * @param hdb_info Open hash database to index
 * @param type Text of hash database type
 * @returns 1 on error
+*
+* The idx_cancel flag is not cleared here, so that a cancel requested before
+* this is called is not lost. The caller clears it before starting.
 */
 uint8_t
     tsk_hdb_make_index(TSK_HDB_INFO *hdb_info, TSK_TCHAR *type)
@@ -374,9 +377,75 @@ uint8_t
         return 1;
     }
 
+    tsk_hdb_set_idx_progress(hdb_info, 0);
     return hdb_info->make_index(hdb_info, type);
 }
 
+/**
+* \ingroup hashdblib
+* Gets the progress of the index currently being made for a hash database.
+* May be called from a thread other than the one making the index.
+* @param hdb_info Hash database being indexed
+* @returns Percent complete, from 0 to 100
+*/
+int
+    tsk_hdb_get_idx_progress(TSK_HDB_INFO *hdb_info)
+{
+    int progress;
+
+    tsk_take_lock(&hdb_info->idx_lock);
+    progress = hdb_info->idx_progress;
+    tsk_release_lock(&hdb_info->idx_lock);
+    return progress;
+}
+
+/**
+* \ingroup hashdblib
+* Sets the progress of the index currently being made for a hash database.
+* @param hdb_info Hash database being indexed
+* @param progress Percent complete, from 0 to 100
+*/
+void
+    tsk_hdb_set_idx_progress(TSK_HDB_INFO *hdb_info, int progress)
+{
+    tsk_take_lock(&hdb_info->idx_lock);
+    hdb_info->idx_progress = progress;
+    tsk_release_lock(&hdb_info->idx_lock);
+}
+
+/**
+* \ingroup hashdblib
+* Tests whether the index currently being made for a hash database should
+* stop.
+* @param hdb_info Hash database being indexed
+* @returns 1 if index creation was canceled, 0 otherwise
+*/
+uint8_t
+    tsk_hdb_is_idx_canceled(TSK_HDB_INFO *hdb_info)
+{
+    uint8_t canceled;
+
+    tsk_take_lock(&hdb_info->idx_lock);
+    canceled = hdb_info->idx_cancel ? 1 : 0;
+    tsk_release_lock(&hdb_info->idx_lock);
+    return canceled;
+}
+
+/**
+* \ingroup hashdblib
+* Sets or clears the request that the index being made for a hash database
+* stop. May be called from a thread other than the one making the index.
+* @param hdb_info Hash database being indexed
+* @param cancel 1 to request that index creation stop, 0 to clear the request
+*/
+void
+    tsk_hdb_set_idx_cancel(TSK_HDB_INFO *hdb_info, uint8_t cancel)
+{
+    tsk_take_lock(&hdb_info->idx_lock);
+    hdb_info->idx_cancel = cancel ? 1 : 0;
+    tsk_release_lock(&hdb_info->idx_lock);
+}
+
 /**
 * \ingroup hashdblib
 * Searches a hash database for a text/ASCII hash value.
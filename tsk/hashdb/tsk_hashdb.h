@@ -116,6 +116,9 @@ extern "C" {
         TSK_HDB_DBTYPE_ENUM db_type;       ///< Type of database
         tsk_lock_t lock;                   ///< Lock for lazy loading and idx_lbuf
         uint8_t transaction_in_progress;   ///< Flag set and unset when transaction are begun and ended
+        tsk_lock_t idx_lock;               ///< Lock for idx_progress and idx_cancel, which are set and read by different threads
+        int idx_progress;                  ///< Percent complete (0-100) of the index currently being made, see tsk_hdb_get_idx_progress()
+        int idx_cancel;                    ///< Set to non-zero to stop the index currently being made (not cleared by tsk_hdb_make_index), see tsk_hdb_set_idx_cancel()
         const TSK_TCHAR*(*get_db_path)(TSK_HDB_INFO*);
         const char*(*get_display_name)(TSK_HDB_INFO*);
         uint8_t(*uses_external_indexes)();
@@ -147,6 +150,7 @@ extern "C" {
         FILE *hIdx;                   ///< File handle to index (only open during lookups)
         FILE *hIdxTmp;                ///< File handle to temp (unsorted) index file (only open during index creation)
         TSK_TCHAR *uns_fname;         ///< Name of unsorted index file
+        TSK_OFF_T db_size;            ///< Size of database file (only set during index creation, for progress)
         TSK_OFF_T idx_size;           ///< Size of index file
         uint16_t idx_off;             ///< Offset in index file to first index entry
         size_t idx_llen;              ///< Length of each line in index
@@ -173,6 +177,10 @@ extern "C" {
     extern uint8_t tsk_hdb_uses_external_indexes(TSK_HDB_INFO *);
     extern uint8_t tsk_hdb_has_idx(TSK_HDB_INFO * hdb_info, TSK_HDB_HTYPE_ENUM);
     extern uint8_t tsk_hdb_make_index(TSK_HDB_INFO *, TSK_TCHAR *);
+    extern int tsk_hdb_get_idx_progress(TSK_HDB_INFO *);
+    extern void tsk_hdb_set_idx_progress(TSK_HDB_INFO *, int);
+    extern uint8_t tsk_hdb_is_idx_canceled(TSK_HDB_INFO *);
+    extern void tsk_hdb_set_idx_cancel(TSK_HDB_INFO *, uint8_t);
     extern const TSK_TCHAR *tsk_hdb_get_idx_path(TSK_HDB_INFO *, TSK_HDB_HTYPE_ENUM);
     extern uint8_t tsk_hdb_open_idx(TSK_HDB_INFO *, TSK_HDB_HTYPE_ENUM);
     extern int8_t tsk_hdb_lookup_str(TSK_HDB_INFO *, const char *,